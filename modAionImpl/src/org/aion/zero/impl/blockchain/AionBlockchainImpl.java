@@ -19,7 +19,9 @@ import static org.aion.zero.impl.core.ImportResult.NO_PARENT;
 
 import com.google.common.annotations.VisibleForTesting;
 import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.FileAlreadyExistsException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -95,6 +97,8 @@ import org.aion.zero.impl.core.energy.AbstractEnergyStrategyLimit;
 import org.aion.zero.impl.core.energy.EnergyStrategies;
 import org.aion.zero.impl.db.AionBlockStore;
 import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.DatabaseCheckpoint;
+import org.aion.zero.impl.db.DatabaseUtils;
 import org.aion.zero.impl.sync.DatabaseType;
 import org.aion.zero.impl.sync.SyncMgr;
 import org.aion.zero.impl.types.AionBlock;
@@ -141,6 +145,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
     private final GreatGrandParentBlockHeaderValidator unityGreatGrandParentBlockHeaderValidator;
     private final ParentBlockHeaderValidator preUnityParentBlockHeaderValidator;
     private final ParentBlockHeaderValidator unityParentBlockHeaderValidator;
+    private final ParentBlockHeaderValidator unityRelayParentBlockHeaderValidator;
     private StakingContractHelper stakingContractHelper = null;
     public final ForkUtility forkUtility;
     public final BeaconHashValidator beaconHashValidator;
@@ -198,6 +203,10 @@ public class AionBlockchainImpl implements IAionBlockchain {
     private SelfNodeStatusCallback callback;
     private BestBlockImportCallback bestBlockCallback;
 
+    // blocks that passed the checks of prevalidate(Block), which are skipped for the same objects
+    private final Map<ByteArrayWrapper, Block> prevalidatedBlocks =
+            Collections.synchronizedMap(new LRUMap<>(1024));
+
     public AionBlockchainImpl(CfgAion cfgAion, boolean forTest) {
         this(generateBCConfig(cfgAion), AionRepositoryImpl.inst(),
             forTest ? new ChainConfiguration() {
@@ -262,6 +271,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
         headerValidator = chainConfiguration.createBlockHeaderValidatorForImport();
         preUnityParentBlockHeaderValidator = chainConfig.createPreUnityParentBlockHeaderValidator();
         unityParentBlockHeaderValidator = chainConfig.createUnityParentBlockHeaderValidator();
+        unityRelayParentBlockHeaderValidator = chainConfig.createUnityRelayParentBlockHeaderValidator();
         preUnityGrandParentBlockHeaderValidator = chainConfiguration.createPreUnityGrandParentHeaderValidator();
         unityGreatGrandParentBlockHeaderValidator = chainConfiguration.createUnityGreatGrandParentHeaderValidator();
 
@@ -570,6 +580,11 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return getBlockStore().getBlocksByRange(first, last);
     }
 
+    @Override
+    public List<byte[]> getEncodedBlocksByRange(long first, long last) {
+        return getBlockStore().getEncodedBlocksByRange(first, last);
+    }
+
     @Override
     /* NOTE: only returns receipts from the main chain */
     public AionTxInfo getTransactionInfo(byte[] hash) {
@@ -849,6 +864,94 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return repository.importTrieNode(key, value, dbType);
     }
 
+    /**
+     * Imports a batch of validated trie nodes to the indicated blockchain database.
+     *
+     * @param nodes the key-value pairs of the trie nodes to be imported
+     * @param dbType the database where the key-value pairs should be stored
+     */
+    public void importTrieNodes(Map<ByteArrayWrapper, byte[]> nodes, DatabaseType dbType) {
+        repository.importTrieNodes(nodes, dbType);
+    }
+
+    /**
+     * Returns the keys of the trie nodes referenced starting from the given node that are missing
+     * from the indicated blockchain database.
+     *
+     * @param keyOrValue the key or the value of a trie node
+     * @param dbType the database where the trie nodes are stored
+     * @return the keys of the nodes that must be retrieved to complete the trie
+     */
+    public Set<ByteArrayWrapper> getMissingTrieNodes(byte[] keyOrValue, DatabaseType dbType) {
+        return repository.getMissingTrieNodes(keyOrValue, dbType);
+    }
+
+    /**
+     * Returns the keys of the storage trie nodes of the given contract referenced starting from the
+     * given node that are missing from the storage database.
+     *
+     * @param keyOrValue the key or the value of a storage trie node
+     * @param contract the address of the contract owning the storage
+     * @return the keys under which the missing nodes are stored in the storage database
+     */
+    public Set<ByteArrayWrapper> getMissingStorageNodes(byte[] keyOrValue, AionAddress contract) {
+        return repository.getMissingStorageNodes(keyOrValue, contract);
+    }
+
+    @Override
+    public Map<ByteArrayWrapper, byte[]> getContractDetailsFrom(byte[] address, int limit) {
+        return repository.getContractDetailsFrom(address, limit);
+    }
+
+    /**
+     * Stores the pivot of a fast sync on the main chain. Unlike {@link #tryFastImport(Block)} the
+     * pivot is stored without a parent or a child, using the total difficulty agreed on by the
+     * network, so that its ancestors can be imported afterwards.
+     *
+     * @param pivot the block whose state was retrieved from the network
+     * @param totalDifficulty the total difficulty of the chain ending with the pivot
+     */
+    public synchronized void importPivot(final Block pivot, BigInteger totalDifficulty) {
+        getBlockStore().saveBlock(pivot, totalDifficulty, true);
+        getBlockStore().flush();
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(
+                    "Fast sync pivot saved: number: {}, hash: {}, td: {}",
+                    pivot.getNumber(),
+                    pivot.getShortHash(),
+                    totalDifficulty);
+        }
+    }
+
+    /**
+     * Makes the stored pivot of a fast sync the best block, such that the following blocks are
+     * imported on top of its state.
+     *
+     * @param pivot the block previously stored with {@link #importPivot(Block, BigInteger)}
+     * @return {@code true} if the pivot became the best block, {@code false} when the pivot or its
+     *     state are not available
+     */
+    public synchronized boolean switchToPivot(final Block pivot) {
+        Block stored = getBlockStore().getBlockByHashWithInfo(pivot.getHash());
+        if (stored == null || !repository.isValidRoot(stored.getStateRoot())) {
+            return false;
+        }
+
+        setBestBlock(stored);
+        loadBestMiningBlock();
+        loadBestStakingBlock();
+        totalDifficulty.set(stored.getTotalDifficulty());
+        repository.syncToRoot(stored.getStateRoot());
+
+        LOG.info(
+                "Fast sync switched to pivot: number: {}, hash: {}, td: {}",
+                stored.getNumber(),
+                stored.getShortHash(),
+                stored.getTotalDifficulty());
+        return true;
+    }
+
     /**
      * If using TOP pruning we need to check the pruning restriction for the block. Otherwise, there
      * is not prune restriction.
@@ -905,6 +1008,14 @@ public class AionBlockchainImpl implements IAionBlockchain {
         Block child = getBlockStore().getChainBlockByNumber(block.getNumber() + 1);
         if (child == null || !Arrays.equals(child.getParentHash(), block.getHash())) {
             return FastImportResult.NO_CHILD;
+        } else if (!Arrays.equals(block.getTxTrieRoot(), calcTxTrie(block.getTransactionsList()))) {
+            // the body is stored without execution so it must match the linked header
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(
+                        "Block {} invalid due to transactions not matching the trie root.",
+                        block.getShortHash());
+            }
+            return FastImportResult.INVALID_BLOCK;
         } else {
             // the total difficulty will be updated after the chain is complete
             getBlockStore().saveBlock(block, ZERO, true);
@@ -970,10 +1081,70 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return tryToConnectInternal(block, System.currentTimeMillis() / THOUSAND_MS);
     }
 
+    /**
+     * Performs the checks of the given block that do not depend on its parent or on the state
+     * ahead of its import, namely the header rules, the transaction trie root and the transaction
+     * signatures. The account states of the transaction senders and destinations are also read to
+     * warm the state caches. The checks are not repeated by {@link #tryToConnect(Block)} when the
+     * same block object is imported.
+     *
+     * @implNote Can be called concurrently with the import of other blocks.
+     */
+    public void prevalidate(final Block block) {
+        if (block == null || block.isGenesis()) {
+            return;
+        }
+        if (!headerValidator.validate(block.getHeader(), LOG)) {
+            return;
+        }
+        List<AionTransaction> txs = block.getTransactionsList();
+        if (!Arrays.equals(block.getTxTrieRoot(), calcTxTrie(txs))) {
+            return;
+        }
+
+        if (txs != null) {
+            // the results are cached by the validator
+            boolean unityForkEnabled = forkUtility.isUnityForkActive(block.getNumber());
+            for (AionTransaction tx : txs) {
+                TXValidator.validateTx(tx, unityForkEnabled);
+                repository.getAccountState(tx.getSenderAddress());
+                if (tx.getDestinationAddress() != null) {
+                    repository.getAccountState(tx.getDestinationAddress());
+                }
+            }
+        }
+        prevalidatedBlocks.put(block.getHashWrapper(), block);
+    }
+
     public synchronized void compactState() {
         repository.compactState();
     }
 
+    @Override
+    public synchronized DatabaseCheckpoint createCheckpoint(File directory) throws IOException {
+        if (directory.exists()) {
+            throw new FileAlreadyExistsException(directory.getAbsolutePath());
+        }
+        if (!directory.mkdirs()) {
+            throw new IOException("Unable to create the directory " + directory.getAbsolutePath() + ".");
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            flush();
+            DatabaseCheckpoint checkpoint = repository.createCheckpoint(directory, bestBlock, getTotalDifficulty());
+            LOG.info(
+                    "Created checkpoint at block #{} in {}. Block import was paused for {} ms.",
+                    checkpoint.height,
+                    directory.getAbsolutePath(),
+                    System.currentTimeMillis() - start);
+            return checkpoint;
+        } catch (IOException | RuntimeException e) {
+            DatabaseUtils.deleteRecursively(directory);
+            throw e;
+        }
+    }
+
     /* TODO AKI-440: We should either refactor this to remove the redundant parameter,
         or provide it as an input to isValid() */
     public Pair<ImportResult, AionBlockSummary> tryToConnectAndFetchSummary(
@@ -1233,14 +1404,14 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 LOG.warn("Tried to create 2 PoW blocks in a row");
                 return null;
             } else {
-                parentMiningBlock = getParent(parentHdr).getHeader();
-                parentMiningBlocksParent = getParent(parentMiningBlock).getHeader();
+                parentMiningBlock = getParentHeader(parentHdr);
+                parentMiningBlocksParent = getParentHeader(parentMiningBlock);
                 diffCalculator = chainConfiguration.getUnityDifficultyCalculator();
             }
         } else {
             parentMiningBlock = parentHdr;
             if (!parentMiningBlock.isGenesis()) {
-                parentMiningBlocksParent = getParent(parentMiningBlock).getHeader();
+                parentMiningBlocksParent = getParentHeader(parentMiningBlock);
             }
             diffCalculator = chainConfiguration.getPreUnityDifficultyCalculator();
         }
@@ -1289,8 +1460,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 parentSeed = GENESIS_SEED;
                 newDiff = calculateFirstPoSDifficultyAtBlock(parent);
             } else {
-                BlockHeader parentStakingBlock = getParent(parentHdr).getHeader();
-                BlockHeader parentStakingBlocksParent = getParent(parentStakingBlock).getHeader();
+                BlockHeader parentStakingBlock = getParentHeader(parentHdr);
+                BlockHeader parentStakingBlocksParent = getParentHeader(parentStakingBlock);
                 parentSeed = ((StakingBlockHeader) parentStakingBlock).getSeed();
                 newDiff = chainConfiguration.getUnityDifficultyCalculator().calculateDifficulty(parentStakingBlock, parentStakingBlocksParent);
             }
@@ -1589,12 +1760,19 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return getBlockStore().getBlockByHashWithInfo(header.getParentHash());
     }
 
+    /** Retrieves the parent header without decoding the parent block body. */
+    private BlockHeader getParentHeader(BlockHeader header) {
+        return getBlockStore().getHeaderByHash(header.getParentHash());
+    }
+
     public boolean isValid(BlockHeader header) {
         /*
          * The block header should already be validated at this point by P2P or mining,
          * but we are including the validation in case future import paths forget to add it.
          */
-        if (!this.headerValidator.validate(header, LOG)) {
+        Block prevalidated = prevalidatedBlocks.get(ByteArrayWrapper.wrap(header.getHash()));
+        if ((prevalidated == null || prevalidated.getHeader() != header)
+                && !this.headerValidator.validate(header, LOG)) {
             return false;
         }
 
@@ -1603,23 +1781,23 @@ public class AionBlockchainImpl implements IAionBlockchain {
             return false;
         }
 
-        Block grandParent = getParent(parent.getHeader());
+        BlockHeader grandParent = getParentHeader(parent.getHeader());
         if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
             if (forkUtility.isUnityForkActive(header.getNumber())) {
                 if (grandParent == null) {
                     return false;
                 }
 
-                Block greatGrandParent = getParent(grandParent.getHeader());
+                BlockHeader greatGrandParent = getParentHeader(grandParent);
                 if (greatGrandParent == null) {
                     return false;
                 }
 
                 return unityParentBlockHeaderValidator.validate(header, parent.getHeader(), LOG, null) &&
-                        unityGreatGrandParentBlockHeaderValidator.validate(grandParent.getHeader(), greatGrandParent.getHeader(), header, LOG);
+                        unityGreatGrandParentBlockHeaderValidator.validate(grandParent, greatGrandParent, header, LOG);
             } else {
                 return preUnityParentBlockHeaderValidator.validate(header, parent.getHeader(), LOG, null) &&
-                        preUnityGrandParentBlockHeaderValidator.validate(parent.getHeader(), grandParent == null ? null : grandParent.getHeader(), header, LOG);
+                        preUnityGrandParentBlockHeaderValidator.validate(parent.getHeader(), grandParent, header, LOG);
             }
         } else  if (header.getSealType() == BlockSealType.SEAL_POS_BLOCK) {
             if (!forkUtility.isUnityForkActive(header.getNumber())) {
@@ -1632,14 +1810,14 @@ public class AionBlockchainImpl implements IAionBlockchain {
                 return false;
             }
 
-            Block greatGrandParent = getParent(grandParent.getHeader());
+            BlockHeader greatGrandParent = getParentHeader(grandParent);
             
             if (forkUtility.isUnityForkBlock(parent.getNumber())) {
                 BigInteger expectedDiff = calculateFirstPoSDifficultyAtBlock(parent);
                 if (!expectedDiff.equals(header.getDifficultyBI())) {
                     return false;
                 }
-                grandParent = new GenesisStakingBlock(expectedDiff);
+                grandParent = new GenesisStakingBlock(expectedDiff).getHeader();
             }
 
             BigInteger stake = null;
@@ -1652,7 +1830,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
             }
 
             return unityParentBlockHeaderValidator.validate(header, parent.getHeader(), LOG, stake) && 
-                    unityGreatGrandParentBlockHeaderValidator.validate(grandParent.getHeader(), greatGrandParent.getHeader(), header, LOG);
+                    unityGreatGrandParentBlockHeaderValidator.validate(grandParent, greatGrandParent, header, LOG);
 
         } else {
             LOG.debug("Invalid header seal type!");
@@ -1661,6 +1839,43 @@ public class AionBlockchainImpl implements IAionBlockchain {
         }
     }
 
+    /**
+     * Checks the rules of the given header that depend on its stored ancestors, without reading
+     * any state. The time stamp rule of staking blocks, which requires the stake of the signer,
+     * and the difficulty of the first staking block are left to the import.
+     *
+     * @param header a header that already passed the rules that do not depend on other blocks
+     * @return {@code true} if the ancestors of the header are stored and the rules pass
+     * @implNote Can be called concurrently with the import of other blocks.
+     */
+    public boolean isValidForRelay(BlockHeader header) {
+        BlockHeader parent = getParentHeader(header);
+        if (parent == null) {
+            return false;
+        }
+        BlockHeader grandParent = getParentHeader(parent);
+
+        if (forkUtility.isUnityForkActive(header.getNumber())) {
+            if (grandParent == null || forkUtility.isUnityForkBlock(parent.getNumber())) {
+                return false;
+            }
+            BlockHeader greatGrandParent = getParentHeader(grandParent);
+            if (greatGrandParent == null && header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
+                return false;
+            }
+
+            return unityRelayParentBlockHeaderValidator.validate(header, parent, LOG, null)
+                    && unityGreatGrandParentBlockHeaderValidator.validate(
+                            grandParent, greatGrandParent, header, LOG);
+        } else if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
+            return preUnityParentBlockHeaderValidator.validate(header, parent, LOG, null)
+                    && preUnityGrandParentBlockHeaderValidator.validate(
+                            parent, grandParent, header, LOG);
+        } else {
+            return false;
+        }
+    }
+
     /**
      * This mechanism enforces a homeostasis in terms of the time between blocks; a smaller period
      * between the last two blocks results in an increase in the difficulty level and thus
@@ -1683,7 +1898,11 @@ public class AionBlockchainImpl implements IAionBlockchain {
             byte[] trieHash = block.getTxTrieRoot();
             List<AionTransaction> txs = block.getTransactionsList();
 
-            byte[] trieListHash = calcTxTrie(txs);
+            // the trie of the same block may have been checked ahead of the import
+            byte[] trieListHash =
+                    prevalidatedBlocks.remove(block.getHashWrapper()) == block
+                            ? trieHash
+                            : calcTxTrie(txs);
             if (!Arrays.equals(trieHash, trieListHash)) {
                 LOG.warn(
                         "Block's given Trie Hash doesn't match: {} != {}",
@@ -1974,12 +2193,9 @@ public class AionBlockchainImpl implements IAionBlockchain {
     }
 
     @Override
-    public void dropImported(
-            long level,
-            List<ByteArrayWrapper> ranges,
-            Map<ByteArrayWrapper, List<Block>> blocks) {
+    public void dropImported(long level, List<ByteArrayWrapper> ranges) {
         try {
-            repository.getPendingBlockStore().dropPendingQueues(level, ranges, blocks);
+            repository.getPendingBlockStore().dropPendingQueues(level, ranges);
         } catch (Exception e) {
             LOG.error(
                     "Unable to delete used blocks from " + repository.toString() + " due to: ", e);
@@ -2089,10 +2305,10 @@ public class AionBlockchainImpl implements IAionBlockchain {
         }
 
         // identifying block we'll move from
-        Block startBlock = getBlockByNumber(blockNumber);
+        byte[] startBlockHash = getBlockStore().getBlockHashByNumber(blockNumber);
 
         // if nothing found on main chain, return empty array
-        if (startBlock == null) {
+        if (startBlockHash == null) {
             return emptyList();
         }
 
@@ -2103,6 +2319,28 @@ public class AionBlockchainImpl implements IAionBlockchain {
         return headers;
     }
 
+    @Override
+    public List<BlockHeader> getSkeletonHeaders(long blockNumber, int step, int limit) {
+        if (blockNumber < 0 || step <= 0 || limit <= 0) {
+            return emptyList();
+        }
+
+        long bestNumber = bestBlock.getNumber();
+        List<BlockHeader> headers = new ArrayList<>();
+        for (long number = blockNumber;
+                number <= bestNumber && headers.size() < limit;
+                number += step) {
+            // the hash is read from the index to avoid decoding the block
+            byte[] hash = getBlockStore().getBlockHashByNumber(number);
+            BlockHeader header = hash == null ? null : getBlockStore().getHeaderByHash(hash);
+            if (header == null) {
+                break;
+            }
+            headers.add(header);
+        }
+        return headers;
+    }
+
     /**
      * Finds up to limit blocks starting from blockNumber on main chain
      *
@@ -2142,13 +2380,8 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
         startNumber = blockNumber + qty - 1;
 
-        Block block = getBlockByNumber(startNumber);
-
-        if (block == null) {
-            return null;
-        }
-
-        return block.getHash();
+        // the hash is read from the index to avoid decoding the block
+        return getBlockStore().getBlockHashByNumber(startNumber);
     }
 
     // NOTE: Functionality removed because not used and untested
@@ -2312,17 +2545,7 @@ public class AionBlockchainImpl implements IAionBlockchain {
 
     @Override
     public List<byte[]> getListOfBodiesByHashes(List<byte[]> hashes) {
-        List<byte[]> bodies = new ArrayList<>(hashes.size());
-
-        for (byte[] hash : hashes) {
-            Block block = getBlockStore().getBlockByHash(hash);
-            if (block == null) {
-                break;
-            }
-            bodies.add(block.getEncodedBody());
-        }
-
-        return bodies;
+        return getBlockStore().getEncodedBodiesByHashes(hashes);
     }
 
     private void updateBestKnownBlock(Block block) {
@@ -1,6 +1,7 @@
 package org.aion.zero.impl.blockchain;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,17 +46,31 @@ import org.aion.zero.impl.types.AionGenesis;
 import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.db.DBUtils;
 import org.aion.zero.impl.pow.AionPoW;
+import org.aion.zero.impl.sync.FastSyncManager;
+import org.aion.zero.impl.sync.SkeletonHeaderSync;
 import org.aion.zero.impl.sync.NodeWrapper;
 import org.aion.zero.impl.sync.SyncMgr;
+import org.aion.zero.impl.sync.handler.AnnounceTxHandler;
 import org.aion.zero.impl.sync.handler.BlockPropagationHandler;
 import org.aion.zero.impl.sync.handler.BroadcastNewBlockHandler;
 import org.aion.zero.impl.sync.handler.BroadcastTxHandler;
+import org.aion.zero.impl.sync.handler.CompactBlockHandler;
 import org.aion.zero.impl.sync.handler.ReqBlocksBodiesHandler;
 import org.aion.zero.impl.sync.handler.ReqBlocksHeadersHandler;
 import org.aion.zero.impl.sync.handler.ReqStatusHandler;
+import org.aion.zero.impl.sync.handler.RequestBlockTxsHandler;
+import org.aion.zero.impl.sync.handler.RequestBlocksHandler;
+import org.aion.zero.impl.sync.handler.RequestSkeletonHandler;
+import org.aion.zero.impl.sync.handler.RequestTrieDataHandler;
+import org.aion.zero.impl.sync.handler.RequestTxHandler;
 import org.aion.zero.impl.sync.handler.ResBlocksBodiesHandler;
 import org.aion.zero.impl.sync.handler.ResBlocksHeadersHandler;
 import org.aion.zero.impl.sync.handler.ResStatusHandler;
+import org.aion.zero.impl.sync.handler.ResponseBlockTxsHandler;
+import org.aion.zero.impl.sync.handler.ResponseBlocksHandler;
+import org.aion.zero.impl.sync.handler.ResponseSkeletonHandler;
+import org.aion.zero.impl.sync.handler.ResponseTrieDataHandler;
+import org.aion.zero.impl.tx.TxGossip;
 import org.aion.zero.impl.types.BlockContext;
 import org.aion.zero.impl.types.StakingBlock;
 import org.slf4j.Logger;
@@ -75,6 +90,8 @@ public class AionHub {
 
     private BlockPropagationHandler propHandler;
 
+    private TxGossip txGossip;
+
     private AionPendingStateImpl mempool;
 
     private AionBlockchainImpl blockchain;
@@ -87,6 +104,9 @@ public class AionHub {
 
     private static final byte apiVersion = 2;
 
+    /** The file in the database directory where the progress of the fast sync is persisted. */
+    private static final String FAST_SYNC_STATE_FILE = "fastsync.rlp";
+
     /** Test functionality for checking if the hub has been shut down. */
     public boolean isRunning() {
         return start.get();
@@ -164,22 +184,43 @@ public class AionHub {
         CfgNetP2p cfgNetP2p = this.cfg.getNet().getP2p();
         this.chainId = this.cfg.getNet().getId();
 
-        // there are two p2p implementation , now just point to impl1.
-        this.p2pMgr =
-                new P2pMgr(
-                        AionLoggerFactory.getLogger(LogEnum.P2P.name()),
-                        AionLoggerFactory.getLogger(LogEnum.SURVEY.name()),
-                        this.chainId,
-                        Version.KERNEL_VERSION,
-                        this.cfg.getId(),
-                        cfgNetP2p.getIp(),
-                        cfgNetP2p.getPort(),
-                        this.cfg.getNet().getNodes(),
-                        cfgNetP2p.getDiscover(),
-                        cfgNetP2p.getMaxTempNodes(),
-                        cfgNetP2p.getMaxActiveNodes(),
-                        cfgNetP2p.getBootlistSyncOnly(),
-                        cfgNetP2p.getErrorTolerance());
+        // impl2 spreads the network I/O over several selector threads when configured to
+        if (cfgNetP2p.getSelectorThreads() > 0) {
+            this.p2pMgr =
+                    new org.aion.p2p.impl2.P2pMgr(
+                            AionLoggerFactory.getLogger(LogEnum.P2P.name()),
+                            AionLoggerFactory.getLogger(LogEnum.SURVEY.name()),
+                            this.chainId,
+                            Version.KERNEL_VERSION,
+                            this.cfg.getId(),
+                            cfgNetP2p.getIp(),
+                            cfgNetP2p.getPort(),
+                            this.cfg.getNet().getNodes(),
+                            cfgNetP2p.getDiscover(),
+                            cfgNetP2p.getMaxTempNodes(),
+                            cfgNetP2p.getMaxActiveNodes(),
+                            cfgNetP2p.getBootlistSyncOnly(),
+                            cfgNetP2p.getErrorTolerance(),
+                            cfgNetP2p.isCompressionEnabled(),
+                            cfgNetP2p.getSelectorThreads());
+        } else {
+            this.p2pMgr =
+                    new P2pMgr(
+                            AionLoggerFactory.getLogger(LogEnum.P2P.name()),
+                            AionLoggerFactory.getLogger(LogEnum.SURVEY.name()),
+                            this.chainId,
+                            Version.KERNEL_VERSION,
+                            this.cfg.getId(),
+                            cfgNetP2p.getIp(),
+                            cfgNetP2p.getPort(),
+                            this.cfg.getNet().getNodes(),
+                            cfgNetP2p.getDiscover(),
+                            cfgNetP2p.getMaxTempNodes(),
+                            cfgNetP2p.getMaxActiveNodes(),
+                            cfgNetP2p.getBootlistSyncOnly(),
+                            cfgNetP2p.getErrorTolerance(),
+                            cfgNetP2p.isCompressionEnabled());
+        }
 
         this.syncMgr = new SyncMgr(
                 blockchain,
@@ -187,7 +228,13 @@ public class AionHub {
                 eventMgr,
                 cfg.getSync().getShowStatus(),
                 cfg.getSync().getShowStatistics(),
-                cfg.getNet().getP2p().getMaxActiveNodes());
+                cfg.getNet().getP2p().getMaxActiveNodes(),
+                cfg.getSync().getFastSync() || cfg.getSync().getCheckpointHash() != null
+                        ? new File(cfg.getDatabaseDir(), FAST_SYNC_STATE_FILE)
+                        : null,
+                cfg.getSync().getSkeletonSync(),
+                cfg.getSync().getCheckpointHash(),
+                cfg.getSync().getCheckpointNumber());
 
         ChainConfiguration chainConfig = new ChainConfiguration();
         this.propHandler =
@@ -199,7 +246,10 @@ public class AionHub {
                         chainConfig.createBlockHeaderValidator(),
                         cfg.getNet().getP2p().inSyncOnlyMode(),
                         apiVersion,
-                        mempool);
+                        mempool,
+                        cfg.getSync().getFastRelay());
+
+        this.txGossip = new TxGossip(p2pMgr, AionLoggerFactory.getLogger(LogEnum.TX.name()));
 
         registerCallback();
 
@@ -254,8 +304,25 @@ public class AionHub {
         cbs.add(new ResBlocksHeadersHandler(syncLOG, surveyLOG, syncMgr, p2pMgr));
         cbs.add(new ReqBlocksBodiesHandler(syncLOG, blockchain, syncMgr, p2pMgr, inSyncOnlyMode));
         cbs.add(new ResBlocksBodiesHandler(syncLOG, surveyLOG, syncMgr, p2pMgr));
-        cbs.add(new BroadcastTxHandler(syncLOG, mempool, p2pMgr, inSyncOnlyMode));
+        cbs.add(new BroadcastTxHandler(syncLOG, mempool, p2pMgr, txGossip, inSyncOnlyMode));
+        cbs.add(new AnnounceTxHandler(syncLOG, txGossip, p2pMgr, inSyncOnlyMode));
+        cbs.add(new RequestTxHandler(syncLOG, txGossip, p2pMgr, inSyncOnlyMode));
         cbs.add(new BroadcastNewBlockHandler(syncLOG, surveyLOG, propHandler, p2pMgr));
+        cbs.add(new CompactBlockHandler(syncLOG, propHandler, p2pMgr));
+        cbs.add(new RequestBlockTxsHandler(syncLOG, propHandler, p2pMgr));
+        cbs.add(new ResponseBlockTxsHandler(syncLOG, propHandler, p2pMgr));
+        cbs.add(new RequestTrieDataHandler(syncLOG, blockchain, p2pMgr));
+        cbs.add(new RequestBlocksHandler(syncLOG, blockchain, p2pMgr));
+        cbs.add(new RequestSkeletonHandler(syncLOG, blockchain, p2pMgr, inSyncOnlyMode));
+        SkeletonHeaderSync skeletonSync = syncMgr.getSkeletonSync();
+        if (skeletonSync != null) {
+            cbs.add(new ResponseSkeletonHandler(syncLOG, skeletonSync, p2pMgr));
+        }
+        FastSyncManager fastSyncMgr = syncMgr.getFastSyncManager();
+        if (fastSyncMgr != null) {
+            cbs.add(new ResponseTrieDataHandler(syncLOG, fastSyncMgr.getReceivedTrieData()));
+            cbs.add(new ResponseBlocksHandler(syncLOG, fastSyncMgr, p2pMgr));
+        }
         this.p2pMgr.register(cbs);
     }
 
@@ -311,6 +378,10 @@ public class AionHub {
         return this.eventMgr;
     }
 
+    public TxGossip getTxGossip() {
+        return txGossip;
+    }
+
     public BlockPropagationHandler getPropHandler() {
         return propHandler;
     }
@@ -520,6 +591,10 @@ public class AionHub {
             genLOG.info("<shutdown-sync-mgr>");
         }
 
+        if (propHandler != null) {
+            propHandler.shutdown();
+        }
+
         if (p2pMgr != null) {
             p2pMgr.shutdown();
             genLOG.info("<shutdown-p2p-mgr>");
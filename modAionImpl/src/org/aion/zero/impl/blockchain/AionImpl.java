@@ -68,7 +68,7 @@ public class AionImpl implements IAionChain {
                         + cfg.getNet().getP2p().getPort()
                         + ">");
 
-        collector = new TxCollector(this.aionHub.getP2pMgr(), LOG_TX);
+        collector = new TxCollector(this.aionHub.getTxGossip(), LOG_TX);
     }
 
     public static AionImpl inst() {
@@ -224,6 +224,27 @@ public class ChainConfiguration {
         return new ParentBlockHeaderValidator(unityRules);
     }
 
+    /**
+     * Creates the parent rules checked before relaying a block. Unlike the rules used for import,
+     * the staking block time stamp is not checked, since it depends on the stake of the signer.
+     */
+    public ParentBlockHeaderValidator createUnityRelayParentBlockHeaderValidator() {
+        List<DependentBlockHeaderRule> rules =
+                Arrays.asList(
+                        new BlockNumberRule(),
+                        new ParentOppositeTypeRule(),
+                        new TimeStampRule(),
+                        new EnergyLimitRule(
+                                getConstants().getEnergyDivisorLimitLong(),
+                                getConstants().getEnergyLowerBoundLong()));
+
+        Map<BlockSealType, List<DependentBlockHeaderRule>> unityRules = new EnumMap<>(BlockSealType.class);
+        unityRules.put(BlockSealType.SEAL_POW_BLOCK, rules);
+        unityRules.put(BlockSealType.SEAL_POS_BLOCK, rules);
+
+        return new ParentBlockHeaderValidator(unityRules);
+    }
+
     public IDifficultyCalculator getUnityDifficultyCalculator() {
         return unityDifficultyCalculator;
     }
@@ -1,5 +1,7 @@
 package org.aion.zero.impl.blockchain;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +11,7 @@ import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.mcf.db.Repository;
 import org.aion.types.AionAddress;
 import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.db.DatabaseCheckpoint;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.BlockContext;
 import org.aion.zero.impl.sync.DatabaseType;
@@ -45,6 +48,14 @@ public interface IAionBlockchain extends UnityChain {
      */
     List<Block> getBlocksByRange(long first, long last);
 
+    /**
+     * Returns the encodings of a range of main chain blocks. Recently stored and served ranges are
+     * returned from a cache without decoding or re-encoding the blocks.
+     *
+     * @see #getBlocksByRange(long, long)
+     */
+    List<byte[]> getEncodedBlocksByRange(long first, long last);
+
     /**
      * Recovery functionality for rebuilding the world state.
      *
@@ -64,6 +75,12 @@ public interface IAionBlockchain extends UnityChain {
      */
     boolean skipTryToConnect(long blockNumber);
 
+    /**
+     * Checks the rules of the given header that can be verified against its stored ancestors
+     * without executing the parent state, such that the block can be relayed before its import.
+     */
+    boolean isValidForRelay(BlockHeader header);
+
     /**
      * Retrieves the value for a given node from the database associated with the given type.
      *
@@ -92,6 +109,16 @@ public interface IAionBlockchain extends UnityChain {
     Map<ByteArrayWrapper, byte[]> getReferencedTrieNodes(
             byte[] value, int limit, DatabaseType dbType);
 
+    /**
+     * Retrieves the stored details for the contracts with addresses greater than or equal to the
+     * given one, in the unsigned lexicographic order of the addresses.
+     *
+     * @param address the address where the enumeration starts
+     * @param limit the maximum number of contracts to be retrieved
+     * @return the encoded details of at most {@code limit} contracts ordered by address
+     */
+    Map<ByteArrayWrapper, byte[]> getContractDetailsFrom(byte[] address, int limit);
+
     long getSize();
 
     /**
@@ -122,11 +149,8 @@ public interface IAionBlockchain extends UnityChain {
      *
      * @param level the block height of the range starting point
      * @param ranges the identifiers for the ranges to be deleted
-     * @param blocks the range identifier to blocks mappings to me deleted (used to ensure that if
-     *     the ranges have been expanded, only the relevant blocks get deleted)
      */
-    void dropImported(
-        long level, List<ByteArrayWrapper> ranges, Map<ByteArrayWrapper, List<Block>> blocks);
+    void dropImported(long level, List<ByteArrayWrapper> ranges);
 
     void setBestBlock(Block block);
 
@@ -134,6 +158,14 @@ public interface IAionBlockchain extends UnityChain {
 
     void close();
 
+    /**
+     * Creates a consistent checkpoint of all the kernel databases at the current best block in the
+     * given directory, which must not exist. Block import is paused while the checkpoint is taken.
+     *
+     * @throws IOException when the checkpoint cannot be created
+     */
+    DatabaseCheckpoint createCheckpoint(File directory) throws IOException;
+
     void setTotalDifficulty(BigInteger totalDifficulty);
 
     byte[] getBestBlockHash();
@@ -150,6 +182,17 @@ public interface IAionBlockchain extends UnityChain {
 
     List<BlockHeader> getListOfHeadersStartFrom(long number, int limit);
 
+    /**
+     * Returns the main chain headers with the heights {@code number}, {@code number + step}, {@code
+     * number + 2 * step} and so on, stopping at the best block.
+     *
+     * @param number the height of the first header
+     * @param step the distance between the heights of consecutive headers
+     * @param limit the maximum number of headers returned
+     * @return the headers in ascending order of their heights or an empty list if none are found
+     */
+    List<BlockHeader> getSkeletonHeaders(long number, int step, int limit);
+
     // /** Returns the list of headers for the main chain.
     //  *  Returns emptyList() for side chain blocks.
     //  */
@@ -112,6 +112,20 @@ public class Arguments {
                     "drops all databases except for block and index when not given a parameter or starting from 0 and redoes import of all known main chain blocks")
     private String redoImport = null;
 
+    @Option(
+            names = {"--checkpoint"},
+            arity = "1",
+            paramLabel = "<directory>",
+            description = "creates a consistent copy of all the databases in the given directory")
+    private String checkpoint = null;
+
+    @Option(
+            names = {"--restore"},
+            arity = "1",
+            paramLabel = "<directory>",
+            description = "restores the databases from a checkpoint into the empty database directory")
+    private String restore = null;
+
     /** Compacts the account options into specific commands. */
     public static String[] preProcess(String[] arguments) {
         List<String> list = new ArrayList<>();
@@ -189,4 +203,12 @@ public class Arguments {
     public String isRedoImport() {
         return redoImport;
     }
+
+    public String getCheckpoint() {
+        return checkpoint;
+    }
+
+    public String getRestore() {
+        return restore;
+    }
 }
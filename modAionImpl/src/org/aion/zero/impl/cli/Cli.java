@@ -89,7 +89,9 @@ public class Cli {
         PRUNE_STATE,
         DEV,
         DB_COMPACT,
-        REDO_IMPORT
+        REDO_IMPORT,
+        CHECKPOINT,
+        RESTORE
     }
 
     public ReturnType callAndInitializeAvm(String[] args, CfgAion cfg) {
@@ -414,6 +416,18 @@ public class Cli {
                 }
             }
 
+            if (options.getCheckpoint() != null) {
+                return DBUtils.createCheckpoint(options.getCheckpoint()) == DBUtils.Status.SUCCESS
+                        ? EXIT
+                        : ERROR;
+            }
+
+            if (options.getRestore() != null) {
+                return DBUtils.restoreCheckpoint(options.getRestore()) == DBUtils.Status.SUCCESS
+                        ? EXIT
+                        : ERROR;
+            }
+
 
             // if no return happened earlier, run the kernel
             return RUN;
@@ -670,6 +684,12 @@ public class Cli {
         if (options.isRedoImport() != null) {
             return TaskPriority.REDO_IMPORT;
         }
+        if (options.getCheckpoint() != null) {
+            return TaskPriority.CHECKPOINT;
+        }
+        if (options.getRestore() != null) {
+            return TaskPriority.RESTORE;
+        }
         return TaskPriority.NONE;
     }
 
@@ -731,6 +751,14 @@ public class Cli {
                 && options.isRedoImport() != null) {
             skippedTasks.add("--redo-import");
         }
+        if (breakingTaskPriority.compareTo(TaskPriority.CHECKPOINT) < 0
+                && options.getCheckpoint() != null) {
+            skippedTasks.add("--checkpoint");
+        }
+        if (breakingTaskPriority.compareTo(TaskPriority.RESTORE) < 0
+                && options.getRestore() != null) {
+            skippedTasks.add("--restore");
+        }
 
         return skippedTasks;
     }
@@ -1,6 +1,8 @@
 package org.aion.zero.impl.cli;
 
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import org.aion.types.AionAddress;
 import org.aion.util.bytes.ByteUtil;
@@ -21,6 +23,9 @@ public class DevCLI {
 
     @CommandLine.ArgGroup(multiplicity = "1") private Composite args;
 
+    private static final List<String> DEFAULT_REPLAY_CONFIGURATIONS =
+            List.of("leveldb", "rocksdb", "rocksdb:lz4", "rocksdb:zstd", "h2", "mockdb");
+
     /*
      * Creates an instance of the DevCli class and prints the usage information to the specified stream
      */
@@ -149,6 +154,46 @@ public class DevCLI {
         }
     }
 
+    public static Cli.ReturnType writeCompressionReport(String[] parameters) {
+        int sampleSize = 100_000;
+        if (parameters.length > 1) {
+            try {
+                sampleSize = Integer.parseInt(parameters[1]);
+            } catch (NumberFormatException e) {
+                System.out.println(
+                        "The given argument «" + parameters[1] + "» cannot be converted to a number.");
+                return Cli.ReturnType.ERROR;
+            }
+            if (sampleSize < 1) {
+                System.out.println("The given argument «" + sampleSize + "» is not valid.");
+                return Cli.ReturnType.ERROR;
+            }
+        }
+
+        DBUtils.Status status = DBUtils.printCompressionReport(parameters[0], sampleSize);
+
+        if (status == DBUtils.Status.SUCCESS) {
+            return Cli.ReturnType.EXIT;
+        } else {
+            return Cli.ReturnType.ERROR;
+        }
+    }
+
+    public static Cli.ReturnType replayTrace(String[] parameters) {
+        List<String> configurations =
+                parameters.length > 1
+                        ? Arrays.asList(parameters).subList(1, parameters.length)
+                        : DEFAULT_REPLAY_CONFIGURATIONS;
+
+        DBUtils.Status status = DBUtils.replayTrace(parameters[0], configurations);
+
+        if (status == DBUtils.Status.SUCCESS) {
+            return Cli.ReturnType.EXIT;
+        } else {
+            return Cli.ReturnType.ERROR;
+        }
+    }
+
     public Composite getArgs() {
         return args;
     }
@@ -191,6 +236,10 @@ public class DevCLI {
                 return printAccountDetails(args.queryAccountParams);
             } else if (args.stopAtParam != null) {
                 return stopAt(args.stopAtParam);
+            } else if (args.compressionReportParams != null) {
+                return writeCompressionReport(args.compressionReportParams);
+            } else if (args.replayTraceParams != null) {
+                return replayTrace(args.replayTraceParams);
             }
         } catch (IllegalArgumentException e) {
             printUsage(System.out, this);
@@ -263,8 +312,30 @@ public class DevCLI {
                 arity = "1")
         private Long stopAtParam = null;
 
+        @CommandLine.Option(
+                names = {"cr", "compression-report"},
+                paramLabel = "<db_name> [<sample_size>]",
+                description =
+                        "measures the on-disk size and read latency of a sample of the given database"
+                                + " under each supported compression codec and recommends a setting;"
+                                + " the kernel must not be running",
+                arity = "1..2")
+        private String[] compressionReportParams = null;
+
+        @CommandLine.Option(
+                names = {"rt", "replay-trace"},
+                paramLabel = "<trace_file> [<vendor>[:<codec>[:<level>]][:nocache]]...",
+                description =
+                        "replays a database trace recorded using the trace-path db setting against"
+                                + " each given database configuration and reports throughput,"
+                                + " latency, write amplification and size on disk",
+                arity = "1..*")
+        private String[] replayTraceParams = null;
+
         void checkOptions() {
             if (stopAtParam == null
+                    && replayTraceParams == null
+                    && compressionReportParams == null
                     && queryAccountParams == null
                     && queryTxParams == null
                     && queryBlockParams == null
@@ -312,5 +383,13 @@ public class DevCLI {
         void setStopAtParam(Long stopAtParam) {
             this.stopAtParam = stopAtParam;
         }
+
+        void setCompressionReportParams(String[] compressionReportParams) {
+            this.compressionReportParams = compressionReportParams;
+        }
+
+        void setReplayTraceParams(String[] replayTraceParams) {
+            this.replayTraceParams = replayTraceParams;
+        }
     }
 }
@@ -4,9 +4,11 @@ import com.google.common.base.Objects;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -20,6 +22,7 @@ public class CfgDb {
         public static final String DEFAULT = "default";
 
         public static final String BLOCK = "block";
+        public static final String HEADER = "header";
         public static final String INDEX = "index";
         public static final String PENDING_BLOCK = "pendingBlock";
 
@@ -31,6 +34,7 @@ public class CfgDb {
         public static final String GRAPH = "graph";
 
         public static final String STATE = "state";
+        public static final String BLOCK_ARCHIVE = "blockArchive";
         public static final String STATE_ARCHIVE = "stateArchive";
         public static final String TRANSACTION = "transaction";
 
@@ -46,13 +50,17 @@ public class CfgDb {
         public static final String DB_PATH = "db_path";
 
         public static final String CHECK_INTEGRITY = "check_integrity";
+        public static final String ENABLE_BLOCK_ARCHIVE = "enable_block_archive";
 
         public static final String ENABLE_AUTO_COMMIT = "enable_auto_commit";
         public static final String ENABLE_DB_CACHE = "enable_db_cache";
         public static final String ENABLE_DB_COMPRESSION = "enable_db_compression";
+        public static final String COMPRESSION_CODEC = "compression_codec";
+        public static final String COMPRESSION_LEVEL = "compression_level";
         public static final String DB_CACHE_SIZE = "cache_size";
 
         public static final String ENABLE_LOCKING = "enable_locking";
+        public static final String TRACE_PATH = "trace_path";
 
         public static final String MAX_FD_ALLOC = "max_fd_alloc_size";
         public static final String BLOCK_SIZE = "block_size";
@@ -68,6 +76,10 @@ public class CfgDb {
     private CfgPrune prune;
     private PruneOption prune_option;
     private boolean internalTxStorage;
+    private boolean blockArchive;
+    private String tracePath = "";
+    /** Compression settings for individual databases given as {@code codec[:level]}. */
+    private Map<String, String> compressionCodecs = new TreeMap<>();
 
     /**
      * Enabling expert mode allows more detailed database configurations.
@@ -113,6 +125,15 @@ public class CfgDb {
                         case "internal-tx-storage":
                             this.internalTxStorage = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                        case "block-archive":
+                            this.blockArchive = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case "trace-path":
+                            {
+                                String value = ConfigUtil.readValue(sr);
+                                this.tracePath = value == null ? "" : value.trim();
+                                break;
+                            }
                             // parameter considered only when expert==false
                         case "vendor":
                             this.vendor = ConfigUtil.readValue(sr);
@@ -121,6 +142,10 @@ public class CfgDb {
                         case Props.ENABLE_DB_COMPRESSION:
                             this.compression = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                            // parameter considered only when expert==false
+                        case "compression":
+                            compressionFromXML(sr);
+                            break;
                             // parameter considered only when expert==true
                         case Names.DEFAULT:
                             {
@@ -204,6 +229,24 @@ public class CfgDb {
         }
     }
 
+    private void compressionFromXML(final XMLStreamReader sr) throws XMLStreamException {
+        loop:
+        while (sr.hasNext()) {
+            int eventType = sr.next();
+            switch (eventType) {
+                case XMLStreamReader.START_ELEMENT:
+                    String dbName = sr.getLocalName();
+                    String value = ConfigUtil.readValue(sr);
+                    if (value != null && !value.trim().isEmpty()) {
+                        this.compressionCodecs.put(dbName, value.trim());
+                    }
+                    break;
+                case XMLStreamReader.END_ELEMENT:
+                    break loop;
+            }
+        }
+    }
+
     public String toXML() {
         final XMLOutputFactory output = XMLOutputFactory.newInstance();
         XMLStreamWriter xmlWriter;
@@ -252,6 +295,20 @@ public class CfgDb {
             xmlWriter.writeCharacters(String.valueOf(internalTxStorage));
             xmlWriter.writeEndElement();
 
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment("Boolean value. Enable/disable storing finalized main chain blocks in memory-mapped flat files for faster range reads.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement("block-archive");
+            xmlWriter.writeCharacters(String.valueOf(blockArchive));
+            xmlWriter.writeEndElement();
+
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeComment("Directory where database calls are recorded for benchmarking with the replay-trace dev command. Leave empty to disable recording.");
+            xmlWriter.writeCharacters("\r\n\t\t");
+            xmlWriter.writeStartElement("trace-path");
+            xmlWriter.writeCharacters(tracePath);
+            xmlWriter.writeEndElement();
+
             if (!expert) {
                 xmlWriter.writeCharacters("\r\n\t\t");
                 xmlWriter.writeComment(
@@ -271,6 +328,25 @@ public class CfgDb {
                 xmlWriter.writeStartElement(Props.ENABLE_DB_COMPRESSION);
                 xmlWriter.writeCharacters(String.valueOf(this.compression));
                 xmlWriter.writeEndElement();
+
+                xmlWriter.writeCharacters("\r\n\t\t");
+                xmlWriter.writeComment(
+                        "Compression codec for individual databases as codec[:level], e.g. <state>zstd:3</state>; supported codecs: none, lz4, zstd, zstd-dict.");
+                xmlWriter.writeCharacters("\r\n\t\t");
+                xmlWriter.writeComment(
+                        "Codecs other than lz4 and none are applied only by rocksdb. Use the compression-report dev command to choose settings.");
+                xmlWriter.writeCharacters("\r\n\t\t");
+                xmlWriter.writeStartElement("compression");
+                for (Map.Entry<String, String> entry : compressionCodecs.entrySet()) {
+                    xmlWriter.writeCharacters("\r\n\t\t\t");
+                    xmlWriter.writeStartElement(entry.getKey());
+                    xmlWriter.writeCharacters(entry.getValue());
+                    xmlWriter.writeEndElement();
+                }
+                if (!compressionCodecs.isEmpty()) {
+                    xmlWriter.writeCharacters("\r\n\t\t");
+                }
+                xmlWriter.writeEndElement();
             } else {
                 for (Map.Entry<String, CfgDbDetails> entry : specificConfig.entrySet()) {
                     entry.getValue().toXML(entry.getKey(), xmlWriter, expert);
@@ -303,6 +379,26 @@ public class CfgDb {
         return compression;
     }
 
+    /**
+     * Sets the compression used by the database with the given name.
+     *
+     * @param dbName one of the {@link Names} values; {@link Names#DEFAULT} applies to all databases
+     *     without a specific setting
+     * @param codec the codec and optional level formatted as {@code codec[:level]} or {@code null}
+     *     to remove the setting
+     */
+    public void setCompressionCodec(String dbName, String codec) {
+        if (codec == null) {
+            this.compressionCodecs.remove(dbName);
+        } else {
+            this.compressionCodecs.put(dbName, codec);
+        }
+    }
+
+    public Map<String, String> getCompressionCodecs() {
+        return Collections.unmodifiableMap(compressionCodecs);
+    }
+
     public String getPath() {
         return path;
     }
@@ -327,6 +423,22 @@ public class CfgDb {
         this.internalTxStorage = isEnabled;
     }
 
+    public boolean isBlockArchiveEnabled() {
+        return blockArchive;
+    }
+
+    public void setBlockArchive(boolean isEnabled) {
+        this.blockArchive = isEnabled;
+    }
+
+    public String getTracePath() {
+        return tracePath;
+    }
+
+    public void setTracePath(String tracePath) {
+        this.tracePath = tracePath == null ? "" : tracePath;
+    }
+
     public CfgPrune getPrune() {
         return this.prune;
     }
@@ -404,11 +516,21 @@ public class CfgDb {
 
             Properties props = propSet.get(Names.DEFAULT);
             props.setProperty(Props.CHECK_INTEGRITY, String.valueOf(this.check_integrity));
+            props.setProperty(Props.ENABLE_BLOCK_ARCHIVE, String.valueOf(this.blockArchive));
+            if (!tracePath.isEmpty()) {
+                for (Properties specific : propSet.values()) {
+                    specific.setProperty(Props.TRACE_PATH, tracePath);
+                }
+            }
         } else {
             Properties props = new Properties();
             props.setProperty(Props.DB_TYPE, this.vendor);
             props.setProperty(Props.ENABLE_DB_COMPRESSION, String.valueOf(this.compression));
             props.setProperty(Props.CHECK_INTEGRITY, String.valueOf(this.check_integrity));
+            props.setProperty(Props.ENABLE_BLOCK_ARCHIVE, String.valueOf(this.blockArchive));
+            if (!tracePath.isEmpty()) {
+                props.setProperty(Props.TRACE_PATH, tracePath);
+            }
 
             props.setProperty(Props.ENABLE_DB_CACHE, "true");
             props.setProperty(Props.DB_CACHE_SIZE, String.valueOf(128 * (int) Utils.MEGA_BYTE));
@@ -420,12 +542,42 @@ public class CfgDb {
             props.setProperty(Props.WRITE_BUFFER_SIZE, String.valueOf(64 * (int) Utils.MEGA_BYTE));
             props.setProperty(Props.READ_BUFFER_SIZE, String.valueOf(64 * (int) Utils.MEGA_BYTE));
 
+            String defaultCodec = compressionCodecs.get(Names.DEFAULT);
+            if (defaultCodec != null) {
+                setCompressionProperties(props, defaultCodec);
+            }
             propSet.put(Names.DEFAULT, props);
+
+            // databases with their own codec get a copy of the default properties
+            for (Map.Entry<String, String> entry : compressionCodecs.entrySet()) {
+                if (!entry.getKey().equals(Names.DEFAULT)) {
+                    Properties specific = new Properties();
+                    specific.putAll(props);
+                    setCompressionProperties(specific, entry.getValue());
+                    propSet.put(entry.getKey(), specific);
+                }
+            }
         }
 
         return propSet;
     }
 
+    /** Parses a {@code codec[:level]} value into the codec and level properties. */
+    static void setCompressionProperties(Properties props, String value) {
+        int separator = value.indexOf(':');
+        if (separator < 0) {
+            props.setProperty(Props.COMPRESSION_CODEC, value.trim());
+        } else {
+            props.setProperty(Props.COMPRESSION_CODEC, value.substring(0, separator).trim());
+            String level = value.substring(separator + 1).trim();
+            try {
+                props.setProperty(Props.COMPRESSION_LEVEL, String.valueOf(Integer.parseInt(level)));
+            } catch (NumberFormatException e) {
+                // the codec's default level is used for invalid values
+            }
+        }
+    }
+
     public void setDatabasePath(String value) {
         path = value;
     }
@@ -437,6 +589,9 @@ public class CfgDb {
         CfgDb cfgDb = (CfgDb) o;
         return compression == cfgDb.compression
                 && check_integrity == cfgDb.check_integrity
+                && blockArchive == cfgDb.blockArchive
+                && Objects.equal(compressionCodecs, cfgDb.compressionCodecs)
+                && Objects.equal(tracePath, cfgDb.tracePath)
                 && expert == cfgDb.expert
                 && Objects.equal(path, cfgDb.path)
                 && Objects.equal(vendor, cfgDb.vendor)
@@ -452,6 +607,9 @@ public class CfgDb {
                 vendor,
                 compression,
                 check_integrity,
+                blockArchive,
+                compressionCodecs,
+                tracePath,
                 prune,
                 prune_option,
                 expert,
@@ -25,6 +25,8 @@ public class CfgDbDetails {
 
     public boolean enable_db_cache;
     public boolean enable_db_compression;
+    /** Optional codec formatted as {@code codec[:level]}; overrides {@link #enable_db_compression}. */
+    public String compression_codec;
 
     public boolean enable_auto_commit;
     public String max_heap_cache_size;
@@ -50,6 +52,9 @@ public class CfgDbDetails {
                         case Props.ENABLE_DB_COMPRESSION:
                             this.enable_db_compression = Boolean.parseBoolean(ConfigUtil.readValue(sr));
                             break;
+                        case Props.COMPRESSION_CODEC:
+                            this.compression_codec = ConfigUtil.readValue(sr);
+                            break;
                         default:
                             ConfigUtil.skipElement(sr);
                             break;
@@ -83,6 +88,13 @@ public class CfgDbDetails {
         xmlWriter.writeCharacters(String.valueOf(this.enable_db_compression));
         xmlWriter.writeEndElement();
 
+        if (this.compression_codec != null) {
+            xmlWriter.writeCharacters("\r\n\t\t\t");
+            xmlWriter.writeStartElement(Props.COMPRESSION_CODEC);
+            xmlWriter.writeCharacters(this.compression_codec);
+            xmlWriter.writeEndElement();
+        }
+
         xmlWriter.writeCharacters("\r\n\t\t");
         xmlWriter.writeEndElement();
     }
@@ -94,6 +106,9 @@ public class CfgDbDetails {
         props.setProperty(Props.ENABLE_DB_CACHE, String.valueOf(this.enable_db_cache));
         props.setProperty(Props.ENABLE_DB_COMPRESSION, String.valueOf(this.enable_db_compression));
         props.setProperty(Props.ENABLE_AUTO_COMMIT, String.valueOf(this.enable_auto_commit));
+        if (this.compression_codec != null) {
+            CfgDb.setCompressionProperties(props, this.compression_codec);
+        }
 
         return props;
     }
@@ -108,6 +123,7 @@ public class CfgDbDetails {
                 && enable_auto_commit == that.enable_auto_commit
                 && enable_heap_cache_stats == that.enable_heap_cache_stats
                 && Objects.equal(vendor, that.vendor)
+                && Objects.equal(compression_codec, that.compression_codec)
                 && Objects.equal(max_heap_cache_size, that.max_heap_cache_size);
     }
 
@@ -117,6 +133,7 @@ public class CfgDbDetails {
                 vendor,
                 enable_db_cache,
                 enable_db_compression,
+                compression_codec,
                 enable_auto_commit,
                 max_heap_cache_size,
                 enable_heap_cache_stats);
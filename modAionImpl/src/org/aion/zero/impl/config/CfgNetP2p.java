@@ -21,6 +21,8 @@ public final class CfgNetP2p {
         this.errorTolerance = 50;
         this.clusterNodeMode = false;
         this.syncOnlyMode = false;
+        this.compression = true;
+        this.selectorThreads = 0;
     }
 
     private String ip;
@@ -41,6 +43,10 @@ public final class CfgNetP2p {
 
     private int errorTolerance;
 
+    private boolean compression;
+
+    private int selectorThreads;
+
     public void fromXML(final XMLStreamReader sr) throws XMLStreamException {
         loop:
         while (sr.hasNext()) {
@@ -76,6 +82,12 @@ public final class CfgNetP2p {
                         case "err-tolerance":
                             this.errorTolerance = Integer.parseInt(ConfigUtil.readValue(sr));
                             break;
+                        case "compression":
+                            this.compression = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case "selector-threads":
+                            this.selectorThreads = Integer.parseInt(ConfigUtil.readValue(sr));
+                            break;
                         default:
                             // ConfigUtil.skipElement(sr);
                             break;
@@ -179,6 +191,19 @@ public final class CfgNetP2p {
         return syncOnlyMode;
     }
 
+    /** Whether message compression is offered to peers that support it. */
+    public boolean isCompressionEnabled() {
+        return compression;
+    }
+
+    /**
+     * The number of selector threads used for the network I/O. The single threaded p2p manager is
+     * used when this is not positive.
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -192,6 +217,8 @@ public final class CfgNetP2p {
                 && maxTempNodes == cfgNetP2p.maxTempNodes
                 && maxActiveNodes == cfgNetP2p.maxActiveNodes
                 && errorTolerance == cfgNetP2p.errorTolerance
+                && compression == cfgNetP2p.compression
+                && selectorThreads == cfgNetP2p.selectorThreads
                 && Objects.equal(ip, cfgNetP2p.ip);
     }
 
@@ -206,6 +233,8 @@ public final class CfgNetP2p {
                 syncOnlyMode,
                 maxTempNodes,
                 maxActiveNodes,
-                errorTolerance);
+                errorTolerance,
+                compression,
+                selectorThreads);
     }
 }
@@ -11,15 +11,26 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
+import org.aion.util.bytes.ByteUtil;
 
 /** @author chris */
 public final class CfgSync {
 
     private boolean showStatus;
     private Set<StatsType> showStatistics;
+    private boolean fastSync;
+    private boolean skeletonSync;
+    private boolean fastRelay;
+    private byte[] checkpointHash;
+    private long checkpointNumber;
 
     public CfgSync() {
         this.showStatus = false;
+        this.fastSync = false;
+        this.skeletonSync = false;
+        this.fastRelay = false;
+        this.checkpointHash = null;
+        this.checkpointNumber = 0;
         this.showStatistics = new HashSet<>();
         this.showStatistics.add(StatsType.NONE);
     }
@@ -38,6 +49,22 @@ public final class CfgSync {
                         case "show-statistics":
                             parseSelectedStats(showStatistics, ConfigUtil.readValue(sr));
                             break;
+                        case "fast-sync":
+                            this.fastSync = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case "skeleton-sync":
+                            this.skeletonSync = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case "fast-relay":
+                            this.fastRelay = Boolean.parseBoolean(ConfigUtil.readValue(sr));
+                            break;
+                        case "checkpoint-hash":
+                            this.checkpointHash =
+                                    ByteUtil.hexStringToBytes(ConfigUtil.readValue(sr).trim());
+                            break;
+                        case "checkpoint-number":
+                            this.checkpointNumber = Long.parseLong(ConfigUtil.readValue(sr).trim());
+                            break;
                         default:
                             ConfigUtil.skipElement(sr);
                             break;
@@ -163,16 +190,66 @@ public final class CfgSync {
         return showStatistics;
     }
 
+    /**
+     * Indicates whether a node starting from genesis retrieves the state of a recent block from
+     * its peers instead of executing all the blocks.
+     */
+    public boolean getFastSync() {
+        return fastSync;
+    }
+
+    /**
+     * Indicates whether the headers far behind the top of the chain are downloaded by filling the
+     * gaps of a skeleton of headers in parallel from multiple peers.
+     */
+    public boolean getSkeletonSync() {
+        return skeletonSync;
+    }
+
+    /**
+     * Indicates whether new blocks extending the top of the chain are relayed to peers once their
+     * header is checked, while the blocks are imported in the background.
+     */
+    public boolean getFastRelay() {
+        return fastRelay;
+    }
+
+    /**
+     * Returns the hash of a trusted block below which the blocks are stored without being executed
+     * and the state is retrieved from peers, or {@code null} when no valid checkpoint is set.
+     */
+    public byte[] getCheckpointHash() {
+        return checkpointHash != null && checkpointHash.length == 32 && checkpointNumber > 0
+                ? checkpointHash
+                : null;
+    }
+
+    /** Returns the height of the block given by {@link #getCheckpointHash()}. */
+    public long getCheckpointNumber() {
+        return checkpointNumber;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CfgSync cfgSync = (CfgSync) o;
-        return showStatus == cfgSync.showStatus;
+        return showStatus == cfgSync.showStatus
+                && fastSync == cfgSync.fastSync
+                && skeletonSync == cfgSync.skeletonSync
+                && fastRelay == cfgSync.fastRelay
+                && Arrays.equals(checkpointHash, cfgSync.checkpointHash)
+                && checkpointNumber == cfgSync.checkpointNumber;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(showStatus);
+        return Objects.hashCode(
+                showStatus,
+                fastSync,
+                skeletonSync,
+                fastRelay,
+                Arrays.hashCode(checkpointHash),
+                checkpointNumber);
     }
 }
@@ -21,6 +21,7 @@ import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.DBVendor;
 import org.aion.db.store.ArchivedDataSource;
 import org.aion.db.store.JournalPruneDataSource;
+import org.aion.db.store.SegmentArchive;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.mcf.db.exception.InvalidFileTypeException;
@@ -49,6 +50,7 @@ public abstract class AbstractRepository implements Repository<AccountState> {
 
     protected static final String INDEX_DB = Names.INDEX;
     protected static final String BLOCK_DB = Names.BLOCK;
+    protected static final String HEADER_DB = Names.HEADER;
     protected static final String PENDING_BLOCK_DB = Names.PENDING_BLOCK;
     protected static final String CONTRACT_INDEX_DB = Names.CONTRACT_INDEX;
     protected static final String DETAILS_DB = Names.DETAILS;
@@ -76,6 +78,7 @@ public abstract class AbstractRepository implements Repository<AccountState> {
     protected ByteArrayKeyValueDatabase graphDatabase;
     protected ByteArrayKeyValueDatabase indexDatabase;
     protected ByteArrayKeyValueDatabase blockDatabase;
+    protected ByteArrayKeyValueDatabase headerDatabase;
     protected ByteArrayKeyValueDatabase stateDatabase;
     protected ByteArrayKeyValueDatabase stateArchiveDatabase;
     protected ByteArrayKeyValueDatabase txPoolDatabase;
@@ -84,6 +87,9 @@ public abstract class AbstractRepository implements Repository<AccountState> {
 
     protected Collection<ByteArrayKeyValueDatabase> databaseGroup;
 
+    // flat file storage for finalized blocks; null when disabled
+    protected SegmentArchive blockArchive;
+
     protected ArchivedDataSource stateWithArchive;
     protected JournalPruneDataSource stateDSPrune;
     protected DetailsDataStore detailsDS;
@@ -278,10 +284,33 @@ public abstract class AbstractRepository implements Repository<AccountState> {
             }
             databaseGroup.add(blockDatabase);
 
+            // the block archive is only used with persistent storage
+            boolean enableArchive =
+                    Boolean.valueOf(
+                            cfg.getDatabaseConfig(Names.DEFAULT)
+                                    .getProperty(Props.ENABLE_BLOCK_ARCHIVE));
+            if (enableArchive && isPersistent) {
+                this.blockArchive = new SegmentArchive(new File(cfg.getDbPath(), Names.BLOCK_ARCHIVE));
+                LOGGEN.info("Block archive ENABLED with {} archived blocks.", blockArchive.size());
+            } else {
+                this.blockArchive = null;
+            }
+
             // using block specific properties
             sharedProps.setProperty(Props.DB_NAME, PENDING_BLOCK_DB);
             this.pendingStoreProperties = sharedProps;
 
+            // getting header specific properties
+            sharedProps = cfg.getDatabaseConfig(HEADER_DB);
+            sharedProps.setProperty(Props.ENABLE_LOCKING, "false");
+            sharedProps.setProperty(Props.DB_PATH, cfg.getDbPath());
+            sharedProps.setProperty(Props.DB_NAME, HEADER_DB);
+            this.headerDatabase = connectAndOpen(sharedProps, LOG);
+            if (headerDatabase == null || headerDatabase.isClosed()) {
+                throw newException(HEADER_DB, sharedProps);
+            }
+            databaseGroup.add(headerDatabase);
+
             // getting pending tx pool specific properties
             sharedProps = cfg.getDatabaseConfig(PENDING_TX_POOL_DB);
             sharedProps.setProperty(Props.ENABLE_LOCKING, "false");
@@ -18,6 +18,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.store.ArrayStore;
 import org.aion.db.store.ObjectStore;
+import org.aion.db.store.SegmentArchive;
 import org.aion.db.store.Serializer;
 import org.aion.db.store.Stores;
 import org.aion.log.AionLoggerFactory;
@@ -42,8 +43,34 @@ public class AionBlockStore {
     private ArrayStore<List<BlockInfo>> index;
     private ObjectStore<Block> blocks;
 
+    /**
+     * Header only copies of the stored blocks used to serve header requests and header validation
+     * without decoding the block bodies. When {@code null} the headers are read from the blocks.
+     */
+    private ObjectStore<BlockHeader> headers;
+
+    private static final int HEADER_CACHE_SIZE = 8192;
+
     private boolean checkIntegrity;
 
+    /**
+     * Optional flat file storage for the main chain blocks that are deep enough to be considered
+     * final. The key-value stores remain the source of truth; the archive only serves range reads.
+     */
+    private SegmentArchive archive;
+
+    /** Encodings of recently stored and served blocks used to answer requests from peers. */
+    private final EncodedBlockCache encodedCache =
+            new EncodedBlockCache(
+                    EncodedBlockCache.DEFAULT_MAX_BYTES, EncodedBlockCache.DEFAULT_MAX_HEIGHTS);
+
+    /** Number of levels below the best block that are not added to the archive. */
+    @VisibleForTesting
+    static final long ARCHIVE_DEPTH = 1024L;
+
+    /** Maximum number of blocks moved to the archive during a single flush. */
+    private static final long ARCHIVE_BATCH_SIZE = 10_000L;
+
     private Deque<Block> branchingBlk = new ArrayDeque<>(),
             preBranchingBlk = new ArrayDeque<>();
     private long branchingLevel;
@@ -69,6 +96,15 @@ public class AionBlockStore {
         this.checkIntegrity = checkIntegrity;
     }
 
+    public AionBlockStore(ByteArrayKeyValueDatabase index, ByteArrayKeyValueDatabase blocks, ByteArrayKeyValueDatabase headers, boolean checkIntegrity, int blockCacheSize, SegmentArchive archive) {
+        this(index, blocks, checkIntegrity, blockCacheSize);
+        if (headers != null) {
+            // locked to allow header reads without acquiring the store lock
+            this.headers = Stores.newObjectStoreWithCache(headers, HEADER_SERIALIZER, HEADER_CACHE_SIZE, true);
+        }
+        this.archive = archive;
+    }
+
     private static final Serializer<Block> BLOCK_SERIALIZER =
         new Serializer<>() {
             @Override
@@ -87,6 +123,24 @@ public class AionBlockStore {
             }
         };
 
+    private static final Serializer<BlockHeader> HEADER_SERIALIZER =
+        new Serializer<>() {
+            @Override
+            public byte[] serialize(BlockHeader header) {
+                return header.getEncoded();
+            }
+
+            @Override
+            public BlockHeader deserialize(byte[] bytes) {
+                BlockHeader header = BlockUtil.newHeaderFromRlp(bytes);
+                if (header != null) {
+                    return header;
+                } else {
+                    throw new NullPointerException("Invalid rlp encode data: " + ByteUtil.toHexString(bytes));
+                }
+            }
+        };
+
     /**
      *  Get current highest block data, usually use this method when the kernel need to know the
      *  block information itself.
@@ -228,11 +282,106 @@ public class AionBlockStore {
         try {
             blocks.commit();
             index.commit();
+            if (headers != null) {
+                headers.commit();
+            }
+            archiveFinalizedBlocks();
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Appends to the archive the main chain blocks that are at least {@link #ARCHIVE_DEPTH} levels
+     * below the best block. At most {@link #ARCHIVE_BATCH_SIZE} blocks are archived per call such
+     * that existing databases are migrated gradually.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private void archiveFinalizedBlocks() {
+        if (archive == null) {
+            return;
+        }
+
+        long target = Math.min(index.size() - ARCHIVE_DEPTH, archive.size() + ARCHIVE_BATCH_SIZE);
+        try {
+            for (long level = archive.size(); level < target; level++) {
+                byte[] hash = getBlockHashByNumber(level);
+                Block block = hash == null ? null : blocks.get(hash);
+                if (block == null) {
+                    LOG.warn("Unable to archive blocks starting from level {}: main chain block missing.", level);
+                    break;
+                }
+                archive.append(level, hash, block.getEncoded());
+            }
+            archive.flush();
+        } catch (Exception e) {
+            LOG.error("Unable to update the block archive.", e);
+        }
+    }
+
+    /**
+     * Discards the archived and cached main chain blocks starting with the given level when the
+     * main chain is changed.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private void invalidateMainChainFrom(long level) {
+        encodedCache.invalidateMainChainFrom(level);
+        truncateArchive(level);
+    }
+
+    /**
+     * Removes from the archive the blocks starting with the given level when the main chain is
+     * changed at or below the archived height.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private void truncateArchive(long level) {
+        if (archive != null && archive.size() > level) {
+            try {
+                LOG.warn("Main chain changed at level {} which was already archived.", level);
+                archive.truncate(Math.max(level, 0L));
+            } catch (Exception e) {
+                LOG.error("Unable to truncate the block archive.", e);
+            }
+        }
+    }
+
+    /**
+     * Returns a range of main chain blocks from the archive if all of them were archived.
+     *
+     * @return the blocks in the requested order or {@code null} if the range is not archived
+     */
+    private List<Block> getBlocksByRangeFromArchive(long first, long last) {
+        if (archive == null) {
+            return null;
+        }
+
+        List<byte[]> encodings = archive.getRange(first, last);
+        if (encodings == null) {
+            return null;
+        }
+
+        List<Block> result = new ArrayList<>(encodings.size());
+        for (byte[] encoding : encodings) {
+            Block block = BlockUtil.newBlockFromRlp(encoding);
+            if (block == null) {
+                LOG.error("Invalid block encoding in the block archive. The archive will be rebuilt starting from level {}.", Math.min(first, last));
+                lock.lock();
+                try {
+                    truncateArchive(Math.min(first, last));
+                } finally {
+                    lock.unlock();
+                }
+                return null;
+            }
+            block.setMainChain();
+            result.add(block);
+        }
+        return result;
+    }
+
     public void saveBlock(Block block, BigInteger totalDifficulty, boolean mainChain) {
         if (block == null) {
             throw new NullPointerException("block is null");
@@ -272,12 +421,17 @@ public class AionBlockStore {
                 for (BlockInfo blockInfo : blockInfos) {
                     blockInfo.setMainChain(false);
                 }
+                invalidateMainChainFrom(blockNumber);
             }
 
             blockInfos.add(new BlockInfo(block.getHash(), totalDifficulty, mainChain));
 
             blocks.put(block.getHash(), block);
+            if (headers != null) {
+                headers.put(block.getHash(), block.getHeader());
+            }
             index.set(block.getNumber(), blockInfos);
+            encodedCache.put(block, mainChain);
         } finally {
             lock.unlock();
         }
@@ -418,12 +572,20 @@ public class AionBlockStore {
      * @apiNote The blocks must be added to the list in the order that they are requested. If {@code
      *     first > last} the blocks are returned in descending order of their height, otherwise when
      *     {@code first < last} the blocks are returned in ascending order of their height.
+     * @implNote Ranges that are fully archived are read from the archive without acquiring the
+     *     store lock. The blocks read from the archive are marked as main chain, but do not have
+     *     their total difficulty set.
      */
     public List<Block> getBlocksByRange(long first, long last) {
         if (first <= 0L) {
             return null;
         }
 
+        List<Block> archived = getBlocksByRangeFromArchive(first, Math.max(last, 1L));
+        if (archived != null) {
+            return archived;
+        }
+
         lock.lock();
 
         try {
@@ -511,6 +673,59 @@ public class AionBlockStore {
         }
     }
 
+    /**
+     * Returns the encodings of a range of main chain blocks, as used to respond to block range
+     * requests from peers.
+     *
+     * @param first the height of the first block in the requested range
+     * @param last the height of the last block in the requested range
+     * @return the encodings of the blocks in the order given by {@link #getBlocksByRange(long,
+     *     long)}; or {@code null} in case of errors or illegal request
+     * @implNote Cached ranges are returned without acquiring the store lock. Other ranges are read
+     *     using {@link #getBlocksByRange(long, long)} and added to the cache.
+     */
+    public List<byte[]> getEncodedBlocksByRange(long first, long last) {
+        if (first <= 0L) {
+            return null;
+        }
+
+        List<byte[]> cached = encodedCache.getMainChainRange(first, Math.max(last, 1L));
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = encodedCache.generation();
+        List<Block> range = getBlocksByRange(first, last);
+        return range == null ? null : encodedCache.putMainChain(range, generation);
+    }
+
+    /**
+     * Returns the encoded bodies of the blocks with the given hashes, stopping at the first block
+     * that is not stored.
+     *
+     * @param hashes the hashes of the requested blocks
+     * @return the encoded bodies of the stored blocks in the given order
+     * @implNote Cached bodies are returned without acquiring the store lock.
+     */
+    public List<byte[]> getEncodedBodiesByHashes(List<byte[]> hashes) {
+        List<byte[]> bodies = new ArrayList<>(hashes.size());
+
+        for (byte[] hash : hashes) {
+            byte[] body = encodedCache.getEncodedBody(hash);
+            if (body == null) {
+                Block block = getBlockByHash(hash);
+                if (block == null) {
+                    break;
+                }
+                body = block.getEncodedBody();
+                encodedCache.putBody(block, body);
+            }
+            bodies.add(body);
+        }
+
+        return bodies;
+    }
+
     /**
      *  Get block data by given block hash, usually use this method when the kernel need to know the
      *  block information itself.
@@ -671,6 +886,43 @@ public class AionBlockStore {
         }
     }
 
+    /**
+     * Retrieves the header of the block with the given hash without decoding the block body when
+     * the header store is in use.
+     *
+     * @param hash the block hash
+     * @return the header of the block with the given hash or {@code null} if the block is not stored
+     */
+    public BlockHeader getHeaderByHash(byte[] hash) {
+        if (hash == null) {
+            return null;
+        }
+
+        if (headers != null) {
+            BlockHeader header = headers.get(hash);
+            if (header != null) {
+                return header;
+            }
+        }
+
+        lock.lock();
+
+        try {
+            Block block = blocks.get(hash);
+            if (block == null) {
+                return null;
+            }
+
+            // backfill headers for blocks stored before the header store was in use
+            if (headers != null) {
+                headers.put(hash, block.getHeader());
+            }
+            return block.getHeader();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
         if (hash == null || qty < 0) {
             return null;
@@ -679,19 +931,34 @@ public class AionBlockStore {
         lock.lock();
 
         try {
-            List<Block> blocks = getListBlocksEndWith(hash, qty);
-            List<BlockHeader> headers = new ArrayList<>(blocks.size());
+            BlockHeader header = getHeaderByHash(hash);
+            if (header == null) {
+                return new ArrayList<>();
+            }
 
-            for (Block b : blocks) {
-                headers.add(b.getHeader());
+            List<BlockHeader> result = new ArrayList<>((int) qty);
+
+            for (int i = 0; i < qty; ++i) {
+                result.add(header);
+                header = getHeaderByHash(header.getParentHash());
+                if (header == null) {
+                    break;
+                }
             }
 
-            return headers;
+            return result;
         } finally {
             lock.unlock();
         }
     }
 
+    /** @implNote The method calling this method must handle the locking. */
+    private void deleteHeader(byte[] hash) {
+        if (headers != null) {
+            headers.delete(hash);
+        }
+    }
+
     public List<Block> getListBlocksEndWith(byte[] hash, long qty) {
         if (hash == null || qty < 0) {
             return null;
@@ -782,6 +1049,7 @@ public class AionBlockStore {
             long commonBlockNumber = loopBackToCommonBlock(bestLine, forkLine);
 
             logBranchingDetails();
+            invalidateMainChainFrom(commonBlockNumber + 1);
 
             return commonBlockNumber;
         } finally {
@@ -906,6 +1174,8 @@ public class AionBlockStore {
                 return;
             }
 
+            invalidateMainChainFrom(targetLevel + 1);
+
             // walk back removing blocks greater than the given level value
             while (currentLevel > targetLevel) {
                 // remove all the blocks at that level
@@ -916,6 +1186,7 @@ public class AionBlockStore {
                 } else {
                     for (BlockInfo bk_info : currentLevelBlocks) {
                         blocks.deleteInBatch(bk_info.getHash());
+                        deleteHeader(bk_info.getHash());
                         currentBatchSize++;
                     }
                 }
@@ -1028,6 +1299,7 @@ public class AionBlockStore {
             // deleting incorrect parallel blocks
             for (BlockInfo wrongBlock : levelBlocks) {
                 blocks.delete(wrongBlock.getHash());
+                deleteHeader(wrongBlock.getHash());
             }
 
             // set new block info with total difficulty set to the block's difficulty
@@ -1123,6 +1395,64 @@ public class AionBlockStore {
         }
     }
 
+    /**
+     * Recomputes the total difficulty of the main chain blocks from genesis up to the given level
+     * based on the difficulty of each block. Used for blocks that were stored without being
+     * executed, whose total difficulty was not known when they were saved. The update can be
+     * repeated after an interruption since it does not depend on the previous values.
+     *
+     * @param level the height of the last block to be updated
+     * @return the total difficulty of the main chain block at the given level
+     * @throws IllegalStateException when a main chain block is missing from the database
+     */
+    public BigInteger correctMainChainTotalDifficulty(long level) {
+        lock.lock();
+
+        try {
+            Block genesis = getChainBlockByNumber(0);
+            if (genesis == null) {
+                throw new IllegalStateException("Missing the genesis block from the database.");
+            }
+            BigInteger totalDifficulty = genesis.getTotalDifficulty();
+            final long TEN_SEC = 10_000_000_000L;
+            long time = System.nanoTime();
+
+            for (long current = 1; current <= level; current++) {
+                List<BlockInfo> levelBlocks =
+                        current < index.size() ? getBlockInfoForLevel(current) : null;
+                BlockInfo mainChain = null;
+                if (levelBlocks != null) {
+                    for (BlockInfo blockInfo : levelBlocks) {
+                        if (blockInfo.isMainChain()) {
+                            mainChain = blockInfo;
+                            break;
+                        }
+                    }
+                }
+
+                BlockHeader header =
+                        mainChain == null ? null : getHeaderByHash(mainChain.getHash());
+                if (header == null) {
+                    throw new IllegalStateException(
+                            "Missing main chain block #" + current + " from the database.");
+                }
+
+                totalDifficulty = totalDifficulty.add(header.getDifficultyBI());
+                mainChain.setTotalDifficulty(totalDifficulty);
+                setBlockInfoForLevel(current, levelBlocks);
+
+                if (System.nanoTime() - time > TEN_SEC) {
+                    LOG.info("Updated total difficulty up to height=" + current);
+                    time = System.nanoTime();
+                }
+            }
+
+            return totalDifficulty;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public String dumpPastBlocks(long numberOfBlocks, String reportsFolder) throws IOException {
         lock.lock();
 
@@ -1335,6 +1665,8 @@ public class AionBlockStore {
                         currentBlock.getShortHash(),
                         currentBlock.getNumber());
 
+                invalidateMainChainFrom(currentBlock.getNumber());
+
                 // fix the info for the current block
                 infos.remove(thisBlockInfo);
                 thisBlockInfo.setMainChain(true);
@@ -1373,11 +1705,13 @@ public class AionBlockStore {
                 for (BlockInfo blockInfo : level) {
                     if (!Arrays.equals(currentHash, blockInfo.getHash())) {
                         blocks.delete(blockInfo.getHash());
+                        deleteHeader(blockInfo.getHash());
                     }
                 }
 
                 // replace all the block info with empty list
                 index.set(block.getNumber(), Collections.emptyList());
+                invalidateMainChainFrom(block.getNumber());
             }
         } finally {
             lock.unlock();
@@ -1734,10 +2068,21 @@ public class AionBlockStore {
         } finally {
             try {
                 blocks.close();
+                if (headers != null) {
+                    headers.close();
+                }
             } catch (Exception e) {
                 LOG.error("Not able to close the blocks database:", e);
             } finally {
-                lock.unlock();
+                try {
+                    if (archive != null) {
+                        archive.close();
+                    }
+                } catch (Exception e) {
+                    LOG.error("Not able to close the block archive:", e);
+                } finally {
+                    lock.unlock();
+                }
             }
         }
     }
@@ -1754,6 +2099,7 @@ public class AionBlockStore {
             long level = index.size() - 1;
 
             LOG.debug("blockstore rollback block level from {} to {}", level, blockNumber);
+            invalidateMainChainFrom(blockNumber + 1);
 
             while (level > blockNumber) {
                 // remove all the blocks at that level
@@ -1761,6 +2107,7 @@ public class AionBlockStore {
 
                 for (BlockInfo bk_info : currentLevelBlocks) {
                     blocks.delete(bk_info.getHash());
+                    deleteHeader(bk_info.getHash());
                 }
 
                 index.remove(level--);
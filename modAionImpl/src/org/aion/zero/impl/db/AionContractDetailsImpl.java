@@ -503,7 +503,7 @@ public class AionContractDetailsImpl implements ContractDetails {
      * @return the external storage data source.
      */
     private ByteArrayKeyValueStore getExternalStorageDataSource() {
-        return new XorDataSource(dataSource, h256(("details-storage/" + address.toString()).getBytes()));
+        return new XorDataSource(dataSource, storageSubKey(address));
     }
 
     /**
@@ -515,10 +515,32 @@ public class AionContractDetailsImpl implements ContractDetails {
         if (objectGraphSource == null) {
             throw new NullPointerException("The contract object graph source was not initialized.");
         } else {
-            return new XorDataSource(objectGraphSource, h256(("details-graph/" + address.toString()).getBytes()));
+            return new XorDataSource(objectGraphSource, graphSubKey(address));
         }
     }
 
+    /**
+     * Returns the key used to separate the storage nodes of the given contract from those of other
+     * contracts in the shared storage database.
+     *
+     * @param contract the address of the contract
+     * @return the key that the storage keys of the contract are XOR'd with
+     */
+    public static byte[] storageSubKey(AionAddress contract) {
+        return h256(("details-storage/" + contract.toString()).getBytes());
+    }
+
+    /**
+     * Returns the key used to separate the object graph entries of the given contract from those of
+     * other contracts in the shared graph database.
+     *
+     * @param contract the address of the contract
+     * @return the key that the graph keys of the contract are XOR'd with
+     */
+    public static byte[] graphSubKey(AionAddress contract) {
+        return h256(("details-graph/" + contract.toString()).getBytes());
+    }
+
     /**
      * Sets the external storage data source to dataSource.
      */
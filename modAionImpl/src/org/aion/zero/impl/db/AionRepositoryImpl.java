@@ -1,10 +1,11 @@
 package org.aion.zero.impl.db;
 
 import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
-import static org.aion.crypto.HashUtil.h256;
 import static org.aion.util.bytes.ByteUtil.EMPTY_BYTE_ARRAY;
 
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -13,6 +14,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,6 +26,7 @@ import org.aion.db.impl.ByteArrayKeyValueStore;
 import org.aion.db.store.ObjectStore;
 import org.aion.db.store.Stores;
 import org.aion.db.store.XorDataSource;
+import org.aion.mcf.blockchain.Block;
 import org.aion.mcf.db.ContractDetails;
 import org.aion.mcf.db.InternalVmType;
 import org.aion.mcf.db.Repository;
@@ -33,6 +36,7 @@ import org.aion.zero.impl.trie.SecureTrie;
 import org.aion.zero.impl.trie.Trie;
 import org.aion.zero.impl.trie.TrieImpl;
 import org.aion.zero.impl.trie.TrieNodeResult;
+import org.aion.zero.impl.trie.scan.CountContracts;
 import org.aion.p2p.V1Constants;
 import org.aion.precompiled.ContractInfo;
 import org.aion.rlp.RLP;
@@ -44,6 +48,8 @@ import org.aion.util.conversions.Hex;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.SystemExitCodes;
 import org.aion.zero.impl.config.CfgAion;
+import org.aion.zero.impl.config.CfgDb.Names;
+import org.aion.zero.impl.config.CfgDb.Props;
 import org.aion.zero.impl.sync.DatabaseType;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -96,7 +102,7 @@ public class AionRepositoryImpl extends AbstractRepository {
                             transactionDatabase, AionTransactionStoreSerializer.serializer);
 
             // Setup block store.
-            this.blockStore = new AionBlockStore(indexDatabase, blockDatabase, checkIntegrity, blockCacheSize);
+            this.blockStore = new AionBlockStore(indexDatabase, blockDatabase, headerDatabase, checkIntegrity, blockCacheSize, blockArchive);
 
             this.pendingStore = new PendingBlockStore(pendingStoreProperties);
             this.contractInfoSource = Stores.newObjectStoreWithCache(contractIndexDatabase, ContractInformation.RLP_SERIALIZER, 10, true);
@@ -934,6 +940,46 @@ public class AionRepositoryImpl extends AbstractRepository {
         }
     }
 
+    /**
+     * Creates a checkpoint of all the databases in the given directory and writes its manifest.
+     *
+     * @implNote The caller must ensure that the given block is the last one written to the
+     *     repository and that all the data has been flushed. The block archive and the pending
+     *     block store are not included since the first is rebuilt from the block store and the
+     *     second only holds blocks that have not been imported yet.
+     * @throws IOException when any of the checkpoints cannot be created
+     */
+    public DatabaseCheckpoint createCheckpoint(File directory, Block block, BigInteger totalDifficulty) throws IOException {
+        rwLock.writeLock().lock();
+        try {
+            if (databaseGroup == null) {
+                throw new IOException("Database group is null.");
+            }
+            List<String> names = new ArrayList<>();
+            for (ByteArrayKeyValueDatabase db : databaseGroup) {
+                String name = db.getName().orElseThrow(() -> new IOException("Unable to checkpoint an unnamed database."));
+                if (!db.createCheckpoint(new File(directory, name))) {
+                    throw new IOException("Unable to create a checkpoint for " + db.toString() + ".");
+                }
+                names.add(name);
+            }
+
+            DatabaseCheckpoint checkpoint =
+                    new DatabaseCheckpoint(
+                            block.getNumber(),
+                            block.getHash(),
+                            block.getStateRoot(),
+                            totalDifficulty,
+                            cfg.getDatabaseConfig(Names.DEFAULT).getProperty(Props.DB_TYPE),
+                            names,
+                            System.currentTimeMillis());
+            checkpoint.writeManifest(directory);
+            return checkpoint;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
     /**
      * Retrieves the value for a given node from the database associated with the given type.
      *
@@ -1007,7 +1053,7 @@ public class AionRepositoryImpl extends AbstractRepository {
         if (limit <= 0) {
             return Collections.emptyList();
         } else {
-            byte[] subKey = h256(("details-storage/" + contract.toString()).getBytes());
+            byte[] subKey = AionContractDetailsImpl.storageSubKey(contract);
 
             ByteArrayKeyValueStore db =
                     new XorDataSource(selectDatabase(DatabaseType.STORAGE), subKey);
@@ -1074,6 +1120,118 @@ public class AionRepositoryImpl extends AbstractRepository {
         return TrieNodeResult.IMPORTED;
     }
 
+    /**
+     * Imports a batch of trie nodes to the indicated blockchain database using a single write. The
+     * nodes are expected to be validated by the caller, since stored values with the same keys are
+     * overwritten.
+     *
+     * @param nodes the key-value pairs of the trie nodes to be imported
+     * @param dbType the database where the key-value pairs should be stored
+     * @throws IllegalArgumentException if the database type is not supported
+     */
+    public void importTrieNodes(Map<ByteArrayWrapper, byte[]> nodes, DatabaseType dbType) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        Map<byte[], byte[]> batch = new HashMap<>();
+        for (Map.Entry<ByteArrayWrapper, byte[]> node : nodes.entrySet()) {
+            batch.put(node.getKey().toBytes(), node.getValue());
+        }
+        selectDatabase(dbType).putBatch(batch);
+    }
+
+    /**
+     * Traverses the part of the trie that is present in the database starting from the given node
+     * and returns the keys of the referenced nodes that are missing.
+     *
+     * @param keyOrValue the key or the value of a trie node
+     * @param dbType the database where the trie nodes are stored
+     * @return the keys of the nodes that must be retrieved to complete the trie
+     * @throws IllegalArgumentException if the database type is not supported
+     */
+    public Set<ByteArrayWrapper> getMissingTrieNodes(byte[] keyOrValue, DatabaseType dbType) {
+        Trie trie = new TrieImpl(selectDatabase(dbType));
+        return trie.getMissingNodes(keyOrValue);
+    }
+
+    /**
+     * Traverses the part of the storage trie of the given contract that is present in the database
+     * starting from the given node and returns the keys of the referenced nodes that are missing.
+     *
+     * @param keyOrValue the key or the value of a storage trie node, where keys are used as they
+     *     appear in the trie, i.e. without the contract specific transformation
+     * @param contract the address of the contract owning the storage
+     * @return the keys under which the missing nodes are stored in the {@link
+     *     DatabaseType#STORAGE} database, i.e. the keys to be used when requesting the nodes
+     */
+    public Set<ByteArrayWrapper> getMissingStorageNodes(byte[] keyOrValue, AionAddress contract) {
+        byte[] subKey = AionContractDetailsImpl.storageSubKey(contract);
+        ByteArrayKeyValueStore db = new XorDataSource(selectDatabase(DatabaseType.STORAGE), subKey);
+
+        Trie trie = new SecureTrie(db);
+        Set<ByteArrayWrapper> converted = new HashSet<>();
+        for (ByteArrayWrapper key : trie.getMissingNodes(keyOrValue)) {
+            converted.add(ByteArrayWrapper.wrap(ByteUtil.xorAlignRight(key.toBytes(), subKey)));
+        }
+        return converted;
+    }
+
+    /**
+     * Retrieves the stored details for the contracts with addresses greater than or equal to the
+     * given one, in the unsigned lexicographic order of the addresses. Used to enumerate the
+     * contracts during state transfer, since the details are not referenced by the world state.
+     *
+     * @param address the address where the enumeration starts
+     * @param limit the maximum number of contracts to be retrieved
+     * @return the encoded details of at most {@code limit} contracts ordered by address
+     */
+    public Map<ByteArrayWrapper, byte[]> getContractDetailsFrom(byte[] address, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyMap();
+        }
+
+        Map<ByteArrayWrapper, byte[]> details = new LinkedHashMap<>();
+        for (byte[] key : detailsDatabase.keysFrom(address, limit)) {
+            detailsDatabase
+                    .get(key)
+                    .ifPresent(value -> details.put(ByteArrayWrapper.wrap(key), value));
+        }
+        return details;
+    }
+
+    /**
+     * Counts the contracts in the world state with the given root, i.e. the accounts with code or
+     * storage. The world state references the contracts only through the hash of their address,
+     * so the count is used to confirm that all the contract details were retrieved during state
+     * transfer.
+     *
+     * @param stateRoot the root of a world state that is complete in the database
+     * @return the number of accounts with code or storage
+     */
+    public int getContractCount(byte[] stateRoot) {
+        CountContracts action = new CountContracts();
+        new TrieImpl(stateDatabase).traceTrie(stateRoot, action);
+        return action.getCount();
+    }
+
+    /**
+     * Returns the addresses of all the contracts with stored details.
+     *
+     * @return the addresses of the contracts in unspecified order
+     */
+    public List<AionAddress> getContractAddresses() {
+        List<AionAddress> addresses = new ArrayList<>();
+        Iterator<byte[]> keys = detailsDatabase.keys();
+        while (keys.hasNext()) {
+            byte[] key = keys.next();
+            if (key.length == AionAddress.LENGTH) {
+                addresses.add(new AionAddress(key));
+            }
+        }
+        return addresses;
+    }
+
     private ByteArrayKeyValueDatabase selectDatabase(DatabaseType dbType) {
         switch (dbType) {
             case DETAILS:
@@ -1082,6 +1240,8 @@ public class AionRepositoryImpl extends AbstractRepository {
                 return storageDatabase;
             case STATE:
                 return stateDatabase;
+            case GRAPH:
+                return graphDatabase;
             default:
                 throw new IllegalArgumentException(
                         "The database type " + dbType.toString() + " is not supported.");
@@ -7,7 +7,13 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import org.aion.base.AionTransaction;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.db.impl.CompressionCodec;
+import org.aion.db.impl.DBVendor;
+import org.aion.db.impl.TraceReplay;
+import org.aion.db.impl.rocksdb.CompressionBenchmark;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.log.LogLevel;
@@ -31,6 +37,7 @@ import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionBlockSummary;
 import org.aion.zero.impl.types.AionTxInfo;
 import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
 
 /**
  * Methods used by CLI calls for debugging the local blockchain data.
@@ -42,6 +49,9 @@ import org.apache.commons.lang3.tuple.Pair;
  */
 public class DBUtils {
 
+    /** Read slowdown over uncompressed storage accepted when recommending a compression codec. */
+    private static final double MAX_COMPRESSION_SLOWDOWN = 1.5;
+
     public enum Status {
         SUCCESS,
         FAILURE,
@@ -121,6 +131,253 @@ public class DBUtils {
         repository.close();
     }
 
+    /** Used by the CLI call. */
+    public static Status printCompressionReport(String dbName, int sampleSize) {
+        // ensure mining is disabled
+        CfgAion cfg = CfgAion.inst();
+        cfg.dbFromXML();
+        cfg.getConsensus().setMining(false);
+
+        Map<LogEnum, LogLevel> cfgLog = new HashMap<>();
+        cfgLog.put(LogEnum.DB, LogLevel.INFO);
+        cfgLog.put(LogEnum.GEN, LogLevel.INFO);
+        AionLoggerFactory.initAll(cfgLog);
+        Logger log = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+        String dbPath = cfg.getDatabasePath();
+        if (!new File(dbPath, dbName).isDirectory()) {
+            System.out.println("The database «" + dbName + "» does not exist in " + dbPath + ".");
+            return Status.ILLEGAL_ARGUMENT;
+        }
+
+        Properties props = new RepositoryConfigImpl(dbPath, cfg.getDb()).getDatabaseConfig(dbName);
+        props.setProperty(CfgDb.Props.DB_PATH, dbPath);
+        props.setProperty(CfgDb.Props.DB_NAME, dbName);
+        props.setProperty(CfgDb.Props.ENABLE_LOCKING, "false");
+        ByteArrayKeyValueDatabase source = DatabaseUtils.connectAndOpen(props, log);
+        if (source == null || source.isClosed()) {
+            System.out.println("Unable to open the database «" + dbName + "».");
+            return Status.FAILURE;
+        }
+
+        System.out.println("Sampling " + sampleSize + " entries from the " + dbName + " database...");
+        Map<byte[], byte[]> sample = CompressionBenchmark.sample(source, sampleSize, System.nanoTime());
+        source.close();
+        if (sample.isEmpty()) {
+            System.out.println("The database «" + dbName + "» is empty.");
+            return Status.FAILURE;
+        }
+
+        File workDir = new File(cfg.getBasePath(), "compression-report");
+        if (workDir.exists()) {
+            DatabaseUtils.deleteRecursively(workDir);
+        }
+        List<CompressionBenchmark.Result> results =
+                new CompressionBenchmark(workDir, log).run(sample, CompressionBenchmark.DEFAULT_CANDIDATES);
+        DatabaseUtils.deleteRecursively(workDir);
+
+        System.out.println("\nResults for " + sample.size() + " sampled entries:");
+        for (CompressionBenchmark.Result result : results) {
+            System.out.println("  " + result);
+        }
+
+        CompressionBenchmark.Result best = CompressionBenchmark.recommend(results, MAX_COMPRESSION_SLOWDOWN);
+        if (best == null) {
+            return Status.FAILURE;
+        }
+        System.out.println(
+                "\nRecommended setting (smallest size with median reads at most "
+                        + MAX_COMPRESSION_SLOWDOWN
+                        + "x slower than uncompressed):\n  <compression><"
+                        + dbName
+                        + ">"
+                        + best.candidate.toConfigValue()
+                        + "</"
+                        + dbName
+                        + "></compression>");
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Used by the CLI call.
+     *
+     * @param configurations the database setups to compare formatted as {@code
+     *     vendor[:codec[:level]][:nocache]}
+     */
+    public static Status replayTrace(String traceFile, List<String> configurations) {
+        CfgAion cfg = CfgAion.inst();
+        cfg.dbFromXML();
+
+        Map<LogEnum, LogLevel> cfgLog = new HashMap<>();
+        cfgLog.put(LogEnum.DB, LogLevel.INFO);
+        cfgLog.put(LogEnum.GEN, LogLevel.INFO);
+        AionLoggerFactory.initAll(cfgLog);
+        Logger log = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+        File trace = new File(traceFile);
+        if (!trace.isFile()) {
+            System.out.println("The trace file «" + traceFile + "» does not exist.");
+            return Status.ILLEGAL_ARGUMENT;
+        }
+
+        Properties defaults = new RepositoryConfigImpl(cfg.getDatabasePath(), cfg.getDb()).getDatabaseConfig(CfgDb.Names.DEFAULT);
+        File workDir = new File(cfg.getBasePath(), "trace-replay");
+        Status status = Status.SUCCESS;
+
+        for (String configuration : configurations) {
+            Properties props = new Properties();
+            for (String name : defaults.stringPropertyNames()) {
+                props.setProperty(name, defaults.getProperty(name));
+            }
+            if (!setReplayProperties(props, configuration)) {
+                System.out.println("Invalid configuration «" + configuration + "». Expected vendor[:codec[:level]][:nocache].");
+                status = Status.ILLEGAL_ARGUMENT;
+                continue;
+            }
+
+            File dbDir = new File(workDir, configuration.replace(':', '-'));
+            DatabaseUtils.deleteRecursively(dbDir);
+            props.setProperty(CfgDb.Props.DB_PATH, workDir.getAbsolutePath());
+            props.setProperty(CfgDb.Props.DB_NAME, dbDir.getName());
+            props.setProperty(CfgDb.Props.ENABLE_LOCKING, "false");
+
+            System.out.println("Replaying " + trace.getName() + " on " + configuration + "...");
+            try {
+                TraceReplay.Result result = TraceReplay.replay(trace, props, configuration, log);
+                System.out.println(result.toReport());
+            } catch (IOException | IllegalStateException e) {
+                System.out.println("Replay failed for «" + configuration + "»: " + e.getMessage());
+                status = Status.FAILURE;
+            } finally {
+                DatabaseUtils.deleteRecursively(dbDir);
+            }
+        }
+
+        DatabaseUtils.deleteRecursively(workDir);
+        return status;
+    }
+
+    private static boolean setReplayProperties(Properties props, String configuration) {
+        String[] parts = configuration.split(":");
+        if (DBVendor.fromString(parts[0]) == DBVendor.UNKNOWN) {
+            return false;
+        }
+        props.setProperty(CfgDb.Props.DB_TYPE, parts[0]);
+
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.equals("nocache")) {
+                props.setProperty(CfgDb.Props.ENABLE_DB_CACHE, "false");
+            } else if (CompressionCodec.fromString(part) != null) {
+                props.setProperty(CfgDb.Props.COMPRESSION_CODEC, part);
+            } else {
+                try {
+                    props.setProperty(CfgDb.Props.COMPRESSION_LEVEL, String.valueOf(Integer.parseInt(part)));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Used by the CLI call. */
+    public static Status createCheckpoint(String directory) {
+        // ensure mining is disabled
+        CfgAion cfg = CfgAion.inst();
+        cfg.dbFromXML();
+        cfg.getConsensus().setMining(false);
+
+        Map<LogEnum, LogLevel> cfgLog = new HashMap<>();
+        cfgLog.put(LogEnum.DB, LogLevel.INFO);
+        cfgLog.put(LogEnum.GEN, LogLevel.INFO);
+        AionLoggerFactory.initAll(cfgLog);
+
+        File dir = new File(directory);
+        if (dir.exists()) {
+            System.out.println("The checkpoint directory «" + directory + "» already exists.");
+            return Status.ILLEGAL_ARGUMENT;
+        }
+
+        // get the current blockchain
+        AionBlockchainImpl blockchain = new AionBlockchainImpl(cfg, false);
+
+        Status status;
+        try {
+            DatabaseCheckpoint checkpoint = blockchain.createCheckpoint(dir);
+            System.out.println(
+                    "Created checkpoint at block #"
+                            + checkpoint.height
+                            + " with hash "
+                            + Hex.toHexString(checkpoint.hash)
+                            + " in "
+                            + dir.getAbsolutePath()
+                            + ".");
+            status = Status.SUCCESS;
+        } catch (IOException e) {
+            System.out.println("Unable to create the checkpoint: " + e.getMessage());
+            status = Status.FAILURE;
+        }
+
+        blockchain.getRepository().close();
+        return status;
+    }
+
+    /**
+     * Used by the CLI call.
+     *
+     * @implNote The databases are restored in the configured database directory which must be
+     *     empty. The vendor used by the checkpoint must match the configured vendor.
+     */
+    public static Status restoreCheckpoint(String directory) {
+        CfgAion cfg = CfgAion.inst();
+        cfg.dbFromXML();
+
+        File dir = new File(directory);
+        DatabaseCheckpoint checkpoint;
+        try {
+            checkpoint = DatabaseCheckpoint.readManifest(dir);
+        } catch (IOException e) {
+            System.out.println("The directory «" + directory + "» is not a valid checkpoint: " + e.getMessage());
+            return Status.ILLEGAL_ARGUMENT;
+        }
+
+        String vendor =
+                new RepositoryConfigImpl(cfg.getDatabasePath(), cfg.getDb())
+                        .getDatabaseConfig(CfgDb.Names.DEFAULT)
+                        .getProperty(CfgDb.Props.DB_TYPE);
+        if (!checkpoint.vendor.equalsIgnoreCase(vendor)) {
+            System.out.println(
+                    "The checkpoint was created with «"
+                            + checkpoint.vendor
+                            + "» while the configured database vendor is «"
+                            + vendor
+                            + "».");
+            return Status.ILLEGAL_ARGUMENT;
+        }
+
+        File dbPath = new File(cfg.getDatabasePath());
+        long start = System.currentTimeMillis();
+        try {
+            DatabaseCheckpoint.restore(dir, dbPath);
+        } catch (IOException e) {
+            System.out.println("Unable to restore the checkpoint: " + e.getMessage());
+            return Status.FAILURE;
+        }
+
+        System.out.println(
+                "Restored checkpoint at block #"
+                        + checkpoint.height
+                        + " with hash "
+                        + Hex.toHexString(checkpoint.hash)
+                        + " to "
+                        + dbPath.getAbsolutePath()
+                        + " in "
+                        + (System.currentTimeMillis() - start)
+                        + " ms.");
+        return Status.SUCCESS;
+    }
+
     /** Used by the CLI call. */
     public static void dumpBlocks(long count) {
         // ensure mining is disabled
@@ -0,0 +1,171 @@
+package org.aion.zero.impl.db;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import org.aion.util.conversions.Hex;
+
+/**
+ * Describes a consistent copy of all the kernel databases taken at a given main chain block, and
+ * restores such copies into an empty database directory.
+ *
+ * <p>A checkpoint directory contains one sub-directory per database and a manifest file with the
+ * block the checkpoint was taken at, the database vendor and the list of databases.
+ */
+public final class DatabaseCheckpoint {
+
+    public static final String MANIFEST_FILE = "checkpoint.properties";
+
+    private static final String HEIGHT = "height";
+    private static final String HASH = "hash";
+    private static final String STATE_ROOT = "stateRoot";
+    private static final String TOTAL_DIFFICULTY = "totalDifficulty";
+    private static final String VENDOR = "vendor";
+    private static final String DATABASES = "databases";
+    private static final String CREATED = "created";
+
+    public final long height;
+    public final byte[] hash;
+    public final byte[] stateRoot;
+    public final BigInteger totalDifficulty;
+    public final String vendor;
+    public final List<String> databases;
+    /** Creation time in milliseconds since the epoch. */
+    public final long created;
+
+    public DatabaseCheckpoint(
+            long height,
+            byte[] hash,
+            byte[] stateRoot,
+            BigInteger totalDifficulty,
+            String vendor,
+            List<String> databases,
+            long created) {
+        this.height = height;
+        this.hash = hash;
+        this.stateRoot = stateRoot;
+        this.totalDifficulty = totalDifficulty;
+        this.vendor = vendor;
+        this.databases = Collections.unmodifiableList(new ArrayList<>(databases));
+        this.created = created;
+    }
+
+    /** Writes the manifest to the given checkpoint directory. */
+    public void writeManifest(File directory) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty(HEIGHT, String.valueOf(height));
+        manifest.setProperty(HASH, Hex.toHexString(hash));
+        manifest.setProperty(STATE_ROOT, Hex.toHexString(stateRoot));
+        manifest.setProperty(TOTAL_DIFFICULTY, totalDifficulty.toString());
+        manifest.setProperty(VENDOR, vendor);
+        manifest.setProperty(DATABASES, String.join(",", databases));
+        manifest.setProperty(CREATED, String.valueOf(created));
+
+        try (OutputStream out = new FileOutputStream(new File(directory, MANIFEST_FILE))) {
+            manifest.store(out, "Aion database checkpoint");
+        }
+    }
+
+    /**
+     * Reads the manifest from the given checkpoint directory.
+     *
+     * @throws IOException when the manifest is missing or incomplete
+     */
+    public static DatabaseCheckpoint readManifest(File directory) throws IOException {
+        File file = new File(directory, MANIFEST_FILE);
+        if (!file.isFile()) {
+            throw new IOException("Missing checkpoint manifest " + file.getAbsolutePath() + ".");
+        }
+
+        Properties manifest = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            manifest.load(in);
+        }
+
+        try {
+            return new DatabaseCheckpoint(
+                    Long.parseLong(required(manifest, HEIGHT)),
+                    Hex.decode(required(manifest, HASH)),
+                    Hex.decode(required(manifest, STATE_ROOT)),
+                    new BigInteger(required(manifest, TOTAL_DIFFICULTY)),
+                    required(manifest, VENDOR),
+                    Arrays.asList(required(manifest, DATABASES).split(",")),
+                    Long.parseLong(required(manifest, CREATED)));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid checkpoint manifest " + file.getAbsolutePath() + ".", e);
+        }
+    }
+
+    private static String required(Properties manifest, String key) throws IOException {
+        String value = manifest.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            throw new IOException("The checkpoint manifest is missing the " + key + " entry.");
+        }
+        return value;
+    }
+
+    /**
+     * Restores the databases from a checkpoint into the given database directory, which must be
+     * empty or not exist.
+     *
+     * @implNote Immutable table files are hard-linked when the checkpoint is on the same file system
+     *     and copied otherwise. All other files are copied so that the restored databases never
+     *     modify the checkpoint.
+     * @return the manifest of the restored checkpoint
+     */
+    public static DatabaseCheckpoint restore(File checkpointDir, File dbPath) throws IOException {
+        DatabaseCheckpoint checkpoint = readManifest(checkpointDir);
+
+        String[] existing = dbPath.list();
+        if (existing != null && existing.length > 0) {
+            throw new FileAlreadyExistsException(
+                    dbPath.getAbsolutePath(), null, "The database directory is not empty.");
+        }
+
+        for (String name : checkpoint.databases) {
+            Path source = new File(checkpointDir, name).toPath();
+            if (!Files.exists(source)) {
+                throw new IOException("The checkpoint is missing the " + name + " database.");
+            }
+            Path target = new File(dbPath, name).toPath();
+            try (Stream<Path> stream = Files.walk(source)) {
+                for (Path file : (Iterable<Path>) stream::iterator) {
+                    Path copy = target.resolve(source.relativize(file));
+                    if (Files.isDirectory(file)) {
+                        Files.createDirectories(copy);
+                    } else {
+                        linkOrCopy(file, copy);
+                    }
+                }
+            }
+        }
+
+        return checkpoint;
+    }
+
+    private static void linkOrCopy(Path file, Path copy) throws IOException {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".sst") || name.endsWith(".ldb")) {
+            try {
+                Files.createLink(copy, file);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // different file systems or links not supported
+            }
+        }
+        Files.copy(file, copy);
+    }
+}
@@ -0,0 +1,223 @@
+package org.aion.zero.impl.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.aion.mcf.blockchain.Block;
+import org.aion.util.types.ByteArrayWrapper;
+
+/**
+ * Cache of block encodings used to answer block and body requests from peers without decoding and
+ * re-encoding the blocks or acquiring the block store lock.
+ *
+ * <p>The encodings are indexed by block hash and bounded by their total size. Main chain heights
+ * are mapped to block hashes. When the main chain changes, the block store invalidates the
+ * affected heights. Each invalidation increments a generation counter, so that ranges read before
+ * the change are not cached as main chain after it.
+ *
+ * @implNote This resource is thread safe. It uses its own lock, separate from the store lock.
+ */
+final class EncodedBlockCache {
+
+    /** The default limit for the total size of the cached encodings. */
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /** The default limit for the number of cached main chain heights. */
+    static final int DEFAULT_MAX_HEIGHTS = 16_384;
+
+    private final long maxBytes;
+
+    // access ordered such that iteration starts with the least recently used entry
+    private final LinkedHashMap<ByteArrayWrapper, Entry> byHash =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, ByteArrayWrapper> mainChain;
+
+    private long bytes = 0;
+    private long generation = 0;
+
+    /**
+     * @param maxBytes the limit for the total size of the cached encodings
+     * @param maxHeights the limit for the number of cached main chain heights
+     */
+    EncodedBlockCache(long maxBytes, int maxHeights) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The memory limit must be positive.");
+        }
+        if (maxHeights <= 0) {
+            throw new IllegalArgumentException("The number of heights must be positive.");
+        }
+        this.maxBytes = maxBytes;
+        this.mainChain =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Long, ByteArrayWrapper> eldest) {
+                        return size() > maxHeights;
+                    }
+                };
+    }
+
+    /** Returns the current generation, to be passed to {@link #putMainChain(List, long)}. */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the encoding of a stored block.
+     *
+     * @param block the stored block
+     * @param isMainChain {@code true} if the block is on the main chain at its height
+     */
+    void put(Block block, boolean isMainChain) {
+        // encoding outside the lock
+        byte[] encoded = block.getEncoded();
+        ByteArrayWrapper hash = ByteArrayWrapper.wrap(block.getHash());
+
+        synchronized (this) {
+            entry(hash, block).setEncoded(encoded);
+            if (isMainChain) {
+                mainChain.put(block.getNumber(), hash);
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Caches the encodings of a range of main chain blocks read from the store.
+     *
+     * @param blocks the blocks read from the store
+     * @param readGeneration the generation returned by {@link #generation()} before the blocks were
+     *     read; the heights are not cached if the main chain was changed since
+     * @return the encodings of the given blocks in the same order
+     */
+    List<byte[]> putMainChain(List<Block> blocks, long readGeneration) {
+        List<byte[]> encodings = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            encodings.add(block.getEncoded());
+        }
+
+        synchronized (this) {
+            boolean current = readGeneration == generation;
+            for (int i = 0; i < blocks.size(); i++) {
+                Block block = blocks.get(i);
+                ByteArrayWrapper hash = ByteArrayWrapper.wrap(block.getHash());
+                entry(hash, block).setEncoded(encodings.get(i));
+                if (current) {
+                    mainChain.put(block.getNumber(), hash);
+                }
+            }
+            evict();
+        }
+        return encodings;
+    }
+
+    /** Caches the encoded body of a stored block. */
+    synchronized void putBody(Block block, byte[] body) {
+        entry(ByteArrayWrapper.wrap(block.getHash()), block).setBody(body);
+        evict();
+    }
+
+    /** Returns the encoded body of the block with the given hash or {@code null} if not cached. */
+    synchronized byte[] getEncodedBody(byte[] hash) {
+        Entry entry = byHash.get(ByteArrayWrapper.wrap(hash));
+        return entry == null ? null : entry.body;
+    }
+
+    /**
+     * Returns the encodings of a range of main chain blocks if all of them are cached.
+     *
+     * @param first the height of the first block in the requested range
+     * @param last the height of the last block in the requested range; when smaller than {@code
+     *     first} the blocks are returned in descending order of their height
+     * @return the encodings in the requested order or {@code null} when any of the heights are not
+     *     cached
+     */
+    synchronized List<byte[]> getMainChainRange(long first, long last) {
+        int step = first <= last ? 1 : -1;
+        List<byte[]> encodings = new ArrayList<>((int) Math.abs(last - first) + 1);
+
+        ByteArrayWrapper previousHash = null;
+        Entry previous = null;
+        for (long height = first; height != last + step; height += step) {
+            ByteArrayWrapper hash = mainChain.get(height);
+            Entry entry = hash == null ? null : byHash.get(hash);
+            if (entry == null || entry.encoded == null) {
+                return null;
+            }
+
+            // ensure the cached heights form a chain
+            if (previous != null) {
+                boolean linked =
+                        step > 0
+                                ? Arrays.equals(entry.parentHash, previousHash.toBytes())
+                                : Arrays.equals(previous.parentHash, hash.toBytes());
+                if (!linked) {
+                    return null;
+                }
+            }
+
+            encodings.add(entry.encoded);
+            previousHash = hash;
+            previous = entry;
+        }
+        return encodings;
+    }
+
+    /** Removes the main chain heights greater or equal to the given level. */
+    synchronized void invalidateMainChainFrom(long level) {
+        mainChain.keySet().removeIf(height -> height >= level);
+        generation++;
+    }
+
+    /** Returns the total size of the cached encodings. */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /** @implNote The method calling this method must hold the cache lock. */
+    private Entry entry(ByteArrayWrapper hash, Block block) {
+        Entry entry = byHash.get(hash);
+        if (entry == null) {
+            entry = new Entry(block.getParentHash());
+            byHash.put(hash, entry);
+        }
+        return entry;
+    }
+
+    /** @implNote The method calling this method must hold the cache lock. */
+    private void evict() {
+        Iterator<Entry> iterator = byHash.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            bytes -= entry.size();
+            iterator.remove();
+        }
+    }
+
+    /** The cached encodings of a block, which may be missing until the block is served. */
+    private final class Entry {
+        final byte[] parentHash;
+        byte[] encoded = null;
+        byte[] body = null;
+
+        Entry(byte[] parentHash) {
+            this.parentHash = parentHash;
+        }
+
+        void setEncoded(byte[] encoded) {
+            bytes += encoded.length - (this.encoded == null ? 0 : this.encoded.length);
+            this.encoded = encoded;
+        }
+
+        void setBody(byte[] body) {
+            bytes += body.length - (this.body == null ? 0 : this.body.length);
+            this.body = body;
+        }
+
+        long size() {
+            return (encoded == null ? 0 : encoded.length) + (body == null ? 0 : body.length);
+        }
+    }
+}
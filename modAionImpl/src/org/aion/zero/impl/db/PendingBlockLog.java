@@ -0,0 +1,263 @@
+package org.aion.zero.impl.db;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.slf4j.Logger;
+
+/**
+ * Append-only log holding the encoding of the blocks from the pending block store.
+ *
+ * <p>Each stored range of blocks is written contiguously into a segment. The segments keep track
+ * of the number of ranges they contain that have not been dropped and are deleted as soon as all
+ * their ranges are dropped, such that disk space is reclaimed without rewriting any data. Reads
+ * return views of the segment buffers and do not copy the stored data.
+ *
+ * <p>The segments are memory-mapped files when a directory is given and heap buffers otherwise.
+ *
+ * @implNote This class is not thread safe. The {@link PendingBlockStore} handles the locking.
+ */
+final class PendingBlockLog implements Closeable {
+
+    private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.DB.name());
+
+    static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final String SEGMENT_FILE_FORMAT = "segment-%06d.dat";
+    private static final Pattern SEGMENT_FILE_PATTERN = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final File dir;
+    private final int segmentSize;
+
+    private final Map<Integer, Segment> segments = new TreeMap<>();
+    // the segment receiving new ranges, null when a new segment must be started
+    private Segment current;
+    private int nextId;
+    // the segments written since the last flush
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+
+    /**
+     * @param dir the directory holding the segment files or {@code null} to keep the segments in
+     *     memory
+     * @param segmentSize the size of a segment; ranges larger than this value are stored in
+     *     dedicated segments
+     * @param liveRanges the number of stored ranges for each segment, used to recover the segments
+     *     after a restart; segments without ranges are deleted
+     * @throws IOException when the segment files cannot be listed, deleted or mapped
+     */
+    PendingBlockLog(File dir, int segmentSize, Map<Integer, Integer> liveRanges)
+            throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive.");
+        }
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException(
+                    "Unable to create the segment directory " + dir.getAbsolutePath());
+        }
+
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.nextId = 0;
+
+        if (dir != null) {
+            recover(liveRanges);
+        }
+    }
+
+    /** Maps the segments that still hold ranges and deletes the others. */
+    private void recover(Map<Integer, Integer> liveRanges) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list the segment directory " + dir.getAbsolutePath());
+        }
+
+        for (File file : files) {
+            Matcher matcher = SEGMENT_FILE_PATTERN.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            int id = Integer.parseInt(matcher.group(1));
+            nextId = Math.max(nextId, id + 1);
+
+            Integer ranges = liveRanges.get(id);
+            if (ranges == null || ranges == 0) {
+                delete(file);
+            } else {
+                Segment segment = new Segment(id, map(file, (int) file.length()), file);
+                segment.ranges = ranges;
+                segments.put(id, segment);
+            }
+        }
+
+        for (Integer id : liveRanges.keySet()) {
+            if (!segments.containsKey(id)) {
+                LOG.error("Missing pending blocks segment {}. Its blocks will not be loaded.", id);
+            }
+        }
+    }
+
+    /**
+     * Appends the given records contiguously to a segment. The range is counted as live only after
+     * {@link #retain(int)} is called for the returned segment.
+     *
+     * @param records the records to be appended
+     * @param offsets the array where the offset of each record is written
+     * @return the identifier of the segment holding the records
+     * @throws IOException when a new segment cannot be created
+     */
+    int append(List<byte[]> records, int[] offsets) throws IOException {
+        int length = 0;
+        for (byte[] record : records) {
+            length += record.length;
+        }
+
+        if (current == null
+                || (current.writeOffset > 0
+                        && (long) current.writeOffset + length > current.buffer.capacity())) {
+            current = newSegment(Math.max(segmentSize, length));
+        }
+
+        ByteBuffer buffer = current.buffer.duplicate();
+        buffer.position(current.writeOffset);
+        for (int i = 0; i < records.size(); i++) {
+            offsets[i] = buffer.position();
+            buffer.put(records.get(i));
+        }
+        current.writeOffset = buffer.position();
+        dirty.add(current);
+        return current.id;
+    }
+
+    /** Marks a range appended to the given segment as stored. */
+    void retain(int segment) {
+        Segment s = segments.get(segment);
+        if (s != null) {
+            s.ranges++;
+        }
+    }
+
+    /**
+     * Marks a range from the given segment as dropped. The segment is deleted when it no longer
+     * holds any ranges.
+     */
+    void release(int segment) {
+        Segment s = segments.get(segment);
+        if (s == null) {
+            return;
+        }
+
+        s.ranges--;
+        if (s.ranges <= 0) {
+            segments.remove(segment);
+            dirty.remove(s);
+            if (s == current) {
+                current = null;
+            }
+            if (s.file != null) {
+                delete(s.file);
+            }
+        }
+    }
+
+    /**
+     * Returns a read-only view of the stored data.
+     *
+     * @return a buffer positioned at the requested data or {@code null} when the segment does not
+     *     exist
+     */
+    ByteBuffer read(int segment, int offset, int length) {
+        Segment s = segments.get(segment);
+        if (s == null) {
+            return null;
+        }
+
+        ByteBuffer buffer = s.buffer.asReadOnlyBuffer();
+        buffer.position(offset);
+        buffer.limit(offset + length);
+        return buffer.slice();
+    }
+
+    /**
+     * Forces the data written since the last flush to the storage device, including the segments
+     * that were filled and replaced by new ones in the meantime.
+     */
+    void flush() {
+        for (Segment segment : dirty) {
+            if (segment.buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) segment.buffer).force();
+            }
+        }
+        dirty.clear();
+    }
+
+    /** Returns the number of segments holding stored ranges. */
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        segments.clear();
+        current = null;
+    }
+
+    private Segment newSegment(int capacity) throws IOException {
+        int id = nextId++;
+        Segment segment;
+        if (dir == null) {
+            segment = new Segment(id, ByteBuffer.allocate(capacity), null);
+        } else {
+            File file = new File(dir, String.format(SEGMENT_FILE_FORMAT, id));
+            segment = new Segment(id, map(file, capacity), file);
+        }
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(File file, int capacity) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(
+                        file.toPath(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            // the mapping remains valid after the channel is closed
+            return channel.map(MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Unable to delete the pending blocks segment {}.", file.getAbsolutePath());
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final ByteBuffer buffer;
+        final File file;
+        int writeOffset = 0;
+        int ranges = 0;
+
+        Segment(int id, ByteBuffer buffer, File file) {
+            this.id = id;
+            this.buffer = buffer;
+            this.file = file;
+        }
+    }
+}
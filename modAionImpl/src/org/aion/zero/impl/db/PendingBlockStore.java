@@ -1,6 +1,7 @@
 package org.aion.zero.impl.db;
 
 import static org.aion.zero.impl.db.DatabaseUtils.connectAndOpen;
+import static org.aion.zero.impl.db.DatabaseUtils.deleteRecursively;
 import static org.aion.zero.impl.db.DatabaseUtils.verifyAndBuildPath;
 import static org.aion.zero.impl.db.DatabaseUtils.verifyDBfileType;
 
@@ -8,6 +9,8 @@ import com.google.common.annotations.VisibleForTesting;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -44,16 +47,21 @@ import org.slf4j.Logger;
  * Class for storing blocks that are correct but cannot be imported due to missing parent. Used to
  * speed up lightning sync and backward sync to side chains.
  *
- * <p>The blocks are stored using three data sources:
+ * <p>The encoded blocks are appended to a {@link PendingBlockLog} and located using three data
+ * sources:
  *
  * <ul>
  *   <li><b>levels</b>: maps a blockchain height to the queue identifiers that start with blocks at
  *       that height;
- *   <li><b>queues</b>: maps queues identifiers to the list of blocks (in ascending order) that
- *       belong to the queue;
+ *   <li><b>ranges</b>: maps queues identifiers to the position in the log of each block (in
+ *       ascending order) that belongs to the queue;
  *   <li><b>indexes</b>: maps block hashes to the identifier of the queue where the block is stored.
  * </ul>
  *
+ * The blocks of a queue are stored contiguously in the log and are decoded only when the loaded
+ * queue is read. Dropping a queue deletes its entries from the data sources, while the space used
+ * in the log is reclaimed by deleting the segments whose queues were all dropped.
+ *
  * Additionally, the class is used to optimize requests for blocks ahead of time by tracking
  * received status blocks and proposing (mostly non-overlapping) base values for the requests.
  *
@@ -68,8 +76,11 @@ public class PendingBlockStore implements Closeable {
 
     // database names
     private static final String LEVEL_DB_NAME = "level";
-    private static final String QUEUE_DB_NAME = "queue";
+    private static final String RANGE_DB_NAME = "range";
     private static final String INDEX_DB_NAME = "index";
+    private static final String SEGMENT_DIR_NAME = "segments";
+    // holds complete queues of blocks in the format used before the log was introduced
+    private static final String LEGACY_QUEUE_DB_NAME = "queue";
 
     // data sources: with access managed by the `databaseLock`
     /**
@@ -79,12 +90,14 @@ public class PendingBlockStore implements Closeable {
     private ObjectStore<List<byte[]>> levelSource;
 
     private ByteArrayKeyValueDatabase levelDatabase;
-    /** Used to map a queue identifier to a list of consecutive blocks. */
-    private ObjectStore<List<Block>> queueSource;
+    /** Used to map a queue identifier to the position of its consecutive blocks in the log. */
+    private ObjectStore<StoredRange> queueSource;
 
     private ByteArrayKeyValueDatabase queueDatabase;
     /** Used to maps a block hash to its current queue identifier. */
     private ByteArrayKeyValueDatabase indexSource;
+    /** Holds the encoding of the stored blocks. */
+    private PendingBlockLog blockLog;
 
     /**
      * Constructor. Initializes the databases used for storage. If the database configuration used
@@ -101,6 +114,7 @@ public class PendingBlockStore implements Closeable {
 
         // check for database persistence requirements
         DBVendor vendor = DBVendor.fromString(local.getProperty(Props.DB_TYPE));
+        File segmentDir = null;
         if (vendor.isFileBased()) {
             File pbFolder =
                     new File(local.getProperty(Props.DB_PATH), local.getProperty(Props.DB_NAME));
@@ -112,19 +126,29 @@ public class PendingBlockStore implements Closeable {
             }
 
             local.setProperty(Props.DB_PATH, pbFolder.getAbsolutePath());
+            segmentDir = new File(pbFolder, SEGMENT_DIR_NAME);
+
+            // the pending blocks are not kept across the change of format
+            File legacy = new File(pbFolder, LEGACY_QUEUE_DB_NAME);
+            if (legacy.exists() && !deleteRecursively(legacy)) {
+                LOG.warn("Unable to delete the legacy pending blocks database {}.", legacy);
+            }
         }
 
-        init(local);
+        init(local, segmentDir);
     }
 
     /**
      * Initializes and opens the databases where the pending blocks will be stored.
      *
      * @param props the database properties to be used in initializing the underlying databases
+     * @param segmentDir the directory for the log segments or {@code null} to keep them in memory
      * @throws InvalidFilePathException when any of the required databases cannot be instantiated or
      *     opened.
+     * @throws IOException when the log segments cannot be opened
      */
-    private void init(Properties props) throws InvalidFilePathException {
+    private void init(Properties props, File segmentDir)
+            throws InvalidFilePathException, IOException {
         // create the level source
         props.setProperty(Props.DB_NAME, LEVEL_DB_NAME);
         this.levelDatabase = connectAndOpen(props, LOG);
@@ -133,13 +157,13 @@ public class PendingBlockStore implements Closeable {
         }
         this.levelSource = Stores.newObjectStore(levelDatabase, HASH_LIST_RLP_SERIALIZER);
 
-        // create the queue source
-        props.setProperty(Props.DB_NAME, QUEUE_DB_NAME);
+        // create the range source
+        props.setProperty(Props.DB_NAME, RANGE_DB_NAME);
         this.queueDatabase = connectAndOpen(props, LOG);
         if (queueDatabase == null || queueDatabase.isClosed()) {
-            throw newException(QUEUE_DB_NAME, props);
+            throw newException(RANGE_DB_NAME, props);
         }
-        this.queueSource = Stores.newObjectStore(queueDatabase, BLOCK_LIST_RLP_SERIALIZER);
+        this.queueSource = Stores.newObjectStore(queueDatabase, StoredRange.SERIALIZER);
 
         // create the index source
         props.setProperty(Props.DB_NAME, INDEX_DB_NAME);
@@ -147,6 +171,35 @@ public class PendingBlockStore implements Closeable {
         if (indexSource == null || indexSource.isClosed()) {
             throw newException(INDEX_DB_NAME, props);
         }
+
+        // levels and indexes without ranges are left over from the legacy format
+        if (queueDatabase.isEmpty()) {
+            clear(levelDatabase);
+            clear(indexSource);
+        }
+
+        // count the stored queues from each segment of the log
+        Map<Integer, Integer> liveRanges = new HashMap<>();
+        Iterator<byte[]> keys = queueDatabase.keys();
+        while (keys.hasNext()) {
+            StoredRange range = queueSource.get(keys.next());
+            if (range != null) {
+                liveRanges.merge(range.segment, 1, Integer::sum);
+            }
+        }
+        this.blockLog =
+                new PendingBlockLog(segmentDir, PendingBlockLog.DEFAULT_SEGMENT_SIZE, liveRanges);
+    }
+
+    private static void clear(ByteArrayKeyValueDatabase db) {
+        List<byte[]> keys = new ArrayList<>();
+        Iterator<byte[]> iterator = db.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        if (!keys.isEmpty()) {
+            db.deleteBatch(keys);
+        }
     }
 
     private InvalidFilePathException newException(String dbName, Properties props) {
@@ -199,41 +252,6 @@ public class PendingBlockStore implements Closeable {
                 }
             };
 
-    private static final Serializer<List<Block>> BLOCK_LIST_RLP_SERIALIZER =
-            new Serializer<>() {
-                @Override
-                public byte[] serialize(List<Block> object) {
-                    byte[][] infoList = new byte[object.size()][];
-                    int i = 0;
-                    for (Block b : object) {
-                        infoList[i] = b.getEncoded();
-                        i++;
-                    }
-                    return RLP.encodeList(infoList);
-                }
-
-                @Override
-                public List<Block> deserialize(byte[] stream) {
-                    RLPList list = (RLPList) RLP.decode2(stream).get(0);
-                    List<Block> res = new ArrayList<>(list.size());
-
-                    for (RLPElement aList : list) {
-                        Block block = BlockUtil.newBlockFromRlp(aList.getRLPData());
-                        if (block != null) {
-                            res.add(block);
-                        } else {
-                            // logs a NPE to show the stack trace
-                            // does not throw the NPE since the program can continue working correctly
-                            LOG.warn(
-                                    "Unexpected null block retrieved from the pending blocks database for data="
-                                            + Arrays.toString(stream),
-                                    new NullPointerException());
-                        }
-                    }
-                    return res;
-                }
-            };
-
     /**
      * Attempts to store a range of blocks in the pending block store for importing later when the
      * chain reaches the needed height and the parent blocks gets imported.
@@ -258,13 +276,19 @@ public class PendingBlockStore implements Closeable {
             // first block determines the batch queue placement
             Block first = blockRange.remove(0);
 
-            int stored = addBlockRange(first, blockRange);
+            List<Integer> segments = new ArrayList<>();
+            int stored = addBlockRange(first, blockRange, segments);
 
-            // save data to disk
+            // save data to disk, the blocks before their positions
+            blockLog.flush();
             indexSource.commitBatch();
             levelSource.flushBatch();
             queueSource.flushBatch();
 
+            for (int segment : segments) {
+                blockLog.retain(segment);
+            }
+
             // the number of blocks added
             return stored;
         } catch (Exception e) {
@@ -282,11 +306,13 @@ public class PendingBlockStore implements Closeable {
      *     determine the queue identifier
      * @param blockRange a range of blocks that cannot be imported due to height or lack of parent
      *     block
+     * @param segments collects the log segments where the queues were appended
      * @return an integer value (ranging from zero to the number of given blocks) representing the
      *     number of blocks that were stored from the given input.
      * @implNote Any method calling this functionality must first acquire the needed write lock.
      */
-    private int addBlockRange(Block first, List<Block> blockRange) {
+    private int addBlockRange(Block first, List<Block> blockRange, List<Integer> segments)
+            throws IOException {
 
         // skip if already stored
         while (indexSource.get(first.getHash()).isPresent()) {
@@ -333,7 +359,7 @@ public class PendingBlockStore implements Closeable {
                     || indexSource.get(current.getHash()).isPresent()) { // already stored
 
                 // store separately
-                stored += addBlockRange(current, blockRange);
+                stored += addBlockRange(current, blockRange, segments);
 
                 // done with loop
                 break;
@@ -351,12 +377,36 @@ public class PendingBlockStore implements Closeable {
         }
 
         // done with queue
-        queueSource.putToBatch(currentQueueHash, currentQueue);
+        queueSource.putToBatch(currentQueueHash, appendToLog(currentQueue, segments));
 
         // the number of blocks added
         return stored;
     }
 
+    /**
+     * Appends the encoding of the given blocks to the log.
+     *
+     * @return the position of the blocks in the log
+     * @implNote Any method calling this functionality must first acquire the needed write lock.
+     */
+    private StoredRange appendToLog(List<Block> queue, List<Integer> segments) throws IOException {
+        List<byte[]> encodings = new ArrayList<>(queue.size());
+        int[] lengths = new int[queue.size()];
+        byte[][] hashes = new byte[queue.size()][];
+        for (int i = 0; i < queue.size(); i++) {
+            Block block = queue.get(i);
+            byte[] encoding = block.getEncoded();
+            encodings.add(encoding);
+            lengths[i] = encoding.length;
+            hashes[i] = block.getHash();
+        }
+
+        int[] offsets = new int[queue.size()];
+        int segment = blockLog.append(encodings, offsets);
+        segments.add(segment);
+        return new StoredRange(segment, offsets, lengths, hashes);
+    }
+
     /**
      * @return the number of elements stored in the index database.
      * @implNote This method is package private because it is meant to be used for testing.
@@ -399,6 +449,20 @@ public class PendingBlockStore implements Closeable {
         }
     }
 
+    /**
+     * @return the number of log segments holding stored blocks.
+     * @implNote This method is package private because it is meant to be used for testing.
+     */
+    @VisibleForTesting
+    int getSegmentCount() {
+        databaseLock.readLock().lock();
+        try {
+            return blockLog.getSegmentCount();
+        } finally {
+            databaseLock.readLock().unlock();
+        }
+    }
+
     private static int countDatabaseKeys(ByteArrayKeyValueDatabase db) {
         int size = 0;
         Iterator<byte[]> iterator = db.keys();
@@ -415,6 +479,7 @@ public class PendingBlockStore implements Closeable {
      * @param level the height / number of the first block in the queues to be retrieved
      * @return a map of queue identifiers and lists of blocks containing all the separate chain
      *     queues stored at that level.
+     * @implNote The returned lists are views of the log which decode the blocks on first access.
      */
     public Map<ByteArrayWrapper, List<Block>> loadBlockRange(long level) {
         databaseLock.readLock().lock();
@@ -428,12 +493,20 @@ public class PendingBlockStore implements Closeable {
             }
 
             // get all the blocks in the given queues
-            List<Block> list;
             Map<ByteArrayWrapper, List<Block>> blocks = new HashMap<>();
             for (byte[] queue : queueHashes) {
-                list = queueSource.get(queue);
-                if (list != null) {
-                    blocks.put(ByteArrayWrapper.wrap(queue), list);
+                StoredRange range = queueSource.get(queue);
+                if (range == null) {
+                    continue;
+                }
+
+                ByteBuffer data = blockLog.read(range.segment, range.start(), range.size());
+                if (data == null) {
+                    LOG.error(
+                            "Corrupt data in PendingBlockStorage. Segment {} (expected to exist) was not found.",
+                            range.segment);
+                } else {
+                    blocks.put(ByteArrayWrapper.wrap(queue), new StoredBlockList(data, range));
                 }
             }
 
@@ -451,27 +524,29 @@ public class PendingBlockStore implements Closeable {
      *
      * @param level the block height of the queue starting point
      * @param queues the identifiers for the queues to be deleted
-     * @param blocks the queue to blocks mappings to be deleted (used to ensure that if the queues
-     *     have been expanded, only the relevant blocks get deleted)
      */
-    public void dropPendingQueues(
-            long level,
-            Collection<ByteArrayWrapper> queues,
-            Map<ByteArrayWrapper, List<Block>> blocks) {
+    public void dropPendingQueues(long level, Collection<ByteArrayWrapper> queues) {
 
         databaseLock.writeLock().lock();
 
         try {
             // delete imported queues & blocks
+            List<Integer> segments = new ArrayList<>();
             for (ByteArrayWrapper q : queues) {
+                StoredRange range = queueSource.get(q.toBytes());
+                if (range == null) {
+                    continue;
+                }
+
                 // delete imported blocks
-                for (Block b : blocks.get(q)) {
+                for (byte[] hash : range.hashes) {
                     // delete index
-                    indexSource.deleteInBatch(b.getHash());
+                    indexSource.deleteInBatch(hash);
                 }
 
                 // delete queue
                 queueSource.deleteInBatch(q.toBytes());
+                segments.add(range.segment);
             }
 
             // update level
@@ -505,6 +580,11 @@ public class PendingBlockStore implements Closeable {
             indexSource.commitBatch();
             queueSource.flushBatch();
             levelSource.flushBatch();
+
+            // reclaim the log segments after their queues are gone
+            for (int segment : segments) {
+                blockLog.release(segment);
+            }
         } catch (Exception e) {
             LOG.error("Unable to delete used blocks due to: ", e);
         } finally {
@@ -534,8 +614,127 @@ public class PendingBlockStore implements Closeable {
             } catch (Exception e) {
                 LOG.error("Not able to close the pending blocks index database:", e);
             }
+
+            try {
+                blockLog.close();
+            } catch (Exception e) {
+                LOG.error("Not able to close the pending blocks log:", e);
+            }
         } finally {
             databaseLock.writeLock().unlock();
         }
     }
+
+    /** The position in the log of a queue of blocks together with their hashes. */
+    private static final class StoredRange {
+        private static final int HASH_SIZE = 32;
+
+        final int segment;
+        final int[] offsets;
+        final int[] lengths;
+        final byte[][] hashes;
+
+        StoredRange(int segment, int[] offsets, int[] lengths, byte[][] hashes) {
+            this.segment = segment;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.hashes = hashes;
+        }
+
+        /** Returns the offset of the first block in the segment. */
+        int start() {
+            return offsets[0];
+        }
+
+        /** Returns the size of the contiguous region holding the blocks. */
+        int size() {
+            int last = offsets.length - 1;
+            return offsets[last] + lengths[last] - offsets[0];
+        }
+
+        /** Layout: segment (int), count (int), then offset (int), length (int), hash per block. */
+        static final Serializer<StoredRange> SERIALIZER =
+                new Serializer<>() {
+                    @Override
+                    public byte[] serialize(StoredRange range) {
+                        int count = range.offsets.length;
+                        ByteBuffer buffer =
+                                ByteBuffer.allocate(
+                                        2 * Integer.BYTES
+                                                + count * (2 * Integer.BYTES + HASH_SIZE));
+                        buffer.putInt(range.segment);
+                        buffer.putInt(count);
+                        for (int i = 0; i < count; i++) {
+                            buffer.putInt(range.offsets[i]);
+                            buffer.putInt(range.lengths[i]);
+                            buffer.put(range.hashes[i]);
+                        }
+                        return buffer.array();
+                    }
+
+                    @Override
+                    public StoredRange deserialize(byte[] stream) {
+                        ByteBuffer buffer = ByteBuffer.wrap(stream);
+                        int segment = buffer.getInt();
+                        int count = buffer.getInt();
+                        int[] offsets = new int[count];
+                        int[] lengths = new int[count];
+                        byte[][] hashes = new byte[count][HASH_SIZE];
+                        for (int i = 0; i < count; i++) {
+                            offsets[i] = buffer.getInt();
+                            lengths[i] = buffer.getInt();
+                            buffer.get(hashes[i]);
+                        }
+                        return new StoredRange(segment, offsets, lengths, hashes);
+                    }
+                };
+    }
+
+    /** List of stored blocks backed by a view of the log, decoding the blocks when first read. */
+    private static final class StoredBlockList extends AbstractList<Block> {
+        private final ByteBuffer data;
+        private final StoredRange range;
+        private List<Block> blocks = null;
+
+        StoredBlockList(ByteBuffer data, StoredRange range) {
+            this.data = data;
+            this.range = range;
+        }
+
+        @Override
+        public Block get(int index) {
+            return decoded().get(index);
+        }
+
+        @Override
+        public int size() {
+            return decoded().size();
+        }
+
+        private synchronized List<Block> decoded() {
+            if (blocks == null) {
+                List<Block> list = new ArrayList<>(range.offsets.length);
+                for (int i = 0; i < range.offsets.length; i++) {
+                    byte[] encoding = new byte[range.lengths[i]];
+                    ByteBuffer buffer = data.duplicate();
+                    buffer.position(range.offsets[i] - range.start());
+                    buffer.get(encoding);
+
+                    Block block = BlockUtil.newBlockFromRlp(encoding);
+                    if (block != null) {
+                        list.add(block);
+                    } else {
+                        // logs a NPE to show the stack trace
+                        // does not throw the NPE since the program can continue working correctly
+                        LOG.warn(
+                                "Unexpected null block retrieved from the pending blocks log for data="
+                                        + Arrays.toString(encoding),
+                                new NullPointerException());
+                    }
+                }
+                blocks = list;
+            }
+            return blocks;
+        }
+    }
 }
@@ -185,6 +185,22 @@ public class AionPendingStateImpl implements IPendingState {
         return isSeedMode ? new ArrayList<>() : this.txPool.snapshot();
     }
 
+    /**
+     * Returns the transactions held in the pool and in the pending cache, from which blocks relayed
+     * in compact form are reassembled.
+     */
+    public synchronized List<AionTransaction> getPoolAndCachedTransactions() {
+        if (isSeedMode) {
+            return new ArrayList<>();
+        }
+
+        List<AionTransaction> txs = txPool.getAll();
+        for (AionAddress addr : pendingTxCache.getCacheTxAccount()) {
+            txs.addAll(pendingTxCache.getCacheTx(addr).values());
+        }
+        return txs;
+    }
+
     /**
      * Transaction comes from the ApiServer. Validate it first then add into the pendingPool.
      * Synchronized it because multiple Api interfaces call this method.
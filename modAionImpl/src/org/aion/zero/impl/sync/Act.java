@@ -26,4 +26,18 @@ public final class Act {
     public static final byte REQUEST_BLOCKS = 12;
 
     public static final byte RESPONSE_BLOCKS = 13;
+
+    public static final byte ANNOUNCE_TX = 14;
+
+    public static final byte REQUEST_TX = 15;
+
+    public static final byte COMPACT_BLOCK = 16;
+
+    public static final byte REQUEST_BLOCK_TXS = 17;
+
+    public static final byte RESPONSE_BLOCK_TXS = 18;
+
+    public static final byte REQUEST_SKELETON = 19;
+
+    public static final byte RESPONSE_SKELETON = 20;
 }
@@ -0,0 +1,196 @@
+package org.aion.zero.impl.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.mcf.blockchain.Block;
+
+/**
+ * Bounded buffer that hands the received batches of blocks to the import in ascending order of
+ * height. The batches are placed in a ring of slots indexed by the height of their first block,
+ * covering a window that starts right above the best block, such that consecutive batches are
+ * retrieved by walking the ring instead of re-sorting the pending batches.
+ *
+ * <p>The memory used by the buffer is bounded by the encoded size of the blocks it holds. Batches
+ * beyond the window or that do not fit in the memory budget are rejected so that they can be
+ * stored on disk, except for the batches that can be imported right away, which wait for space to
+ * become available.
+ *
+ * @implNote This resource is thread safe.
+ */
+final class BlockReorderBuffer {
+
+    /** The default number of heights covered by the buffer. */
+    static final int DEFAULT_HEIGHTS = 1024;
+
+    /** The default limit for the encoded size of the buffered blocks. */
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final int heights;
+    private final long maxBytes;
+
+    // batches indexed by the height of their first block, batches below the window share its slot
+    private final List<Entry>[] slots;
+
+    // the first height covered by the ring, right above the best block
+    private long windowStart = 0;
+    // no batches are buffered at positions lower than this one
+    private long nextPosition = 0;
+    private int size = 0;
+    private long bytes = 0;
+
+    /**
+     * @param heights the number of heights covered by the buffer
+     * @param maxBytes the limit for the encoded size of the buffered blocks
+     */
+    @SuppressWarnings("unchecked")
+    BlockReorderBuffer(int heights, long maxBytes) {
+        if (heights <= 0) {
+            throw new IllegalArgumentException("The number of heights must be positive.");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The memory limit must be positive.");
+        }
+        this.heights = heights;
+        this.maxBytes = maxBytes;
+        this.slots = new List[heights];
+    }
+
+    /**
+     * Adds the given batch to the buffer unless it must be stored on disk. A batch that can be
+     * imported right away waits for space when the memory budget is exceeded, while the other
+     * batches are rejected.
+     *
+     * @param batch the blocks received from a peer
+     * @param bestBlockNumber the height of the current best block
+     * @return {@code true} when the batch was buffered, {@code false} when the batch is too far
+     *     ahead or there is not enough memory left for it
+     * @throws InterruptedException when interrupted while waiting for space
+     */
+    synchronized boolean offer(final BlocksWrapper batch, long bestBlockNumber)
+            throws InterruptedException {
+        advance(bestBlockNumber + 1);
+
+        long position = Math.max(batch.firstBlockNumber, windowStart);
+        if (position >= windowStart + heights) {
+            return false;
+        }
+
+        long batchBytes = 0;
+        for (Block block : batch.blocks) {
+            batchBytes += block.size();
+        }
+
+        if (bytes + batchBytes > maxBytes && size > 0) {
+            if (position > windowStart) {
+                return false;
+            }
+            // the batch is needed next, so it waits for the importer to free some space
+            while (bytes + batchBytes > maxBytes && size > 0) {
+                wait();
+            }
+            position = windowStart;
+        }
+
+        int index = index(position);
+        if (slots[index] == null) {
+            slots[index] = new ArrayList<>();
+        }
+        slots[index].add(new Entry(batch, batchBytes));
+        nextPosition = size == 0 ? position : Math.min(nextPosition, position);
+        size++;
+        bytes += batchBytes;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Removes the batch with the lowest height from the buffer, waiting for one to be added if
+     * necessary. Batches starting at the same height are returned in the order they were added.
+     *
+     * @return the batch with the lowest height
+     * @throws InterruptedException when interrupted while waiting
+     */
+    synchronized BlocksWrapper take() throws InterruptedException {
+        while (size == 0) {
+            wait();
+        }
+
+        long position = Math.max(nextPosition, windowStart);
+        while (slots[index(position)] == null) {
+            position++;
+        }
+        nextPosition = position;
+
+        List<Entry> slot = slots[index(position)];
+        Entry lowest = slot.get(0);
+        for (Entry entry : slot) {
+            if (entry.batch.firstBlockNumber < lowest.batch.firstBlockNumber) {
+                lowest = entry;
+            }
+        }
+        slot.remove(lowest);
+        if (slot.isEmpty()) {
+            slots[index(position)] = null;
+        }
+
+        size--;
+        bytes -= lowest.bytes;
+        notifyAll();
+        return lowest.batch;
+    }
+
+    /** Returns the number of buffered batches. */
+    synchronized int size() {
+        return size;
+    }
+
+    /** Returns the encoded size of the buffered blocks. */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * Moves the start of the window up to the given height. The batches that fall below the
+     * window are moved to its first slot, where they are the next to be imported.
+     */
+    private void advance(long start) {
+        if (start <= windowStart) {
+            return;
+        }
+
+        List<Entry> below = new ArrayList<>();
+        long steps = Math.min(start - windowStart, heights);
+        for (long height = windowStart; height < windowStart + steps; height++) {
+            int index = index(height);
+            if (slots[index] != null) {
+                below.addAll(slots[index]);
+                slots[index] = null;
+            }
+        }
+
+        windowStart = start;
+        if (!below.isEmpty()) {
+            int index = index(start);
+            if (slots[index] == null) {
+                slots[index] = new ArrayList<>();
+            }
+            slots[index].addAll(0, below);
+            nextPosition = start;
+        }
+    }
+
+    private int index(long height) {
+        return (int) Math.floorMod(height, (long) heights);
+    }
+
+    /** A buffered batch together with its encoded size. */
+    private static final class Entry {
+        final BlocksWrapper batch;
+        final long bytes;
+
+        Entry(BlocksWrapper batch, long bytes) {
+            this.batch = batch;
+            this.bytes = bytes;
+        }
+    }
+}
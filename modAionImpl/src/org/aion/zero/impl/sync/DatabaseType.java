@@ -8,5 +8,7 @@ package org.aion.zero.impl.sync;
 public enum DatabaseType {
     STATE,
     DETAILS,
-    STORAGE
+    STORAGE,
+    /** The AVM object graphs and the storage roots they are paired with. */
+    GRAPH
 }
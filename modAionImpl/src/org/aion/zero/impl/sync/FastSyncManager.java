@@ -0,0 +1,387 @@
+package org.aion.zero.impl.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.util.bytes.ByteUtil;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.sync.msg.ResponseBlocks;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.sync.statistics.RequestType;
+import org.aion.zero.impl.types.BlockUtil;
+import org.slf4j.Logger;
+
+/**
+ * Coordinates the fast sync, which retrieves the state of a recent block, called the pivot, from
+ * the network instead of executing all the blocks from genesis. The sync goes through the
+ * following phases:
+ *
+ * <ol>
+ *   <li>{@link Phase#PIVOT}: a block reported by several peers is selected as pivot;
+ *   <li>{@link Phase#STATE}: the world state at the pivot is retrieved followed by the contract
+ *       details, storage and object graphs of the contracts it contains;
+ *   <li>{@link Phase#ANCESTORS}: the pivot is stored together with a number of ancestors that
+ *       allow the validation of the following blocks, after which the pivot becomes the best
+ *       block;
+ *   <li>{@link Phase#COMPLETE}: the regular sync continues from the pivot.
+ * </ol>
+ *
+ * <p>The phase and the pivot are persisted, so that an interrupted fast sync resumes where it
+ * stopped. The trie data already stored is not requested again.
+ *
+ * <p>When a trusted checkpoint is configured, the checkpoint block is used as pivot as soon as a
+ * peer delivers it and all its ancestors down to genesis are stored without being executed, such
+ * that the complete history remains queryable. The total difficulty of the checkpoint is computed
+ * from the stored ancestors before it becomes the best block.
+ *
+ * @implNote Without a checkpoint the blocks older than the imported ancestors are not retrieved.
+ */
+public final class FastSyncManager {
+
+    enum Phase {
+        PIVOT,
+        STATE,
+        ANCESTORS,
+        COMPLETE
+    }
+
+    /** The capacity of the queue of received blocks. */
+    private static final int BLOCKS_QUEUE_CAPACITY = 32;
+
+    private final Logger log;
+    private final AionBlockchainImpl chain;
+    private final IP2pMgr p2pMgr;
+    private final PeerScoreTracker peerScores;
+    private final HeaderValidationStage headerValidation;
+    private final File stateFile;
+    private final int minPivotPeers;
+    // null when no checkpoint is configured
+    private final ByteArrayWrapper checkpointHash;
+    private final long checkpointNumber;
+
+    private final TrieDataScheduler scheduler =
+            new TrieDataScheduler(P2pConstant.READ_MAX_RATE_TXBC);
+    private final BlockingQueue<TrieNodeWrapper> receivedTrieData = new LinkedBlockingQueue<>();
+    private final BlockingQueue<BlocksWrapper> receivedBlocks =
+            new LinkedBlockingQueue<>(BLOCKS_QUEUE_CAPACITY);
+    private final AtomicBoolean start = new AtomicBoolean(true);
+    private final AtomicLong importedNodes = new AtomicLong(0);
+    private final AtomicLong importedDetails = new AtomicLong(0);
+
+    private volatile Phase phase = Phase.PIVOT;
+    private volatile Block pivot = null;
+    private volatile BigInteger pivotTotalDifficulty = BigInteger.ZERO;
+    private volatile boolean worldStateComplete = false;
+    private volatile boolean contractsEnumerated = false;
+
+    private Thread syncFs = null;
+    private Thread syncFsImport = null;
+
+    /**
+     * @param log logger for reporting execution information
+     * @param chain the blockchain where the state is imported
+     * @param p2pMgr peer manager used to submit messages
+     * @param peerScores the scores of the peers used for routing requests
+     * @param headerValidation validator for the block headers received from peers
+     * @param stateFile the file where the progress of the fast sync is persisted
+     * @param minPivotPeers the number of peers that must agree on the pivot
+     * @param checkpointHash the hash of a trusted block used as pivot or {@code null} when the
+     *     pivot is selected from the blocks reported by peers
+     * @param checkpointNumber the height of the trusted block
+     */
+    FastSyncManager(
+            final Logger log,
+            final AionBlockchainImpl chain,
+            final IP2pMgr p2pMgr,
+            final PeerScoreTracker peerScores,
+            final HeaderValidationStage headerValidation,
+            final File stateFile,
+            final int minPivotPeers,
+            final byte[] checkpointHash,
+            final long checkpointNumber) {
+        this.log = log;
+        this.chain = chain;
+        this.p2pMgr = p2pMgr;
+        this.peerScores = peerScores;
+        this.headerValidation = headerValidation;
+        this.stateFile = stateFile;
+        this.minPivotPeers = minPivotPeers;
+        this.checkpointHash = checkpointHash == null ? null : ByteArrayWrapper.wrap(checkpointHash);
+        this.checkpointNumber = checkpointNumber;
+    }
+
+    /**
+     * Starts the fast sync threads when the fast sync is not complete. A fast sync is started only
+     * by a node without any blocks beyond genesis, or resumed when its progress was persisted.
+     *
+     * @return {@code true} if the fast sync was started, {@code false} otherwise
+     */
+    synchronized boolean start() {
+        if (stateFile.exists()) {
+            loadState();
+            if (checkpointHash != null
+                    && pivot != null
+                    && phase != Phase.COMPLETE
+                    && !checkpointHash.equals(pivot.getHashWrapper())) {
+                log.warn(
+                        "<fast-sync pivot num={} replaced by the configured checkpoint num={}>",
+                        pivot.getNumber(),
+                        checkpointNumber);
+                // the stored trie data is reused for the state of the checkpoint
+                phase = Phase.PIVOT;
+                pivot = null;
+                pivotTotalDifficulty = BigInteger.ZERO;
+            }
+        } else if (chain.getBestBlock().getNumber() > 0) {
+            phase = Phase.COMPLETE;
+        }
+
+        if (phase == Phase.COMPLETE) {
+            return false;
+        }
+
+        log.info(
+                "<fast-sync started phase={} pivot={}>",
+                phase,
+                pivot == null ? "none" : pivot.getNumber());
+
+        syncFs = new Thread(new TaskFastSync(log, this, chain, p2pMgr, peerScores), "sync-fs");
+        syncFs.start();
+        syncFsImport =
+                new Thread(new TaskImportTrieData(log, this, chain, peerScores), "sync-fs-import");
+        syncFsImport.start();
+        return true;
+    }
+
+    /** Indicates whether the regular sync can proceed. */
+    public boolean isComplete() {
+        return phase == Phase.COMPLETE;
+    }
+
+    /** Returns the queue where the trie data responses from the network are placed. */
+    public BlockingQueue<TrieNodeWrapper> getReceivedTrieData() {
+        return receivedTrieData;
+    }
+
+    /**
+     * Validates the headers of the blocks received from the network and queues them for
+     * processing. Responses are ignored once the fast sync is complete.
+     *
+     * @param peerId the hash id of the peer who sent the response
+     * @param displayId the display id of the peer who sent the response
+     * @param response the blocks received from the peer
+     * @param size the size in bytes of the message carrying the response
+     */
+    public void validateAndAddBlocks(
+            int peerId, String displayId, ResponseBlocks response, int size) {
+        if (isComplete()) {
+            return;
+        }
+        peerScores.recordResponse(peerId, RequestType.BLOCKS, size, System.nanoTime());
+
+        List<Block> blocks = response.getBlocks();
+        List<BlockHeader> headers = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            headers.add(block.getHeader());
+        }
+
+        int invalid;
+        try {
+            invalid = headerValidation.findFirstInvalid(headers);
+        } catch (InterruptedException e) {
+            log.debug("<fast-sync interrupted while validating blocks from peer={}>", displayId);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (invalid != -1) {
+            log.debug(
+                    "<fast-sync invalid-header num={} hash={} peer={}>",
+                    blocks.get(invalid).getNumber(),
+                    blocks.get(invalid).getShortHash(),
+                    displayId);
+            peerScores.recordInvalid(peerId);
+            return;
+        }
+
+        if (!blocks.isEmpty()
+                && !receivedBlocks.offer(new BlocksWrapper(peerId, displayId, blocks))) {
+            log.debug("<fast-sync blocks queue full, dropped blocks from peer={}>", displayId);
+        }
+    }
+
+    public synchronized void shutdown() {
+        start.set(false);
+
+        interruptAndWait(syncFs, 10000);
+        interruptAndWait(syncFsImport, 10000);
+    }
+
+    private void interruptAndWait(Thread t, long timeout) {
+        if (t != null) {
+            log.info("Stopping thread: " + t.getName());
+            t.interrupt();
+            try {
+                t.join(timeout);
+            } catch (InterruptedException e) {
+                log.warn("Failed to stop " + t.getName());
+            }
+        }
+    }
+
+    AtomicBoolean getStart() {
+        return start;
+    }
+
+    TrieDataScheduler getScheduler() {
+        return scheduler;
+    }
+
+    BlockingQueue<BlocksWrapper> getReceivedBlocks() {
+        return receivedBlocks;
+    }
+
+    int getMinPivotPeers() {
+        return minPivotPeers;
+    }
+
+    /** Indicates whether the pivot is a trusted checkpoint given by the configuration. */
+    boolean hasCheckpoint() {
+        return checkpointHash != null;
+    }
+
+    ByteArrayWrapper getCheckpointHash() {
+        return checkpointHash;
+    }
+
+    long getCheckpointNumber() {
+        return checkpointNumber;
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    Block getPivot() {
+        return pivot;
+    }
+
+    BigInteger getPivotTotalDifficulty() {
+        return pivotTotalDifficulty;
+    }
+
+    /** Counts the trie nodes imported, allowing the completeness checks to skip idle periods. */
+    void addImportedNodes(int count) {
+        importedNodes.addAndGet(count);
+    }
+
+    long getImportedNodes() {
+        return importedNodes.get();
+    }
+
+    /** Counts the contract details imported, which are also counted as imported nodes. */
+    void addImportedDetails(int count) {
+        importedDetails.addAndGet(count);
+    }
+
+    long getImportedDetails() {
+        return importedDetails.get();
+    }
+
+    boolean isWorldStateComplete() {
+        return worldStateComplete;
+    }
+
+    void setWorldStateComplete() {
+        worldStateComplete = true;
+    }
+
+    boolean areContractsEnumerated() {
+        return contractsEnumerated;
+    }
+
+    void setContractsEnumerated() {
+        contractsEnumerated = true;
+    }
+
+    /** Enumerates the contracts again when the enumeration left out contracts of the pivot. */
+    void restartContractEnumeration() {
+        contractsEnumerated = false;
+    }
+
+    /** Selects the pivot and moves on to retrieving its state. */
+    synchronized void setPivot(Block pivot, BigInteger totalDifficulty) {
+        this.pivot = pivot;
+        this.pivotTotalDifficulty = totalDifficulty;
+        this.phase = Phase.STATE;
+        saveState();
+    }
+
+    /** Moves on to the given phase, persisting the progress. */
+    synchronized void setPhase(Phase phase) {
+        this.phase = phase;
+        saveState();
+        log.info("<fast-sync phase={}>", phase);
+    }
+
+    /**
+     * Persists the progress as an RLP list with the phase, the encoding of the pivot and its total
+     * difficulty. The file is replaced atomically to avoid partial writes.
+     */
+    private void saveState() {
+        byte[] encodedPivot = pivot == null ? ByteUtil.EMPTY_BYTE_ARRAY : pivot.getEncoded();
+        byte[] encoded =
+                RLP.encodeList(
+                        RLP.encodeInt(phase.ordinal()),
+                        RLP.encodeElement(encodedPivot),
+                        RLP.encodeBigInteger(pivotTotalDifficulty));
+        try {
+            File tmp = new File(stateFile.getAbsolutePath() + ".tmp");
+            Files.write(tmp.toPath(), encoded);
+            Files.move(
+                    tmp.toPath(),
+                    stateFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("<fast-sync unable to persist the progress to " + stateFile + ">", e);
+        }
+    }
+
+    private void loadState() {
+        try {
+            RLPList list = (RLPList) RLP.decode2(Files.readAllBytes(stateFile.toPath())).get(0);
+            phase = Phase.values()[ByteUtil.byteArrayToInt(list.get(0).getRLPData())];
+
+            byte[] encodedPivot = list.get(1).getRLPData();
+            if (encodedPivot != null && encodedPivot.length > 0) {
+                pivot = BlockUtil.newBlockFromRlp(encodedPivot);
+                pivotTotalDifficulty = new BigInteger(1, list.get(2).getRLPData());
+            }
+
+            if (phase != Phase.PIVOT && phase != Phase.COMPLETE && pivot == null) {
+                throw new IllegalStateException("The pivot is missing.");
+            }
+        } catch (Exception e) {
+            log.error("<fast-sync unable to load the progress from " + stateFile + ">", e);
+            // the stored trie data is reused by a new fast sync
+            phase = chain.getBestBlock().getNumber() > 0 ? Phase.COMPLETE : Phase.PIVOT;
+            pivot = null;
+            pivotTotalDifficulty = BigInteger.ZERO;
+        }
+    }
+}
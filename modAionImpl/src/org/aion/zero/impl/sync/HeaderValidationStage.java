@@ -0,0 +1,156 @@
+package org.aion.zero.impl.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.zero.impl.valid.BlockHeaderValidator;
+import org.slf4j.Logger;
+
+/**
+ * Applies the header rules to the headers of a sync batch in parallel. The rules of each header
+ * are independent of the other headers, so the batch is split into contiguous chunks that are
+ * checked concurrently by a bounded pool of threads and by the calling thread. The ordering and
+ * linkage of the batch still has to be checked in order by the caller.
+ *
+ * <p>When the pool is busy with the batches of other peers the chunks are checked by the calling
+ * thread, which bounds the number of queued chunks.
+ *
+ * @implNote This resource is thread safe.
+ */
+final class HeaderValidationStage {
+
+    /** The maximum number of threads used for header validation. */
+    static final int MAX_THREADS = 4;
+
+    /** Batches with fewer headers per thread are checked by the calling thread only. */
+    static final int MIN_CHUNK_SIZE = 8;
+
+    private static final int QUEUE_SIZE = 4 * MAX_THREADS;
+
+    private final BlockHeaderValidator blockHeaderValidator;
+    private final Logger log;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param blockHeaderValidator validator for the headers received from peers
+     * @param threads the number of threads checking headers in addition to the calling thread
+     * @param log logger for reporting execution information
+     */
+    HeaderValidationStage(
+            final BlockHeaderValidator blockHeaderValidator, int threads, final Logger log) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Negative number of threads=" + threads);
+        }
+        this.blockHeaderValidator = blockHeaderValidator;
+        this.log = log;
+        this.threads = threads;
+
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor =
+                    new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            0L,
+                            TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(QUEUE_SIZE),
+                            r -> {
+                                Thread t = new Thread(r, "sync-hv-" + count.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            },
+                            // also runs the rejected chunks after shutdown to release the callers
+                            (r, e) -> r.run());
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Creates a stage that uses the available processors, up to {@link #MAX_THREADS}, leaving one
+     * of them to the calling thread.
+     *
+     * @param blockHeaderValidator validator for the headers received from peers
+     * @param log logger for reporting execution information
+     */
+    static HeaderValidationStage withAvailableProcessors(
+            final BlockHeaderValidator blockHeaderValidator, final Logger log) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new HeaderValidationStage(
+                blockHeaderValidator, Math.min(MAX_THREADS, processors - 1), log);
+    }
+
+    /**
+     * Checks the rules of each of the given headers. Once an invalid header is found, the headers
+     * that follow it are no longer checked.
+     *
+     * @param headers the headers to be validated
+     * @return the index of the first invalid header or {@code -1} when all the headers are valid
+     * @throws InterruptedException when interrupted while waiting for the other threads
+     */
+    int findFirstInvalid(final List<BlockHeader> headers) throws InterruptedException {
+        int size = headers.size();
+        int chunks = Math.min(threads + 1, size / MIN_CHUNK_SIZE);
+        AtomicInteger firstInvalid = new AtomicInteger(size);
+
+        if (chunks <= 1) {
+            validateRange(headers, 0, size, firstInvalid);
+        } else {
+            List<Future<?>> futures = new ArrayList<>(chunks - 1);
+            int chunkSize = (size + chunks - 1) / chunks;
+            // the first chunk is checked by the calling thread
+            for (int from = chunkSize; from < size; from += chunkSize) {
+                int start = from, end = Math.min(size, from + chunkSize);
+                futures.add(
+                        executor.submit(() -> validateRange(headers, start, end, firstInvalid)));
+            }
+            validateRange(headers, 0, chunkSize, firstInvalid);
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // not expected since the rule errors are caught by validateRange
+                    log.error("Unexpected failure during header validation.", e);
+                    return 0;
+                } catch (InterruptedException e) {
+                    futures.forEach(f -> f.cancel(true));
+                    throw e;
+                }
+            }
+        }
+
+        int index = firstInvalid.get();
+        return index == size ? -1 : index;
+    }
+
+    private void validateRange(
+            final List<BlockHeader> headers, int from, int to, final AtomicInteger firstInvalid) {
+        for (int i = from; i < to && i < firstInvalid.get(); i++) {
+            boolean valid;
+            try {
+                valid = blockHeaderValidator.validate(headers.get(i), log);
+            } catch (RuntimeException e) {
+                log.debug("<header-validation error num={}>", headers.get(i).getNumber(), e);
+                valid = false;
+            }
+            if (!valid) {
+                firstInvalid.accumulateAndGet(i, Math::min);
+                return;
+            }
+        }
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
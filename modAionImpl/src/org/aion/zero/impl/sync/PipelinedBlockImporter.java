@@ -0,0 +1,168 @@
+package org.aion.zero.impl.sync;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aion.mcf.blockchain.Block;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.core.ImportResult;
+import org.aion.zero.impl.sync.statistics.SyncMetrics;
+import org.slf4j.Logger;
+
+/**
+ * Imports the blocks of a sync batch in order while the blocks that follow are being prepared. The
+ * preparation performs the checks that do not depend on the parent state, namely the header rules,
+ * the transaction trie root and the transaction signatures, and reads the accounts used by the
+ * transactions to warm the state caches. See {@link AionBlockchainImpl#prevalidate(Block)}.
+ *
+ * <p>The execution, the state root check and the persistence of each block still happen in order
+ * inside {@link AionBlockchainImpl#tryToConnect(Block)}, so the import results and the database
+ * contents are the same as for a sequential import.
+ *
+ * <p>The time spent preparing and importing each block is reported to the {@link SyncMetrics}.
+ *
+ * @implNote The {@link #prepare(List)} and {@link #importBlock(Block)} methods must be called from
+ *     the same thread.
+ */
+final class PipelinedBlockImporter {
+
+    /** The maximum number of threads preparing blocks. */
+    static final int MAX_THREADS = 4;
+
+    /** The maximum number of blocks waiting to be prepared. */
+    static final int MAX_PENDING = 256;
+
+    private final AionBlockchainImpl chain;
+    private final SyncMetrics metrics;
+    private final Logger log;
+    private final ThreadPoolExecutor executor;
+
+    // the preparation of the blocks that were not imported yet, matched by object identity
+    private final Map<Block, Future<?>> prepared = new IdentityHashMap<>();
+
+    /**
+     * @param chain the blockchain where the blocks are imported
+     * @param threads the number of threads preparing blocks, where {@code 0} disables preparation
+     * @param log logger for reporting execution information
+     */
+    PipelinedBlockImporter(final AionBlockchainImpl chain, int threads, final Logger log) {
+        this(chain, threads, new SyncMetrics(), log);
+    }
+
+    /**
+     * @param chain the blockchain where the blocks are imported
+     * @param threads the number of threads preparing blocks, where {@code 0} disables preparation
+     * @param metrics the metrics receiving the preparation and import times
+     * @param log logger for reporting execution information
+     */
+    PipelinedBlockImporter(
+            final AionBlockchainImpl chain,
+            int threads,
+            final SyncMetrics metrics,
+            final Logger log) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Negative number of threads=" + threads);
+        }
+        this.chain = chain;
+        this.metrics = metrics;
+        this.log = log;
+
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor =
+                    new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            0L,
+                            TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(MAX_PENDING),
+                            r -> {
+                                Thread t = new Thread(r, "sync-prep-" + count.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            },
+                            // blocks that cannot be prepared are fully checked on import
+                            (r, e) -> ((FutureTask<?>) r).cancel(false));
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Creates an importer that uses the available processors, up to {@link #MAX_THREADS}, leaving
+     * one of them to the import thread.
+     */
+    static PipelinedBlockImporter withAvailableProcessors(
+            final AionBlockchainImpl chain, final SyncMetrics metrics, final Logger log) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new PipelinedBlockImporter(
+                chain, Math.min(MAX_THREADS, processors - 1), metrics, log);
+    }
+
+    /**
+     * Starts preparing the given blocks in the background, in the order in which they will be
+     * imported. The preparation of blocks from previous batches that were not imported is
+     * cancelled.
+     *
+     * @param blocks the blocks that are about to be imported
+     */
+    void prepare(final List<Block> blocks) {
+        if (executor == null) {
+            return;
+        }
+        prepared.values().forEach(f -> f.cancel(false));
+        prepared.clear();
+
+        for (Block block : blocks) {
+            prepared.put(block, executor.submit(() -> prevalidate(block)));
+        }
+    }
+
+    /**
+     * Imports the given block after its preparation is complete. Blocks that were not prepared are
+     * imported directly.
+     *
+     * @param block the block to be imported
+     * @return the result of the import
+     */
+    ImportResult importBlock(final Block block) {
+        Future<?> preparation = prepared.remove(block);
+        if (preparation != null) {
+            try {
+                preparation.get();
+            } catch (CancellationException e) {
+                // the checks are performed on import
+            } catch (ExecutionException e) {
+                log.debug("<prepare-block failed num={}>", block.getNumber(), e.getCause());
+            } catch (InterruptedException e) {
+                // the shutdown is handled by the import thread
+                Thread.currentThread().interrupt();
+            }
+        }
+        long start = System.nanoTime();
+        ImportResult result = chain.tryToConnect(block);
+        metrics.recordImport(
+                System.nanoTime() - start, result.isSuccessful(), block.getNrgConsumed());
+        return result;
+    }
+
+    private void prevalidate(final Block block) {
+        long start = System.nanoTime();
+        chain.prevalidate(block);
+        metrics.recordBlockValidation(System.nanoTime() - start);
+    }
+
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
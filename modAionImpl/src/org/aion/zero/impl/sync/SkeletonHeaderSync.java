@@ -0,0 +1,502 @@
+package org.aion.zero.impl.sync;
+
+import static org.aion.zero.impl.sync.SyncHeaderRequestManager.MAX_REQUEST_SIZE;
+import static org.aion.zero.impl.sync.SyncHeaderRequestManager.MIN_REQUEST_SIZE;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
+import org.aion.zero.impl.sync.msg.RequestSkeleton;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.sync.statistics.RequestType;
+import org.aion.zero.impl.valid.BlockHeaderValidator;
+import org.slf4j.Logger;
+
+/**
+ * Downloads headers far behind the top of the chain by first retrieving a sparse skeleton of
+ * headers, one every {@link #STEP} blocks, from the peer with the highest total difficulty. The
+ * gaps between consecutive skeleton headers are then requested in parallel from all the peers
+ * that have them. Each gap is accepted only if it links the two skeleton headers around it, so
+ * the peers filling the gaps cannot deviate from the skeleton.
+ *
+ * <p>The gaps are completed out of order. They are kept in a reorder buffer and released in order
+ * to the queue of downloaded headers as soon as there is room for them, from where the bodies are
+ * requested as usual.
+ *
+ * <p>The skeleton sync is used only while the local chain is at least {@link #MIN_DISTANCE} blocks
+ * behind the network. Closer to the top, the regular header requests take over, since they also
+ * handle forks. The regular requests are also used for {@link #FALLBACK_NANOS} when the local
+ * chain does not link to the skeleton or the import does not progress.
+ *
+ * @implNote The bodies are matched to the headers by the size of the request. The gaps are split
+ *     into chunks with sizes cycling through the even numbers used by regular requests, which
+ *     keeps consecutive bodies requests to the same peer distinguishable.
+ * @implNote This resource is thread safe.
+ */
+public final class SkeletonHeaderSync {
+
+    /**
+     * The distance between consecutive skeleton headers, which is also the size of a gap. Matches
+     * the largest header request served by peers.
+     */
+    static final int STEP = 96;
+
+    /** The number of headers requested in one skeleton. */
+    static final int SKELETON_SIZE = 64;
+
+    /** The skeleton sync is used only when the network is at least this many blocks ahead. */
+    static final int MIN_DISTANCE = 8 * STEP;
+
+    /** Skeleton and gap requests without a response after this time are made again. */
+    static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** The maximum number of gaps requested from one peer at the same time. */
+    static final int MAX_GAPS_PER_PEER = 2;
+
+    /** The skeleton is dropped when the local best block does not change for this long. */
+    static final long STALL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /** The time during which the regular header requests are used after the skeleton is dropped. */
+    static final long FALLBACK_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final Logger log;
+    private final IP2pMgr p2pMgr;
+    private final PeerScoreTracker peerScores;
+    private final BlockHeaderValidator blockHeaderValidator;
+    private final BlockingQueue<HeadersWrapper> downloadedHeaders;
+
+    // the current skeleton request, null when the next skeleton can be requested
+    private SkeletonRequest skeleton = null;
+    // the last skeleton header, from which the next skeleton continues
+    private long nextBase = 0;
+    private byte[] nextBaseHash = null;
+
+    // the gaps of the current skeleton not yet released, ordered by their first header
+    private final TreeMap<Long, Gap> gaps = new TreeMap<>();
+    private final Deque<Gap> unassigned = new ArrayDeque<>();
+    private final Map<Integer, Integer> assignedPerPeer = new HashMap<>();
+
+    // the size of the next chunk released, cycling from MAX_REQUEST_SIZE to MIN_REQUEST_SIZE
+    private int chunkSize = MAX_REQUEST_SIZE;
+
+    // used to detect an import that does not progress
+    private long progressNumber = 0;
+    private long progressTime = 0;
+    private long fallbackUntil = 0;
+
+    /**
+     * @param log logger for reporting execution information
+     * @param p2pMgr peer manager used to submit messages
+     * @param peerScores the scores of the peers used for routing requests
+     * @param blockHeaderValidator validator for the skeleton headers received from peers
+     * @param downloadedHeaders the queue of headers whose bodies must be requested
+     */
+    SkeletonHeaderSync(
+            final Logger log,
+            final IP2pMgr p2pMgr,
+            final PeerScoreTracker peerScores,
+            final BlockHeaderValidator blockHeaderValidator,
+            final BlockingQueue<HeadersWrapper> downloadedHeaders) {
+        this.log = log;
+        this.p2pMgr = p2pMgr;
+        this.peerScores = peerScores;
+        this.blockHeaderValidator = blockHeaderValidator;
+        this.downloadedHeaders = downloadedHeaders;
+    }
+
+    /**
+     * Makes the skeleton and gap requests that are due and releases the completed gaps.
+     *
+     * @param localBest the local best block
+     * @param localTotalDifficulty the local chain total difficulty
+     * @return {@code true} if the skeleton sync is in use, {@code false} when the regular header
+     *     requests should be made instead
+     */
+    synchronized boolean sendRequests(Block localBest, BigInteger localTotalDifficulty) {
+        long now = System.nanoTime();
+        if (progressTime == 0 || localBest.getNumber() != progressNumber) {
+            progressNumber = localBest.getNumber();
+            progressTime = now;
+        } else if (nextBaseHash != null && now - progressTime > STALL_TIMEOUT_NANOS) {
+            log.info("<skeleton-sync stalled at num={}, using regular requests>", progressNumber);
+            fallBack(now);
+        }
+        if (now - fallbackUntil < 0) {
+            return false;
+        }
+
+        Map<Integer, INode> active = p2pMgr.getActiveNodes();
+        expireRequests(active, now);
+        release();
+
+        if (!gaps.isEmpty()) {
+            assignGaps(active.values(), now);
+            return true;
+        }
+        if (skeleton != null) {
+            // waiting for the skeleton response
+            return true;
+        }
+
+        // continues from the previous skeleton unless the local chain went past it
+        long base = localBest.getNumber();
+        byte[] baseHash = localBest.getHash();
+        if (nextBaseHash != null && nextBase >= base) {
+            if (nextBase - base >= SKELETON_SIZE * STEP) {
+                // waiting for the import to catch up with the released headers
+                return true;
+            }
+            base = nextBase;
+            baseHash = nextBaseHash;
+        }
+
+        INode trusted = null;
+        for (INode peer : active.values()) {
+            if (peer.getTotalDifficulty() != null
+                    && peer.getTotalDifficulty().compareTo(localTotalDifficulty) > 0
+                    && (trusted == null
+                            || peer.getTotalDifficulty().compareTo(trusted.getTotalDifficulty())
+                                    > 0)) {
+                trusted = peer;
+            }
+        }
+        if (trusted == null || trusted.getBestBlockNumber() < base + MIN_DISTANCE) {
+            nextBaseHash = null;
+            return false;
+        }
+
+        int count = (int) Math.min(SKELETON_SIZE, (trusted.getBestBlockNumber() - base) / STEP);
+        boolean isLocal = base == localBest.getNumber();
+        skeleton =
+                new SkeletonRequest(
+                        trusted.getIdHash(),
+                        trusted.getIdShort(),
+                        base,
+                        baseHash,
+                        isLocal,
+                        count,
+                        now);
+        p2pMgr.send(
+                trusted.getIdHash(),
+                trusted.getIdShort(),
+                new RequestSkeleton(base + STEP, count, STEP));
+        peerScores.recordRequest(trusted.getIdHash(), RequestType.HEADERS, now);
+        log.debug(
+                "<skeleton-request from-num={} count={} step={} node={}>",
+                base + STEP,
+                count,
+                STEP,
+                trusted.getIdShort());
+        return true;
+    }
+
+    /**
+     * Validates the skeleton headers received from the network and requests the gaps between
+     * them. Responses that do not match the outstanding skeleton request are ignored.
+     *
+     * @param peerId the hash id of the peer who sent the response
+     * @param displayId the display id of the peer who sent the response
+     * @param headers the skeleton headers received from the peer
+     * @param size the size in bytes of the message carrying the headers
+     */
+    public synchronized void validateAndAddSkeleton(
+            int peerId, String displayId, List<BlockHeader> headers, int size) {
+        if (skeleton == null || skeleton.peerId != peerId || !gaps.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        peerScores.recordResponse(peerId, RequestType.HEADERS, size, now);
+
+        SkeletonRequest request = skeleton;
+        skeleton = null;
+
+        if (headers.isEmpty() || headers.size() > request.count) {
+            log.debug("<skeleton-response size={} node={} ignored>", headers.size(), displayId);
+            return;
+        }
+
+        long expected = request.base;
+        for (BlockHeader header : headers) {
+            expected += STEP;
+            if (header.getNumber() != expected || !blockHeaderValidator.validate(header, log)) {
+                log.debug(
+                        "<skeleton-response invalid-header num={} expected={} node={}>",
+                        header.getNumber(),
+                        expected,
+                        displayId);
+                peerScores.recordInvalid(peerId);
+                return;
+            }
+        }
+
+        long start = request.base + 1;
+        byte[] parentHash = request.baseHash;
+        boolean isLocal = request.isLocal;
+        for (BlockHeader header : headers) {
+            Gap gap = new Gap(start, header.getNumber(), parentHash, isLocal, header.getHash());
+            isLocal = false;
+            gaps.put(start, gap);
+            unassigned.addLast(gap);
+            start = header.getNumber() + 1;
+            parentHash = header.getHash();
+        }
+        BlockHeader last = headers.get(headers.size() - 1);
+        nextBase = last.getNumber();
+        nextBaseHash = last.getHash();
+
+        log.debug(
+                "<skeleton-accepted from-num={} to-num={} node={}>",
+                headers.get(0).getNumber(),
+                last.getNumber(),
+                displayId);
+
+        assignGaps(p2pMgr.getActiveNodes().values(), now);
+    }
+
+    /**
+     * Checks whether the given headers fill a gap requested from the peer and, if they do, adds
+     * them to the reorder buffer. The headers must already be validated individually and linked
+     * to each other.
+     *
+     * @param peerId the hash id of the peer who sent the headers
+     * @param displayId the display id of the peer who sent the headers
+     * @param headers the headers received from the peer
+     * @return {@code true} if the headers were a response to a gap request, {@code false}
+     *     otherwise
+     */
+    synchronized boolean validateAndAddGap(
+            int peerId, String displayId, List<BlockHeader> headers) {
+        Gap gap = gaps.get(headers.get(0).getNumber());
+        if (gap == null || !gap.isAssigned() || gap.peerId != peerId) {
+            return false;
+        }
+        unassign(gap);
+
+        if (headers.size() != gap.size()) {
+            // the peer may not have the full gap, it is requested again from a different peer
+            log.debug(
+                    "<skeleton-gap from-num={} size={} expected={} node={}>",
+                    gap.start,
+                    headers.size(),
+                    gap.size(),
+                    displayId);
+            gap.excludedPeerId = peerId;
+            unassigned.addFirst(gap);
+        } else if (gap.isParentLocal
+                && !Arrays.equals(headers.get(0).getParentHash(), gap.parentHash)) {
+            // the skeleton is on a different chain than the local best block
+            log.info(
+                    "<skeleton-sync local chain not linked at num={}, using regular requests>",
+                    gap.start - 1);
+            fallBack(System.nanoTime());
+            return true;
+        } else if (!Arrays.equals(headers.get(0).getParentHash(), gap.parentHash)
+                || !Arrays.equals(headers.get(headers.size() - 1).getHash(), gap.lastHash)) {
+            log.debug(
+                    "<skeleton-gap from-num={} not linked to the skeleton node={}>",
+                    gap.start,
+                    displayId);
+            peerScores.recordInvalid(peerId);
+            gap.excludedPeerId = peerId;
+            unassigned.addFirst(gap);
+        } else {
+            gap.headers = headers;
+            gap.peerId = peerId;
+            gap.displayId = displayId;
+            release();
+        }
+
+        assignGaps(p2pMgr.getActiveNodes().values(), System.nanoTime());
+        return true;
+    }
+
+    /** Releases the gaps requested before {@code now - }{@link #REQUEST_TIMEOUT_NANOS}. */
+    private void expireRequests(Map<Integer, INode> active, long now) {
+        if (skeleton != null
+                && (now - skeleton.time > REQUEST_TIMEOUT_NANOS
+                        || !active.containsKey(skeleton.peerId))) {
+            log.debug("<skeleton-request expired node={}>", skeleton.displayId);
+            skeleton = null;
+        }
+
+        for (Gap gap : gaps.values()) {
+            if (gap.isAssigned()
+                    && (now - gap.time > REQUEST_TIMEOUT_NANOS
+                            || !active.containsKey(gap.peerId))) {
+                unassign(gap);
+                unassigned.addFirst(gap);
+            }
+        }
+        assignedPerPeer.keySet().retainAll(active.keySet());
+    }
+
+    /** Requests the unassigned gaps, starting with the lowest, from the best scored peers. */
+    private void assignGaps(Iterable<INode> peers, long now) {
+        if (unassigned.isEmpty()) {
+            return;
+        }
+
+        List<INode> sorted = new ArrayList<>();
+        peers.forEach(sorted::add);
+        sorted = peerScores.sortByScore(sorted, INode::getIdHash);
+
+        for (INode peer : sorted) {
+            int peerId = peer.getIdHash();
+            Iterator<Gap> it = unassigned.iterator();
+            while (assignedPerPeer.getOrDefault(peerId, 0) < MAX_GAPS_PER_PEER && it.hasNext()) {
+                Gap gap = it.next();
+                if (peer.getBestBlockNumber() < gap.end
+                        || (gap.excludedPeerId != null && gap.excludedPeerId == peerId)) {
+                    continue;
+                }
+                it.remove();
+
+                gap.assigned = true;
+                gap.peerId = peerId;
+                gap.displayId = peer.getIdShort();
+                gap.time = now;
+                assignedPerPeer.merge(peerId, 1, Integer::sum);
+
+                p2pMgr.send(peerId, peer.getIdShort(), new ReqBlocksHeaders(gap.start, gap.size()));
+                peerScores.recordRequest(peerId, RequestType.HEADERS, now);
+                log.debug(
+                        "<skeleton-gap-request from-num={} size={} node={}>",
+                        gap.start,
+                        gap.size(),
+                        peer.getIdShort());
+            }
+            if (unassigned.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private void unassign(Gap gap) {
+        assignedPerPeer.computeIfPresent(gap.peerId, (id, count) -> count > 1 ? count - 1 : null);
+        gap.assigned = false;
+    }
+
+    /** Drops the current skeleton and lets the regular header requests take over for a while. */
+    private void fallBack(long now) {
+        skeleton = null;
+        gaps.clear();
+        unassigned.clear();
+        assignedPerPeer.clear();
+        nextBaseHash = null;
+        progressTime = now;
+        fallbackUntil = now + FALLBACK_NANOS;
+    }
+
+    /**
+     * Moves the completed gaps that follow the already released headers to the queue of
+     * downloaded headers, while the queue has room for them.
+     */
+    private void release() {
+        while (!gaps.isEmpty()) {
+            Gap gap = gaps.firstEntry().getValue();
+            if (gap.headers == null) {
+                return;
+            }
+
+            List<List<BlockHeader>> chunks = new ArrayList<>();
+            int size = chunkSize;
+            for (int from = 0; from < gap.headers.size(); ) {
+                int to = Math.min(from + size, gap.headers.size());
+                chunks.add(gap.headers.subList(from, to));
+                from = to;
+                size = size - 2 < MIN_REQUEST_SIZE ? MAX_REQUEST_SIZE : size - 2;
+            }
+            if (downloadedHeaders.remainingCapacity() < chunks.size()) {
+                return;
+            }
+
+            for (List<BlockHeader> chunk : chunks) {
+                downloadedHeaders.add(new HeadersWrapper(gap.peerId, gap.displayId, chunk));
+            }
+            chunkSize = size;
+            gaps.pollFirstEntry();
+
+            log.debug(
+                    "<skeleton-gap-released from-num={} to-num={} node={}>",
+                    gap.start,
+                    gap.end,
+                    gap.displayId);
+        }
+    }
+
+    private static final class SkeletonRequest {
+        final int peerId;
+        final String displayId;
+        final long base;
+        final byte[] baseHash;
+        final boolean isLocal;
+        final int count;
+        final long time;
+
+        SkeletonRequest(
+                int peerId,
+                String displayId,
+                long base,
+                byte[] baseHash,
+                boolean isLocal,
+                int count,
+                long time) {
+            this.peerId = peerId;
+            this.displayId = displayId;
+            this.base = base;
+            this.baseHash = baseHash;
+            this.isLocal = isLocal;
+            this.count = count;
+            this.time = time;
+        }
+    }
+
+    /** The headers between two consecutive skeleton headers, including the second one. */
+    private static final class Gap {
+        final long start;
+        final long end;
+        final byte[] parentHash;
+        // the parent is the local best block instead of a skeleton header
+        final boolean isParentLocal;
+        final byte[] lastHash;
+
+        // the peer the gap is requested from or was received from
+        boolean assigned = false;
+        int peerId;
+        String displayId;
+        long time;
+        // the peer that failed to deliver the gap on the last attempt
+        Integer excludedPeerId = null;
+        List<BlockHeader> headers = null;
+
+        Gap(long start, long end, byte[] parentHash, boolean isParentLocal, byte[] lastHash) {
+            this.start = start;
+            this.end = end;
+            this.parentHash = parentHash;
+            this.isParentLocal = isParentLocal;
+            this.lastHash = lastHash;
+        }
+
+        int size() {
+            return (int) (end - start + 1);
+        }
+
+        boolean isAssigned() {
+            return assigned;
+        }
+    }
+}
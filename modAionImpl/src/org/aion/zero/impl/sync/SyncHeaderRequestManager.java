@@ -8,6 +8,7 @@ import com.google.common.annotations.VisibleForTesting;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -24,6 +25,7 @@ import org.aion.p2p.INode;
 import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.P2pConstant;
 import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
 import org.aion.zero.impl.sync.statistics.RequestType;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -107,14 +109,23 @@ public class SyncHeaderRequestManager {
     private long localHeight, networkHeight, requestHeight;
     private final Logger syncLog, surveyLog;
 
+    /** Used to order the peers and size their requests according to their past responses. */
+    private final PeerScoreTracker peerScores;
+
     Lock lock = new ReentrantLock();
 
     /** Used to randomly select peers to request headers from. */
     Random random;
 
     public SyncHeaderRequestManager(Logger syncLog, Logger surveyLog) {
+        this(syncLog, surveyLog, new PeerScoreTracker());
+    }
+
+    public SyncHeaderRequestManager(
+            Logger syncLog, Logger surveyLog, PeerScoreTracker peerScores) {
         Objects.requireNonNull(syncLog);
         Objects.requireNonNull(surveyLog);
+        Objects.requireNonNull(peerScores);
 
         // ensures that the chosen constants will not violate p2p limitations
         if (MAX_REQUESTS_PER_SECOND > P2pConstant.READ_MAX_RATE_TXBC) {
@@ -123,6 +134,7 @@ public class SyncHeaderRequestManager {
 
         this.syncLog = syncLog;
         this.surveyLog = surveyLog;
+        this.peerScores = peerScores;
 
         // implementation details
         this.bookedPeerStates = new HashMap<>();
@@ -174,6 +186,9 @@ public class SyncHeaderRequestManager {
                         .filter(node -> isAdequateTotalDifficulty(node, currentTotalDifficulty))
                         .collect(Collectors.toMap(node -> node.getIdHash(), node -> node));
 
+        // disconnects from peers that have consistently been slow or unreliable
+        dropSlowPeers(currentNodes, p2pManager);
+
         // makes sure the internal peer list is up to date and checks availability updates
         updateActiveNodes(currentNodes);
 
@@ -199,6 +214,7 @@ public class SyncHeaderRequestManager {
 
                 // record that another request has been made for availability tracking
                 requestState.saveRequestTime(System.nanoTime());
+                peerScores.recordRequest(requestState.id, RequestType.HEADERS, System.nanoTime());
                 availablePeerStates.remove(requestState.id);
                 bookedPeerStates.put(requestState.id, requestState);
 
@@ -229,6 +245,29 @@ public class SyncHeaderRequestManager {
                 duration);
     }
 
+    /**
+     * Counts the unanswered requests as timeouts and drops the peers whose score shows them to be
+     * consistently slow or unreliable. At least one peer is always kept to allow sync to progress.
+     */
+    private void dropSlowPeers(Map<Integer, INode> currentNodes, IP2pMgr p2pManager) {
+        peerScores.expireRequests(System.nanoTime());
+
+        for (Integer id : peerScores.getPeersToDrop()) {
+            if (currentNodes.size() <= 1) {
+                break;
+            }
+            INode node = currentNodes.remove(id);
+            if (node != null) {
+                syncLog.info(
+                        "<drop-slow-peer node={} score={}>",
+                        node.getIdShort(),
+                        String.format("%.3f", peerScores.getScore(id)));
+                p2pManager.dropActive(id, "sync-slow-peer");
+            }
+            peerScores.remove(id);
+        }
+    }
+
     /** Checks that the peer's total difficulty is higher than or equal to the local chain. */
     private static boolean isAdequateTotalDifficulty(INode peer, BigInteger totalDifficulty) {
         return peer.getTotalDifficulty() != null && peer.getTotalDifficulty().compareTo(totalDifficulty) >= 0;
@@ -258,6 +297,7 @@ public class SyncHeaderRequestManager {
             storedHeaders.remove(id);
             bookedPeerStates.remove(id);
             availablePeerStates.remove(id);
+            peerScores.remove(id);
         }
 
         // add new peers and update best block for known peers
@@ -378,7 +418,8 @@ public class SyncHeaderRequestManager {
      * <p>The request states are set up based on the following heuristic:
      *
      * <ol>
-     *   <li>All available peers are prepared for a request.
+     *   <li>All available peers are prepared for a request, ordered by their {@link
+     *       PeerScoreTracker} score such that the best peers are asked for the lowest blocks.
      *   <li>The first request is made based on the given {@code currentBestBlock} chain height,
      *       with a small overlap {@link #FAR_OVERLAPPING_BLOCKS} in header requests if the current
      *       height is far from the network best, and a larger overlap {@link
@@ -393,9 +434,10 @@ public class SyncHeaderRequestManager {
      *   <li>To allow multiple requests made at the same time with reduced chances for assembly
      *       errors when the bodies are received, each peers state keeps track of the size of the
      *       last request made and updates the size to iterate within a range of even numbers given
-     *       by the constants {@link #MIN_REQUEST_SIZE} and {@link #MAX_REQUEST_SIZE}. The values
-     *       are even numbers to allow for the different sizes returned by the overlapping requests
-     *       which will be odd numbers.
+     *       by the constants {@link #MIN_REQUEST_SIZE} and {@link #MAX_REQUEST_SIZE}. The upper
+     *       bound of the range is lowered for peers with poor scores. The values are even numbers
+     *       to allow for the different sizes returned by the overlapping requests which will be
+     *       odd numbers.
      * </ol>
      */
     private List<RequestState> updateStatesForRequests(boolean distantFuture, long currentBestBlock) {
@@ -415,8 +457,13 @@ public class SyncHeaderRequestManager {
 
         List<RequestState> availableSet = new ArrayList<>(availablePeerStates.values());
         if (!distantFuture) {
-            // make a single request when !distantFuture
-            RequestState singleRequest = availableSet.get(random.nextInt(availableSet.size()));
+            // shuffling spreads the single request among peers with equal scores
+            Collections.shuffle(availableSet, random);
+        }
+        availableSet = peerScores.sortByScore(availableSet, state -> state.id);
+        if (!distantFuture && !availableSet.isEmpty()) {
+            // make a single request to the best peer when !distantFuture
+            RequestState singleRequest = availableSet.get(0);
             availableSet.clear();
             availableSet.add(singleRequest);
         }
@@ -427,9 +474,11 @@ public class SyncHeaderRequestManager {
             // the range is from MIN to MAX_LARGE_REQUEST_SIZE
             // avoids overlap with FAR_OVERLAPPING_BLOCKS and CLOSE_OVERLAPPING_BLOCKS because they
             // are odd and these are even numbers
+            // the upper bound of the range depends on the peer score
+            int maxSize = peerScores.getRequestSize(state.id, MIN_REQUEST_SIZE, MAX_REQUEST_SIZE);
             int nextSize = state.size - 2;
-            if (nextSize < MIN_REQUEST_SIZE) {
-                nextSize = MAX_REQUEST_SIZE;
+            if (nextSize < MIN_REQUEST_SIZE || nextSize > maxSize) {
+                nextSize = maxSize;
             }
 
             if (state.mode == BACKWARD) {
@@ -537,7 +586,12 @@ public class SyncHeaderRequestManager {
         return Pair.of(true, "Expected output matched.");
     }
 
-    /** Keeps track of received headers. */
+    /**
+     * Keeps track of received headers.
+     *
+     * @param peerId the peer the bodies for these headers are requested from, which may differ
+     *     from the peer that sent the headers
+     */
     public void storeHeaders(int peerId, HeadersWrapper headersWrapper) {
         lock.lock();
 
@@ -561,10 +615,11 @@ public class SyncHeaderRequestManager {
             storedHeaders.put(peerId, peerHeaders);
         }
 
-        // headers were received so the peer is available for further requests
-        if (bookedPeerStates.containsKey(peerId)
-                && bookedPeerStates.get(peerId).tryMakeAvailable()) {
-            availablePeerStates.put(peerId, bookedPeerStates.remove(peerId));
+        // headers were received so the peer that sent them is available for further requests
+        int sender = headersWrapper.nodeId;
+        if (bookedPeerStates.containsKey(sender)
+                && bookedPeerStates.get(sender).tryMakeAvailable()) {
+            availablePeerStates.put(sender, bookedPeerStates.remove(sender));
         }
 
         syncLog.debug(
@@ -2,6 +2,8 @@ package org.aion.zero.impl.sync;
 
 import static org.aion.util.string.StringUtils.getNodeIdShort;
 
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -12,7 +14,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.evtmgr.IEvent;
 import org.aion.evtmgr.IEventMgr;
@@ -28,6 +29,8 @@ import org.aion.util.conversions.Hex;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.blockchain.ChainConfiguration;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.sync.statistics.SyncMetrics;
 import org.aion.zero.impl.types.BlockUtil;
 import org.aion.zero.impl.valid.BlockHeaderValidator;
 import org.apache.commons.collections4.map.LRUMap;
@@ -43,6 +46,8 @@ public final class SyncMgr {
      * holding around 60 items.
      */
     private static final int QUEUE_CAPACITY = 100;
+    /** The number of peers that must agree on the pivot block of the fast sync. */
+    private static final int FAST_SYNC_MIN_PIVOT_PEERS = 3;
 
     private static final Logger log = AionLoggerFactory.getLogger(LogEnum.SYNC.name());
     private static final Logger survey_log = AionLoggerFactory.getLogger(LogEnum.SURVEY.name());
@@ -56,10 +61,12 @@ public final class SyncMgr {
     // store the downloaded blocks that are ready to import
     private final BlockingQueue<BlocksWrapper> downloadedBlocks = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
     /**
-     * This queue receives data from {@link #downloadedBlocks}. Its capacity is bounded inside the
-     * implementation that writes to it.
+     * This buffer receives data from {@link #downloadedBlocks} and orders it by height for import.
+     * The blocks that do not fit are stored on disk.
      */
-    private final PriorityBlockingQueue<BlocksWrapper> sortedBlocks = new PriorityBlockingQueue<>();
+    private final BlockReorderBuffer sortedBlocks =
+            new BlockReorderBuffer(
+                    BlockReorderBuffer.DEFAULT_HEIGHTS, BlockReorderBuffer.DEFAULT_MAX_BYTES);
     // store the hashes of blocks which have been successfully imported
     private final Map<ByteArrayWrapper, Object> importedBlockHashes =
             Collections.synchronizedMap(new LRUMap<>(4096));
@@ -67,6 +74,9 @@ public final class SyncMgr {
     private IP2pMgr p2pMgr;
     private IEventMgr evtMgr;
     private SyncStats stats;
+    // metrics for the whole pipeline, exposed through the API server
+    private final SyncMetrics metrics = new SyncMetrics();
+    private final PeerScoreTracker peerScores = new PeerScoreTracker(metrics);
     private AtomicBoolean start = new AtomicBoolean(true);
 
     private Thread syncGb;
@@ -76,25 +86,124 @@ public final class SyncMgr {
     private Thread syncSs = null;
 
     private BlockHeaderValidator blockHeaderValidator;
+    // applies the header rules to the received batches in parallel
+    private final HeaderValidationStage headerValidation;
     private volatile long timeUpdated = 0;
 
+    // null when the fast sync is disabled
+    private final FastSyncManager fastSyncMgr;
+    // null when the skeleton sync is disabled
+    private final SkeletonHeaderSync skeletonSync;
+
+    /**
+     * @param fastSyncState the file where the progress of the fast sync is persisted or {@code
+     *     null} when the fast sync is disabled
+     * @param enableSkeletonSync whether the headers far behind the top of the chain are filled in
+     *     parallel from multiple peers
+     * @param checkpointHash the hash of a trusted block below which the blocks are not executed or
+     *     {@code null} when the fast sync selects the pivot from the blocks reported by peers
+     * @param checkpointNumber the height of the trusted block
+     */
     public SyncMgr(final AionBlockchainImpl _chain,
         final IP2pMgr _p2pMgr,
         final IEventMgr _evtMgr,
         final boolean _showStatus,
         final Set<StatsType> showStatistics,
-        final int maxActivePeers) {
+        final int maxActivePeers,
+        final File fastSyncState,
+        final boolean enableSkeletonSync,
+        final byte[] checkpointHash,
+        final long checkpointNumber) {
+        this(
+            _chain,
+            _p2pMgr,
+            _evtMgr,
+            _showStatus,
+            showStatistics,
+            maxActivePeers,
+            new ChainConfiguration().createBlockHeaderValidator(),
+            fastSyncState,
+            enableSkeletonSync,
+            checkpointHash,
+            checkpointNumber);
+    }
+
+    /**
+     * @param _blockHeaderValidator validator for the headers received from peers, which allows
+     *     tests to sync chains that use relaxed validation rules
+     */
+    @VisibleForTesting
+    SyncMgr(final AionBlockchainImpl _chain,
+        final IP2pMgr _p2pMgr,
+        final IEventMgr _evtMgr,
+        final boolean _showStatus,
+        final Set<StatsType> showStatistics,
+        final int maxActivePeers,
+        final BlockHeaderValidator _blockHeaderValidator) {
+        this(
+            _chain,
+            _p2pMgr,
+            _evtMgr,
+            _showStatus,
+            showStatistics,
+            maxActivePeers,
+            _blockHeaderValidator,
+            null,
+            false,
+            null,
+            0);
+    }
+
+    private SyncMgr(final AionBlockchainImpl _chain,
+        final IP2pMgr _p2pMgr,
+        final IEventMgr _evtMgr,
+        final boolean _showStatus,
+        final Set<StatsType> showStatistics,
+        final int maxActivePeers,
+        final BlockHeaderValidator _blockHeaderValidator,
+        final File fastSyncState,
+        final boolean enableSkeletonSync,
+        final byte[] checkpointHash,
+        final long checkpointNumber) {
 
         p2pMgr = _p2pMgr;
         chain = _chain;
         evtMgr = _evtMgr;
 
-        blockHeaderValidator = new ChainConfiguration().createBlockHeaderValidator();
+        blockHeaderValidator = _blockHeaderValidator;
+        headerValidation = HeaderValidationStage.withAvailableProcessors(blockHeaderValidator, log);
 
         long selfBest = chain.getBestBlock().getNumber();
         stats = new SyncStats(selfBest, _showStatus, showStatistics, maxActivePeers);
 
-        syncHeaderRequestManager =  new SyncHeaderRequestManager(log, survey_log);
+        syncHeaderRequestManager =  new SyncHeaderRequestManager(log, survey_log, peerScores);
+
+        metrics.registerQueue("downloadedHeaders", downloadedHeaders::size);
+        metrics.registerQueue("downloadedBlocks", downloadedBlocks::size);
+        metrics.registerQueue("sortedBlocks", sortedBlocks::size);
+
+        if (fastSyncState != null) {
+            fastSyncMgr =
+                new FastSyncManager(
+                    log,
+                    chain,
+                    p2pMgr,
+                    peerScores,
+                    headerValidation,
+                    fastSyncState,
+                    FAST_SYNC_MIN_PIVOT_PEERS,
+                    checkpointHash,
+                    checkpointNumber);
+            fastSyncMgr.start();
+        } else {
+            fastSyncMgr = null;
+        }
+
+        skeletonSync =
+            enableSkeletonSync
+                ? new SkeletonHeaderSync(
+                    log, p2pMgr, peerScores, blockHeaderValidator, downloadedHeaders)
+                : null;
 
         syncGb =
             new Thread(
@@ -104,6 +213,7 @@ public final class SyncMgr {
                     downloadedHeaders,
                     syncHeaderRequestManager,
                     stats,
+                    peerScores,
                     log, survey_log),
                 "sync-gb");
         syncGb.start();
@@ -129,7 +239,8 @@ public final class SyncMgr {
                     stats,
                     sortedBlocks,
                     importedBlockHashes,
-                    syncHeaderRequestManager),
+                    syncHeaderRequestManager,
+                    metrics),
                 "sync-ib");
         syncIb.start();
         syncGs = new Thread(new TaskGetStatus(start, p2pMgr, stats, log), "sync-gs");
@@ -174,8 +285,9 @@ public final class SyncMgr {
         // self
         BigInteger selfTd = this.chain.getTotalDifficulty();
 
-        // trigger send headers routine immediately
-        if (_remoteTotalDiff.compareTo(selfTd) > 0) {
+        // trigger send headers routine immediately, unless the state is still being retrieved
+        if (_remoteTotalDiff.compareTo(selfTd) > 0
+                && (fastSyncMgr == null || fastSyncMgr.isComplete())) {
             this.getHeaders(selfTd);
         }
 
@@ -233,6 +345,11 @@ public final class SyncMgr {
     }
 
     private void getHeaders(BigInteger _selfTd) {
+        // the skeleton sync bounds its own buffer and releases headers only when there is room
+        if (skeletonSync != null && skeletonSync.sendRequests(chain.getBestBlock(), _selfTd)) {
+            return;
+        }
+
         if (downloadedBlocks.size() >= QUEUE_CAPACITY || downloadedHeaders.size() >= QUEUE_CAPACITY) {
             log.warn("Downloaded blocks queues are full. Stopped requesting headers.");
         } else {
@@ -258,22 +375,32 @@ public final class SyncMgr {
                     _displayId);
         }
 
+        // ignore this batch if any invalidated header
+        int invalid;
+        long validationStart = System.nanoTime();
+        try {
+            invalid = headerValidation.findFirstInvalid(_headers);
+            metrics.recordHeaderValidation(System.nanoTime() - validationStart, _headers.size());
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while validating the headers from node={}.", _displayId);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (invalid != -1) {
+            BlockHeader current = _headers.get(invalid);
+            log.debug("<invalid-header num={} hash={}>", current.getNumber(), current.getHash());
+
+            // Print header to allow debugging
+            log.debug("Invalid header: {}", current.toString());
+            peerScores.recordInvalid(_nodeIdHashcode);
+
+            return;
+        }
+
         // filter imported block headers
         List<BlockHeader> filtered = new ArrayList<>();
         BlockHeader prev = null;
         for (BlockHeader current : _headers) {
-
-            // ignore this batch if any invalidated header
-            if (!this.blockHeaderValidator.validate(current, log)) {
-                log.debug(
-                        "<invalid-header num={} hash={}>", current.getNumber(), current.getHash());
-
-                // Print header to allow debugging
-                log.debug("Invalid header: {}", current.toString());
-
-                return;
-            }
-
             // break if not consisting
             if (prev != null
                     && (current.getNumber() != (prev.getNumber() + 1)
@@ -285,6 +412,7 @@ public final class SyncMgr {
                         prev.getNumber() + 1,
                         ByteUtil.toHexString(current.getParentHash()),
                         ByteUtil.toHexString(prev.getHash()));
+                peerScores.recordInvalid(_nodeIdHashcode);
                 return;
             }
 
@@ -296,6 +424,12 @@ public final class SyncMgr {
             prev = current;
         }
 
+        // headers filling a gap of the skeleton are released in order by the skeleton sync
+        if (skeletonSync != null
+                && skeletonSync.validateAndAddGap(_nodeIdHashcode, _displayId, _headers)) {
+            return;
+        }
+
         // NOTE: the filtered headers is still continuous
 
         if (!filtered.isEmpty()) {
@@ -331,6 +465,7 @@ public final class SyncMgr {
             Block block = BlockUtil.newBlockWithHeaderFromUnsafeSource(headerIt.next(), bodyIt.next());
             if (block == null) {
                 log.warn("<assemble-and-validate-blocks node={} size={}>", _displayId, _bodies.size());
+                peerScores.recordInvalid(_nodeIdHashcode);
                 break;
             } else {
                 blocks.add(block);
@@ -345,8 +480,9 @@ public final class SyncMgr {
         log.debug("<assembled-blocks from={} size={} node={}>", blocks.get(0).getNumber(), blocks.size(), _displayId);
 
         try {
-            // add batch
-            downloadedBlocks.put(new BlocksWrapper(_nodeIdHashcode, _displayId, blocks));
+            // add batch attributed to the peer that provided the headers, since the import
+            // outcome determines the sync mode used for that peer's chain
+            downloadedBlocks.put(new BlocksWrapper(hw.nodeId, hw.displayId, blocks));
         } catch (InterruptedException e) {
             log.error("Interrupted while attempting to add the blocks from the network to the processing queue:", e);
         }
@@ -366,6 +502,11 @@ public final class SyncMgr {
         interruptAndWait(syncIb, 10000);
         interruptAndWait(syncGs, 10000);
         interruptAndWait(syncSs, 10000);
+
+        if (fastSyncMgr != null) {
+            fastSyncMgr.shutdown();
+        }
+        headerValidation.shutdown();
     }
 
     private void interruptAndWait(Thread t, long timeout) {
@@ -383,4 +524,24 @@ public final class SyncMgr {
     public SyncStats getSyncStats() {
         return this.stats;
     }
+
+    /** Returns the metrics of the sync pipeline. */
+    public SyncMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /** Returns the scores of the peers used for routing sync requests. */
+    public PeerScoreTracker getPeerScores() {
+        return this.peerScores;
+    }
+
+    /** Returns the skeleton sync or {@code null} when the skeleton sync is disabled. */
+    public SkeletonHeaderSync getSkeletonSync() {
+        return this.skeletonSync;
+    }
+
+    /** Returns the fast sync manager or {@code null} when the fast sync is disabled. */
+    public FastSyncManager getFastSyncManager() {
+        return this.fastSyncMgr;
+    }
 }
@@ -0,0 +1,645 @@
+package org.aion.zero.impl.sync;
+
+import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.aion.p2p.V1Constants.BLOCKS_REQUEST_MAXIMUM_BATCH_SIZE;
+import static org.aion.p2p.V1Constants.HASH_SIZE;
+import static org.aion.p2p.V1Constants.TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.aion.base.AccountState;
+import org.aion.base.ConstantUtil;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.db.InternalVmType;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.types.AionAddress;
+import org.aion.util.bytes.ByteUtil;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.core.FastImportResult;
+import org.aion.zero.impl.db.AionContractDetailsImpl;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.sync.FastSyncManager.Phase;
+import org.aion.zero.impl.sync.TrieDataScheduler.NodeKey;
+import org.aion.zero.impl.sync.msg.RequestBlocks;
+import org.aion.zero.impl.sync.msg.RequestTrieData;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.sync.statistics.RequestType;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+
+/**
+ * Drives the fast sync through its phases: selects the pivot, sends the trie data requests
+ * scheduled by the {@link TrieDataScheduler}, checks the completeness of the state and retrieves
+ * the ancestors of the pivot.
+ */
+final class TaskFastSync implements Runnable {
+
+    private static final int INTERVAL = 100; // 100 ms
+
+    /** The fast sync is skipped when the network is at most this many blocks ahead. */
+    static final long MIN_PIVOT_DISTANCE = 1024;
+
+    /** The number of blocks the confirming peers must have on top of the pivot. */
+    static final long PIVOT_CONFIRMATIONS = 16;
+
+    /** A pivot candidate not confirmed within this time is discarded. */
+    private static final long PIVOT_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /** The number of ancestors retrieved before switching to the pivot. */
+    static final long ANCESTOR_COUNT = 128;
+
+    private static final long BLOCKS_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Bounds for the number of trie data requests waiting for a response from a peer. */
+    private static final int MIN_OUTSTANDING = 4;
+
+    private static final int MAX_OUTSTANDING = 32;
+
+    private final Logger log;
+    private final FastSyncManager manager;
+    private final AionBlockchainImpl chain;
+    private final IP2pMgr p2p;
+    private final PeerScoreTracker peerScores;
+    private final TrieDataScheduler scheduler;
+
+    // pivot selection
+    private Candidate candidate = null;
+
+    // state retrieval
+    private long checkedImports = -1;
+    private long checkedContracts = -1;
+    private int contractCount = -1;
+    private long countedDetails = -1;
+    private int storedContractCount = 0;
+
+    // ancestor retrieval
+    private long ancestorsRequestTime = 0;
+    private Block lowestAncestor = null;
+
+    TaskFastSync(
+            final Logger log,
+            final FastSyncManager manager,
+            final AionBlockchainImpl chain,
+            final IP2pMgr p2p,
+            final PeerScoreTracker peerScores) {
+        this.log = log;
+        this.manager = manager;
+        this.chain = chain;
+        this.p2p = p2p;
+        this.peerScores = peerScores;
+        this.scheduler = manager.getScheduler();
+    }
+
+    @Override
+    public void run() {
+        while (manager.getStart().get() && !manager.isComplete()) {
+            try {
+                switch (manager.getPhase()) {
+                    case PIVOT:
+                        selectPivot();
+                        break;
+                    case STATE:
+                        retrieveState();
+                        break;
+                    case ANCESTORS:
+                        retrieveAncestors();
+                        break;
+                    default:
+                        break;
+                }
+                Thread.sleep(INTERVAL);
+            } catch (InterruptedException e) {
+                // we were asked to quit
+                break;
+            } catch (Exception e) {
+                log.error("<sync-fs exception>", e);
+            }
+        }
+        log.info("<sync-fs shutdown>");
+    }
+
+    /**
+     * Uses the best block of the peer with the highest total difficulty as pivot once enough peers
+     * have built {@link #PIVOT_CONFIRMATIONS} blocks on top of it and deliver the same block at its
+     * height. The total difficulty of the pivot is taken from the status of the peers with the
+     * pivot as their best block and must be reported identically by as many peers.
+     *
+     * <p>A configured checkpoint is used as pivot once any peer delivers the block at its height
+     * with the expected hash. Its total difficulty is computed after retrieving its ancestors.
+     */
+    private void selectPivot() {
+        long now = System.nanoTime();
+        Collection<INode> peers = p2p.getActiveNodes().values();
+
+        processPivotResponses();
+        if (manager.getPhase() != Phase.PIVOT) {
+            return;
+        }
+
+        if (candidate != null && now - candidate.time > PIVOT_TIMEOUT_NANOS) {
+            log.debug("<fast-sync pivot candidate num={} expired>", candidate.number);
+            candidate = null;
+        }
+
+        if (candidate == null && manager.hasCheckpoint()) {
+            candidate =
+                    new Candidate(
+                            manager.getCheckpointNumber(), manager.getCheckpointHash(), now);
+        }
+
+        if (candidate == null) {
+            INode best = null;
+            for (INode peer : peers) {
+                if (peer.getBestBlockHash() != null
+                        && peer.getBestBlockHash().length == HASH_SIZE
+                        && (best == null
+                                || peer.getTotalDifficulty().compareTo(best.getTotalDifficulty())
+                                        > 0)) {
+                    best = peer;
+                }
+            }
+            if (best == null) {
+                return;
+            }
+
+            long selfBest = chain.getBestBlock().getNumber();
+            if (best.getBestBlockNumber() <= selfBest + MIN_PIVOT_DISTANCE) {
+                if (peers.size() >= manager.getMinPivotPeers()) {
+                    log.info(
+                            "<fast-sync skipped network-best={} self-best={}>",
+                            best.getBestBlockNumber(),
+                            selfBest);
+                    manager.setPhase(Phase.COMPLETE);
+                }
+                return;
+            }
+
+            candidate =
+                    new Candidate(
+                            best.getBestBlockNumber(),
+                            ByteArrayWrapper.wrap(best.getBestBlockHash()),
+                            now);
+            log.debug(
+                    "<fast-sync pivot candidate num={} hash={} td={} peer={}>",
+                    candidate.number,
+                    candidate.hash,
+                    best.getTotalDifficulty(),
+                    best.getIdShort());
+        }
+
+        if (!manager.hasCheckpoint()) {
+            for (INode peer : peers) {
+                if (peer.getBestBlockHash() != null
+                        && candidate.hash.equals(ByteArrayWrapper.wrap(peer.getBestBlockHash()))) {
+                    candidate.reported.put(peer.getIdHash(), peer.getTotalDifficulty());
+                }
+            }
+        }
+
+        // ask the peers that are far enough ahead for the block at the candidate height
+        long confirmations = manager.hasCheckpoint() ? 0 : PIVOT_CONFIRMATIONS;
+        RequestBlocks request = new RequestBlocks(candidate.number, 1, false);
+        for (INode peer : peers) {
+            if (peer.getBestBlockNumber() >= candidate.number + confirmations
+                    && candidate.requested.add(peer.getIdHash())) {
+                p2p.send(peer.getIdHash(), peer.getIdShort(), request);
+                peerScores.recordRequest(peer.getIdHash(), RequestType.BLOCKS, now);
+            }
+        }
+    }
+
+    private void processPivotResponses() {
+        // the checkpoint is trusted so a single peer delivering it is enough
+        int minPeers = manager.hasCheckpoint() ? 1 : manager.getMinPivotPeers();
+        BlocksWrapper response;
+        while ((response = manager.getReceivedBlocks().poll()) != null) {
+            if (candidate == null || response.firstBlockNumber != candidate.number) {
+                continue;
+            }
+
+            Block block = response.blocks.get(0);
+            if (candidate.hash.equals(ByteArrayWrapper.wrap(block.getHash()))) {
+                candidate.block = block;
+                candidate.confirmed.add(response.nodeId);
+            } else {
+                candidate.conflicting.add(response.nodeId);
+            }
+
+            if (!manager.hasCheckpoint() && candidate.conflicting.size() >= minPeers) {
+                log.debug("<fast-sync pivot candidate num={} rejected>", candidate.number);
+                candidate = null;
+            }
+        }
+
+        if (candidate != null && candidate.confirmed.size() >= minPeers) {
+            // the total difficulty of a checkpoint is computed after retrieving its ancestors
+            BigInteger totalDifficulty =
+                    manager.hasCheckpoint()
+                            ? BigInteger.ZERO
+                            : candidate.getAgreedTotalDifficulty(minPeers);
+            if (totalDifficulty != null) {
+                log.info(
+                        "<fast-sync pivot selected num={} hash={} td={}>",
+                        candidate.number,
+                        candidate.hash,
+                        totalDifficulty);
+                manager.setPivot(candidate.block, totalDifficulty);
+                candidate = null;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the world state at the pivot followed by the data of the contracts. Missing nodes
+     * are discovered by the {@link TaskImportTrieData} as the received nodes are imported, such
+     * that the trie is traversed from the root only at the start and to confirm its completeness.
+     */
+    private void retrieveState() {
+        long now = System.nanoTime();
+        Block pivot = manager.getPivot();
+
+        for (NodeKey key : scheduler.expire(now)) {
+            // peers do not respond when there are no contracts after the requested address
+            if (key.type == DatabaseType.DETAILS
+                    && getStoredContractCount(pivot) >= getContractCount(pivot)) {
+                log.debug("<fast-sync no contracts after={}>", key.key);
+                manager.setContractsEnumerated();
+                continue;
+            }
+            scheduler.add(key);
+        }
+
+        if (scheduler.isIdle()) {
+            if (!manager.isWorldStateComplete()) {
+                // avoid traversing the trie again while nothing was imported
+                long imported = manager.getImportedNodes();
+                if (imported != checkedImports) {
+                    checkedImports = imported;
+                    checkWorldState(pivot.getStateRoot());
+                }
+            } else if (manager.areContractsEnumerated()) {
+                long imported = manager.getImportedNodes();
+                if (imported != checkedContracts) {
+                    checkedContracts = imported;
+                    if (checkContracts(pivot)) {
+                        log.info(
+                                "<fast-sync state complete num={} hash={}>",
+                                pivot.getNumber(),
+                                pivot.getShortHash());
+                        chain.getRepository().flush();
+                        chain.importPivot(pivot, manager.getPivotTotalDifficulty());
+                        manager.setPhase(Phase.ANCESTORS);
+                        return;
+                    }
+                }
+            }
+        }
+
+        sendTrieDataRequests(pivot, now);
+    }
+
+    private void checkWorldState(byte[] root) {
+        Set<ByteArrayWrapper> missing =
+                Arrays.equals(root, ConstantUtil.EMPTY_TRIE_HASH)
+                        ? new HashSet<>()
+                        : chain.getMissingTrieNodes(root, DatabaseType.STATE);
+
+        if (missing.isEmpty()) {
+            log.info("<fast-sync world state complete, retrieving contracts>");
+            manager.setWorldStateComplete();
+            enumerateContracts();
+        } else {
+            for (ByteArrayWrapper key : missing) {
+                scheduler.add(new NodeKey(DatabaseType.STATE, key, null));
+            }
+        }
+    }
+
+    /** The contracts are enumerated starting from the lowest address. */
+    private void enumerateContracts() {
+        scheduler.add(
+                new NodeKey(
+                        DatabaseType.DETAILS, ByteArrayWrapper.wrap(new byte[HASH_SIZE]), null));
+    }
+
+    /**
+     * Confirms that the contract data of the pivot state is complete before importing the pivot,
+     * since peers may leave contracts out of the enumeration. The enumeration is restarted when
+     * the stored contracts do not cover all the contracts in the world state, otherwise the
+     * missing storage and object graph entries of the contracts are scheduled.
+     *
+     * @return {@code true} if the details, storage and object graph of every contract are present
+     */
+    private boolean checkContracts(Block pivot) {
+        long imported = manager.getImportedDetails();
+        Map<AionAddress, AccountState> contracts = getStoredContracts(pivot);
+        countedDetails = imported;
+        storedContractCount = contracts.size();
+        if (contracts.size() < getContractCount(pivot)) {
+            log.info(
+                    "<fast-sync contracts incomplete found={} expected={}, enumerating again>",
+                    contracts.size(),
+                    getContractCount(pivot));
+            manager.restartContractEnumeration();
+            enumerateContracts();
+            return false;
+        }
+
+        boolean complete = true;
+        for (Map.Entry<AionAddress, AccountState> contract : contracts.entrySet()) {
+            complete &= checkContractData(contract.getKey(), contract.getValue());
+        }
+        return complete;
+    }
+
+    /**
+     * Counts the contracts of the pivot state, i.e. the accounts with code or storage. The world
+     * state references the contracts only through the hash of their address, so their details
+     * must be enumerated, but their number is known once the world state is complete.
+     */
+    private int getContractCount(Block pivot) {
+        if (contractCount < 0) {
+            contractCount = chain.getRepository().getContractCount(pivot.getStateRoot());
+            log.info("<fast-sync pivot contracts count={}>", contractCount);
+        }
+        return contractCount;
+    }
+
+    /**
+     * Counts the contracts returned by {@link #getStoredContracts(Block)}, which change only when
+     * contract details are imported, such that the stored details are not read again for every
+     * expired enumeration request.
+     */
+    private int getStoredContractCount(Block pivot) {
+        long imported = manager.getImportedDetails();
+        if (imported != countedDetails) {
+            countedDetails = imported;
+            storedContractCount = getStoredContracts(pivot).size();
+        }
+        return storedContractCount;
+    }
+
+    /**
+     * Returns the contracts of the pivot state whose stored details match their account. The
+     * storage root in the details is checked against the account when the storage is external,
+     * such that details stored before the fast sync are retrieved again.
+     */
+    private Map<AionAddress, AccountState> getStoredContracts(Block pivot) {
+        AionRepositoryImpl repository = chain.getRepository();
+        AionRepositoryImpl pivotState =
+                (AionRepositoryImpl) repository.getSnapshotTo(pivot.getStateRoot());
+
+        Map<AionAddress, AccountState> contracts = new HashMap<>();
+        for (AionAddress address : repository.getContractAddresses()) {
+            AccountState account = pivotState.getAccountState(address);
+            if (account == null
+                    || Arrays.equals(account.getCodeHash(), EMPTY_DATA_HASH)
+                            && Arrays.equals(
+                                    account.getStateRoot(), ConstantUtil.EMPTY_TRIE_HASH)) {
+                continue;
+            }
+
+            RLPList details = getDetails(address);
+            byte[] root = account.getStateRoot();
+            if (details == null
+                    || isExternalStorage(details)
+                            && !Arrays.equals(details.get(2).getRLPData(), root)) {
+                continue;
+            }
+            contracts.put(address, account);
+        }
+        return contracts;
+    }
+
+    /**
+     * Schedules the storage and object graph entries of a stored contract that are missing,
+     * following the same keys as the {@link TaskImportTrieData} when the details are received.
+     *
+     * @return {@code true} if no data of the contract is missing
+     */
+    private boolean checkContractData(AionAddress address, AccountState account) {
+        AionRepositoryImpl repository = chain.getRepository();
+        byte[] root = account.getStateRoot();
+        byte[] storageRoot = root;
+
+        if (repository.getVMUsed(address, account.getCodeHash()) == InternalVmType.AVM) {
+            byte[] subKey = AionContractDetailsImpl.graphSubKey(address);
+            byte[] pairKey = ByteUtil.xorAlignRight(root, subKey);
+            byte[] pair = repository.getTrieNode(pairKey, DatabaseType.GRAPH);
+            if (pair == null) {
+                scheduler.add(
+                        new NodeKey(DatabaseType.GRAPH, ByteArrayWrapper.wrap(pairKey), address));
+                return false;
+            }
+
+            RLPList data = (RLPList) RLP.decode2(pair).get(0);
+            storageRoot = data.get(0).getRLPData();
+            byte[] graphKey = ByteUtil.xorAlignRight(data.get(1).getRLPData(), subKey);
+            if (!Arrays.equals(data.get(1).getRLPData(), EMPTY_DATA_HASH)
+                    && repository.getTrieNode(graphKey, DatabaseType.GRAPH) == null) {
+                scheduler.add(
+                        new NodeKey(DatabaseType.GRAPH, ByteArrayWrapper.wrap(graphKey), address));
+                return false;
+            }
+        }
+
+        // inline storage is part of the details
+        if (!isExternalStorage(getDetails(address))
+                || Arrays.equals(storageRoot, ConstantUtil.EMPTY_TRIE_HASH)) {
+            return true;
+        }
+        boolean complete = true;
+        for (ByteArrayWrapper missing : repository.getMissingStorageNodes(storageRoot, address)) {
+            scheduler.add(new NodeKey(DatabaseType.STORAGE, missing, address));
+            complete = false;
+        }
+        return complete;
+    }
+
+    /** Returns the decoded details stored for the contract or {@code null} if invalid. */
+    private RLPList getDetails(AionAddress address) {
+        byte[] details =
+                chain.getRepository().getTrieNode(address.toByteArray(), DatabaseType.DETAILS);
+        try {
+            RLPList data = (RLPList) RLP.decode2(details).get(0);
+            return data.size() < 5 ? null : data;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Checks the flag indicating that the storage is kept outside of the contract details. */
+    private static boolean isExternalStorage(RLPList details) {
+        byte[] external = details.get(1).getRLPData();
+        return external != null && external.length > 0;
+    }
+
+    private void sendTrieDataRequests(Block pivot, long now) {
+        List<INode> peers =
+                peerScores.sortByScore(p2p.getActiveNodes().values(), INode::getIdHash);
+
+        List<Integer> active = new ArrayList<>(peers.size());
+        for (INode peer : peers) {
+            active.add(peer.getIdHash());
+        }
+        scheduler.retainPeers(active);
+
+        for (INode peer : peers) {
+            // peers behind the pivot do not have its state
+            if (peer.getBestBlockNumber() < pivot.getNumber()) {
+                continue;
+            }
+
+            int peerId = peer.getIdHash();
+            int maxOutstanding =
+                    peerScores.getRequestSize(peerId, MIN_OUTSTANDING, MAX_OUTSTANDING);
+            for (NodeKey key : scheduler.next(peerId, maxOutstanding, now)) {
+                p2p.send(
+                        peerId,
+                        peer.getIdShort(),
+                        new RequestTrieData(key.key.toBytes(), key.type, getLimit(key.type)));
+                peerScores.recordRequest(peerId, RequestType.TRIE_DATA, now);
+            }
+        }
+    }
+
+    /**
+     * The world state nodes are requested together with their descendants. The storage and object
+     * graph keys are transformed per contract, which prevents the responding peer from resolving
+     * the descendants, so these are requested one node at a time.
+     */
+    private static int getLimit(DatabaseType type) {
+        switch (type) {
+            case STATE:
+                return 0;
+            case DETAILS:
+                return TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Imports the ancestors of the pivot from the most recent to the oldest one, after which the
+     * pivot becomes the best block. The ancestors of a checkpoint are imported down to genesis.
+     */
+    private void retrieveAncestors() {
+        long now = System.nanoTime();
+        Block pivot = manager.getPivot();
+
+        BlocksWrapper response;
+        while ((response = manager.getReceivedBlocks().poll()) != null) {
+            for (Block block : response.blocks) {
+                FastImportResult result = chain.tryFastImport(block);
+                if (result.isSuccessful()) {
+                    // request the next batch right away
+                    ancestorsRequestTime = 0;
+                } else if (result == FastImportResult.INVALID_BLOCK) {
+                    peerScores.recordInvalid(response.nodeId);
+                    break;
+                } else if (result == FastImportResult.NO_CHILD) {
+                    break;
+                }
+            }
+        }
+
+        // the search continues from the lowest ancestor found previously
+        Pair<ByteArrayWrapper, Long> missing =
+                chain.findMissingAncestor(lowestAncestor == null ? pivot : lowestAncestor);
+        if (missing != null) {
+            Block lowest = chain.getBlockStore().getChainBlockByNumber(missing.getRight() + 1);
+            if (lowest != null
+                    && Arrays.equals(lowest.getParentHash(), missing.getLeft().toBytes())) {
+                lowestAncestor = lowest;
+            }
+        }
+
+        boolean complete =
+                missing == null
+                        || !manager.hasCheckpoint()
+                                && missing.getRight() < pivot.getNumber() - ANCESTOR_COUNT;
+        if (complete) {
+            if (manager.hasCheckpoint()) {
+                BigInteger totalDifficulty =
+                        chain.getBlockStore().correctMainChainTotalDifficulty(pivot.getNumber());
+                chain.getBlockStore().flush();
+                log.info(
+                        "<fast-sync checkpoint history complete num={} td={}>",
+                        pivot.getNumber(),
+                        totalDifficulty);
+            }
+            if (chain.switchToPivot(pivot)) {
+                manager.setPhase(Phase.COMPLETE);
+            } else {
+                log.error(
+                        "<fast-sync unable to switch to pivot num={} hash={}>",
+                        pivot.getNumber(),
+                        pivot.getShortHash());
+            }
+            return;
+        }
+
+        if (now - ancestorsRequestTime > BLOCKS_TIMEOUT_NANOS) {
+            List<INode> peers =
+                    peerScores.sortByScore(p2p.getActiveNodes().values(), INode::getIdHash);
+            for (INode peer : peers) {
+                if (peer.getBestBlockNumber() >= pivot.getNumber()) {
+                    p2p.send(
+                            peer.getIdHash(),
+                            peer.getIdShort(),
+                            new RequestBlocks(
+                                    missing.getLeft().toBytes(),
+                                    BLOCKS_REQUEST_MAXIMUM_BATCH_SIZE,
+                                    true));
+                    peerScores.recordRequest(peer.getIdHash(), RequestType.BLOCKS, now);
+                    ancestorsRequestTime = now;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A block considered for the pivot, the peers that confirmed it and the total difficulty
+     * reported by the peers with the block as their best block.
+     */
+    private static final class Candidate {
+        final long number;
+        final ByteArrayWrapper hash;
+        final long time;
+        final Set<Integer> requested = new HashSet<>();
+        final Set<Integer> confirmed = new HashSet<>();
+        final Set<Integer> conflicting = new HashSet<>();
+        final Map<Integer, BigInteger> reported = new HashMap<>();
+        Block block = null;
+
+        Candidate(long number, ByteArrayWrapper hash, long time) {
+            this.number = number;
+            this.hash = hash;
+            this.time = time;
+        }
+
+        /** Returns the total difficulty reported by at least the given number of peers, if any. */
+        BigInteger getAgreedTotalDifficulty(int minPeers) {
+            Map<BigInteger, Integer> counts = new HashMap<>();
+            for (BigInteger totalDifficulty : reported.values()) {
+                if (counts.merge(totalDifficulty, 1, Integer::sum) >= minPeers) {
+                    return totalDifficulty;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package org.aion.zero.impl.sync;
 
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.mcf.blockchain.Block;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
@@ -10,23 +9,19 @@ import org.aion.zero.impl.sync.statistics.BlockType;
 import org.slf4j.Logger;
 
 /**
- * Filters received blocks by delegating the ones far in the future to storage and delaying queue
- * population when the predefined capacity is reached.
+ * Filters received blocks by delegating to storage the ones that do not fit in the reorder buffer,
+ * either because they are far in the future or because of its memory limit. The population of the
+ * buffer is delayed when the blocks that can be imported next do not fit.
  *
  * @author Alexandra Roatis
  */
 final class TaskFilterBlocksBeforeImport implements Runnable {
 
-    private static final int MIN_STORAGE_DIFF = 10;
-    private static final int MAX_STORAGE_DIFF = 200; // should be lower than SyncHeaderRequestManager.MAX_BLOCK_DIFF
-    private static final int PREFERRED_QUEUE_SIZE = 100;
-    private static final long SLEEP_DURATION_MS = 1_000L; // = 1 sec
-
     private final AionBlockchainImpl chain;
     private final AtomicBoolean start;
 
     private final BlockingQueue<BlocksWrapper> downloadedBlocks;
-    private final PriorityBlockingQueue<BlocksWrapper> sortedBlocks;
+    private final BlockReorderBuffer sortedBlocks;
 
     private final SyncStats syncStats;
 
@@ -40,7 +35,7 @@ final class TaskFilterBlocksBeforeImport implements Runnable {
             final AtomicBoolean start,
             final SyncStats syncStats,
             final BlockingQueue<BlocksWrapper> downloadedBlocks,
-            final PriorityBlockingQueue<BlocksWrapper> sortedBlocks) {
+            final BlockReorderBuffer sortedBlocks) {
         this.log = syncLog;
         this.surveyLog = surveyLog;
         this.chain = chain;
@@ -63,20 +58,9 @@ final class TaskFilterBlocksBeforeImport implements Runnable {
                 duration = System.nanoTime() - startTime;
                 surveyLog.info("Import Stage 1.A: wait for downloaded blocks, duration = {} ns.", duration);
 
-                long currentBest = getBestBlockNumber();
-                boolean isFarInFuture = bw.firstBlockNumber > currentBest + MAX_STORAGE_DIFF;
-                boolean isRestrictedCapacity = (sortedBlocks.size() >= PREFERRED_QUEUE_SIZE)
-                                            && (bw.firstBlockNumber > currentBest + MIN_STORAGE_DIFF);
-
-                if (isFarInFuture || isRestrictedCapacity) {
+                // blocks until there is space when the batch can be imported next
+                if (!sortedBlocks.offer(bw, getBestBlockNumber())) {
                     storePendingBlocks(bw.blocks, bw.displayId);
-                } else {
-                    // unfortunately the PriorityBlockingQueue does not support a bounded size
-                    // therefore this while mimics blocking when the queue is full
-                    while (sortedBlocks.size() >= PREFERRED_QUEUE_SIZE) {
-                        Thread.sleep(SLEEP_DURATION_MS);
-                    }
-                    sortedBlocks.put(bw);
                 }
             }
         } catch (InterruptedException e) {
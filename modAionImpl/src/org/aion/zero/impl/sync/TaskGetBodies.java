@@ -1,13 +1,16 @@
 package org.aion.zero.impl.sync;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.INode;
 import org.aion.p2p.IP2pMgr;
 import org.aion.zero.impl.sync.msg.ReqBlocksBodies;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
 import org.aion.zero.impl.sync.statistics.RequestType;
 import org.slf4j.Logger;
 
@@ -30,6 +33,8 @@ final class TaskGetBodies implements Runnable {
 
     private final SyncStats stats;
 
+    private final PeerScoreTracker peerScores;
+
     /**
      * @param _p2p IP2pMgr
      * @param _run AtomicBoolean
@@ -41,6 +46,7 @@ final class TaskGetBodies implements Runnable {
             final BlockingQueue<HeadersWrapper> _downloadedHeaders,
             final SyncHeaderRequestManager syncHeaderRequestManager,
             final SyncStats _stats,
+            final PeerScoreTracker peerScores,
             final Logger log,
             final Logger surveyLog) {
         this.p2p = _p2p;
@@ -48,6 +54,7 @@ final class TaskGetBodies implements Runnable {
         this.downloadedHeaders = _downloadedHeaders;
         this.syncHeaderRequestManager = syncHeaderRequestManager;
         this.stats = _stats;
+        this.peerScores = peerScores;
         this.log = log;
         this.surveyLog = surveyLog;
     }
@@ -71,15 +78,16 @@ final class TaskGetBodies implements Runnable {
             surveyLog.info("TaskGetBodies: wait for headers, duration = {} ns.", duration);
 
             startTime = System.nanoTime();
-            int idHash = hw.nodeId;
-            String displayId = hw.displayId;
             List<BlockHeader> headers = hw.headers;
+            INode peer = selectPeer(hw.nodeId, headers.get(headers.size() - 1).getNumber());
+            int idHash = peer == null ? hw.nodeId : peer.getIdHash();
+            String displayId = peer == null ? hw.displayId : peer.getIdShort();
 
             // save headers for matching with bodies
             syncHeaderRequestManager.storeHeaders(idHash, hw);
 
             // log bodies request before sending the request
-            log.debug("<get-bodies from-num={} to-num={} node={}>", headers.get(0).getNumber(), headers.get(headers.size() - 1).getNumber(), hw.displayId);
+            log.debug("<get-bodies from-num={} to-num={} node={} headers-node={}>", headers.get(0).getNumber(), headers.get(headers.size() - 1).getNumber(), displayId, hw.displayId);
 
             p2p.send(
                     idHash,
@@ -88,9 +96,40 @@ final class TaskGetBodies implements Runnable {
                             headers.stream().map(k -> k.getHash()).collect(Collectors.toList())));
             stats.updateTotalRequestsToPeer(displayId, RequestType.BODIES);
             stats.updateRequestTime(displayId, System.nanoTime(), RequestType.BODIES);
+            peerScores.recordRequest(idHash, RequestType.BODIES, System.nanoTime());
 
             duration = System.nanoTime() - startTime;
             surveyLog.info("TaskGetBodies: make request, duration = {} ns.", duration);
         }
     }
+
+    /**
+     * Selects the peer for a bodies request. The peer that sent the headers is kept while it is
+     * active, since other peers may be on a different fork and lack the requested blocks. Otherwise
+     * the request is rerouted to the best scoring peer among those that have the requested height
+     * and whose score is based on observed responses.
+     *
+     * @return the selected peer or {@code null} if none of the active peers qualifies
+     */
+    private INode selectPeer(int headersPeer, long lastNumber) {
+        Map<Integer, INode> active = p2p.getActiveNodes();
+        INode original = active.get(headersPeer);
+        if (original != null) {
+            return original;
+        }
+
+        INode best = null;
+        double bestScore = 0;
+        for (INode node : active.values()) {
+            int id = node.getIdHash();
+            if (node.getBestBlockNumber() >= lastNumber && peerScores.hasSamples(id)) {
+                double score = peerScores.getScore(id);
+                if (best == null || score > bestScore) {
+                    best = node;
+                    bestScore = score;
+                }
+            }
+        }
+        return best;
+    }
 }
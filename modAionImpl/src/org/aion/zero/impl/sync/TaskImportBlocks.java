@@ -9,7 +9,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import org.aion.mcf.blockchain.Block;
@@ -20,6 +19,7 @@ import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.db.AionBlockStore;
 import org.aion.zero.impl.sync.SyncHeaderRequestManager.SyncMode;
 import org.aion.zero.impl.sync.statistics.BlockType;
+import org.aion.zero.impl.sync.statistics.SyncMetrics;
 import org.slf4j.Logger;
 
 /**
@@ -35,7 +35,7 @@ final class TaskImportBlocks implements Runnable {
 
     private final AtomicBoolean start;
 
-    private final PriorityBlockingQueue<BlocksWrapper> sortedBlocks;
+    private final BlockReorderBuffer sortedBlocks;
 
     private final SyncStats syncStats;
 
@@ -43,6 +43,9 @@ final class TaskImportBlocks implements Runnable {
 
     private final SyncHeaderRequestManager syncHeaderRequestManager;
 
+    // prepares the following blocks of a batch while the current one is imported
+    private final PipelinedBlockImporter importer;
+
     private final Logger log;
     private final Logger surveyLog;
 
@@ -60,9 +63,10 @@ final class TaskImportBlocks implements Runnable {
             final AionBlockchainImpl _chain,
             final AtomicBoolean _start,
             final SyncStats _syncStats,
-            final PriorityBlockingQueue<BlocksWrapper> sortedBlocks,
+            final BlockReorderBuffer sortedBlocks,
             final Map<ByteArrayWrapper, Object> _importedBlockHashes,
-            final SyncHeaderRequestManager syncHeaderRequestManager) {
+            final SyncHeaderRequestManager syncHeaderRequestManager,
+            final SyncMetrics metrics) {
         this.log = syncLog;
         this.surveyLog = surveyLog;
         this.chain = _chain;
@@ -71,6 +75,7 @@ final class TaskImportBlocks implements Runnable {
         this.sortedBlocks = sortedBlocks;
         this.importedBlockHashes = _importedBlockHashes;
         this.syncHeaderRequestManager = syncHeaderRequestManager;
+        this.importer = PipelinedBlockImporter.withAvailableProcessors(_chain, metrics, syncLog);
     }
 
     @Override
@@ -90,6 +95,7 @@ final class TaskImportBlocks implements Runnable {
                 if (start.get()) {
                     log.error("Import blocks thread interrupted without shutdown request.", ex);
                 }
+                importer.shutdown();
                 return;
             }
 
@@ -124,6 +130,7 @@ final class TaskImportBlocks implements Runnable {
 
         surveyLog.info("Total import#[{}], importTime[{}]ms, 1s+Import#[{}], 10s+Import#[{}] longestImport[{}]ms"
             , totalImportedBlocks, (totalImportTime / DIVISOR_MS), LongImportTimeCount, SuperLongImportTimeCount, longestImportTime / DIVISOR_MS);
+        importer.shutdown();
 
         log.debug(
                 "Thread ["
@@ -213,6 +220,7 @@ final class TaskImportBlocks implements Runnable {
         SyncMode returnMode = syncMode;
 
         startTime = System.nanoTime();
+        importer.prepare(batch);
         for (Block b : batch) {
             try {
                 importResult = importBlock(b, displayId, syncMode);
@@ -292,7 +300,7 @@ final class TaskImportBlocks implements Runnable {
     private ImportResult importBlock(Block b, String displayId, SyncMode mode) {
         ImportResult importResult;
         long t1 = System.nanoTime();
-        importResult = this.chain.tryToConnect(b);
+        importResult = importer.importBlock(b);
         long import_time = (System.nanoTime() - t1);
         long ONE_SECOND = 1_000L * DIVISOR_MS;
         if (log.isDebugEnabled()) {
@@ -411,6 +419,7 @@ final class TaskImportBlocks implements Runnable {
                 }
 
                 startTime = System.nanoTime();
+                importer.prepare(batchFromDisk);
                 for (Block b : batchFromDisk) {
                     try {
                         importResult = importBlock(b, "STORAGE", givenMode);
@@ -446,7 +455,7 @@ final class TaskImportBlocks implements Runnable {
             }
 
             // remove imported data from storage
-            dropImportedBlocks(level, importedQueues, levelFromDisk);
+            dropImportedBlocks(level, importedQueues);
 
             // increment level
             level++;
@@ -484,12 +493,9 @@ final class TaskImportBlocks implements Runnable {
                 first.getTransactionsList().size());
     }
 
-    private void dropImportedBlocks(
-            final long level,
-            final List<ByteArrayWrapper> importedQueues,
-            final Map<ByteArrayWrapper, List<Block>> levelFromDisk) {
+    private void dropImportedBlocks(final long level, final List<ByteArrayWrapper> importedQueues) {
 
-        chain.dropImported(level, importedQueues, levelFromDisk);
+        chain.dropImported(level, importedQueues);
 
         // log operation
         log.debug(
@@ -0,0 +1,435 @@
+package org.aion.zero.impl.sync;
+
+import static org.aion.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.aion.crypto.HashUtil.h256;
+import static org.aion.p2p.V1Constants.HASH_SIZE;
+import static org.aion.p2p.V1Constants.TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.aion.base.AccountState;
+import org.aion.base.ConstantUtil;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.db.InternalVmType;
+import org.aion.precompiled.ContractInfo;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPElement;
+import org.aion.rlp.RLPList;
+import org.aion.types.AionAddress;
+import org.aion.util.bytes.ByteUtil;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.blockchain.AionBlockchainImpl;
+import org.aion.zero.impl.db.AionContractDetailsImpl;
+import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.sync.TrieDataScheduler.NodeKey;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.sync.statistics.RequestType;
+import org.slf4j.Logger;
+
+/**
+ * Validates the trie data received during fast sync, imports it and schedules the referenced data
+ * that is still missing. The data is validated against the requested keys, i.e. the hashes of the
+ * trie nodes, and the contract details against the accounts in the world state of the pivot.
+ */
+final class TaskImportTrieData implements Runnable {
+
+    /** The maximum number of responses imported together. */
+    private static final int BATCH_SIZE = 64;
+
+    /** The AVM stores the contract code as a jar file. */
+    private static final byte[] JAR_MAGIC = {0x50, 0x4b, 0x03, 0x04};
+
+    private final Logger log;
+    private final FastSyncManager manager;
+    private final AionBlockchainImpl chain;
+    private final PeerScoreTracker peerScores;
+    private final TrieDataScheduler scheduler;
+
+    // contracts with the storage included in their details
+    private final Set<AionAddress> inlineStorage = new HashSet<>();
+    private AionRepositoryImpl pivotState = null;
+
+    TaskImportTrieData(
+            final Logger log,
+            final FastSyncManager manager,
+            final AionBlockchainImpl chain,
+            final PeerScoreTracker peerScores) {
+        this.log = log;
+        this.manager = manager;
+        this.chain = chain;
+        this.peerScores = peerScores;
+        this.scheduler = manager.getScheduler();
+    }
+
+    @Override
+    public void run() {
+        List<TrieNodeWrapper> batch = new ArrayList<>(BATCH_SIZE);
+        while (manager.getStart().get() && !manager.isComplete()) {
+            try {
+                TrieNodeWrapper first = manager.getReceivedTrieData().poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                manager.getReceivedTrieData().drainTo(batch, BATCH_SIZE - 1);
+
+                long now = System.nanoTime();
+                for (TrieNodeWrapper response : batch) {
+                    peerScores.recordResponse(
+                            response.getPeerId(),
+                            RequestType.TRIE_DATA,
+                            response.getNodeValue().length,
+                            now);
+                    process(response);
+                }
+            } catch (InterruptedException e) {
+                // we were asked to quit
+                break;
+            } catch (Exception e) {
+                log.error("<sync-fs-import exception>", e);
+            } finally {
+                batch.clear();
+            }
+        }
+        log.info("<sync-fs-import shutdown>");
+    }
+
+    private void process(TrieNodeWrapper response) {
+        switch (response.getDbType()) {
+            case STATE:
+                processState(response);
+                break;
+            case STORAGE:
+                processStorage(response);
+                break;
+            case GRAPH:
+                processGraph(response);
+                break;
+            case DETAILS:
+                processDetails(response);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** World state nodes are stored under their hash. */
+    private void processState(TrieNodeWrapper response) {
+        NodeKey key = new NodeKey(DatabaseType.STATE, response.getNodeKey(), null);
+        if (!scheduler.received(key)) {
+            log.trace("<fast-sync unrequested key={} peer={}>", key, response.getDisplayId());
+            return;
+        }
+
+        Map<ByteArrayWrapper, byte[]> nodes = new HashMap<>();
+        nodes.put(response.getNodeKey(), response.getNodeValue());
+        nodes.putAll(response.getReferencedNodes());
+        for (Map.Entry<ByteArrayWrapper, byte[]> node : nodes.entrySet()) {
+            if (!node.getKey().equals(ByteArrayWrapper.wrap(h256(node.getValue())))) {
+                invalid(response, key);
+                return;
+            }
+        }
+
+        chain.importTrieNodes(nodes, DatabaseType.STATE);
+        for (ByteArrayWrapper referenced : response.getReferencedNodes().keySet()) {
+            scheduler.received(new NodeKey(DatabaseType.STATE, referenced, null));
+        }
+        manager.addImportedNodes(nodes.size());
+
+        for (ByteArrayWrapper missing :
+                chain.getMissingTrieNodes(response.getNodeValue(), DatabaseType.STATE)) {
+            scheduler.add(new NodeKey(DatabaseType.STATE, missing, null));
+        }
+    }
+
+    /** Storage nodes are stored under their hash transformed with the key of the contract. */
+    private void processStorage(TrieNodeWrapper response) {
+        NodeKey key = scheduler.getPending(DatabaseType.STORAGE, response.getNodeKey());
+        if (key == null) {
+            log.trace(
+                    "<fast-sync unrequested key={} peer={}>",
+                    response.getNodeKey(),
+                    response.getDisplayId());
+            return;
+        }
+
+        byte[] subKey = AionContractDetailsImpl.storageSubKey(key.owner);
+        Map<ByteArrayWrapper, byte[]> nodes = new HashMap<>();
+        nodes.put(response.getNodeKey(), response.getNodeValue());
+        nodes.putAll(response.getReferencedNodes());
+        for (Map.Entry<ByteArrayWrapper, byte[]> node : nodes.entrySet()) {
+            if (!Arrays.equals(
+                    node.getKey().toBytes(),
+                    ByteUtil.xorAlignRight(h256(node.getValue()), subKey))) {
+                invalid(response, key);
+                return;
+            }
+        }
+
+        scheduler.received(key);
+        chain.importTrieNodes(nodes, DatabaseType.STORAGE);
+        manager.addImportedNodes(nodes.size());
+
+        for (ByteArrayWrapper missing :
+                chain.getMissingStorageNodes(response.getNodeValue(), key.owner)) {
+            scheduler.add(new NodeKey(DatabaseType.STORAGE, missing, key.owner));
+        }
+    }
+
+    /**
+     * The object graph database of an AVM contract holds two kinds of entries under keys
+     * transformed with the key of the contract: the object graph stored under its hash and the
+     * pair of storage root and object graph hash stored under the hash of their concatenation.
+     */
+    private void processGraph(TrieNodeWrapper response) {
+        NodeKey key = scheduler.getPending(DatabaseType.GRAPH, response.getNodeKey());
+        if (key == null) {
+            log.trace(
+                    "<fast-sync unrequested key={} peer={}>",
+                    response.getNodeKey(),
+                    response.getDisplayId());
+            return;
+        }
+
+        byte[] subKey = AionContractDetailsImpl.graphSubKey(key.owner);
+        byte[] hash = ByteUtil.xorAlignRight(response.getNodeKey().toBytes(), subKey);
+        byte[] value = response.getNodeValue();
+
+        if (Arrays.equals(hash, h256(value))) {
+            // the object graph
+            scheduler.received(key);
+            chain.importTrieNodes(Map.of(response.getNodeKey(), value), DatabaseType.GRAPH);
+            manager.addImportedNodes(1);
+            return;
+        }
+
+        byte[] storageRoot, graphHash;
+        try {
+            RLPList pair = (RLPList) RLP.decode2(value).get(0);
+            storageRoot = pair.get(0).getRLPData();
+            graphHash = pair.get(1).getRLPData();
+        } catch (Exception e) {
+            invalid(response, key);
+            return;
+        }
+        if (storageRoot == null
+                || storageRoot.length != HASH_SIZE
+                || graphHash == null
+                || graphHash.length != HASH_SIZE
+                || !Arrays.equals(hash, h256(ByteUtil.merge(storageRoot, graphHash)))) {
+            invalid(response, key);
+            return;
+        }
+
+        scheduler.received(key);
+        chain.importTrieNodes(Map.of(response.getNodeKey(), value), DatabaseType.GRAPH);
+        manager.addImportedNodes(1);
+
+        if (!Arrays.equals(graphHash, EMPTY_DATA_HASH)) {
+            addIfMissing(DatabaseType.GRAPH, ByteUtil.xorAlignRight(graphHash, subKey), key.owner);
+        }
+        if (!inlineStorage.contains(key.owner)
+                && !Arrays.equals(storageRoot, ConstantUtil.EMPTY_TRIE_HASH)) {
+            addStorageRoot(storageRoot, key.owner);
+        }
+    }
+
+    /**
+     * The contract details are enumerated in batches ordered by address. Each contract must exist
+     * in the world state of the pivot and its code must match the code hash of the account.
+     */
+    private void processDetails(TrieNodeWrapper response) {
+        NodeKey key = scheduler.getOutstanding(response.getPeerId(), DatabaseType.DETAILS);
+        if (key == null) {
+            log.trace("<fast-sync unrequested contracts peer={}>", response.getDisplayId());
+            return;
+        }
+
+        Map<ByteArrayWrapper, byte[]> contracts = new LinkedHashMap<>();
+        contracts.put(response.getNodeKey(), response.getNodeValue());
+        contracts.putAll(response.getReferencedNodes());
+
+        if (pivotState == null) {
+            pivotState =
+                    (AionRepositoryImpl)
+                            chain.getRepository().getSnapshotTo(manager.getPivot().getStateRoot());
+        }
+
+        byte[] start = key.key.toBytes();
+        byte[] last = start;
+        Map<ByteArrayWrapper, byte[]> imported = new HashMap<>();
+        List<Runnable> scheduled = new ArrayList<>();
+        for (Map.Entry<ByteArrayWrapper, byte[]> contract : contracts.entrySet()) {
+            byte[] address = contract.getKey().toBytes();
+            if (address.length != AionAddress.LENGTH
+                    || Arrays.compareUnsigned(address, start) < 0) {
+                invalid(response, key);
+                return;
+            }
+            if (Arrays.compareUnsigned(address, last) > 0) {
+                last = address;
+            }
+
+            ContractCheck check =
+                    validateContract(new AionAddress(address), contract.getValue(), scheduled);
+            if (check == ContractCheck.INVALID) {
+                invalid(response, key);
+                return;
+            } else if (check == ContractCheck.VALID) {
+                imported.put(contract.getKey(), contract.getValue());
+            }
+        }
+
+        scheduler.received(key);
+        chain.importTrieNodes(imported, DatabaseType.DETAILS);
+        manager.addImportedNodes(imported.size());
+        manager.addImportedDetails(imported.size());
+        for (Runnable schedule : scheduled) {
+            schedule.run();
+        }
+
+        // a full batch indicates there may be more contracts
+        byte[] next = increment(last);
+        if (contracts.size() >= TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE && next != null) {
+            scheduler.add(new NodeKey(DatabaseType.DETAILS, ByteArrayWrapper.wrap(next), null));
+        } else {
+            log.info("<fast-sync contracts retrieved>");
+            manager.setContractsEnumerated();
+        }
+    }
+
+    /**
+     * Checks the details of a contract against its account in the pivot state and prepares the
+     * retrieval of its storage.
+     *
+     * @param scheduled collects the actions to be executed once the details are imported
+     */
+    private ContractCheck validateContract(
+            AionAddress address, byte[] details, List<Runnable> scheduled) {
+        AccountState account = pivotState.getAccountState(address);
+        if (account == null) {
+            return ContractCheck.ABSENT;
+        }
+
+        RLPList data;
+        try {
+            data = (RLPList) RLP.decode2(details).get(0);
+        } catch (Exception e) {
+            return ContractCheck.INVALID;
+        }
+        if (data.size() < 5 || !Arrays.equals(data.get(0).getRLPData(), address.toByteArray())) {
+            return ContractCheck.INVALID;
+        }
+        boolean externalStorage =
+                data.get(1).getRLPData() != null && data.get(1).getRLPData().length > 0;
+
+        byte[] codeHash = account.getCodeHash();
+        byte[] code = null;
+        if (Arrays.equals(codeHash, EMPTY_DATA_HASH)) {
+            // only the precompiled contracts have storage without code
+            if (!ContractInfo.isPrecompiledContract(address)) {
+                return ContractCheck.INVALID;
+            }
+        } else {
+            RLPElement codes = data.get(4);
+            if (codes instanceof RLPList) {
+                for (RLPElement element : (RLPList) codes) {
+                    if (Arrays.equals(h256(element.getRLPData()), codeHash)) {
+                        code = element.getRLPData();
+                    }
+                }
+            } else if (Arrays.equals(h256(codes.getRLPData()), codeHash)) {
+                code = codes.getRLPData();
+            }
+            if (code == null) {
+                return ContractCheck.INVALID;
+            }
+        }
+
+        InternalVmType vm = isJar(code) ? InternalVmType.AVM : InternalVmType.FVM;
+        byte[] root = account.getStateRoot();
+        Block pivot = manager.getPivot();
+        byte[] finalCode = code;
+        scheduled.add(
+                () -> {
+                    if (finalCode != null) {
+                        chain.getRepository()
+                                .saveIndexedContractInformation(
+                                        address,
+                                        ByteArrayWrapper.wrap(codeHash),
+                                        ByteArrayWrapper.wrap(pivot.getHash()),
+                                        vm,
+                                        true);
+                    }
+
+                    if (!externalStorage) {
+                        inlineStorage.add(address);
+                    }
+
+                    if (vm == InternalVmType.AVM) {
+                        addIfMissing(
+                                DatabaseType.GRAPH,
+                                ByteUtil.xorAlignRight(
+                                        root, AionContractDetailsImpl.graphSubKey(address)),
+                                address);
+                    } else if (externalStorage
+                            && !Arrays.equals(root, ConstantUtil.EMPTY_TRIE_HASH)) {
+                        addStorageRoot(root, address);
+                    }
+                });
+        return ContractCheck.VALID;
+    }
+
+    /** Schedules the storage nodes of the contract that are missing starting from the root. */
+    private void addStorageRoot(byte[] root, AionAddress owner) {
+        for (ByteArrayWrapper missing : chain.getMissingStorageNodes(root, owner)) {
+            scheduler.add(new NodeKey(DatabaseType.STORAGE, missing, owner));
+        }
+    }
+
+    private void addIfMissing(DatabaseType type, byte[] key, AionAddress owner) {
+        if (chain.getTrieNode(key, type) == null) {
+            scheduler.add(new NodeKey(type, ByteArrayWrapper.wrap(key), owner));
+        }
+    }
+
+    /** Penalizes the peer and queues the key again to be requested from another peer. */
+    private void invalid(TrieNodeWrapper response, NodeKey key) {
+        log.debug("<fast-sync invalid-data key={} peer={}>", key, response.getDisplayId());
+        peerScores.recordInvalid(response.getPeerId());
+        scheduler.received(key);
+        scheduler.add(key);
+    }
+
+    private enum ContractCheck {
+        VALID,
+        INVALID,
+        // the contract is not part of the pivot state
+        ABSENT
+    }
+
+    private static boolean isJar(byte[] code) {
+        return code != null
+                && code.length >= JAR_MAGIC.length
+                && Arrays.equals(code, 0, JAR_MAGIC.length, JAR_MAGIC, 0, JAR_MAGIC.length);
+    }
+
+    /** Returns the next value in unsigned order or {@code null} on overflow. */
+    private static byte[] increment(byte[] value) {
+        byte[] next = Arrays.copyOf(value, value.length);
+        for (int i = next.length - 1; i >= 0; i--) {
+            if (++next[i] != 0) {
+                return next;
+            }
+        }
+        return null;
+    }
+}
@@ -11,7 +11,6 @@ import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.util.bytes.ByteUtil;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.sync.msg.ResponseBlocks;
-import org.aion.zero.impl.valid.BlockHeaderValidator;
 import org.slf4j.Logger;
 
 /**
@@ -25,7 +24,7 @@ public class TaskValidateAndAddBlocks implements Runnable {
     private final int peerId;
     private final String displayId;
     private final ResponseBlocks response;
-    private final BlockHeaderValidator blockHeaderValidator;
+    private final HeaderValidationStage headerValidation;
     private final BlockingQueue<BlocksWrapper> downloadedBlocks;
     private final Map<ByteArrayWrapper, Long> importedBlockHashes;
     private final Map<ByteArrayWrapper, ByteArrayWrapper> receivedBlockHashes;
@@ -35,7 +34,7 @@ public class TaskValidateAndAddBlocks implements Runnable {
             final int peerId,
             final String displayId,
             final ResponseBlocks response,
-            final BlockHeaderValidator blockHeaderValidator,
+            final HeaderValidationStage headerValidation,
             final BlockingQueue<BlocksWrapper> downloadedBlocks,
             final Map<ByteArrayWrapper, Long> importedBlockHashes,
             final Map<ByteArrayWrapper, ByteArrayWrapper> receivedBlockHashes,
@@ -43,7 +42,7 @@ public class TaskValidateAndAddBlocks implements Runnable {
         this.peerId = peerId;
         this.displayId = displayId;
         this.response = response;
-        this.blockHeaderValidator = blockHeaderValidator;
+        this.headerValidation = headerValidation;
         this.downloadedBlocks = downloadedBlocks;
         this.importedBlockHashes = importedBlockHashes;
         this.receivedBlockHashes = receivedBlockHashes;
@@ -66,36 +65,59 @@ public class TaskValidateAndAddBlocks implements Runnable {
                     response.getBlocks().size());
         }
 
+        // the rules are checked in parallel for the headers that are not already known
+        List<Block> blocks = response.getBlocks();
+        boolean[] known = new boolean[blocks.size()];
+        List<BlockHeader> unknown = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            ByteArrayWrapper hash = blocks.get(i).getHashWrapper();
+            known[i] =
+                    importedBlockHashes.containsKey(hash) // exclude imported
+                            || receivedBlockHashes.containsKey(hash); // exclude known hashes
+            if (!known[i]) {
+                unknown.add(blocks.get(i).getHeader());
+            }
+        }
+
+        // ignore batch if any invalidated header
+        // TODO: we could do partial evaluations here (as per fast sync specs)
+        int invalid;
+        try {
+            invalid = headerValidation.findFirstInvalid(unknown);
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while validating blocks from peer={}.", displayId);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (invalid != -1) {
+            BlockHeader invalidHeader = unknown.get(invalid);
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "<invalid-header num={} hash={} from peer={}/{}>",
+                        invalidHeader.getNumber(),
+                        invalidHeader.getHash(),
+                        displayId,
+                        peerId);
+            }
+            if (log.isTraceEnabled()) {
+                log.debug("<invalid-header: {}>", invalidHeader.toString());
+            }
+            return;
+        }
+
         List<Block> filtered = new ArrayList<>();
         List<ByteArrayWrapper> batchHashes = new ArrayList<>();
 
         BlockHeader currentHeader, previousHeader = null;
-        for (Block currentBlock : response.getBlocks()) {
-            ByteArrayWrapper hash = currentBlock.getHashWrapper();
-            if (importedBlockHashes.containsKey(hash) // exclude imported
-                    || receivedBlockHashes.containsKey(hash)) { // exclude known hashes
+        for (int i = 0; i < blocks.size(); i++) {
+            Block currentBlock = blocks.get(i);
+            if (known[i]) {
                 previousHeader = currentBlock.getHeader();
                 continue;
             }
+            ByteArrayWrapper hash = currentBlock.getHashWrapper();
             currentHeader = currentBlock.getHeader();
 
-            // ignore batch if any invalidated header
-            // TODO: we could do partial evaluations here (as per fast sync specs)
-            if (!this.blockHeaderValidator.validate(currentHeader, log)) {
-                if (log.isDebugEnabled()) {
-                    log.debug(
-                            "<invalid-header num={} hash={} from peer={}/{}>",
-                            currentHeader.getNumber(),
-                            currentHeader.getHash(),
-                            displayId,
-                            peerId);
-                }
-                if (log.isTraceEnabled()) {
-                    log.debug("<invalid-header: {}>", currentHeader.toString());
-                }
-                return;
-            }
-
             // ignore batch if not ordered correctly
             if (previousHeader != null
                     && (currentHeader.getNumber() != (previousHeader.getNumber() - 1)
@@ -0,0 +1,289 @@
+package org.aion.zero.impl.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.aion.types.AionAddress;
+import org.aion.util.types.ByteArrayWrapper;
+
+/**
+ * Keeps track of the trie data that must be retrieved during fast sync and assigns it to peers.
+ * Each key is requested from at most one peer at a time. Requests without a response after {@link
+ * #REQUEST_TIMEOUT_NANOS} are released by {@link #expire(long)} so that they can be scheduled
+ * again.
+ *
+ * <p>The requests sent to a peer within a second are capped, since the receiving side drops the
+ * requests exceeding its rate limit for the route.
+ *
+ * @implNote This resource is thread safe.
+ */
+final class TrieDataScheduler {
+
+    /** Requests without a response after this time are released. */
+    static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The order in which the databases are served. The contract data is requested first, which
+     * keeps the number of contracts with incomplete storage small.
+     */
+    private static final DatabaseType[] PRIORITY = {
+        DatabaseType.DETAILS, DatabaseType.GRAPH, DatabaseType.STORAGE, DatabaseType.STATE
+    };
+
+    private final int maxRequestsPerSecond;
+    // the keys map to themselves to allow retrieving the attached owner
+    private final Map<DatabaseType, LinkedHashMap<NodeKey, NodeKey>> queued =
+            new EnumMap<>(DatabaseType.class);
+    private final Map<NodeKey, Request> outstanding = new HashMap<>();
+    private final Map<Integer, PeerRequests> peers = new HashMap<>();
+
+    /**
+     * @param maxRequestsPerSecond the maximum number of requests assigned to a peer per second
+     */
+    TrieDataScheduler(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        for (DatabaseType type : PRIORITY) {
+            queued.put(type, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Adds the given key to the ones waiting to be requested.
+     *
+     * @return {@code true} if the key was added, {@code false} when it is already queued or
+     *     requested
+     */
+    synchronized boolean add(NodeKey key) {
+        if (outstanding.containsKey(key)) {
+            return false;
+        }
+        return queued.get(key.type).putIfAbsent(key, key) == null;
+    }
+
+    /**
+     * Returns the pending key of the given type, i.e. queued or requested, with the given value.
+     * Used to recover the information attached to a key when its data is received.
+     *
+     * @return the pending key or {@code null} when the key is not pending
+     */
+    synchronized NodeKey getPending(DatabaseType type, ByteArrayWrapper key) {
+        NodeKey lookup = new NodeKey(type, key, null);
+        Request request = outstanding.get(lookup);
+        if (request != null) {
+            return request.key;
+        }
+        return queued.get(type).get(lookup);
+    }
+
+    /**
+     * Returns a key of the given type that is requested from the given peer, or {@code null} if
+     * there is none. Used for responses that do not echo the requested key.
+     */
+    synchronized NodeKey getOutstanding(int peerId, DatabaseType type) {
+        for (Request request : outstanding.values()) {
+            if (request.peerId == peerId && request.key.type == type) {
+                return request.key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects the keys to be requested from the given peer and marks them as requested. The
+     * selection is limited by the rate of requests accepted by the peer and the given number of
+     * outstanding requests.
+     *
+     * @param peerId the peer that will receive the requests
+     * @param maxOutstanding the maximum number of requests waiting for a response from the peer
+     * @param now the current time in nanoseconds
+     * @return the keys to be requested, possibly empty
+     */
+    synchronized List<NodeKey> next(int peerId, int maxOutstanding, long now) {
+        PeerRequests peer = peers.computeIfAbsent(peerId, id -> new PeerRequests(now));
+        if (now - peer.windowStart >= RATE_WINDOW_NANOS) {
+            peer.windowStart = now;
+            peer.sentInWindow = 0;
+        }
+
+        int available =
+                Math.min(
+                        maxRequestsPerSecond - peer.sentInWindow,
+                        maxOutstanding - peer.outstanding);
+        if (available <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<NodeKey> selected = new ArrayList<>(available);
+        for (DatabaseType type : PRIORITY) {
+            Iterator<NodeKey> it = queued.get(type).keySet().iterator();
+            while (selected.size() < available && it.hasNext()) {
+                NodeKey key = it.next();
+                it.remove();
+                outstanding.put(key, new Request(key, peerId, now));
+                selected.add(key);
+            }
+        }
+
+        peer.sentInWindow += selected.size();
+        peer.outstanding += selected.size();
+        return selected;
+    }
+
+    /**
+     * Marks the data for the given key as received. The key is no longer requested or queued
+     * regardless of the peer that delivered it, since the data is validated against its key.
+     *
+     * @return {@code true} if the key was pending, {@code false} otherwise
+     */
+    synchronized boolean received(NodeKey key) {
+        Request request = outstanding.remove(key);
+        if (request != null) {
+            release(request.peerId);
+            return true;
+        }
+        return queued.get(key.type).remove(key) != null;
+    }
+
+    /**
+     * Releases the requests made before {@code now - }{@link #REQUEST_TIMEOUT_NANOS}.
+     *
+     * @param now the current time in nanoseconds
+     * @return the released keys, which are no longer pending
+     */
+    synchronized List<NodeKey> expire(long now) {
+        List<NodeKey> expired = new ArrayList<>();
+        Iterator<Request> it = outstanding.values().iterator();
+        while (it.hasNext()) {
+            Request request = it.next();
+            if (now - request.time > REQUEST_TIMEOUT_NANOS) {
+                it.remove();
+                release(request.peerId);
+                expired.add(request.key);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Stops tracking the peers that are not in the given collection and queues their outstanding
+     * requests again.
+     *
+     * @param active the identifiers of the currently active peers
+     */
+    synchronized void retainPeers(Collection<Integer> active) {
+        peers.keySet().retainAll(active);
+
+        Iterator<Request> it = outstanding.values().iterator();
+        while (it.hasNext()) {
+            Request request = it.next();
+            if (!peers.containsKey(request.peerId)) {
+                it.remove();
+                queued.get(request.key.type).putIfAbsent(request.key, request.key);
+            }
+        }
+    }
+
+    /** Indicates whether there are no keys waiting to be requested or for a response. */
+    synchronized boolean isIdle() {
+        if (!outstanding.isEmpty()) {
+            return false;
+        }
+        for (LinkedHashMap<NodeKey, NodeKey> keys : queued.values()) {
+            if (!keys.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the number of keys waiting to be requested. */
+    synchronized int getQueuedCount() {
+        int count = 0;
+        for (LinkedHashMap<NodeKey, NodeKey> keys : queued.values()) {
+            count += keys.size();
+        }
+        return count;
+    }
+
+    /** Returns the number of keys waiting for a response. */
+    synchronized int getOutstandingCount() {
+        return outstanding.size();
+    }
+
+    private void release(int peerId) {
+        PeerRequests peer = peers.get(peerId);
+        if (peer != null && peer.outstanding > 0) {
+            peer.outstanding--;
+        }
+    }
+
+    /**
+     * Identifies the data to be retrieved by its database and key. The contract owning storage and
+     * object graph entries is attached to the key, since it is required to validate the data but
+     * is not part of the request.
+     */
+    static final class NodeKey {
+        final DatabaseType type;
+        final ByteArrayWrapper key;
+        final AionAddress owner;
+
+        NodeKey(DatabaseType type, ByteArrayWrapper key, AionAddress owner) {
+            this.type = Objects.requireNonNull(type);
+            this.key = Objects.requireNonNull(key);
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            NodeKey other = (NodeKey) o;
+            return type == other.type && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, key);
+        }
+
+        @Override
+        public String toString() {
+            return type + ":" + key;
+        }
+    }
+
+    private static final class Request {
+        final NodeKey key;
+        final int peerId;
+        final long time;
+
+        Request(NodeKey key, int peerId, long time) {
+            this.key = key;
+            this.peerId = peerId;
+            this.time = time;
+        }
+    }
+
+    private static final class PeerRequests {
+        long windowStart;
+        int sentInWindow = 0;
+        int outstanding = 0;
+
+        PeerRequests(long windowStart) {
+            this.windowStart = windowStart;
+        }
+    }
+}
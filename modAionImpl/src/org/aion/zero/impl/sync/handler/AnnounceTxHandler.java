@@ -0,0 +1,48 @@
+package org.aion.zero.impl.sync.handler;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.AnnounceTx;
+import org.aion.zero.impl.tx.TxGossip;
+import org.slf4j.Logger;
+
+/** Handler for transaction hashes announced by peers. */
+public final class AnnounceTxHandler extends Handler {
+
+    private final Logger log;
+
+    private final TxGossip txGossip;
+
+    private final IP2pMgr p2pMgr;
+
+    private final boolean isSyncOnlyNode;
+
+    public AnnounceTxHandler(
+            final Logger _log,
+            final TxGossip _txGossip,
+            final IP2pMgr _p2pMgr,
+            final boolean isSyncOnlyNode) {
+        super(Ver.V0, Ctrl.SYNC, Act.ANNOUNCE_TX);
+        this.log = _log;
+        this.txGossip = _txGossip;
+        this.p2pMgr = _p2pMgr;
+        this.isSyncOnlyNode = isSyncOnlyNode;
+    }
+
+    @Override
+    public void receive(int _nodeIdHashcode, String _displayId, final byte[] _msgBytes) {
+        if (isSyncOnlyNode) return;
+
+        AnnounceTx msg = AnnounceTx.decode(_msgBytes);
+        if (msg == null) {
+            p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            log.debug("<AnnounceTxHandler decode-error node={}>", _displayId);
+            return;
+        }
+
+        txGossip.onAnnounce(_nodeIdHashcode, _displayId, msg.getTxHashes());
+    }
+}
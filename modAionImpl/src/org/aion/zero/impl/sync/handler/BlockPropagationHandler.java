@@ -1,22 +1,39 @@
 package org.aion.zero.impl.sync.handler;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.base.AionTransaction;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
 import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.zero.impl.pendingState.AionPendingStateImpl;
 import org.aion.zero.impl.core.ImportResult;
 import org.aion.zero.impl.valid.BlockHeaderValidator;
+import org.aion.p2p.INode;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.config.CfgAion;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.SyncStats;
 import org.aion.zero.impl.sync.msg.BroadcastNewBlock;
+import org.aion.zero.impl.sync.msg.CompactBlock;
+import org.aion.zero.impl.sync.msg.RequestBlockTxs;
 import org.aion.zero.impl.sync.msg.ResStatus;
+import org.aion.zero.impl.sync.msg.ResponseBlockTxs;
 import org.aion.zero.impl.sync.statistics.BlockType;
+import org.aion.zero.impl.types.BlockUtil;
 import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 
@@ -31,9 +48,40 @@ public class BlockPropagationHandler {
         DROPPED, // block was invalid, drop no propagation
         PROPAGATED, // block was propagated, but was not connected
         CONNECTED, // block was ONLY connected, not propagated
-        PROP_CONNECTED // block propagated and connected
+        PROP_CONNECTED, // block propagated and connected
+        REQUESTED, // missing transactions of a compact block were requested
+        IMPORTING // block passed the header checks and is imported in the background
     }
 
+    /** A compact block waiting for the transactions requested from the peer that sent it. */
+    private static final class PartialBlock {
+        final int nodeId;
+        final BlockHeader header;
+        final AionTransaction[] txs;
+        final int[] missing;
+        final long requestedAt = System.currentTimeMillis();
+
+        PartialBlock(int nodeId, BlockHeader header, AionTransaction[] txs, int[] missing) {
+            this.nodeId = nodeId;
+            this.header = header;
+            this.txs = txs;
+            this.missing = missing;
+        }
+
+        boolean isFullRequest() {
+            return missing.length == txs.length;
+        }
+    }
+
+    // the number of partial blocks and of relayed blocks kept for compact block relay
+    private static final int COMPACT_CACHE_SIZE = 32;
+
+    // the time after which the transactions of a compact block can be requested from another peer
+    private static final long REQUEST_TIMEOUT = 3_000;
+
+    // the number of relayed blocks waiting for their import before the handler imports them
+    private static final int RELAY_QUEUE_SIZE = 16;
+
     /** Connection to blockchain */
     private IAionBlockchain blockchain;
 
@@ -56,6 +104,18 @@ public class BlockPropagationHandler {
 
     private final AionPendingStateImpl pendingState;
 
+    /** Peers that sent compact block messages and therefore do not need full blocks. */
+    private final Set<Integer> compactPeers = ConcurrentHashMap.newKeySet();
+
+    /** Blocks relayed recently, used to answer requests for their transactions. */
+    private final Map<ByteArrayWrapper, Block> relayedBlocks;
+
+    /** Compact blocks waiting for their missing transactions. */
+    private final Map<ByteArrayWrapper, PartialBlock> partialBlocks;
+
+    /** Imports the blocks relayed after the header checks, {@code null} when disabled. */
+    private final ThreadPoolExecutor relayImporter;
+
     public BlockPropagationHandler(
             final int cacheSize,
             final IAionBlockchain blockchain,
@@ -65,6 +125,32 @@ public class BlockPropagationHandler {
             final boolean isSyncOnlyNode,
             final byte apiVersion,
             final AionPendingStateImpl pendingState) {
+        this(
+                cacheSize,
+                blockchain,
+                syncStats,
+                p2pManager,
+                headerValidator,
+                isSyncOnlyNode,
+                apiVersion,
+                pendingState,
+                false);
+    }
+
+    /**
+     * @param fastRelay when {@code true}, blocks extending the top of the chain are relayed once
+     *     their header is checked against the stored parent, and imported in the background
+     */
+    public BlockPropagationHandler(
+            final int cacheSize,
+            final IAionBlockchain blockchain,
+            final SyncStats syncStats,
+            final IP2pMgr p2pManager,
+            BlockHeaderValidator headerValidator,
+            final boolean isSyncOnlyNode,
+            final byte apiVersion,
+            final AionPendingStateImpl pendingState,
+            final boolean fastRelay) {
         /*
          * Size of the cache maintained within the map, a lower cacheSize
          * saves space, but indicates we may "forget" about a block sooner.
@@ -75,6 +161,8 @@ public class BlockPropagationHandler {
          * all accesses to cacheMap are guarded by instance
          */
         this.cacheMap = new LRUMap<>(cacheSize);
+        this.relayedBlocks = new LRUMap<>(COMPACT_CACHE_SIZE);
+        this.partialBlocks = new LRUMap<>(COMPACT_CACHE_SIZE);
 
         // the expectation is that we will not have as many peers as we have blocks
         this.blockchain = blockchain;
@@ -89,6 +177,36 @@ public class BlockPropagationHandler {
         this.isSyncOnlyNode = isSyncOnlyNode;
         this.apiVersion = apiVersion;
         this.pendingState = pendingState;
+
+        if (fastRelay) {
+            relayImporter =
+                    new ThreadPoolExecutor(
+                            1,
+                            1,
+                            0L,
+                            TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(RELAY_QUEUE_SIZE),
+                            r -> {
+                                Thread t = new Thread(r, "sync-relay-import");
+                                t.setDaemon(true);
+                                return t;
+                            },
+                            // the handler imports the block itself when the queue is full
+                            (r, e) -> {
+                                if (!e.isShutdown()) {
+                                    r.run();
+                                }
+                            });
+        } else {
+            relayImporter = null;
+        }
+    }
+
+    /** Stops the background import of relayed blocks. */
+    public void shutdown() {
+        if (relayImporter != null) {
+            relayImporter.shutdownNow();
+        }
     }
 
     // assumption here is that blocks propagated have unique hashes
@@ -100,8 +218,11 @@ public class BlockPropagationHandler {
             this.cacheMap.put(hashWrapped, true);
         }
 
-        this.p2pManager
-                .getActiveNodes()
+        Map<Integer, INode> activeNodes = this.p2pManager.getActiveNodes();
+        compactPeers.retainAll(activeNodes.keySet());
+        Msg full = new BroadcastNewBlock(block);
+        Msg compact = relay(block);
+        activeNodes
                 .values()
                 .forEach(
                         n -> {
@@ -112,8 +233,7 @@ public class BlockPropagationHandler {
                                                 + " to="
                                                 + n.getIdShort()
                                                 + ">");
-                            this.p2pManager.send(
-                                    n.getIdHash(), n.getIdShort(), new BroadcastNewBlock(block));
+                            sendNewBlock(n, full, compact);
                         });
     }
 
@@ -121,10 +241,172 @@ public class BlockPropagationHandler {
             final int nodeId, final String displayId, final Block block) {
         if (block == null) return PropStatus.DROPPED;
 
-        ByteArrayWrapper hashWrapped = block.getHashWrapper();
-
         if (!this.blockHeaderValidator.validate(block.getHeader(), log)) return PropStatus.DROPPED;
 
+        return processValidatedBlock(nodeId, displayId, block);
+    }
+
+    /**
+     * Reassembles a block received in compact form from the transactions in the pending state.
+     * Transactions that cannot be found locally are requested from the sender, and so are all the
+     * transactions when the reassembled block does not match its header.
+     */
+    public PropStatus processCompactBlock(
+            final int nodeId, final String displayId, final CompactBlock compactBlock) {
+        compactPeers.add(nodeId);
+        BlockHeader header = compactBlock.getBlockHeader();
+        ByteArrayWrapper hashWrapped = ByteArrayWrapper.wrap(header.getHash());
+
+        synchronized (this.cacheMap) {
+            if (this.cacheMap.get(hashWrapped) != null) {
+                return PropStatus.DROPPED;
+            }
+        }
+        synchronized (partialBlocks) {
+            PartialBlock pending = partialBlocks.get(hashWrapped);
+            if (pending != null
+                    && System.currentTimeMillis() - pending.requestedAt < REQUEST_TIMEOUT) {
+                return PropStatus.DROPPED;
+            }
+        }
+        if (!this.blockHeaderValidator.validate(header, log)) return PropStatus.DROPPED;
+
+        // index the local transactions by short id, ambiguous ids are treated as missing
+        Map<Long, AionTransaction> local = new HashMap<>();
+        for (AionTransaction tx : pendingState.getPoolAndCachedTransactions()) {
+            long id = CompactBlock.shortId(tx.getTransactionHash());
+            local.put(id, local.containsKey(id) ? null : tx);
+        }
+
+        long[] shortIds = compactBlock.getShortIds();
+        AionTransaction[] txs = new AionTransaction[shortIds.length];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shortIds.length; i++) {
+            txs[i] = local.get(shortIds[i]);
+            if (txs[i] == null) {
+                missing.add(i);
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "<compact-block node={} hash={} number={} txs={} missing={}>",
+                    displayId,
+                    hashWrapped,
+                    header.getNumber(),
+                    txs.length,
+                    missing.size());
+        }
+
+        if (missing.isEmpty()) {
+            Block block = BlockUtil.newBlockWithHeaderAndTransactions(header, Arrays.asList(txs));
+            if (block != null) {
+                return processValidatedBlock(nodeId, displayId, block);
+            }
+            return requestTxs(nodeId, displayId, new PartialBlock(nodeId, header, txs, all(txs)));
+        }
+        return requestTxs(
+                nodeId,
+                displayId,
+                new PartialBlock(
+                        nodeId, header, txs, missing.stream().mapToInt(i -> i).toArray()));
+    }
+
+    /** Sends the requested transactions of a recently relayed block. */
+    public void processBlockTxsRequest(
+            final int nodeId, final String displayId, final RequestBlockTxs request) {
+        compactPeers.add(nodeId);
+        ByteArrayWrapper hashWrapped = ByteArrayWrapper.wrap(request.getBlockHash());
+
+        Block block;
+        synchronized (relayedBlocks) {
+            block = relayedBlocks.get(hashWrapped);
+        }
+        if (block == null) {
+            block = blockchain.getBlockByHash(request.getBlockHash());
+        }
+        if (block == null) {
+            log.debug("<block-txs-request unknown block node={}>", displayId);
+            return;
+        }
+
+        List<AionTransaction> blockTxs = block.getTransactionsList();
+        List<AionTransaction> txs = new ArrayList<>(request.getIndexes().length);
+        for (int index : request.getIndexes()) {
+            if (index < 0 || index >= blockTxs.size()) {
+                p2pManager.errCheck(nodeId, displayId);
+                return;
+            }
+            txs.add(blockTxs.get(index));
+        }
+        p2pManager.send(nodeId, displayId, new ResponseBlockTxs(request.getBlockHash(), txs));
+    }
+
+    /**
+     * Completes a compact block with the transactions received from the peer. If the block does
+     * not match its header, all of its transactions are requested once before it is dropped.
+     */
+    public PropStatus processBlockTxsResponse(
+            final int nodeId, final String displayId, final ResponseBlockTxs response) {
+        compactPeers.add(nodeId);
+        ByteArrayWrapper hashWrapped = ByteArrayWrapper.wrap(response.getBlockHash());
+
+        PartialBlock partial;
+        synchronized (partialBlocks) {
+            partial = partialBlocks.get(hashWrapped);
+            if (partial == null || partial.nodeId != nodeId) {
+                return PropStatus.DROPPED;
+            }
+            partialBlocks.remove(hashWrapped);
+        }
+
+        List<AionTransaction> received = response.getTransactions();
+        if (received.size() != partial.missing.length) {
+            p2pManager.errCheck(nodeId, displayId);
+            return PropStatus.DROPPED;
+        }
+        for (int i = 0; i < partial.missing.length; i++) {
+            partial.txs[partial.missing[i]] = received.get(i);
+        }
+
+        Block block =
+                BlockUtil.newBlockWithHeaderAndTransactions(
+                        partial.header, Arrays.asList(partial.txs));
+        if (block != null) {
+            return processValidatedBlock(nodeId, displayId, block);
+        }
+        if (partial.isFullRequest()) {
+            p2pManager.errCheck(nodeId, displayId);
+            return PropStatus.DROPPED;
+        }
+        // fall back to the full list of transactions
+        return requestTxs(
+                nodeId,
+                displayId,
+                new PartialBlock(nodeId, partial.header, partial.txs, all(partial.txs)));
+    }
+
+    private PropStatus requestTxs(int nodeId, String displayId, PartialBlock partial) {
+        byte[] hash = partial.header.getHash();
+        synchronized (partialBlocks) {
+            partialBlocks.put(ByteArrayWrapper.wrap(hash), partial);
+        }
+        p2pManager.send(nodeId, displayId, new RequestBlockTxs(hash, partial.missing));
+        return PropStatus.REQUESTED;
+    }
+
+    private static int[] all(AionTransaction[] txs) {
+        int[] indexes = new int[txs.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    private PropStatus processValidatedBlock(
+            final int nodeId, final String displayId, final Block block) {
+        ByteArrayWrapper hashWrapped = block.getHashWrapper();
+
         // guarantees if multiple requests of same block appears, only one goes through
         synchronized (this.cacheMap) {
             if (this.cacheMap.get(hashWrapped) != null) {
@@ -137,7 +419,59 @@ public class BlockPropagationHandler {
             this.cacheMap.put(hashWrapped, true);
         }
 
-        // process
+        if (relayImporter != null
+                && isNearTop(block)
+                && blockchain.isValidForRelay(block.getHeader())) {
+            // relay first, the import continues in the background
+            boolean sent = send(block, nodeId);
+            relayImporter.execute(() -> importRelayedBlock(nodeId, displayId, block));
+            return sent ? PropStatus.PROPAGATED : PropStatus.IMPORTING;
+        }
+
+        ImportResult result = importBlock(displayId, block);
+
+        // send
+        boolean sent = result.isValid() && send(block, nodeId);
+
+        pushStatus(nodeId, block, result);
+
+        // process resulting state
+        if (sent && result.isSuccessful()) return PropStatus.PROP_CONNECTED;
+
+        if (result.isSuccessful()) return PropStatus.CONNECTED;
+
+        if (sent) return PropStatus.PROPAGATED;
+
+        // gets dropped when the result is not valid
+        return PropStatus.DROPPED;
+    }
+
+    /** Only the blocks that are not below the best block are relayed before their import. */
+    private boolean isNearTop(final Block block) {
+        return !blockchain.skipTryToConnect(block.getNumber())
+                && block.getNumber() >= blockchain.getBestBlock().getNumber();
+    }
+
+    /** Imports a block that was relayed before its import and penalizes the peer if invalid. */
+    private void importRelayedBlock(final int nodeId, final String displayId, final Block block) {
+        try {
+            ImportResult result = importBlock(displayId, block);
+            if (!result.isValid()) {
+                log.debug(
+                        "<relayed-block-invalid node={} hash={} number={} result={}>",
+                        displayId,
+                        block.getShortHash(),
+                        block.getNumber(),
+                        result);
+                p2pManager.errCheck(nodeId, displayId);
+            }
+            pushStatus(nodeId, block, result);
+        } catch (Exception e) {
+            log.error("<relayed-block-import failed hash=" + block.getShortHash() + ">", e);
+        }
+    }
+
+    private ImportResult importBlock(final String displayId, final Block block) {
         long t1 = System.currentTimeMillis();
         ImportResult result;
 
@@ -191,10 +525,11 @@ public class BlockPropagationHandler {
                         t2 - t1);
             }
         }
+        return result;
+    }
 
-        // send
-        boolean sent = result.isValid() && send(block, nodeId);
-
+    /** Notifies the peers with higher total difficulty when the block became the best block. */
+    private void pushStatus(final int nodeId, final Block block, final ImportResult result) {
         // notify higher td peers in order to limit the rebroadcast on delay of res status updating
         if (result.isBest()) {
             Block bestBlock = blockchain.getBestBlock();
@@ -225,16 +560,6 @@ public class BlockPropagationHandler {
                                 this.p2pManager.send(n.getIdHash(), n.getIdShort(), rs);
                             });
         }
-
-        // process resulting state
-        if (sent && result.isSuccessful()) return PropStatus.PROP_CONNECTED;
-
-        if (result.isSuccessful()) return PropStatus.CONNECTED;
-
-        if (sent) return PropStatus.PROPAGATED;
-
-        // gets dropped when the result is not valid
-        return PropStatus.DROPPED;
     }
 
     private boolean send(Block block, int nodeId) {
@@ -242,7 +567,11 @@ public class BlockPropagationHandler {
 
         // current proposal is to send to all peers with lower blockNumbers
         AtomicBoolean sent = new AtomicBoolean();
-        this.p2pManager.getActiveNodes().values().stream()
+        Map<Integer, INode> activeNodes = this.p2pManager.getActiveNodes();
+        compactPeers.retainAll(activeNodes.keySet());
+        Msg full = new BroadcastNewBlock(block);
+        Msg compact = relay(block);
+        activeNodes.values().stream()
                 .filter(n -> n.getIdHash() != nodeId)
                 // peer is within 5 blocks of the block we're about to send
                 .filter(
@@ -259,10 +588,28 @@ public class BlockPropagationHandler {
                                                 + " to-node="
                                                 + n.getIdShort()
                                                 + ">");
-                            this.p2pManager.send(
-                                    n.getIdHash(), n.getIdShort(), new BroadcastNewBlock(block));
+                            sendNewBlock(n, full, compact);
                             sent.getAndSet(true);
                         });
         return sent.get();
     }
+
+    /** Keeps the block available for transaction requests and returns its compact form. */
+    private Msg relay(Block block) {
+        synchronized (relayedBlocks) {
+            relayedBlocks.put(block.getHashWrapper(), block);
+        }
+        return CompactBlock.of(block);
+    }
+
+    /**
+     * Sends the compact form of the block, preceded by the full block for peers that were not seen
+     * using compact blocks yet, which includes peers running older kernels that ignore them.
+     */
+    private void sendNewBlock(INode node, Msg full, Msg compact) {
+        if (!compactPeers.contains(node.getIdHash())) {
+            this.p2pManager.send(node.getIdHash(), node.getIdShort(), full);
+        }
+        this.p2pManager.send(node.getIdHash(), node.getIdShort(), compact);
+    }
 }
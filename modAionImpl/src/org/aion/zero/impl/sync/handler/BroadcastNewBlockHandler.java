@@ -4,6 +4,7 @@ import org.aion.mcf.blockchain.Block;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.rlp.RLP;
 import org.aion.rlp.RLPList;
@@ -86,4 +87,16 @@ public final class BroadcastNewBlockHandler extends Handler {
             log.error("RLP decode error!", e);
         }
     }
+
+    /** New blocks are processed in the order in which they were received. */
+    @Override
+    public int getConcurrency() {
+        return 1;
+    }
+
+    /** Each peer may announce at most one new block per second. */
+    @Override
+    public int getMaxRequestsPerSecond() {
+        return P2pConstant.READ_MAX_RATE;
+    }
 }
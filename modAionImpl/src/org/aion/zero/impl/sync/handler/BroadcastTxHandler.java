@@ -15,6 +15,7 @@ import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.Ver;
 import org.aion.zero.impl.sync.Act;
 import org.aion.zero.impl.sync.msg.BroadcastTx;
+import org.aion.zero.impl.tx.TxGossip;
 import org.slf4j.Logger;
 
 /** @author chris handler for new transaction broadcasted from network */
@@ -26,6 +27,8 @@ public final class BroadcastTxHandler extends Handler {
 
     private final IP2pMgr p2pMgr;
 
+    private final TxGossip txGossip;
+
     private LinkedBlockingQueue<AionTransaction> txQueue;
 
     private ScheduledExecutorService ex;
@@ -36,11 +39,13 @@ public final class BroadcastTxHandler extends Handler {
             final Logger _log,
             final AionPendingStateImpl _pendingState,
             final IP2pMgr _p2pMgr,
+            final TxGossip _txGossip,
             final boolean isSyncOnlyNode) {
         super(Ver.V0, Ctrl.SYNC, Act.BROADCAST_TX);
         this.log = _log;
         this.pendingState = _pendingState;
         this.p2pMgr = _p2pMgr;
+        this.txGossip = _txGossip;
         this.txQueue = new LinkedBlockingQueue<>(50_000);
         this.isSyncOnlyNode = isSyncOnlyNode;
 
@@ -80,7 +85,9 @@ public final class BroadcastTxHandler extends Handler {
                 log.debug("<BroadcastTxHandler from: {} empty {}>", _displayId);
             }
 
-            for (AionTransaction tx : castRawTx(broadCastTx)) {
+            // skip the transactions already received from other peers
+            List<AionTransaction> txs = castRawTx(broadCastTx);
+            for (AionTransaction tx : txGossip.onReceived(_nodeIdHashcode, txs)) {
                 if (!txQueue.offer(tx)) {
                     log.debug("<BroadcastTxHandler txQueue full! {}>", _displayId);
                     break;
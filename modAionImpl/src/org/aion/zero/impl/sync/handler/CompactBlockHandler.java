@@ -0,0 +1,60 @@
+package org.aion.zero.impl.sync.handler;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.CompactBlock;
+import org.slf4j.Logger;
+
+/** Handler for new blocks broadcasted from network in compact form. */
+public final class CompactBlockHandler extends Handler {
+
+    private final Logger log;
+
+    private final BlockPropagationHandler propHandler;
+
+    private final IP2pMgr p2pMgr;
+
+    public CompactBlockHandler(
+            final Logger syncLog,
+            final BlockPropagationHandler propHandler,
+            final IP2pMgr _p2pMgr) {
+        super(Ver.V0, Ctrl.SYNC, Act.COMPACT_BLOCK);
+        this.log = syncLog;
+        this.propHandler = propHandler;
+        this.p2pMgr = _p2pMgr;
+    }
+
+    @Override
+    public void receive(int _nodeIdHashcode, String _displayId, final byte[] _msgBytes) {
+        CompactBlock compactBlock = CompactBlock.decode(_msgBytes);
+        if (compactBlock == null) {
+            p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            log.debug("<compact-block-handler decode-error node={}>", _displayId);
+            return;
+        }
+
+        try { // preventative try-catch: it's unlikely that exceptions can pass up to here
+            BlockPropagationHandler.PropStatus result =
+                    propHandler.processCompactBlock(_nodeIdHashcode, _displayId, compactBlock);
+
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "<compact-block-prop node={} number={} status={}>",
+                        _displayId,
+                        compactBlock.getBlockHeader().getNumber(),
+                        result.name());
+            }
+        } catch (Exception e) {
+            log.error("CompactBlockHandler exception!", e);
+        }
+    }
+
+    /** New blocks are processed in the order in which they were received. */
+    @Override
+    public int getConcurrency() {
+        return 1;
+    }
+}
@@ -1,24 +1,19 @@
 package org.aion.zero.impl.sync.handler;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
-import org.aion.mcf.blockchain.Block;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.util.bytes.ByteUtil;
-import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
 import org.aion.zero.impl.sync.SyncMgr;
 import org.aion.zero.impl.sync.msg.ReqBlocksBodies;
 import org.aion.zero.impl.sync.msg.ResBlocksBodies;
-import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 
 /** @author chris handler for request block bodies broadcasted from network */
@@ -34,9 +29,6 @@ public final class ReqBlocksBodiesHandler extends Handler {
 
     private final IP2pMgr p2pMgr;
 
-    private final Map<ByteArrayWrapper, byte[]> cache =
-            Collections.synchronizedMap(new LRUMap<>(512));
-
     private final boolean isSyncOnlyNode;
 
     public ReqBlocksBodiesHandler(
@@ -70,31 +62,10 @@ public final class ReqBlocksBodiesHandler extends Handler {
             // results
             List<byte[]> blockBodies = new ArrayList<>();
 
-            // read from cache, then block store
+            // read from the encoded block cache, then block store
             int out = 0;
-            for (byte[] hash : hashes) {
-
-                // ref for add.
-                byte[] blockBytesForadd;
-
-                byte[] blockBytes = cache.get(ByteArrayWrapper.wrap(hash));
-
-                // if cached , add.
-                if (blockBytes != null) {
-                    blockBytesForadd = blockBytes;
-                } else {
-                    Block block = blockchain.getBlockByHash(hash);
-
-                    if (block != null) {
-                        blockBytesForadd = block.getEncodedBody();
-                        cache.put(ByteArrayWrapper.wrap(hash), block.getEncodedBody());
-                    } else {
-                        // not found
-                        break;
-                    }
-                }
-
-                if ((out += blockBytesForadd.length) > P2pConstant.MAX_BODY_SIZE) {
+            for (byte[] body : blockchain.getListOfBodiesByHashes(hashes)) {
+                if ((out += body.length) > P2pConstant.MAX_BODY_SIZE) {
                     log.debug(
                             "<req-blocks-bodies-max-size-reach size={}/{}>",
                             out,
@@ -102,7 +73,7 @@ public final class ReqBlocksBodiesHandler extends Handler {
                     break;
                 }
 
-                blockBodies.add(blockBytesForadd);
+                blockBodies.add(body);
             }
 
             this.p2pMgr.send(_nodeIdHashcode, _displayId, new ResBlocksBodies(blockBodies));
@@ -129,4 +100,10 @@ public final class ReqBlocksBodiesHandler extends Handler {
             }
         }
     }
+
+    /** Requests are served from the database, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
 }
@@ -6,6 +6,7 @@ import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
@@ -71,4 +72,10 @@ public final class ReqBlocksHeadersHandler extends Handler {
                     _nodeIdHashcode);
         }
     }
+
+    /** Requests are served from the database, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
 }
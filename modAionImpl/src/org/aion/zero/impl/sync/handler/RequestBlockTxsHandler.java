@@ -0,0 +1,52 @@
+package org.aion.zero.impl.sync.handler;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.RequestBlockTxs;
+import org.slf4j.Logger;
+
+/** Handler for requests of the transactions of blocks relayed in compact form. */
+public final class RequestBlockTxsHandler extends Handler {
+
+    private final Logger log;
+
+    private final BlockPropagationHandler propHandler;
+
+    private final IP2pMgr p2pMgr;
+
+    public RequestBlockTxsHandler(
+            final Logger syncLog,
+            final BlockPropagationHandler propHandler,
+            final IP2pMgr _p2pMgr) {
+        super(Ver.V0, Ctrl.SYNC, Act.REQUEST_BLOCK_TXS);
+        this.log = syncLog;
+        this.propHandler = propHandler;
+        this.p2pMgr = _p2pMgr;
+    }
+
+    @Override
+    public void receive(int _nodeIdHashcode, String _displayId, final byte[] _msgBytes) {
+        RequestBlockTxs request = RequestBlockTxs.decode(_msgBytes);
+        if (request == null) {
+            p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            log.debug("<request-block-txs-handler decode-error node={}>", _displayId);
+            return;
+        }
+
+        try { // preventative try-catch: it's unlikely that exceptions can pass up to here
+            propHandler.processBlockTxsRequest(_nodeIdHashcode, _displayId, request);
+        } catch (Exception e) {
+            log.error("RequestBlockTxsHandler exception!", e);
+        }
+    }
+
+    /** Requests are served from memory or the database, so a small backlog is enough. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
+}
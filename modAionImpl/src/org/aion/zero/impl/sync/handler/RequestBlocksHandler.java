@@ -7,6 +7,7 @@ import org.aion.mcf.blockchain.Block;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
 import org.aion.p2p.V1Constants;
 import org.aion.p2p.Ver;
 import org.aion.util.conversions.Hex;
@@ -68,13 +69,13 @@ public final class RequestBlocksHandler extends Handler {
                             descending ? "DESC" : "ASC");
                 }
 
-                List<Block> blockList = null;
+                List<byte[]> blockList = null;
                 try {
                     // retrieve blocks from block store depending on requested order
                     if (descending) {
-                        blockList = chain.getBlocksByRange(start, start - count + 1);
+                        blockList = chain.getEncodedBlocksByRange(start, start - count + 1);
                     } else {
-                        blockList = chain.getBlocksByRange(start, start + count - 1);
+                        blockList = chain.getEncodedBlocksByRange(start, start + count - 1);
                     }
                 } catch (Exception e) {
                     this.log.error("<request-blocks value retrieval failed>", e);
@@ -83,7 +84,7 @@ public final class RequestBlocksHandler extends Handler {
                 if (blockList != null) {
                     // generate response with retrieved blocks
                     // TODO: check the message size and ensure that it fits predefined limits
-                    ResponseBlocks response = new ResponseBlocks(blockList);
+                    ResponseBlocks response = ResponseBlocks.fromEncoded(blockList);
                     // reply to request
                     this.p2p.send(peerId, displayId, response);
                 }
@@ -107,22 +108,25 @@ public final class RequestBlocksHandler extends Handler {
 
                 if (block != null) {
                     long start = block.getNumber();
-                    List<Block> blockList = null;
+                    List<byte[]> blockList = null;
                     try {
                         // retrieve blocks from block store depending on requested order
                         if (descending) {
-                            blockList = chain.getBlocksByRange(start, start - count + 1);
+                            blockList = chain.getEncodedBlocksByRange(start, start - count + 1);
                         } else {
-                            blockList = chain.getBlocksByRange(start, start + count - 1);
+                            blockList = chain.getEncodedBlocksByRange(start, start + count - 1);
                         }
                     } catch (Exception e) {
                         this.log.error("<request-blocks value retrieval failed>", e);
                     }
 
-                    if (blockList != null && blockList.contains(block)) {
+                    // the range starts with the requested block unless it is on a side chain
+                    if (blockList != null
+                            && !blockList.isEmpty()
+                            && Arrays.equals(blockList.get(0), block.getEncoded())) {
                         // generate response with retrieved blocks
                         // TODO: check the message size and ensure that it fits predefined limits
-                        ResponseBlocks response = new ResponseBlocks(blockList);
+                        ResponseBlocks response = ResponseBlocks.fromEncoded(blockList);
                         // reply to request
                         this.p2p.send(peerId, displayId, response);
                     } else {
@@ -150,4 +154,10 @@ public final class RequestBlocksHandler extends Handler {
             }
         }
     }
+
+    /** Requests are served from the database, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
 }
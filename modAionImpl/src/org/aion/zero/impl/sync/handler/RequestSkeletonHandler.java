@@ -0,0 +1,93 @@
+package org.aion.zero.impl.sync.handler;
+
+import java.util.Arrays;
+import java.util.List;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.V1Constants;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.blockchain.IAionBlockchain;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.RequestSkeleton;
+import org.aion.zero.impl.sync.msg.ResponseSkeleton;
+import org.slf4j.Logger;
+
+/** Handler for skeleton header requests from the network. */
+public final class RequestSkeletonHandler extends Handler {
+
+    private final Logger log;
+
+    private final IAionBlockchain chain;
+
+    private final IP2pMgr p2p;
+
+    private final boolean isSyncOnlyNode;
+
+    /**
+     * Constructor.
+     *
+     * @param log logger for reporting execution information
+     * @param chain the blockchain used by the application
+     * @param p2p peer manager used to submit messages
+     * @param isSyncOnlyNode indicates whether the requests are ignored
+     */
+    public RequestSkeletonHandler(
+            final Logger log,
+            final IAionBlockchain chain,
+            final IP2pMgr p2p,
+            final boolean isSyncOnlyNode) {
+        super(Ver.V1, Ctrl.SYNC, Act.REQUEST_SKELETON);
+        this.log = log;
+        this.chain = chain;
+        this.p2p = p2p;
+        this.isSyncOnlyNode = isSyncOnlyNode;
+    }
+
+    @Override
+    public void receive(int peerId, String displayId, final byte[] message) {
+        if (isSyncOnlyNode) {
+            return;
+        }
+
+        RequestSkeleton request = RequestSkeleton.decode(message);
+
+        if (request != null) {
+            int count =
+                    Math.min(
+                            request.getCount(), V1Constants.SKELETON_REQUEST_MAXIMUM_BATCH_SIZE);
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "<request-skeleton from-block={} count={} step={} peer={}>",
+                        request.getStart(),
+                        count,
+                        request.getStep(),
+                        displayId);
+            }
+
+            List<BlockHeader> headers =
+                    chain.getSkeletonHeaders(request.getStart(), request.getStep(), count);
+            p2p.send(peerId, displayId, new ResponseSkeleton(headers));
+        } else {
+            log.error(
+                    "<request-skeleton decode-error msg-bytes={} peer={}>",
+                    message == null ? 0 : message.length,
+                    displayId);
+
+            if (log.isTraceEnabled()) {
+                log.trace(
+                        "<request-skeleton decode-error for msg={} peer={}>",
+                        Arrays.toString(message),
+                        displayId);
+            }
+        }
+    }
+
+    /** Requests are served from the database, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
+}
@@ -4,10 +4,12 @@ import static org.aion.p2p.V1Constants.TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
 import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
@@ -63,6 +65,11 @@ public final class RequestTrieDataHandler extends Handler {
                 this.log.debug("<req-trie from-db={} key={} peer={}>", dbType, key, displayId);
             }
 
+            if (dbType == DatabaseType.DETAILS && limit != 1) {
+                sendContractDetails(peerId, displayId, key.toBytes(), limit);
+                return;
+            }
+
             byte[] value = null;
             try {
                 // retrieve from blockchain depending on db type
@@ -113,4 +120,43 @@ public final class RequestTrieDataHandler extends Handler {
             }
         }
     }
+
+    /**
+     * Replies to a request for contract details with a limit different from one, which enumerates
+     * the stored contracts. The details of the first contract with an address greater than or equal
+     * to the requested key in unsigned lexicographic order are sent as the main value, followed by
+     * the details of the next contracts as referenced nodes. No response is sent when there are no
+     * contracts in the requested range.
+     */
+    private void sendContractDetails(int peerId, String displayId, byte[] start, int limit) {
+        // check for internal limit on the request
+        if (limit <= 0 || limit > TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE) {
+            limit = TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+        }
+
+        Map<ByteArrayWrapper, byte[]> details;
+        try {
+            details = chain.getContractDetailsFrom(start, limit);
+        } catch (Exception e) {
+            this.log.error("<req-trie contract details retrieval failed>", e);
+            return;
+        }
+
+        Iterator<Map.Entry<ByteArrayWrapper, byte[]>> iterator = details.entrySet().iterator();
+        if (iterator.hasNext()) {
+            Map.Entry<ByteArrayWrapper, byte[]> first = iterator.next();
+            iterator.remove();
+            this.p2p.send(
+                    peerId,
+                    displayId,
+                    new ResponseTrieData(
+                            first.getKey(), first.getValue(), details, DatabaseType.DETAILS));
+        }
+    }
+
+    /** Requests are served from the database, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
 }
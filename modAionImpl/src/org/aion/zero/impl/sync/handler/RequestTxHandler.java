@@ -0,0 +1,55 @@
+package org.aion.zero.impl.sync.handler;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.RequestTx;
+import org.aion.zero.impl.tx.TxGossip;
+import org.slf4j.Logger;
+
+/** Handler for requests of transactions previously announced to peers. */
+public final class RequestTxHandler extends Handler {
+
+    private final Logger log;
+
+    private final TxGossip txGossip;
+
+    private final IP2pMgr p2pMgr;
+
+    private final boolean isSyncOnlyNode;
+
+    public RequestTxHandler(
+            final Logger _log,
+            final TxGossip _txGossip,
+            final IP2pMgr _p2pMgr,
+            final boolean isSyncOnlyNode) {
+        super(Ver.V0, Ctrl.SYNC, Act.REQUEST_TX);
+        this.log = _log;
+        this.txGossip = _txGossip;
+        this.p2pMgr = _p2pMgr;
+        this.isSyncOnlyNode = isSyncOnlyNode;
+    }
+
+    @Override
+    public void receive(int _nodeIdHashcode, String _displayId, final byte[] _msgBytes) {
+        if (isSyncOnlyNode) return;
+
+        RequestTx msg = RequestTx.decode(_msgBytes);
+        if (msg == null) {
+            p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            log.debug("<RequestTxHandler decode-error node={}>", _displayId);
+            return;
+        }
+
+        txGossip.onRequest(_nodeIdHashcode, _displayId, msg.getTxHashes());
+    }
+
+    /** Requests are served from memory, so a small backlog is enough to keep up. */
+    @Override
+    public int getQueueSize() {
+        return P2pConstant.REQUEST_ROUTE_QUEUE_SIZE;
+    }
+}
@@ -51,6 +51,7 @@ public final class ResBlocksBodiesHandler extends Handler {
         if (bodies == null) {
             log.error("<res-bodies decoder-error from {}, len: {]>", _displayId, _msgBytes.length);
             p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            syncMgr.getPeerScores().recordInvalid(_nodeIdHashcode);
             if (log.isTraceEnabled()) {
                 log.trace("res-bodies dump: {}", ByteUtil.toHexString(_msgBytes));
             }
@@ -59,9 +60,16 @@ public final class ResBlocksBodiesHandler extends Handler {
             this.syncMgr
                     .getSyncStats()
                     .updateResponseTime(_displayId, System.nanoTime(), RequestType.BODIES);
+            syncMgr.getPeerScores()
+                    .recordResponse(
+                            _nodeIdHashcode,
+                            RequestType.BODIES,
+                            _msgBytes.length,
+                            System.nanoTime());
 
             if (bodies.isEmpty()) {
                 p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+                syncMgr.getPeerScores().recordInvalid(_nodeIdHashcode);
                 log.error("<res-bodies-empty node={}>", _displayId);
             } else {
                 syncMgr.getSyncStats()
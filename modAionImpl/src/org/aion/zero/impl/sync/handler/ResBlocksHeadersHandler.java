@@ -51,6 +51,13 @@ public final class ResBlocksHeadersHandler extends Handler {
             this.syncMgr
                     .getSyncStats()
                     .updateResponseTime(_displayId, System.nanoTime(), RequestType.HEADERS);
+            this.syncMgr
+                    .getPeerScores()
+                    .recordResponse(
+                            _nodeIdHashcode,
+                            RequestType.HEADERS,
+                            _msgBytes.length,
+                            System.nanoTime());
 
             List<BlockHeader> headers = resHeaders.getHeaders();
             if (headers != null && headers.size() > 0) {
@@ -64,10 +71,12 @@ public final class ResBlocksHeadersHandler extends Handler {
                 this.syncMgr.validateAndAddHeaders(_nodeIdHashcode, _displayId, headers);
             } else {
                 p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+                this.syncMgr.getPeerScores().recordInvalid(_nodeIdHashcode);
                 this.log.error("<res-headers empty-headers node={} >", _displayId);
             }
         } else {
             // p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            this.syncMgr.getPeerScores().recordInvalid(_nodeIdHashcode);
             this.log.error(
                     "<res-headers decode-error msg-bytes={} node={}>",
                     _msgBytes.length,
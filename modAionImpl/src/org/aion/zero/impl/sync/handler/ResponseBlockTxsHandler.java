@@ -0,0 +1,60 @@
+package org.aion.zero.impl.sync.handler;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.msg.ResponseBlockTxs;
+import org.slf4j.Logger;
+
+/** Handler for the transactions completing blocks received in compact form. */
+public final class ResponseBlockTxsHandler extends Handler {
+
+    private final Logger log;
+
+    private final BlockPropagationHandler propHandler;
+
+    private final IP2pMgr p2pMgr;
+
+    public ResponseBlockTxsHandler(
+            final Logger syncLog,
+            final BlockPropagationHandler propHandler,
+            final IP2pMgr _p2pMgr) {
+        super(Ver.V0, Ctrl.SYNC, Act.RESPONSE_BLOCK_TXS);
+        this.log = syncLog;
+        this.propHandler = propHandler;
+        this.p2pMgr = _p2pMgr;
+    }
+
+    @Override
+    public void receive(int _nodeIdHashcode, String _displayId, final byte[] _msgBytes) {
+        ResponseBlockTxs response = ResponseBlockTxs.decode(_msgBytes);
+        if (response == null) {
+            p2pMgr.errCheck(_nodeIdHashcode, _displayId);
+            log.debug("<response-block-txs-handler decode-error node={}>", _displayId);
+            return;
+        }
+
+        try { // preventative try-catch: it's unlikely that exceptions can pass up to here
+            BlockPropagationHandler.PropStatus result =
+                    propHandler.processBlockTxsResponse(_nodeIdHashcode, _displayId, response);
+
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "<block-txs-prop node={} txs={} status={}>",
+                        _displayId,
+                        response.getTransactions().size(),
+                        result.name());
+            }
+        } catch (Exception e) {
+            log.error("ResponseBlockTxsHandler exception!", e);
+        }
+    }
+
+    /** Blocks are completed in the order in which their transactions were received. */
+    @Override
+    public int getConcurrency() {
+        return 1;
+    }
+}
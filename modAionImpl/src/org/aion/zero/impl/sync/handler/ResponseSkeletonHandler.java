@@ -0,0 +1,65 @@
+package org.aion.zero.impl.sync.handler;
+
+import java.util.Arrays;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.sync.SkeletonHeaderSync;
+import org.aion.zero.impl.sync.msg.ResponseSkeleton;
+import org.slf4j.Logger;
+
+/** Handler for skeleton header responses from the network. */
+public final class ResponseSkeletonHandler extends Handler {
+
+    private final Logger log;
+
+    private final SkeletonHeaderSync skeletonSync;
+
+    private final IP2pMgr p2pMgr;
+
+    /**
+     * Constructor.
+     *
+     * @param log logger for reporting execution information
+     * @param skeletonSync the skeleton sync that validates the headers and requests the gaps
+     * @param p2pMgr p2p manager that can check for errors with the peer identifiers
+     */
+    public ResponseSkeletonHandler(
+            final Logger log, final SkeletonHeaderSync skeletonSync, final IP2pMgr p2pMgr) {
+        super(Ver.V1, Ctrl.SYNC, Act.RESPONSE_SKELETON);
+        this.log = log;
+        this.skeletonSync = skeletonSync;
+        this.p2pMgr = p2pMgr;
+    }
+
+    @Override
+    public void receive(int peerId, String displayId, final byte[] message) {
+        ResponseSkeleton response = ResponseSkeleton.decode(message);
+
+        if (response != null) {
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "<response-skeleton size={} peer={}>",
+                        response.getHeaders().size(),
+                        displayId);
+            }
+            skeletonSync.validateAndAddSkeleton(
+                    peerId, displayId, response.getHeaders(), message.length);
+        } else {
+            p2pMgr.errCheck(peerId, displayId);
+            log.error(
+                    "<response-skeleton decode-error msg-bytes={} peer={}>",
+                    message == null ? 0 : message.length,
+                    displayId);
+
+            if (log.isTraceEnabled()) {
+                log.trace(
+                        "<response-skeleton decode-error for msg={} peer={}>",
+                        Arrays.toString(message),
+                        displayId);
+            }
+        }
+    }
+}
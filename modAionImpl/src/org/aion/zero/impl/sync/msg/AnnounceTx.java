@@ -0,0 +1,66 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+
+/**
+ * Announces the hashes of transactions available from the sender, which peers request with {@link
+ * RequestTx} if they do not have them yet.
+ */
+public final class AnnounceTx extends Msg {
+
+    public static final int HASH_SIZE = 32;
+
+    /** The maximum number of hashes in a message. */
+    public static final int MAX_HASHES = 4096;
+
+    private final List<byte[]> txHashes;
+
+    public AnnounceTx(final List<byte[]> _txHashes) {
+        super(Ver.V0, Ctrl.SYNC, Act.ANNOUNCE_TX);
+        this.txHashes = _txHashes;
+    }
+
+    /** @return the decoded message or {@code null} if the given bytes are not a valid encoding */
+    public static AnnounceTx decode(final byte[] _msgBytes) {
+        if (_msgBytes == null
+                || _msgBytes.length == 0
+                || _msgBytes.length % HASH_SIZE != 0
+                || _msgBytes.length / HASH_SIZE > MAX_HASHES) {
+            return null;
+        }
+
+        List<byte[]> txHashes = new ArrayList<>(_msgBytes.length / HASH_SIZE);
+        ByteBuffer bb = ByteBuffer.wrap(_msgBytes);
+        while (bb.hasRemaining()) {
+            byte[] txHash = new byte[HASH_SIZE];
+            bb.get(txHash);
+            txHashes.add(txHash);
+        }
+        return new AnnounceTx(txHashes);
+    }
+
+    public List<byte[]> getTxHashes() {
+        return this.txHashes;
+    }
+
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.TX;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteBuffer bb = ByteBuffer.allocate(this.txHashes.size() * HASH_SIZE);
+        for (byte[] txHash : this.txHashes) {
+            bb.put(txHash);
+        }
+        return bb.array();
+    }
+}
@@ -3,6 +3,7 @@ package org.aion.zero.impl.sync.msg;
 import org.aion.mcf.blockchain.Block;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
 import org.aion.p2p.Ver;
 import org.aion.rlp.RLP;
 import org.aion.zero.impl.sync.Act;
@@ -18,6 +19,11 @@ public final class BroadcastNewBlock extends Msg {
         this.block = __newblock;
     }
 
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.BLOCK;
+    }
+
     @Override
     public byte[] encode() {
         return this.block.getEncoded();
@@ -6,6 +6,7 @@ import org.aion.base.AionTransaction;
 import org.aion.base.TxUtil;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
 import org.aion.p2p.Ver;
 import org.aion.rlp.RLP;
 import org.aion.rlp.RLPElement;
@@ -22,6 +23,11 @@ public final class BroadcastTx extends Msg {
         this.txl = _txl;
     }
 
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.TX;
+    }
+
     /* (non-Javadoc)
      * @see org.aion.net.nio.IMsg#encode()
      */
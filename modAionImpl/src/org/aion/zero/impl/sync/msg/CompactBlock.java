@@ -0,0 +1,118 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import org.aion.base.AionTransaction;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.types.BlockUtil;
+
+/**
+ * New block announcement consisting of the block header and the short identifiers of its
+ * transactions. Receivers reassemble the block from the transactions they already have and
+ * request the missing ones with {@link RequestBlockTxs}.
+ */
+public final class CompactBlock extends Msg {
+
+    /** The number of bytes of the transaction hash used as short identifier. */
+    public static final int SHORT_ID_SIZE = 8;
+
+    private final BlockHeader header;
+    private final long[] shortIds;
+
+    /**
+     * Constructor for compact blocks.
+     *
+     * @param header the header of the block
+     * @param shortIds the short identifiers of the block transactions in their original order
+     */
+    public CompactBlock(final BlockHeader header, final long[] shortIds) {
+        super(Ver.V0, Ctrl.SYNC, Act.COMPACT_BLOCK);
+
+        // ensure input is not null
+        Objects.requireNonNull(header);
+        Objects.requireNonNull(shortIds);
+
+        this.header = header;
+        this.shortIds = shortIds;
+    }
+
+    /** Creates the compact form of the given block. */
+    public static CompactBlock of(final Block block) {
+        List<AionTransaction> txs = block.getTransactionsList();
+        long[] shortIds = new long[txs.size()];
+        for (int i = 0; i < shortIds.length; i++) {
+            shortIds[i] = shortId(txs.get(i).getTransactionHash());
+        }
+        return new CompactBlock(block.getHeader(), shortIds);
+    }
+
+    /** Returns the short identifier of the transaction with the given hash. */
+    public static long shortId(final byte[] txHash) {
+        return ByteBuffer.wrap(txHash).getLong();
+    }
+
+    /**
+     * Decodes a message into a compact block.
+     *
+     * @param message a {@code byte} array representing a compact block
+     * @return the decoded compact block or {@code null} when the message is not a valid encoding
+     */
+    public static CompactBlock decode(final byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        try {
+            RLPList list = (RLPList) RLP.decode2(message).get(0);
+            if (list.size() != 2) {
+                return null;
+            }
+
+            BlockHeader header = BlockUtil.newHeaderFromUnsafeSource((RLPList) list.get(0));
+            if (header == null) {
+                return null;
+            }
+
+            byte[] ids = list.get(1).getRLPData();
+            int count = ids == null ? 0 : ids.length / SHORT_ID_SIZE;
+            if (ids != null && ids.length % SHORT_ID_SIZE != 0) {
+                return null;
+            }
+            long[] shortIds = new long[count];
+            if (count > 0) {
+                ByteBuffer.wrap(ids).asLongBuffer().get(shortIds);
+            }
+            return new CompactBlock(header, shortIds);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public BlockHeader getBlockHeader() {
+        return header;
+    }
+
+    public long[] getShortIds() {
+        return shortIds;
+    }
+
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.BLOCK;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteBuffer ids = ByteBuffer.allocate(shortIds.length * SHORT_ID_SIZE);
+        ids.asLongBuffer().put(shortIds);
+        return RLP.encodeList(header.getEncoded(), RLP.encodeElement(ids.array()));
+    }
+}
@@ -2,6 +2,7 @@ package org.aion.zero.impl.sync.msg;
 
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
 import org.aion.p2p.Ver;
 import org.aion.zero.impl.sync.Act;
 
@@ -12,6 +13,11 @@ public final class ReqStatus extends Msg {
         super(Ver.V0, Ctrl.SYNC, Act.REQ_STATUS);
     }
 
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.CONTROL;
+    }
+
     @Override
     public byte[] encode() {
         return null;
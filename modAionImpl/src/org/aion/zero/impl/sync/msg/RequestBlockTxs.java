@@ -0,0 +1,94 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.zero.impl.sync.Act;
+
+/**
+ * Request for the transactions of a {@link CompactBlock} that could not be found locally. The
+ * transactions are sent back in a {@link ResponseBlockTxs} message.
+ */
+public final class RequestBlockTxs extends Msg {
+
+    private static final int HASH_SIZE = 32;
+
+    private final byte[] blockHash;
+    private final int[] indexes;
+
+    /**
+     * Constructor for block transaction requests.
+     *
+     * @param blockHash the hash of the block
+     * @param indexes the positions of the requested transactions in the block, in ascending order
+     */
+    public RequestBlockTxs(final byte[] blockHash, final int[] indexes) {
+        super(Ver.V0, Ctrl.SYNC, Act.REQUEST_BLOCK_TXS);
+
+        // ensure input is not null
+        Objects.requireNonNull(blockHash);
+        Objects.requireNonNull(indexes);
+
+        this.blockHash = blockHash;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Decodes a message into a block transaction request.
+     *
+     * @param message a {@code byte} array representing a block transaction request
+     * @return the decoded request or {@code null} when the message is not a valid encoding
+     */
+    public static RequestBlockTxs decode(final byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        try {
+            RLPList list = (RLPList) RLP.decode2(message).get(0);
+            if (list.size() != 2) {
+                return null;
+            }
+
+            byte[] hash = list.get(0).getRLPData();
+            byte[] encodedIndexes = list.get(1).getRLPData();
+            if (hash == null
+                    || hash.length != HASH_SIZE
+                    || encodedIndexes == null
+                    || encodedIndexes.length % Integer.BYTES != 0) {
+                return null;
+            }
+
+            int[] indexes = new int[encodedIndexes.length / Integer.BYTES];
+            ByteBuffer.wrap(encodedIndexes).asIntBuffer().get(indexes);
+            return new RequestBlockTxs(hash, indexes);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public byte[] getBlockHash() {
+        return blockHash;
+    }
+
+    public int[] getIndexes() {
+        return indexes;
+    }
+
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.BLOCK;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteBuffer encodedIndexes = ByteBuffer.allocate(indexes.length * Integer.BYTES);
+        encodedIndexes.asIntBuffer().put(indexes);
+        return RLP.encodeList(
+                RLP.encodeElement(blockHash), RLP.encodeElement(encodedIndexes.array()));
+    }
+}
@@ -0,0 +1,98 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.math.BigInteger;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPList;
+import org.aion.zero.impl.sync.Act;
+
+/**
+ * Request for a sparse set of main chain headers, called a skeleton, with the heights {@code
+ * start}, {@code start + step}, {@code start + 2 * step} and so on. The headers are sent back in a
+ * {@link ResponseSkeleton} message.
+ */
+public final class RequestSkeleton extends Msg {
+
+    private final long start;
+    private final int count;
+    private final int step;
+
+    /**
+     * Constructor for skeleton requests.
+     *
+     * @param start the height of the first requested header
+     * @param count the number of requested headers
+     * @param step the distance between the heights of consecutive headers
+     * @throws IllegalArgumentException when any of the parameters is not positive
+     */
+    public RequestSkeleton(final long start, final int count, final int step) {
+        super(Ver.V1, Ctrl.SYNC, Act.REQUEST_SKELETON);
+
+        if (start <= 0 || count <= 0 || step <= 0) {
+            throw new IllegalArgumentException(
+                    "Incorrect skeleton request start="
+                            + start
+                            + " count="
+                            + count
+                            + " step="
+                            + step);
+        }
+
+        this.start = start;
+        this.count = count;
+        this.step = step;
+    }
+
+    /**
+     * Decodes a message into a skeleton request.
+     *
+     * @param message a {@code byte} array representing a skeleton request
+     * @return the decoded request or {@code null} when the message is not a valid encoding
+     */
+    public static RequestSkeleton decode(final byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        try {
+            RLPList list = (RLPList) RLP.decode2(message).get(0);
+            if (list.size() != 3) {
+                return null;
+            }
+
+            long start = new BigInteger(1, list.get(0).getRLPData()).longValue();
+            int count = new BigInteger(1, list.get(1).getRLPData()).intValue();
+            int step = new BigInteger(1, list.get(2).getRLPData()).intValue();
+            if (start <= 0 || count <= 0 || step <= 0) {
+                return null;
+            }
+            return new RequestSkeleton(start, count, step);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] encode() {
+        return RLP.encodeList(
+                RLP.encode(start), // encodeLong has non-standard encoding
+                RLP.encodeInt(count),
+                RLP.encodeInt(step));
+    }
+
+    /** Returns the height of the first requested header. */
+    public long getStart() {
+        return start;
+    }
+
+    /** Returns the number of requested headers. */
+    public int getCount() {
+        return count;
+    }
+
+    /** Returns the distance between the heights of consecutive headers. */
+    public int getStep() {
+        return step;
+    }
+}
@@ -145,6 +145,11 @@ public final class RequestTrieData extends Msg {
      *       up to which to continue searching for referenced nodes.
      * </ul>
      *
+     * <p>For the {@link DatabaseType#DETAILS} database, a limit other than one requests the
+     * details of up to {@code limit} contracts (unbounded values are capped to the maximum batch
+     * size) with addresses starting from the given key. This allows the contracts to be
+     * enumerated during fast sync.
+     *
      * @return the maximum number of key-value pairs to be retrieved by the search inside the trie
      *     for referenced nodes
      */
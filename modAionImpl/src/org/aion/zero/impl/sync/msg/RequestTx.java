@@ -0,0 +1,61 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+
+/**
+ * Requests the transactions with the given hashes after they were announced with {@link
+ * AnnounceTx}. The transactions are sent back in a {@link BroadcastTx} message.
+ */
+public final class RequestTx extends Msg {
+
+    private final List<byte[]> txHashes;
+
+    public RequestTx(final List<byte[]> _txHashes) {
+        super(Ver.V0, Ctrl.SYNC, Act.REQUEST_TX);
+        this.txHashes = _txHashes;
+    }
+
+    /** @return the decoded message or {@code null} if the given bytes are not a valid encoding */
+    public static RequestTx decode(final byte[] _msgBytes) {
+        if (_msgBytes == null
+                || _msgBytes.length == 0
+                || _msgBytes.length % AnnounceTx.HASH_SIZE != 0
+                || _msgBytes.length / AnnounceTx.HASH_SIZE > AnnounceTx.MAX_HASHES) {
+            return null;
+        }
+
+        List<byte[]> txHashes = new ArrayList<>(_msgBytes.length / AnnounceTx.HASH_SIZE);
+        ByteBuffer bb = ByteBuffer.wrap(_msgBytes);
+        while (bb.hasRemaining()) {
+            byte[] txHash = new byte[AnnounceTx.HASH_SIZE];
+            bb.get(txHash);
+            txHashes.add(txHash);
+        }
+        return new RequestTx(txHashes);
+    }
+
+    public List<byte[]> getTxHashes() {
+        return this.txHashes;
+    }
+
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.TX;
+    }
+
+    @Override
+    public byte[] encode() {
+        ByteBuffer bb = ByteBuffer.allocate(this.txHashes.size() * AnnounceTx.HASH_SIZE);
+        for (byte[] txHash : this.txHashes) {
+            bb.put(txHash);
+        }
+        return bb.array();
+    }
+}
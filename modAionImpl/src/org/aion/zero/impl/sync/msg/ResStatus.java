@@ -3,6 +3,7 @@ package org.aion.zero.impl.sync.msg;
 import java.nio.ByteBuffer;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
 import org.aion.p2p.Ver;
 import org.aion.zero.impl.sync.Act;
 
@@ -148,6 +149,11 @@ public final class ResStatus extends Msg {
                 _latency);
     }
 
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.CONTROL;
+    }
+
     @Override
     public byte[] encode() {
         ByteBuffer bb = ByteBuffer.allocate(msgLen);
@@ -0,0 +1,98 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.aion.base.AionTransaction;
+import org.aion.base.TxUtil;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPElement;
+import org.aion.rlp.RLPList;
+import org.aion.zero.impl.sync.Act;
+
+/** Response to a {@link RequestBlockTxs} containing the requested transactions in order. */
+public final class ResponseBlockTxs extends Msg {
+
+    private static final int HASH_SIZE = 32;
+
+    private final byte[] blockHash;
+    private final List<AionTransaction> txs;
+
+    /**
+     * Constructor for block transaction responses.
+     *
+     * @param blockHash the hash of the block
+     * @param txs the requested transactions in the order of the request
+     */
+    public ResponseBlockTxs(final byte[] blockHash, final List<AionTransaction> txs) {
+        super(Ver.V0, Ctrl.SYNC, Act.RESPONSE_BLOCK_TXS);
+
+        // ensure input is not null
+        Objects.requireNonNull(blockHash);
+        Objects.requireNonNull(txs);
+
+        this.blockHash = blockHash;
+        this.txs = txs;
+    }
+
+    /**
+     * Decodes a message into a block transaction response.
+     *
+     * @param message a {@code byte} array representing a block transaction response
+     * @return the decoded response or {@code null} when the message is not a valid encoding
+     */
+    public static ResponseBlockTxs decode(final byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        try {
+            RLPList list = (RLPList) RLP.decode2(message).get(0);
+            if (list.size() != 2) {
+                return null;
+            }
+
+            byte[] hash = list.get(0).getRLPData();
+            if (hash == null || hash.length != HASH_SIZE) {
+                return null;
+            }
+
+            List<AionTransaction> txs = new ArrayList<>();
+            for (RLPElement encoded : (RLPList) list.get(1)) {
+                AionTransaction tx = TxUtil.decode(encoded.getRLPData());
+                if (tx == null) {
+                    return null;
+                }
+                txs.add(tx);
+            }
+            return new ResponseBlockTxs(hash, txs);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public byte[] getBlockHash() {
+        return blockHash;
+    }
+
+    public List<AionTransaction> getTransactions() {
+        return txs;
+    }
+
+    @Override
+    public SendPriority getPriority() {
+        return SendPriority.BLOCK;
+    }
+
+    @Override
+    public byte[] encode() {
+        byte[][] encodedTxs = new byte[txs.size()][];
+        for (int i = 0; i < encodedTxs.length; i++) {
+            encodedTxs[i] = txs.get(i).getEncoded();
+        }
+        return RLP.encodeList(RLP.encodeElement(blockHash), RLP.encodeList(encodedTxs));
+    }
+}
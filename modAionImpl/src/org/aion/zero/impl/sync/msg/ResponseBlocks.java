@@ -1,6 +1,7 @@
 package org.aion.zero.impl.sync.msg;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import org.aion.mcf.blockchain.Block;
@@ -20,7 +21,9 @@ import org.aion.zero.impl.types.BlockUtil;
  */
 public final class ResponseBlocks extends Msg {
 
+    // one of the two lists is set depending on how the message was created
     private final List<Block> blocks;
+    private final List<byte[]> encodedBlocks;
 
     /**
      * Constructor for block range responses.
@@ -32,12 +35,29 @@ public final class ResponseBlocks extends Msg {
      *     will not be utilized further.
      */
     public ResponseBlocks(final List<Block> blocks) {
+        // ensure input is not null
+        this(Objects.requireNonNull(blocks), null);
+    }
+
+    private ResponseBlocks(final List<Block> blocks, final List<byte[]> encodedBlocks) {
         super(Ver.V1, Ctrl.SYNC, Act.RESPONSE_BLOCKS);
+        this.blocks = blocks;
+        this.encodedBlocks = encodedBlocks;
+    }
 
+    /**
+     * Creates a block range response from block encodings, which are concatenated into the message
+     * without decoding and re-encoding the blocks.
+     *
+     * @param encodedBlocks the encodings of the blocks representing the response to a requested
+     *     range
+     * @return the block range response
+     */
+    public static ResponseBlocks fromEncoded(final List<byte[]> encodedBlocks) {
         // ensure input is not null
-        Objects.requireNonNull(blocks);
+        Objects.requireNonNull(encodedBlocks);
 
-        this.blocks = blocks;
+        return new ResponseBlocks(null, encodedBlocks);
     }
 
     /**
@@ -74,24 +94,38 @@ public final class ResponseBlocks extends Msg {
 
     @Override
     public byte[] encode() {
-        byte[][] toEncode = new byte[this.blocks.size()][];
-
-        int i = 0;
-        for (Block block : blocks) {
-            toEncode[i] = block.getEncoded();
-            i++;
-        }
-
-        return RLP.encodeList(toEncode);
+        List<byte[]> encodings = getEncodedBlocks();
+        return RLP.encodeList(encodings.toArray(new byte[encodings.size()][]));
     }
 
     /**
      * Returns the list of blocks representing the response to a requested block range.
      *
      * @return the list of blocks representing the response to a requested block range
+     * @implNote The blocks of a response created from encodings are decoded on each call.
      */
     public List<Block> getBlocks() {
-        return blocks;
+        if (blocks != null) {
+            return blocks;
+        }
+
+        List<Block> decoded = new ArrayList<>(encodedBlocks.size());
+        for (byte[] encoding : encodedBlocks) {
+            decoded.add(BlockUtil.newBlockFromRlp(encoding));
+        }
+        return decoded;
+    }
+
+    private List<byte[]> getEncodedBlocks() {
+        if (encodedBlocks != null) {
+            return encodedBlocks;
+        }
+
+        List<byte[]> encodings = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            encodings.add(block.getEncoded());
+        }
+        return encodings;
     }
 
     @Override
@@ -103,11 +137,29 @@ public final class ResponseBlocks extends Msg {
             return false;
         }
         ResponseBlocks that = (ResponseBlocks) o;
-        return Objects.equals(blocks, that.blocks);
+        if (blocks != null && that.blocks != null) {
+            return Objects.equals(blocks, that.blocks);
+        }
+
+        List<byte[]> encodings = getEncodedBlocks();
+        List<byte[]> thatEncodings = that.getEncodedBlocks();
+        if (encodings.size() != thatEncodings.size()) {
+            return false;
+        }
+        for (int i = 0; i < encodings.size(); i++) {
+            if (!Arrays.equals(encodings.get(i), thatEncodings.get(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(blocks);
+        int result = 1;
+        for (byte[] encoding : getEncodedBlocks()) {
+            result = 31 * result + Arrays.hashCode(encoding);
+        }
+        return result;
     }
 }
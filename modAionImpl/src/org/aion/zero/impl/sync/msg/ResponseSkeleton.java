@@ -0,0 +1,81 @@
+package org.aion.zero.impl.sync.msg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.rlp.RLPElement;
+import org.aion.rlp.RLPList;
+import org.aion.zero.impl.sync.Act;
+import org.aion.zero.impl.types.BlockUtil;
+
+/**
+ * Response message to a {@link RequestSkeleton}. Contains the requested headers in ascending order
+ * of their heights, stopping at the first height above the best block of the sender.
+ */
+public final class ResponseSkeleton extends Msg {
+
+    private final List<BlockHeader> headers;
+
+    /**
+     * Constructor for skeleton responses.
+     *
+     * @param headers the headers of the skeleton in ascending order of their heights
+     */
+    public ResponseSkeleton(final List<BlockHeader> headers) {
+        super(Ver.V1, Ctrl.SYNC, Act.RESPONSE_SKELETON);
+
+        // ensure input is not null
+        Objects.requireNonNull(headers);
+
+        this.headers = headers;
+    }
+
+    /**
+     * Decodes a message into a skeleton response.
+     *
+     * @param message a {@code byte} array representing a skeleton response
+     * @return the decoded response or {@code null} when the message is not a valid encoding
+     */
+    public static ResponseSkeleton decode(final byte[] message) {
+        if (message == null || message.length == 0) {
+            return null;
+        }
+        try {
+            RLPList list = (RLPList) RLP.decode2(message).get(0);
+            List<BlockHeader> headers = new ArrayList<>(list.size());
+            for (RLPElement encoded : list) {
+                BlockHeader header = BlockUtil.newHeaderFromUnsafeSource((RLPList) encoded);
+                if (header == null) {
+                    return null;
+                }
+                headers.add(header);
+            }
+            return new ResponseSkeleton(headers);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte[] encode() {
+        byte[][] toEncode = new byte[headers.size()][];
+
+        int i = 0;
+        for (BlockHeader header : headers) {
+            toEncode[i] = header.getEncoded();
+            i++;
+        }
+
+        return RLP.encodeList(toEncode);
+    }
+
+    /** Returns the headers of the skeleton in ascending order of their heights. */
+    public List<BlockHeader> getHeaders() {
+        return headers;
+    }
+}
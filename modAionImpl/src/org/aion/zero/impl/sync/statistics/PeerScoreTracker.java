@@ -0,0 +1,327 @@
+package org.aion.zero.impl.sync.statistics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Scores peers based on the quality of their responses to sync requests. The score combines the
+ * round trip time, the delivered bytes per second, the rate of invalid responses and the rate of
+ * timed out requests, each tracked as an exponentially weighted moving average so that older
+ * observations decay as new ones arrive.
+ *
+ * <p>Peers without any observations get the {@link #NEUTRAL_SCORE} to ensure that new peers are
+ * given a chance to serve requests.
+ *
+ * <p>The matched requests and responses are also reported to the {@link SyncMetrics}.
+ *
+ * @implNote This resource has its own locking mechanism and is thread safe.
+ */
+public class PeerScoreTracker {
+
+    /** Score assigned to peers without enough observations. */
+    public static final double NEUTRAL_SCORE = 0.5d;
+
+    /** Weight of a new observation in the moving averages. */
+    private static final double ALPHA = 0.2d;
+
+    /** Round trip time for which the latency component is halved. */
+    private static final double REFERENCE_RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /** Delivery rate for which the throughput component is halved. */
+    private static final double REFERENCE_BYTES_PER_SECOND = 64 * 1024;
+
+    /** Requests without a response after this time are counted as timeouts. */
+    static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Cap on the tracked outstanding requests for each peer and request type. */
+    private static final int MAX_OUTSTANDING = 32;
+
+    /** Number of observations required before a peer can be considered for dropping. */
+    static final int MIN_SAMPLES_TO_DROP = 8;
+
+    /** Peers with a lower score after {@link #MIN_SAMPLES_TO_DROP} observations are dropped. */
+    static final double DROP_THRESHOLD = 0.1d;
+
+    private final Map<Integer, PeerScore> scores = new HashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private final SyncMetrics metrics;
+
+    public PeerScoreTracker() {
+        this(new SyncMetrics());
+    }
+
+    /** @param metrics the metrics receiving the requests and the matched responses */
+    public PeerScoreTracker(SyncMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Records a request sent to the given peer.
+     *
+     * @param peerId the peer identifier
+     * @param type the type of the request
+     * @param requestTime the time of the request in nanoseconds
+     */
+    public void recordRequest(int peerId, RequestType type, long requestTime) {
+        lock.lock();
+        try {
+            PeerScore score = scores.computeIfAbsent(peerId, id -> new PeerScore());
+            Deque<Long> outstanding =
+                    score.outstanding.computeIfAbsent(type, t -> new ArrayDeque<>());
+            if (outstanding.size() >= MAX_OUTSTANDING) {
+                outstanding.pollFirst();
+                score.addTimeout();
+            }
+            outstanding.addLast(requestTime);
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordRequest(type);
+    }
+
+    /**
+     * Records a response received from the given peer and matches it to the oldest outstanding
+     * request of the same type. Responses without a matching request are ignored.
+     *
+     * @param peerId the peer identifier
+     * @param type the type of the request that was answered
+     * @param bytes the size of the response
+     * @param responseTime the time of the response in nanoseconds
+     */
+    public void recordResponse(int peerId, RequestType type, int bytes, long responseTime) {
+        long rtt;
+        lock.lock();
+        try {
+            PeerScore score = scores.get(peerId);
+            if (score == null) {
+                return;
+            }
+            Deque<Long> outstanding = score.outstanding.get(type);
+            if (outstanding == null || outstanding.isEmpty()) {
+                return;
+            }
+            rtt = responseTime - outstanding.pollFirst();
+            if (rtt < 0) {
+                return;
+            }
+            score.addResponse(rtt, bytes);
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordResponse(peerId, type, bytes, rtt);
+    }
+
+    /**
+     * Records an invalid response received from the given peer, i.e. one that could not be
+     * decoded, was empty or failed validation.
+     *
+     * @param peerId the peer identifier
+     */
+    public void recordInvalid(int peerId) {
+        lock.lock();
+        try {
+            PeerScore score = scores.get(peerId);
+            if (score != null) {
+                score.addInvalid();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts as timeouts all the outstanding requests made before {@code now - }{@link
+     * #REQUEST_TIMEOUT_NANOS}.
+     *
+     * @param now the current time in nanoseconds
+     */
+    public void expireRequests(long now) {
+        lock.lock();
+        try {
+            for (PeerScore score : scores.values()) {
+                for (Deque<Long> outstanding : score.outstanding.values()) {
+                    while (!outstanding.isEmpty()
+                            && now - outstanding.peekFirst() > REQUEST_TIMEOUT_NANOS) {
+                        outstanding.pollFirst();
+                        score.addTimeout();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops tracking the given peer. */
+    public void remove(int peerId) {
+        lock.lock();
+        try {
+            scores.remove(peerId);
+        } finally {
+            lock.unlock();
+        }
+        metrics.removePeer(peerId);
+    }
+
+    /**
+     * Returns the current score of the given peer as a value between {@code 0} and {@code 1}, or
+     * the {@link #NEUTRAL_SCORE} when the peer has not answered any request yet.
+     */
+    public double getScore(int peerId) {
+        lock.lock();
+        try {
+            PeerScore score = scores.get(peerId);
+            return score == null ? NEUTRAL_SCORE : score.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns {@code true} if the score of the given peer is based on observed responses. */
+    public boolean hasSamples(int peerId) {
+        lock.lock();
+        try {
+            PeerScore score = scores.get(peerId);
+            return score != null && score.samples > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a request size between {@code min} and {@code max} proportional to the score of the
+     * given peer. Peers without observations get the maximum size. The returned value preserves
+     * the parity of {@code min} and is at least {@code min + 2} so that consecutive requests can
+     * still vary their size.
+     */
+    public int getRequestSize(int peerId, int min, int max) {
+        lock.lock();
+        try {
+            PeerScore score = scores.get(peerId);
+            if (score == null || score.samples == 0) {
+                return max;
+            }
+            int steps = (int) Math.round(score.value() * (max - min) / 2);
+            return Math.max(min + 2, Math.min(max, min + 2 * steps));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sorts the given peers from the best to the worst score. The sort is stable, so peers with
+     * equal scores keep their relative order.
+     *
+     * @param peers the peers to sort
+     * @param id function retrieving the peer identifier
+     * @return a new list with the peers in the order of their scores
+     */
+    public <T> List<T> sortByScore(Collection<T> peers, ToIntFunction<T> id) {
+        Map<Integer, Double> current = new HashMap<>();
+        lock.lock();
+        try {
+            for (T peer : peers) {
+                int peerId = id.applyAsInt(peer);
+                PeerScore score = scores.get(peerId);
+                current.put(peerId, score == null ? NEUTRAL_SCORE : score.value());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        List<T> sorted = new ArrayList<>(peers);
+        sorted.sort(
+                Comparator.comparingDouble((T peer) -> current.get(id.applyAsInt(peer)))
+                        .reversed());
+        return sorted;
+    }
+
+    /**
+     * Returns the peers that have been consistently slow or unreliable, i.e. have a score under
+     * {@link #DROP_THRESHOLD} after at least {@link #MIN_SAMPLES_TO_DROP} observations.
+     */
+    public List<Integer> getPeersToDrop() {
+        lock.lock();
+        try {
+            List<Integer> drop = new ArrayList<>();
+            for (Map.Entry<Integer, PeerScore> entry : scores.entrySet()) {
+                PeerScore score = entry.getValue();
+                if (score.samples >= MIN_SAMPLES_TO_DROP && score.value() < DROP_THRESHOLD) {
+                    drop.add(entry.getKey());
+                }
+            }
+            return drop;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Decayed statistics of a single peer. */
+    private static final class PeerScore {
+        private final Map<RequestType, Deque<Long>> outstanding =
+                new EnumMap<>(RequestType.class);
+
+        private double rttNanos = 0;
+        private double bytesPerSecond = 0;
+        private double invalidRate = 0;
+        private double timeoutRate = 0;
+        private boolean hasResponse = false;
+        private int samples = 0;
+
+        void addResponse(long rtt, int bytes) {
+            double rate = bytes * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, rtt);
+            if (hasResponse) {
+                rttNanos = average(rttNanos, rtt);
+                bytesPerSecond = average(bytesPerSecond, rate);
+            } else {
+                rttNanos = rtt;
+                bytesPerSecond = rate;
+                hasResponse = true;
+            }
+            invalidRate = average(invalidRate, 0);
+            timeoutRate = average(timeoutRate, 0);
+            samples++;
+        }
+
+        void addInvalid() {
+            invalidRate = average(invalidRate, 1);
+            samples++;
+        }
+
+        void addTimeout() {
+            timeoutRate = average(timeoutRate, 1);
+            samples++;
+        }
+
+        double value() {
+            if (samples == 0) {
+                return NEUTRAL_SCORE;
+            }
+            double performance;
+            if (hasResponse) {
+                double latency = REFERENCE_RTT_NANOS / (REFERENCE_RTT_NANOS + rttNanos);
+                double throughput =
+                        bytesPerSecond / (REFERENCE_BYTES_PER_SECOND + bytesPerSecond);
+                performance = (latency + throughput) / 2;
+            } else {
+                performance = NEUTRAL_SCORE;
+            }
+            return performance * (1 - invalidRate) * (1 - timeoutRate);
+        }
+
+        private static double average(double current, double sample) {
+            return current + ALPHA * (sample - current);
+        }
+    }
+}
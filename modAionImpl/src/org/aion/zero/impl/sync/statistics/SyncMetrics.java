@@ -0,0 +1,523 @@
+package org.aion.zero.impl.sync.statistics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects metrics for the whole sync pipeline: the requests sent and the responses received for
+ * each request type, the throughput and latency of each peer, the depth of the sync queues, the
+ * time spent validating and importing each block and the rate of imported blocks and energy.
+ *
+ * <p>Totals are kept since the creation of this object. Rates are computed over the last {@link
+ * #WINDOW_SECONDS} complete seconds. Durations are recorded in histograms with the fixed bucket
+ * bounds from {@link #BUCKET_BOUNDS_MS}.
+ *
+ * @implNote This resource has its own locking mechanism and is thread safe.
+ */
+public final class SyncMetrics {
+
+    /** The number of seconds over which rates are computed. */
+    public static final int WINDOW_SECONDS = 60;
+
+    /** The upper bounds of the histogram buckets in milliseconds. */
+    static final double[] BUCKET_BOUNDS_MS = {
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000
+    };
+
+    // names of the exported metrics
+    private static final String REQUESTS = "aion_sync_requests_total";
+    private static final String RESPONSES = "aion_sync_responses_total";
+    private static final String RESPONSE_LATENCY = "aion_sync_response_latency_seconds";
+    private static final String PEER_BYTES = "aion_sync_peer_received_bytes_total";
+    private static final String PEER_LATENCY = "aion_sync_peer_response_latency_seconds";
+    private static final String QUEUE_DEPTH = "aion_sync_queue_depth";
+    private static final String HEADER_VALIDATION = "aion_sync_header_validation_seconds";
+    private static final String BLOCK_VALIDATION = "aion_sync_block_validation_seconds";
+    private static final String BLOCK_IMPORT = "aion_sync_block_import_seconds";
+    private static final String IMPORTED_BLOCKS = "aion_sync_imported_blocks_total";
+    private static final String IMPORTED_ENERGY = "aion_sync_imported_energy_total";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS_MS[i] * 1_000_000);
+        }
+    }
+
+    private final LongSupplier clock;
+    private final Lock lock = new ReentrantLock();
+
+    private final Map<RequestType, RequestMetrics> requests = new EnumMap<>(RequestType.class);
+    private final Map<Integer, PeerMetrics> peers = new HashMap<>();
+    private final Map<String, IntSupplier> queues = new LinkedHashMap<>();
+
+    private final Histogram headerValidation = new Histogram();
+    private final Histogram blockValidation = new Histogram();
+    private final Histogram blockImport = new Histogram();
+    private final WindowedCounter importedBlocks = new WindowedCounter();
+    private final WindowedCounter importedEnergy = new WindowedCounter();
+
+    public SyncMetrics() {
+        this(System::nanoTime);
+    }
+
+    /** @param clock the source of the current time in nanoseconds */
+    SyncMetrics(LongSupplier clock) {
+        this.clock = clock;
+        for (RequestType type : RequestType.values()) {
+            requests.put(type, new RequestMetrics());
+        }
+    }
+
+    /**
+     * Registers a queue of the sync pipeline. Its size is read every time a snapshot is taken.
+     *
+     * @param name the name under which the queue depth is reported
+     * @param size function returning the current number of elements in the queue
+     */
+    public void registerQueue(String name, IntSupplier size) {
+        lock.lock();
+        try {
+            queues.put(name, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records a request sent to a peer. */
+    public void recordRequest(RequestType type) {
+        long second = second();
+        lock.lock();
+        try {
+            requests.get(type).requests.add(1, second);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a response received from a peer that was matched to an earlier request.
+     *
+     * @param peerId the peer identifier
+     * @param type the type of the request that was answered
+     * @param bytes the size of the response
+     * @param latencyNanos the time between the request and the response in nanoseconds
+     */
+    public void recordResponse(int peerId, RequestType type, int bytes, long latencyNanos) {
+        long second = second();
+        lock.lock();
+        try {
+            RequestMetrics request = requests.get(type);
+            request.responses++;
+            request.latency.observe(latencyNanos, 1);
+
+            PeerMetrics peer = peers.computeIfAbsent(peerId, id -> new PeerMetrics());
+            peer.bytes.add(bytes, second);
+            peer.responses++;
+            peer.latency.observe(latencyNanos, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops reporting metrics for the given peer. */
+    public void removePeer(int peerId) {
+        lock.lock();
+        try {
+            peers.remove(peerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the time spent validating a batch of headers, attributed evenly to each header.
+     *
+     * @param durationNanos the time spent validating the batch in nanoseconds
+     * @param headers the number of headers in the batch
+     */
+    public void recordHeaderValidation(long durationNanos, int headers) {
+        if (headers <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            headerValidation.observe(durationNanos / headers, headers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records the time spent on the checks of a block that do not depend on the parent state. */
+    public void recordBlockValidation(long durationNanos) {
+        lock.lock();
+        try {
+            blockValidation.observe(durationNanos, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the import of a block.
+     *
+     * @param durationNanos the time spent importing the block in nanoseconds
+     * @param imported {@code true} if the block was added to the database by this import
+     * @param energyConsumed the energy consumed by the transactions of the block
+     */
+    public void recordImport(long durationNanos, boolean imported, long energyConsumed) {
+        long second = second();
+        lock.lock();
+        try {
+            blockImport.observe(durationNanos, 1);
+            if (imported) {
+                importedBlocks.add(1, second);
+                importedEnergy.add(energyConsumed, second);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns a consistent view of the current metrics. */
+    public Snapshot getSnapshot() {
+        // read the queue sizes outside the lock since they use the locks of the queues
+        Map<String, IntSupplier> registered;
+        lock.lock();
+        try {
+            registered = new LinkedHashMap<>(queues);
+        } finally {
+            lock.unlock();
+        }
+        Map<String, Integer> queueDepths = new LinkedHashMap<>();
+        for (Map.Entry<String, IntSupplier> queue : registered.entrySet()) {
+            queueDepths.put(queue.getKey(), queue.getValue().getAsInt());
+        }
+
+        long second = second();
+        lock.lock();
+        try {
+            Map<RequestType, RequestSnapshot> requestSnapshots = new EnumMap<>(RequestType.class);
+            for (Map.Entry<RequestType, RequestMetrics> entry : requests.entrySet()) {
+                RequestMetrics request = entry.getValue();
+                requestSnapshots.put(
+                        entry.getKey(),
+                        new RequestSnapshot(
+                                request.requests.total,
+                                request.requests.rate(second),
+                                request.responses,
+                                request.latency.snapshot()));
+            }
+
+            Map<Integer, PeerSnapshot> peerSnapshots = new TreeMap<>();
+            for (Map.Entry<Integer, PeerMetrics> entry : peers.entrySet()) {
+                PeerMetrics peer = entry.getValue();
+                peerSnapshots.put(
+                        entry.getKey(),
+                        new PeerSnapshot(
+                                peer.responses,
+                                peer.bytes.total,
+                                peer.bytes.rate(second),
+                                peer.latency.snapshot()));
+            }
+
+            return new Snapshot(
+                    Collections.unmodifiableMap(requestSnapshots),
+                    Collections.unmodifiableMap(peerSnapshots),
+                    Collections.unmodifiableMap(queueDepths),
+                    headerValidation.snapshot(),
+                    blockValidation.snapshot(),
+                    blockImport.snapshot(),
+                    importedBlocks.total,
+                    importedBlocks.rate(second),
+                    importedEnergy.total,
+                    importedEnergy.rate(second));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current metrics in the Prometheus text exposition format, such that they can be
+     * collected by a scraper.
+     */
+    public String dumpPrometheus() {
+        Snapshot snapshot = getSnapshot();
+        StringBuilder sb = new StringBuilder();
+
+        header(sb, REQUESTS, "counter", "Sync requests sent to peers.");
+        for (Map.Entry<RequestType, RequestSnapshot> entry : snapshot.requests.entrySet()) {
+            sample(sb, REQUESTS, typeLabel(entry.getKey()), entry.getValue().requests);
+        }
+        header(sb, RESPONSES, "counter", "Sync responses matched to requests.");
+        for (Map.Entry<RequestType, RequestSnapshot> entry : snapshot.requests.entrySet()) {
+            sample(sb, RESPONSES, typeLabel(entry.getKey()), entry.getValue().responses);
+        }
+        header(sb, RESPONSE_LATENCY, "histogram", "Sync response latency.");
+        for (Map.Entry<RequestType, RequestSnapshot> entry : snapshot.requests.entrySet()) {
+            histogram(sb, RESPONSE_LATENCY, typeLabel(entry.getKey()), entry.getValue().latency);
+        }
+
+        header(sb, PEER_BYTES, "counter", "Bytes received in sync responses from each peer.");
+        for (Map.Entry<Integer, PeerSnapshot> entry : snapshot.peers.entrySet()) {
+            sample(sb, PEER_BYTES, peerLabel(entry.getKey()), entry.getValue().bytes);
+        }
+        header(sb, PEER_LATENCY, "histogram", "Sync response latency of each peer.");
+        for (Map.Entry<Integer, PeerSnapshot> entry : snapshot.peers.entrySet()) {
+            histogram(sb, PEER_LATENCY, peerLabel(entry.getKey()), entry.getValue().latency);
+        }
+
+        header(sb, QUEUE_DEPTH, "gauge", "Number of elements in the sync queues.");
+        for (Map.Entry<String, Integer> entry : snapshot.queues.entrySet()) {
+            sample(sb, QUEUE_DEPTH, "queue=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+
+        header(sb, HEADER_VALIDATION, "histogram", "Validation time per header.");
+        histogram(sb, HEADER_VALIDATION, null, snapshot.headerValidation);
+        header(sb, BLOCK_VALIDATION, "histogram", "Parent state independent checks per block.");
+        histogram(sb, BLOCK_VALIDATION, null, snapshot.blockValidation);
+        header(sb, BLOCK_IMPORT, "histogram", "Import time per block.");
+        histogram(sb, BLOCK_IMPORT, null, snapshot.blockImport);
+
+        header(sb, IMPORTED_BLOCKS, "counter", "Blocks imported by the sync.");
+        sample(sb, IMPORTED_BLOCKS, null, snapshot.importedBlocks);
+        header(sb, IMPORTED_ENERGY, "counter", "Energy used by the blocks imported by the sync.");
+        sample(sb, IMPORTED_ENERGY, null, snapshot.importedEnergy);
+
+        return sb.toString();
+    }
+
+    private static String typeLabel(RequestType type) {
+        return "type=\"" + type.toString().toLowerCase() + "\"";
+    }
+
+    private static String peerLabel(int peerId) {
+        return "peer=\"" + peerId + "\"";
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, Object value) {
+        sb.append(name);
+        if (labels != null) {
+            sb.append('{').append(labels).append('}');
+        }
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(
+            StringBuilder sb, String name, String labels, HistogramSnapshot histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            cumulative += histogram.buckets[i];
+            String bound = "le=\"" + BUCKET_BOUNDS_MS[i] / 1000 + "\"";
+            sample(sb, name + "_bucket", prefix + bound, cumulative);
+        }
+        sample(sb, name + "_bucket", prefix + "le=\"+Inf\"", histogram.count);
+        sample(sb, name + "_sum", labels, (double) histogram.sumNanos / NANOS_PER_SECOND);
+        sample(sb, name + "_count", labels, histogram.count);
+    }
+
+    private long second() {
+        return clock.getAsLong() / NANOS_PER_SECOND;
+    }
+
+    /** The metrics of the requests of a single type. */
+    private static final class RequestMetrics {
+        final WindowedCounter requests = new WindowedCounter();
+        final Histogram latency = new Histogram();
+        long responses = 0;
+    }
+
+    /** The metrics of the responses received from a single peer. */
+    private static final class PeerMetrics {
+        final WindowedCounter bytes = new WindowedCounter();
+        final Histogram latency = new Histogram();
+        long responses = 0;
+    }
+
+    /** A total that also tracks the amounts added during each of the last seconds. */
+    private static final class WindowedCounter {
+        // one extra slot for the current second, which is excluded from the rate
+        private final long[] amounts = new long[WINDOW_SECONDS + 1];
+        private final long[] seconds = new long[WINDOW_SECONDS + 1];
+        long total = 0;
+
+        WindowedCounter() {
+            Arrays.fill(seconds, Long.MIN_VALUE);
+        }
+
+        void add(long amount, long second) {
+            int slot = (int) Math.floorMod(second, (long) amounts.length);
+            if (seconds[slot] != second) {
+                seconds[slot] = second;
+                amounts[slot] = 0;
+            }
+            amounts[slot] += amount;
+            total += amount;
+        }
+
+        /** Returns the average amount per second over the last complete seconds. */
+        double rate(long second) {
+            long sum = 0;
+            for (int i = 0; i < amounts.length; i++) {
+                long age = second - seconds[i];
+                if (age >= 1 && age <= WINDOW_SECONDS) {
+                    sum += amounts[i];
+                }
+            }
+            return (double) sum / WINDOW_SECONDS;
+        }
+    }
+
+    /** Counts durations in buckets with the bounds from {@link #BUCKET_BOUNDS_MS}. */
+    private static final class Histogram {
+        // the last bucket counts the durations above the largest bound
+        private final long[] buckets = new long[BUCKET_BOUNDS_NANOS.length + 1];
+        private long count = 0;
+        private long sumNanos = 0;
+
+        void observe(long durationNanos, int times) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_NANOS.length
+                    && durationNanos > BUCKET_BOUNDS_NANOS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket] += times;
+            count += times;
+            sumNanos += durationNanos * times;
+        }
+
+        HistogramSnapshot snapshot() {
+            return new HistogramSnapshot(buckets.clone(), count, sumNanos);
+        }
+    }
+
+    /** The state of all the sync metrics at the time of the snapshot. */
+    public static final class Snapshot {
+        public final Map<RequestType, RequestSnapshot> requests;
+        public final Map<Integer, PeerSnapshot> peers;
+        public final Map<String, Integer> queues;
+        public final HistogramSnapshot headerValidation;
+        public final HistogramSnapshot blockValidation;
+        public final HistogramSnapshot blockImport;
+        public final long importedBlocks;
+        public final double blocksPerSecond;
+        public final long importedEnergy;
+        public final double energyPerSecond;
+
+        Snapshot(
+                Map<RequestType, RequestSnapshot> requests,
+                Map<Integer, PeerSnapshot> peers,
+                Map<String, Integer> queues,
+                HistogramSnapshot headerValidation,
+                HistogramSnapshot blockValidation,
+                HistogramSnapshot blockImport,
+                long importedBlocks,
+                double blocksPerSecond,
+                long importedEnergy,
+                double energyPerSecond) {
+            this.requests = requests;
+            this.peers = peers;
+            this.queues = queues;
+            this.headerValidation = headerValidation;
+            this.blockValidation = blockValidation;
+            this.blockImport = blockImport;
+            this.importedBlocks = importedBlocks;
+            this.blocksPerSecond = blocksPerSecond;
+            this.importedEnergy = importedEnergy;
+            this.energyPerSecond = energyPerSecond;
+        }
+    }
+
+    /** The metrics of the requests of a single type at the time of the snapshot. */
+    public static final class RequestSnapshot {
+        public final long requests;
+        public final double requestsPerSecond;
+        public final long responses;
+        public final HistogramSnapshot latency;
+
+        RequestSnapshot(
+                long requests,
+                double requestsPerSecond,
+                long responses,
+                HistogramSnapshot latency) {
+            this.requests = requests;
+            this.requestsPerSecond = requestsPerSecond;
+            this.responses = responses;
+            this.latency = latency;
+        }
+    }
+
+    /** The metrics of a single peer at the time of the snapshot. */
+    public static final class PeerSnapshot {
+        public final long responses;
+        public final long bytes;
+        public final double bytesPerSecond;
+        public final HistogramSnapshot latency;
+
+        PeerSnapshot(long responses, long bytes, double bytesPerSecond, HistogramSnapshot latency) {
+            this.responses = responses;
+            this.bytes = bytes;
+            this.bytesPerSecond = bytesPerSecond;
+            this.latency = latency;
+        }
+    }
+
+    /** The content of a duration histogram at the time of the snapshot. */
+    public static final class HistogramSnapshot {
+        private final long[] buckets;
+        public final long count;
+        public final long sumNanos;
+
+        HistogramSnapshot(long[] buckets, long count, long sumNanos) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sumNanos = sumNanos;
+        }
+
+        /** Returns the average duration in milliseconds or {@code 0} for an empty histogram. */
+        public double getMeanMillis() {
+            return count == 0 ? 0 : (double) sumNanos / count / 1_000_000;
+        }
+
+        /**
+         * Returns an upper bound for the given quantile of the recorded durations, i.e. the bound
+         * of the first bucket that reaches the quantile.
+         *
+         * @param quantile a value between {@code 0} and {@code 1}
+         * @return the bucket bound in milliseconds, {@link Double#POSITIVE_INFINITY} when the
+         *     quantile is above the largest bound or {@code 0} when the histogram is empty
+         */
+        public double getQuantileMillis(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank) {
+                    return BUCKET_BOUNDS_MS[i];
+                }
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+}
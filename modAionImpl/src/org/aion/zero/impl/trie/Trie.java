@@ -4,6 +4,7 @@ import java.util.Map;
 import java.util.Set;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.trie.scan.ScanAction;
 
 /**
  * Trie interface for the main data structure in Ethereum which is used to store both the account
@@ -72,6 +73,14 @@ public interface Trie {
 
     int getTrieSize(byte[] stateRoot);
 
+    /**
+     * Traverses the trie with the given root and applies the given action to each node.
+     *
+     * @param stateRoot the root of the trie to be traversed
+     * @param action the action applied to the traversed nodes
+     */
+    void traceTrie(byte[] stateRoot, ScanAction action);
+
     // never used
     //    boolean validate();
 
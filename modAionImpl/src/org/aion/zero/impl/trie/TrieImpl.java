@@ -860,7 +860,8 @@ public class TrieImpl implements Trie {
         return traceAction.getCount();
     }
 
-    private void traceTrie(byte[] stateRoot, ScanAction action) {
+    @Override
+    public void traceTrie(byte[] stateRoot, ScanAction action) {
         synchronized (cache) {
             Value value = new Value(stateRoot);
 
@@ -0,0 +1,37 @@
+package org.aion.zero.impl.trie.scan;
+
+import static org.aion.rlp.CompactEncoder.hasTerminator;
+
+import java.util.Arrays;
+import java.util.List;
+import org.aion.base.AccountState;
+import org.aion.base.ConstantUtil;
+import org.aion.crypto.HashUtil;
+import org.aion.rlp.Value;
+
+/**
+ * Counts the accounts with code or storage among the leaves of a world state trie, i.e. the
+ * accounts that have contract details.
+ */
+public class CountContracts implements ScanAction {
+    private int count = 0;
+
+    @Override
+    public void doOnNode(byte[] hash, Value node) {
+        if (!node.isList()) {
+            return;
+        }
+        List<Object> siblings = node.asList();
+        if (siblings.size() == 2 && hasTerminator((byte[]) siblings.get(0))) {
+            AccountState account = new AccountState(new Value(siblings.get(1)).asBytes());
+            if (!Arrays.equals(account.getCodeHash(), HashUtil.EMPTY_DATA_HASH)
+                    || !Arrays.equals(account.getStateRoot(), ConstantUtil.EMPTY_TRIE_HASH)) {
+                count++;
+            }
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -9,7 +9,7 @@ final class TxBroadcaster {
 
     TxBroadcaster() {}
 
-    void submitTransaction(A0TxTask task) {
+    void submitTransaction(Runnable task) {
         executor.submit(task);
     }
 }
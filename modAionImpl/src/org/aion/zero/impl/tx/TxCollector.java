@@ -10,8 +10,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.aion.base.AionTransaction;
-import org.aion.p2p.IP2pMgr;
-import org.aion.zero.impl.sync.msg.BroadcastTx;
 import org.slf4j.Logger;
 
 /**
@@ -32,7 +30,7 @@ public class TxCollector {
     private final int maxTxBufferSize = avgTxSize * avgNumTxBatch;
     private final int offerTimeout = 100;
 
-    private IP2pMgr p2p;
+    private TxGossip txGossip;
 
     private TxBroadcaster txBroadcaster;
 
@@ -43,8 +41,8 @@ public class TxCollector {
     private ReentrantLock broadcastLock = new ReentrantLock();
     private Logger LOG;
 
-    public TxCollector(IP2pMgr p2p, final Logger logTx) {
-        this.p2p = p2p;
+    public TxCollector(TxGossip txGossip, final Logger logTx) {
+        this.txGossip = txGossip;
         this.LOG = logTx;
 
         // TODO AKI-547: Leave unbounded for now, may need to restrict queue size and drop tx until able to process tx
@@ -119,8 +117,7 @@ public class TxCollector {
                 LOG.trace("TxCollector.broadcastTransactions Tx#{}", transactions.size());
             }
 
-            txBroadcaster.submitTransaction(
-                    new A0TxTask(transactions, this.p2p, new BroadcastTx(transactions)));
+            txBroadcaster.submitTransaction(() -> txGossip.broadcast(transactions));
         }
     }
 
@@ -0,0 +1,228 @@
+package org.aion.zero.impl.tx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aion.base.AionTransaction;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.sync.msg.AnnounceTx;
+import org.aion.zero.impl.sync.msg.BroadcastTx;
+import org.aion.zero.impl.sync.msg.RequestTx;
+import org.aion.zero.impl.valid.TXValidator;
+import org.apache.commons.collections4.map.LRUMap;
+import org.slf4j.Logger;
+
+/**
+ * Gossips transactions by announcing their hashes instead of pushing their bodies to every peer.
+ *
+ * <p>Peers request the announced transactions they have neither in the pool nor among the recently
+ * seen ones with {@link RequestTx} and receive them in a {@link BroadcastTx}. For each peer, the
+ * hashes it announced, requested or received are remembered so that the same transaction is never
+ * sent to it twice.
+ *
+ * <p>Peers running older kernels ignore the announcements and keep receiving full {@link
+ * BroadcastTx} messages until they announce or request a transaction themselves.
+ */
+public class TxGossip {
+
+    // the number of recently seen transactions used to filter announcements
+    private static final int SEEN_SIZE = 65_536;
+
+    // the number of hashes remembered for each peer
+    private static final int KNOWN_SIZE = 16_384;
+
+    // the number of announced transactions kept available for requests
+    private static final int SERVED_SIZE = 16_384;
+
+    // the soft limit of the transaction bytes sent in response to a request
+    private static final int MAX_RESPONSE_BYTES = 2 * 1024 * 1024;
+
+    // the time after which a transaction requested from one peer can be requested from another
+    private static final long REQUEST_TIMEOUT = 5_000;
+
+    private static final class Peer {
+        private final LRUMap<ByteArrayWrapper, Boolean> known = new LRUMap<>(KNOWN_SIZE);
+        private volatile boolean announces = false;
+
+        /** @return {@code false} if the hash was already known to the peer */
+        synchronized boolean markKnown(ByteArrayWrapper hash) {
+            return known.put(hash, Boolean.TRUE) == null;
+        }
+    }
+
+    private final IP2pMgr p2pMgr;
+    private final Logger log;
+
+    private final LRUMap<ByteArrayWrapper, Boolean> seen = new LRUMap<>(SEEN_SIZE);
+    private final LRUMap<ByteArrayWrapper, Long> requested = new LRUMap<>(SEEN_SIZE);
+    private final LRUMap<ByteArrayWrapper, AionTransaction> served = new LRUMap<>(SERVED_SIZE);
+    private final Map<Integer, Peer> peers = new ConcurrentHashMap<>();
+
+    public TxGossip(final IP2pMgr _p2pMgr, final Logger _log) {
+        this.p2pMgr = _p2pMgr;
+        this.log = _log;
+    }
+
+    private Peer peer(int _nodeIdHashcode) {
+        return peers.computeIfAbsent(_nodeIdHashcode, k -> new Peer());
+    }
+
+    /**
+     * Announces the given transactions to the active peers that do not know them yet. Peers not
+     * known to support announcements also receive the bodies.
+     */
+    public void broadcast(List<AionTransaction> _txs) {
+        List<ByteArrayWrapper> hashes = new ArrayList<>(_txs.size());
+        synchronized (served) {
+            for (AionTransaction tx : _txs) {
+                ByteArrayWrapper hash = ByteArrayWrapper.wrap(tx.getTransactionHash());
+                served.put(hash, tx);
+                hashes.add(hash);
+            }
+        }
+        synchronized (seen) {
+            for (ByteArrayWrapper hash : hashes) {
+                seen.put(hash, Boolean.TRUE);
+            }
+        }
+
+        Map<Integer, INode> activeNodes = p2pMgr.getActiveNodes();
+        if (activeNodes == null) {
+            return;
+        }
+        peers.keySet().retainAll(activeNodes.keySet());
+
+        for (Map.Entry<Integer, INode> e : activeNodes.entrySet()) {
+            Peer peer = peer(e.getKey());
+            List<AionTransaction> unknownTxs = new ArrayList<>();
+            List<byte[]> unknownHashes = new ArrayList<>();
+            for (int i = 0; i < _txs.size(); i++) {
+                if (peer.markKnown(hashes.get(i))) {
+                    unknownTxs.add(_txs.get(i));
+                    unknownHashes.add(hashes.get(i).toBytes());
+                }
+            }
+            if (unknownTxs.isEmpty()) {
+                continue;
+            }
+
+            String displayId = e.getValue().getIdShort();
+            if (!peer.announces) {
+                p2pMgr.send(e.getKey(), displayId, new BroadcastTx(unknownTxs));
+            }
+            for (int from = 0; from < unknownHashes.size(); from += AnnounceTx.MAX_HASHES) {
+                int to = Math.min(unknownHashes.size(), from + AnnounceTx.MAX_HASHES);
+                p2pMgr.send(e.getKey(), displayId, new AnnounceTx(unknownHashes.subList(from, to)));
+            }
+        }
+    }
+
+    /** Requests the announced transactions that were not seen yet or requested recently. */
+    public void onAnnounce(int _nodeIdHashcode, String _displayId, List<byte[]> _txHashes) {
+        Peer peer = peer(_nodeIdHashcode);
+        peer.announces = true;
+
+        List<ByteArrayWrapper> candidates = new ArrayList<>();
+        for (byte[] txHash : _txHashes) {
+            ByteArrayWrapper hash = ByteArrayWrapper.wrap(txHash);
+            peer.markKnown(hash);
+            if (!TXValidator.isInCache(hash)) {
+                candidates.add(hash);
+            }
+        }
+        synchronized (seen) {
+            candidates.removeIf(seen::containsKey);
+        }
+
+        List<byte[]> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (requested) {
+            for (ByteArrayWrapper hash : candidates) {
+                Long requestedAt = requested.get(hash);
+                if (requestedAt == null || now - requestedAt > REQUEST_TIMEOUT) {
+                    requested.put(hash, now);
+                    missing.add(hash.toBytes());
+                }
+            }
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace(
+                    "<TxGossip announced={} missing={} node={}>",
+                    _txHashes.size(),
+                    missing.size(),
+                    _displayId);
+        }
+        if (!missing.isEmpty()) {
+            p2pMgr.send(_nodeIdHashcode, _displayId, new RequestTx(missing));
+        }
+    }
+
+    /** Sends the requested transactions that are still available. */
+    public void onRequest(int _nodeIdHashcode, String _displayId, List<byte[]> _txHashes) {
+        Peer peer = peer(_nodeIdHashcode);
+        peer.announces = true;
+
+        List<AionTransaction> txs = new ArrayList<>();
+        int size = 0;
+        synchronized (served) {
+            for (byte[] txHash : _txHashes) {
+                AionTransaction tx = served.get(ByteArrayWrapper.wrap(txHash));
+                if (tx != null) {
+                    txs.add(tx);
+                    size += tx.getEncoded().length;
+                    if (size >= MAX_RESPONSE_BYTES) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace(
+                    "<TxGossip requested={} found={} node={}>",
+                    _txHashes.size(),
+                    txs.size(),
+                    _displayId);
+        }
+        if (!txs.isEmpty()) {
+            for (AionTransaction tx : txs) {
+                peer.markKnown(ByteArrayWrapper.wrap(tx.getTransactionHash()));
+            }
+            p2pMgr.send(_nodeIdHashcode, _displayId, new BroadcastTx(txs));
+        }
+    }
+
+    /**
+     * Records the transactions received from a peer.
+     *
+     * @return the transactions that were not seen before
+     */
+    public List<AionTransaction> onReceived(int _nodeIdHashcode, List<AionTransaction> _txs) {
+        Peer peer = peer(_nodeIdHashcode);
+        List<ByteArrayWrapper> hashes = new ArrayList<>(_txs.size());
+        for (AionTransaction tx : _txs) {
+            ByteArrayWrapper hash = ByteArrayWrapper.wrap(tx.getTransactionHash());
+            peer.markKnown(hash);
+            hashes.add(hash);
+        }
+        synchronized (requested) {
+            for (ByteArrayWrapper hash : hashes) {
+                requested.remove(hash);
+            }
+        }
+
+        List<AionTransaction> fresh = new ArrayList<>();
+        synchronized (seen) {
+            for (int i = 0; i < _txs.size(); i++) {
+                if (seen.put(hashes.get(i), Boolean.TRUE) == null) {
+                    fresh.add(_txs.get(i));
+                }
+            }
+        }
+        return fresh;
+    }
+}
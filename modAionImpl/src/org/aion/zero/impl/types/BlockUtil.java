@@ -67,6 +67,69 @@ public final class BlockUtil {
         }
     }
 
+    /**
+     * Assembles a new block instance given its header and transactions. Returns {@code null} when
+     * the transactions do not match the transaction root of the header.
+     *
+     * @param header the block header
+     * @param txs the transactions of the block in their original order
+     * @return a new instance of a block or {@code null} when given invalid data
+     * @implNote Used to reassemble blocks relayed in compact form from transactions that were
+     *     already decoded and validated locally.
+     */
+    public static Block newBlockWithHeaderAndTransactions(
+            BlockHeader header, List<AionTransaction> txs) {
+        if (header == null || txs == null) {
+            return null;
+        }
+        Trie txsState = new TrieImpl(null);
+        for (int i = 0; i < txs.size(); i++) {
+            txsState.update(RLP.encodeInt(i), txs.get(i).getEncoded());
+        }
+        if (!Arrays.equals(header.getTxTrieRoot(), txsState.getRootHash())) {
+            return null;
+        }
+        if (header.getSealType() == BlockSealType.SEAL_POW_BLOCK) {
+            return new AionBlock((A0BlockHeader) header, txs);
+        } else if (header.getSealType() == BlockSealType.SEAL_POS_BLOCK) {
+            return new StakingBlock((StakingBlockHeader) header, txs);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the given encoding into a new instance of a block header or returns {@code null} if
+     * the RLP encoding does not describe a valid block header.
+     *
+     * @param rlp RLP encoded block header data
+     * @return a new instance of a block header or {@code null} if the RLP encoding does not
+     *     describe a valid block header
+     * @implNote Assumes the data is from a safe (internal) source.
+     */
+    public static BlockHeader newHeaderFromRlp(byte[] rlp) {
+        // return null when given empty bytes
+        if (rlp == null || rlp.length == 0) {
+            return null;
+        }
+
+        // attempt decoding, return null if it fails
+        try {
+            RLPList header = (RLPList) RLP.decode2(rlp).get(0);
+            byte[] sealType = header.get(0).getRLPData();
+            if (sealType[0] == BlockSealType.SEAL_POW_BLOCK.getSealId()) {
+                return A0BlockHeader.Builder.newInstance().withRlpList(header).build();
+            } else if (sealType[0] == BlockSealType.SEAL_POS_BLOCK.getSealId()) {
+                return StakingBlockHeader.Builder.newInstance().withRlpList(header).build();
+            } else {
+                return null;
+            }
+        } catch (Exception e) {
+            genLog.warn("Unable to decode block header bytes " + Arrays.toString(rlp), e);
+            return null;
+        }
+    }
+
     /**
      * Decodes the given encoding into a new instance of a block or returns {@code null} if the RLP
      * encoding does not describe a valid block.
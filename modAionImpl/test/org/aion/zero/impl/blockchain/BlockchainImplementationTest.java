@@ -4,15 +4,18 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateRandomChain;
 import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateRandomChainWithoutTransactions;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypes;
 import org.aion.crypto.ECKey;
 import org.aion.log.AionLoggerFactory;
 import org.aion.mcf.blockchain.Block;
 import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.types.AionAddress;
 import org.aion.zero.impl.config.CfgPrune;
 import org.aion.zero.impl.core.FastImportResult;
 import org.aion.zero.impl.core.ImportResult;
@@ -755,4 +758,39 @@ public class BlockchainImplementationTest {
         assertThat(chain.getRepository().getBlockDatabase().get(best.getParentHash()))
                 .isNotEqualTo(Optional.empty());
     }
+
+    @Test
+    public void tryFastImport_withIncorrectTransactions() {
+        StandaloneBlockchain.Builder builder = new StandaloneBlockchain.Builder();
+        StandaloneBlockchain.Bundle bundle =
+                builder.withValidatorConfiguration("simple").withDefaultAccounts(accounts).build();
+
+        StandaloneBlockchain chain = bundle.bc;
+
+        // populate chain at random
+        generateRandomChainWithoutTransactions(chain, 3, 1);
+        Block best = chain.getBestBlock();
+
+        // delete the block from the db
+        Block block = chain.getBlockByHash(best.getParentHash());
+        chain.getRepository().getBlockDatabase().delete(best.getParentHash());
+
+        // the same header with a transaction that does not match the trie root
+        AionTransaction tx =
+                AionTransaction.create(
+                        accounts.get(0),
+                        BigInteger.ZERO.toByteArray(),
+                        new AionAddress(accounts.get(1).getAddress()),
+                        BigInteger.ONE.toByteArray(),
+                        new byte[0],
+                        21_000L,
+                        10_000_000_000L,
+                        TransactionTypes.DEFAULT,
+                        null);
+        AionBlock altered =
+                new AionBlock((A0BlockHeader) block.getHeader(), Collections.singletonList(tx));
+
+        assertThat(chain.tryFastImport(altered)).isEqualTo(FastImportResult.INVALID_BLOCK);
+        assertThat(chain.tryFastImport(block)).isEqualTo(FastImportResult.IMPORTED);
+    }
 }
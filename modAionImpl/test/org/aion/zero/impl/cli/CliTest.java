@@ -1385,6 +1385,16 @@ public class CliTest {
         skippedTasks = new HashSet<>();
         skippedTasks.add("--db-compact");
         parameters.add(new Object[] {input, TaskPriority.DEV, skippedTasks});
+
+        input = new String[] {"--checkpoint", "checkpoint", "--restore", "checkpoint"};
+        skippedTasks = new HashSet<>();
+        skippedTasks.add("--restore");
+        parameters.add(new Object[] {input, TaskPriority.CHECKPOINT, skippedTasks});
+
+        input = new String[] {"--db-compact", "--restore", "checkpoint"};
+        skippedTasks = new HashSet<>();
+        skippedTasks.add("--restore");
+        parameters.add(new Object[] {input, TaskPriority.DB_COMPACT, skippedTasks});
         return parameters.toArray();
     }
 
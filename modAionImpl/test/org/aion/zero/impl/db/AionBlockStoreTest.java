@@ -18,8 +18,10 @@ import java.util.concurrent.TimeUnit;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
 import org.aion.db.impl.mockdb.MockDB;
 import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
 import org.aion.util.TestResources;
 import org.aion.util.types.AddressUtils;
+import org.aion.zero.impl.types.A0BlockHeader;
 import org.aion.zero.impl.types.AionBlock;
 import org.junit.After;
 import org.junit.Before;
@@ -408,4 +410,123 @@ public class AionBlockStoreTest {
                 message + "failed with " + exceptions.size() + " exception(s):" + exceptions,
                 exceptions.isEmpty());
     }
+
+    @Test
+    public void testGetHeaderByHash_withHeaderStore() {
+        ByteArrayKeyValueDatabase headers = new MockDB("headers", log);
+        headers.open();
+
+        AionBlockStore store = new AionBlockStore(index, blocks, headers, false, 0, null);
+        Block block = consecutiveBlocks.get(0);
+        store.saveBlock(block, block.getDifficultyBI(), true);
+
+        // the header is written alongside the block
+        assertThat(headers.get(block.getHash()).isPresent()).isTrue();
+        assertThat(store.getHeaderByHash(block.getHash()).getHash()).isEqualTo(block.getHash());
+
+        headers.close();
+    }
+
+    @Test
+    public void testGetHeaderByHash_withBackfill() {
+        Block block = consecutiveBlocks.get(0);
+        new AionBlockStore(index, blocks, false).saveBlock(block, block.getDifficultyBI(), true);
+
+        ByteArrayKeyValueDatabase headers = new MockDB("headers", log);
+        headers.open();
+        assertThat(headers.get(block.getHash()).isPresent()).isFalse();
+
+        // headers missing from the header store are read from the block and stored
+        AionBlockStore store = new AionBlockStore(index, blocks, headers, false, 0, null);
+        assertThat(store.getHeaderByHash(block.getHash()).getHash()).isEqualTo(block.getHash());
+        assertThat(headers.get(block.getHash()).isPresent()).isTrue();
+
+        headers.close();
+    }
+
+    @Test
+    public void testGetListHeadersEndWith_withHeaderStore() {
+        ByteArrayKeyValueDatabase headers = new MockDB("headers", log);
+        headers.open();
+
+        AionBlockStore store = new AionBlockStore(index, blocks, headers, false, 0, null);
+        for (Block block : consecutiveBlocks) {
+            store.saveBlock(block, block.getDifficultyBI(), true);
+        }
+
+        Block last = consecutiveBlocks.get(3);
+        List<BlockHeader> returned = store.getListHeadersEndWith(last.getHash(), 3);
+        assertThat(returned.size()).isEqualTo(3);
+        assertThat(returned.get(0).getHash()).isEqualTo(last.getHash());
+        assertThat(returned.get(1).getHash()).isEqualTo(consecutiveBlocks.get(2).getHash());
+        assertThat(returned.get(2).getHash()).isEqualTo(consecutiveBlocks.get(1).getHash());
+
+        headers.close();
+    }
+
+    /** Creates consecutive blocks starting with a block at height zero. */
+    private static List<Block> blocksFromGenesis(int count) {
+        List<Block> chain = new ArrayList<>();
+        byte[] parentHash = new byte[32];
+        for (int i = 0; i < count; i++) {
+            A0BlockHeader header =
+                    A0BlockHeader.Builder.newInstance()
+                            .withParentHash(parentHash)
+                            .withNumber(i)
+                            .withDifficulty(BigInteger.valueOf(16 + i).toByteArray())
+                            .withDefaultCoinbase()
+                            .withDefaultStateRoot()
+                            .withDefaultTxTrieRoot()
+                            .withDefaultReceiptTrieRoot()
+                            .withDefaultLogsBloom()
+                            .withDefaultExtraData()
+                            .withDefaultNonce()
+                            .withDefaultSolution()
+                            .build();
+            Block block = new AionBlock(header, Collections.emptyList());
+            chain.add(block);
+            parentHash = block.getHash();
+        }
+        return chain;
+    }
+
+    @Test
+    public void testCorrectMainChainTotalDifficulty() {
+        List<Block> chain = blocksFromGenesis(6);
+        AionBlockStore store = new AionBlockStore(index, blocks, false);
+
+        // the blocks after genesis are stored without their total difficulty
+        Block genesis = chain.get(0);
+        store.saveBlock(genesis, genesis.getDifficultyBI(), true);
+        for (int i = 1; i < chain.size(); i++) {
+            store.saveBlock(chain.get(i), BigInteger.ZERO, true);
+        }
+
+        // the update can be repeated with the same result
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThat(store.correctMainChainTotalDifficulty(4)).isEqualTo(BigInteger.valueOf(90));
+
+            BigInteger expected = BigInteger.ZERO;
+            for (int i = 0; i <= 4; i++) {
+                expected = expected.add(chain.get(i).getDifficultyBI());
+                assertThat(store.getTotalDifficultyForHash(chain.get(i).getHash()))
+                        .isEqualTo(expected);
+            }
+            // the blocks above the given level are not updated
+            assertThat(store.getTotalDifficultyForHash(chain.get(5).getHash()))
+                    .isEqualTo(BigInteger.ZERO);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCorrectMainChainTotalDifficulty_withMissingBlock() {
+        List<Block> chain = blocksFromGenesis(4);
+        AionBlockStore store = new AionBlockStore(index, blocks, false);
+
+        store.saveBlock(chain.get(0), chain.get(0).getDifficultyBI(), true);
+        store.saveBlock(chain.get(1), BigInteger.ZERO, true);
+        store.saveBlock(chain.get(3), BigInteger.ZERO, true);
+
+        store.correctMainChainTotalDifficulty(3);
+    }
 }
@@ -0,0 +1,87 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Unit tests for {@link DatabaseCheckpoint}. */
+public class DatabaseCheckpointTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatabaseCheckpoint createCheckpoint(File dir) throws IOException {
+        for (String name : List.of("state", "block")) {
+            File db = new File(dir, name);
+            assertThat(db.mkdirs()).isTrue();
+            Files.write(new File(db, "000001.sst").toPath(), new byte[] {1, 2, 3});
+            Files.write(new File(db, "MANIFEST-000001").toPath(), new byte[] {4, 5});
+        }
+
+        DatabaseCheckpoint checkpoint =
+                new DatabaseCheckpoint(
+                        10L,
+                        new byte[] {1, 1},
+                        new byte[] {2, 2},
+                        BigInteger.TEN,
+                        "rocksdb",
+                        List.of("state", "block"),
+                        1000L);
+        checkpoint.writeManifest(dir);
+        return checkpoint;
+    }
+
+    @Test
+    public void testManifest() throws IOException {
+        File dir = folder.newFolder("checkpoint");
+        DatabaseCheckpoint expected = createCheckpoint(dir);
+
+        DatabaseCheckpoint actual = DatabaseCheckpoint.readManifest(dir);
+        assertThat(actual.height).isEqualTo(expected.height);
+        assertThat(actual.hash).isEqualTo(expected.hash);
+        assertThat(actual.stateRoot).isEqualTo(expected.stateRoot);
+        assertThat(actual.totalDifficulty).isEqualTo(expected.totalDifficulty);
+        assertThat(actual.vendor).isEqualTo(expected.vendor);
+        assertThat(actual.databases).isEqualTo(expected.databases);
+        assertThat(actual.created).isEqualTo(expected.created);
+    }
+
+    @Test(expected = IOException.class)
+    public void testManifestMissing() throws IOException {
+        DatabaseCheckpoint.readManifest(folder.newFolder("empty"));
+    }
+
+    @Test
+    public void testRestore() throws IOException {
+        File dir = folder.newFolder("checkpoint");
+        createCheckpoint(dir);
+        File dbPath = new File(folder.getRoot(), "database");
+
+        DatabaseCheckpoint.restore(dir, dbPath);
+
+        for (String name : List.of("state", "block")) {
+            assertThat(Files.readAllBytes(new File(dbPath, name + "/000001.sst").toPath()))
+                    .isEqualTo(new byte[] {1, 2, 3});
+            assertThat(Files.readAllBytes(new File(dbPath, name + "/MANIFEST-000001").toPath()))
+                    .isEqualTo(new byte[] {4, 5});
+        }
+        assertThat(new File(dbPath, DatabaseCheckpoint.MANIFEST_FILE).exists()).isFalse();
+    }
+
+    @Test(expected = FileAlreadyExistsException.class)
+    public void testRestoreToNonEmptyDirectory() throws IOException {
+        File dir = folder.newFolder("checkpoint");
+        createCheckpoint(dir);
+        File dbPath = folder.newFolder("database");
+        assertThat(new File(dbPath, "state").mkdirs()).isTrue();
+
+        DatabaseCheckpoint.restore(dir, dbPath);
+    }
+}
@@ -0,0 +1,156 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.mcf.blockchain.Block;
+import org.junit.Test;
+
+/** Unit tests for {@link EncodedBlockCache}. */
+public class EncodedBlockCacheTest {
+
+    private static final int BLOCK_SIZE = 100;
+
+    private static byte[] hash(int chain, long number) {
+        byte[] hash = new byte[32];
+        hash[0] = (byte) chain;
+        hash[31] = (byte) number;
+        return hash;
+    }
+
+    /** Creates a block that can be told apart from the blocks on other chains by its encoding. */
+    private static Block block(int chain, long number) {
+        Block block = mock(Block.class);
+        when(block.getNumber()).thenReturn(number);
+        when(block.getHash()).thenReturn(hash(chain, number));
+        when(block.getParentHash()).thenReturn(hash(chain, number - 1));
+        byte[] encoding = new byte[BLOCK_SIZE];
+        encoding[0] = (byte) chain;
+        encoding[1] = (byte) number;
+        when(block.getEncoded()).thenReturn(encoding);
+        return block;
+    }
+
+    private static List<Block> chain(int chain, long from, long to) {
+        List<Block> blocks = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            blocks.add(block(chain, number));
+        }
+        return blocks;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_wZeroBytes() {
+        new EncodedBlockCache(0, 10);
+    }
+
+    @Test
+    public void testMainChainRange() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        List<Block> blocks = chain(1, 1, 5);
+        for (Block block : blocks) {
+            cache.put(block, true);
+        }
+
+        List<byte[]> ascending = cache.getMainChainRange(2, 4);
+        assertThat(ascending).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(ascending.get(i)).isEqualTo(blocks.get(i + 1).getEncoded());
+        }
+
+        List<byte[]> descending = cache.getMainChainRange(5, 1);
+        assertThat(descending).hasSize(5);
+        assertThat(descending.get(0)).isEqualTo(blocks.get(4).getEncoded());
+        assertThat(descending.get(4)).isEqualTo(blocks.get(0).getEncoded());
+
+        // missing heights are not served from the cache
+        assertThat(cache.getMainChainRange(4, 6)).isNull();
+    }
+
+    @Test
+    public void testSideChainBlocksNotInRange() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        for (Block block : chain(1, 1, 3)) {
+            cache.put(block, true);
+        }
+        cache.put(block(2, 2), false);
+
+        assertThat(cache.getMainChainRange(1, 3)).isNotNull();
+    }
+
+    @Test
+    public void testUnlinkedHeightsNotServed() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        cache.put(block(1, 1), true);
+        cache.put(block(2, 2), true);
+
+        assertThat(cache.getMainChainRange(1, 2)).isNull();
+        assertThat(cache.getMainChainRange(2, 1)).isNull();
+        assertThat(cache.getMainChainRange(2, 2)).isNotNull();
+    }
+
+    @Test
+    public void testInvalidateMainChain() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        for (Block block : chain(1, 1, 5)) {
+            cache.put(block, true);
+        }
+
+        cache.invalidateMainChainFrom(4);
+        assertThat(cache.getMainChainRange(1, 3)).isNotNull();
+        assertThat(cache.getMainChainRange(3, 4)).isNull();
+    }
+
+    @Test
+    public void testPutMainChain_skippedAfterInvalidation() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        List<Block> blocks = chain(1, 1, 3);
+
+        long generation = cache.generation();
+        cache.invalidateMainChainFrom(2);
+        List<byte[]> encodings = cache.putMainChain(blocks, generation);
+        assertThat(encodings).hasSize(3);
+        assertThat(cache.getMainChainRange(1, 3)).isNull();
+
+        cache.putMainChain(blocks, cache.generation());
+        assertThat(cache.getMainChainRange(1, 3)).isNotNull();
+    }
+
+    @Test
+    public void testBodies() {
+        EncodedBlockCache cache = new EncodedBlockCache(100_000, 100);
+        Block block = block(1, 1);
+        assertThat(cache.getEncodedBody(block.getHash())).isNull();
+
+        byte[] body = new byte[] {1, 2, 3};
+        cache.putBody(block, body);
+        assertThat(cache.getEncodedBody(block.getHash())).isEqualTo(body);
+        // the block encoding is not known yet
+        assertThat(cache.bytes()).isEqualTo(3);
+
+        cache.put(block, true);
+        assertThat(cache.bytes()).isEqualTo(3 + BLOCK_SIZE);
+        assertThat(cache.getMainChainRange(1, 1)).isNotNull();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        EncodedBlockCache cache = new EncodedBlockCache(3 * BLOCK_SIZE, 100);
+        List<Block> blocks = chain(1, 1, 3);
+        for (Block block : blocks) {
+            cache.put(block, true);
+        }
+
+        // reading the first block makes the second one the least recently used
+        assertThat(cache.getMainChainRange(1, 1)).isNotNull();
+        cache.put(block(1, 4), true);
+
+        assertThat(cache.bytes()).isEqualTo(3 * BLOCK_SIZE);
+        assertThat(cache.getMainChainRange(1, 1)).isNotNull();
+        assertThat(cache.getMainChainRange(2, 2)).isNull();
+        assertThat(cache.getMainChainRange(3, 4)).isNotNull();
+    }
+}
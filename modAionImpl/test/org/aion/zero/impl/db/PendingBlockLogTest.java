@@ -0,0 +1,130 @@
+package org.aion.zero.impl.db;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.db.DatabaseUtils.deleteRecursively;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link PendingBlockLog}. */
+public class PendingBlockLogTest {
+
+    private File dir;
+
+    @Before
+    public void setup() {
+        dir = new File(System.getProperty("user.dir"), "tmp-log-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() {
+        if (dir.exists()) {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static byte[] bytes(int value, int length) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_wZeroSegmentSize() throws IOException {
+        new PendingBlockLog(null, 0, Collections.emptyMap());
+    }
+
+    @Test
+    public void testAppendAndRead_inMemory() throws IOException {
+        PendingBlockLog log = new PendingBlockLog(null, 100, Collections.emptyMap());
+
+        int[] offsets = new int[2];
+        int segment = log.append(List.of(bytes(1, 10), bytes(2, 20)), offsets);
+        log.retain(segment);
+
+        assertThat(offsets[0]).isEqualTo(0);
+        assertThat(offsets[1]).isEqualTo(10);
+        assertThat(toBytes(log.read(segment, offsets[0], 10))).isEqualTo(bytes(1, 10));
+        assertThat(toBytes(log.read(segment, offsets[1], 20))).isEqualTo(bytes(2, 20));
+        assertThat(log.read(segment + 1, 0, 10)).isNull();
+    }
+
+    @Test
+    public void testAppend_rollsSegments() throws IOException {
+        PendingBlockLog log = new PendingBlockLog(null, 100, Collections.emptyMap());
+
+        int[] offsets = new int[1];
+        int first = log.append(List.of(bytes(1, 60)), offsets);
+        log.retain(first);
+        int second = log.append(List.of(bytes(2, 60)), offsets);
+        log.retain(second);
+        assertThat(second).isNotEqualTo(first);
+        assertThat(offsets[0]).isEqualTo(0);
+
+        // ranges larger than the segment size are stored in dedicated segments
+        int third = log.append(List.of(bytes(3, 250)), offsets);
+        log.retain(third);
+        assertThat(toBytes(log.read(third, 0, 250))).isEqualTo(bytes(3, 250));
+        assertThat(log.getSegmentCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testRelease_deletesSegment() throws IOException {
+        PendingBlockLog log = new PendingBlockLog(dir, 100, Collections.emptyMap());
+
+        int[] offsets = new int[1];
+        int segment = log.append(List.of(bytes(1, 10)), offsets);
+        log.retain(segment);
+        log.append(List.of(bytes(2, 10)), offsets);
+        log.retain(segment);
+        assertThat(dir.list().length).isEqualTo(1);
+
+        log.release(segment);
+        assertThat(log.getSegmentCount()).isEqualTo(1);
+        log.release(segment);
+        assertThat(log.getSegmentCount()).isEqualTo(0);
+        assertThat(dir.list().length).isEqualTo(0);
+
+        // a new segment is started for the next range
+        int next = log.append(List.of(bytes(3, 10)), offsets);
+        assertThat(next).isNotEqualTo(segment);
+        assertThat(offsets[0]).isEqualTo(0);
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        PendingBlockLog log = new PendingBlockLog(dir, 100, Collections.emptyMap());
+
+        int[] offsets = new int[1];
+        int first = log.append(List.of(bytes(1, 60)), offsets);
+        log.retain(first);
+        int second = log.append(List.of(bytes(2, 60)), offsets);
+        log.retain(second);
+        log.close();
+
+        // only the first segment still has stored ranges
+        log = new PendingBlockLog(dir, 100, Map.of(first, 1));
+        assertThat(log.getSegmentCount()).isEqualTo(1);
+        assertThat(dir.list().length).isEqualTo(1);
+        assertThat(toBytes(log.read(first, 0, 60))).isEqualTo(bytes(1, 60));
+
+        // new ranges do not reuse the identifiers of existing segments
+        int third = log.append(List.of(bytes(3, 10)), offsets);
+        assertThat(third).isGreaterThan(second);
+        log.close();
+    }
+}
@@ -107,6 +107,12 @@ public class PendingBlockStoreTest {
         assertThat(pb.getIndexSize()).isEqualTo(4);
         assertThat(pb.getLevelSize()).isEqualTo(1);
         assertThat(pb.getQueueSize()).isEqualTo(1);
+        assertThat(pb.getSegmentCount()).isEqualTo(1);
+
+        // check persistence of the block data
+        Block first = range.get(0);
+        Map<ByteArrayWrapper, List<Block>> actual = pb.loadBlockRange(first.getNumber());
+        assertThat(actual.get(ByteArrayWrapper.wrap(first.getHash()))).isEqualTo(range);
 
         pb.close();
 
@@ -311,12 +317,13 @@ public class PendingBlockStoreTest {
 
         // test drop functionality
         Map<ByteArrayWrapper, List<Block>> actual = pb.loadBlockRange(first.getNumber());
-        pb.dropPendingQueues(first.getNumber(), actual.keySet(), actual);
+        pb.dropPendingQueues(first.getNumber(), actual.keySet());
 
         // check storage after drop functionality
         assertThat(pb.getIndexSize()).isEqualTo(0);
         assertThat(pb.getLevelSize()).isEqualTo(0);
         assertThat(pb.getQueueSize()).isEqualTo(0);
+        assertThat(pb.getSegmentCount()).isEqualTo(0);
     }
 
     @Test
@@ -355,7 +362,7 @@ public class PendingBlockStoreTest {
 
         // test drop functionality
         Map<ByteArrayWrapper, List<Block>> actual = pb.loadBlockRange(first.getNumber());
-        pb.dropPendingQueues(first.getNumber(), actual.keySet(), actual);
+        pb.dropPendingQueues(first.getNumber(), actual.keySet());
     }
 
     @Test
@@ -393,12 +400,68 @@ public class PendingBlockStoreTest {
         Map<ByteArrayWrapper, List<Block>> actual = pb.loadBlockRange(first.getNumber());
         List<ByteArrayWrapper> queues = new ArrayList<>();
         queues.add(ByteArrayWrapper.wrap(first.getHash()));
-        pb.dropPendingQueues(first.getNumber(), queues, actual);
+        pb.dropPendingQueues(first.getNumber(), queues);
 
         // check storage after drop functionality
         assertThat(pb.getIndexSize()).isEqualTo(1);
         assertThat(pb.getLevelSize()).isEqualTo(1);
         assertThat(pb.getQueueSize()).isEqualTo(1);
+        // the segment still holds the side chain
+        assertThat(pb.getSegmentCount()).isEqualTo(1);
+        actual = pb.loadBlockRange(first.getNumber());
+        assertThat(actual.get(ByteArrayWrapper.wrap(altBlock.getHash()))).isEqualTo(sideChain);
+    }
+
+    @Test
+    public void testDropPendingQueues_wPersistentDB() {
+        File dir = new File(System.getProperty("user.dir"), "tmp-" + System.currentTimeMillis());
+
+        Properties props = new Properties();
+        props.setProperty(Props.DB_TYPE, DBVendor.PERSISTENTMOCKDB.toValue());
+        props.setProperty(Props.DB_PATH, dir.getAbsolutePath());
+        props.setProperty(Props.DB_NAME, "pbTest");
+
+        PendingBlockStore pb = null;
+        try {
+            pb = new PendingBlockStore(props);
+        } catch (InvalidFilePathException | IOException | InvalidFileTypeException e) {
+            e.printStackTrace();
+        }
+        assertThat(pb.isOpen()).isTrue();
+
+        List<Block> blocks = TestResources.consecutiveBlocks(6);
+        Block first = blocks.get(0);
+        assertThat(pb.addBlockRange(blocks)).isEqualTo(6);
+        pb.close();
+
+        // each restart starts a new segment
+        try {
+            pb = new PendingBlockStore(props);
+        } catch (InvalidFilePathException | IOException | InvalidFileTypeException e) {
+            e.printStackTrace();
+        }
+        AionBlock altBlock = (AionBlock) BlockUtil.newBlockFromRlp(first.getEncoded());
+        A0BlockHeader newHeader = A0BlockHeader.Builder.newInstance().withHeader(altBlock.getHeader()).withExtraData("random".getBytes()).build();
+        altBlock.updateHeader(newHeader);
+        List<Block> sideChain = new ArrayList<>();
+        sideChain.add(altBlock);
+        assertThat(pb.addBlockRange(sideChain)).isEqualTo(1);
+        assertThat(pb.getSegmentCount()).isEqualTo(2);
+
+        // dropping the first queue deletes its segment
+        List<ByteArrayWrapper> queues = new ArrayList<>();
+        queues.add(ByteArrayWrapper.wrap(first.getHash()));
+        pb.dropPendingQueues(first.getNumber(), queues);
+        assertThat(pb.getSegmentCount()).isEqualTo(1);
+        assertThat(new File(dir, "pbTest/segments").list().length).isEqualTo(1);
+
+        Map<ByteArrayWrapper, List<Block>> actual = pb.loadBlockRange(first.getNumber());
+        assertThat(actual.size()).isEqualTo(1);
+        assertThat(actual.get(ByteArrayWrapper.wrap(altBlock.getHash()))).isEqualTo(sideChain);
+
+        pb.close();
+
+        assertThat(deleteRecursively(dir)).isTrue();
     }
 
     @Test(expected = InvalidFileTypeException.class)
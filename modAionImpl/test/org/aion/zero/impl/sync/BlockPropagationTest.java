@@ -13,6 +13,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypes;
 import org.aion.crypto.ECKey;
 import org.aion.crypto.ECKeyFac;
 import org.aion.crypto.HashUtil;
@@ -24,6 +26,7 @@ import org.aion.p2p.INode;
 import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.IPeerMetric;
 import org.aion.p2p.Msg;
+import org.aion.types.AionAddress;
 import org.aion.zero.impl.blockchain.AionImpl;
 import org.aion.zero.impl.blockchain.AionImpl.NetworkBestBlockCallback;
 import org.aion.zero.impl.blockchain.AionImpl.PendingTxCallback;
@@ -31,6 +34,9 @@ import org.aion.zero.impl.blockchain.AionImpl.TransactionBroadcastCallback;
 import org.aion.zero.impl.blockchain.StandaloneBlockchain;
 import org.aion.zero.impl.pendingState.AionPendingStateImpl;
 import org.aion.zero.impl.sync.handler.BlockPropagationHandler;
+import org.aion.zero.impl.sync.msg.CompactBlock;
+import org.aion.zero.impl.sync.msg.RequestBlockTxs;
+import org.aion.zero.impl.sync.msg.ResponseBlockTxs;
 import org.aion.zero.impl.types.AionBlock;
 import org.junit.Test;
 
@@ -591,8 +597,216 @@ public class BlockPropagationTest {
         assertThat(handler.processIncomingBlock(senderMock.getIdHash(), "test", block))
                 .isEqualTo(BlockPropagationHandler.PropStatus.DROPPED);
 
-        // we expect the counter to be incremented once (on propagation)
-        assertThat(sendCount.get()).isEqualTo(1);
+        // we expect the counter to be incremented on propagation only, once for the full block and
+        // once for its compact form since the peer is not known to support compact blocks yet
+        assertThat(sendCount.get()).isEqualTo(2);
+    }
+
+    /** Test that a block extending the best block is relayed before it is imported. */
+    @Test
+    public void testFastRelayBeforeImport() throws InterruptedException {
+        List<ECKey> accounts = generateDefaultAccounts();
+
+        StandaloneBlockchain.Bundle bundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+
+        AionBlock block =
+                bundle.bc.createNewMiningBlock(bundle.bc.getGenesis(), Collections.EMPTY_LIST, true);
+
+        NodeMock senderMock = new NodeMock(HashUtil.h256("node1".getBytes()), 1);
+        NodeMock receiverMock = new NodeMock(HashUtil.h256("receiver".getBytes()), 0);
+        Map<Integer, INode> node = new HashMap<>();
+        node.put(1, senderMock);
+        node.put(2, receiverMock);
+
+        AtomicInteger times = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        P2pMock p2pMock =
+                new P2pMock(node) {
+                    @Override
+                    public void send(int _nodeId, String s, Msg _msg) {
+                        if (_nodeId != receiverMock.getIdHash()) {
+                            throw new RuntimeException("should only send to receiver");
+                        }
+                        times.getAndIncrement();
+                    }
+
+                    @Override
+                    public void errCheck(int nodeIdHashcode, String _displayId) {
+                        errors.getAndIncrement();
+                    }
+                };
+
+        StandaloneBlockchain.Bundle anotherBundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+        anotherBundle.bc.setEventManager(this.loadEventMgr());
+
+        SyncStats syncStats = new SyncStats(bundle.bc.getBestBlock().getNumber(), true);
+        BlockPropagationHandler handler = newHandler(anotherBundle, p2pMock, syncStats, true);
+
+        assertThat(handler.processIncomingBlock(senderMock.getIdHash(), "test", block))
+                .isEqualTo(BlockPropagationHandler.PropStatus.PROPAGATED);
+        assertThat(times.get()).isEqualTo(2);
+
+        // the block is imported in the background
+        for (int i = 0; i < 100 && anotherBundle.bc.getBestBlock().getNumber() == 0; i++) {
+            Thread.sleep(50);
+        }
+        handler.shutdown();
+        assertThat(anotherBundle.bc.getBestBlock().getHash()).isEqualTo(block.getHash());
+        assertThat(errors.get()).isEqualTo(0);
+    }
+
+    private BlockPropagationHandler newHandler(
+            StandaloneBlockchain.Bundle bundle, IP2pMgr p2p, SyncStats syncStats) {
+        return newHandler(bundle, p2p, syncStats, false);
+    }
+
+    private BlockPropagationHandler newHandler(
+            StandaloneBlockchain.Bundle bundle,
+            IP2pMgr p2p,
+            SyncStats syncStats,
+            boolean fastRelay) {
+        return new BlockPropagationHandler(
+                1024,
+                bundle.bc,
+                syncStats,
+                p2p,
+                bundle.bc.getBlockHeaderValidator(),
+                false,
+                (byte) 2,
+                new AionPendingStateImpl(
+                        bundle.bc,
+                        blockEnergyUpperBound,
+                        pendingTransactionTimeout,
+                        transactionCacheSizeMax,
+                        enablePoolBackup,
+                        enableSeedMode,
+                        enablePoolDump,
+                        new PendingTxCallback(new ArrayList<>()),
+                        new NetworkBestBlockCallback(AionImpl.inst()),
+                        new TransactionBroadcastCallback(AionImpl.inst()),
+                        true),
+                fastRelay);
+    }
+
+    /** Test that a compact block is reassembled when no transactions are missing */
+    @Test
+    public void testCompactBlockWithoutMissingTransactions() {
+        List<ECKey> accounts = generateDefaultAccounts();
+
+        StandaloneBlockchain.Bundle bundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+
+        AionBlock block =
+                bundle.bc.createNewMiningBlock(bundle.bc.getGenesis(), Collections.EMPTY_LIST, true);
+
+        NodeMock senderMock = new NodeMock(HashUtil.h256("node1".getBytes()), 1);
+        Map<Integer, INode> node = new HashMap<>();
+        node.put(1, senderMock);
+
+        P2pMock p2pMock =
+                new P2pMock(node) {
+                    @Override
+                    public void send(int _nodeId, String s, Msg _msg) {
+                        throw new RuntimeException("should not have called send");
+                    }
+                };
+
+        StandaloneBlockchain.Bundle anotherBundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+        anotherBundle.bc.setEventManager(this.loadEventMgr());
+        BlockPropagationHandler handler =
+                newHandler(anotherBundle, p2pMock, new SyncStats(block.getNumber(), true));
+
+        CompactBlock compactBlock = CompactBlock.decode(CompactBlock.of(block).encode());
+        assertThat(handler.processCompactBlock(senderMock.getIdHash(), "test", compactBlock))
+                .isEqualTo(BlockPropagationHandler.PropStatus.CONNECTED);
+        assertThat(anotherBundle.bc.getBestBlock().getHash()).isEqualTo(block.getHash());
+    }
+
+    /** Test that the missing transactions of a compact block are requested from the sender */
+    @Test
+    public void testCompactBlockRequestsMissingTransactions() {
+        List<ECKey> accounts = generateDefaultAccounts();
+
+        StandaloneBlockchain.Bundle bundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+
+        AionTransaction tx =
+                AionTransaction.create(
+                        accounts.get(0),
+                        BigInteger.ZERO.toByteArray(),
+                        new AionAddress(accounts.get(1).getAddress()),
+                        BigInteger.ONE.toByteArray(),
+                        new byte[0],
+                        21_000L,
+                        10_000_000_000L,
+                        TransactionTypes.DEFAULT,
+                        null);
+        AionBlock block =
+                bundle.bc.createNewMiningBlock(
+                        bundle.bc.getGenesis(), Collections.singletonList(tx), true);
+        assertThat(block.getTransactionsList()).hasSize(1);
+
+        NodeMock senderMock = new NodeMock(HashUtil.h256("node1".getBytes()), 1);
+        Map<Integer, INode> node = new HashMap<>();
+        node.put(1, senderMock);
+
+        List<Msg> sent = new ArrayList<>();
+        P2pMock p2pMock =
+                new P2pMock(node) {
+                    @Override
+                    public void send(int _nodeId, String s, Msg _msg) {
+                        sent.add(_msg);
+                    }
+                };
+
+        StandaloneBlockchain.Bundle anotherBundle =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build();
+        anotherBundle.bc.setEventManager(this.loadEventMgr());
+        BlockPropagationHandler handler =
+                newHandler(anotherBundle, p2pMock, new SyncStats(block.getNumber(), true));
+
+        // the transaction is not in the pool of the receiver
+        assertThat(
+                        handler.processCompactBlock(
+                                senderMock.getIdHash(), "test", CompactBlock.of(block)))
+                .isEqualTo(BlockPropagationHandler.PropStatus.REQUESTED);
+        assertThat(sent).hasSize(1);
+        RequestBlockTxs request = RequestBlockTxs.decode(sent.get(0).encode());
+        assertThat(request.getBlockHash()).isEqualTo(block.getHash());
+        assertThat(request.getIndexes()).isEqualTo(new int[] {0});
+
+        // the response from another peer is ignored
+        ResponseBlockTxs response =
+                ResponseBlockTxs.decode(
+                        new ResponseBlockTxs(block.getHash(), block.getTransactionsList())
+                                .encode());
+        assertThat(handler.processBlockTxsResponse(2, "other", response))
+                .isEqualTo(BlockPropagationHandler.PropStatus.DROPPED);
+
+        assertThat(handler.processBlockTxsResponse(senderMock.getIdHash(), "test", response))
+                .isEqualTo(BlockPropagationHandler.PropStatus.CONNECTED);
+        assertThat(anotherBundle.bc.getBestBlock().getHash()).isEqualTo(block.getHash());
     }
 
     private IEventMgr loadEventMgr() {
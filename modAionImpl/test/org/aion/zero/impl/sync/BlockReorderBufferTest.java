@@ -0,0 +1,138 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.mcf.blockchain.Block;
+import org.junit.Test;
+
+/** Unit tests for {@link BlockReorderBuffer}. */
+public class BlockReorderBufferTest {
+
+    private static final int BLOCK_SIZE = 100;
+
+    /** Creates a batch with the blocks in the given range of heights. */
+    private static BlocksWrapper batch(int peer, long from, long to) {
+        List<Block> blocks = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            Block block = mock(Block.class);
+            when(block.getNumber()).thenReturn(number);
+            when(block.size()).thenReturn(BLOCK_SIZE);
+            blocks.add(block);
+        }
+        return new BlocksWrapper(peer, "peer" + peer, blocks);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zeroHeights() {
+        new BlockReorderBuffer(0, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zeroBytes() {
+        new BlockReorderBuffer(64, 0);
+    }
+
+    @Test
+    public void testTakeInAscendingOrder() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 100_000);
+
+        assertThat(buffer.offer(batch(1, 31, 40), 0)).isTrue();
+        assertThat(buffer.offer(batch(2, 1, 10), 0)).isTrue();
+        assertThat(buffer.offer(batch(3, 21, 30), 0)).isTrue();
+        assertThat(buffer.offer(batch(4, 11, 20), 0)).isTrue();
+        assertThat(buffer.size()).isEqualTo(4);
+        assertThat(buffer.bytes()).isEqualTo(40 * BLOCK_SIZE);
+
+        for (long first = 1; first <= 31; first += 10) {
+            assertThat(buffer.take().firstBlockNumber).isEqualTo(first);
+        }
+        assertThat(buffer.size()).isEqualTo(0);
+        assertThat(buffer.bytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void testSameHeightInOrderAdded() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 100_000);
+
+        assertThat(buffer.offer(batch(1, 5, 10), 0)).isTrue();
+        assertThat(buffer.offer(batch(2, 5, 12), 0)).isTrue();
+
+        assertThat(buffer.take().nodeId).isEqualTo(1);
+        assertThat(buffer.take().nodeId).isEqualTo(2);
+    }
+
+    @Test
+    public void testBeyondWindowRejected() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 100_000);
+
+        // the window covers the heights from 100 to 163
+        assertThat(buffer.offer(batch(1, 163, 170), 99)).isTrue();
+        assertThat(buffer.offer(batch(1, 164, 170), 99)).isFalse();
+
+        // the window moves with the best block
+        assertThat(buffer.offer(batch(1, 164, 170), 100)).isTrue();
+    }
+
+    @Test
+    public void testBatchesBelowWindowTakenFirst() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 100_000);
+
+        assertThat(buffer.offer(batch(1, 50, 60), 0)).isTrue();
+        assertThat(buffer.offer(batch(2, 30, 40), 0)).isTrue();
+        // the best block moved beyond both batches, which could belong to forks
+        assertThat(buffer.offer(batch(3, 101, 110), 100)).isTrue();
+        assertThat(buffer.offer(batch(4, 20, 25), 100)).isTrue();
+
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(20);
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(30);
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(50);
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(101);
+    }
+
+    @Test
+    public void testMemoryLimitRejectsLaterBatches() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 15 * BLOCK_SIZE);
+
+        assertThat(buffer.offer(batch(1, 11, 20), 0)).isTrue();
+        assertThat(buffer.offer(batch(2, 21, 30), 0)).isFalse();
+        assertThat(buffer.size()).isEqualTo(1);
+
+        // a batch larger than the limit is accepted by an empty buffer
+        buffer.take();
+        assertThat(buffer.offer(batch(2, 21, 40), 0)).isTrue();
+    }
+
+    @Test
+    public void testNextBatchWaitsForSpace() throws InterruptedException {
+        BlockReorderBuffer buffer = new BlockReorderBuffer(64, 15 * BLOCK_SIZE);
+        assertThat(buffer.offer(batch(1, 11, 20), 0)).isTrue();
+
+        AtomicBoolean added = new AtomicBoolean(false);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer =
+                new Thread(
+                        () -> {
+                            try {
+                                added.set(buffer.offer(batch(2, 1, 10), 0));
+                            } catch (InterruptedException e) {
+                                // not expected
+                            }
+                            done.countDown();
+                        });
+        producer.start();
+
+        assertThat(done.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(11);
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(added.get()).isTrue();
+        assertThat(buffer.take().firstBlockNumber).isEqualTo(1);
+    }
+}
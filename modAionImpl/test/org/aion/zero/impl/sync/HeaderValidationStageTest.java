@@ -0,0 +1,128 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.mcf.blockchain.BlockHeader.BlockSealType;
+import org.aion.zero.impl.valid.BlockHeaderRule;
+import org.aion.zero.impl.valid.BlockHeaderValidator;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Unit tests for {@link HeaderValidationStage}. */
+public class HeaderValidationStageTest {
+
+    private static final Logger log = LoggerFactory.getLogger("SYNC");
+
+    private final Set<Long> invalidNumbers = ConcurrentHashMap.newKeySet();
+    private final Set<Long> checkedNumbers = ConcurrentHashMap.newKeySet();
+    private final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    private HeaderValidationStage stage;
+
+    /** Creates a stage that rejects the headers with numbers in {@link #invalidNumbers}. */
+    private HeaderValidationStage createStage(int threads) {
+        BlockHeaderRule rule =
+                (header, errors) -> {
+                    checkedNumbers.add(header.getNumber());
+                    threadNames.add(Thread.currentThread().getName());
+                    if (header.getNumber() < 0) {
+                        throw new IllegalStateException("negative number");
+                    }
+                    return !invalidNumbers.contains(header.getNumber());
+                };
+        Map<BlockSealType, List<BlockHeaderRule>> rules = new HashMap<>();
+        rules.put(BlockSealType.SEAL_POW_BLOCK, Collections.singletonList(rule));
+        stage = new HeaderValidationStage(new BlockHeaderValidator(rules), threads, log);
+        return stage;
+    }
+
+    private static List<BlockHeader> headers(long from, long to) {
+        List<BlockHeader> headers = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            BlockHeader header = mock(BlockHeader.class);
+            when(header.getNumber()).thenReturn(number);
+            when(header.getSealType()).thenReturn(BlockSealType.SEAL_POW_BLOCK);
+            headers.add(header);
+        }
+        return headers;
+    }
+
+    @After
+    public void teardown() {
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreads() {
+        createStage(-1);
+    }
+
+    @Test
+    public void testAllValid() throws InterruptedException {
+        assertThat(createStage(3).findFirstInvalid(headers(1, 96))).isEqualTo(-1);
+        assertThat(checkedNumbers).hasSize(96);
+    }
+
+    @Test
+    public void testEmptyBatch() throws InterruptedException {
+        assertThat(createStage(3).findFirstInvalid(new ArrayList<>())).isEqualTo(-1);
+    }
+
+    @Test
+    public void testSmallBatchCheckedByCaller() throws InterruptedException {
+        assertThat(createStage(3).findFirstInvalid(headers(1, 10))).isEqualTo(-1);
+        assertThat(threadNames).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    public void testLargeBatchSplitAcrossThreads() throws InterruptedException {
+        assertThat(createStage(3).findFirstInvalid(headers(1, 96))).isEqualTo(-1);
+        assertThat(threadNames.size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testFirstInvalidIsReported() throws InterruptedException {
+        // invalid headers in the last and second chunks
+        invalidNumbers.add(90L);
+        invalidNumbers.add(30L);
+        invalidNumbers.add(31L);
+
+        assertThat(createStage(3).findFirstInvalid(headers(1, 96))).isEqualTo(29);
+    }
+
+    @Test
+    public void testFirstInvalidWithoutThreads() throws InterruptedException {
+        invalidNumbers.add(90L);
+        invalidNumbers.add(30L);
+
+        assertThat(createStage(0).findFirstInvalid(headers(1, 96))).isEqualTo(29);
+        // the headers after the invalid one are not checked
+        assertThat(checkedNumbers).hasSize(30);
+    }
+
+    @Test
+    public void testRuleFailureIsInvalid() throws InterruptedException {
+        assertThat(createStage(3).findFirstInvalid(headers(-1, 94))).isEqualTo(0);
+    }
+
+    @Test
+    public void testUsableAfterShutdown() throws InterruptedException {
+        createStage(3).shutdown();
+
+        invalidNumbers.add(50L);
+        assertThat(stage.findFirstInvalid(headers(1, 96))).isEqualTo(49);
+    }
+}
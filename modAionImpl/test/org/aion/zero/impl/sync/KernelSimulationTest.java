@@ -0,0 +1,207 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateAccounts;
+import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateNextMiningBlock;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.aion.base.AionTransaction;
+import org.aion.base.TransactionTypes;
+import org.aion.base.TxUtil;
+import org.aion.crypto.ECKey;
+import org.aion.mcf.blockchain.Block;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl.sim.LinkProfile;
+import org.aion.p2p.impl.sim.SimNetwork;
+import org.aion.p2p.impl.sim.SimReport;
+import org.aion.types.AionAddress;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.core.ImportResult;
+import org.aion.zero.impl.sync.msg.BroadcastTx;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs kernels backed by {@link org.aion.zero.impl.blockchain.StandaloneBlockchain} instances
+ * against each other on a {@link SimNetwork} and reports the time they need to exchange
+ * transactions and blocks.
+ */
+public class KernelSimulationTest {
+
+    private static final int KERNELS = 3;
+    private static final long TIMEOUT_MS = TimeUnit.SECONDS.toMillis(60);
+
+    private final List<ECKey> accounts = generateAccounts(2);
+    private final List<SimKernel> kernels = new ArrayList<>();
+    private SimNetwork network;
+
+    @After
+    public void tearDown() {
+        for (SimKernel kernel : kernels) {
+            kernel.shutdown();
+        }
+        if (network != null) {
+            network.close();
+        }
+    }
+
+    private void createKernels(LinkProfile link) throws Exception {
+        network = new SimNetwork(KERNELS, link, 7L, true);
+        for (int i = 0; i < KERNELS; i++) {
+            kernels.add(new SimKernel(network.get(i), accounts));
+        }
+    }
+
+    private void startNetwork() throws Exception {
+        network.start();
+        assertThat(network.awaitConnected(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private boolean allAtBlock(long number) {
+        for (SimKernel kernel : kernels) {
+            if (kernel.getBestBlockNumber() < number) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<AionTransaction> transactions(int count) {
+        List<AionTransaction> txs = new ArrayList<>();
+        AionAddress to = new AionAddress(accounts.get(1).getAddress());
+        for (int i = 0; i < count; i++) {
+            txs.add(
+                    AionTransaction.create(
+                            accounts.get(0),
+                            BigInteger.valueOf(i).toByteArray(),
+                            to,
+                            BigInteger.ONE.toByteArray(),
+                            new byte[0],
+                            21_000L,
+                            10_000_000_000L,
+                            TransactionTypes.DEFAULT,
+                            null));
+        }
+        return txs;
+    }
+
+    @Test
+    public void testTransactionBroadcast() throws Exception {
+        createKernels(LinkProfile.UNLIMITED.withLatency(10));
+
+        // the transactions are added to the pool of the first kernel only, see SimKernel
+        List<Set<ByteArrayWrapper>> received = new ArrayList<>();
+        for (SimKernel kernel : kernels) {
+            Set<ByteArrayWrapper> hashes = ConcurrentHashMap.newKeySet();
+            received.add(hashes);
+            kernel.p2pMgr.register(
+                    Collections.singletonList(
+                            new Handler(Ver.V0, Ctrl.SYNC, Act.BROADCAST_TX) {
+                                @Override
+                                public void receive(int _id, String _displayId, byte[] _msg) {
+                                    for (byte[] raw : BroadcastTx.decode(_msg)) {
+                                        AionTransaction tx = TxUtil.decode(raw);
+                                        hashes.add(ByteArrayWrapper.wrap(tx.getTransactionHash()));
+                                    }
+                                }
+                            }));
+        }
+        startNetwork();
+
+        int count = 200;
+        network.beginMeasurement();
+        kernels.get(0).pendingState.addTransactionsFromNetwork(transactions(count));
+
+        boolean delivered =
+                await(
+                        () -> {
+                            for (int i = 1; i < KERNELS; i++) {
+                                if (received.get(i).size() < count) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        });
+        SimReport report = network.endMeasurement("tx-broadcast", (long) count * (KERNELS - 1));
+        System.out.println(report);
+
+        assertThat(kernels.get(0).pendingState.getPendingTxSize()).isEqualTo(count);
+        assertThat(delivered).isTrue();
+    }
+
+    @Test
+    public void testBlockPropagation() throws Exception {
+        createKernels(LinkProfile.UNLIMITED.withLatency(10).withBandwidth(10 * 1024 * 1024));
+        startNetwork();
+
+        SimKernel producer = kernels.get(0);
+        Block block =
+                generateNextMiningBlock(
+                        producer.chain, producer.chain.getBestBlock(), transactions(50));
+        assertThat(producer.chain.tryToConnect(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+
+        network.beginMeasurement();
+        producer.propHandler.propagateNewBlock(block);
+
+        boolean propagated = await(() -> allAtBlock(block.getNumber()));
+        SimReport report = network.endMeasurement("block-propagation", KERNELS - 1);
+        System.out.println(report);
+
+        assertThat(propagated).isTrue();
+        for (SimKernel kernel : kernels) {
+            assertThat(kernel.chain.getBestBlock().getHash()).isEqualTo(block.getHash());
+        }
+    }
+
+    @Test
+    public void testHeaderAndBodySync() throws Exception {
+        createKernels(
+                LinkProfile.UNLIMITED
+                        .withLatency(20)
+                        .withBandwidth(5 * 1024 * 1024)
+                        .withLoss(0.01));
+
+        // the other kernels start from genesis and must download the chain
+        SimKernel source = kernels.get(0);
+        int blocks = 60;
+        for (int i = 0; i < blocks; i++) {
+            Block block =
+                    generateNextMiningBlock(
+                            source.chain, source.chain.getBestBlock(), Collections.emptyList());
+            assertThat(source.chain.tryToConnect(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+        }
+        startNetwork();
+
+        network.beginMeasurement();
+        boolean synced = await(() -> allAtBlock(blocks));
+        SimReport report =
+                network.endMeasurement("header-body-sync", (long) blocks * (KERNELS - 1));
+        System.out.println(report);
+
+        assertThat(synced).isTrue();
+        for (SimKernel kernel : kernels) {
+            assertThat(kernel.chain.getBestBlock().getHash())
+                    .isEqualTo(source.chain.getBestBlock().getHash());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateAccounts;
+import static org.aion.zero.impl.blockchain.BlockchainTestUtils.generateNextBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.aion.crypto.ECKey;
+import org.aion.mcf.blockchain.Block;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.core.ImportResult;
+import org.aion.zero.impl.sync.statistics.SyncMetrics;
+import org.aion.zero.impl.types.A0BlockHeader;
+import org.aion.zero.impl.types.AionBlock;
+import org.aion.zero.impl.vm.AvmTestConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Unit tests for {@link PipelinedBlockImporter}. */
+public class PipelinedBlockImporterTest {
+
+    private static final Logger log = LoggerFactory.getLogger("SYNC");
+
+    private final List<ECKey> accounts = generateAccounts(10);
+    private PipelinedBlockImporter importer;
+
+    @Before
+    public void setup() {
+        AvmTestConfig.supportOnlyAvmVersion1();
+    }
+
+    @After
+    public void tearDown() {
+        if (importer != null) {
+            importer.shutdown();
+        }
+        AvmTestConfig.clearConfigurations();
+    }
+
+    private StandaloneBlockchain createChain() {
+        return new StandaloneBlockchain.Builder()
+                .withValidatorConfiguration("simple")
+                .withDefaultAccounts(accounts)
+                .build()
+                .bc;
+    }
+
+    /** Creates blocks with transactions on a separate chain with the same genesis. */
+    private List<Block> generateBlocks(int count) {
+        StandaloneBlockchain sourceChain = createChain();
+        List<Block> blocks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Block block = generateNextBlock(sourceChain, accounts, 10);
+            assertThat(sourceChain.tryToConnect(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeThreads() {
+        new PipelinedBlockImporter(createChain(), -1, log);
+    }
+
+    @Test
+    public void testImportPreparedBatch() {
+        List<Block> blocks = generateBlocks(10);
+        StandaloneBlockchain chain = createChain();
+        SyncMetrics metrics = new SyncMetrics();
+        importer = new PipelinedBlockImporter(chain, 2, metrics, log);
+
+        importer.prepare(blocks);
+        for (Block block : blocks) {
+            assertThat(importer.importBlock(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+        }
+        assertThat(chain.getBestBlock().getHash()).isEqualTo(blocks.get(9).getHash());
+
+        SyncMetrics.Snapshot snapshot = metrics.getSnapshot();
+        assertThat(snapshot.importedBlocks).isEqualTo(10);
+        assertThat(snapshot.blockImport.count).isEqualTo(10);
+        assertThat(snapshot.blockValidation.count).isAtMost(10L);
+    }
+
+    @Test
+    public void testImportWithoutPreparation() {
+        List<Block> blocks = generateBlocks(5);
+        StandaloneBlockchain chain = createChain();
+        importer = new PipelinedBlockImporter(chain, 0, log);
+
+        importer.prepare(blocks);
+        for (Block block : blocks) {
+            assertThat(importer.importBlock(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+        }
+        assertThat(chain.getBestBlock().getHash()).isEqualTo(blocks.get(4).getHash());
+    }
+
+    @Test
+    public void testPreparationCancelledByNextBatch() {
+        List<Block> blocks = generateBlocks(6);
+        StandaloneBlockchain chain = createChain();
+        importer = new PipelinedBlockImporter(chain, 1, log);
+
+        importer.prepare(blocks.subList(3, 6));
+        importer.prepare(blocks);
+        for (Block block : blocks) {
+            assertThat(importer.importBlock(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+        }
+    }
+
+    @Test
+    public void testPreparedChecksNotReusedForOtherObject() {
+        AionBlock block = (AionBlock) generateBlocks(1).get(0);
+        StandaloneBlockchain chain = createChain();
+
+        // the same header with a different list of transactions
+        chain.prevalidate(block);
+        Block altered =
+                new AionBlock((A0BlockHeader) block.getHeader(), Collections.emptyList());
+        assertThat(chain.tryToConnect(altered)).isEqualTo(ImportResult.INVALID_BLOCK);
+
+        assertThat(chain.tryToConnect(block)).isEqualTo(ImportResult.IMPORTED_BEST);
+    }
+}
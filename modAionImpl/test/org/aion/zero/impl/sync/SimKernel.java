@@ -0,0 +1,175 @@
+package org.aion.zero.impl.sync;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import org.aion.base.AionTransaction;
+import org.aion.crypto.ECKey;
+import org.aion.evtmgr.EventMgrModule;
+import org.aion.evtmgr.IEventMgr;
+import org.aion.log.AionLoggerFactory;
+import org.aion.log.LogEnum;
+import org.aion.p2p.Handler;
+import org.aion.p2p.impl1.P2pMgr;
+import org.aion.zero.impl.blockchain.AionImpl.NetworkBestBlockCallback;
+import org.aion.zero.impl.blockchain.AionImpl.PendingTxCallback;
+import org.aion.zero.impl.blockchain.AionImpl.TransactionBroadcastCallback;
+import org.aion.zero.impl.blockchain.IAionChain;
+import org.aion.zero.impl.blockchain.StandaloneBlockchain;
+import org.aion.zero.impl.pendingState.AionPendingStateImpl;
+import org.aion.zero.impl.sync.handler.AnnounceTxHandler;
+import org.aion.zero.impl.sync.handler.BlockPropagationHandler;
+import org.aion.zero.impl.sync.handler.BroadcastNewBlockHandler;
+import org.aion.zero.impl.sync.handler.BroadcastTxHandler;
+import org.aion.zero.impl.sync.handler.CompactBlockHandler;
+import org.aion.zero.impl.sync.handler.ReqBlocksBodiesHandler;
+import org.aion.zero.impl.sync.handler.ReqBlocksHeadersHandler;
+import org.aion.zero.impl.sync.handler.ReqStatusHandler;
+import org.aion.zero.impl.sync.handler.RequestBlockTxsHandler;
+import org.aion.zero.impl.sync.handler.RequestTxHandler;
+import org.aion.zero.impl.sync.handler.ResBlocksBodiesHandler;
+import org.aion.zero.impl.sync.handler.ResBlocksHeadersHandler;
+import org.aion.zero.impl.sync.handler.ResStatusHandler;
+import org.aion.zero.impl.sync.handler.ResponseBlockTxsHandler;
+import org.aion.zero.impl.tx.TxGossip;
+import org.slf4j.Logger;
+
+/**
+ * The sync and propagation components of a kernel wired to a {@link StandaloneBlockchain} and to
+ * one of the nodes of a {@link org.aion.p2p.impl.sim.SimNetwork}, with the same handlers as {@link
+ * org.aion.zero.impl.blockchain.AionHub}.
+ *
+ * @implNote The transaction validation cache is shared by all the kernels of the JVM, so only the
+ *     first kernel to see a transaction adds it to its pool.
+ */
+final class SimKernel {
+
+    private static final byte API_VERSION = 2;
+
+    private static final Logger syncLog = AionLoggerFactory.getLogger(LogEnum.SYNC.name());
+    private static final Logger surveyLog = AionLoggerFactory.getLogger(LogEnum.SURVEY.name());
+
+    final StandaloneBlockchain chain;
+    final P2pMgr p2pMgr;
+    final SyncMgr syncMgr;
+    final AionPendingStateImpl pendingState;
+    final TxGossip txGossip;
+    final BlockPropagationHandler propHandler;
+
+    /**
+     * Creates the kernel and registers its handlers. The node must be started afterwards.
+     *
+     * @param accounts the accounts funded in the genesis block, which must be the same for all the
+     *     kernels of a network
+     */
+    SimKernel(P2pMgr p2pMgr, List<ECKey> accounts) {
+        this.p2pMgr = p2pMgr;
+        this.chain =
+                new StandaloneBlockchain.Builder()
+                        .withValidatorConfiguration("simple")
+                        .withDefaultAccounts(accounts)
+                        .build()
+                        .bc;
+        IEventMgr eventMgr = loadEventMgr();
+        chain.setEventManager(eventMgr);
+
+        this.txGossip = new TxGossip(p2pMgr, AionLoggerFactory.getLogger(LogEnum.TX.name()));
+
+        IAionChain aionChain = mock(IAionChain.class);
+        doAnswer(
+                        invocation -> {
+                            List<AionTransaction> txs = invocation.getArgument(0);
+                            txGossip.broadcast(txs);
+                            return null;
+                        })
+                .when(aionChain)
+                .broadcastTransactions(anyList());
+        when(aionChain.getNetworkBestBlockNumber())
+                .thenAnswer(invocation -> Optional.of(this.syncMgr.getNetworkBestBlockNumber()));
+
+        this.pendingState =
+                new AionPendingStateImpl(
+                        chain,
+                        20_000_000L,
+                        3600,
+                        256,
+                        false,
+                        false,
+                        false,
+                        new PendingTxCallback(new ArrayList<>()),
+                        new NetworkBestBlockCallback(aionChain),
+                        new TransactionBroadcastCallback(aionChain),
+                        false);
+
+        this.syncMgr =
+                new SyncMgr(
+                        chain,
+                        p2pMgr,
+                        eventMgr,
+                        false,
+                        Collections.emptySet(),
+                        p2pMgr.getMaxActiveNodes(),
+                        chain.getBlockHeaderValidator());
+
+        this.propHandler =
+                new BlockPropagationHandler(
+                        1024,
+                        chain,
+                        syncMgr.getSyncStats(),
+                        p2pMgr,
+                        chain.getBlockHeaderValidator(),
+                        false,
+                        API_VERSION,
+                        pendingState);
+
+        List<Handler> cbs = new ArrayList<>();
+        cbs.add(
+                new ReqStatusHandler(
+                        syncLog,
+                        chain,
+                        pendingState,
+                        p2pMgr,
+                        chain.getGenesis().getHash(),
+                        API_VERSION));
+        cbs.add(new ResStatusHandler(syncLog, surveyLog, p2pMgr, syncMgr));
+        cbs.add(new ReqBlocksHeadersHandler(syncLog, chain, p2pMgr, false));
+        cbs.add(new ResBlocksHeadersHandler(syncLog, surveyLog, syncMgr, p2pMgr));
+        cbs.add(new ReqBlocksBodiesHandler(syncLog, chain, syncMgr, p2pMgr, false));
+        cbs.add(new ResBlocksBodiesHandler(syncLog, surveyLog, syncMgr, p2pMgr));
+        cbs.add(new BroadcastTxHandler(syncLog, pendingState, p2pMgr, txGossip, false));
+        cbs.add(new AnnounceTxHandler(syncLog, txGossip, p2pMgr, false));
+        cbs.add(new RequestTxHandler(syncLog, txGossip, p2pMgr, false));
+        cbs.add(new BroadcastNewBlockHandler(syncLog, surveyLog, propHandler, p2pMgr));
+        cbs.add(new CompactBlockHandler(syncLog, propHandler, p2pMgr));
+        cbs.add(new RequestBlockTxsHandler(syncLog, propHandler, p2pMgr));
+        cbs.add(new ResponseBlockTxsHandler(syncLog, propHandler, p2pMgr));
+        p2pMgr.register(cbs);
+    }
+
+    private static IEventMgr loadEventMgr() {
+        ServiceLoader.load(EventMgrModule.class);
+        Properties prop = new Properties();
+        prop.put(EventMgrModule.MODULENAME, "org.aion.evtmgr.impl.mgr.EventMgrA0");
+        try {
+            return EventMgrModule.getSingleton(prop).getEventMgr();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load the Event Manager Module", e);
+        }
+    }
+
+    long getBestBlockNumber() {
+        return chain.getBestBlock().getNumber();
+    }
+
+    void shutdown() {
+        syncMgr.shutdown();
+    }
+}
@@ -0,0 +1,246 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.sync.SkeletonHeaderSync.MIN_DISTANCE;
+import static org.aion.zero.impl.sync.SkeletonHeaderSync.STEP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.aion.mcf.blockchain.Block;
+import org.aion.mcf.blockchain.BlockHeader;
+import org.aion.mcf.blockchain.BlockHeader.BlockSealType;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
+import org.aion.zero.impl.sync.msg.ReqBlocksHeaders;
+import org.aion.zero.impl.sync.msg.RequestSkeleton;
+import org.aion.zero.impl.sync.statistics.PeerScoreTracker;
+import org.aion.zero.impl.valid.BlockHeaderRule;
+import org.aion.zero.impl.valid.BlockHeaderValidator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Unit tests for {@link SkeletonHeaderSync}. */
+public class SkeletonHeaderSyncTest {
+
+    private static final Logger log = LoggerFactory.getLogger("SYNC");
+    private static final BigInteger LOCAL_TD = BigInteger.TEN;
+
+    private IP2pMgr p2p;
+    private PeerScoreTracker peerScores;
+    private BlockingQueue<HeadersWrapper> downloadedHeaders;
+    private SkeletonHeaderSync skeletonSync;
+    private Map<Integer, INode> peers;
+    private Block localBest;
+
+    @Before
+    public void setup() {
+        p2p = mock(IP2pMgr.class);
+        peers = new HashMap<>();
+        when(p2p.getActiveNodes()).thenReturn(peers);
+
+        // only proof of work headers are valid
+        Map<BlockSealType, List<BlockHeaderRule>> rules = new HashMap<>();
+        rules.put(BlockSealType.SEAL_POW_BLOCK, new ArrayList<>());
+        BlockHeaderValidator validator = new BlockHeaderValidator(rules);
+
+        peerScores = new PeerScoreTracker();
+        downloadedHeaders = new LinkedBlockingQueue<>(100);
+        skeletonSync = new SkeletonHeaderSync(log, p2p, peerScores, validator, downloadedHeaders);
+
+        localBest = mock(Block.class);
+        when(localBest.getNumber()).thenReturn(100L);
+        when(localBest.getHash()).thenReturn(hash(100, 0));
+    }
+
+    /** Creates a hash for the block with the given number on the given chain. */
+    private static byte[] hash(long number, int chain) {
+        return ByteBuffer.allocate(32).putLong(number).putInt(chain).array();
+    }
+
+    private static BlockHeader header(long number, int chain) {
+        BlockHeader header = mock(BlockHeader.class);
+        when(header.getNumber()).thenReturn(number);
+        when(header.getHash()).thenReturn(hash(number, chain));
+        when(header.getParentHash()).thenReturn(hash(number - 1, chain));
+        when(header.getSealType()).thenReturn(BlockSealType.SEAL_POW_BLOCK);
+        return header;
+    }
+
+    private static List<BlockHeader> headers(long from, long to, int chain) {
+        List<BlockHeader> headers = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            headers.add(header(number, chain));
+        }
+        return headers;
+    }
+
+    private INode addPeer(int id, long best, long td) {
+        INode peer = mock(INode.class);
+        when(peer.getIdHash()).thenReturn(id);
+        when(peer.getIdShort()).thenReturn("peer" + id);
+        when(peer.getBestBlockNumber()).thenReturn(best);
+        when(peer.getTotalDifficulty()).thenReturn(BigInteger.valueOf(td));
+        peers.put(id, peer);
+        return peer;
+    }
+
+    /** Returns the messages sent to the given peer. */
+    private List<Msg> sentTo(int peerId, int count) {
+        ArgumentCaptor<Msg> captor = ArgumentCaptor.forClass(Msg.class);
+        verify(p2p, times(count)).send(eq(peerId), anyString(), captor.capture());
+        return captor.getAllValues();
+    }
+
+    /** Requests a skeleton of three headers from peer 1 and delivers it. */
+    private void deliverSkeleton() {
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isTrue();
+        List<BlockHeader> skeleton = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            skeleton.add(header(100 + i * STEP, 0));
+        }
+        skeletonSync.validateAndAddSkeleton(1, "peer1", skeleton, 0);
+    }
+
+    @Test
+    public void testNotUsedCloseToTheTop() {
+        addPeer(1, 100 + MIN_DISTANCE - 1, 20);
+
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isFalse();
+        verify(p2p, times(0)).send(anyInt(), anyString(), any());
+    }
+
+    @Test
+    public void testSkeletonRequestedFromHighestTotalDifficulty() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        addPeer(2, 100 + 100 * STEP, 20);
+
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isTrue();
+
+        RequestSkeleton request = (RequestSkeleton) sentTo(1, 1).get(0);
+        assertThat(request.getStart()).isEqualTo(100 + STEP);
+        assertThat(request.getStep()).isEqualTo(STEP);
+        assertThat(request.getCount()).isEqualTo(3 + MIN_DISTANCE / STEP);
+
+        // no other requests until the skeleton is received
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isTrue();
+        verify(p2p, times(1)).send(anyInt(), anyString(), any());
+    }
+
+    @Test
+    public void testGapsReleasedInOrder() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        deliverSkeleton();
+
+        // the skeleton request and the first two gaps from the same peer
+        List<Msg> sent = sentTo(1, 3);
+        assertThat(((ReqBlocksHeaders) sent.get(1)).getFromBlock()).isEqualTo(101);
+        assertThat(((ReqBlocksHeaders) sent.get(1)).getTake()).isEqualTo(STEP);
+        assertThat(((ReqBlocksHeaders) sent.get(2)).getFromBlock()).isEqualTo(101 + STEP);
+
+        // the second gap is kept until the first one arrives
+        assertThat(
+                        skeletonSync.validateAndAddGap(
+                                1, "peer1", headers(101 + STEP, 100 + 2 * STEP, 0)))
+                .isTrue();
+        assertThat(downloadedHeaders).isEmpty();
+
+        assertThat(skeletonSync.validateAndAddGap(1, "peer1", headers(101, 100 + STEP, 0)))
+                .isTrue();
+        long expected = 101;
+        List<Integer> sizes = new ArrayList<>();
+        for (HeadersWrapper wrapper : downloadedHeaders) {
+            assertThat(wrapper.headers.get(0).getNumber()).isEqualTo(expected);
+            expected += wrapper.size;
+            sizes.add(wrapper.size);
+        }
+        assertThat(expected).isEqualTo(101 + 2 * STEP);
+        // consecutive chunks have distinct sizes to allow matching the bodies
+        for (int i = 1; i < sizes.size(); i++) {
+            assertThat(sizes.get(i)).isNotEqualTo(sizes.get(i - 1));
+        }
+
+        // the third gap was requested once the peer had room for another request
+        sent = sentTo(1, 4);
+        assertThat(((ReqBlocksHeaders) sent.get(3)).getFromBlock()).isEqualTo(101 + 2 * STEP);
+    }
+
+    @Test
+    public void testGapNotLinkedToSkeleton() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        deliverSkeleton();
+        addPeer(2, 100 + 3 * STEP + MIN_DISTANCE, 20);
+
+        // the second gap from a different chain
+        double score = peerScores.getScore(1);
+        assertThat(
+                        skeletonSync.validateAndAddGap(
+                                1, "peer1", headers(101 + STEP, 100 + 2 * STEP, 1)))
+                .isTrue();
+        assertThat(peerScores.getScore(1)).isLessThan(score);
+
+        // requested again from the other peer together with the third gap
+        List<Msg> sent = sentTo(2, 2);
+        assertThat(((ReqBlocksHeaders) sent.get(0)).getFromBlock()).isEqualTo(101 + STEP);
+        assertThat(((ReqBlocksHeaders) sent.get(1)).getFromBlock()).isEqualTo(101 + 2 * STEP);
+    }
+
+    @Test
+    public void testUnrequestedHeadersAreNotConsumed() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        addPeer(2, 100 + 3 * STEP + MIN_DISTANCE, 20);
+        deliverSkeleton();
+
+        assertThat(skeletonSync.validateAndAddGap(3, "peer3", headers(101, 100 + STEP, 0)))
+                .isFalse();
+        assertThat(skeletonSync.validateAndAddGap(1, "peer1", headers(150, 160, 0))).isFalse();
+    }
+
+    @Test
+    public void testLocalChainNotLinkedFallsBack() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        deliverSkeleton();
+
+        // the first gap does not link to the local best block
+        List<BlockHeader> gap = headers(101, 100 + STEP, 0);
+        when(gap.get(0).getParentHash()).thenReturn(hash(100, 1));
+        double score = peerScores.getScore(1);
+        assertThat(skeletonSync.validateAndAddGap(1, "peer1", gap)).isTrue();
+
+        assertThat(peerScores.getScore(1)).isEqualTo(score);
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isFalse();
+    }
+
+    @Test
+    public void testInvalidSkeletonIsRequestedAgain() {
+        addPeer(1, 100 + 3 * STEP + MIN_DISTANCE, 30);
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isTrue();
+
+        // the headers must be spaced by the step
+        List<BlockHeader> skeleton = new ArrayList<>();
+        skeleton.add(header(100 + STEP, 0));
+        skeleton.add(header(101 + 2 * STEP, 0));
+        skeletonSync.validateAndAddSkeleton(1, "peer1", skeleton, 0);
+
+        assertThat(skeletonSync.sendRequests(localBest, LOCAL_TD)).isTrue();
+        List<Msg> sent = sentTo(1, 2);
+        assertThat(sent.get(1)).isInstanceOf(RequestSkeleton.class);
+    }
+}
@@ -0,0 +1,151 @@
+package org.aion.zero.impl.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.sync.TrieDataScheduler.REQUEST_TIMEOUT_NANOS;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.aion.types.AionAddress;
+import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.sync.TrieDataScheduler.NodeKey;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link TrieDataScheduler}. */
+public class TrieDataSchedulerTest {
+
+    private static final int MAX_RATE = 5;
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private TrieDataScheduler scheduler;
+
+    @Before
+    public void setup() {
+        scheduler = new TrieDataScheduler(MAX_RATE);
+    }
+
+    private static NodeKey key(DatabaseType type, int value) {
+        byte[] bytes = new byte[32];
+        bytes[31] = (byte) value;
+        return new NodeKey(type, ByteArrayWrapper.wrap(bytes), null);
+    }
+
+    @Test
+    public void testAddIgnoresDuplicates() {
+        assertThat(scheduler.add(key(DatabaseType.STATE, 1))).isTrue();
+        assertThat(scheduler.add(key(DatabaseType.STATE, 1))).isFalse();
+        // the same key is distinct in a different database
+        assertThat(scheduler.add(key(DatabaseType.STORAGE, 1))).isTrue();
+        assertThat(scheduler.getQueuedCount()).isEqualTo(2);
+
+        scheduler.next(1, 10, 0);
+        assertThat(scheduler.add(key(DatabaseType.STATE, 1))).isFalse();
+        assertThat(scheduler.getQueuedCount()).isEqualTo(0);
+        assertThat(scheduler.getOutstandingCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testNextFollowsPriority() {
+        scheduler.add(key(DatabaseType.STATE, 1));
+        scheduler.add(key(DatabaseType.STORAGE, 2));
+        scheduler.add(key(DatabaseType.DETAILS, 3));
+        scheduler.add(key(DatabaseType.GRAPH, 4));
+
+        assertThat(scheduler.next(1, 10, 0))
+                .containsExactly(
+                        key(DatabaseType.DETAILS, 3),
+                        key(DatabaseType.GRAPH, 4),
+                        key(DatabaseType.STORAGE, 2),
+                        key(DatabaseType.STATE, 1))
+                .inOrder();
+    }
+
+    @Test
+    public void testNextRespectsLimits() {
+        for (int i = 0; i < 20; i++) {
+            scheduler.add(key(DatabaseType.STATE, i));
+        }
+
+        // limited by the outstanding requests
+        assertThat(scheduler.next(1, 3, 0)).hasSize(3);
+        assertThat(scheduler.next(1, 3, 0)).isEmpty();
+
+        // limited by the rate within the same second
+        scheduler.received(key(DatabaseType.STATE, 0));
+        scheduler.received(key(DatabaseType.STATE, 1));
+        scheduler.received(key(DatabaseType.STATE, 2));
+        assertThat(scheduler.next(1, 10, SECOND / 2)).hasSize(MAX_RATE - 3);
+        assertThat(scheduler.next(1, 10, SECOND / 2)).isEmpty();
+
+        // the rate is reset after one second
+        assertThat(scheduler.next(1, 10, SECOND)).hasSize(MAX_RATE);
+
+        // other peers are not affected
+        assertThat(scheduler.next(2, 10, SECOND)).hasSize(MAX_RATE);
+    }
+
+    @Test
+    public void testReceived() {
+        NodeKey queued = key(DatabaseType.STATE, 1);
+        NodeKey requested = key(DatabaseType.STATE, 2);
+        scheduler.add(requested);
+        scheduler.next(1, 10, 0);
+        scheduler.add(queued);
+
+        assertThat(scheduler.received(requested)).isTrue();
+        assertThat(scheduler.received(requested)).isFalse();
+        assertThat(scheduler.received(queued)).isTrue();
+        assertThat(scheduler.received(key(DatabaseType.STATE, 3))).isFalse();
+        assertThat(scheduler.isIdle()).isTrue();
+    }
+
+    @Test
+    public void testExpire() {
+        scheduler.add(key(DatabaseType.STATE, 1));
+        scheduler.next(1, 1, 0);
+        scheduler.add(key(DatabaseType.STATE, 2));
+        scheduler.next(1, 2, 1);
+
+        assertThat(scheduler.expire(REQUEST_TIMEOUT_NANOS)).isEmpty();
+        assertThat(scheduler.expire(REQUEST_TIMEOUT_NANOS + 1))
+                .containsExactly(key(DatabaseType.STATE, 1));
+        assertThat(scheduler.getOutstandingCount()).isEqualTo(1);
+
+        // the expired keys are no longer pending and the peer can take new requests
+        assertThat(scheduler.getPending(DatabaseType.STATE, key(DatabaseType.STATE, 1).key))
+                .isNull();
+        scheduler.add(key(DatabaseType.STATE, 3));
+        assertThat(scheduler.next(1, 2, SECOND)).containsExactly(key(DatabaseType.STATE, 3));
+    }
+
+    @Test
+    public void testRetainPeersRequeuesRequests() {
+        scheduler.add(key(DatabaseType.STATE, 1));
+        scheduler.add(key(DatabaseType.STATE, 2));
+        scheduler.next(1, 1, 0);
+        scheduler.next(2, 1, 0);
+
+        scheduler.retainPeers(List.of(2));
+
+        assertThat(scheduler.getQueuedCount()).isEqualTo(1);
+        assertThat(scheduler.getOutstandingCount()).isEqualTo(1);
+        assertThat(scheduler.next(3, 10, 0)).containsExactly(key(DatabaseType.STATE, 1));
+    }
+
+    @Test
+    public void testPendingKeepsOwner() {
+        AionAddress owner = new AionAddress(new byte[AionAddress.LENGTH]);
+        NodeKey withOwner =
+                new NodeKey(DatabaseType.STORAGE, key(DatabaseType.STORAGE, 1).key, owner);
+        scheduler.add(withOwner);
+
+        NodeKey queued = scheduler.getPending(DatabaseType.STORAGE, withOwner.key);
+        assertThat(queued.owner).isEqualTo(owner);
+
+        scheduler.next(1, 10, 0);
+        NodeKey requested = scheduler.getPending(DatabaseType.STORAGE, withOwner.key);
+        assertThat(requested.owner).isEqualTo(owner);
+        assertThat(scheduler.getOutstanding(1, DatabaseType.STORAGE)).isEqualTo(withOwner);
+        assertThat(scheduler.getOutstanding(2, DatabaseType.STORAGE)).isNull();
+    }
+}
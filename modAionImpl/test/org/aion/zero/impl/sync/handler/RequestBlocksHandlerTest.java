@@ -7,6 +7,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -149,7 +150,7 @@ public class RequestBlocksHandlerTest {
         when(log.isDebugEnabled()).thenReturn(true);
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
-        when(chain.getBlocksByRange(10L, 1L)).thenReturn(null);
+        when(chain.getEncodedBlocksByRange(10L, 1L)).thenReturn(null);
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -166,7 +167,7 @@ public class RequestBlocksHandlerTest {
 
         verify(log, times(1))
                 .debug("<request-blocks from-block={} count={} order={}>", 10L, 10, "DESC");
-        verify(chain, times(1)).getBlocksByRange(10L, 1L);
+        verify(chain, times(1)).getEncodedBlocksByRange(10L, 1L);
         verifyZeroInteractions(p2p);
     }
 
@@ -199,7 +200,7 @@ public class RequestBlocksHandlerTest {
                         10,
                         "DESC");
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(0)).getBlocksByRange(10L, 1L);
+        verify(chain, times(0)).getEncodedBlocksByRange(10L, 1L);
         verifyZeroInteractions(p2p);
     }
 
@@ -214,7 +215,7 @@ public class RequestBlocksHandlerTest {
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         when(chain.getBlockByHash(hash)).thenReturn(first);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber())).thenReturn(null);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber())).thenReturn(null);
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -236,7 +237,7 @@ public class RequestBlocksHandlerTest {
                         4,
                         "ASC");
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(List.of(first));
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -249,7 +250,7 @@ public class RequestBlocksHandlerTest {
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         Exception e = new NullPointerException();
-        when(chain.getBlocksByRange(10L, 1L)).thenThrow(e);
+        when(chain.getEncodedBlocksByRange(10L, 1L)).thenThrow(e);
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -267,7 +268,7 @@ public class RequestBlocksHandlerTest {
         verify(log, times(1))
                 .debug("<request-blocks from-block={} count={} order={}>", 10L, 10, "DESC");
         verify(log).error("<request-blocks value retrieval failed>", e);
-        verify(chain, times(1)).getBlocksByRange(10L, 1L);
+        verify(chain, times(1)).getEncodedBlocksByRange(10L, 1L);
         verifyZeroInteractions(p2p);
     }
 
@@ -283,7 +284,7 @@ public class RequestBlocksHandlerTest {
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         when(chain.getBlockByHash(hash)).thenReturn(first);
         Exception e = new NullPointerException();
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber())).thenThrow(e);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber())).thenThrow(e);
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -307,7 +308,7 @@ public class RequestBlocksHandlerTest {
         verify(log).error("<request-blocks value retrieval failed>", e);
 
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(List.of(first));
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -316,6 +317,14 @@ public class RequestBlocksHandlerTest {
     // returns a list of blocks in ascending order of height
     List<Block> consecutiveBlocks = TestResources.consecutiveBlocks(4);
 
+    private static List<byte[]> encode(List<Block> blocks) {
+        List<byte[]> encodings = new ArrayList<>();
+        for (Block block : blocks) {
+            encodings.add(block.getEncoded());
+        }
+        return encodings;
+    }
+
     @Test
     public void testReceive_correctMessage_ascending_withHeight() {
         Block first = consecutiveBlocks.get(0);
@@ -325,8 +334,8 @@ public class RequestBlocksHandlerTest {
         when(log.isDebugEnabled()).thenReturn(true);
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber()))
-                .thenReturn(consecutiveBlocks);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber()))
+                .thenReturn(encode(consecutiveBlocks));
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -342,7 +351,7 @@ public class RequestBlocksHandlerTest {
                         first.getNumber(),
                         4,
                         "ASC");
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(consecutiveBlocks);
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -359,8 +368,8 @@ public class RequestBlocksHandlerTest {
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         when(chain.getBlockByHash(hash)).thenReturn(first);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber()))
-                .thenReturn(consecutiveBlocks);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber()))
+                .thenReturn(encode(consecutiveBlocks));
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -377,7 +386,7 @@ public class RequestBlocksHandlerTest {
                         4,
                         "ASC");
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(consecutiveBlocks);
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -397,7 +406,8 @@ public class RequestBlocksHandlerTest {
         when(log.isDebugEnabled()).thenReturn(true);
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber())).thenReturn(reverse);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber()))
+                .thenReturn(encode(reverse));
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -413,7 +423,7 @@ public class RequestBlocksHandlerTest {
                         first.getNumber(),
                         4,
                         "DESC");
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(reverse);
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -435,7 +445,8 @@ public class RequestBlocksHandlerTest {
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         when(chain.getBlockByHash(hash)).thenReturn(first);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber())).thenReturn(reverse);
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber()))
+                .thenReturn(encode(reverse));
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -452,7 +463,7 @@ public class RequestBlocksHandlerTest {
                         4,
                         "DESC");
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(reverse);
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -469,7 +480,8 @@ public class RequestBlocksHandlerTest {
 
         IAionBlockchain chain = mock(AionBlockchainImpl.class);
         when(chain.getBlockByHash(hash)).thenReturn(first);
-        when(chain.getBlocksByRange(first.getNumber(), last.getNumber())).thenReturn(List.of(last));
+        when(chain.getEncodedBlocksByRange(first.getNumber(), last.getNumber()))
+                .thenReturn(List.of(last.getEncoded()));
 
         IP2pMgr p2p = mock(P2pMgr.class);
 
@@ -486,7 +498,7 @@ public class RequestBlocksHandlerTest {
                         4,
                         "ASC");
         verify(chain, times(1)).getBlockByHash(hash);
-        verify(chain, times(1)).getBlocksByRange(first.getNumber(), last.getNumber());
+        verify(chain, times(1)).getEncodedBlocksByRange(first.getNumber(), last.getNumber());
 
         ResponseBlocks expectedResponse = new ResponseBlocks(List.of(first));
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
@@ -2,6 +2,7 @@ package org.aion.zero.impl.sync.handler;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.aion.p2p.V1Constants.TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE;
+import static org.aion.zero.impl.sync.DatabaseType.DETAILS;
 import static org.aion.zero.impl.sync.DatabaseType.STATE;
 import static org.aion.zero.impl.sync.msg.RequestTrieDataTest.nodeKey;
 import static org.aion.zero.impl.sync.msg.ResponseTrieDataTest.leafValue;
@@ -15,10 +16,13 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.Ver;
 import org.aion.p2p.impl1.P2pMgr;
 import org.aion.rlp.RLP;
+import org.aion.util.types.ByteArrayWrapper;
 import org.aion.zero.impl.blockchain.AionBlockchainImpl;
 import org.aion.zero.impl.blockchain.IAionBlockchain;
 import org.aion.zero.impl.sync.Act;
@@ -258,4 +262,39 @@ public class RequestTrieDataHandlerTest {
                 new ResponseTrieData(wrappedNodeKey, leafValue, singleReference, STATE);
         verify(p2p, times(1)).send(peerId, displayId, expectedResponse);
     }
+
+    @Test
+    public void testReceive_contractEnumeration() {
+        Logger log = mock(Logger.class);
+
+        IAionBlockchain chain = mock(AionBlockchainImpl.class);
+        when(chain.getContractDetailsFrom(nodeKey, TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE))
+                .thenAnswer(
+                        invocation -> {
+                            Map<ByteArrayWrapper, byte[]> details = new LinkedHashMap<>();
+                            details.put(wrappedNodeKey, leafValue);
+                            return details;
+                        });
+
+        IP2pMgr p2p = mock(P2pMgr.class);
+
+        RequestTrieDataHandler handler = new RequestTrieDataHandler(log, chain, p2p);
+
+        // a limit of zero requests the contracts starting with the given key
+        byte[] encoding =
+                RLP.encodeList(
+                        RLP.encodeElement(nodeKey),
+                        RLP.encodeString(DETAILS.toString()),
+                        RLP.encodeInt(0));
+        handler.receive(peerId, displayId, encoding);
+        // consecutive pages are served without delay
+        handler.receive(peerId, displayId, encoding);
+
+        verify(chain, times(2))
+                .getContractDetailsFrom(nodeKey, TRIE_DATA_REQUEST_MAXIMUM_BATCH_SIZE);
+
+        ResponseTrieData expectedResponse =
+                new ResponseTrieData(wrappedNodeKey, leafValue, new LinkedHashMap<>(), DETAILS);
+        verify(p2p, times(2)).send(peerId, displayId, expectedResponse);
+    }
 }
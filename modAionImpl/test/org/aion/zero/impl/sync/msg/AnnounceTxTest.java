@@ -0,0 +1,75 @@
+package org.aion.zero.impl.sync.msg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.zero.impl.sync.Act;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Test;
+
+/** Unit tests for {@link AnnounceTx} and {@link RequestTx} messages. */
+public class AnnounceTxTest {
+
+    private static List<byte[]> hashes(int count) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hashes.add(RandomUtils.nextBytes(AnnounceTx.HASH_SIZE));
+        }
+        return hashes;
+    }
+
+    @Test
+    public void testHeader() {
+        AnnounceTx announce = new AnnounceTx(hashes(1));
+        assertThat(announce.getHeader().getVer()).isEqualTo(Ver.V0);
+        assertThat(announce.getHeader().getCtrl()).isEqualTo(Ctrl.SYNC);
+        assertThat(announce.getHeader().getAction()).isEqualTo(Act.ANNOUNCE_TX);
+        assertThat(announce.getPriority()).isEqualTo(SendPriority.TX);
+
+        RequestTx request = new RequestTx(hashes(1));
+        assertThat(request.getHeader().getVer()).isEqualTo(Ver.V0);
+        assertThat(request.getHeader().getCtrl()).isEqualTo(Ctrl.SYNC);
+        assertThat(request.getHeader().getAction()).isEqualTo(Act.REQUEST_TX);
+        assertThat(request.getPriority()).isEqualTo(SendPriority.TX);
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        List<byte[]> hashes = hashes(AnnounceTx.MAX_HASHES);
+
+        AnnounceTx announce = AnnounceTx.decode(new AnnounceTx(hashes).encode());
+        assertThat(announce).isNotNull();
+        assertEqualHashes(hashes, announce.getTxHashes());
+
+        RequestTx request = RequestTx.decode(new RequestTx(hashes).encode());
+        assertThat(request).isNotNull();
+        assertEqualHashes(hashes, request.getTxHashes());
+    }
+
+    private static void assertEqualHashes(List<byte[]> expected, List<byte[]> actual) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i)).isEqualTo(expected.get(i));
+        }
+    }
+
+    @Test
+    public void testDecodeInvalid() {
+        byte[] tooMany = new AnnounceTx(hashes(AnnounceTx.MAX_HASHES + 1)).encode();
+        byte[] partial = RandomUtils.nextBytes(AnnounceTx.HASH_SIZE + 1);
+
+        assertThat(AnnounceTx.decode(null)).isNull();
+        assertThat(AnnounceTx.decode(new byte[0])).isNull();
+        assertThat(AnnounceTx.decode(partial)).isNull();
+        assertThat(AnnounceTx.decode(tooMany)).isNull();
+
+        assertThat(RequestTx.decode(null)).isNull();
+        assertThat(RequestTx.decode(new byte[0])).isNull();
+        assertThat(RequestTx.decode(partial)).isNull();
+        assertThat(RequestTx.decode(tooMany)).isNull();
+    }
+}
@@ -0,0 +1,67 @@
+package org.aion.zero.impl.sync.msg;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.aion.p2p.Ver;
+import org.aion.rlp.RLP;
+import org.aion.zero.impl.sync.Act;
+import org.junit.Test;
+
+/** Unit tests for {@link RequestSkeleton} messages. */
+public class RequestSkeletonTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zeroStart() {
+        new RequestSkeleton(0, 10, 96);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativeCount() {
+        new RequestSkeleton(1, -10, 96);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_zeroStep() {
+        new RequestSkeleton(1, 10, 0);
+    }
+
+    @Test
+    public void testHeader_newObject() {
+        RequestSkeleton message = new RequestSkeleton(1, 10, 96);
+        // check message header
+        assertThat(message.getHeader().getVer()).isEqualTo(Ver.V1);
+        assertThat(message.getHeader().getAction()).isEqualTo(Act.REQUEST_SKELETON);
+    }
+
+    @Test
+    public void testDecode_nullMessage() {
+        assertThat(RequestSkeleton.decode(null)).isNull();
+        assertThat(RequestSkeleton.decode(new byte[0])).isNull();
+    }
+
+    @Test
+    public void testDecode_missingStep() {
+        byte[] encoding = RLP.encodeList(RLP.encode(1L), RLP.encodeInt(10));
+        assertThat(RequestSkeleton.decode(encoding)).isNull();
+    }
+
+    @Test
+    public void testDecode_zeroCount() {
+        byte[] encoding = RLP.encodeList(RLP.encode(1L), RLP.encodeInt(0), RLP.encodeInt(96));
+        assertThat(RequestSkeleton.decode(encoding)).isNull();
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        long[] starts = new long[] {1L, 97L, Integer.MAX_VALUE + 1L, Long.MAX_VALUE};
+        for (long start : starts) {
+            byte[] encoding = new RequestSkeleton(start, 64, 96).encode();
+            RequestSkeleton message = RequestSkeleton.decode(encoding);
+
+            assertThat(message).isNotNull();
+            assertThat(message.getStart()).isEqualTo(start);
+            assertThat(message.getCount()).isEqualTo(64);
+            assertThat(message.getStep()).isEqualTo(96);
+        }
+    }
+}
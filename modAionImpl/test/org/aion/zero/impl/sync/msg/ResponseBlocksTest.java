@@ -2,6 +2,7 @@ package org.aion.zero.impl.sync.msg;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import junitparams.JUnitParamsRunner;
@@ -118,4 +119,28 @@ public class ResponseBlocksTest {
         assertThat(message).isEqualTo(decoded);
         assertThat(message.hashCode()).isEqualTo(decoded.hashCode());
     }
+
+    @Test
+    public void testEncodeDecode_fromEncoded() {
+        List<Block> blocks = TestResources.consecutiveBlocks(10);
+        List<byte[]> encodings = new ArrayList<>();
+        for (Block block : blocks) {
+            encodings.add(block.getEncoded());
+        }
+
+        // encode
+        ResponseBlocks message = ResponseBlocks.fromEncoded(encodings);
+        assertThat(message.getBlocks()).isEqualTo(blocks);
+        byte[] encoding = message.encode();
+        assertThat(encoding).isEqualTo(new ResponseBlocks(blocks).encode());
+
+        // decode
+        ResponseBlocks decoded = ResponseBlocks.decode(encoding);
+        assertThat(decoded).isNotNull();
+        assertThat(decoded.getBlocks()).containsExactly(blocks.toArray());
+
+        // equals & hashCode
+        assertThat(message).isEqualTo(decoded);
+        assertThat(message.hashCode()).isEqualTo(decoded.hashCode());
+    }
 }
@@ -0,0 +1,128 @@
+package org.aion.zero.impl.sync.statistics;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.zero.impl.sync.statistics.PeerScoreTracker.MIN_SAMPLES_TO_DROP;
+import static org.aion.zero.impl.sync.statistics.PeerScoreTracker.NEUTRAL_SCORE;
+import static org.aion.zero.impl.sync.statistics.PeerScoreTracker.REQUEST_TIMEOUT_NANOS;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link PeerScoreTracker}. */
+public class PeerScoreTrackerTest {
+
+    private static final int MIN_SIZE = 24;
+    private static final int MAX_SIZE = 40;
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private PeerScoreTracker tracker;
+
+    @Before
+    public void setup() {
+        tracker = new PeerScoreTracker();
+    }
+
+    /** Sends {@code count} requests to the peer, each answered after {@code rttMs}. */
+    private void respond(int peerId, int count, long rttMs, int bytes) {
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            tracker.recordRequest(peerId, RequestType.HEADERS, time);
+            time += rttMs * MS;
+            tracker.recordResponse(peerId, RequestType.HEADERS, bytes, time);
+        }
+    }
+
+    @Test
+    public void testUnknownPeer() {
+        assertThat(tracker.getScore(1)).isEqualTo(NEUTRAL_SCORE);
+        assertThat(tracker.hasSamples(1)).isFalse();
+        assertThat(tracker.getRequestSize(1, MIN_SIZE, MAX_SIZE)).isEqualTo(MAX_SIZE);
+        assertThat(tracker.getPeersToDrop()).isEmpty();
+    }
+
+    @Test
+    public void testResponseWithoutRequestIsIgnored() {
+        tracker.recordResponse(1, RequestType.HEADERS, 1024, 10 * MS);
+        assertThat(tracker.getScore(1)).isEqualTo(NEUTRAL_SCORE);
+
+        tracker.recordRequest(1, RequestType.BODIES, 0);
+        tracker.recordResponse(1, RequestType.HEADERS, 1024, 10 * MS);
+        assertThat(tracker.getScore(1)).isEqualTo(NEUTRAL_SCORE);
+        assertThat(tracker.hasSamples(1)).isFalse();
+    }
+
+    @Test
+    public void testFastPeerScoresHigher() {
+        respond(1, 10, 20, 64 * 1024);
+        respond(2, 10, 2_000, 4 * 1024);
+
+        assertThat(tracker.getScore(1)).isGreaterThan(tracker.getScore(2));
+        assertThat(tracker.hasSamples(2)).isTrue();
+        assertThat(tracker.sortByScore(List.of(2, 3, 1), id -> id))
+                .containsExactly(1, 3, 2)
+                .inOrder();
+    }
+
+    @Test
+    public void testSortByScoreIsStable() {
+        assertThat(tracker.sortByScore(List.of(3, 1, 2), id -> id))
+                .containsExactly(3, 1, 2)
+                .inOrder();
+    }
+
+    @Test
+    public void testRequestSize() {
+        respond(1, 10, 20, 64 * 1024);
+        respond(2, 10, 5_000, 1024);
+
+        int fast = tracker.getRequestSize(1, MIN_SIZE, MAX_SIZE);
+        int slow = tracker.getRequestSize(2, MIN_SIZE, MAX_SIZE);
+
+        assertThat(slow).isLessThan(fast);
+        assertThat(slow).isAtLeast(MIN_SIZE + 2);
+        assertThat(fast).isAtMost(MAX_SIZE);
+        assertThat(fast % 2).isEqualTo(0);
+        assertThat(slow % 2).isEqualTo(0);
+    }
+
+    @Test
+    public void testInvalidResponsesLowerScore() {
+        respond(1, 5, 20, 64 * 1024);
+        double before = tracker.getScore(1);
+
+        tracker.recordInvalid(1);
+        assertThat(tracker.getScore(1)).isLessThan(before);
+    }
+
+    @Test
+    public void testTimeoutsDropPeer() {
+        respond(1, 2, 20, 64 * 1024);
+        // enough timeouts to outweigh the earlier responses
+        for (int i = 0; i < 2 * MIN_SAMPLES_TO_DROP; i++) {
+            tracker.recordRequest(1, RequestType.HEADERS, 0);
+        }
+        tracker.expireRequests(REQUEST_TIMEOUT_NANOS);
+        assertThat(tracker.getPeersToDrop()).isEmpty();
+
+        tracker.expireRequests(REQUEST_TIMEOUT_NANOS + 1);
+        assertThat(tracker.getPeersToDrop()).containsExactly(1);
+
+        tracker.remove(1);
+        assertThat(tracker.getScore(1)).isEqualTo(NEUTRAL_SCORE);
+        assertThat(tracker.getPeersToDrop()).isEmpty();
+    }
+
+    @Test
+    public void testScoreRecovers() {
+        respond(1, 10, 20, 64 * 1024);
+        for (int i = 0; i < 3; i++) {
+            tracker.recordInvalid(1);
+        }
+        double degraded = tracker.getScore(1);
+
+        respond(1, 10, 20, 64 * 1024);
+        assertThat(tracker.getScore(1)).isGreaterThan(degraded);
+    }
+}
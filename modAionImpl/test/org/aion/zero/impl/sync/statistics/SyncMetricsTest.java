@@ -0,0 +1,142 @@
+package org.aion.zero.impl.sync.statistics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.aion.zero.impl.sync.statistics.SyncMetrics.Snapshot;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link SyncMetrics}. */
+public class SyncMetricsTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private AtomicLong time;
+    private SyncMetrics metrics;
+
+    @Before
+    public void setup() {
+        time = new AtomicLong(1000 * SECOND);
+        metrics = new SyncMetrics(time::get);
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        Snapshot snapshot = metrics.getSnapshot();
+
+        assertThat(snapshot.requests).hasSize(RequestType.values().length);
+        assertThat(snapshot.peers).isEmpty();
+        assertThat(snapshot.queues).isEmpty();
+        assertThat(snapshot.blockImport.count).isEqualTo(0);
+        assertThat(snapshot.blockImport.getMeanMillis()).isEqualTo(0d);
+        assertThat(snapshot.blockImport.getQuantileMillis(0.5)).isEqualTo(0d);
+        assertThat(snapshot.blocksPerSecond).isEqualTo(0d);
+    }
+
+    @Test
+    public void testRequestsAndResponses() {
+        metrics.recordRequest(RequestType.HEADERS);
+        metrics.recordRequest(RequestType.HEADERS);
+        metrics.recordRequest(RequestType.BODIES);
+        metrics.recordResponse(1, RequestType.HEADERS, 1000, 20 * MS);
+        metrics.recordResponse(2, RequestType.HEADERS, 500, 200 * MS);
+
+        Snapshot snapshot = metrics.getSnapshot();
+        SyncMetrics.RequestSnapshot headers = snapshot.requests.get(RequestType.HEADERS);
+        assertThat(headers.requests).isEqualTo(2);
+        assertThat(headers.responses).isEqualTo(2);
+        assertThat(headers.latency.count).isEqualTo(2);
+        assertThat(headers.latency.getMeanMillis()).isEqualTo(110d);
+        assertThat(headers.latency.getQuantileMillis(0.5)).isEqualTo(25d);
+        assertThat(headers.latency.getQuantileMillis(1)).isEqualTo(250d);
+        assertThat(snapshot.requests.get(RequestType.BODIES).requests).isEqualTo(1);
+
+        assertThat(snapshot.peers.keySet()).containsExactly(1, 2).inOrder();
+        assertThat(snapshot.peers.get(1).bytes).isEqualTo(1000);
+        assertThat(snapshot.peers.get(2).responses).isEqualTo(1);
+
+        metrics.removePeer(1);
+        assertThat(metrics.getSnapshot().peers.keySet()).containsExactly(2);
+    }
+
+    @Test
+    public void testRatesUseCompleteSeconds() {
+        metrics.recordImport(10 * MS, true, 6000);
+        metrics.recordImport(10 * MS, true, 6000);
+        // blocks that were not imported count only for the timing
+        metrics.recordImport(10 * MS, false, 6000);
+
+        // the current second is not complete yet
+        assertThat(metrics.getSnapshot().blocksPerSecond).isEqualTo(0d);
+
+        time.addAndGet(SECOND);
+        Snapshot snapshot = metrics.getSnapshot();
+        assertThat(snapshot.importedBlocks).isEqualTo(2);
+        assertThat(snapshot.importedEnergy).isEqualTo(12000);
+        assertThat(snapshot.blocksPerSecond).isEqualTo(2d / SyncMetrics.WINDOW_SECONDS);
+        assertThat(snapshot.energyPerSecond).isEqualTo(12000d / SyncMetrics.WINDOW_SECONDS);
+        assertThat(snapshot.blockImport.count).isEqualTo(3);
+
+        // the imports leave the window while the totals remain
+        time.addAndGet(SyncMetrics.WINDOW_SECONDS * SECOND);
+        snapshot = metrics.getSnapshot();
+        assertThat(snapshot.blocksPerSecond).isEqualTo(0d);
+        assertThat(snapshot.importedBlocks).isEqualTo(2);
+    }
+
+    @Test
+    public void testHeaderValidationPerHeader() {
+        metrics.recordHeaderValidation(40 * MS, 4);
+        metrics.recordHeaderValidation(10 * MS, 0);
+
+        Snapshot snapshot = metrics.getSnapshot();
+        assertThat(snapshot.headerValidation.count).isEqualTo(4);
+        assertThat(snapshot.headerValidation.getMeanMillis()).isEqualTo(10d);
+    }
+
+    @Test
+    public void testQueueDepthReadOnSnapshot() {
+        AtomicInteger size = new AtomicInteger(3);
+        metrics.registerQueue("downloadedHeaders", size::get);
+        assertThat(metrics.getSnapshot().queues).containsExactly("downloadedHeaders", 3);
+
+        size.set(7);
+        assertThat(metrics.getSnapshot().queues).containsExactly("downloadedHeaders", 7);
+    }
+
+    @Test
+    public void testDurationsAboveLargestBound() {
+        metrics.recordBlockValidation(20 * SECOND);
+
+        Snapshot snapshot = metrics.getSnapshot();
+        assertThat(snapshot.blockValidation.getQuantileMillis(0.5))
+                .isEqualTo(Double.POSITIVE_INFINITY);
+        assertThat(metrics.dumpPrometheus())
+                .contains("aion_sync_block_validation_seconds_bucket{le=\"10.0\"} 0\n");
+        assertThat(metrics.dumpPrometheus())
+                .contains("aion_sync_block_validation_seconds_bucket{le=\"+Inf\"} 1\n");
+    }
+
+    @Test
+    public void testDumpPrometheus() {
+        metrics.registerQueue("sortedBlocks", () -> 5);
+        metrics.recordRequest(RequestType.TRIE_DATA);
+        metrics.recordResponse(7, RequestType.TRIE_DATA, 2048, 3 * MS);
+        metrics.recordImport(2 * MS, true, 21000);
+
+        String dump = metrics.dumpPrometheus();
+        assertThat(dump).contains("# TYPE aion_sync_requests_total counter\n");
+        assertThat(dump).contains("aion_sync_requests_total{type=\"trie_data\"} 1\n");
+        assertThat(dump).contains("aion_sync_peer_received_bytes_total{peer=\"7\"} 2048\n");
+        String latency = "aion_sync_response_latency_seconds";
+        assertThat(dump).contains(latency + "_bucket{type=\"trie_data\",le=\"0.005\"} 1\n");
+        assertThat(dump).contains(latency + "_count{type=\"trie_data\"} 1\n");
+        assertThat(dump).contains("aion_sync_queue_depth{queue=\"sortedBlocks\"} 5\n");
+        assertThat(dump).contains("aion_sync_block_import_seconds_sum 0.002\n");
+        assertThat(dump).contains("aion_sync_imported_energy_total 21000\n");
+    }
+}
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,11 +18,13 @@ import java.util.Random;
 import java.util.Set;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
+import org.aion.base.AccountState;
 import org.aion.base.ConstantUtil;
 import org.aion.crypto.HashUtil;
 import org.aion.db.impl.mockdb.MockDB;
 import org.aion.rlp.Value;
 import org.aion.util.types.ByteArrayWrapper;
+import org.aion.zero.impl.trie.scan.CountContracts;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -1077,6 +1080,34 @@ public class TrieTest {
         assertThat(trie.getReferencedTrieNodes(value, 2 * full).size()).isEqualTo(full);
     }
 
+    @Test
+    public void testTraceTrie_countContracts() {
+        MockDB mockDB = new MockDB("temp", log);
+        mockDB.open();
+        TrieImpl trie = new SecureTrie(mockDB);
+
+        Random random = new Random(42);
+        int contracts = 0;
+        for (int i = 0; i < 100; i++) {
+            AccountState account = new AccountState(BigInteger.ONE, BigInteger.TEN);
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            if (i % 3 == 1) {
+                account.setCodeHash(hash);
+                contracts++;
+            } else if (i % 3 == 2) {
+                account.setStateRoot(hash);
+                contracts++;
+            }
+            trie.update(intToBytes(i), account.getEncoded());
+        }
+        trie.getCache().commit(true);
+
+        CountContracts action = new CountContracts();
+        new TrieImpl(mockDB).traceTrie(trie.getRootHash(), action);
+        assertThat(action.getCount()).isEqualTo(contracts);
+    }
+
     @Test
     public void testGetReferencedTrieNodes_withStartFromAllNodes() {
         MockDB mockDB = new MockDB("temp", log);
@@ -0,0 +1,183 @@
+package org.aion.zero.impl.tx;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.aion.base.AionTransaction;
+import org.aion.crypto.ECKey;
+import org.aion.crypto.ECKeyFac;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
+import org.aion.types.AionAddress;
+import org.aion.zero.impl.sync.msg.AnnounceTx;
+import org.aion.zero.impl.sync.msg.BroadcastTx;
+import org.aion.zero.impl.sync.msg.RequestTx;
+import org.apache.commons.lang3.RandomUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+
+/** Unit tests for {@link TxGossip}. */
+public class TxGossipTest {
+
+    private static final int peerId = 1;
+    private static final String displayId = "peer01";
+
+    private final ECKey key = ECKeyFac.inst().create();
+
+    private IP2pMgr p2p;
+    private TxGossip gossip;
+
+    @Before
+    public void setup() {
+        Map<Integer, INode> activeNodes = activeNodes();
+        p2p = mock(IP2pMgr.class);
+        when(p2p.getActiveNodes()).thenReturn(activeNodes);
+
+        gossip = new TxGossip(p2p, mock(Logger.class));
+    }
+
+    private static Map<Integer, INode> activeNodes() {
+        INode node = mock(INode.class);
+        when(node.getIdShort()).thenReturn(displayId);
+        return Collections.singletonMap(peerId, node);
+    }
+
+    private List<AionTransaction> txs(int count) {
+        List<AionTransaction> txs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            txs.add(
+                    AionTransaction.create(
+                            key,
+                            BigInteger.valueOf(i).toByteArray(),
+                            new AionAddress(RandomUtils.nextBytes(32)),
+                            BigInteger.ONE.toByteArray(),
+                            new byte[0],
+                            21_000L,
+                            10_000_000_000L,
+                            (byte) 1,
+                            null));
+        }
+        return txs;
+    }
+
+    private static List<byte[]> hashes(List<AionTransaction> txs) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (AionTransaction tx : txs) {
+            hashes.add(tx.getTransactionHash());
+        }
+        return hashes;
+    }
+
+    private List<Msg> sent() {
+        ArgumentCaptor<Msg> captor = ArgumentCaptor.forClass(Msg.class);
+        verify(p2p, times(2)).send(eq(peerId), eq(displayId), captor.capture());
+        return captor.getAllValues();
+    }
+
+    @Test
+    public void testBroadcastToLegacyPeer() {
+        gossip.broadcast(txs(3));
+
+        // bodies for older kernels along with the announcement
+        List<Msg> sent = sent();
+        assertThat(sent.get(0)).isInstanceOf(BroadcastTx.class);
+        assertThat(sent.get(1)).isInstanceOf(AnnounceTx.class);
+        assertThat(((AnnounceTx) sent.get(1)).getTxHashes()).hasSize(3);
+    }
+
+    @Test
+    public void testBroadcastToAnnouncingPeer() {
+        gossip.onAnnounce(peerId, displayId, hashes(txs(1)));
+        Map<Integer, INode> activeNodes = activeNodes();
+        reset(p2p);
+        when(p2p.getActiveNodes()).thenReturn(activeNodes);
+
+        gossip.broadcast(txs(2));
+
+        ArgumentCaptor<Msg> captor = ArgumentCaptor.forClass(Msg.class);
+        verify(p2p).send(eq(peerId), eq(displayId), captor.capture());
+        assertThat(captor.getValue()).isInstanceOf(AnnounceTx.class);
+    }
+
+    @Test
+    public void testNothingResentToPeer() {
+        List<AionTransaction> txs = txs(2);
+        gossip.broadcast(txs);
+        gossip.broadcast(txs);
+
+        // the second broadcast finds everything known to the peer
+        sent();
+    }
+
+    @Test
+    public void testTransactionsReceivedAreNotResent() {
+        List<AionTransaction> txs = txs(2);
+        assertThat(gossip.onReceived(peerId, txs)).hasSize(2);
+
+        gossip.broadcast(txs);
+        verify(p2p, never()).send(anyInt(), anyString(), any());
+    }
+
+    @Test
+    public void testAnnounceRequestsMissing() {
+        List<AionTransaction> seen = txs(2);
+        List<AionTransaction> unseen = txs(3);
+        gossip.onReceived(2, seen);
+
+        List<byte[]> announced = hashes(seen);
+        announced.addAll(hashes(unseen));
+        gossip.onAnnounce(peerId, displayId, announced);
+
+        ArgumentCaptor<Msg> captor = ArgumentCaptor.forClass(Msg.class);
+        verify(p2p).send(eq(peerId), eq(displayId), captor.capture());
+        List<byte[]> requested = ((RequestTx) captor.getValue()).getTxHashes();
+        assertThat(requested).hasSize(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(requested.get(i)).isEqualTo(unseen.get(i).getTransactionHash());
+        }
+
+        // not requested again while the request is in flight
+        gossip.onAnnounce(3, "peer03", hashes(unseen));
+        verify(p2p, never()).send(eq(3), anyString(), any());
+    }
+
+    @Test
+    public void testReceivedOnlyOnce() {
+        List<AionTransaction> txs = txs(2);
+        assertThat(gossip.onReceived(peerId, txs)).hasSize(2);
+        assertThat(gossip.onReceived(2, txs)).isEmpty();
+    }
+
+    @Test
+    public void testRequestServesAnnounced() {
+        List<AionTransaction> txs = txs(2);
+        gossip.broadcast(txs);
+        reset(p2p);
+
+        List<byte[]> requested = hashes(txs);
+        requested.add(RandomUtils.nextBytes(32));
+        gossip.onRequest(2, "peer02", requested);
+
+        ArgumentCaptor<Msg> captor = ArgumentCaptor.forClass(Msg.class);
+        verify(p2p).send(eq(2), eq("peer02"), captor.capture());
+        assertThat(captor.getValue()).isInstanceOf(BroadcastTx.class);
+        assertThat(BroadcastTx.decode(captor.getValue().encode())).hasSize(2);
+    }
+}
@@ -16,6 +16,12 @@ import org.aion.zero.impl.blockchain.AionImpl;
 
 public abstract class RpcServer {
 
+    /** The path where GET requests receive the sync metrics in the Prometheus text format. */
+    public static final String METRICS_PATH = "/metrics";
+
+    /** The content type of the Prometheus text exposition format. */
+    public static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4";
+
     protected String hostName;
     protected int port;
 
@@ -3,6 +3,7 @@ package org.aion.api.server.http.nano;
 import fi.iki.elonen.NanoHTTPD;
 import java.util.HashMap;
 import java.util.Map;
+import org.aion.api.server.http.RpcServer;
 import org.aion.api.server.rpc.RpcProcessor;
 import org.aion.log.AionLoggerFactory;
 import org.aion.log.LogEnum;
@@ -42,12 +43,25 @@ public class AionHttpd extends NanoHTTPD {
                 Response.Status.OK, "application/json", rpcProcessor.process(requestBody));
     }
 
+    private Response respondMetrics() {
+        String metrics = rpcProcessor.processMetrics();
+        if (metrics == null) {
+            return NanoHTTPD.newFixedLengthResponse(
+                    Response.Status.NOT_FOUND, MIME_PLAINTEXT, "Not Found");
+        }
+        return NanoHTTPD.newFixedLengthResponse(
+                Response.Status.OK, RpcServer.METRICS_CONTENT_TYPE, metrics);
+    }
+
     @Override
     public Response serve(IHTTPSession session) {
         // First let's handle CORS OPTION query
         Response r;
         if (corsEnabled && Method.OPTIONS.equals(session.getMethod())) {
             r = NanoHTTPD.newFixedLengthResponse(Response.Status.OK, MIME_PLAINTEXT, null, 0);
+        } else if (Method.GET.equals(session.getMethod())
+                && RpcServer.METRICS_PATH.equals(session.getUri())) {
+            r = respondMetrics();
         } else {
             r = respond(session);
         }
@@ -7,6 +7,7 @@ import io.undertow.util.HttpString;
 import io.undertow.util.Methods;
 import io.undertow.util.StatusCodes;
 import java.util.Map;
+import org.aion.api.server.http.RpcServer;
 import org.aion.api.server.rpc.RpcProcessor;
 
 class AionUndertowRpcHandler implements HttpHandler {
@@ -32,6 +33,21 @@ class AionUndertowRpcHandler implements HttpHandler {
         boolean isPost = Methods.POST.equals(exchange.getRequestMethod());
         boolean isOptions = Methods.OPTIONS.equals(exchange.getRequestMethod());
 
+        // serve the metrics to scrapers when they are enabled
+        if (Methods.GET.equals(exchange.getRequestMethod())
+                && RpcServer.METRICS_PATH.equals(exchange.getRequestPath())) {
+            String metrics = rpcProcessor.processMetrics();
+            if (metrics == null) {
+                exchange.setStatusCode(StatusCodes.NOT_FOUND);
+                exchange.endExchange();
+            } else {
+                exchange.getResponseHeaders()
+                        .put(Headers.CONTENT_TYPE, RpcServer.METRICS_CONTENT_TYPE);
+                exchange.getResponseSender().send(metrics);
+            }
+            return;
+        }
+
         // only support POST & OPTIONS requests
         if (!isPost && !isOptions) {
             exchange.setStatusCode(StatusCodes.METHOD_NOT_ALLOWED);
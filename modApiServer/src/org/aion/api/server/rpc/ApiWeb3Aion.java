@@ -9,6 +9,8 @@ import static org.aion.util.types.HexConvert.hexStringToBytes;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
@@ -84,7 +86,10 @@ import org.aion.zero.impl.config.CfgConsensusUnity;
 import org.aion.zero.impl.config.CfgEnergyStrategy;
 import org.aion.zero.impl.db.AionBlockStore;
 import org.aion.zero.impl.db.AionRepositoryImpl;
+import org.aion.zero.impl.db.DatabaseCheckpoint;
 import org.aion.zero.impl.sync.NodeWrapper;
+import org.aion.zero.impl.sync.statistics.RequestType;
+import org.aion.zero.impl.sync.statistics.SyncMetrics;
 import org.aion.zero.impl.types.AionBlock;
 import org.aion.zero.impl.types.AionBlockSummary;
 import org.aion.zero.impl.types.AionTxInfo;
@@ -1597,6 +1602,44 @@ public class ApiWeb3Aion extends ApiAion {
         return new RpcMsg(dumpBlock(block, false));
     }
 
+    /**
+     * Creates a consistent checkpoint of all the kernel databases in the given directory, which
+     * must not exist. Block import is paused only while the checkpoint is taken.
+     */
+    public RpcMsg priv_createCheckpoint(Object _params) {
+        String path;
+        if (_params instanceof JSONArray) {
+            path = ((JSONArray) _params).get(0) + "";
+        } else if (_params instanceof JSONObject) {
+            path = ((JSONObject) _params).get("path") + "";
+        } else {
+            return new RpcMsg(null, RpcError.INVALID_PARAMS, "Invalid parameters");
+        }
+
+        File directory = new File(path);
+        if (directory.exists()) {
+            return new RpcMsg(null, RpcError.INVALID_PARAMS, "The checkpoint directory already exists");
+        }
+
+        DatabaseCheckpoint checkpoint;
+        try {
+            checkpoint = this.ac.getAionHub().getBlockchain().createCheckpoint(directory);
+        } catch (IOException e) {
+            LOG.error("Unable to create checkpoint in " + directory.getAbsolutePath() + ".", e);
+            return new RpcMsg(null, RpcError.INTERNAL_ERROR, "Unable to create the checkpoint: " + e.getMessage());
+        }
+
+        JSONObject obj = new JSONObject();
+        obj.put("path", directory.getAbsolutePath());
+        obj.put("height", checkpoint.height);
+        obj.put("hash", StringUtils.toJsonHex(checkpoint.hash));
+        obj.put("stateRoot", StringUtils.toJsonHex(checkpoint.stateRoot));
+        obj.put("totalDifficulty", checkpoint.totalDifficulty.toString());
+        obj.put("vendor", checkpoint.vendor);
+        obj.put("databases", new JSONArray(checkpoint.databases));
+        return new RpcMsg(obj);
+    }
+
     private static JSONObject dumpBlock(Block block, boolean full) {
         JSONObject obj = new JSONObject();
         obj.put("block", Blk.AionBlockToJson(block, full));
@@ -1676,6 +1719,80 @@ public class ApiWeb3Aion extends ApiAion {
         return new RpcMsg(obj);
     }
 
+    /**
+     * Returns the metrics of the sync pipeline: the request rates and response latency for each
+     * request type, the throughput and latency of each peer, the depth of the sync queues, the
+     * validation and import time per block and the rate of imported blocks and energy.
+     */
+    public RpcMsg priv_syncMetrics() {
+        SyncMetrics.Snapshot snapshot = getSyncMetrics().getSnapshot();
+
+        JSONObject obj = new JSONObject();
+        obj.put("windowSeconds", SyncMetrics.WINDOW_SECONDS);
+
+        JSONObject requests = new JSONObject();
+        for (Map.Entry<RequestType, SyncMetrics.RequestSnapshot> entry :
+                snapshot.requests.entrySet()) {
+            SyncMetrics.RequestSnapshot request = entry.getValue();
+            JSONObject type = new JSONObject();
+            type.put("requests", request.requests);
+            type.put("requestsPerSecond", request.requestsPerSecond);
+            type.put("responses", request.responses);
+            type.put("latency", histogramToJson(request.latency));
+            requests.put(entry.getKey().toString().toLowerCase(), type);
+        }
+        obj.put("requests", requests);
+
+        JSONArray peers = new JSONArray();
+        for (Map.Entry<Integer, SyncMetrics.PeerSnapshot> entry : snapshot.peers.entrySet()) {
+            SyncMetrics.PeerSnapshot peer = entry.getValue();
+            JSONObject p = new JSONObject();
+            p.put("idHash", entry.getKey());
+            p.put("responses", peer.responses);
+            p.put("bytes", peer.bytes);
+            p.put("bytesPerSecond", peer.bytesPerSecond);
+            p.put("latency", histogramToJson(peer.latency));
+            peers.put(p);
+        }
+        obj.put("peers", peers);
+
+        obj.put("queues", new JSONObject(snapshot.queues));
+
+        JSONObject timing = new JSONObject();
+        timing.put("headerValidation", histogramToJson(snapshot.headerValidation));
+        timing.put("blockValidation", histogramToJson(snapshot.blockValidation));
+        timing.put("blockImport", histogramToJson(snapshot.blockImport));
+        obj.put("timing", timing);
+
+        JSONObject imported = new JSONObject();
+        imported.put("blocks", snapshot.importedBlocks);
+        imported.put("blocksPerSecond", snapshot.blocksPerSecond);
+        imported.put("energy", snapshot.importedEnergy);
+        imported.put("energyPerSecond", snapshot.energyPerSecond);
+        obj.put("imported", imported);
+
+        return new RpcMsg(obj);
+    }
+
+    /** Returns the sync metrics in the Prometheus text exposition format. */
+    public String dumpSyncMetrics() {
+        return getSyncMetrics().dumpPrometheus();
+    }
+
+    private SyncMetrics getSyncMetrics() {
+        return this.ac.getAionHub().getSyncMgr().getMetrics();
+    }
+
+    private static JSONObject histogramToJson(SyncMetrics.HistogramSnapshot histogram) {
+        JSONObject obj = new JSONObject();
+        obj.put("count", histogram.count);
+        obj.put("meanMs", histogram.getMeanMillis());
+        obj.put("p50Ms", histogram.getQuantileMillis(0.5));
+        obj.put("p90Ms", histogram.getQuantileMillis(0.9));
+        obj.put("p99Ms", histogram.getQuantileMillis(0.99));
+        return obj;
+    }
+
     public RpcMsg priv_config() {
         JSONObject obj = new JSONObject();
 
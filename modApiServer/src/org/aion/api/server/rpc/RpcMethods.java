@@ -14,6 +14,8 @@ import org.slf4j.Logger;
 public class RpcMethods {
 
     private static final Logger LOG = AionLoggerFactory.getLogger(LogEnum.API.name());
+    // also gates the metrics served to scrapers over http
+    private static final String SYNC_METRICS = "priv_syncMetrics";
     private ApiWeb3Aion api;
     private final Map<String, Map<String, RpcMethod>> groupMap;
     Map<String, RpcMethod> enabledEndpoints;
@@ -62,6 +64,14 @@ public class RpcMethods {
         return enabledEndpoints.get(name);
     }
 
+    /**
+     * Returns the sync metrics in the Prometheus text exposition format or {@code null} when the
+     * {@code priv_syncMetrics} method is not enabled.
+     */
+    public String dumpSyncMetrics() {
+        return enabledEndpoints.containsKey(SYNC_METRICS) ? api.dumpSyncMetrics() : null;
+    }
+
     public void shutdown() {
         api.shutdown();
     }
@@ -285,5 +295,9 @@ public class RpcMethods {
                             "priv_dumpBlockByNumber",
                             (params) -> api.priv_dumpBlockByNumber(params)),
                     Map.entry("priv_shortStats", (params) -> api.priv_shortStats()),
-                    Map.entry("priv_config", (params) -> api.priv_config()));
+                    Map.entry(SYNC_METRICS, (params) -> api.priv_syncMetrics()),
+                    Map.entry("priv_config", (params) -> api.priv_config()),
+                    Map.entry(
+                            "priv_createCheckpoint",
+                            (params) -> api.priv_createCheckpoint(params)));
 }
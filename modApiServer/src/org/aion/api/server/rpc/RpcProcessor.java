@@ -89,6 +89,19 @@ public class RpcProcessor {
         return response;
     }
 
+    /**
+     * Returns the sync metrics in the Prometheus text exposition format or {@code null} when they
+     * are not enabled, i.e. the {@code priv_syncMetrics} method is disabled.
+     */
+    public String processMetrics() {
+        try {
+            return apiHolder.dumpSyncMetrics();
+        } catch (Exception e) {
+            LOG.debug("<rpc-server - failed to collect the sync metrics>", e);
+            return null;
+        }
+    }
+
     private String composeRpcResponse(String _respBody) {
         String respBody;
         if (_respBody == null) {
@@ -0,0 +1,215 @@
+package org.aion.db.generic;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format for traces of the calls made to a {@link
+ * org.aion.db.impl.ByteArrayKeyValueDatabase}, written by {@link RecordingDatabase} and read when
+ * replaying a workload against different database implementations.
+ *
+ * <p>A trace starts with a magic number and a format version followed by a sequence of records.
+ * Each record is a one byte {@link Op} code followed by the keys and values of the call, each
+ * prefixed by its length.
+ */
+public final class DatabaseTrace {
+
+    static final int MAGIC = 0x41444254; // ADBT
+    static final int VERSION = 1;
+
+    public static final String FILE_EXTENSION = ".trace";
+
+    /** The recorded operations. */
+    public enum Op {
+        GET,
+        PUT,
+        DELETE,
+        PUT_BATCH,
+        DELETE_BATCH,
+        PUT_TO_BATCH,
+        DELETE_IN_BATCH,
+        COMMIT_BATCH,
+        COMMIT;
+
+        private static final Op[] values = values();
+    }
+
+    /** A single recorded call. Only the fields relevant to the operation are set. */
+    public static final class Record {
+        public final Op op;
+        public final byte[] key;
+        public final byte[] value;
+        public final Map<byte[], byte[]> batch;
+        public final List<byte[]> keys;
+
+        private Record(Op op, byte[] key, byte[] value, Map<byte[], byte[]> batch, List<byte[]> keys) {
+            this.op = op;
+            this.key = key;
+            this.value = value;
+            this.batch = batch;
+            this.keys = keys;
+        }
+    }
+
+    private DatabaseTrace() {}
+
+    /**
+     * Appends records to a trace file.
+     *
+     * @implNote All methods are synchronized since the recorded database may be used by multiple
+     *     threads.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        public Writer(File file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public synchronized void write(Op op, byte[] key) throws IOException {
+            out.writeByte(op.ordinal());
+            writeBytes(key);
+        }
+
+        public synchronized void write(Op op, byte[] key, byte[] value) throws IOException {
+            out.writeByte(op.ordinal());
+            writeBytes(key);
+            writeBytes(value);
+        }
+
+        public synchronized void write(Op op) throws IOException {
+            out.writeByte(op.ordinal());
+        }
+
+        public synchronized void writeBatch(Map<byte[], byte[]> batch) throws IOException {
+            out.writeByte(Op.PUT_BATCH.ordinal());
+            out.writeInt(batch.size());
+            for (Map.Entry<byte[], byte[]> entry : batch.entrySet()) {
+                writeBytes(entry.getKey());
+                writeBytes(entry.getValue());
+            }
+        }
+
+        public synchronized void writeKeys(Collection<byte[]> keys) throws IOException {
+            out.writeByte(Op.DELETE_BATCH.ordinal());
+            out.writeInt(keys.size());
+            for (byte[] key : keys) {
+                writeBytes(key);
+            }
+        }
+
+        /** Writes a length of -1 for {@code null} values. */
+        private void writeBytes(byte[] data) throws IOException {
+            if (data == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+
+        public synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads the records of a trace file in the order they were written. */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+
+        public Reader(File file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException(file.getAbsolutePath() + " is not a database trace.");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported database trace version " + version + ".");
+            }
+        }
+
+        /** Returns the next record or {@code null} at the end of the trace. */
+        public Record next() throws IOException {
+            int code = in.read();
+            if (code < 0) {
+                return null;
+            }
+            if (code >= Op.values.length) {
+                throw new IOException("Corrupt database trace: unknown operation " + code + ".");
+            }
+
+            try {
+                Op op = Op.values[code];
+                switch (op) {
+                    case GET:
+                    case DELETE:
+                    case DELETE_IN_BATCH:
+                        return new Record(op, readBytes(), null, null, null);
+                    case PUT:
+                    case PUT_TO_BATCH:
+                        return new Record(op, readBytes(), readBytes(), null, null);
+                    case PUT_BATCH:
+                        {
+                            int size = in.readInt();
+                            Map<byte[], byte[]> batch = new HashMap<>();
+                            for (int i = 0; i < size; i++) {
+                                batch.put(readBytes(), readBytes());
+                            }
+                            return new Record(op, null, null, batch, null);
+                        }
+                    case DELETE_BATCH:
+                        {
+                            int size = in.readInt();
+                            List<byte[]> keys = new ArrayList<>(size);
+                            for (int i = 0; i < size; i++) {
+                                keys.add(readBytes());
+                            }
+                            return new Record(op, null, null, null, keys);
+                        }
+                    default:
+                        return new Record(op, null, null, null, null);
+                }
+            } catch (EOFException e) {
+                // a truncated last record is expected when the kernel was not shut down cleanly
+                return null;
+            }
+        }
+
+        private byte[] readBytes() throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
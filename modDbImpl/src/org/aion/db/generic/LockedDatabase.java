@@ -1,7 +1,9 @@
 package org.aion.db.generic;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -95,6 +97,19 @@ public class LockedDatabase implements ByteArrayKeyValueDatabase {
         }
     }
 
+    @Override
+    public boolean createCheckpoint(File directory) {
+        // acquire write lock
+        lock.writeLock().lock();
+
+        try {
+            return database.createCheckpoint(directory);
+        } finally {
+            // releasing write lock
+            lock.writeLock().unlock();
+        }
+    }
+
     @Override
     public Optional<String> getName() {
         // no locks because the name never changes
@@ -211,6 +226,21 @@ public class LockedDatabase implements ByteArrayKeyValueDatabase {
         }
     }
 
+    @Override
+    public List<byte[]> keysFrom(byte[] start, int limit) {
+        // acquire read lock
+        lock.readLock().lock();
+
+        try {
+            return database.keysFrom(start, limit);
+        } catch (Exception e) {
+            throw e;
+        } finally {
+            // releasing read lock
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public Optional<byte[]> get(byte[] key) {
         // acquire read lock
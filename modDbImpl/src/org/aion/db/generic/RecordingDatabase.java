@@ -0,0 +1,269 @@
+package org.aion.db.generic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.aion.db.generic.DatabaseTrace.Op;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.db.impl.PersistenceMethod;
+import org.slf4j.Logger;
+
+/**
+ * Records the reads and writes made to a database into a {@link DatabaseTrace} so that the
+ * workload can later be replayed against different database implementations.
+ *
+ * <p>Recording stops with a logged error if the trace cannot be written; the calls to the
+ * underlying database are never affected.
+ */
+public class RecordingDatabase implements ByteArrayKeyValueDatabase {
+
+    /** Unlocked database. */
+    protected final ByteArrayKeyValueDatabase database;
+    protected final Logger LOG;
+
+    private final File traceFile;
+    private DatabaseTrace.Writer trace;
+
+    public RecordingDatabase(ByteArrayKeyValueDatabase database, File traceFile, Logger log) {
+        this.database = database;
+        this.traceFile = traceFile;
+        this.LOG = log;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + " over " + database.toString();
+    }
+
+    private synchronized void record(Op op, byte[] key, byte[] value) {
+        if (trace == null) {
+            return;
+        }
+        try {
+            if (op == Op.GET || op == Op.DELETE || op == Op.DELETE_IN_BATCH) {
+                trace.write(op, key);
+            } else {
+                trace.write(op, key, value);
+            }
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    private synchronized void record(Op op) {
+        if (trace == null) {
+            return;
+        }
+        try {
+            trace.write(op);
+        } catch (IOException e) {
+            stopRecording(e);
+        }
+    }
+
+    private synchronized void stopRecording(IOException e) {
+        LOG.error("Unable to record the trace for " + database.toString() + " to " + traceFile.getAbsolutePath() + ".", e);
+        try {
+            trace.close();
+        } catch (IOException ignored) {
+            // the original error was already logged
+        }
+        trace = null;
+    }
+
+    // IDatabase functionality
+    // -----------------------------------------------------------------------------------------
+
+    @Override
+    public boolean open() {
+        boolean open = database.open();
+
+        synchronized (this) {
+            if (open && trace == null) {
+                try {
+                    File dir = traceFile.getParentFile();
+                    if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                        throw new IOException("Unable to create the directory " + dir.getAbsolutePath());
+                    }
+                    trace = new DatabaseTrace.Writer(traceFile);
+                    LOG.info("Recording the trace for " + database.toString() + " to " + traceFile.getAbsolutePath() + ".");
+                } catch (IOException e) {
+                    LOG.error("Unable to record the trace for " + database.toString() + ".", e);
+                }
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (trace != null) {
+                try {
+                    trace.close();
+                } catch (IOException e) {
+                    LOG.error("Unable to close the trace for " + database.toString() + ".", e);
+                }
+                trace = null;
+            }
+        }
+        database.close();
+    }
+
+    @Override
+    public boolean commit() {
+        record(Op.COMMIT);
+        return database.commit();
+    }
+
+    @Override
+    public void compact() {
+        database.compact();
+    }
+
+    @Override
+    public boolean createCheckpoint(File directory) {
+        return database.createCheckpoint(directory);
+    }
+
+    @Override
+    public Optional<String> getName() {
+        return database.getName();
+    }
+
+    @Override
+    public Optional<String> getPath() {
+        return database.getPath();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return database.isOpen();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return database.isClosed();
+    }
+
+    @Override
+    public boolean isLocked() {
+        return database.isLocked();
+    }
+
+    @Override
+    public boolean isAutoCommitEnabled() {
+        return database.isAutoCommitEnabled();
+    }
+
+    @Override
+    public PersistenceMethod getPersistenceMethod() {
+        return database.getPersistenceMethod();
+    }
+
+    @Override
+    public boolean isCreatedOnDisk() {
+        return database.isCreatedOnDisk();
+    }
+
+    @Override
+    public long approximateSize() {
+        return database.approximateSize();
+    }
+
+    // IKeyValueStore functionality
+    // ------------------------------------------------------------------------------------
+
+    @Override
+    public boolean isEmpty() {
+        return database.isEmpty();
+    }
+
+    @Override
+    public Iterator<byte[]> keys() {
+        return database.keys();
+    }
+
+    @Override
+    public List<byte[]> keysFrom(byte[] start, int limit) {
+        return database.keysFrom(start, limit);
+    }
+
+    @Override
+    public Optional<byte[]> get(byte[] key) {
+        record(Op.GET, key, null);
+        return database.get(key);
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        record(Op.PUT, key, value);
+        database.put(key, value);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        record(Op.DELETE, key, null);
+        database.delete(key);
+    }
+
+    @Override
+    public void putBatch(Map<byte[], byte[]> keyValuePairs) {
+        synchronized (this) {
+            if (trace != null && keyValuePairs != null) {
+                try {
+                    trace.writeBatch(keyValuePairs);
+                } catch (IOException e) {
+                    stopRecording(e);
+                }
+            }
+        }
+        database.putBatch(keyValuePairs);
+    }
+
+    @Override
+    public void putToBatch(byte[] key, byte[] value) {
+        record(Op.PUT_TO_BATCH, key, value);
+        database.putToBatch(key, value);
+    }
+
+    @Override
+    public void deleteInBatch(byte[] key) {
+        record(Op.DELETE_IN_BATCH, key, null);
+        database.deleteInBatch(key);
+    }
+
+    @Override
+    public void commitBatch() {
+        record(Op.COMMIT_BATCH);
+        database.commitBatch();
+    }
+
+    @Override
+    public void deleteBatch(Collection<byte[]> keys) {
+        synchronized (this) {
+            if (trace != null && keys != null) {
+                try {
+                    trace.writeKeys(keys);
+                } catch (IOException e) {
+                    stopRecording(e);
+                }
+            }
+        }
+        database.deleteBatch(keys);
+    }
+
+    @Override
+    public void check() {
+        database.check();
+    }
+
+    @Override
+    public void drop() {
+        database.drop();
+    }
+}
@@ -1,7 +1,9 @@
 package org.aion.db.generic;
 
+import java.io.File;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.aion.db.impl.ByteArrayKeyValueDatabase;
@@ -71,6 +73,16 @@ public class TimedDatabase implements ByteArrayKeyValueDatabase {
         LOG.debug(database.toString() + " compact() in " + (t2 - t1) + " ns.");
     }
 
+    @Override
+    public boolean createCheckpoint(File directory) {
+        long t1 = System.nanoTime();
+        boolean result = database.createCheckpoint(directory);
+        long t2 = System.nanoTime();
+
+        LOG.debug(database.toString() + " createCheckpoint() in " + (t2 - t1) + " ns.");
+        return result;
+    }
+
     @Override
     public Optional<String> getName() {
         // no locks because the name never changes
@@ -159,6 +171,16 @@ public class TimedDatabase implements ByteArrayKeyValueDatabase {
         return result;
     }
 
+    @Override
+    public List<byte[]> keysFrom(byte[] start, int limit) {
+        long t1 = System.nanoTime();
+        List<byte[]> result = database.keysFrom(start, limit);
+        long t2 = System.nanoTime();
+
+        LOG.debug(database.toString() + " keysFrom(start, limit) in " + (t2 - t1) + " ns.");
+        return result;
+    }
+
     @Override
     public Optional<byte[]> get(byte[] key) {
         long t1 = System.nanoTime();
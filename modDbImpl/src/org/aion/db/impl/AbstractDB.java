@@ -1,6 +1,7 @@
 package org.aion.db.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -70,6 +71,39 @@ public abstract class AbstractDB implements ByteArrayKeyValueDatabase {
         LOG.warn("Compact not supported by " + this.toString() + ".");
     }
 
+    /**
+     * Copies the files of the database to the given directory.
+     *
+     * @implNote The copy is consistent only when no writes are made during this call. Vendors
+     *     that can create checkpoints without copying should override this method.
+     */
+    @Override
+    public boolean createCheckpoint(File directory) {
+        check();
+
+        if (getPersistenceMethod() != PersistenceMethod.FILE_BASED) {
+            LOG.error("Checkpoints not supported by " + this.toString() + ".");
+            return false;
+        }
+
+        Path source = new File(path).toPath();
+        Path target = directory.toPath();
+        try (Stream<Path> stream = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                Path copy = target.resolve(source.relativize(file));
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(file, copy);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.error("Unable to create checkpoint of " + this.toString() + " due to: ", e);
+            return false;
+        }
+    }
+
     @Override
     public void drop() {
         boolean wasOpen = isOpen();
@@ -1,3 +1,41 @@
 package org.aion.db.impl;
 
-public interface ByteArrayKeyValueStore extends KeyValueStore<byte[], byte[]> {}
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+public interface ByteArrayKeyValueStore extends KeyValueStore<byte[], byte[]> {
+
+    /**
+     * Returns the smallest stored keys that are greater than or equal to the given key, in the
+     * unsigned lexicographic order of their bytes.
+     *
+     * @param start the smallest key that can be returned
+     * @param limit the maximum number of keys to be returned
+     * @return at most {@code limit} keys in ascending order
+     * @throws RuntimeException if the data store is closed
+     * @implNote The default implementation scans all the keys. Data stores that keep their keys
+     *     sorted should seek to the start key instead.
+     */
+    default List<byte[]> keysFrom(byte[] start, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        TreeSet<byte[]> selected = new TreeSet<>(Arrays::compareUnsigned);
+        Iterator<byte[]> keys = keys();
+        while (keys.hasNext()) {
+            byte[] key = keys.next();
+            if (Arrays.compareUnsigned(key, start) >= 0) {
+                selected.add(key);
+                if (selected.size() > limit) {
+                    selected.pollLast();
+                }
+            }
+        }
+        return new ArrayList<>(selected);
+    }
+}
@@ -0,0 +1,71 @@
+package org.aion.db.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compression algorithms that can be configured for a database.
+ *
+ * <p>Only {@link DBVendor#ROCKSDB} supports choosing the algorithm and its level. The other
+ * file-based vendors treat any codec other than {@link #NONE} as enabling their own default
+ * compression.
+ */
+public enum CompressionCodec {
+    /** No compression. Cheapest to read, largest on disk. */
+    NONE("none"),
+    /** Fast compression with a modest size reduction. */
+    LZ4("lz4"),
+    /** Zstandard compression using the configured level. */
+    ZSTD("zstd"),
+    /**
+     * Zstandard compression using a dictionary trained on samples of the stored values. Suited to
+     * stores holding many small values with shared structure, e.g. RLP encoded state nodes.
+     */
+    ZSTD_DICTIONARY("zstd-dict");
+
+    /** The level used by RocksDB when no explicit level is configured. */
+    public static final int DEFAULT_LEVEL = 32767;
+    /** The default Zstandard level, matching the default of the zstd command line tool. */
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+    /** The default maximum size of a trained dictionary. */
+    public static final int DEFAULT_DICTIONARY_SIZE = 16 * 1024;
+
+    private static final Map<String, CompressionCodec> stringToTypeMap = new ConcurrentHashMap<>();
+
+    static {
+        for (CompressionCodec type : CompressionCodec.values()) {
+            stringToTypeMap.put(type.value, type);
+        }
+    }
+
+    private final String value;
+
+    CompressionCodec(final String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @return the codec with the given name or {@code null} if the name is not recognized
+     */
+    public static CompressionCodec fromString(String s) {
+        if (s == null) {
+            return null;
+        }
+        return stringToTypeMap.get(s.trim().toLowerCase());
+    }
+
+    /** Returns the codec equivalent to the legacy compression on/off setting. */
+    public static CompressionCodec fromBoolean(boolean enableCompression) {
+        return enableCompression ? LZ4 : NONE;
+    }
+
+    public String toValue() {
+        return value;
+    }
+
+    public boolean isZstd() {
+        return this == ZSTD || this == ZSTD_DICTIONARY;
+    }
+}
@@ -1,5 +1,6 @@
 package org.aion.db.impl;
 
+import java.io.File;
 import java.util.Optional;
 
 /**
@@ -62,6 +63,14 @@ public interface Database {
     /** Drop database. Removes all data from source. */
     void drop();
 
+    /**
+     * Writes a consistent copy of the current data to the given directory, which must not exist.
+     * The copy can be opened as a database with the same vendor and settings.
+     *
+     * @return {@code true} when the checkpoint was created, {@code false} otherwise
+     */
+    boolean createCheckpoint(File directory);
+
     // Get information about the database state
     // ------------------------------------------------------------------------
 
@@ -1,7 +1,10 @@
 package org.aion.db.impl;
 
+import java.io.File;
 import java.util.Properties;
+import org.aion.db.generic.DatabaseTrace;
 import org.aion.db.generic.LockedDatabase;
+import org.aion.db.generic.RecordingDatabase;
 import org.aion.db.generic.SpecialLockedDatabase;
 import org.aion.db.generic.TimedDatabase;
 import org.aion.db.impl.h2.H2MVMap;
@@ -31,12 +34,17 @@ public abstract class DatabaseFactory {
         public static final String ENABLE_AUTO_COMMIT = "enable_auto_commit";
         public static final String ENABLE_DB_CACHE = "enable_db_cache";
         public static final String ENABLE_DB_COMPRESSION = "enable_db_compression";
+        public static final String COMPRESSION_CODEC = "compression_codec";
+        public static final String COMPRESSION_LEVEL = "compression_level";
+        public static final String COMPRESSION_DICTIONARY_SIZE = "compression_dictionary_size";
 
         public static final String ENABLE_HEAP_CACHE_STATS = "enable_heap_cache_stats";
         public static final String MAX_HEAP_CACHE_SIZE = "max_heap_cache_size";
 
         public static final String ENABLE_LOCKING = "enable_locking";
 
+        /** Directory where the calls made to the database are recorded for later replay. */
+        public static final String TRACE_PATH = "trace_path";
     }
 
     public static ByteArrayKeyValueDatabase connect(Properties info, Logger log) {
@@ -67,6 +75,13 @@ public abstract class DatabaseFactory {
             }
         }
 
+        // record the workload for benchmarking when requested
+        String tracePath = info.getProperty(Props.TRACE_PATH);
+        if (db != null && tracePath != null && !tracePath.isEmpty()) {
+            String name = info.getProperty(Props.DB_NAME, "database");
+            db = new RecordingDatabase(db, new File(tracePath, name + DatabaseTrace.FILE_EXTENSION), log);
+        }
+
         // time operations during debug
         if (debug) {
             return new TimedDatabase(db, log);
@@ -111,6 +126,13 @@ public abstract class DatabaseFactory {
 
         boolean enableDbCache = getBoolean(info, Props.ENABLE_DB_CACHE);
         boolean enableDbCompression = getBoolean(info, Props.ENABLE_DB_COMPRESSION);
+        CompressionCodec codec = getCodec(info, log);
+        boolean legacyCompression = codec == null;
+        if (legacyCompression) {
+            codec = CompressionCodec.fromBoolean(enableDbCompression);
+        }
+        // vendors without codec selection only support turning their compression on or off
+        enableDbCompression = codec != CompressionCodec.NONE;
 
         // ensure not null name for other databases
         if (dbName == null) {
@@ -128,6 +150,7 @@ public abstract class DatabaseFactory {
         switch (dbType) {
             case LEVELDB:
                 {
+                    warnIfUnsupported(codec, dbType, dbName, log);
                     return new LevelDB(
                             dbName,
                             dbPath,
@@ -141,20 +164,39 @@ public abstract class DatabaseFactory {
                 }
             case ROCKSDB:
                 {
+                    if (legacyCompression) {
+                        return new RocksDBWrapper(
+                                dbName,
+                                dbPath,
+                                log,
+                                enableDbCache,
+                                enableDbCompression,
+                                RocksDBConstants.MAX_OPEN_FILES,
+                                RocksDBConstants.BLOCK_SIZE,
+                                RocksDBConstants.WRITE_BUFFER_SIZE,
+                                RocksDBConstants.READ_BUFFER_SIZE,
+                                RocksDBConstants.CACHE_SIZE);
+                    }
                     return new RocksDBWrapper(
                             dbName,
                             dbPath,
                             log,
                             enableDbCache,
-                            enableDbCompression,
                             RocksDBConstants.MAX_OPEN_FILES,
                             RocksDBConstants.BLOCK_SIZE,
                             RocksDBConstants.WRITE_BUFFER_SIZE,
                             RocksDBConstants.READ_BUFFER_SIZE,
-                            RocksDBConstants.CACHE_SIZE);
+                            RocksDBConstants.CACHE_SIZE,
+                            codec,
+                            getInt(info, Props.COMPRESSION_LEVEL, CompressionCodec.DEFAULT_LEVEL),
+                            getInt(
+                                    info,
+                                    Props.COMPRESSION_DICTIONARY_SIZE,
+                                    CompressionCodec.DEFAULT_DICTIONARY_SIZE));
                 }
             case H2:
                 {
+                    warnIfUnsupported(codec, dbType, dbName, log);
                     return new H2MVMap(dbName, dbPath, log, enableDbCache, enableDbCompression);
                 }
             case MONGODB:
@@ -195,6 +237,39 @@ public abstract class DatabaseFactory {
         return new MockDB(dbName, log);
     }
 
+    /**
+     * Reads the codec from the {@link Props#COMPRESSION_CODEC} property.
+     *
+     * @return the configured codec or {@code null} when the codec is missing or invalid, in which
+     *     case the legacy {@link Props#ENABLE_DB_COMPRESSION} flag applies
+     */
+    private static CompressionCodec getCodec(Properties info, Logger log) {
+        String value = info.getProperty(Props.COMPRESSION_CODEC);
+        if (value == null) {
+            return null;
+        }
+
+        CompressionCodec codec = CompressionCodec.fromString(value);
+        if (codec == null) {
+            log.warn(
+                    "Invalid compression codec \"{}\" for database {}. Using the {} setting instead.",
+                    value,
+                    info.getProperty(Props.DB_NAME),
+                    Props.ENABLE_DB_COMPRESSION);
+        }
+        return codec;
+    }
+
+    private static void warnIfUnsupported(CompressionCodec codec, DBVendor vendor, String dbName, Logger log) {
+        if (codec != CompressionCodec.NONE && codec != CompressionCodec.LZ4) {
+            log.warn(
+                    "The {} compression codec is not supported by {}. Database {} will use the vendor's default compression.",
+                    codec.toValue(),
+                    vendor.toValue(),
+                    dbName);
+        }
+    }
+
     private static boolean getBoolean(Properties info, String prop) {
         return Boolean.parseBoolean(info.getProperty(prop));
     }
@@ -0,0 +1,254 @@
+package org.aion.db.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.aion.db.generic.DatabaseTrace;
+import org.aion.db.generic.DatabaseTrace.Op;
+import org.aion.db.generic.DatabaseTrace.Record;
+import org.slf4j.Logger;
+
+/**
+ * Replays a {@link DatabaseTrace} recorded from a running kernel against a freshly created
+ * database, allowing vendors and their cache and compression settings to be compared on real
+ * workloads.
+ *
+ * <p>The replay is closed-loop: each operation is issued as soon as the previous one completes.
+ * Write amplification is computed from the bytes the process wrote to storage according to {@code
+ * /proc/self/io}, which includes flushes and compactions, and is therefore only available on
+ * Linux.
+ */
+public final class TraceReplay {
+
+    /** The measurements of one replay. */
+    public static final class Result {
+        public final String configuration;
+        public final long operations;
+        public final long elapsedNanos;
+        public final long logicalBytesWritten;
+        /** Bytes written to storage by the process or {@code -1} when unknown. */
+        public final long storageBytesWritten;
+        public final long diskSize;
+        private final Map<Op, long[]> latencies;
+
+        Result(
+                String configuration,
+                long operations,
+                long elapsedNanos,
+                long logicalBytesWritten,
+                long storageBytesWritten,
+                long diskSize,
+                Map<Op, long[]> latencies) {
+            this.configuration = configuration;
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.logicalBytesWritten = logicalBytesWritten;
+            this.storageBytesWritten = storageBytesWritten;
+            this.diskSize = diskSize;
+            this.latencies = latencies;
+        }
+
+        public double throughput() {
+            return elapsedNanos == 0 ? 0 : operations * 1_000_000_000d / elapsedNanos;
+        }
+
+        /** Returns the ratio of bytes written to storage over bytes written by the trace. */
+        public double writeAmplification() {
+            if (storageBytesWritten < 0 || logicalBytesWritten == 0) {
+                return -1;
+            }
+            return (double) storageBytesWritten / logicalBytesWritten;
+        }
+
+        /** Returns the given percentile of the latency for the operation or -1 if it never ran. */
+        public long latency(Op op, double percentile) {
+            long[] sorted = latencies.get(op);
+            if (sorted == null || sorted.length == 0) {
+                return -1;
+            }
+            return sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))];
+        }
+
+        public String toReport() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(configuration).append('\n');
+            sb.append(String.format("  operations: %,d in %,d ms (%,.0f ops/s)%n", operations, elapsedNanos / 1_000_000, throughput()));
+            double amplification = writeAmplification();
+            sb.append(
+                    String.format(
+                            "  written: %,d bytes, storage writes: %s, write amplification: %s, size on disk: %,d bytes%n",
+                            logicalBytesWritten,
+                            storageBytesWritten < 0 ? "n/a" : String.format("%,d bytes", storageBytesWritten),
+                            amplification < 0 ? "n/a" : String.format("%.2f", amplification),
+                            diskSize));
+            for (Map.Entry<Op, long[]> entry : latencies.entrySet()) {
+                sb.append(
+                        String.format(
+                                "  %-16s count: %,10d  p50: %,10d ns  p99: %,10d ns%n",
+                                entry.getKey(),
+                                entry.getValue().length,
+                                latency(entry.getKey(), 0.50),
+                                latency(entry.getKey(), 0.99)));
+            }
+            return sb.toString();
+        }
+    }
+
+    /** Growable array of latencies for one operation type. */
+    private static final class Samples {
+        long[] values = new long[1024];
+        int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    private TraceReplay() {}
+
+    /**
+     * Replays the trace against a new database created with the given properties.
+     *
+     * @param trace the trace file recorded by {@link org.aion.db.generic.RecordingDatabase}
+     * @param props the properties passed to the {@link DatabaseFactory}; the database name and
+     *     path must point to a location that does not contain data
+     * @param configuration a description of the configuration used in the report
+     * @throws IOException when the trace cannot be read
+     * @throws IllegalStateException when the database cannot be created
+     */
+    public static Result replay(File trace, Properties props, String configuration, Logger log) throws IOException {
+        // the replayed database must not be recorded
+        Properties replayProps = new Properties();
+        for (String name : props.stringPropertyNames()) {
+            replayProps.setProperty(name, props.getProperty(name));
+        }
+        replayProps.remove(DatabaseFactory.Props.TRACE_PATH);
+
+        ByteArrayKeyValueDatabase db = DatabaseFactory.connect(replayProps, log);
+        if (db == null || !db.open()) {
+            throw new IllegalStateException("Unable to create the database for " + configuration + ".");
+        }
+        if (!db.isEmpty()) {
+            db.close();
+            throw new IllegalStateException("The database for " + configuration + " must be empty.");
+        }
+
+        Map<Op, Samples> samples = new EnumMap<>(Op.class);
+        long operations = 0;
+        long logicalBytes = 0;
+        long storageBefore = storageBytesWritten();
+        long start = System.nanoTime();
+
+        try (DatabaseTrace.Reader reader = new DatabaseTrace.Reader(trace)) {
+            Record record;
+            while ((record = reader.next()) != null) {
+                long t1 = System.nanoTime();
+                logicalBytes += apply(db, record);
+                long t2 = System.nanoTime();
+
+                samples.computeIfAbsent(record.op, op -> new Samples()).add(t2 - t1);
+                operations++;
+            }
+
+            // include the cost of persisting pending data in the measurements
+            db.commit();
+        } catch (IOException | RuntimeException e) {
+            db.close();
+            throw e;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long diskSize = db.approximateSize();
+        db.close();
+
+        long storageAfter = storageBytesWritten();
+        long storageBytes = storageBefore < 0 || storageAfter < 0 ? -1 : storageAfter - storageBefore;
+
+        Map<Op, long[]> latencies = new EnumMap<>(Op.class);
+        for (Map.Entry<Op, Samples> entry : samples.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().sorted());
+        }
+        return new Result(configuration, operations, elapsed, logicalBytes, storageBytes, diskSize, latencies);
+    }
+
+    /** Applies the recorded call and returns the number of key and value bytes it wrote. */
+    private static long apply(ByteArrayKeyValueDatabase db, Record record) {
+        switch (record.op) {
+            case GET:
+                db.get(record.key);
+                return 0;
+            case PUT:
+                db.put(record.key, record.value);
+                return record.key.length + record.value.length;
+            case DELETE:
+                db.delete(record.key);
+                return record.key.length;
+            case PUT_BATCH:
+                {
+                    db.putBatch(record.batch);
+                    long bytes = 0;
+                    for (Map.Entry<byte[], byte[]> entry : record.batch.entrySet()) {
+                        bytes += entry.getKey().length + entry.getValue().length;
+                    }
+                    return bytes;
+                }
+            case DELETE_BATCH:
+                {
+                    db.deleteBatch(record.keys);
+                    long bytes = 0;
+                    for (byte[] key : record.keys) {
+                        bytes += key.length;
+                    }
+                    return bytes;
+                }
+            case PUT_TO_BATCH:
+                db.putToBatch(record.key, record.value);
+                return record.key.length + record.value.length;
+            case DELETE_IN_BATCH:
+                db.deleteInBatch(record.key);
+                return record.key.length;
+            case COMMIT_BATCH:
+                db.commitBatch();
+                return 0;
+            case COMMIT:
+                db.commit();
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    /** Returns the bytes written to storage by this process or {@code -1} if not available. */
+    static long storageBytesWritten() {
+        File io = new File("/proc/self/io");
+        if (!io.canRead()) {
+            return -1;
+        }
+        try {
+            List<String> lines = Files.readAllLines(io.toPath(), StandardCharsets.US_ASCII);
+            for (String line : lines) {
+                if (line.startsWith("write_bytes:")) {
+                    return Long.parseLong(line.substring("write_bytes:".length()).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // treated as unavailable
+        }
+        return -1;
+    }
+}
@@ -2,9 +2,11 @@ package org.aion.db.impl.leveldb;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.aion.db.impl.AbstractDB;
 import org.aion.db.impl.SystemExitCodes;
@@ -278,6 +280,23 @@ public class LevelDB extends AbstractDB {
         return Collections.emptyIterator();
     }
 
+    @Override
+    public List<byte[]> keysFrom(byte[] start, int limit) {
+        check();
+
+        List<byte[]> keys = new ArrayList<>();
+        try (DBIterator itr = db.iterator()) {
+            // the default comparator orders the keys by their unsigned bytes
+            itr.seek(start);
+            while (itr.hasNext() && keys.size() < limit) {
+                keys.add(itr.next().getKey());
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to extract keys from database " + this.toString() + ".", e);
+        }
+        return keys;
+    }
+
     /**
      * A wrapper for the {@link DBIterator} conforming to the {@link Iterator} interface.
      *
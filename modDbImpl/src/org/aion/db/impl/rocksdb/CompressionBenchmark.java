@@ -0,0 +1,242 @@
+package org.aion.db.impl.rocksdb;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.aion.db.impl.ByteArrayKeyValueDatabase;
+import org.aion.db.impl.CompressionCodec;
+import org.slf4j.Logger;
+
+/**
+ * Offline tool for choosing the compression settings of a database.
+ *
+ * <p>A uniform sample of the entries of an existing database is written into a temporary RocksDB
+ * instance for each candidate codec. After a full compaction, the on-disk size and the latency of
+ * random point reads are measured for each candidate. The recommended setting is the smallest one
+ * whose median read latency stays within a given factor of the uncompressed baseline.
+ *
+ * @implNote The source database is only read. Must not be used on a database that is concurrently
+ *     accessed by a running kernel.
+ */
+public final class CompressionBenchmark {
+
+    /** A codec and level to be evaluated. */
+    public static final class Candidate {
+        public final CompressionCodec codec;
+        public final int level;
+
+        public Candidate(CompressionCodec codec, int level) {
+            this.codec = codec;
+            this.level = level;
+        }
+
+        /** Returns the setting formatted as used in the database configuration. */
+        public String toConfigValue() {
+            return level == CompressionCodec.DEFAULT_LEVEL
+                    ? codec.toValue()
+                    : codec.toValue() + ":" + level;
+        }
+
+        @Override
+        public String toString() {
+            return toConfigValue();
+        }
+    }
+
+    /** The measurements for one candidate. */
+    public static final class Result {
+        public final Candidate candidate;
+        public final long diskSize;
+        public final long medianReadNanos;
+        public final long p99ReadNanos;
+
+        Result(Candidate candidate, long diskSize, long medianReadNanos, long p99ReadNanos) {
+            this.candidate = candidate;
+            this.diskSize = diskSize;
+            this.medianReadNanos = medianReadNanos;
+            this.p99ReadNanos = p99ReadNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%-12s size: %,14d bytes  read p50: %,9d ns  read p99: %,9d ns",
+                    candidate, diskSize, medianReadNanos, p99ReadNanos);
+        }
+    }
+
+    public static final List<Candidate> DEFAULT_CANDIDATES =
+            List.of(
+                    new Candidate(CompressionCodec.NONE, CompressionCodec.DEFAULT_LEVEL),
+                    new Candidate(CompressionCodec.LZ4, CompressionCodec.DEFAULT_LEVEL),
+                    new Candidate(CompressionCodec.ZSTD, 1),
+                    new Candidate(CompressionCodec.ZSTD, 3),
+                    new Candidate(CompressionCodec.ZSTD, 9),
+                    new Candidate(CompressionCodec.ZSTD_DICTIONARY, 3));
+
+    /** Number of times each sampled key is read when measuring latency. */
+    private static final int READ_ROUNDS = 3;
+
+    private final Logger log;
+    private final File workDir;
+
+    /**
+     * @param workDir an empty directory where the temporary databases are created; its contents
+     *     are deleted after each candidate is measured
+     */
+    public CompressionBenchmark(File workDir, Logger log) {
+        this.workDir = workDir;
+        this.log = log;
+    }
+
+    /**
+     * Selects a uniform random sample of the entries in the given database.
+     *
+     * @implNote Uses reservoir sampling over a full key scan so that the sample is not biased
+     *     towards the start of the key space.
+     */
+    public static Map<byte[], byte[]> sample(ByteArrayKeyValueDatabase source, int sampleSize, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> keys = new ArrayList<>(sampleSize);
+
+        Iterator<byte[]> iterator = source.keys();
+        long seen = 0;
+        while (iterator.hasNext()) {
+            byte[] key = iterator.next();
+            seen++;
+            if (keys.size() < sampleSize) {
+                keys.add(key);
+            } else {
+                long index = (long) (random.nextDouble() * seen);
+                if (index < sampleSize) {
+                    keys.set((int) index, key);
+                }
+            }
+        }
+
+        Map<byte[], byte[]> entries = new HashMap<>();
+        for (byte[] key : keys) {
+            Optional<byte[]> value = source.get(key);
+            value.ifPresent(v -> entries.put(key, v));
+        }
+        return entries;
+    }
+
+    /** Measures each of the candidates on the given sample. */
+    public List<Result> run(Map<byte[], byte[]> sample, List<Candidate> candidates) {
+        List<byte[]> keys = new ArrayList<>(sample.keySet());
+        List<Result> results = new ArrayList<>();
+
+        for (Candidate candidate : candidates) {
+            File dir = new File(workDir, candidate.codec.toValue() + "-" + candidate.level);
+            RocksDBWrapper db =
+                    new RocksDBWrapper(
+                            "compression-" + candidate,
+                            dir.getAbsolutePath(),
+                            log,
+                            false,
+                            RocksDBConstants.MAX_OPEN_FILES,
+                            RocksDBConstants.BLOCK_SIZE,
+                            RocksDBConstants.WRITE_BUFFER_SIZE,
+                            RocksDBConstants.READ_BUFFER_SIZE,
+                            RocksDBConstants.CACHE_SIZE,
+                            candidate.codec,
+                            candidate.level,
+                            CompressionCodec.DEFAULT_DICTIONARY_SIZE);
+            if (!db.open()) {
+                log.error("Unable to create the temporary database for {}.", candidate);
+                continue;
+            }
+
+            try {
+                db.putBatch(sample);
+                db.compact();
+                long size = db.approximateSize();
+
+                // reopen to drop the data still held in memory by the writes
+                db.close();
+                db.open();
+                long[] latencies = measureReads(db, keys);
+
+                results.add(
+                        new Result(
+                                candidate,
+                                size,
+                                percentile(latencies, 0.5),
+                                percentile(latencies, 0.99)));
+            } finally {
+                db.close();
+                deleteRecursively(dir);
+            }
+        }
+
+        return results;
+    }
+
+    private static long[] measureReads(RocksDBWrapper db, List<byte[]> keys) {
+        List<byte[]> order = new ArrayList<>(keys);
+        long[] latencies = new long[order.size() * READ_ROUNDS];
+        int index = 0;
+
+        for (int round = 0; round < READ_ROUNDS; round++) {
+            Collections.shuffle(order);
+            for (byte[] key : order) {
+                long start = System.nanoTime();
+                db.get(key);
+                latencies[index++] = System.nanoTime() - start;
+            }
+        }
+
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /** Returns the given percentile of the sorted latencies or zero when nothing was measured. */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) (sorted.length * fraction)];
+    }
+
+    /**
+     * Returns the result with the smallest on-disk size among those whose median read latency is
+     * at most {@code maxSlowdown} times the median of the {@link CompressionCodec#NONE} result.
+     */
+    public static Result recommend(List<Result> results, double maxSlowdown) {
+        long baseline = Long.MAX_VALUE;
+        for (Result result : results) {
+            if (result.candidate.codec == CompressionCodec.NONE) {
+                baseline = result.medianReadNanos;
+            }
+        }
+
+        Result best = null;
+        for (Result result : results) {
+            if (baseline != Long.MAX_VALUE && result.medianReadNanos > baseline * maxSlowdown) {
+                continue;
+            }
+            if (best == null || result.diskSize < best.diskSize) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
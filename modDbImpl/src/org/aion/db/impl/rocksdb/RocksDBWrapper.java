@@ -12,16 +12,21 @@ import static org.aion.db.impl.rocksdb.RocksDBConstants.MIN_WRITE_BUFFER_NUMBER_
 import static org.aion.db.impl.rocksdb.RocksDBConstants.OPTIMIZE_LEVEL_STYLE_COMPACTION;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.aion.db.impl.AbstractDB;
+import org.aion.db.impl.CompressionCodec;
 import org.aion.util.types.ByteArrayWrapper;
 import org.rocksdb.BlockBasedTableConfig;
 import org.rocksdb.BloomFilter;
+import org.rocksdb.Checkpoint;
 import org.rocksdb.CompactionPriority;
+import org.rocksdb.CompressionOptions;
 import org.rocksdb.CompressionType;
 import org.rocksdb.Options;
 import org.rocksdb.ReadOptions;
@@ -40,6 +45,14 @@ public class RocksDBWrapper extends AbstractDB {
     private final int writeBufferSize;
     private final int readBufferSize;
     private final int cacheSize;
+    private final CompressionCodec codec;
+    private final CompressionCodec bottommostCodec;
+    private final int compressionLevel;
+    private final int dictionarySize;
+
+    // native objects used by the open database, released on close
+    private Options options;
+    private CompressionOptions compressionOptions;
 
     public RocksDBWrapper(
             String name,
@@ -52,20 +65,107 @@ public class RocksDBWrapper extends AbstractDB {
             int writeBufferSize,
             int readBufferSize,
             int cacheSize) {
-        super(name, path, log, enableDbCache, enableDbCompression);
+        this(
+                name,
+                path,
+                log,
+                enableDbCache,
+                maxOpenFiles,
+                blockSize,
+                writeBufferSize,
+                readBufferSize,
+                cacheSize,
+                CompressionCodec.fromBoolean(enableDbCompression),
+                CompressionCodec.DEFAULT_LEVEL,
+                CompressionCodec.DEFAULT_DICTIONARY_SIZE,
+                // historically the bottommost level was always compressed
+                CompressionCodec.LZ4);
+    }
+
+    /**
+     * @param codec the compression algorithm applied to all levels of the database
+     * @param compressionLevel the level passed to the compression algorithm; use {@link
+     *     CompressionCodec#DEFAULT_LEVEL} for the algorithm's default
+     * @param dictionarySize the maximum size of the dictionary trained when using {@link
+     *     CompressionCodec#ZSTD_DICTIONARY}
+     */
+    public RocksDBWrapper(
+            String name,
+            String path,
+            Logger log,
+            boolean enableDbCache,
+            int maxOpenFiles,
+            int blockSize,
+            int writeBufferSize,
+            int readBufferSize,
+            int cacheSize,
+            CompressionCodec codec,
+            int compressionLevel,
+            int dictionarySize) {
+        this(
+                name,
+                path,
+                log,
+                enableDbCache,
+                maxOpenFiles,
+                blockSize,
+                writeBufferSize,
+                readBufferSize,
+                cacheSize,
+                codec,
+                compressionLevel,
+                dictionarySize,
+                codec);
+    }
+
+    private RocksDBWrapper(
+            String name,
+            String path,
+            Logger log,
+            boolean enableDbCache,
+            int maxOpenFiles,
+            int blockSize,
+            int writeBufferSize,
+            int readBufferSize,
+            int cacheSize,
+            CompressionCodec codec,
+            int compressionLevel,
+            int dictionarySize,
+            CompressionCodec bottommostCodec) {
+        super(name, path, log, enableDbCache, codec != CompressionCodec.NONE);
 
         this.maxOpenFiles = maxOpenFiles;
         this.blockSize = blockSize;
         this.writeBufferSize = writeBufferSize;
         this.readBufferSize = readBufferSize;
         this.cacheSize = cacheSize;
+        this.codec = codec;
+        this.bottommostCodec = bottommostCodec;
+        this.compressionLevel =
+                codec.isZstd() && compressionLevel == CompressionCodec.DEFAULT_LEVEL
+                        ? CompressionCodec.DEFAULT_ZSTD_LEVEL
+                        : compressionLevel;
+        this.dictionarySize = codec == CompressionCodec.ZSTD_DICTIONARY ? dictionarySize : 0;
 
-        LOG.info("RocksDb Options: EnableCompression:{} XaxOpenFiles:{} BlockSize:{} WriteBuffer:{} ReadBuffer:{} EnableCache:{} CacheSize:{}"
-            , enableDbCompression, maxOpenFiles, blockSize, writeBufferSize, readBufferSize, enableDbCache, cacheSize);
+        LOG.info("RocksDb Options: Compression:{} CompressionLevel:{} DictionarySize:{} XaxOpenFiles:{} BlockSize:{} WriteBuffer:{} ReadBuffer:{} EnableCache:{} CacheSize:{}"
+            , codec.toValue(), this.compressionLevel, this.dictionarySize, maxOpenFiles, blockSize, writeBufferSize, readBufferSize, enableDbCache, cacheSize);
 
         RocksDB.loadLibrary();
     }
 
+    private static CompressionType toCompressionType(CompressionCodec codec) {
+        switch (codec) {
+            case LZ4:
+                return CompressionType.LZ4_COMPRESSION;
+            case ZSTD:
+            case ZSTD_DICTIONARY:
+                return CompressionType.ZSTD_COMPRESSION;
+            case NONE:
+            default:
+                return CompressionType.NO_COMPRESSION;
+        }
+    }
+
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + ":" + propertiesInfo();
@@ -76,12 +176,7 @@ public class RocksDBWrapper extends AbstractDB {
 
         options.setCreateIfMissing(true);
         options.setUseFsync(false);
-        options.setCompressionType(
-                enableDbCompression
-                        ? CompressionType.LZ4_COMPRESSION
-                        : CompressionType.NO_COMPRESSION);
-
-        options.setBottommostCompressionType(CompressionType.LZ4_COMPRESSION);
+        setupCompression(options);
         options.setMinWriteBufferNumberToMerge(MIN_WRITE_BUFFER_NUMBER_TOMERGE);
         options.setLevel0StopWritesTrigger(LEVEL0_STOP_WRITES_TRIGGER);
         options.setLevel0SlowdownWritesTrigger(LEVEL0_SLOWDOWN_WRITES_TRIGGER);
@@ -104,6 +199,23 @@ public class RocksDBWrapper extends AbstractDB {
         return options;
     }
 
+    private void setupCompression(Options options) {
+        options.setCompressionType(toCompressionType(codec));
+        options.setBottommostCompressionType(toCompressionType(bottommostCodec));
+        if (codec == CompressionCodec.NONE) {
+            return;
+        }
+
+        compressionOptions = new CompressionOptions();
+        compressionOptions.setLevel(compressionLevel);
+        if (codec == CompressionCodec.ZSTD_DICTIONARY) {
+            // the dictionary is trained per SST file on a sample of up to 100x its size
+            compressionOptions.setMaxDictBytes(dictionarySize);
+            compressionOptions.setZStdMaxTrainBytes(dictionarySize * 100);
+        }
+        options.setCompressionOptions(compressionOptions);
+    }
+
     private BlockBasedTableConfig setupBlockBasedTableConfig() {
         BlockBasedTableConfig bbtc = new BlockBasedTableConfig();
         bbtc.setBlockSize(BLOCK_SIZE);
@@ -133,7 +245,7 @@ public class RocksDBWrapper extends AbstractDB {
             }
         }
 
-        Options options = setupRocksDbOptions();
+        options = setupRocksDbOptions();
 
         try {
             db = RocksDB.open(options, f.getAbsolutePath());
@@ -158,16 +270,24 @@ public class RocksDBWrapper extends AbstractDB {
 
     @Override
     public void close() {
-        // do nothing if already closed
-        if (db == null) {
-            return;
-        }
+        // skip the database if already closed
+        if (db != null) {
+            LOG.info("Closing database " + this.toString());
 
-        LOG.info("Closing database " + this.toString());
+            // attempt to close the database
+            db.close();
+            db = null;
+        }
 
-        // attempt to close the database
-        db.close();
-        db = null;
+        // the options must outlive the database
+        if (compressionOptions != null) {
+            compressionOptions.close();
+            compressionOptions = null;
+        }
+        if (options != null) {
+            options.close();
+            options = null;
+        }
     }
 
     @Override
@@ -181,6 +301,21 @@ public class RocksDBWrapper extends AbstractDB {
         }
     }
 
+    /** Creates a checkpoint using hard links to the immutable SST files of the database. */
+    @Override
+    public boolean createCheckpoint(File directory) {
+        check();
+
+        LOG.info("Creating checkpoint of " + this.toString() + " in " + directory.getAbsolutePath() + ".");
+        try (Checkpoint checkpoint = Checkpoint.create(db)) {
+            checkpoint.createCheckpoint(directory.getAbsolutePath());
+            return true;
+        } catch (RocksDBException e) {
+            LOG.error("Unable to create checkpoint of " + this.toString() + " due to: ", e);
+            return false;
+        }
+    }
+
     @Override
     public boolean isOpen() {
         return db != null;
@@ -248,6 +383,22 @@ public class RocksDBWrapper extends AbstractDB {
         return Collections.emptyIterator();
     }
 
+    @Override
+    public List<byte[]> keysFrom(byte[] start, int limit) {
+        check();
+
+        List<byte[]> keys = new ArrayList<>();
+        try (RocksIterator itr = db.newIterator()) {
+            // the default comparator orders the keys by their unsigned bytes
+            for (itr.seek(start); itr.isValid() && keys.size() < limit; itr.next()) {
+                keys.add(itr.key());
+            }
+        } catch (Exception e) {
+            LOG.error("Unable to extract keys from database " + this.toString() + ".", e);
+        }
+        return keys;
+    }
+
     /**
      * A wrapper for the {@link RocksIterator} conforming to the {@link Iterator} interface.
      *
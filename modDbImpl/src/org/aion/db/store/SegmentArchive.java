@@ -0,0 +1,441 @@
+package org.aion.db.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only store for records indexed by consecutive heights starting from 0.
+ *
+ * <p>The records are concatenated into segment files that are memory-mapped for both reads and
+ * writes. A separate fixed-width index file maps each height to the segment, offset, length and
+ * hash of its record, so that reading any height or range of heights requires no lookups in a
+ * key-value store and range reads touch contiguous regions of the segment files.
+ *
+ * <p>The index file starts with an 8 byte header holding the number of committed entries. Appended
+ * records become visible to readers immediately, but are committed only by {@link #flush()}, which
+ * forces the records and their index entries to the storage device before updating and forcing the
+ * header. Records appended after the last flush are therefore discarded after a crash, and a
+ * partially written record is never visible.
+ *
+ * @implNote Reads are performed under a shared lock and may proceed concurrently with each other.
+ *     Appends and truncations are performed under an exclusive lock.
+ */
+public final class SegmentArchive implements Closeable {
+
+    public static final int HASH_SIZE = 32;
+    /** Index entry layout: segment (int), offset (int), length (int), hash (32 bytes). */
+    static final int ENTRY_SIZE = 3 * Integer.BYTES + HASH_SIZE;
+
+    static final int HEADER_SIZE = Long.BYTES;
+    static final int ENTRIES_PER_INDEX_CHUNK = 1 << 20;
+    private static final long INDEX_CHUNK_SIZE = (long) ENTRIES_PER_INDEX_CHUNK * ENTRY_SIZE;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+
+    private static final String INDEX_FILE = "index.dat";
+    private static final String SEGMENT_FILE_FORMAT = "segment-%06d.dat";
+
+    private final File dir;
+    private final int segmentSize;
+
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> indexChunks = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private long size;
+    private int writeSegment;
+    private int writeOffset;
+
+    // the first segment and index chunk written since the last flush or -1 when none were written
+    private int dirtySegment = -1;
+    private int dirtyChunk = -1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean open;
+
+    /**
+     * Opens the archive stored in the given directory, creating it if it does not exist.
+     *
+     * @param dir the directory containing the index and segment files
+     * @param segmentSize the maximum size of a segment file; records larger than this value are
+     *     stored in dedicated segments
+     * @throws IOException when the files cannot be created or mapped
+     */
+    public SegmentArchive(File dir, int segmentSize) throws IOException {
+        if (dir == null) {
+            throw new NullPointerException("The archive directory cannot be null.");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("The segment size must be positive.");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create the archive directory " + dir.getAbsolutePath());
+        }
+
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+
+        this.indexChannel =
+                FileChannel.open(
+                        new File(dir, INDEX_FILE).toPath(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        this.header = indexChannel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+        this.size = header.getLong(0);
+
+        recover();
+        this.open = true;
+    }
+
+    public SegmentArchive(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /** Maps the existing segments and positions the write cursor after the last committed record. */
+    private void recover() throws IOException {
+        if (size == 0) {
+            writeSegment = 0;
+            writeOffset = 0;
+            return;
+        }
+
+        mapIndexChunks(size - 1);
+        ByteBuffer last = entry(size - 1);
+        writeSegment = last.getInt(0);
+        writeOffset = last.getInt(Integer.BYTES) + last.getInt(2 * Integer.BYTES);
+
+        for (int i = 0; i <= writeSegment; i++) {
+            File file = segmentFile(i);
+            if (!file.exists()) {
+                throw new IOException("Missing archive segment " + file.getAbsolutePath());
+            }
+            segments.add(mapSegment(i, Math.max(segmentSize, (int) file.length())));
+        }
+    }
+
+    /** Returns the number of stored records, i.e. the height of the next record to be appended. */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a record at the given height. The record is committed by the next {@link #flush()}.
+     *
+     * @param height the height of the record which must be equal to {@link #size()}
+     * @param hash the 32 byte hash identifying the record
+     * @param data the record data
+     * @throws IllegalArgumentException when the height is not the next height in the archive or the
+     *     hash has an incorrect length
+     */
+    public void append(long height, byte[] hash, byte[] data) throws IOException {
+        if (hash == null || hash.length != HASH_SIZE) {
+            throw new IllegalArgumentException("The hash must have " + HASH_SIZE + " bytes.");
+        }
+        if (data == null) {
+            throw new NullPointerException("The record data cannot be null.");
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (height != size) {
+                throw new IllegalArgumentException(
+                        "Archive records must be consecutive. Expected height "
+                                + size
+                                + " but received "
+                                + height
+                                + ".");
+            }
+
+            if (segments.isEmpty()
+                    || (writeOffset > 0
+                            && (long) writeOffset + data.length
+                                    > segments.get(writeSegment).capacity())) {
+                if (!segments.isEmpty()) {
+                    writeSegment++;
+                }
+                writeOffset = 0;
+                segments.add(mapSegment(writeSegment, Math.max(segmentSize, data.length)));
+            }
+
+            ByteBuffer segment = segments.get(writeSegment).duplicate();
+            segment.position(writeOffset);
+            segment.put(data);
+            if (dirtySegment < 0) {
+                dirtySegment = writeSegment;
+            }
+
+            mapIndexChunks(height);
+            if (dirtyChunk < 0) {
+                dirtyChunk = chunkOf(height);
+            }
+            ByteBuffer entry = entry(height);
+            entry.putInt(0, writeSegment);
+            entry.putInt(Integer.BYTES, writeOffset);
+            entry.putInt(2 * Integer.BYTES, data.length);
+            entry.position(3 * Integer.BYTES);
+            entry.put(hash);
+
+            writeOffset += data.length;
+            size = height + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns the record stored at the given height or {@code null} if the height is not stored. */
+    public byte[] get(long height) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            if (height < 0 || height >= size) {
+                return null;
+            }
+            return read(entry(height));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the hash of the record at the given height or {@code null} if the height is not stored. */
+    public byte[] getHash(long height) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            if (height < 0 || height >= size) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_SIZE];
+            ByteBuffer entry = entry(height);
+            entry.position(3 * Integer.BYTES);
+            entry.get(hash);
+            return hash;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the records in the given range of heights in the order they were requested.
+     *
+     * @param first the height of the first returned record
+     * @param last the height of the last returned record; when smaller than {@code first} the
+     *     records are returned in descending order of their height
+     * @return the requested records or {@code null} when any of the heights are not stored
+     */
+    public List<byte[]> getRange(long first, long last) {
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            if (first < 0 || last < 0 || first >= size || last >= size) {
+                return null;
+            }
+
+            int step = first <= last ? 1 : -1;
+            List<byte[]> records = new ArrayList<>((int) Math.abs(last - first) + 1);
+            for (long height = first; height != last + step; height += step) {
+                records.add(read(entry(height)));
+            }
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the records with heights greater or equal to the given value. Segments that no
+     * longer contain records are deleted.
+     */
+    public void truncate(long newSize) throws IOException {
+        if (newSize < 0) {
+            throw new IllegalArgumentException("The archive size cannot be negative.");
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            if (newSize >= size) {
+                return;
+            }
+
+            // commit the remaining records first, since the header is updated before the
+            // segments are deleted
+            forceDirty();
+            size = newSize;
+            header.putLong(0, size);
+            header.force();
+
+            int keepSegments;
+            if (size == 0) {
+                keepSegments = 0;
+                writeSegment = 0;
+                writeOffset = 0;
+            } else {
+                ByteBuffer last = entry(size - 1);
+                writeSegment = last.getInt(0);
+                writeOffset = last.getInt(Integer.BYTES) + last.getInt(2 * Integer.BYTES);
+                keepSegments = writeSegment + 1;
+            }
+
+            while (segments.size() > keepSegments) {
+                int index = segments.size() - 1;
+                segments.remove(index);
+                File file = segmentFile(index);
+                if (file.exists() && !file.delete()) {
+                    throw new IOException("Unable to delete archive segment " + file.getAbsolutePath());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Commits the appended records by forcing them and their index entries to the storage device
+     * before updating and forcing the header.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+            forceDirty();
+            if (header.getLong(0) != size) {
+                header.putLong(0, size);
+                header.force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the segments and index chunks written since the last flush to the storage device.
+     *
+     * @implNote The method calling this method must hold the exclusive lock.
+     */
+    private void forceDirty() {
+        if (dirtySegment >= 0) {
+            for (int i = dirtySegment; i < segments.size(); i++) {
+                segments.get(i).force();
+            }
+            dirtySegment = -1;
+        }
+        if (dirtyChunk >= 0) {
+            for (int i = dirtyChunk; i < indexChunks.size(); i++) {
+                indexChunks.get(i).force();
+            }
+            dirtyChunk = -1;
+        }
+    }
+
+    public boolean isOpen() {
+        lock.readLock().lock();
+        try {
+            return open;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+            flush();
+            open = false;
+            segments.clear();
+            indexChunks.clear();
+            indexChannel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @implNote The method calling this method must handle the locking. */
+    private byte[] read(ByteBuffer entry) {
+        int segment = entry.getInt(0);
+        int offset = entry.getInt(Integer.BYTES);
+        int length = entry.getInt(2 * Integer.BYTES);
+
+        byte[] data = new byte[length];
+        ByteBuffer buffer = segments.get(segment).duplicate();
+        buffer.position(offset);
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * Maps the index chunks up to the one holding the entry for the given height.
+     *
+     * @implNote The method calling this method must hold the exclusive lock, such that readers
+     *     never observe the list of chunks while it is modified.
+     */
+    private void mapIndexChunks(long height) throws IOException {
+        int chunk = chunkOf(height);
+        while (indexChunks.size() <= chunk) {
+            long start = HEADER_SIZE + indexChunks.size() * INDEX_CHUNK_SIZE;
+            indexChunks.add(indexChannel.map(MapMode.READ_WRITE, start, INDEX_CHUNK_SIZE));
+        }
+    }
+
+    /**
+     * Returns a view of the index entry for the given height. The chunks holding the entries of
+     * all stored heights are mapped when the entries are written or recovered.
+     *
+     * @implNote The method calling this method must handle the locking.
+     */
+    private ByteBuffer entry(long height) {
+        int position = (int) (height % ENTRIES_PER_INDEX_CHUNK) * ENTRY_SIZE;
+
+        ByteBuffer entry = indexChunks.get(chunkOf(height)).duplicate();
+        entry.position(position);
+        entry.limit(position + ENTRY_SIZE);
+        return entry.slice();
+    }
+
+    private static int chunkOf(long height) {
+        return (int) (height / ENTRIES_PER_INDEX_CHUNK);
+    }
+
+    private MappedByteBuffer mapSegment(int index, int capacity) throws IOException {
+        try (FileChannel channel =
+                FileChannel.open(
+                        segmentFile(index).toPath(),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+            // the mapping remains valid after the channel is closed
+            return channel.map(MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private File segmentFile(int index) {
+        return new File(dir, String.format(SEGMENT_FILE_FORMAT, index));
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("The archive at " + dir.getAbsolutePath() + " is closed.");
+        }
+    }
+}
@@ -112,6 +112,38 @@ public class DatabaseFactoryTest {
         assertThat(db.toString()).contains(H2MVMap.class.getSimpleName());
     }
 
+    @Test
+    public void testReturnDatabaseWithCompressionCodec() {
+        Properties props = new Properties();
+        props.setProperty(Props.DB_NAME, dbName + DatabaseTestUtils.getNext());
+        props.setProperty(Props.DB_PATH, dbPath);
+        props.setProperty(Props.DB_TYPE, DBVendor.ROCKSDB.toValue());
+
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            props.setProperty(Props.COMPRESSION_CODEC, codec.toValue());
+            props.setProperty(Props.COMPRESSION_LEVEL, "5");
+
+            ByteArrayKeyValueDatabase db = DatabaseFactory.connect(props, log);
+            assertThat(db).isNotNull();
+            assertThat(db.getClass().getSimpleName()).isEqualTo(RocksDBWrapper.class.getSimpleName());
+            assertThat(db.open()).isTrue();
+
+            byte[] key = "key".getBytes();
+            byte[] value = "value".getBytes();
+            db.put(key, value);
+            assertThat(db.get(key).get()).isEqualTo(value);
+            db.drop();
+            db.close();
+        }
+
+        // invalid codecs fall back to the legacy compression flag
+        props.setProperty(Props.COMPRESSION_CODEC, "not a codec");
+        props.setProperty(Props.DB_TYPE, DBVendor.LEVELDB.toValue());
+        ByteArrayKeyValueDatabase db = DatabaseFactory.connect(props, log);
+        assertThat(db).isNotNull();
+        assertThat(db.getClass().getSimpleName()).isEqualTo(LevelDB.class.getSimpleName());
+    }
+
     @Test
     public void testDriverRandomClassReturnNull() {
         Properties props = new Properties();
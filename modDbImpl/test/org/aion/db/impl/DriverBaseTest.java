@@ -778,6 +778,37 @@ public class DriverBaseTest {
         assertThat(keys.hasNext()).isFalse();
     }
 
+    @Test
+    public void testKeysFrom() {
+        byte[] low = new byte[] {0x01};
+        byte[] mid = new byte[] {0x7f, 0x00};
+        byte[] high = new byte[] {(byte) 0x80};
+        byte[] max = new byte[] {(byte) 0xff};
+        assertThat(db.keysFrom(low, 10)).isEmpty();
+
+        Map<byte[], byte[]> ops = new HashMap<>();
+        ops.put(max, v1);
+        ops.put(high, v2);
+        ops.put(low, v3);
+        ops.put(mid, v1);
+        db.putBatch(ops);
+
+        // the keys are ordered by their unsigned bytes
+        List<byte[]> keys = db.keysFrom(new byte[] {0x7f}, 2);
+        assertThat(db.isLocked()).isFalse();
+        assertThat(keys.size()).isEqualTo(2);
+        assertThat(keys.get(0)).isEqualTo(mid);
+        assertThat(keys.get(1)).isEqualTo(high);
+
+        keys = db.keysFrom(mid, 10);
+        assertThat(keys.size()).isEqualTo(3);
+        assertThat(keys.get(0)).isEqualTo(mid);
+        assertThat(keys.get(2)).isEqualTo(max);
+
+        assertThat(db.keysFrom(new byte[] {(byte) 0xff, 0x00}, 10)).isEmpty();
+        assertThat(db.keysFrom(low, 0)).isEmpty();
+    }
+
     @Test
     public void testIsEmpty() {
         assertThat(db.isEmpty()).isTrue();
@@ -0,0 +1,102 @@
+package org.aion.db.impl;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.aion.db.impl.DatabaseFactory.Props;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.aion.db.generic.DatabaseTrace;
+import org.aion.db.generic.DatabaseTrace.Op;
+import org.aion.db.generic.RecordingDatabase;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for {@link RecordingDatabase} and {@link TraceReplay}. */
+public class TraceReplayTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File record() throws Exception {
+        File traceDir = folder.newFolder("traces");
+
+        Properties props = new Properties();
+        props.setProperty(Props.DB_TYPE, DBVendor.MOCKDB.toValue());
+        props.setProperty(Props.DB_NAME, "state");
+        props.setProperty(Props.TRACE_PATH, traceDir.getAbsolutePath());
+
+        ByteArrayKeyValueDatabase db = DatabaseFactory.connect(props, log);
+        assertThat(db).isInstanceOf(RecordingDatabase.class);
+        assertThat(db.open()).isTrue();
+
+        db.put(new byte[] {1}, new byte[] {10});
+        db.get(new byte[] {1});
+        db.putBatch(Map.of(new byte[] {2}, new byte[] {20}, new byte[] {3}, new byte[] {30}));
+        db.putToBatch(new byte[] {4}, new byte[] {40});
+        db.deleteInBatch(new byte[] {2});
+        db.commitBatch();
+        db.deleteBatch(List.of(new byte[] {3}));
+        db.delete(new byte[] {1});
+        db.close();
+
+        return new File(traceDir, "state" + DatabaseTrace.FILE_EXTENSION);
+    }
+
+    @Test
+    public void testRecordTrace() throws Exception {
+        File trace = record();
+        assertThat(trace.isFile()).isTrue();
+
+        try (DatabaseTrace.Reader reader = new DatabaseTrace.Reader(trace)) {
+            DatabaseTrace.Record record = reader.next();
+            assertThat(record.op).isEqualTo(Op.PUT);
+            assertThat(record.key).isEqualTo(new byte[] {1});
+            assertThat(record.value).isEqualTo(new byte[] {10});
+
+            record = reader.next();
+            assertThat(record.op).isEqualTo(Op.GET);
+            assertThat(record.key).isEqualTo(new byte[] {1});
+
+            record = reader.next();
+            assertThat(record.op).isEqualTo(Op.PUT_BATCH);
+            assertThat(record.batch.size()).isEqualTo(2);
+
+            assertThat(reader.next().op).isEqualTo(Op.PUT_TO_BATCH);
+            assertThat(reader.next().op).isEqualTo(Op.DELETE_IN_BATCH);
+            assertThat(reader.next().op).isEqualTo(Op.COMMIT_BATCH);
+
+            record = reader.next();
+            assertThat(record.op).isEqualTo(Op.DELETE_BATCH);
+            assertThat(record.keys.size()).isEqualTo(1);
+
+            assertThat(reader.next().op).isEqualTo(Op.DELETE);
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File trace = record();
+
+        Properties props = new Properties();
+        props.setProperty(Props.DB_TYPE, DBVendor.MOCKDB.toValue());
+        props.setProperty(Props.DB_NAME, "replay");
+        // the replayed database is never recorded
+        props.setProperty(Props.TRACE_PATH, folder.newFolder("ignored").getAbsolutePath());
+
+        TraceReplay.Result result = TraceReplay.replay(trace, props, "mockdb", log);
+        assertThat(result.operations).isEqualTo(8L);
+        // 4 puts of 2 bytes and 3 deletes of 1 byte
+        assertThat(result.logicalBytesWritten).isEqualTo(11L);
+        assertThat(result.latency(Op.GET, 0.5)).isAtLeast(0L);
+        assertThat(result.latency(Op.COMMIT, 0.5)).isEqualTo(-1L);
+        assertThat(new File(props.getProperty(Props.TRACE_PATH), "replay" + DatabaseTrace.FILE_EXTENSION).exists()).isFalse();
+        assertThat(result.toReport()).contains("mockdb");
+    }
+}
@@ -0,0 +1,91 @@
+package org.aion.db.impl.rocksdb;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import org.aion.db.impl.CompressionCodec;
+import org.aion.db.impl.mockdb.MockDB;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tests for {@link CompressionBenchmark}. */
+public class CompressionBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger("DB");
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MockDB sourceWithEntries(int count) {
+        MockDB source = new MockDB("source", log);
+        source.open();
+        for (int i = 0; i < count; i++) {
+            // repetitive values compress well
+            byte[] value = new byte[256];
+            for (int j = 0; j < value.length; j++) {
+                value[j] = (byte) (j % 16);
+            }
+            value[0] = (byte) i;
+            source.put(new byte[] {(byte) (i >> 8), (byte) i}, value);
+        }
+        return source;
+    }
+
+    @Test
+    public void testSample() {
+        MockDB source = sourceWithEntries(1000);
+
+        Map<byte[], byte[]> sample = CompressionBenchmark.sample(source, 100, 1L);
+        assertThat(sample.size()).isEqualTo(100);
+        for (Map.Entry<byte[], byte[]> entry : sample.entrySet()) {
+            assertThat(source.get(entry.getKey()).get()).isEqualTo(entry.getValue());
+        }
+
+        // requesting more than available returns all entries
+        assertThat(CompressionBenchmark.sample(source, 2000, 1L).size()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testRunAndRecommend() throws Exception {
+        MockDB source = sourceWithEntries(2000);
+        Map<byte[], byte[]> sample = CompressionBenchmark.sample(source, 2000, 1L);
+
+        List<CompressionBenchmark.Result> results =
+                new CompressionBenchmark(folder.newFolder("work"), log)
+                        .run(sample, CompressionBenchmark.DEFAULT_CANDIDATES);
+        assertThat(results.size()).isEqualTo(CompressionBenchmark.DEFAULT_CANDIDATES.size());
+
+        CompressionBenchmark.Result none = results.get(0);
+        assertThat(none.candidate.codec).isEqualTo(CompressionCodec.NONE);
+        for (CompressionBenchmark.Result result : results) {
+            assertThat(result.diskSize).isGreaterThan(0L);
+            if (result.candidate.codec != CompressionCodec.NONE) {
+                assertThat(result.diskSize).isLessThan(none.diskSize);
+            }
+        }
+
+        // without latency constraints the smallest result is chosen
+        CompressionBenchmark.Result best = CompressionBenchmark.recommend(results, Double.MAX_VALUE);
+        for (CompressionBenchmark.Result result : results) {
+            assertThat(best.diskSize).isAtMost(result.diskSize);
+        }
+    }
+
+    @Test
+    public void testRunEmptySample() throws Exception {
+        Map<byte[], byte[]> sample = CompressionBenchmark.sample(sourceWithEntries(0), 100, 1L);
+        assertThat(sample).isEmpty();
+
+        List<CompressionBenchmark.Result> results =
+                new CompressionBenchmark(folder.newFolder("work"), log)
+                        .run(sample, CompressionBenchmark.DEFAULT_CANDIDATES.subList(0, 1));
+
+        // no reads were measured
+        assertThat(results.size()).isEqualTo(1);
+        assertThat(results.get(0).medianReadNanos).isEqualTo(0L);
+        assertThat(results.get(0).p99ReadNanos).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,160 @@
+package org.aion.db.store;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for {@link SegmentArchive}. */
+public class SegmentArchiveTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = folder.newFolder("archive");
+    }
+
+    private static byte[] hash(long height) {
+        byte[] hash = new byte[SegmentArchive.HASH_SIZE];
+        hash[0] = (byte) height;
+        hash[SegmentArchive.HASH_SIZE - 1] = (byte) (height >> 8);
+        return hash;
+    }
+
+    private static byte[] record(long height, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (height + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void testAppendAndGet() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            for (long i = 0; i < 20; i++) {
+                archive.append(i, hash(i), record(i, 50));
+            }
+
+            assertThat(archive.size()).isEqualTo(20L);
+            for (long i = 0; i < 20; i++) {
+                assertThat(archive.get(i)).isEqualTo(record(i, 50));
+                assertThat(archive.getHash(i)).isEqualTo(hash(i));
+            }
+            assertThat(archive.get(20)).isNull();
+            assertThat(archive.get(-1)).isNull();
+        }
+    }
+
+    @Test
+    public void testRecordLargerThanSegment() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            archive.append(0, hash(0), record(0, 10));
+            archive.append(1, hash(1), record(1, 1000));
+            archive.append(2, hash(2), record(2, 10));
+
+            assertThat(archive.get(1)).isEqualTo(record(1, 1000));
+            assertThat(archive.get(2)).isEqualTo(record(2, 10));
+        }
+    }
+
+    @Test
+    public void testGetRange() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            for (long i = 0; i < 10; i++) {
+                archive.append(i, hash(i), record(i, 40));
+            }
+
+            List<byte[]> ascending = archive.getRange(2, 6);
+            assertThat(ascending.size()).isEqualTo(5);
+            assertThat(ascending.get(0)).isEqualTo(record(2, 40));
+            assertThat(ascending.get(4)).isEqualTo(record(6, 40));
+
+            List<byte[]> descending = archive.getRange(9, 7);
+            assertThat(descending.size()).isEqualTo(3);
+            assertThat(descending.get(0)).isEqualTo(record(9, 40));
+            assertThat(descending.get(2)).isEqualTo(record(7, 40));
+
+            // ranges that are not fully stored are rejected
+            assertThat(archive.getRange(5, 10)).isNull();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendWithGap() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            archive.append(0, hash(0), record(0, 10));
+            archive.append(2, hash(2), record(2, 10));
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            for (long i = 0; i < 10; i++) {
+                archive.append(i, hash(i), record(i, 30));
+            }
+        }
+
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            assertThat(archive.size()).isEqualTo(10L);
+            assertThat(archive.get(9)).isEqualTo(record(9, 30));
+
+            // appending continues after the last stored record
+            archive.append(10, hash(10), record(10, 30));
+            assertThat(archive.get(10)).isEqualTo(record(10, 30));
+            assertThat(archive.get(8)).isEqualTo(record(8, 30));
+        }
+    }
+
+    @Test
+    public void testRecordsCommittedByFlush() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            for (long i = 0; i < 5; i++) {
+                archive.append(i, hash(i), record(i, 50));
+            }
+            archive.flush();
+            for (long i = 5; i < 10; i++) {
+                archive.append(i, hash(i), record(i, 50));
+            }
+            // appended records are visible before being committed
+            assertThat(archive.get(9)).isEqualTo(record(9, 50));
+
+            // the header only counts the records committed by the flush
+            try (SegmentArchive committed = new SegmentArchive(dir, 128)) {
+                assertThat(committed.size()).isEqualTo(5L);
+                assertThat(committed.get(4)).isEqualTo(record(4, 50));
+                assertThat(committed.get(5)).isNull();
+            }
+        }
+    }
+
+    @Test
+    public void testTruncate() throws IOException {
+        try (SegmentArchive archive = new SegmentArchive(dir, 128)) {
+            for (long i = 0; i < 20; i++) {
+                archive.append(i, hash(i), record(i, 50));
+            }
+            assertThat(new File(dir, "segment-000009.dat").exists()).isTrue();
+
+            archive.truncate(5);
+            assertThat(archive.size()).isEqualTo(5L);
+            assertThat(archive.get(5)).isNull();
+            assertThat(archive.get(4)).isEqualTo(record(4, 50));
+            // emptied segments are deleted
+            assertThat(new File(dir, "segment-000009.dat").exists()).isFalse();
+
+            archive.append(5, hash(100), record(100, 50));
+            assertThat(archive.get(5)).isEqualTo(record(100, 50));
+            assertThat(archive.getHash(5)).isEqualTo(hash(100));
+        }
+    }
+}
@@ -26,5 +26,35 @@ public abstract class Handler {
      */
     public abstract void receive(int _id, String _displayId, final byte[] _msg);
 
+    /**
+     * Returns the maximum number of messages for this handler's route processed at the same time.
+     * Routes with a concurrency of one process their messages in the order they were received.
+     *
+     * @return int
+     */
+    public int getConcurrency() {
+        return P2pConstant.DEFAULT_ROUTE_CONCURRENCY;
+    }
+
+    /**
+     * Returns the maximum number of messages for this handler's route waiting to be processed.
+     * Messages received while the route is saturated are dropped.
+     *
+     * @return int
+     */
+    public int getQueueSize() {
+        return P2pConstant.DEFAULT_ROUTE_QUEUE_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of messages for this handler's route accepted from a single peer
+     * per second. Messages received above this rate are dropped.
+     *
+     * @return int
+     */
+    public int getMaxRequestsPerSecond() {
+        return P2pConstant.READ_MAX_RATE_TXBC;
+    }
+
     public void shutDown() {}
 }
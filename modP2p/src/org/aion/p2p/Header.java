@@ -7,11 +7,18 @@ public class Header {
 
     public static final int LEN = 8;
 
+    /**
+     * Set in the length field when the body is compressed. Never set by peers that do not
+     * negotiate compression since the body length is limited to {@link P2pConstant#MAX_BODY_SIZE}.
+     */
+    public static final int COMPRESSED_FLAG = 1 << 30;
+
     private static final int MAX_BODY_LEN_BYTES = P2pConstant.MAX_BODY_SIZE;
     private final short ver;
     private final byte ctrl;
     private final byte action;
     private int len;
+    private boolean compressed = false;
 
     /**
      * @param _ver short
@@ -55,9 +62,30 @@ public class Header {
         this.len = _len;
     }
 
+    /** @return boolean */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
     /** @return byte[] */
     public byte[] encode() {
-        return ByteBuffer.allocate(LEN).putInt(this.getRoute()).putInt(len).array();
+        return ByteBuffer.allocate(LEN)
+                .putInt(this.getRoute())
+                .putInt(compressed ? len | COMPRESSED_FLAG : len)
+                .array();
+    }
+
+    /**
+     * Encodes the header of this message for a compressed body without modifying the header.
+     *
+     * @param _compressedLen the length of the compressed body
+     * @return byte[]
+     */
+    public byte[] encodeCompressed(int _compressedLen) {
+        return ByteBuffer.allocate(LEN)
+                .putInt(this.getRoute())
+                .putInt(_compressedLen | COMPRESSED_FLAG)
+                .array();
     }
 
     /**
@@ -73,10 +101,16 @@ public class Header {
             byte ctrl = bb1.get();
             byte action = bb1.get();
             int len = bb1.getInt();
+            boolean compressed = len > 0 && (len & COMPRESSED_FLAG) != 0;
+            if (compressed) {
+                len &= ~COMPRESSED_FLAG;
+            }
             if (len > MAX_BODY_LEN_BYTES) {
                 throw new IndexOutOfBoundsException("exceed-max-body-size");
             }
-            return new Header(ver, ctrl, action, len);
+            Header header = new Header(ver, ctrl, action, len);
+            header.compressed = compressed;
+            return header;
         }
     }
 }
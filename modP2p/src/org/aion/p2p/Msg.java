@@ -21,6 +21,16 @@ public abstract class Msg {
         return this.header;
     }
 
+    /**
+     * Returns the priority of this message in the outbound queue of the peer. P2p control messages
+     * default to {@link SendPriority#CONTROL} and all other messages to {@link SendPriority#SYNC}.
+     *
+     * @return SendPriority
+     */
+    public SendPriority getPriority() {
+        return header.getCtrl() == Ctrl.NET ? SendPriority.CONTROL : SendPriority.SYNC;
+    }
+
     /**
      * Returns byte array encoding of message.
      *
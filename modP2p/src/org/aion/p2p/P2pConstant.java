@@ -17,5 +17,12 @@ public class P2pConstant {
             READ_MAX_RATE_TXBC = 20,
 
             // write queue timeout
-            WRITE_MSG_TIMEOUT = 5000;
+            WRITE_MSG_TIMEOUT = 5000,
+
+            // threads and queued messages per inbound route unless set by the handler
+            DEFAULT_ROUTE_CONCURRENCY = 2,
+            DEFAULT_ROUTE_QUEUE_SIZE = 10_000,
+
+            // queued messages for routes that serve requests from the database
+            REQUEST_ROUTE_QUEUE_SIZE = 1_000;
 }
@@ -0,0 +1,17 @@
+package org.aion.p2p;
+
+/**
+ * Classes of outbound messages in decreasing order of priority. Within the queue of a peer,
+ * messages with a higher priority are sent first and messages with the lowest priority are the
+ * first to be dropped when the queue is full.
+ */
+public enum SendPriority {
+    /** P2p control messages and status exchanges. */
+    CONTROL,
+    /** New block propagation. */
+    BLOCK,
+    /** Sync requests and responses. */
+    SYNC,
+    /** Transaction gossip. */
+    TX
+}
@@ -20,6 +20,9 @@ public class V1Constants {
     // TODO: also add limit for the size of the resulting message
     public static final int BLOCKS_REQUEST_MAXIMUM_BATCH_SIZE = 60;
 
+    /** Limits the number of headers returned to one skeleton request. */
+    public static final int SKELETON_REQUEST_MAXIMUM_BATCH_SIZE = 128;
+
     /** The number of components contained in a trie data response. */
     public static int TRIE_DATA_RESPONSE_COMPONENTS = 4;
 }
@@ -1,6 +1,8 @@
 package org.aion.p2p;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Before;
@@ -71,6 +73,32 @@ public class HeaderTest {
         Header.decode(bytes);
     }
 
+    @Test
+    public void encodeDecodeCompressed() {
+        Header hdr = Header.decode(hd.encodeCompressed(20));
+        assertTrue(hdr.isCompressed());
+        assertEquals(20, hdr.getLen());
+        assertEquals(route, hdr.getRoute());
+
+        // the original header is not modified
+        assertFalse(hd.isCompressed());
+        assertEquals(length, hd.getLen());
+
+        Header again = Header.decode(hdr.encode());
+        assertTrue(again.isCompressed());
+        assertEquals(20, again.getLen());
+    }
+
+    @Test
+    public void decodeNotCompressed() {
+        assertFalse(Header.decode(hd.encode()).isCompressed());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void decodeCompressedTooLarge() {
+        Header.decode(hd.encodeCompressed(P2pConstant.MAX_BODY_SIZE + 1));
+    }
+
     @Test
     public void repeatEncodeDecode() {
         for (int i = 0; i < 100; i++) {
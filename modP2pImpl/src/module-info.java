@@ -6,5 +6,6 @@ module aion.p2p.impl {
     requires commons.collections4;
 
     exports org.aion.p2p.impl1;
+    exports org.aion.p2p.impl2;
     exports org.aion.p2p.impl.zero.msg;
 }
@@ -0,0 +1,22 @@
+package org.aion.p2p.impl.comm;
+
+/**
+ * Optional features advertised in a bit set appended to the handshake messages. Peers that do not
+ * append it support none of them.
+ */
+public final class Capability {
+
+    public static final byte NONE = 0;
+
+    /** Accepts message bodies compressed as flagged by {@link org.aion.p2p.Header#isCompressed()}. */
+    public static final byte COMPRESSION = 0x01;
+
+    /**
+     * @param _capabilities byte the advertised capabilities
+     * @param _capability byte the capability to check
+     * @return boolean whether the capability is included in the advertised ones
+     */
+    public static boolean supports(byte _capabilities, byte _capability) {
+        return (_capabilities & _capability) == _capability;
+    }
+}
@@ -3,6 +3,7 @@ package org.aion.p2p.impl.zero.msg;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import org.aion.p2p.impl.comm.Capability;
 import org.slf4j.Logger;
 
 /**
@@ -15,6 +16,8 @@ public final class ReqHandshake1 extends ReqHandshake {
 
     private List<Short> versions;
 
+    private byte capabilities;
+
     // one version byte[2] - short
     private static final byte MAX_VERSIONS_LEN = 63;
 
@@ -36,15 +39,34 @@ public final class ReqHandshake1 extends ReqHandshake {
             int _port,
             final byte[] _revision,
             final List<Short> _versions) {
+        this(_nodeId, _netId, _ip, _port, _revision, _versions, Capability.NONE);
+    }
+
+    /**
+     * @param _capabilities byte optional features supported by this node, see {@link Capability}
+     */
+    public ReqHandshake1(
+            final byte[] _nodeId,
+            int _netId,
+            final byte[] _ip,
+            int _port,
+            final byte[] _revision,
+            final List<Short> _versions,
+            byte _capabilities) {
         super(_nodeId, _netId, _ip, _port);
         this.revision = _revision;
         this.versions = _versions.subList(0, Math.min(MAX_VERSIONS_LEN, _versions.size()));
+        this.capabilities = _capabilities;
     }
 
     public byte[] getRevision() {
         return this.revision;
     }
 
+    public byte getCapabilities() {
+        return this.capabilities;
+    }
+
     /**
      * @param _bytes byte[]
      * @return ReqHandshake decode body
@@ -82,7 +104,11 @@ public final class ReqHandshake1 extends ReqHandshake {
                     versions.add(version);
                 }
 
-                return new ReqHandshake1(nodeId, netId, ip, port, revision, versions);
+                // decode capabilities, absent for older peers
+                byte capabilities = buf.hasRemaining() ? buf.get() : Capability.NONE;
+
+                return new ReqHandshake1(
+                        nodeId, netId, ip, port, revision, versions, capabilities);
             } catch (Exception e) {
                 if (p2pLOG.isDebugEnabled()) {
                     p2pLOG.debug("req-handshake-decode error.", e);
@@ -100,8 +126,16 @@ public final class ReqHandshake1 extends ReqHandshake {
             if (superBytes == null) return null;
             byte revisionLen = (byte) this.revision.length;
             byte versionsLen = (byte) this.versions.size();
+            // the capabilities are omitted when empty to keep the original encoding
+            int capabilitiesLen = this.capabilities == Capability.NONE ? 0 : 1;
             ByteBuffer buf =
-                    ByteBuffer.allocate(superBytes.length + 1 + revisionLen + 1 + versionsLen * 2);
+                    ByteBuffer.allocate(
+                            superBytes.length
+                                    + 1
+                                    + revisionLen
+                                    + 1
+                                    + versionsLen * 2
+                                    + capabilitiesLen);
             buf.put(superBytes);
             buf.put(revisionLen);
             buf.put(this.revision);
@@ -109,6 +143,9 @@ public final class ReqHandshake1 extends ReqHandshake {
             for (Short version : versions) {
                 buf.putShort(version);
             }
+            if (capabilitiesLen > 0) {
+                buf.put(this.capabilities);
+            }
             return buf.array();
         }
     }
@@ -4,6 +4,7 @@ import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import javax.annotation.Nonnull;
+import org.aion.p2p.impl.comm.Capability;
 import org.slf4j.Logger;
 
 /** @author chris */
@@ -14,11 +15,24 @@ public final class ResHandshake1 extends ResHandshake {
 
     private final Logger p2pLOG;
     private String binaryVersion;
+    private final byte capabilities;
 
     public ResHandshake1(final Logger p2pLOG, boolean _success, @Nonnull final String _binaryVersion) {
+        this(p2pLOG, _success, _binaryVersion, Capability.NONE);
+    }
+
+    /**
+     * @param _capabilities byte optional features supported by this node, see {@link Capability}
+     */
+    public ResHandshake1(
+            final Logger p2pLOG,
+            boolean _success,
+            @Nonnull final String _binaryVersion,
+            byte _capabilities) {
         super(_success);
 
         this.p2pLOG = p2pLOG;
+        this.capabilities = _capabilities;
 
         // truncate string when byte length large then 127
         if (_binaryVersion.getBytes().length > Byte.MAX_VALUE) {
@@ -50,7 +64,11 @@ public final class ResHandshake1 extends ResHandshake {
                         }
                         return null;
                     }
-                    return new ResHandshake1(p2pLOG, _bytes[0] == 0x01, binaryVersion);
+                    // decode capabilities, absent for older peers
+                    byte capabilities =
+                            _bytes.length > MIN_LEN + len ? _bytes[MIN_LEN + len] : Capability.NONE;
+                    return new ResHandshake1(
+                            p2pLOG, _bytes[0] == 0x01, binaryVersion, capabilities);
                 } else {
                     if (p2pLOG.isDebugEnabled()) {
                         p2pLOG.debug(
@@ -73,6 +91,10 @@ public final class ResHandshake1 extends ResHandshake {
         return this.binaryVersion;
     }
 
+    public byte getCapabilities() {
+        return this.capabilities;
+    }
+
     @Override
     public byte[] encode() {
         byte[] superBytes = super.encode();
@@ -100,10 +122,15 @@ public final class ResHandshake1 extends ResHandshake {
                 return null;
             }
         }
-        ByteBuffer buf = ByteBuffer.allocate(superBytes.length + 1 + len);
+        // the capabilities are omitted when empty to keep the original encoding
+        int capabilitiesLen = this.capabilities == Capability.NONE ? 0 : 1;
+        ByteBuffer buf = ByteBuffer.allocate(superBytes.length + 1 + len + capabilitiesLen);
         buf.put(superBytes);
         buf.put((byte) len);
         buf.put(binaryVersionBytes);
+        if (capabilitiesLen > 0) {
+            buf.put(this.capabilities);
+        }
         return buf.array();
     }
 }
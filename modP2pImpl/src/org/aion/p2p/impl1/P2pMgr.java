@@ -15,9 +15,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -33,16 +31,18 @@ import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.p2p.impl.TaskRequestActiveNodes;
 import org.aion.p2p.impl.TaskUPnPManager;
+import org.aion.p2p.impl.comm.Capability;
 import org.aion.p2p.impl.comm.Node;
 import org.aion.p2p.impl.comm.NodeMgr;
 import org.aion.p2p.impl.zero.msg.ReqHandshake1;
 import org.aion.p2p.impl.zero.msg.ResHandshake1;
-import org.aion.p2p.impl1.tasks.MsgIn;
+import org.aion.p2p.impl1.tasks.EncodedMsgCache;
 import org.aion.p2p.impl1.tasks.MsgOut;
+import org.aion.p2p.impl1.tasks.RouteDispatcher;
+import org.aion.p2p.impl1.tasks.SendQueues;
 import org.aion.p2p.impl1.tasks.TaskClear;
 import org.aion.p2p.impl1.tasks.TaskConnectPeers;
 import org.aion.p2p.impl1.tasks.TaskInbound;
-import org.aion.p2p.impl1.tasks.TaskReceive;
 import org.aion.p2p.impl1.tasks.TaskSend;
 import org.aion.p2p.impl1.tasks.TaskStatus;
 import org.apache.commons.collections4.map.LRUMap;
@@ -55,22 +55,25 @@ public final class P2pMgr implements IP2pMgr {
     private static final int PERIOD_UPNP_PORT_MAPPING = 3600000;
     private static final int TIMEOUT_MSG_READ = 10000;
 
-    private static final int OFFER_TIMEOUT = 100; // in milliseconds
-
     public final Logger p2pLOG, surveyLog;
 
-    // IO-bounded threads get max-gain from the double of the availableProcessor number
-    private static final int WORKER = Math.min(Runtime.getRuntime().availableProcessors() * 2, 32);
+    // writes do not block, so a few threads are enough to service all peers
+    private static final int SEND_WORKER = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    private static final int SEND_QUEUE_PER_PEER = 1_000;
     private final int SOCKET_RECV_BUFFER = 1024 * 128;
     private final int SOCKET_BACKLOG = 1024;
 
     private final int maxTempNodes, maxActiveNodes, selfNodeIdHash, selfPort;
     private final int selfChainId;
+    // optional features offered to peers during the handshake
+    private final byte selfCapabilities;
     private boolean syncSeedsOnly, upnpEnable;
     private String selfRevision, selfShortId;
     private final byte[] selfNodeId, selfIp;
     private INodeMgr nodeMgr;
     private final Map<Integer, List<Handler>> handlers = new ConcurrentHashMap<>();
+    // the inbound rate limit of each route declared by its handlers
+    private final Map<Integer, Integer> routeRates = new ConcurrentHashMap<>();
     private final Set<Short> versions = new HashSet<>();
     private final Map<Integer, Integer> errCnt = Collections.synchronizedMap(new LRUMap<>(128));
     private final AtomicBoolean start = new AtomicBoolean(true);
@@ -78,24 +81,27 @@ public final class P2pMgr implements IP2pMgr {
     private ServerSocketChannel tcpServer;
     private Selector selector;
     private ScheduledExecutorService scheduledWorkers;
+    private final List<Thread> sendThreads = new ArrayList<>();
     private int errTolerance;
     /*
-     * The value was chosen to be smaller than the limit for receiveMsgQue.
-     * The size should be increased if we notice many warning logs that
-     * the queue has reached capacity during execution.
+     * Each peer has its own bounded queue. When full, the lowest priority
+     * messages are dropped first. The size should be increased if we notice
+     * many dropped messages for peers that are keeping up. A message sent to
+     * many peers is encoded once and shared by all the send workers.
      */
-    private BlockingQueue<MsgOut> sendMsgQue = new LinkedBlockingQueue<>(10_000);
+    private final EncodedMsgCache encodedMsgs = new EncodedMsgCache();
+    private SendQueues sendMsgQue = new SendQueues(SEND_QUEUE_PER_PEER, encodedMsgs);
     /*
-     * The size limit was chosen taking into account that:
-     * - in a 2G OOM heap dump the size of this queue reached close to 700_000;
-     * - in normal execution heap dumps the size is close to 0.
-     * The size should be increased if we notice many warning logs that
-     * the queue has reached capacity during execution.
+     * Each route has its own bounded queue and workers as declared by its
+     * handlers, so that slow handlers (e.g. serving blocks from the database)
+     * cannot starve the processing of other message types. When a route is
+     * saturated its new messages are dropped instead of blocking the inbound
+     * selector thread.
      */
-    private BlockingQueue<MsgIn> receiveMsgQue = new LinkedBlockingQueue<>(50_000);
+    private final RouteDispatcher receiveMsgQue;
 
-    private static ReqHandshake1 cachedReqHandshake1;
-    private static ResHandshake1 cachedResHandshake1;
+    private ReqHandshake1 cachedReqHandshake1;
+    private ResHandshake1 cachedResHandshake1;
 
     public enum Dest {
         INBOUND,
@@ -128,12 +134,49 @@ public final class P2pMgr implements IP2pMgr {
             final int _maxActiveNodes,
             final boolean _bootlistSyncOnly,
             final int _errorTolerance) {
+        this(
+                _p2pLog,
+                surveyLog,
+                chainId,
+                _revision,
+                _nodeId,
+                _ip,
+                _port,
+                _bootNodes,
+                _upnpEnable,
+                _maxTempNodes,
+                _maxActiveNodes,
+                _bootlistSyncOnly,
+                _errorTolerance,
+                true);
+    }
+
+    /**
+     * @param _compression boolean whether to offer message compression to peers during the
+     *     handshake. Compression is used only with peers that offer it as well.
+     */
+    public P2pMgr(
+            final Logger _p2pLog,
+            final Logger surveyLog,
+            final int chainId,
+            final String _revision,
+            final String _nodeId,
+            final String _ip,
+            final int _port,
+            final String[] _bootNodes,
+            final boolean _upnpEnable,
+            final int _maxTempNodes,
+            final int _maxActiveNodes,
+            final boolean _bootlistSyncOnly,
+            final int _errorTolerance,
+            final boolean _compression) {
 
         if (_p2pLog == null) {
             throw new NullPointerException("A non-null logger must be provided in the constructor.");
         }
         this.p2pLOG = _p2pLog;
         this.surveyLog = surveyLog;
+        this.receiveMsgQue = new RouteDispatcher(_p2pLog, surveyLog, start, handlers);
         this.selfChainId = chainId;
         this.selfRevision = _revision;
         this.selfNodeId = _nodeId.getBytes();
@@ -146,6 +189,7 @@ public final class P2pMgr implements IP2pMgr {
         this.maxActiveNodes = _maxActiveNodes;
         this.syncSeedsOnly = _bootlistSyncOnly;
         this.errTolerance = _errorTolerance;
+        this.selfCapabilities = _compression ? Capability.COMPRESSION : Capability.NONE;
 
         INode myNode = new Node(false, selfNodeId, selfIp, selfPort);
         myNode.setBinaryVersion(selfRevision);
@@ -163,7 +207,8 @@ public final class P2pMgr implements IP2pMgr {
 
         // rem out for bug:
         // nodeMgr.loadPersistedNodes();
-        cachedResHandshake1 = new ResHandshake1(p2pLOG, true, this.selfRevision);
+        cachedResHandshake1 =
+                new ResHandshake1(p2pLOG, true, this.selfRevision, this.selfCapabilities);
     }
 
     @Override
@@ -218,16 +263,25 @@ public final class P2pMgr implements IP2pMgr {
                         });
             }
 
-            Thread thrdOut = new Thread(new TaskSend(p2pLOG, surveyLog, this, sendMsgQue, start, nodeMgr, selector), "p2p-out");
-            thrdOut.setPriority(Thread.MAX_PRIORITY);
-            thrdOut.start();
-
-            for (int i = 0; i < WORKER; i++) {
-                Thread t = new Thread(getReceiveInstance(), "p2p-worker-" + i);
-                t.setPriority(Thread.NORM_PRIORITY);
-                t.start();
+            for (int i = 0; i < SEND_WORKER; i++) {
+                TaskSend taskSend =
+                        new TaskSend(
+                                p2pLOG,
+                                surveyLog,
+                                this,
+                                sendMsgQue,
+                                start,
+                                nodeMgr,
+                                selector,
+                                encodedMsgs);
+                Thread thrdOut = new Thread(taskSend, "p2p-out-" + i);
+                thrdOut.setPriority(Thread.MAX_PRIORITY);
+                thrdOut.start();
+                sendThreads.add(thrdOut);
             }
 
+            receiveMsgQue.start();
+
             if (upnpEnable) {
                 scheduledWorkers.scheduleWithFixedDelay(
                         new TaskUPnPManager(p2pLOG, selfPort),
@@ -266,6 +320,7 @@ public final class P2pMgr implements IP2pMgr {
 
     @Override
     public void register(final List<Handler> _cbs) {
+        Set<Integer> routes = new HashSet<>();
         for (Handler _cb : _cbs) {
             Header h = _cb.getHeader();
             short ver = h.getVer();
@@ -282,8 +337,11 @@ public final class P2pMgr implements IP2pMgr {
                 } else {
                     routeHandlers.add(_cb);
                 }
+                routeRates.merge(route, _cb.getMaxRequestsPerSecond(), Math::max);
+                routes.add(route);
             }
         }
+        routes.forEach(receiveMsgQue::register);
 
         List<Short> supportedVersions = new ArrayList<>(versions);
         cachedReqHandshake1 = getReqHandshake1Instance(supportedVersions);
@@ -291,13 +349,9 @@ public final class P2pMgr implements IP2pMgr {
 
     @Override
     public void send(int _nodeIdHash, String _nodeIdShort, final Msg _msg) {
-        try {
-            boolean added = sendMsgQue.offer(new MsgOut(_nodeIdHash, _nodeIdShort, _msg, Dest.ACTIVE), OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
-            if (!added) {
-                p2pLOG.warn("Message not added to the send queue due to exceeded capacity: msg={} for node={}", _msg, _nodeIdShort);
-            }
-        } catch (InterruptedException e) {
-            p2pLOG.error("Interrupted while attempting to add the message to send to the processing queue:", e);
+        boolean added = sendMsgQue.offer(new MsgOut(_nodeIdHash, _nodeIdShort, _msg, Dest.ACTIVE));
+        if (!added) {
+            p2pLOG.debug("Message not added to the send queue due to exceeded capacity: msg={} for node={}", _msg, _nodeIdShort);
         }
     }
 
@@ -309,10 +363,24 @@ public final class P2pMgr implements IP2pMgr {
             scheduledWorkers.shutdownNow();
         }
 
+        // wake up the threads blocked on the send and receive queues
+        for (Thread t : sendThreads) {
+            t.interrupt();
+        }
+        receiveMsgQue.shutdown();
+
         for (List<Handler> hdrs : handlers.values()) {
             hdrs.forEach(Handler::shutDown);
         }
         nodeMgr.shutdown();
+
+        if (tcpServer != null) {
+            try {
+                tcpServer.close();
+            } catch (IOException e) {
+                p2pLOG.debug("tcp-server-close-exception.", e);
+            }
+        }
     }
 
     @Override
@@ -447,6 +515,16 @@ public final class P2pMgr implements IP2pMgr {
         return this.nodeMgr.getAvgLatency();
     }
 
+    /** Returns the number of messages waiting to be sent to each peer that has pending messages. */
+    public Map<Integer, Integer> getSendQueueDepths() {
+        return this.sendMsgQue.depths();
+    }
+
+    /** Returns the current load of the receive queue of each registered route. */
+    public Map<Integer, RouteDispatcher.RouteStatus> getReceiveRouteStatus() {
+        return this.receiveMsgQue.status();
+    }
+
     @Override
     public boolean isCorrectNetwork(int netId){
         return netId == selfChainId;
@@ -478,15 +556,12 @@ public final class P2pMgr implements IP2pMgr {
                 this.start,
                 this.nodeMgr,
                 this.handlers,
+                this.routeRates,
                 this.sendMsgQue,
                 cachedResHandshake1,
                 this.receiveMsgQue);
     }
 
-    private TaskReceive getReceiveInstance() {
-        return new TaskReceive(p2pLOG, surveyLog, start, receiveMsgQue, handlers);
-    }
-
     private TaskStatus getStatusInstance() {
         return new TaskStatus(p2pLOG, surveyLog, start, nodeMgr, selfShortId, sendMsgQue, receiveMsgQue);
     }
@@ -514,6 +589,7 @@ public final class P2pMgr implements IP2pMgr {
                 this.selfIp,
                 this.selfPort,
                 this.selfRevision.getBytes(),
-                versions);
+                versions,
+                this.selfCapabilities);
     }
 }
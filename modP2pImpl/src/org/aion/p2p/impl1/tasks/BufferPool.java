@@ -0,0 +1,92 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct buffers grouped in power of two size classes.
+ *
+ * <p>Buffers larger than the biggest size class are allocated on demand and left to the garbage
+ * collector when released. Each size class retains at most {@link #MAX_POOLED_BYTES_PER_CLASS}
+ * bytes worth of idle buffers.
+ *
+ * @implNote All methods are thread safe.
+ */
+class BufferPool {
+
+    static final int MIN_CLASS_SHIFT = 10; // 1 KB
+    static final int MAX_CLASS_SHIFT = 22; // 4 MB
+    static final int MAX_POOLED_BYTES_PER_CLASS = 4 * 1024 * 1024;
+
+    private final Queue<ByteBuffer>[] idle;
+    private final AtomicInteger[] idleCount;
+
+    @SuppressWarnings("unchecked")
+    BufferPool() {
+        int classes = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+        idle = new Queue[classes];
+        idleCount = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            idle[i] = new ConcurrentLinkedQueue<>();
+            idleCount[i] = new AtomicInteger(0);
+        }
+    }
+
+    /** Returns the index of the smallest size class that fits the given size or -1 if none does. */
+    static int sizeClass(int size) {
+        if (size <= 1 << MIN_CLASS_SHIFT) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift > MAX_CLASS_SHIFT ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+
+    /**
+     * Returns a cleared direct buffer with at least the given capacity and its limit set to the
+     * given size.
+     */
+    ByteBuffer acquire(int size) {
+        int index = sizeClass(size);
+        if (index < 0) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        ByteBuffer buffer = idle[index].poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(1 << (index + MIN_CLASS_SHIFT));
+        } else {
+            idleCount[index].decrementAndGet();
+            buffer.clear();
+        }
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /** Returns the buffer to the pool. The buffer must not be used after this call. */
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        // only buffers allocated by the pool have power of two sizes within the classes
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int index = sizeClass(capacity);
+        if (index < 0 || (1 << (index + MIN_CLASS_SHIFT)) != capacity) {
+            return;
+        }
+
+        int max = Math.max(1, MAX_POOLED_BYTES_PER_CLASS / capacity);
+        if (idleCount[index].incrementAndGet() <= max) {
+            idle[index].offer(buffer);
+        } else {
+            idleCount[index].decrementAndGet();
+        }
+    }
+
+    /** Returns the number of idle buffers for the size class that fits the given size. */
+    int idle(int size) {
+        int index = sizeClass(size);
+        return index < 0 ? 0 : idleCount[index].get();
+    }
+}
@@ -1,30 +1,38 @@
 package org.aion.p2p.impl1.tasks;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import org.aion.p2p.Header;
 import org.slf4j.Logger;
 
 /** @author chris */
 class ChannelBuffer {
 
-    byte[] body = null;
     Lock lock = new ReentrantLock();
-    private Header header = null;
-    // buffer for buffer remaining after NIO select read.
-    private byte[] remainBuffer;
-    private int buffRemain = 0;
+    // frames the received bytes, used only by the inbound thread
+    private final FrameReader frameReader = new FrameReader();
     private int nodeIdHash;
     private String displayId;
-    private byte[] bsHead = new byte[Header.LEN];
     private AtomicBoolean closed = new AtomicBoolean(false);
+    // the peer accepts compressed message bodies
+    private volatile boolean compression = false;
 
     private Map<Integer, RouteStatus> routes = new HashMap<>();
 
+    // limit for the bytes waiting for the socket to become writable
+    static final long MAX_PENDING_WRITE_BYTES = 32 * 1024 * 1024;
+
+    // messages waiting for the socket to become writable, guarded by the lock
+    private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private long pendingBytes = 0;
+
     private final Logger p2pLOG;
 
     ChannelBuffer(final Logger p2pLOG) {
@@ -47,6 +55,15 @@ class ChannelBuffer {
         this.nodeIdHash = nodeIdHash;
     }
 
+    /** Indicates whether compressed message bodies can be sent on this channel. */
+    boolean isCompressionEnabled() {
+        return compression;
+    }
+
+    void setCompressionEnabled(boolean compression) {
+        this.compression = compression;
+    }
+
     /** Indicates whether this channel is closed. */
     boolean isClosed() {
         return closed.get();
@@ -54,14 +71,17 @@ class ChannelBuffer {
 
     void setClosed() {
         this.closed.set(true);
-    }
 
-    int getBuffRemain() {
-        return buffRemain;
+        lock.lock();
+        try {
+            clearPendingWrites();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    void setBuffRemain(int buffRemain) {
-        this.buffRemain = buffRemain;
+    FrameReader getFrameReader() {
+        return frameReader;
     }
 
     /**
@@ -101,75 +121,79 @@ class ChannelBuffer {
         return routes.get(_route);
     }
 
-    void readHead(ByteBuffer buf) {
-        if (buf.array().length < bsHead.length) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readHead short buffer size");
-            }
-            return;
-        }
+    /** @implNote The caller must hold the {@link #lock}. */
+    boolean hasPendingWrites() {
+        return !pendingWrites.isEmpty();
+    }
 
-        buf.get(bsHead);
-        try {
-            header = Header.decode(bsHead);
-        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readHead exception.", e);
-            }
-        }
+    /** @implNote The caller must hold the {@link #lock}. */
+    long getPendingBytes() {
+        return pendingBytes;
     }
 
-    void readBody(ByteBuffer buf) {
-        if (isHeaderNotCompleted()) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readBody no header.");
-            }
-            return;
+    /**
+     * Queues the remaining bytes of a message until the socket becomes writable. The queued write
+     * takes over the caller's reference to the encoded message.
+     *
+     * @implNote The caller must hold the {@link #lock}.
+     * @return {@code false} if the pending bytes would exceed {@link #MAX_PENDING_WRITE_BYTES} in
+     *     which case the message is not queued
+     */
+    boolean addPendingWrite(EncodedMsg msg, ByteBuffer[] views) {
+        long remaining = remaining(views);
+        if (pendingBytes + remaining > MAX_PENDING_WRITE_BYTES && !pendingWrites.isEmpty()) {
+            return false;
         }
+        pendingWrites.addLast(new PendingWrite(msg, views));
+        pendingBytes += remaining;
+        return true;
+    }
 
-        if (buf.array().length < header.getLen()) {
-            if (p2pLOG.isDebugEnabled()) {
-                p2pLOG.debug("ChannelBuffer readBody short buffer size.");
+    /**
+     * Writes as many of the pending messages as the socket accepts without blocking.
+     *
+     * @implNote The caller must hold the {@link #lock}.
+     * @return {@code true} if all the pending messages were written
+     */
+    boolean flushPendingWrites(GatheringByteChannel sc) throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            PendingWrite pw = pendingWrites.peekFirst();
+            long wrote = sc.write(pw.views);
+            pendingBytes -= wrote;
+            if (remaining(pw.views) > 0) {
+                return false;
             }
-            return;
+            pendingWrites.removeFirst();
+            pw.msg.release();
         }
-
-        body = new byte[header.getLen()];
-        buf.get(body);
-    }
-
-    void refreshHeader() {
-        header = null;
-    }
-
-    void refreshBody() {
-        body = null;
+        return true;
     }
 
-    /** @return boolean */
-    boolean isHeaderNotCompleted() {
-        return header == null;
-    }
-
-    /** @return boolean */
-    boolean isBodyNotCompleted() {
-        return header == null || body == null || body.length != header.getLen();
-    }
-
-    byte[] getRemainBuffer() {
-        return remainBuffer;
+    /** @implNote The caller must hold the {@link #lock}. */
+    void clearPendingWrites() {
+        PendingWrite pw;
+        while ((pw = pendingWrites.pollFirst()) != null) {
+            pw.msg.release();
+        }
+        pendingBytes = 0;
     }
 
-    void setRemainBuffer(byte[] remainBuffer) {
-        this.remainBuffer = remainBuffer;
+    static long remaining(ByteBuffer[] views) {
+        long remaining = 0;
+        for (ByteBuffer view : views) {
+            remaining += view.remaining();
+        }
+        return remaining;
     }
 
-    public Header getHeader() {
-        return header;
-    }
+    private static class PendingWrite {
+        final EncodedMsg msg;
+        final ByteBuffer[] views;
 
-    public void setHeader(Header _header) {
-        header = _header;
+        PendingWrite(EncodedMsg msg, ByteBuffer[] views) {
+            this.msg = msg;
+            this.views = views;
+        }
     }
 
     class RouteStatus {
@@ -0,0 +1,121 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Header;
+import org.aion.p2p.Msg;
+
+/**
+ * A message encoded once into a pooled direct buffer and shared by all the peers it is sent to.
+ *
+ * <p>The encoding is reference counted: each pending write {@link #retain()}s it and {@link
+ * #release()}s it once the bytes were written or dropped. The body buffer returns to the pool when
+ * the last reference is released.
+ */
+public class EncodedMsg {
+
+    private final Msg msg;
+    private final boolean compression;
+    private final ByteBuffer header;
+    private final ByteBuffer body;
+    private final BufferPool pool;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    private EncodedMsg(
+            Msg msg, boolean compression, ByteBuffer header, ByteBuffer body, BufferPool pool) {
+        this.msg = msg;
+        this.compression = compression;
+        this.header = header;
+        this.body = body;
+        this.pool = pool;
+    }
+
+    /** Encodes the message uncompressed with a single reference held by the caller. */
+    static EncodedMsg encode(Msg msg, BufferPool pool) {
+        return encode(msg, pool, false);
+    }
+
+    /**
+     * Encodes the message with a single reference held by the caller.
+     *
+     * @param compression whether the encoding is meant for peers that accept compressed bodies,
+     *     in which case the body is compressed unless it is a p2p control message or {@link
+     *     MsgCompression} deems it not worth it
+     * @warning header set len (body len) before header encode
+     */
+    static EncodedMsg encode(Msg msg, BufferPool pool, boolean compression) {
+        byte[] bodyBytes = msg.encode();
+        Header h = msg.getHeader();
+
+        byte[] compressed =
+                compression && h.getCtrl() != Ctrl.NET ? MsgCompression.compress(bodyBytes) : null;
+        ByteBuffer header;
+        if (compressed != null) {
+            // the message may be shared with other writers so its header is left untouched
+            bodyBytes = compressed;
+            header = ByteBuffer.wrap(h.encodeCompressed(compressed.length));
+        } else {
+            h.setLen(bodyBytes == null ? 0 : bodyBytes.length);
+            header = ByteBuffer.wrap(h.encode());
+        }
+
+        int bodyLen = bodyBytes == null ? 0 : bodyBytes.length;
+        ByteBuffer body = null;
+        if (bodyLen > 0) {
+            body = pool.acquire(bodyLen);
+            body.put(bodyBytes);
+            body.flip();
+        }
+        return new EncodedMsg(msg, compression, header, body, pool);
+    }
+
+    Msg getMsg() {
+        return msg;
+    }
+
+    /** Indicates whether this encoding was made for peers that accept compressed bodies. */
+    boolean forCompression() {
+        return compression;
+    }
+
+    public int length() {
+        return header.remaining() + (body == null ? 0 : body.remaining());
+    }
+
+    /**
+     * Returns new views over the header and body for a single write, each with its own position.
+     */
+    public ByteBuffer[] views() {
+        return body == null
+                ? new ByteBuffer[] {header.duplicate()}
+                : new ByteBuffer[] {header.duplicate(), body.duplicate()};
+    }
+
+    /**
+     * Adds a reference to the encoding.
+     *
+     * @return {@code false} if the encoding was already released and can no longer be used
+     */
+    boolean retain() {
+        int count;
+        do {
+            count = refCnt.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!refCnt.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /** Removes a reference, returning the body buffer to the pool with the last reference. */
+    public void release() {
+        if (refCnt.decrementAndGet() == 0 && body != null) {
+            pool.release(body);
+        }
+    }
+
+    int refCnt() {
+        return refCnt.get();
+    }
+}
@@ -0,0 +1,93 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.aion.p2p.Msg;
+
+/**
+ * Encodings of the messages waiting in the {@link SendQueues}, shared by all the writer threads so
+ * that a message sent to many peers is encoded once.
+ *
+ * <p>Messages are tracked by identity while they have queued destinations. The cache holds a
+ * reference to each encoding of a tracked message and releases it once the last destination was
+ * handled or dropped, after which the encoding lives on only in the pending writes.
+ *
+ * @implNote All methods are thread safe. Messages must not be modified after being sent.
+ */
+public class EncodedMsgCache {
+
+    private final BufferPool pool = new BufferPool();
+
+    // guarded by this
+    private final Map<Msg, Entry> entries = new IdentityHashMap<>();
+
+    /** The encodings of a message and the number of its destinations still queued. */
+    private static final class Entry {
+        int pending = 0;
+        // guarded by the entry
+        EncodedMsg plain = null;
+        EncodedMsg compressed = null;
+    }
+
+    /** Records a destination of the message added to the queues. */
+    synchronized void queued(Msg msg) {
+        if (msg != null) {
+            entries.computeIfAbsent(msg, m -> new Entry()).pending++;
+        }
+    }
+
+    /**
+     * Records that a destination of the message was handled or dropped, releasing the encodings
+     * with the last destination.
+     */
+    synchronized void handled(Msg msg) {
+        Entry entry = msg == null ? null : entries.get(msg);
+        if (entry != null && --entry.pending == 0) {
+            entries.remove(msg);
+            synchronized (entry) {
+                if (entry.plain != null) {
+                    entry.plain.release();
+                }
+                if (entry.compressed != null) {
+                    entry.compressed.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the encoding of the message with a reference held by the caller, encoding it on first
+     * use. Messages without queued destinations are encoded for the caller alone.
+     *
+     * @param compression whether the encoding is meant for peers that accept compressed bodies
+     */
+    public EncodedMsg acquire(Msg msg, boolean compression) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(msg);
+        }
+        if (entry == null) {
+            return EncodedMsg.encode(msg, pool, compression);
+        }
+
+        // the caller holds a queued destination, so the entry is not released meanwhile
+        synchronized (entry) {
+            EncodedMsg encoded = compression ? entry.compressed : entry.plain;
+            if (encoded == null) {
+                encoded = EncodedMsg.encode(msg, pool, compression);
+                if (compression) {
+                    entry.compressed = encoded;
+                } else {
+                    entry.plain = encoded;
+                }
+            }
+            encoded.retain();
+            return encoded;
+        }
+    }
+
+    /** Returns the number of messages with queued destinations. */
+    synchronized int size() {
+        return entries.size();
+    }
+}
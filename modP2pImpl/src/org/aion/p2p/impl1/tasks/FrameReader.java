@@ -0,0 +1,126 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import org.aion.p2p.Header;
+import org.aion.p2p.impl1.P2pException;
+
+/**
+ * Splits the bytes received on a channel into messages.
+ *
+ * <p>Bytes are read into a buffer that is reused for the lifetime of the channel and consumed with
+ * a cursor instead of being copied into intermediate arrays. Once a header is decoded, the body is
+ * allocated with its exact size and receives the bytes already buffered, while the rest of the body
+ * is read from the channel directly into it. As a result, each body byte is copied at most once
+ * after leaving the socket and the body can be handed over to the handlers as is.
+ *
+ * <p>Usage: call {@link #read(ReadableByteChannel)} and then {@link #next()} until it returns
+ * {@code false}, taking the {@link #getHeader()} and {@link #getBody()} of each completed message.
+ *
+ * @implNote Not thread safe. Each instance is used only by the selector thread of its channel.
+ */
+public class FrameReader {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] headerBytes = new byte[Header.LEN];
+
+    // allocated with the first read; the unread bytes are between the cursor and the position
+    private ByteBuffer buffer;
+    private int cursor = 0;
+
+    // the message being assembled
+    private Header header;
+    private byte[] body;
+    private ByteBuffer bodyView;
+    private boolean completed = false;
+
+    /**
+     * Reads the bytes available on the channel without blocking. The bytes go directly into the
+     * body of the current message if its header was already decoded.
+     *
+     * @return the number of bytes read, possibly zero, or -1 if the channel reached end-of-stream
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        if (bodyView != null && bodyView.hasRemaining()) {
+            return channel.read(bodyView);
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        } else if (cursor == buffer.position()) {
+            buffer.clear();
+            cursor = 0;
+        } else if (!buffer.hasRemaining()) {
+            // only an incomplete header can be left here since bodies are moved out eagerly
+            int left = buffer.position() - cursor;
+            System.arraycopy(buffer.array(), cursor, buffer.array(), 0, left);
+            buffer.position(left);
+            cursor = 0;
+        }
+        return channel.read(buffer);
+    }
+
+    /**
+     * Advances to the next message using the bytes read so far. A completed message is released
+     * by the following call.
+     *
+     * @return {@code true} if a message was completed
+     * @throws P2pException if the header of the message is invalid, in which case the stream
+     *     cannot be recovered
+     */
+    public boolean next() throws P2pException {
+        if (completed) {
+            header = null;
+            body = null;
+            bodyView = null;
+            completed = false;
+        }
+
+        if (header == null) {
+            if (buffered() < Header.LEN) {
+                return false;
+            }
+            System.arraycopy(buffer.array(), cursor, headerBytes, 0, Header.LEN);
+            cursor += Header.LEN;
+            try {
+                header = Header.decode(headerBytes);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new P2pException("invalid-header " + e.getMessage());
+            }
+            body = header.getLen() == 0 ? EMPTY : new byte[header.getLen()];
+            bodyView = ByteBuffer.wrap(body);
+        }
+
+        if (bodyView.hasRemaining()) {
+            int n = Math.min(buffered(), bodyView.remaining());
+            if (n > 0) {
+                bodyView.put(buffer.array(), cursor, n);
+                cursor += n;
+            }
+            if (bodyView.hasRemaining()) {
+                return false;
+            }
+        }
+
+        completed = true;
+        return true;
+    }
+
+    /** Returns the header of the message completed by the last call to {@link #next()}. */
+    public Header getHeader() {
+        return completed ? header : null;
+    }
+
+    /** Returns the body of the message completed by the last call to {@link #next()}. */
+    public byte[] getBody() {
+        return completed ? body : null;
+    }
+
+    /** Returns the number of bytes read but not yet assigned to a message. */
+    int buffered() {
+        return buffer == null ? 0 : buffer.position() - cursor;
+    }
+}
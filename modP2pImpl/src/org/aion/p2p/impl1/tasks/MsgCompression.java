@@ -0,0 +1,102 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.impl1.P2pException;
+
+/**
+ * Compression of message bodies sent to peers that negotiated it during the handshake.
+ *
+ * <p>A compressed body consists of the length of the original body (4 bytes) followed by the
+ * deflate stream of the original body. Bodies smaller than {@link #MIN_SIZE} are sent as is, as
+ * are bodies that do not shrink by at least an eighth, which covers content that is already
+ * compressed.
+ *
+ * @implNote The deflaters and inflaters are kept per thread since they are expensive to create.
+ */
+public final class MsgCompression {
+
+    static final int MIN_SIZE = 1024;
+    private static final int LEN_SIZE = 4;
+
+    private static final ThreadLocal<Deflater> deflater =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> inflater =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private MsgCompression() {}
+
+    /**
+     * Compresses the given body.
+     *
+     * @return the compressed body or {@code null} if the body should be sent uncompressed
+     */
+    static byte[] compress(byte[] body) {
+        if (body == null || body.length < MIN_SIZE) {
+            return null;
+        }
+
+        // give up as soon as the output exceeds the largest useful size
+        int maxLen = body.length - (body.length >>> 3);
+        byte[] out = new byte[maxLen];
+        ByteBuffer.wrap(out).putInt(body.length);
+
+        Deflater d = deflater.get();
+        try {
+            d.setInput(body);
+            d.finish();
+            int len = LEN_SIZE;
+            while (!d.finished() && len < maxLen) {
+                len += d.deflate(out, len, maxLen - len);
+            }
+            if (!d.finished()) {
+                return null;
+            }
+            return len == maxLen ? out : Arrays.copyOf(out, len);
+        } finally {
+            d.reset();
+        }
+    }
+
+    /**
+     * Restores a body compressed by {@link #compress(byte[])}.
+     *
+     * @throws P2pException if the data is not a valid compressed body
+     */
+    public static byte[] decompress(byte[] data) throws P2pException {
+        if (data == null || data.length < LEN_SIZE) {
+            throw new P2pException("invalid-compressed-body");
+        }
+        int len = ByteBuffer.wrap(data).getInt();
+        if (len < 0 || len > P2pConstant.MAX_BODY_SIZE) {
+            throw new P2pException("invalid-compressed-body-size " + len);
+        }
+
+        byte[] body = new byte[len];
+        Inflater i = inflater.get();
+        try {
+            i.setInput(data, LEN_SIZE, data.length - LEN_SIZE);
+            int read = 0;
+            while (read < len && !i.finished()) {
+                int n = i.inflate(body, read, len - read);
+                if (n == 0 && (i.needsInput() || i.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            // the stream must end exactly at the declared size
+            if (read != len || (!i.finished() && (i.inflate(new byte[1]) > 0 || !i.finished()))) {
+                throw new P2pException("invalid-compressed-body-content");
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new P2pException("invalid-compressed-body-content " + e.getMessage());
+        } finally {
+            i.reset();
+        }
+    }
+}
@@ -6,6 +6,7 @@ public class MsgIn {
     private final String displayId;
     private final int route;
     private final byte[] msg;
+    private final boolean compressed;
 
     /**
      * Constructs an incoming message.
@@ -16,10 +17,29 @@ public class MsgIn {
      * @param msg The message.
      */
     MsgIn(final int nodeId, final String displayId, final int route, final byte[] msg) {
+        this(nodeId, displayId, route, msg, false);
+    }
+
+    /**
+     * Constructs an incoming message.
+     *
+     * @param nodeId The node id.
+     * @param displayId The display id.
+     * @param route The route.
+     * @param msg The message.
+     * @param compressed Whether the message must be decompressed before handling.
+     */
+    public MsgIn(
+            final int nodeId,
+            final String displayId,
+            final int route,
+            final byte[] msg,
+            final boolean compressed) {
         this.nodeId = nodeId;
         this.displayId = displayId;
         this.route = route;
         this.msg = msg;
+        this.compressed = compressed;
     }
 
     public int getNodeId() {
@@ -37,4 +57,8 @@ public class MsgIn {
     public byte[] getMsg() {
         return this.msg;
     }
+
+    boolean isCompressed() {
+        return this.compressed;
+    }
 }
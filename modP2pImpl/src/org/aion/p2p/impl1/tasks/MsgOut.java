@@ -32,7 +32,7 @@ public class MsgOut {
         return this.nodeId;
     }
 
-    String getDisplayId() {
+    public String getDisplayId() {
         return this.displayId;
     }
 
@@ -40,7 +40,7 @@ public class MsgOut {
         return this.msg;
     }
 
-    Dest getDest() {
+    public Dest getDest() {
         return this.dest;
     }
 
@@ -0,0 +1,187 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.aion.p2p.Handler;
+import org.slf4j.Logger;
+
+/**
+ * Dispatches received kernel messages to a separate bounded queue for each route, each served by
+ * its own {@link TaskReceive} workers, so that handlers blocked on slow operations cannot delay the
+ * messages of other routes.
+ *
+ * <p>The number of workers and the queue size of a route are declared by its handlers through
+ * {@link Handler#getConcurrency()} and {@link Handler#getQueueSize()}. Messages received while a
+ * route's queue is full are dropped and counted.
+ */
+public class RouteDispatcher {
+
+    /** A snapshot of the load of a route. */
+    public static class RouteStatus {
+        public final String name;
+        public final int queued;
+        public final int capacity;
+        public final int concurrency;
+        public final long dropped;
+
+        RouteStatus(String name, int queued, int capacity, int concurrency, long dropped) {
+            this.name = name;
+            this.queued = queued;
+            this.capacity = capacity;
+            this.concurrency = concurrency;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString() {
+            return name
+                    + "[queued="
+                    + queued
+                    + "/"
+                    + capacity
+                    + " workers="
+                    + concurrency
+                    + " dropped="
+                    + dropped
+                    + "]";
+        }
+    }
+
+    private static class Route {
+        final String name;
+        final int capacity;
+        final int concurrency;
+        final BlockingQueue<MsgIn> queue;
+        final AtomicLong dropped = new AtomicLong(0);
+
+        Route(String name, int capacity, int concurrency) {
+            this.name = name;
+            this.capacity = capacity;
+            this.concurrency = concurrency;
+            this.queue = new LinkedBlockingQueue<>(capacity);
+        }
+    }
+
+    private final Logger p2pLOG, surveyLog;
+    private final AtomicBoolean start;
+    private final Map<Integer, List<Handler>> handlers;
+    private final Map<Integer, Route> routes = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private boolean started = false;
+
+    public RouteDispatcher(
+            final Logger p2pLOG,
+            final Logger surveyLog,
+            final AtomicBoolean _start,
+            final Map<Integer, List<Handler>> _handlers) {
+        this.p2pLOG = p2pLOG;
+        this.surveyLog = surveyLog;
+        this.start = _start;
+        this.handlers = _handlers;
+    }
+
+    /**
+     * Creates the queue for the route using the highest concurrency and queue size declared by its
+     * handlers. Routes registered after {@link #start()} get their workers immediately, while the
+     * settings of routes that already have running workers are not changed.
+     */
+    public synchronized void register(int route) {
+        List<Handler> hs = handlers.get(route);
+        if (hs == null || hs.isEmpty() || (started && routes.containsKey(route))) {
+            return;
+        }
+
+        int concurrency = 1;
+        int capacity = 1;
+        List<String> names = new ArrayList<>();
+        for (Handler h : hs) {
+            concurrency = Math.max(concurrency, h.getConcurrency());
+            capacity = Math.max(capacity, h.getQueueSize());
+            names.add(h.getClass().getSimpleName());
+        }
+
+        Route r = new Route(String.join("+", names), capacity, concurrency);
+        routes.put(route, r);
+        if (started) {
+            startWorkers(r);
+        }
+    }
+
+    /** Starts the workers for all registered routes. */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (Route r : routes.values()) {
+            startWorkers(r);
+        }
+    }
+
+    private void startWorkers(Route r) {
+        for (int i = 0; i < r.concurrency; i++) {
+            Thread t =
+                    new Thread(
+                            new TaskReceive(p2pLOG, surveyLog, start, r.queue, handlers),
+                            "p2p-worker-" + r.name + "-" + i);
+            t.setPriority(Thread.NORM_PRIORITY);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    /** Stops the workers waiting for messages. */
+    public synchronized void shutdown() {
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+        workers.clear();
+    }
+
+    /**
+     * Queues the message for the workers of its route without blocking.
+     *
+     * @return {@code false} if the route is not registered or its queue is full
+     */
+    public boolean dispatch(MsgIn mi) {
+        Route r = routes.get(mi.getRoute());
+        if (r == null) {
+            return false;
+        }
+        if (!r.queue.offer(mi)) {
+            r.dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the total number of messages waiting to be processed. */
+    public int size() {
+        int size = 0;
+        for (Route r : routes.values()) {
+            size += r.queue.size();
+        }
+        return size;
+    }
+
+    /** Returns the current load of each registered route. */
+    public Map<Integer, RouteStatus> status() {
+        Map<Integer, RouteStatus> status = new TreeMap<>();
+        for (Map.Entry<Integer, Route> e : routes.entrySet()) {
+            Route r = e.getValue();
+            status.put(
+                    e.getKey(),
+                    new RouteStatus(
+                            r.name, r.queue.size(), r.capacity, r.concurrency, r.dropped.get()));
+        }
+        return Collections.unmodifiableMap(status);
+    }
+}
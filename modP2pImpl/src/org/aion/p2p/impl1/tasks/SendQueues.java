@@ -0,0 +1,241 @@
+package org.aion.p2p.impl1.tasks;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.aion.p2p.SendPriority;
+
+/**
+ * Bounded outbound message queues, one per peer, shared by the {@link TaskSend} writer threads.
+ *
+ * <p>Peers with pending messages are serviced round-robin and each peer is handled by at most one
+ * writer at a time, so messages to the same peer keep their order within a priority and a slow
+ * peer cannot hold more than one writer. Within a peer, messages are sent in {@link SendPriority}
+ * order. When a peer's queue is full the oldest message with the lowest priority is dropped to make
+ * room, unless the new message itself has the lowest priority.
+ *
+ * <p>The queued destinations of each message are tracked in the {@link EncodedMsgCache} shared by
+ * the writers, so that the encoding of a message is released once all its destinations were
+ * handled or dropped.
+ */
+public class SendQueues {
+
+    private static final int PRIORITIES = SendPriority.values().length;
+
+    /** Returns the priority declared by the message. */
+    static SendPriority priorityOf(MsgOut mo) {
+        return mo.getMsg() == null ? SendPriority.SYNC : mo.getMsg().getPriority();
+    }
+
+    /** The messages waiting to be sent to a single peer. */
+    private static class PeerQueue {
+        final int nodeId;
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<MsgOut>[] queues = new ArrayDeque[PRIORITIES];
+
+        int size = 0;
+        // the peer is either in the ready ring or being serviced by a writer
+        boolean scheduled = false;
+
+        PeerQueue(int nodeId) {
+            this.nodeId = nodeId;
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new ArrayDeque<>();
+            }
+        }
+
+        MsgOut poll() {
+            for (ArrayDeque<MsgOut> queue : queues) {
+                MsgOut mo = queue.pollFirst();
+                if (mo != null) {
+                    size--;
+                    return mo;
+                }
+            }
+            return null;
+        }
+
+        /** Returns the lowest priority with messages or -1 if empty. */
+        int lowest() {
+            for (int i = queues.length - 1; i >= 0; i--) {
+                if (!queues[i].isEmpty()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final int maxPerPeer;
+    private final EncodedMsgCache encodedMsgs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    // guarded by the lock
+    private final Map<Integer, PeerQueue> peers = new HashMap<>();
+    private final ArrayDeque<PeerQueue> ready = new ArrayDeque<>();
+    private final Map<MsgOut, PeerQueue> inService = new HashMap<>();
+    private int size = 0;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /** @param maxPerPeer the maximum number of messages queued for a single peer */
+    public SendQueues(int maxPerPeer) {
+        this(maxPerPeer, new EncodedMsgCache());
+    }
+
+    /**
+     * @param maxPerPeer the maximum number of messages queued for a single peer
+     * @param encodedMsgs the encodings shared by the writers taking messages from these queues
+     */
+    public SendQueues(int maxPerPeer, EncodedMsgCache encodedMsgs) {
+        if (maxPerPeer < 1) {
+            throw new IllegalArgumentException("The queue limit must be positive.");
+        }
+        this.maxPerPeer = maxPerPeer;
+        this.encodedMsgs = encodedMsgs;
+    }
+
+    /**
+     * Queues the message for its destination peer without blocking.
+     *
+     * @return {@code false} if the message was dropped because the peer's queue is full of
+     *     messages with the same or higher priority
+     */
+    public boolean offer(MsgOut mo) {
+        int priority = priorityOf(mo).ordinal();
+
+        lock.lock();
+        try {
+            PeerQueue peer = peers.computeIfAbsent(mo.getNodeId(), PeerQueue::new);
+            if (peer.size >= maxPerPeer) {
+                int lowest = peer.lowest();
+                if (lowest <= priority) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                encodedMsgs.handled(peer.queues[lowest].pollFirst().getMsg());
+                peer.size--;
+                size--;
+                dropped.incrementAndGet();
+            }
+
+            peer.queues[priority].addLast(mo);
+            peer.size++;
+            size++;
+            encodedMsgs.queued(mo.getMsg());
+
+            if (!peer.scheduled) {
+                peer.scheduled = true;
+                ready.addLast(peer);
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the next message of the next peer in round-robin order, waiting for one to become
+     * available. The caller must call {@link #done(MsgOut)} once the message was handled to allow
+     * more messages to be sent to the same peer.
+     */
+    public MsgOut take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (ready.isEmpty()) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #take()} but gives up after the given time.
+     *
+     * @return the next message or {@code null} if none became available in time
+     */
+    public MsgOut poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (ready.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @implNote The caller must hold the lock and ensure there is a ready peer. */
+    private MsgOut next() {
+        PeerQueue peer = ready.pollFirst();
+        MsgOut mo = peer.poll();
+        size--;
+        inService.put(mo, peer);
+        return mo;
+    }
+
+    /** Marks the message taken by a writer as handled, rescheduling its peer if needed. */
+    public void done(MsgOut mo) {
+        lock.lock();
+        try {
+            PeerQueue peer = inService.remove(mo);
+            if (peer == null) {
+                return;
+            }
+            encodedMsgs.handled(mo.getMsg());
+            if (peer.size > 0) {
+                // back of the ring so that the other peers get their turn
+                ready.addLast(peer);
+                notEmpty.signal();
+            } else {
+                peer.scheduled = false;
+                peers.remove(peer.nodeId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the total number of queued messages. */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of queued messages for each peer with pending messages. */
+    public Map<Integer, Integer> depths() {
+        lock.lock();
+        try {
+            Map<Integer, Integer> depths = new HashMap<>();
+            for (PeerQueue peer : peers.values()) {
+                depths.put(peer.nodeId, peer.size);
+            }
+            return Collections.unmodifiableMap(depths);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of messages dropped because of full queues. */
+    public long dropped() {
+        return dropped.get();
+    }
+}
@@ -1,7 +1,6 @@
 package org.aion.p2p.impl1.tasks;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -12,8 +11,6 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Handler;
@@ -24,12 +21,12 @@ import org.aion.p2p.IP2pMgr;
 import org.aion.p2p.P2pConstant;
 import org.aion.p2p.Ver;
 import org.aion.p2p.impl.comm.Act;
+import org.aion.p2p.impl.comm.Capability;
 import org.aion.p2p.impl.zero.msg.ReqHandshake;
 import org.aion.p2p.impl.zero.msg.ReqHandshake1;
 import org.aion.p2p.impl.zero.msg.ResActiveNodes;
 import org.aion.p2p.impl.zero.msg.ResHandshake;
 import org.aion.p2p.impl.zero.msg.ResHandshake1;
-import org.aion.p2p.impl1.P2pException;
 import org.aion.p2p.impl1.P2pMgr.Dest;
 import org.slf4j.Logger;
 
@@ -41,15 +38,11 @@ public class TaskInbound implements Runnable {
     private final INodeMgr nodeMgr;
     private final Map<Integer, List<Handler>> handlers;
     private final AtomicBoolean start;
-    private final BlockingQueue<MsgOut> sendMsgQue;
+    private final SendQueues sendMsgQue;
     private final ResHandshake1 cachedResHandshake1;
-    private final BlockingQueue<MsgIn> receiveMsgQue;
-
-    // used to impose a low limit to this type of messages
-    private static final int ACT_BROADCAST_BLOCK = 7;
-    private static final int CTRL_SYNC = 1;
-
-    private static final int OFFER_TIMEOUT = 100; // in milliseconds
+    private final RouteDispatcher receiveMsgQue;
+    // the inbound rate limit of each route declared by its handlers
+    private final Map<Integer, Integer> routeRates;
 
     // used when survey logging
     private static final long MIN_DURATION = 60_000_000_000L; // 60 seconds
@@ -63,9 +56,10 @@ public class TaskInbound implements Runnable {
             final AtomicBoolean _start,
             final INodeMgr _nodeMgr,
             final Map<Integer, List<Handler>> _handlers,
-            final BlockingQueue<MsgOut> _sendMsgQue,
+            final Map<Integer, Integer> _routeRates,
+            final SendQueues _sendMsgQue,
             final ResHandshake1 _cachedResHandshake1,
-            final BlockingQueue<MsgIn> _receiveMsgQue) {
+            final RouteDispatcher _receiveMsgQue) {
 
         this.p2pLOG = p2pLOG;
         this.surveyLog = surveyLog;
@@ -74,6 +68,7 @@ public class TaskInbound implements Runnable {
         this.start = _start;
         this.nodeMgr = _nodeMgr;
         this.handlers = _handlers;
+        this.routeRates = _routeRates;
         this.sendMsgQue = _sendMsgQue;
         this.cachedResHandshake1 = _cachedResHandshake1;
         this.receiveMsgQue = _receiveMsgQue;
@@ -84,8 +79,6 @@ public class TaskInbound implements Runnable {
         // for runtime survey information
         long startTime, duration;
 
-        // readBuffer buffer pre-alloc. @ max_body_size
-        ByteBuffer readBuf = ByteBuffer.allocate(P2pConstant.MAX_BODY_SIZE);
 
         while (start.get()) {
 
@@ -124,13 +117,22 @@ public class TaskInbound implements Runnable {
                             accept((ServerSocketChannel) key.channel());
                         }
 
-                        if (key.isReadable()) {
+                        if (key.isWritable()) {
                             cb = (ChannelBuffer) key.attachment();
                             if (cb == null) {
                                 p2pLOG.error("inbound exception: attachment is null");
                                 continue;
                             }
-                            readBuffer(key, cb, readBuf);
+                            writePending(key, cb);
+                        }
+
+                        if (key.isValid() && key.isReadable()) {
+                            cb = (ChannelBuffer) key.attachment();
+                            if (cb == null) {
+                                p2pLOG.error("inbound exception: attachment is null");
+                                continue;
+                            }
+                            readBuffer(key, cb);
                         }
                     } catch (Exception e) {
                         this.mgr.closeSocket(
@@ -202,137 +204,46 @@ public class TaskInbound implements Runnable {
         }
     }
 
-    private int readHeader(final ChannelBuffer _cb, final ByteBuffer _readBuf, int cnt) {
-
-        if (cnt < Header.LEN) {
-            return cnt;
-        }
-
-        int origPos = _readBuf.position();
-
-        int startP = origPos - cnt;
-
-        _readBuf.position(startP);
-
-        _cb.readHead(_readBuf);
-
-        _readBuf.position(origPos);
-
-        return cnt - Header.LEN;
-    }
-
-    private int readBody(final ChannelBuffer _cb, ByteBuffer _readBuf, int _cnt) {
-
-        int bodyLen = _cb.getHeader().getLen();
-
-        // some msg have nobody.
-        if (bodyLen == 0) {
-            _cb.body = new byte[0];
-            return _cnt;
-        }
-
-        if (_cnt < bodyLen) {
-            return _cnt;
+    /**
+     * Completes the writes that {@link TaskSend} could not finish without blocking and stops
+     * listening for write readiness once all of them are done.
+     */
+    private void writePending(final SelectionKey _sk, final ChannelBuffer _cb) throws IOException {
+        _cb.lock.lock();
+        try {
+            if (_cb.flushPendingWrites((SocketChannel) _sk.channel())) {
+                _sk.interestOps(_sk.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+        } finally {
+            _cb.lock.unlock();
         }
-
-        int origPos = _readBuf.position();
-        int startP = origPos - _cnt;
-        _readBuf.position(startP);
-        _cb.readBody(_readBuf);
-        _readBuf.position(origPos);
-        return _cnt - bodyLen;
     }
 
-    private void readBuffer(
-            final SelectionKey _sk, final ChannelBuffer _cb, final ByteBuffer _readBuf)
-            throws Exception {
-
-        _readBuf.rewind();
-
+    /**
+     * Reads the available bytes and handles the messages they complete. Reading stops once the
+     * channel has no more bytes or after {@link P2pConstant#MAX_BODY_SIZE} bytes to give the other
+     * channels their turn; the rest is read on the next selection.
+     */
+    private void readBuffer(final SelectionKey _sk, final ChannelBuffer _cb) throws Exception {
         SocketChannel sc = (SocketChannel) _sk.channel();
+        FrameReader frames = _cb.getFrameReader();
 
         int r;
-        int cnt = 0;
+        long cnt = 0;
         do {
-            r = sc.read(_readBuf);
-            cnt += r;
-        } while (r > 0);
-
-        if (cnt < 1) {
-            return;
-        }
-
-        int remainBufAll = _cb.getBuffRemain() + cnt;
-        ByteBuffer bufferAll = calBuffer(_cb, _readBuf, cnt);
-
-        do {
-            r = readMsg(_sk, bufferAll, remainBufAll);
-            if (remainBufAll == r) {
-                break;
-            } else {
-                remainBufAll = r;
+            r = frames.read(sc);
+            if (r > 0) {
+                cnt += r;
             }
-        } while (r > 0);
-
-        _cb.setBuffRemain(r);
-
-        if (r != 0) {
-            // there are no perfect cycling buffer in jdk
-            // yet.
-            // simply just buff move for now.
-            // @TODO: looking for more efficient way.
-
-            int currPos = bufferAll.position();
-            _cb.setRemainBuffer(new byte[r]);
-            bufferAll.position(currPos - r);
-            bufferAll.get(_cb.getRemainBuffer());
-        }
-
-        _readBuf.rewind();
-    }
-
-    private int readMsg(SelectionKey _sk, ByteBuffer _readBuf, int _cnt) throws IOException {
-        ChannelBuffer cb = (ChannelBuffer) _sk.attachment();
-        if (cb == null) {
-            throw new P2pException("attachment is null");
-        }
-
-        int readCnt;
-        if (cb.isHeaderNotCompleted()) {
-            readCnt = readHeader(cb, _readBuf, _cnt);
-        } else {
-            readCnt = _cnt;
-        }
-
-        if (cb.isBodyNotCompleted()) {
-            readCnt = readBody(cb, _readBuf, readCnt);
-        }
-
-        if (cb.isBodyNotCompleted()) {
-            return readCnt;
-        }
-
-        handleMsg(_sk, cb);
-
-        return readCnt;
+            while (frames.next()) {
+                handleMsg(_sk, _cb, frames.getHeader(), frames.getBody());
+            }
+        } while (r > 0 && cnt < P2pConstant.MAX_BODY_SIZE);
     }
 
-    private void handleMsg(SelectionKey _sk, ChannelBuffer _cb) {
-
-        Header h = _cb.getHeader();
-        byte[] bodyBytes = _cb.body;
-
-        _cb.refreshHeader();
-        _cb.refreshBody();
-
-        int maxRequestsPerSecond = 0;
-
-        // TODO: refactor to remove knowledge of sync message types
-        if (h.getCtrl() == CTRL_SYNC && h.getAction() == ACT_BROADCAST_BLOCK) {
-            maxRequestsPerSecond = P2pConstant.READ_MAX_RATE;
-        } else {
-            maxRequestsPerSecond = P2pConstant.READ_MAX_RATE_TXBC;
-        }
+    private void handleMsg(SelectionKey _sk, ChannelBuffer _cb, Header h, byte[] bodyBytes) {
+        int maxRequestsPerSecond =
+                routeRates.getOrDefault(h.getRoute(), P2pConstant.READ_MAX_RATE_TXBC);
 
         boolean underRC = _cb.shouldRoute(h.getRoute(), maxRequestsPerSecond);
 
@@ -354,6 +265,9 @@ public class TaskInbound implements Runnable {
                 switch (h.getCtrl()) {
                     case Ctrl.NET:
                         try {
+                            if (h.isCompressed()) {
+                                bodyBytes = MsgCompression.decompress(bodyBytes);
+                            }
                             handleP2pMsg(_sk, h.getAction(), bodyBytes);
                         } catch (Exception ex) {
                             if (p2pLOG.isDebugEnabled()) {
@@ -362,19 +276,7 @@ public class TaskInbound implements Runnable {
                         }
                         break;
                     case Ctrl.SYNC:
-                        if (!handlers.containsKey(h.getRoute())) {
-                            if (p2pLOG.isDebugEnabled()) {
-                                p2pLOG.debug(
-                                        "unregistered-route={}-{}-{} node={}",
-                                        h.getVer(),
-                                        h.getCtrl(),
-                                        h.getAction(),
-                                        _cb.getDisplayId());
-                            }
-                            return;
-                        }
-
-                        handleKernelMsg(_cb.getNodeIdHash(), h.getRoute(), bodyBytes);
+                        handleSyncMsg(_cb, h, bodyBytes);
                         break;
                     default:
                         if (p2pLOG.isDebugEnabled()) {
@@ -388,6 +290,19 @@ public class TaskInbound implements Runnable {
                         break;
                 }
                 break;
+            case Ver.V1:
+                // the fast sync messages are only exchanged between kernels
+                if (h.getCtrl() == Ctrl.SYNC) {
+                    handleSyncMsg(_cb, h, bodyBytes);
+                } else if (p2pLOG.isDebugEnabled()) {
+                    p2pLOG.debug(
+                            "invalid-route={}-{}-{} node={}",
+                            h.getVer(),
+                            h.getCtrl(),
+                            h.getAction(),
+                            _cb.getDisplayId());
+                }
+                break;
             default:
                 if (p2pLOG.isDebugEnabled()) {
                     p2pLOG.debug("unhandled-ver={} node={}", h.getVer(), _cb.getDisplayId());
@@ -397,20 +312,20 @@ public class TaskInbound implements Runnable {
         }
     }
 
-    private ByteBuffer calBuffer(ChannelBuffer _cb, ByteBuffer _readBuf, int _cnt) {
-        ByteBuffer r;
-        if (_cb.getBuffRemain() != 0) {
-            byte[] alreadyRead = new byte[_cnt];
-            _readBuf.position(0);
-            _readBuf.get(alreadyRead);
-            r = ByteBuffer.allocate(_cb.getBuffRemain() + _cnt);
-            r.put(_cb.getRemainBuffer());
-            r.put(alreadyRead);
-        } else {
-            r = _readBuf;
+    private void handleSyncMsg(ChannelBuffer _cb, Header h, byte[] bodyBytes) {
+        if (!handlers.containsKey(h.getRoute())) {
+            if (p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "unregistered-route={}-{}-{} node={}",
+                        h.getVer(),
+                        h.getCtrl(),
+                        h.getAction(),
+                        _cb.getDisplayId());
+            }
+            return;
         }
 
-        return r;
+        handleKernelMsg(_cb.getNodeIdHash(), h.getRoute(), bodyBytes, h.isCompressed());
     }
 
     /**
@@ -434,7 +349,8 @@ public class TaskInbound implements Runnable {
                                 reqHandshake1.getNodeId(),
                                 reqHandshake1.getNetId(),
                                 reqHandshake1.getPort(),
-                                reqHandshake1.getRevision());
+                                reqHandshake1.getRevision(),
+                                reqHandshake1.getCapabilities());
                     }
                 }
                 break;
@@ -445,7 +361,9 @@ public class TaskInbound implements Runnable {
                         ResHandshake1 resHandshake1 = ResHandshake1.decode(_msgBytes, p2pLOG);
                         if (resHandshake1 != null && resHandshake1.getSuccess()) {
                             handleResHandshake(
-                                    rb.getNodeIdHash(), resHandshake1.getBinaryVersion());
+                                    rb,
+                                    resHandshake1.getBinaryVersion(),
+                                    resHandshake1.getCapabilities());
                         }
                     }
                 }
@@ -502,6 +420,7 @@ public class TaskInbound implements Runnable {
      * @param _netId int
      * @param _port int
      * @param _revision byte[]
+     * @param _capabilities byte
      *     <p>Construct node info after handshake request success
      */
     private void handleReqHandshake(
@@ -510,7 +429,8 @@ public class TaskInbound implements Runnable {
             final byte[] _nodeId,
             int _netId,
             int _port,
-            final byte[] _revision) {
+            final byte[] _revision,
+            byte _capabilities) {
         INode node = nodeMgr.getInboundNode(_channelHash);
         if (node != null && node.getPeerMetric().notBan()) {
             if (p2pLOG.isDebugEnabled()) {
@@ -536,6 +456,7 @@ public class TaskInbound implements Runnable {
                     String binaryVersion;
                     binaryVersion = new String(_revision, StandardCharsets.UTF_8);
                     node.setBinaryVersion(binaryVersion);
+                    _buffer.setCompressionEnabled(supportsCompression(_capabilities));
                     nodeMgr.movePeerToActive(_channelHash, "inbound");
                     boolean added = sendMsgQue.offer(new MsgOut(node.getIdHash(), node.getIdShort(), cachedResHandshake1, Dest.ACTIVE));
                     if (!added) {
@@ -551,33 +472,45 @@ public class TaskInbound implements Runnable {
         }
     }
 
-    private void handleResHandshake(int _nodeIdHash, String _binaryVersion) {
-        INode node = nodeMgr.getOutboundNode(_nodeIdHash);
+    private void handleResHandshake(
+            final ChannelBuffer _buffer, String _binaryVersion, byte _capabilities) {
+        INode node = nodeMgr.getOutboundNode(_buffer.getNodeIdHash());
         if (node != null && node.getPeerMetric().notBan()) {
             node.refreshTimestamp();
             node.setBinaryVersion(_binaryVersion);
+            _buffer.setCompressionEnabled(supportsCompression(_capabilities));
             nodeMgr.movePeerToActive(node.getIdHash(), "outbound");
         }
     }
 
+    /**
+     * Compression is used when both sides advertise it. The capabilities of this node are the ones
+     * sent in its handshake messages.
+     */
+    private boolean supportsCompression(byte _peerCapabilities) {
+        return Capability.supports(cachedResHandshake1.getCapabilities(), Capability.COMPRESSION)
+                && Capability.supports(_peerCapabilities, Capability.COMPRESSION);
+    }
+
     /**
      * @param _nodeIdHash int
      * @param _route int
      * @param _msgBytes byte[]
+     * @param _compressed boolean
      */
-    private void handleKernelMsg(int _nodeIdHash, int _route, final byte[] _msgBytes) {
+    private void handleKernelMsg(
+            int _nodeIdHash, int _route, final byte[] _msgBytes, boolean _compressed) {
         INode node = nodeMgr.getActiveNode(_nodeIdHash);
         if (node != null) {
             int nodeIdHash = node.getIdHash();
             String nodeDisplayId = node.getIdShort();
             node.refreshTimestamp();
-            try {
-                boolean added = receiveMsgQue.offer(new MsgIn(nodeIdHash, nodeDisplayId, _route, _msgBytes), OFFER_TIMEOUT, TimeUnit.MILLISECONDS);
-                if (!added) {
-                    p2pLOG.warn("Message not added to the receive queue due to exceeded capacity: msg={} from node={}", _msgBytes, node.getIdShort());
-                }
-            } catch (InterruptedException e) {
-                p2pLOG.error("Interrupted while attempting to add the received message to the processing queue:", e);
+            // never block the selector thread; a saturated route only affects its own messages
+            boolean added =
+                    receiveMsgQue.dispatch(
+                            new MsgIn(nodeIdHash, nodeDisplayId, _route, _msgBytes, _compressed));
+            if (!added && p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug("Message dropped due to saturated route: route={} from node={}", _route, nodeDisplayId);
             }
         } else {
             p2pLOG.debug("handleKernelMsg can't find hash{}", _nodeIdHash);
@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.Handler;
+import org.aion.p2p.impl1.P2pException;
 import org.slf4j.Logger;
 
 public class TaskReceive implements Runnable {
@@ -46,13 +47,27 @@ public class TaskReceive implements Runnable {
                     surveyLog.info("TaskReceive: process message, duration = {} ns.", duration);
                     continue;
                 }
+
+                // decompressed here rather than by the inbound thread to keep it responsive
+                byte[] msg = mi.getMsg();
+                if (mi.isCompressed()) {
+                    try {
+                        msg = MsgCompression.decompress(msg);
+                    } catch (P2pException e) {
+                        if (p2pLOG.isDebugEnabled()) {
+                            p2pLOG.debug("TaskReceive decompress error node={}", mi.getDisplayId(), e);
+                        }
+                        continue;
+                    }
+                }
+
                 for (Handler hlr : hs) {
                     if (hlr == null) {
                         continue;
                     }
 
                     try {
-                        hlr.receive(mi.getNodeId(), mi.getDisplayId(), mi.getMsg());
+                        hlr.receive(mi.getNodeId(), mi.getDisplayId(), msg);
                     } catch (Exception e) {
                         if (p2pLOG.isDebugEnabled()) {
                             p2pLOG.debug("TaskReceive exception.", e);
@@ -62,7 +77,9 @@ public class TaskReceive implements Runnable {
                 duration = System.nanoTime() - startTime;
                 surveyLog.info("TaskReceive: process message, duration = {} ns.", duration);
             } catch (InterruptedException e) {
-                p2pLOG.error("TaskReceive interrupted.", e);
+                if (this.start.get()) {
+                    p2pLOG.error("TaskReceive interrupted.", e);
+                }
                 return;
             } catch (Exception e) {
                 if (p2pLOG.isDebugEnabled()) {
@@ -2,11 +2,11 @@ package org.aion.p2p.impl1.tasks;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.Header;
@@ -22,10 +22,13 @@ public class TaskSend implements Runnable {
     private final Logger p2pLOG, surveyLog;
     private final IP2pMgr mgr;
     private final AtomicBoolean start;
-    private final BlockingQueue<MsgOut> sendMsgQue;
+    private final SendQueues sendMsgQue;
     private final INodeMgr nodeMgr;
     private final Selector selector;
 
+    // messages are encoded into pooled direct buffers shared by all their destinations
+    private final EncodedMsgCache encodedMsgs;
+
     // used when survey logging
     private static final long MIN_DURATION = 60_000_000_000L; // 60 seconds
     private long waitTime = 0,
@@ -41,10 +44,11 @@ public class TaskSend implements Runnable {
             final Logger p2pLOG,
             final Logger surveyLog,
             final IP2pMgr _mgr,
-            final BlockingQueue<MsgOut> _sendMsgQue,
+            final SendQueues _sendMsgQue,
             final AtomicBoolean _start,
             final INodeMgr _nodeMgr,
-            final Selector _selector) {
+            final Selector _selector,
+            final EncodedMsgCache _encodedMsgs) {
 
         this.p2pLOG = p2pLOG;
         this.surveyLog = surveyLog;
@@ -53,6 +57,7 @@ public class TaskSend implements Runnable {
         this.start = _start;
         this.nodeMgr = _nodeMgr;
         this.selector = _selector;
+        this.encodedMsgs = _encodedMsgs;
     }
 
     @Override
@@ -72,7 +77,11 @@ public class TaskSend implements Runnable {
                 }
 
                 startTime = System.nanoTime();
-                process(mo);
+                try {
+                    process(mo);
+                } finally {
+                    sendMsgQue.done(mo);
+                }
                 duration = System.nanoTime() - startTime;
                 fullProcessTime += duration;
                 if (fullProcessTime > MIN_DURATION) { // print and reset total time so far
@@ -80,8 +89,10 @@ public class TaskSend implements Runnable {
                     fullProcessTime = 0;
                 }
             } catch (InterruptedException e) {
-                p2pLOG.error("task-send-interrupted", e);
-                return;
+                if (start.get()) {
+                    p2pLOG.error("task-send-interrupted", e);
+                }
+                break;
             } catch (RejectedExecutionException e) {
                 p2pLOG.warn("task-send-reached thread queue limit", e);
             } catch (Exception e) {
@@ -143,7 +154,7 @@ public class TaskSend implements Runnable {
             SelectionKey sk = node.getChannel().keyFor(selector);
             if (sk != null && sk.attachment() != null) {
                 ChannelBuffer attachment = (ChannelBuffer) sk.attachment();
-                write(node.getIdShort(), node.getChannel(), mo.getMsg(), attachment);
+                write(node.getIdShort(), sk, mo.getMsg(), attachment);
             }
         } else {
             p2pLOG.debug("msg-{} ->{} node-not-exist", mo.getDest().name(), mo.getDisplayId());
@@ -157,22 +168,19 @@ public class TaskSend implements Runnable {
         return true;
     }
 
-    private static final long MAX_BUFFER_WRITE_TIME = 1_000_000_000L;
     private static final long MIN_TRACE_BUFFER_WRITE_TIME = 10_000_000L;
 
     private void write(
             final String nodeShortId,
-            final SocketChannel sc,
+            final SelectionKey sk,
             final Msg msg,
             final ChannelBuffer channelBuffer) {
         // for runtime survey information
         long startTime, duration;
 
         startTime = System.nanoTime();
-        // reset allocated buffer and clear messages if the channel is closed
+        // clear messages if the channel is closed
         if (channelBuffer.isClosed()) {
-            channelBuffer.refreshHeader();
-            channelBuffer.refreshBody();
             mgr.dropActive(channelBuffer.getNodeIdHash(), "close-already");
             duration = System.nanoTime() - startTime;
             closedCheckTime += duration;
@@ -185,51 +193,53 @@ public class TaskSend implements Runnable {
             closedCheckTime = 0;
         }
 
+        SocketChannel sc = (SocketChannel) sk.channel();
         long startTime2 = System.nanoTime();
+        EncodedMsg encoded = null;
         try {
             startTime = System.nanoTime();
-            channelBuffer.lock.lock();
-
-            /*
-             * @warning header set len (body len) before header encode
-             */
-            byte[] bodyBytes = msg.encode();
-            int bodyLen = bodyBytes == null ? 0 : bodyBytes.length;
-            Header h = msg.getHeader();
-            h.setLen(bodyLen);
-            byte[] headerBytes = h.encode();
-
-            p2pLOG.trace("write id:{} {}-{}-{}", nodeShortId, h.getVer(), h.getCtrl(), h.getAction());
-
-            ByteBuffer buf = ByteBuffer.allocate(headerBytes.length + bodyLen);
-            buf.put(headerBytes);
-            if (bodyBytes != null) {
-                buf.put(bodyBytes);
-            }
-            buf.flip();
+            encoded = encodedMsgs.acquire(msg, channelBuffer.isCompressionEnabled());
             duration = System.nanoTime() - startTime;
             setupWriteTime += duration;
             if (setupWriteTime > MIN_DURATION) { // print and reset total time so far
                 surveyLog.info("TaskSend: setup for write, duration = {} ns.", setupWriteTime);
                 setupWriteTime = 0;
             }
+        } catch (Exception e) {
+            p2pLOG.error("TaskSend encode exception.", e);
+            return;
+        }
+
+        channelBuffer.lock.lock();
+        try {
+            Header h = msg.getHeader();
+            p2pLOG.trace("write id:{} {}-{}-{}", nodeShortId, h.getVer(), h.getCtrl(), h.getAction());
 
+            ByteBuffer[] views = encoded.views();
             long t1 = System.nanoTime(), t2;
-            int wrote = 0;
             try {
                 startTime = System.nanoTime();
-                do {
-                    int result = sc.write(buf);
-                    wrote += result;
+                // messages already waiting for the socket must be written first
+                if (!channelBuffer.hasPendingWrites()) {
+                    sc.write(views);
+                }
 
-                    if (result == 0) {
-                        // @Attention:  very important sleep , otherwise when NIO write buffer full,
-                        // without sleep will hangup this thread.
-                        Thread.sleep(0, 1);
+                if (ChannelBuffer.remaining(views) > 0) {
+                    if (channelBuffer.addPendingWrite(encoded, views)) {
+                        // the reference is handed over to the pending write
+                        encoded = null;
+                        // the selector thread completes the write when the socket is writable
+                        sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+                        selector.wakeup();
+                    } else {
+                        p2pLOG.debug(
+                                "write-queue-full node={} pending={} dropped={}",
+                                nodeShortId,
+                                channelBuffer.getPendingBytes(),
+                                encoded.length());
                     }
+                }
 
-                    t2 = System.nanoTime() - t1;
-                } while (buf.hasRemaining() && (t2 < MAX_BUFFER_WRITE_TIME));
                 duration = System.nanoTime() - startTime;
                 writeTime += duration;
                 if (writeTime > MIN_DURATION) { // print and reset total time so far
@@ -237,38 +247,34 @@ public class TaskSend implements Runnable {
                     writeTime = 0;
                 }
 
+                t2 = System.nanoTime() - t1;
                 if (t2 > MIN_TRACE_BUFFER_WRITE_TIME) {
-                    p2pLOG.trace(
-                        "msg write: id {} size {} time {} ms length {}",
-                        nodeShortId,
-                        wrote,
-                        t2,
-                        buf.array().length);
+                    p2pLOG.trace("msg write: id {} time {} ns", nodeShortId, t2);
                 }
-
-            } catch (ClosedChannelException ex1) {
+            } catch (ClosedChannelException | CancelledKeyException ex1) {
                 p2pLOG.debug("closed-channel-exception node=" + nodeShortId, ex1);
                 channelBuffer.setClosed();
             } catch (IOException ex2) {
                 p2pLOG.debug(
                         "write-msg-io-exception node="
-                            + nodeShortId
-                            + " headerBytes="
-                            + headerBytes.length
-                            + " bodyLen="
-                            + bodyLen
-                            + " time="
-                            + (System.nanoTime() - t1)
-                            + "ns",
+                                + nodeShortId
+                                + " length="
+                                + ChannelBuffer.remaining(views)
+                                + " time="
+                                + (System.nanoTime() - t1)
+                                + "ns",
                         ex2);
 
-                if (ex2.getMessage().equals("Broken pipe")) {
+                if ("Broken pipe".equals(ex2.getMessage())) {
                     channelBuffer.setClosed();
                 }
             }
         } catch (Exception e) {
             p2pLOG.error("TaskSend exception.", e);
         } finally {
+            if (encoded != null) {
+                encoded.release();
+            }
             duration = System.nanoTime() - startTime2;
             tryTime += duration;
             if (tryTime > MIN_DURATION) { // print and reset total time so far
@@ -1,6 +1,5 @@
 package org.aion.p2p.impl1.tasks;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.INodeMgr;
 import org.slf4j.Logger;
@@ -10,8 +9,8 @@ public class TaskStatus implements Runnable {
     private final Logger p2pLOG, surveyLog;
     private final INodeMgr nodeMgr;
     private final String selfShortId;
-    private final BlockingQueue<MsgOut> sendMsgQue;
-    private final BlockingQueue<MsgIn> receiveMsgQue;
+    private final SendQueues sendMsgQue;
+    private final RouteDispatcher receiveMsgQue;
 
     private static final int PERIOD_STATUS = 10000;
     private final AtomicBoolean start;
@@ -22,8 +21,8 @@ public class TaskStatus implements Runnable {
             final AtomicBoolean _start,
             final INodeMgr _nodeMgr,
             final String _selfShortId,
-            final BlockingQueue<MsgOut> _sendMsgQue,
-            final BlockingQueue<MsgIn> _receiveMsgQue) {
+            final SendQueues _sendMsgQue,
+            final RouteDispatcher _receiveMsgQue) {
         this.p2pLOG = p2pLOG;
         this.surveyLog = surveyLog;
         this.nodeMgr = _nodeMgr;
@@ -47,9 +46,12 @@ public class TaskStatus implements Runnable {
                 if (p2pLOG.isDebugEnabled()) {
                     p2pLOG.debug(status);
                     p2pLOG.debug(
-                            "recv queue[{}] send queue[{}]",
+                            "recv queue[{}] send queue[{}] send dropped[{}] send queue per peer{} recv routes{}",
                             receiveMsgQue.size(),
-                            sendMsgQue.size());
+                            sendMsgQue.size(),
+                            sendMsgQue.dropped(),
+                            sendMsgQue.depths(),
+                            receiveMsgQue.status().values());
                 } else if (p2pLOG.isInfoEnabled()) {
                     p2pLOG.info(status);
                 }
@@ -0,0 +1,268 @@
+package org.aion.p2p.impl2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.impl1.tasks.EncodedMsg;
+import org.aion.p2p.impl1.tasks.FrameReader;
+import org.aion.p2p.impl2.selector.MainIOLoop;
+import org.aion.p2p.impl2.selector.Task;
+import org.slf4j.Logger;
+
+/**
+ * The state of a single peer connection, attached to its channel in one of the selector loops.
+ *
+ * <p>Reads and writes happen on the loop thread only. Other threads hand over messages through
+ * {@link #write(EncodedMsg)}, which queues the write on the loop. Bytes that the socket does not
+ * accept right away are kept until {@link SelectionKey#OP_WRITE} signals that it is writable
+ * again.
+ */
+final class Connection implements Task {
+
+    // limit for the bytes waiting for the socket to become writable
+    static final long MAX_PENDING_WRITE_BYTES = 32 * 1024 * 1024;
+
+    private final P2pMgr mgr;
+    private final MainIOLoop loop;
+    private final SocketChannel channel;
+    private final Logger p2pLOG;
+
+    private volatile int nodeIdHash;
+    private volatile String displayId;
+    // the peer accepts compressed message bodies
+    private volatile boolean compression = false;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    // used only by the loop thread
+    private final FrameReader frameReader = new FrameReader();
+    private final Map<Integer, RouteStatus> routes = new HashMap<>();
+    private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private long pendingBytes = 0;
+
+    Connection(P2pMgr mgr, MainIOLoop loop, SocketChannel channel, Logger p2pLOG) {
+        this.mgr = mgr;
+        this.loop = loop;
+        this.channel = channel;
+        this.p2pLOG = p2pLOG;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    String getDisplayId() {
+        return displayId;
+    }
+
+    void setDisplayId(String displayId) {
+        this.displayId = displayId;
+    }
+
+    int getNodeIdHash() {
+        return nodeIdHash;
+    }
+
+    void setNodeIdHash(int nodeIdHash) {
+        this.nodeIdHash = nodeIdHash;
+    }
+
+    /** Indicates whether compressed message bodies can be sent on this connection. */
+    boolean isCompressionEnabled() {
+        return compression;
+    }
+
+    void setCompressionEnabled(boolean compression) {
+        this.compression = compression;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /** Registers the channel with its loop, listening for incoming bytes. */
+    void register() {
+        loop.attachChannel(channel, SelectionKey.OP_READ, this);
+    }
+
+    /** Closes the connection on its loop thread. */
+    void close() {
+        loop.execute(
+                () -> {
+                    if (loop.keyFor(channel) != null) {
+                        loop.cancel(channel);
+                    } else {
+                        channelUnregistered(channel, null);
+                    }
+                });
+    }
+
+    /**
+     * Queues the encoded message for writing on the loop thread. The connection takes over the
+     * caller's reference to the encoding.
+     */
+    void write(EncodedMsg encoded) {
+        loop.execute(() -> writeOnLoop(encoded));
+    }
+
+    private void writeOnLoop(EncodedMsg encoded) {
+        SelectionKey key = loop.keyFor(channel);
+        if (closed.get() || key == null || !key.isValid()) {
+            encoded.release();
+            return;
+        }
+
+        ByteBuffer[] views = encoded.views();
+        try {
+            // messages already waiting for the socket must be written first
+            if (pendingWrites.isEmpty()) {
+                channel.write(views);
+            }
+
+            long remaining = remaining(views);
+            if (remaining == 0) {
+                encoded.release();
+            } else if (pendingBytes + remaining > MAX_PENDING_WRITE_BYTES
+                    && !pendingWrites.isEmpty()) {
+                p2pLOG.debug(
+                        "write-queue-full node={} pending={} dropped={}",
+                        displayId,
+                        pendingBytes,
+                        encoded.length());
+                encoded.release();
+            } else {
+                pendingWrites.addLast(new PendingWrite(encoded, views));
+                pendingBytes += remaining;
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        } catch (IOException e) {
+            encoded.release();
+            mgr.closeSocket(channel, displayId + "-write-msg-exception", e);
+        }
+    }
+
+    @Override
+    public void channelReady(SelectableChannel _channel, SelectionKey key) throws Exception {
+        if (key.isWritable()) {
+            flushPendingWrites(key);
+        }
+        if (key.isValid() && key.isReadable()) {
+            read();
+        }
+    }
+
+    private void flushPendingWrites(SelectionKey key) throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            PendingWrite pw = pendingWrites.peekFirst();
+            pendingBytes -= channel.write(pw.views);
+            if (remaining(pw.views) > 0) {
+                return;
+            }
+            pendingWrites.removeFirst();
+            pw.msg.release();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Reads the available bytes and handles the messages they complete. Reading stops once the
+     * channel has no more bytes or after {@link P2pConstant#MAX_BODY_SIZE} bytes to give the other
+     * channels of the loop their turn.
+     */
+    private void read() throws Exception {
+        int r;
+        long cnt = 0;
+        do {
+            r = frameReader.read(channel);
+            if (r > 0) {
+                cnt += r;
+            }
+            while (frameReader.next()) {
+                mgr.handleMsg(this, frameReader.getHeader(), frameReader.getBody());
+            }
+        } while (r > 0 && cnt < P2pConstant.MAX_BODY_SIZE);
+
+        if (r < 0) {
+            mgr.closeSocket(channel, displayId + "-end-of-stream");
+        }
+    }
+
+    @Override
+    public void channelUnregistered(SelectableChannel _channel, Throwable cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        PendingWrite pw;
+        while ((pw = pendingWrites.pollFirst()) != null) {
+            pw.msg.release();
+        }
+        pendingBytes = 0;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            p2pLOG.debug("close-socket-io-exception.", e);
+        }
+        mgr.connectionClosed(this, cause);
+    }
+
+    /**
+     * @param _route int
+     * @param _maxReqsPerSec int requests within 1 s
+     * @return boolean flag if under route control
+     */
+    boolean shouldRoute(int _route, int _maxReqsPerSec) {
+        long now = System.currentTimeMillis();
+        RouteStatus prev = routes.putIfAbsent(_route, new RouteStatus(now));
+        if (prev == null) {
+            return true;
+        }
+        if ((now - prev.timestamp) > 1000) {
+            prev.count = 0;
+            prev.timestamp = now;
+            return true;
+        }
+        boolean shouldRoute = prev.count < _maxReqsPerSec;
+        if (shouldRoute) {
+            prev.count++;
+        } else if (p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug("route-cooldown={} node={} count={}", _route, displayId, prev.count);
+        }
+        return shouldRoute;
+    }
+
+    private static long remaining(ByteBuffer[] views) {
+        long remaining = 0;
+        for (ByteBuffer view : views) {
+            remaining += view.remaining();
+        }
+        return remaining;
+    }
+
+    private static class PendingWrite {
+        final EncodedMsg msg;
+        final ByteBuffer[] views;
+
+        PendingWrite(EncodedMsg msg, ByteBuffer[] views) {
+            this.msg = msg;
+            this.views = views;
+        }
+    }
+
+    private static class RouteStatus {
+        long timestamp;
+        int count = 0;
+
+        RouteStatus(long timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
+}
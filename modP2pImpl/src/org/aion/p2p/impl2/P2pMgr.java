@@ -1,1010 +1,844 @@
-// package org.aion.p2p.impl2;
-//
-// import org.aion.p2p.*;
-// import org.aion.p2p.impl.TaskRequestActiveNodes;
-// import org.aion.p2p.impl.TaskUPnPManager;
-// import org.aion.p2p.impl.comm.Act;
-// import org.aion.p2p.impl.comm.ChannelBuffer;
-// import org.aion.p2p.impl.comm.Node;
-// import org.aion.p2p.impl.comm.NodeMgr;
-// import org.aion.p2p.impl.zero.msg.*;
-// import org.aion.p2p.impl2.selector.MainIOLoop;
-// import org.aion.p2p.impl2.selector.Task;
-// import org.apache.commons.collections4.map.LRUMap;
-//
-// import java.io.IOException;
-// import java.io.UnsupportedEncodingException;
-// import java.net.InetSocketAddress;
-// import java.net.StandardSocketOptions;
-// import java.nio.ByteBuffer;
-// import java.nio.channels.*;
-// import java.nio.channels.spi.SelectorProvider;
-// import java.util.*;
-// import java.util.concurrent.*;
-// import java.util.concurrent.atomic.AtomicBoolean;
-// import java.util.concurrent.atomic.AtomicInteger;
-//
-//// import org.aion.p2p.impl.one.msg.Hello;
-//
-/// **
-// * @author Chris p2p://{uuid}@{ip}:{port} TODO: 1) simplify id bytest to int, ip
-// *         bytest to str 2) upnp protocal 3) framing
-// */
-// public final class P2pMgr implements IP2pMgr {
-//
-//	private final static int PERIOD_SHOW_STATUS = 10000;
-//	private final static int PERIOD_REQUEST_ACTIVE_NODES = 1000;
-//	private final static int PERIOD_CONNECT_OUTBOUND = 1000;
-//	private final static int PERIOD_CLEAR = 20000;
-//
-//	private final static int TIMEOUT_OUTBOUND_CONNECT = 10000;
-//	private final static int TIMEOUT_OUTBOUND_NODES = 10000;
-//	private final static int PERIOD_UPNP_PORT_MAPPING = 3600000;
-//
-//	private final static int TIMEOUT_MSG_READ = 10000;
-//	// initialed after handlers registration completed
-//	private ReqHandshake1 cachedReqHandshake1;
-//	private ReqHandshake cachedReqHandshake;
-//	private ResHandshake1 cachedResHandshake1;
-//	private ResHandshake cachedResHandshake;
-//
-//	private final int maxTempNodes;
-//	private final int maxActiveNodes;
-//
-//	private final boolean syncSeedsOnly;
-//	private final boolean showStatus;
-//	public final boolean showLog;
-//	private final int selfNetId;
-//	private final String selfRevision;
-//	private final byte[] selfNodeId;
-//	private final int selfNodeIdHash;
-//	private final String selfShortId;
-//	private final byte[] selfIp;
-//	private final int selfPort;
-//	private final boolean upnpEnable;
-//
-//	private final Map<Integer, List<Handler>> handlers = new ConcurrentHashMap<>();
-//	private final Set<Short> versions = new HashSet<>();
-//
-//	private NodeMgr nodeMgr = new NodeMgr();
-//	private ServerSocketChannel tcpServer;
-//	private Selector selector;
-//
-//	private ScheduledThreadPoolExecutor scheduledWorkers;
-//	private ExecutorService workers;
-//	private AtomicBoolean start = new AtomicBoolean(true);
-//
-//	private final MainIOLoop ioLoop;
-//
-//	private final HandleChannel handleRead = new HandleChannel();
-//
-//	private final HandleInboundEvent handleInbound = new HandleInboundEvent();
-//
-//	private final Map<Integer, Integer> errCnt = Collections.synchronizedMap(new LRUMap<>(128));
-//
-//
-//	/**
-//	 * @param _nodeId
-//	 *            byte[36]
-//	 * @param _ip
-//	 *            String
-//	 * @param _port
-//	 *            int
-//	 * @param _bootNodes
-//	 *            String[]
-//	 * @param _upnpEnable
-//	 *            boolean
-//	 * @param _maxTempNodes
-//	 *            int
-//	 * @param _maxActiveNodes
-//	 *            int
-//	 * @param _showStatus
-//	 *            boolean
-//	 * @param _showLog
-//	 *            boolean
-//	 */
-//	public P2pMgr(int _netId, String _revision, String _nodeId, String _ip, int _port, final String[]
-// _bootNodes,
-//			boolean _upnpEnable, int _maxTempNodes, int _maxActiveNodes, boolean _showStatus, boolean
-// _showLog,
-//			boolean _bootlistSyncOnly) {
-//		this.selfNetId = _netId;
-//		this.selfRevision = _revision;
-//		this.selfNodeId = _nodeId.getBytes();
-//		this.selfNodeIdHash = Arrays.hashCode(selfNodeId);
-//		this.selfShortId = new String(Arrays.copyOfRange(_nodeId.getBytes(), 0, 6));
-//		this.selfIp = Node.ipStrToBytes(_ip);
-//		this.selfPort = _port;
-//		this.upnpEnable = _upnpEnable;
-//		this.maxTempNodes = _maxTempNodes;
-//		this.maxActiveNodes = _maxActiveNodes;
-//		this.showStatus = _showStatus;
-//		this.showLog = _showLog;
-//		this.syncSeedsOnly = _bootlistSyncOnly;
-//
-//		for (String _bootNode : _bootNodes) {
-//			Node node = Node.parseP2p(_bootNode);
-//			if (node != null && validateNode(node)) {
-//				nodeMgr.addTempNode(node);
-//				nodeMgr.seedIpAdd(node.getIpStr());
-//			}
-//		}
-//
-//		// rem out for bug:
-//		// nodeMgr.loadPersistedNodes();
-//		cachedReqHandshake = new ReqHandshake(_nodeId.getBytes(), selfNetId, this.selfIp,
-// this.selfPort);
-//		cachedResHandshake = new ResHandshake(true);
-//		cachedResHandshake1 = new ResHandshake1(true, this.selfRevision);
-//		this.ioLoop = new MainIOLoop(SelectorProvider.provider());
-//	}
-//
-//	public int getSelfNodeIdHash() {
-//		return this.selfNodeIdHash;
-//	}
-//
-//	/**
-//	 * @param _node
-//	 *            Node
-//	 * @return boolean
-//	 */
-//	private boolean validateNode(final Node _node) {
-//		boolean notNull = _node != null;
-//		boolean notSelfId = _node.getIdHash() != this.selfNodeIdHash;
-//		boolean notSameIpOrPort = !(Arrays.equals(selfIp, _node.getIp()) && selfPort ==
-// _node.getPort());
-//		boolean notActive = !nodeMgr.hasActiveNode(_node.getIdHash());
-//		boolean notOutbound = !nodeMgr.getOutboundNodes().containsKey(_node.getIdHash());
-//		return notNull && notSelfId && notSameIpOrPort && notActive && notOutbound;
-//	}
-//
-//	/**
-//	 * @param _channel
-//	 *            SocketChannel TODO: check option
-//	 */
-//	private static void configChannel(final SocketChannel _channel) throws IOException {
-//		_channel.configureBlocking(false);
-//		_channel.socket().setSoTimeout(TIMEOUT_MSG_READ);
-//		_channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
-//		_channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-//	}
-//
-//	/**
-//	 * @param _sc
-//	 *            SocketChannel
-//	 */
-//	public void closeSocket(final SocketChannel _sc) {
-//		this.ioLoop.cancelChannel(_sc);
-//	}
-//
-//	/**
-//	 * Will drop an active node (if possible) TODO: verify that this indeed does not
-//	 * have to be synchronized
-//	 *
-//	 * @param _nodeIdHash
-//	 *            hash of the active node to be dropped
-//	 */
-//	@Override
-//	public void dropActive(Integer _nodeIdHash) {
-//		this.nodeMgr.dropActive(_nodeIdHash, this);
-//	}
-//
-//	/**
-//	 * @param _node
-//	 *            Node 1) leave outbound timestamp check to outbound connections
-//	 *            process 2) add if no such connection or drop new if connection to
-//	 *            target exists
-//	 */
-//	private void addOutboundNode(final Node _node) {
-//		Node previous = nodeMgr.getOutboundNodes().putIfAbsent(_node.getIdHash(), _node);
-//		if (previous != null)
-//			closeSocket(_node.getChannel());
-//	}
-//
-//	/**
-//	 * Customized code for registering a channel, taken from Java NIO reference
-//	 *
-//	 * @param loop
-//	 *            event loop
-//	 * @param channel
-//	 *            inbound channel produced by {@link #tcpServer}
-//	 * @param ops
-//	 *            the items/events we're interested in
-//	 */
-//	private static void registerChannel(MainIOLoop loop, SocketChannel channel, int ops, NodeMgr
-// nodeMgr, Task task)
-//			throws IOException {
-//		if (channel == null)
-//			return;
-//
-//		configChannel(channel);
-//
-//		String ip = channel.socket().getInetAddress().getHostAddress();
-//		int port = channel.socket().getPort();
-//		int localPort = channel.socket().getLocalPort();
-//
-//		ChannelBuffer buffer = new ChannelBuffer();
-//		buffer.ip = ip;
-//		buffer.port = port;
-//		buffer.task = task;
-//
-//		loop.attachChannel(channel, ops, buffer, buffer.task);
-//
-//		// attach to NodeMgr
-//		Node node = nodeMgr.allocNode(ip, localPort, port);
-//		node.setChannel(channel);
-//		nodeMgr.addInboundNode(node);
-//	}
-//
-//	/**
-//	 * @param _sc
-//	 *            SocketChannel
-//	 * @throws IOException
-//	 *             IOException
-//	 */
-//	private void readHeader(final SocketChannel _sc, final ChannelBuffer _cb) throws IOException {
-//
-//		int ret;
-//		while ((ret = _sc.read(_cb.headerBuf)) > 0) {
-//		}
-//
-//		if (!_cb.headerBuf.hasRemaining()) {
-//			_cb.header = Header.decode(_cb.headerBuf.array());
-//		} else {
-//			if (ret == -1) {
-//				throw new IOException("read-header-eof");
-//			}
-//		}
-//	}
-//
-//	/**
-//	 * @param _sc
-//	 *            SocketChannel
-//	 * @throws IOException
-//	 *             IOException
-//	 */
-//	private void readBody(final SocketChannel _sc, final ChannelBuffer _cb) throws IOException {
-//
-//		if (_cb.bodyBuf == null)
-//			_cb.bodyBuf = ByteBuffer.allocate(_cb.header.getLen());
-//
-//		int ret;
-//		while ((ret = _sc.read(_cb.bodyBuf)) > 0) {
-//		}
-//
-//		if (!_cb.bodyBuf.hasRemaining()) {
-//			_cb.body = _cb.bodyBuf.array();
-//		} else {
-//			if (ret == -1) {
-//				throw new IOException("read-body-eof");
-//			}
-//		}
-//	}
-//
-//	/**
-//	 * @param _sk
-//	 *            SelectionKey
-//	 * @throws IOException
-//	 *             IOException
-//	 */
-//	private void read(final SelectionKey _sk) throws IOException {
-//
-//		if (_sk.attachment() == null) {
-//			throw new IOException("attachment is null");
-//		}
-//		ChannelBuffer rb = (ChannelBuffer) _sk.attachment();
-//
-//		// read header
-//		if (!rb.isHeaderCompleted()) {
-//			readHeader((SocketChannel) _sk.channel(), rb);
-//		}
-//
-//		// if(rb.isHeaderCompleted() && !handlers.containsKey(rb.header.getRoute())){
-//		// // TODO: Test
-//		// return;
-//		// }
-//
-//		// read body
-//		if (rb.isHeaderCompleted() && !rb.isBodyCompleted()) {
-//			readBody((SocketChannel) _sk.channel(), rb);
-//		}
-//
-//		if (!rb.isBodyCompleted())
-//			return;
-//
-//		Header h = rb.header;
-//
-//		// byte[] bodyBytes = Arrays.copyOf(rb.body, rb.body.length);
-//
-//		byte[] bodyBytes = rb.body;
-//		rb.refreshHeader();
-//		rb.refreshBody();
-//
-//		short ver = h.getVer();
-//		byte ctrl = h.getCtrl();
-//		byte act = h.getAction();
-//
-//		// print route
-//		// System.out.println("read " + ver + "-" + ctrl + "-" + act);
-//		switch (ver) {
-//		case Ver.V0:
-//			switch (ctrl) {
-//			case Ctrl.NET:
-//				handleP2pMsg(_sk, act, bodyBytes);
-//				break;
-//			default:
-//				int route = h.getRoute();
-//				if (rb.nodeIdHash != 0 || handlers.containsKey(route))
-//					handleKernelMsg(rb.nodeIdHash, route, bodyBytes);
-//				break;
-//			}
-//			break;
-//
-//		// testing versioning
-//		// case Ver.V1:
-//		// if(ctrl == 0 && act == 0){
-//		// Hello hello = Hello.decode(bodyBytes);
-//		// if(hello != null)
-//		// System.out.println("v1 hello msg " + hello.getMsg());
-//		// }
-//		//
-//		// break;
-//		}
-//
-//	}
-//
-//	/**
-//	 * @return boolean TODO: implementation
-//	 */
-//	private boolean handshakeRuleCheck(int netId) {
-//
-//		// check net id
-//		if (netId != selfNetId)
-//			return false;
-//
-//		// check supported protocol versions
-//		return true;
-//	}
-//
-//	/**
-//	 * @param _buffer
-//	 *            ChannelBuffer
-//	 * @param _channelHash
-//	 *            int
-//	 * @param _nodeId
-//	 *            byte[]
-//	 * @param _netId
-//	 *            int
-//	 * @param _port
-//	 *            int
-//	 * @param _revision
-//	 *            byte[]
-//	 *
-//	 *            Construct node info after handshake request success
-//	 */
-//	private void handleReqHandshake(final ChannelBuffer _buffer, int _channelHash, final byte[]
-// _nodeId, int _netId,
-//			int _port, final byte[] _revision) {
-//		Node node = nodeMgr.getInboundNode(_channelHash);
-//		if (node != null) {
-//			if (handshakeRuleCheck(_netId)) {
-//				_buffer.nodeIdHash = Arrays.hashCode(_nodeId);
-//				node.setId(_nodeId);
-//				node.setPort(_port);
-//
-//				// handshake 1
-//				if (_revision != null) {
-//					String binaryVersion;
-//					try {
-//						binaryVersion = new String(_revision, "UTF-8");
-//					} catch (UnsupportedEncodingException e) {
-//						binaryVersion = "decode-fail";
-//					}
-//					node.setBinaryVersion(binaryVersion);
-//					workers.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), node.getChannel(),
-//							cachedResHandshake1));
-//				}
-//				// handshake 0
-//				else {
-//					workers.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), node.getChannel(),
-//							cachedResHandshake));
-//				}
-//				nodeMgr.moveInboundToActive(_channelHash, this);
-//			}
-//		}
-//	}
-//
-//	private void handleResHandshake(int _nodeIdHash, String _binaryVersion) {
-//		Node node = nodeMgr.getOutboundNodes().get(_nodeIdHash);
-//		if (node != null) {
-//			node.refreshTimestamp();
-//			node.setBinaryVersion(_binaryVersion);
-//			nodeMgr.moveOutboundToActive(node.getIdHash(), node.getIdShort(), this);
-//		}
-//	}
-//
-//	/**
-//	 * @param _sk
-//	 *            SelectionKey
-//	 * @param _act
-//	 *            ACT
-//	 * @param _msgBytes
-//	 *            byte[]
-//	 */
-//	private void handleP2pMsg(final SelectionKey _sk, byte _act, final byte[] _msgBytes) {
-//
-//		ChannelBuffer rb = (ChannelBuffer) _sk.attachment();
-//
-//		switch (_act) {
-//
-//		case Act.REQ_HANDSHAKE:
-//			if (_msgBytes.length > ReqHandshake.LEN) {
-//				ReqHandshake1 reqHandshake1 = ReqHandshake1.decode(_msgBytes);
-//				if (reqHandshake1 != null) {
-//					handleReqHandshake(rb, _sk.channel().hashCode(), reqHandshake1.getNodeId(),
-//							reqHandshake1.getNetId(), reqHandshake1.getPort(), reqHandshake1.getRevision());
-//				}
-//			} else {
-//				ReqHandshake reqHandshake = ReqHandshake.decode(_msgBytes);
-//				if (reqHandshake != null)
-//					handleReqHandshake(rb, _sk.channel().hashCode(), reqHandshake.getNodeId(),
-// reqHandshake.getNetId(),
-//							reqHandshake.getPort(), null);
-//			}
-//
-//			break;
-//
-//		case Act.RES_HANDSHAKE:
-//			if (rb.nodeIdHash == 0)
-//				return;
-//
-//			if (_msgBytes.length > ResHandshake.LEN) {
-//				ResHandshake1 resHandshake1 = ResHandshake1.decode(_msgBytes);
-//				if (resHandshake1 != null && resHandshake1.getSuccess())
-//					handleResHandshake(rb.nodeIdHash, resHandshake1.getBinaryVersion());
-//
-//			} else {
-//				ResHandshake resHandshake = ResHandshake.decode(_msgBytes);
-//				if (resHandshake != null && resHandshake.getSuccess())
-//					handleResHandshake(rb.nodeIdHash, "unknown");
-//			}
-//			break;
-//
-//		case Act.REQ_ACTIVE_NODES:
-//			if (rb.nodeIdHash != 0) {
-//				Node node = nodeMgr.getActiveNode(rb.nodeIdHash);
-//				if (node != null)
-//					workers.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), node.getChannel(),
-//							new ResActiveNodes(nodeMgr.getActiveNodesList())));
-//			}
-//			break;
-//
-//		case Act.RES_ACTIVE_NODES:
-//			if (syncSeedsOnly)
-//				break;
-//
-//			if (rb.nodeIdHash != 0) {
-//				Node node = nodeMgr.getActiveNode(rb.nodeIdHash);
-//				if (node != null) {
-//					node.refreshTimestamp();
-//					ResActiveNodes resActiveNodes = ResActiveNodes.decode(_msgBytes);
-//					if (resActiveNodes != null) {
-//						List<Node> incomingNodes = resActiveNodes.getNodes();
-//						for (Node incomingNode : incomingNodes) {
-//							if (nodeMgr.tempNodesSize() >= this.maxTempNodes)
-//								return;
-//							if (validateNode(incomingNode))
-//								nodeMgr.addTempNode(incomingNode);
-//						}
-//					}
-//				}
-//			}
-//			break;
-//		default:
-//			if (showLog)
-//				System.out.println("<p2p unknown-route act=" + _act + ">");
-//			break;
-//		}
-//	}
-//
-//	/**
-//	 * @param _nodeIdHash
-//	 *            int
-//	 * @param _route
-//	 *            int
-//	 * @param _msgBytes
-//	 *            byte[]
-//	 */
-//	private void handleKernelMsg(int _nodeIdHash, int _route, final byte[] _msgBytes) {
-//		Node node = nodeMgr.getActiveNode(_nodeIdHash);
-//		if (node != null) {
-//			List<Handler> hs = handlers.get(_route);
-//			if (hs == null)
-//				return;
-//			for (Handler hlr : hs) {
-//				if (hlr == null)
-//					continue;
-//				node.refreshTimestamp();
-//				workers.submit(() -> hlr.receive(node.getIdHash(), node.getIdShort(), _msgBytes));
-//			}
-//		}
-//	}
-//
-//	/**
-//	 * @return NodeMgr
-//	 */
-//	public NodeMgr getNodeMgr() {
-//		return this.nodeMgr;
-//	}
-//
-//	@Override
-//	public void run() {
-//		try {
-//			selector = Selector.open();
-//
-//			scheduledWorkers = new ScheduledThreadPoolExecutor(1);
-//			workers = Executors.newFixedThreadPool(Math.min(Runtime.getRuntime().availableProcessors() * 2,
-// 16),
-//					new ThreadFactory() {
-//						private AtomicInteger cnt = new AtomicInteger();
-//
-//						public Thread newThread(Runnable r) {
-//							return new Thread(r, "p2p-worker-" + cnt.incrementAndGet());
-//						}
-//					});
-//
-//			tcpServer = ServerSocketChannel.open();
-//			tcpServer.configureBlocking(false);
-//			tcpServer.socket().setReuseAddress(true);
-//			tcpServer.socket().bind(new InetSocketAddress(Node.ipBytesToStr(selfIp), selfPort));
-//
-//			ChannelBuffer ibChannelBuffer = new ChannelBuffer();
-//			ibChannelBuffer.task = handleInbound;
-//
-//			this.ioLoop.attachChannel(tcpServer, SelectionKey.OP_ACCEPT, ibChannelBuffer,
-// ibChannelBuffer.task);
-//
-//			// this is the main selector thread, this thread handles the following tasks:
-//			// 1) All selector registration is done through this channel, selector
-//			// registration
-//			// may be done by {@link #TaskConnectPeers}
-//			// 2) All selector removal is done through this channel
-//			Thread boss = new Thread(this.ioLoop, "p2p-selector-main");
-//			boss.setPriority(Thread.MAX_PRIORITY);
-//			boss.start();
-//
-//			if (upnpEnable)
-//				scheduledWorkers.scheduleWithFixedDelay(new TaskUPnPManager(selfPort), 1,
-// PERIOD_UPNP_PORT_MAPPING,
-//						TimeUnit.MILLISECONDS);
-//
-//			if (showStatus)
-//				scheduledWorkers.scheduleWithFixedDelay(new TaskStatus(), 2, PERIOD_SHOW_STATUS,
-// TimeUnit.MILLISECONDS);
-//
-//			if (!syncSeedsOnly)
-//				scheduledWorkers.scheduleWithFixedDelay(new TaskRequestActiveNodes(this), 5000,
-//						PERIOD_REQUEST_ACTIVE_NODES, TimeUnit.MILLISECONDS);
-//
-//			// rem out for bug: https://github.com/aionnetwork/aion/issues/136
-//			// scheduledWorkers.scheduleWithFixedDelay(new TaskPersistNodes(nodeMgr), 30000,
-//			// PERIOD_PERSIST_NODES, TimeUnit.MILLISECONDS);
-//
-//			workers.submit(new TaskClear());
-//			workers.submit(new TaskConnectPeers());
-//
-//		} catch (IOException e) {
-//			if (showLog)
-//				System.out.println("<p2p tcp-server-io-exception>");
-//		} catch (Throwable e) {
-//			if (showLog)
-//				System.out.println("<p2p tcp-server-error>" + e.toString());
-//		}
-//	}
-//
-//	@Override
-//	public INode getRandom() {
-//		return nodeMgr.getRandom();
-//	}
-//
-//	@Override
-//	public Map<Integer, INode> getActiveNodes() {
-//		return new HashMap<>(this.nodeMgr.getActiveNodesMap());
-//	}
-//
-//	/**
-//	 * for test
-//	 */
-//	// void clearTempNodes() {
-//	// this.nodeMgr.clearTempNodes();
-//	// }
-//
-//	int getTempNodesCount() {
-//		return nodeMgr.tempNodesSize();
-//	}
-//
-//	@Override
-//	public void register(final List<Handler> _cbs) {
-//		for (Handler _cb : _cbs) {
-//			Header h = _cb.getHeader();
-//			short ver = h.getVer();
-//			byte ctrl = h.getCtrl();
-//			if (Ver.filter(ver) != Ver.UNKNOWN && Ctrl.filter(ctrl) != Ctrl.UNKNOWN) {
-//				if (!versions.contains(ver)) {
-//					versions.add(ver);
-//				}
-//
-//				int route = h.getRoute();
-//				List<Handler> routeHandlers = handlers.get(route);
-//				if (routeHandlers == null) {
-//					routeHandlers = new ArrayList<>();
-//					routeHandlers.add(_cb);
-//					handlers.put(route, routeHandlers);
-//				} else {
-//					routeHandlers.add(_cb);
-//				}
-//			}
-//		}
-//
-//		List<Short> supportedVersions = new ArrayList<>(versions);
-//		cachedReqHandshake1 = new ReqHandshake1(selfNodeId, selfNetId, this.selfIp, this.selfPort,
-//				this.selfRevision.getBytes(), supportedVersions);
-//	}
-//
-//	@Override
-//	public void send(int _nodeIdHashcode, final Msg _msg) {
-//		Node node = this.nodeMgr.getActiveNode(_nodeIdHashcode);
-//		if (node != null) {
-//			SocketChannel channel = node.getChannel();
-//			if (channel.isOpen()) {
-//				if (showLog)
-//					System.out.println("sending: " + _msg.getClass().getSimpleName() + " to " + channel);
-//				this.workers
-//						.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), node.getChannel(),
-// _msg));
-//			}
-//		}
-//	}
-//
-//	@Override
-//	public void shutdown() {
-//		start.set(false);
-//		scheduledWorkers.shutdownNow();
-//		nodeMgr.shutdown(this);
-//		workers.shutdownNow();
-//	}
-//
-//	@Override
-//	public List<Short> versions() {
-//		return new ArrayList<Short>(versions);
-//	}
-//
-//	@Override
-//	public int chainId() {
-//		return this.selfNetId;
-//	}
-//
-//	@Override
-//	public void errCheck(int nodeIdHashcode, String _displayId) {
-//		int cnt = (errCnt.get(nodeIdHashcode) == null ? 1 : (errCnt.get(nodeIdHashcode).intValue() + 1))
-// ;
-//
-//		if (cnt > 2) {
-//			dropActive(nodeIdHashcode);
-//			errCnt.put(nodeIdHashcode, 0);
-//
-//			System.out.println("<drop node: " + (_displayId == null ? nodeIdHashcode : _displayId) + ">");
-//		} else {
-//			errCnt.put(nodeIdHashcode, cnt);
-//		}
-//	}
-//
-//	private final class HandleInboundEvent implements Task {
-//
-//		// this is triggered everytime a new event comes in from channel
-//		@Override
-//		public void channelReady(SelectableChannel channel, SelectionKey key) {
-//			try {
-//				ServerSocketChannel serverChannel = (ServerSocketChannel) channel;
-//				SocketChannel socketChan = serverChannel.accept();
-//
-//				registerChannel(P2pMgr.this.ioLoop, socketChan, SelectionKey.OP_READ, P2pMgr.this.nodeMgr,
-//						new HandleChannel());
-//
-//			} catch (IOException e) {
-//				if (P2pMgr.this.showLog) {
-//					System.out.println("failed to register channel");
-//					e.printStackTrace();
-//				}
-//			} catch (Throwable e) {
-//				if (P2pMgr.this.showLog) {
-//					System.out.println("register channel error");
-//					e.printStackTrace();
-//				}
-//			}
-//		}
-//
-//		@Override
-//		public void acceptMessage(SelectableChannel channel, SelectionKey key, ByteBuffer buffer) {
-//			// do nothing, dont accept outbound messages from this task
-//		}
-//
-//		@Override
-//		public void channelUnregistered(SelectableChannel channel, Throwable cause) {
-//			try {
-//				channel.close();
-//			} catch (IOException e) {
-//				if (P2pMgr.this.showLog) {
-//					System.out.println("failed to close channel");
-//				}
-//			}
-//		}
-//	}
-//
-//	private final class HandleChannel implements Task {
-//
-//		private final static int MAX_MESSAGE_QUEUE_SIZE = 128;
-//
-//		private final Queue<ByteBuffer> byteBuffers = new LinkedBlockingQueue<>(MAX_MESSAGE_QUEUE_SIZE);
-//
-//		private long lastMessageQueueOverflow = 0;
-//
-//		@Override
-//		public void channelReady(SelectableChannel channel, SelectionKey key) {
-//			try {
-//
-//				if (key.isAcceptable())
-//					throw new UnsupportedOperationException("HandleChannel does not support acceptable keys");
-//
-//				if (key.isReadable()) {
-//					P2pMgr.this.read(key);
-//				}
-//
-//				if (key.isWritable()) {
-//					write(channel, key);
-//				}
-//			} catch (IOException e) {
-//				if (showLog) {
-//					System.out.println("<p2p-io-exception ip=" + ((ChannelBuffer) key.attachment()).ip + "
-// cause=\""
-//							+ e.toString() + "\">");
-//				}
-//
-//				// on any IO exception, cancel the channel, no need to close it should be
-//				// closed when channelUnregistered is triggered
-//				P2pMgr.this.ioLoop.cancel(key);
-//				byteBuffers.clear();
-//			} catch (Throwable e) {
-//				// print stack trace for all throwable except IO exception
-//				if (showLog) {
-//					e.printStackTrace();
-//				}
-//			}
-//		}
-//
-//		private void write(SelectableChannel channel, SelectionKey key) throws IOException {
-//			SocketChannel chan = (SocketChannel) channel;
-//			try {
-//				LOOP: while (!byteBuffers.isEmpty()) {
-//					ByteBuffer buf = byteBuffers.peek();
-//					// try to write as much as we can
-//					int ret;
-//					while (buf != null && buf.hasRemaining()) {
-//						ret = chan.write(buf);
-//						if (ret <= 0) {
-//							break LOOP;
-//						}
-//					}
-//
-//					// if we finish processing simply remove
-//					if (!buf.hasRemaining()) {
-//						byteBuffers.remove(buf);
-//					}
-//				}
-//			} finally {
-//				if (byteBuffers.isEmpty())
-//					key.interestOps(SelectionKey.OP_READ);
-//			}
-//		}
-//
-//		@Override
-//		public void acceptMessage(SelectableChannel channel, SelectionKey key, ByteBuffer buffer) {
-//			if (byteBuffers.offer(buffer)) {
-//				key.interestOps(SelectionKey.OP_WRITE);
-//			} else {
-//				if (P2pMgr.this.showLog) {
-//					long now = System.currentTimeMillis();
-//					if (now - lastMessageQueueOverflow > 5000) {
-//						System.out.println("message queue is full");
-//						lastMessageQueueOverflow = now;
-//					}
-//				}
-//			}
-//		}
-//
-//		@Override
-//		public void channelUnregistered(SelectableChannel channel, Throwable cause) {
-//			try {
-//				channel.close();
-//			} catch (IOException e) {
-//				if (P2pMgr.this.showLog) {
-//					System.out.println("failed to close channel");
-//				}
-//			}
-//		}
-//	}
-//
-//	private final class TaskStatus implements Runnable {
-//		@Override
-//		public void run() {
-//			Thread.currentThread().setName("p2p-ts");
-//			String status = nodeMgr.dumpNodeInfo(selfShortId);
-//			System.out.println(status);
-//			// TODO: reenable this
-//			// if (printReport) {
-//			// try {
-//			// Files.write(Paths.get(reportFolder, System.currentTimeMillis() +
-//			// "-p2p-report.out"),
-//			// status.getBytes());
-//			// } catch (IOException e) {
-//			// e.printStackTrace();
-//			// }
-//			// }
-//		}
-//	}
-//
-//	private final class TaskConnectPeers implements Runnable {
-//		@Override
-//		public void run() {
-//			Thread.currentThread().setName("p2p-tcp");
-//			while (start.get()) {
-//				try {
-//					Thread.sleep(PERIOD_CONNECT_OUTBOUND);
-//				} catch (InterruptedException e) {
-//					if (showLog)
-//						System.out.println("<p2p-tcp interrupted>");
-//					break;
-//				}
-//
-//				if (nodeMgr.activeNodesSize() >= maxActiveNodes) {
-//					if (showLog)
-//						System.out.println("<p2p-tcp-connect-peer pass max-active-nodes>");
-//					return;
-//				}
-//
-//				Node node;
-//				try {
-//					node = nodeMgr.tempNodesTake();
-//					if (node.getIfFromBootList())
-//						nodeMgr.addTempNode(node);
-//					if (node.peerMetric.shouldNotConn()) {
-//						continue;
-//					}
-//				} catch (InterruptedException e) {
-//					if (showLog)
-//						System.out.println("<p2p outbound-connect-io-exception>");
-//					return;
-//				}
-//				int nodeIdHash = node.getIdHash();
-//				byte[] nodeIp = node.getIp();
-//				int nodePort = node.getPort();
-//
-//				Map<Integer, INode> map = new HashMap<>();
-//				map.putAll(nodeMgr.getOutboundNodes());
-//				map.putAll(nodeMgr.getActiveNodesMap());
-//				boolean connected = (selfNodeIdHash == nodeIdHash
-//						|| Arrays.equals(selfIp, nodeIp) && selfPort == nodePort)
-//						|| (map.values().stream().anyMatch(n -> n.getIdHash() == nodeIdHash
-//								|| Arrays.equals(n.getIp(), nodeIp) && n.getPort() == nodePort));
-//
-//				if (!connected) {
-//					int _port = node.getPort();
-//					try {
-//						SocketChannel channel = SocketChannel.open();
-//						if (showLog)
-//							System.out.println("<p2p try-connect-" + node.getIpStr() + ">");
-//						channel.socket().connect(new InetSocketAddress(node.getIpStr(), _port),
-//								TIMEOUT_OUTBOUND_CONNECT);
-//						configChannel(channel);
-//
-//						if (channel.finishConnect() && channel.isConnected()) {
-//							ChannelBuffer rb = new ChannelBuffer();
-//							rb.nodeIdHash = nodeIdHash;
-//							rb.ip = node.getIpStr();
-//							rb.port = node.getPort();
-//							rb.task = P2pMgr.this.handleRead;
-//							P2pMgr.this.ioLoop.attachChannel(channel, SelectionKey.OP_READ, rb, rb.task);
-//
-//							node.setChannel(channel);
-//							node.setPortConnected(channel.socket().getLocalPort());
-//							addOutboundNode(node);
-//
-//							// fire extended handshake request first
-//							workers.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), channel,
-//									cachedReqHandshake1));
-//							workers.submit(new TaskWrite(ioLoop, workers, showLog, node.getIdShort(), channel,
-//									cachedReqHandshake));
-//
-//							if (showLog)
-//								System.out.println("<p2p action=connect-outbound addr=" + node.getIpStr() + ":" + _port
-//										+ " result=success>");
-//
-//							node.peerMetric.decFailedCount();
-//
-//						} else {
-//							channel.close();
-//							node.peerMetric.incFailedCount();
-//						}
-//					} catch (IOException e) {
-//						if (showLog)
-//							System.out.println("<p2p action=connect-outbound addr=" + node.getIpStr() + ":" + _port
-//									+ " result=failed>");
-//						node.peerMetric.incFailedCount();
-//					} catch (Throwable e) {
-//						if (showLog)
-//							System.out.println("<p2p action=connect-outbound addr=" + node.getIpStr() + ":" + _port
-//									+ " result=error>" + e.toString());
-//						node.peerMetric.incFailedCount();
-//					}
-//				}
-//			}
-//		}
-//	}
-//
-//	private final class TaskClear implements Runnable {
-//		@Override
-//		public void run() {
-//			Thread.currentThread().setName("p2p-clr");
-//			while (start.get()) {
-//				try {
-//					Thread.sleep(PERIOD_CLEAR);
-//
-//					// selectorLock.lock();
-//					nodeMgr.timeoutInbound(P2pMgr.this);
-//					// selectorLock.unlock();
-//
-//					Iterator outboundIt = nodeMgr.getOutboundNodes().keySet().iterator();
-//					while (outboundIt.hasNext()) {
-//
-//						Object obj = outboundIt.next();
-//
-//						if (obj == null)
-//							continue;
-//
-//						int nodeIdHash = (int) obj;
-//						Node node = nodeMgr.getOutboundNodes().get(nodeIdHash);
-//
-//						if (node == null)
-//							continue;
-//
-//						if (System.currentTimeMillis() - node.getTimestamp() > TIMEOUT_OUTBOUND_NODES) {
-//							// selectorLock.lock();
-//							closeSocket(node.getChannel());
-//							// selectorLock.unlock();
-//							outboundIt.remove();
-//
-//							if (showLog)
-//								System.out.println("<p2p-clear-outbound ip=" + node.getIpStr() + " node="
-//										+ node.getIdShort() + ">");
-//						}
-//					}
-//
-//					// selectorLock.lock();
-//					nodeMgr.timeoutActive(P2pMgr.this);
-//					// selectorLock.unlock();
-//
-//				} catch (InterruptedException interrupted) {
-//					if (showLog)
-//						System.out.println("<p2p-clear interrupted>");
-//				} catch (Throwable e) {
-//					if (showLog)
-//						System.out.println("<p2p-clear-throw>" + e.toString());
-//				}
-//			}
-//		}
-//	}
-//
-//	public boolean isShowLog() {
-//		return showLog;
-//	};
-// }
+package org.aion.p2p.impl2;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.Header;
+import org.aion.p2p.INode;
+import org.aion.p2p.INodeMgr;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl.TaskRequestActiveNodes;
+import org.aion.p2p.impl.TaskUPnPManager;
+import org.aion.p2p.impl.comm.Act;
+import org.aion.p2p.impl.comm.Capability;
+import org.aion.p2p.impl.comm.Node;
+import org.aion.p2p.impl.comm.NodeMgr;
+import org.aion.p2p.impl.zero.msg.ReqHandshake;
+import org.aion.p2p.impl.zero.msg.ReqHandshake1;
+import org.aion.p2p.impl.zero.msg.ResActiveNodes;
+import org.aion.p2p.impl.zero.msg.ResHandshake;
+import org.aion.p2p.impl.zero.msg.ResHandshake1;
+import org.aion.p2p.impl1.P2pMgr.Dest;
+import org.aion.p2p.impl1.tasks.EncodedMsgCache;
+import org.aion.p2p.impl1.tasks.MsgCompression;
+import org.aion.p2p.impl1.tasks.MsgIn;
+import org.aion.p2p.impl1.tasks.MsgOut;
+import org.aion.p2p.impl1.tasks.RouteDispatcher;
+import org.aion.p2p.impl1.tasks.SendQueues;
+import org.aion.p2p.impl1.tasks.TaskClear;
+import org.aion.p2p.impl1.tasks.TaskStatus;
+import org.aion.p2p.impl2.selector.MainIOLoop;
+import org.aion.p2p.impl2.selector.SelectorPool;
+import org.aion.p2p.impl2.selector.Task;
+import org.apache.commons.collections4.map.LRUMap;
+import org.slf4j.Logger;
+
+/**
+ * A p2p manager that spreads the peer connections over several selector threads.
+ *
+ * <p>Unlike {@link org.aion.p2p.impl1.P2pMgr}, where a single thread accepts, reads and writes for
+ * every connection, each connection here belongs to one of the loops of a {@link SelectorPool}
+ * chosen by the hash of its channel. The loop does all the I/O of its connections and writes are
+ * completed when the socket signals {@link SelectionKey#OP_WRITE}. The messages are encoded by
+ * {@link TaskWrite} threads and the kernel messages are handled by the workers of a {@link
+ * RouteDispatcher}, so that only the network bytes are handled on the selector threads.
+ *
+ * <p>The handshake, active node exchange, UPnP mapping, route rate limits and send queues behave
+ * the same as in {@link org.aion.p2p.impl1.P2pMgr}.
+ */
+public final class P2pMgr implements IP2pMgr {
+    private static final int PERIOD_REQUEST_ACTIVE_NODES = 1000;
+    private static final int PERIOD_UPNP_PORT_MAPPING = 3600000;
+    private static final int TIMEOUT_MSG_READ = 10000;
+
+    public final Logger p2pLOG, surveyLog;
+
+    private static final int SEND_WORKER = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    private static final int SEND_QUEUE_PER_PEER = 1_000;
+    private final int SOCKET_RECV_BUFFER = 1024 * 128;
+    private final int SOCKET_BACKLOG = 1024;
+
+    private final int maxTempNodes, maxActiveNodes, selfNodeIdHash, selfPort;
+    private final int selfChainId;
+    private final int selectorThreads;
+    // optional features offered to peers during the handshake
+    private final byte selfCapabilities;
+    private final boolean syncSeedsOnly, upnpEnable;
+    private final String selfRevision, selfShortId;
+    private final byte[] selfNodeId, selfIp;
+    private final INodeMgr nodeMgr;
+    private final Map<Integer, List<Handler>> handlers = new ConcurrentHashMap<>();
+    // the inbound rate limit of each route declared by its handlers
+    private final Map<Integer, Integer> routeRates = new ConcurrentHashMap<>();
+    private final Set<Short> versions = new HashSet<>();
+    private final Map<Integer, Integer> errCnt = Collections.synchronizedMap(new LRUMap<>(128));
+    private final AtomicBoolean start = new AtomicBoolean(true);
+    private final int errTolerance;
+
+    private final Map<SelectableChannel, Connection> connections = new ConcurrentHashMap<>();
+    // a message sent to many peers is encoded once and shared by all the writers
+    private final EncodedMsgCache encodedMsgs = new EncodedMsgCache();
+    private final SendQueues sendMsgQue = new SendQueues(SEND_QUEUE_PER_PEER, encodedMsgs);
+    private final RouteDispatcher receiveMsgQue;
+
+    private SelectorPool selectors;
+    private ServerSocketChannel tcpServer;
+    private ScheduledExecutorService scheduledWorkers;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private ReqHandshake1 cachedReqHandshake1;
+    private final ResHandshake1 cachedResHandshake1;
+
+    /**
+     * @param chainId identifier assigned to the current chain read from the blockchain
+     *     configuration. Peer connections are allowed only for equal network identifiers.
+     * @param _nodeId byte[36]
+     * @param _ip String
+     * @param _port int
+     * @param _bootNodes String[]
+     * @param _upnpEnable boolean
+     * @param _maxTempNodes int
+     * @param _maxActiveNodes int
+     * @param _compression boolean whether to offer message compression to peers during the
+     *     handshake. Compression is used only with peers that offer it as well.
+     * @param _selectorThreads int the number of threads doing the network I/O
+     */
+    public P2pMgr(
+            final Logger _p2pLog,
+            final Logger surveyLog,
+            final int chainId,
+            final String _revision,
+            final String _nodeId,
+            final String _ip,
+            final int _port,
+            final String[] _bootNodes,
+            final boolean _upnpEnable,
+            final int _maxTempNodes,
+            final int _maxActiveNodes,
+            final boolean _bootlistSyncOnly,
+            final int _errorTolerance,
+            final boolean _compression,
+            final int _selectorThreads) {
+
+        if (_p2pLog == null) {
+            throw new NullPointerException("A non-null logger must be provided in the constructor.");
+        }
+        if (_selectorThreads < 1) {
+            throw new IllegalArgumentException("The number of selector threads must be positive.");
+        }
+        this.p2pLOG = _p2pLog;
+        this.surveyLog = surveyLog;
+        this.receiveMsgQue = new RouteDispatcher(_p2pLog, surveyLog, start, handlers);
+        this.selfChainId = chainId;
+        this.selfRevision = _revision;
+        this.selfNodeId = _nodeId.getBytes();
+        this.selfNodeIdHash = Arrays.hashCode(selfNodeId);
+        this.selfShortId = new String(Arrays.copyOfRange(_nodeId.getBytes(), 0, 6));
+        this.selfIp = Node.ipStrToBytes(_ip);
+        this.selfPort = _port;
+        this.upnpEnable = _upnpEnable;
+        this.maxTempNodes = _maxTempNodes;
+        this.maxActiveNodes = _maxActiveNodes;
+        this.syncSeedsOnly = _bootlistSyncOnly;
+        this.errTolerance = _errorTolerance;
+        this.selectorThreads = _selectorThreads;
+        this.selfCapabilities = _compression ? Capability.COMPRESSION : Capability.NONE;
+
+        INode myNode = new Node(false, selfNodeId, selfIp, selfPort);
+        myNode.setBinaryVersion(selfRevision);
+        myNode.setConnection("self");
+
+        nodeMgr = new NodeMgr(this, _maxActiveNodes, _maxTempNodes, p2pLOG, myNode);
+
+        for (String _bootNode : _bootNodes) {
+            Node node = Node.parseP2p(_bootNode);
+            if (validateNode(node)) {
+                nodeMgr.addTempNode(node);
+                nodeMgr.seedIpAdd(node.getIpStr());
+            }
+        }
+
+        cachedResHandshake1 =
+                new ResHandshake1(p2pLOG, true, this.selfRevision, this.selfCapabilities);
+    }
+
+    @Override
+    public void run() {
+        try {
+            selectors = new SelectorPool(selectorThreads, p2pLOG, surveyLog);
+            selectors.start();
+
+            scheduledWorkers = new ScheduledThreadPoolExecutor(2);
+
+            tcpServer = ServerSocketChannel.open();
+            tcpServer.configureBlocking(false);
+            tcpServer.socket().setReuseAddress(true);
+            tcpServer.socket().setReceiveBufferSize(SOCKET_RECV_BUFFER);
+
+            try {
+                tcpServer
+                        .socket()
+                        .bind(
+                                new InetSocketAddress(Node.ipBytesToStr(selfIp), selfPort),
+                                SOCKET_BACKLOG);
+            } catch (IOException e) {
+                p2pLOG.error(
+                        "Failed to connect to Socket Address: "
+                                + Node.ipBytesToStr(selfIp)
+                                + ":"
+                                + selfPort
+                                + ", please check your ip and port configration!",
+                        e);
+            }
+
+            // accepting is cheap, so the first loop handles it along with its connections
+            selectors.get(0).attachChannel(tcpServer, SelectionKey.OP_ACCEPT, new Acceptor());
+
+            for (int i = 0; i < SEND_WORKER; i++) {
+                startThread(
+                        new TaskWrite(p2pLOG, this, sendMsgQue, start, nodeMgr, encodedMsgs),
+                        "p2p-out-" + i,
+                        Thread.MAX_PRIORITY);
+            }
+
+            receiveMsgQue.start();
+
+            if (upnpEnable) {
+                scheduledWorkers.scheduleWithFixedDelay(
+                        new TaskUPnPManager(p2pLOG, selfPort),
+                        1,
+                        PERIOD_UPNP_PORT_MAPPING,
+                        TimeUnit.MILLISECONDS);
+            }
+
+            if (p2pLOG.isInfoEnabled()) {
+                startThread(
+                        new TaskStatus(
+                                p2pLOG,
+                                surveyLog,
+                                start,
+                                nodeMgr,
+                                selfShortId,
+                                sendMsgQue,
+                                receiveMsgQue),
+                        "p2p-ts",
+                        Thread.NORM_PRIORITY);
+            }
+
+            if (!syncSeedsOnly) {
+                scheduledWorkers.scheduleWithFixedDelay(
+                        new TaskRequestActiveNodes(this, p2pLOG),
+                        5000,
+                        PERIOD_REQUEST_ACTIVE_NODES,
+                        TimeUnit.MILLISECONDS);
+            }
+
+            startThread(new TaskClear(p2pLOG, nodeMgr, start), "p2p-clear", Thread.NORM_PRIORITY);
+            startThread(
+                    new TaskConnectPeers(p2pLOG, this, start, nodeMgr, maxActiveNodes),
+                    "p2p-tcp",
+                    Thread.NORM_PRIORITY);
+        } catch (IOException e) {
+            p2pLOG.error("tcp-server-io-exception.", e);
+        }
+    }
+
+    private void startThread(Runnable task, String name, int priority) {
+        Thread t = new Thread(task, name);
+        t.setPriority(priority);
+        t.start();
+        threads.add(t);
+    }
+
+    @Override
+    public void register(final List<Handler> _cbs) {
+        Set<Integer> routes = new HashSet<>();
+        for (Handler _cb : _cbs) {
+            Header h = _cb.getHeader();
+            short ver = h.getVer();
+            byte ctrl = h.getCtrl();
+            if (Ver.filter(ver) != Ver.UNKNOWN && Ctrl.filter(ctrl) != Ctrl.UNKNOWN) {
+                versions.add(ver);
+
+                int route = h.getRoute();
+                handlers.computeIfAbsent(route, r -> new ArrayList<>()).add(_cb);
+                routeRates.merge(route, _cb.getMaxRequestsPerSecond(), Math::max);
+                routes.add(route);
+            }
+        }
+        routes.forEach(receiveMsgQue::register);
+
+        cachedReqHandshake1 =
+                new ReqHandshake1(
+                        selfNodeId,
+                        selfChainId,
+                        this.selfIp,
+                        this.selfPort,
+                        this.selfRevision.getBytes(),
+                        new ArrayList<>(versions),
+                        this.selfCapabilities);
+    }
+
+    @Override
+    public void send(int _nodeIdHash, String _nodeIdShort, final Msg _msg) {
+        send(_nodeIdHash, _nodeIdShort, _msg, Dest.ACTIVE);
+    }
+
+    private void send(int _nodeIdHash, String _nodeIdShort, final Msg _msg, Dest _dest) {
+        boolean added = sendMsgQue.offer(new MsgOut(_nodeIdHash, _nodeIdShort, _msg, _dest));
+        if (!added) {
+            p2pLOG.debug(
+                    "Message not added to the send queue due to exceeded capacity: msg={} for node={}",
+                    _msg,
+                    _nodeIdShort);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        start.set(false);
+
+        if (scheduledWorkers != null) {
+            scheduledWorkers.shutdownNow();
+        }
+
+        // wake up the threads blocked on the queues or sleeping between runs
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        receiveMsgQue.shutdown();
+
+        for (List<Handler> hdrs : handlers.values()) {
+            hdrs.forEach(Handler::shutDown);
+        }
+        nodeMgr.shutdown();
+
+        if (selectors != null) {
+            // unregisters the server socket and all remaining connections
+            selectors.shutdown();
+        }
+    }
+
+    @Override
+    public List<Short> versions() {
+        return new ArrayList<>(versions);
+    }
+
+    @Override
+    public void errCheck(int _nodeIdHash, String _displayId) {
+        int cnt = (errCnt.get(_nodeIdHash) == null ? 1 : (errCnt.get(_nodeIdHash) + 1));
+        if (cnt > this.errTolerance) {
+            ban(_nodeIdHash);
+            errCnt.put(_nodeIdHash, 0);
+
+            if (p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "ban node={} err-count={}",
+                        (_displayId == null ? _nodeIdHash : _displayId),
+                        cnt);
+            }
+        } else {
+            errCnt.put(_nodeIdHash, cnt);
+        }
+    }
+
+    @Override
+    public void closeSocket(final SocketChannel _sc, String _reason) {
+        closeSocket(_sc, _reason, null);
+    }
+
+    @Override
+    public void closeSocket(SocketChannel _sc, String _reason, Exception e) {
+        if (p2pLOG.isDebugEnabled()) {
+            if (e != null) {
+                p2pLOG.debug("close-socket reason=" + _reason, e);
+            } else {
+                p2pLOG.debug("close-socket reason={}", _reason);
+            }
+        }
+
+        if (_sc == null) {
+            return;
+        }
+
+        Connection connection = connections.get(_sc);
+        if (connection != null) {
+            // the channel is closed by its loop to avoid racing with its reads and writes
+            connection.close();
+        } else {
+            try {
+                _sc.close();
+            } catch (IOException ex) {
+                p2pLOG.info("close-socket-io-exception.", ex);
+            }
+        }
+    }
+
+    /** Called by the loop of a connection once its channel is closed. */
+    void connectionClosed(Connection connection, Throwable cause) {
+        connections.remove(connection.getChannel());
+        if (cause != null && p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug("connection-closed node=" + connection.getDisplayId(), cause);
+        }
+    }
+
+    /** Returns the open connection of the given channel or {@code null} if there is none. */
+    Connection getConnection(SocketChannel channel) {
+        return channel == null ? null : connections.get(channel);
+    }
+
+    /**
+     * Remove an active node if exists.
+     *
+     * @param _nodeIdHash int
+     * @param _reason String
+     */
+    @Override
+    public void dropActive(int _nodeIdHash, String _reason) {
+        nodeMgr.dropActive(_nodeIdHash, _reason);
+    }
+
+    @Override
+    public boolean validateNode(final INode _node) {
+        if (_node != null) {
+            boolean notSelfId = !Arrays.equals(_node.getId(), this.selfNodeId);
+            boolean notSameIpOrPort =
+                    !(Arrays.equals(selfIp, _node.getIp()) && selfPort == _node.getPort());
+            boolean notActive = nodeMgr.notActiveNode(_node.getPeerId());
+            boolean notOutbound = nodeMgr.notAtOutboundList(_node.getPeerId());
+            return notSelfId && notSameIpOrPort && notActive && notOutbound;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void configChannel(final SocketChannel _channel) throws IOException {
+        _channel.configureBlocking(false);
+        _channel.socket().setSoTimeout(TIMEOUT_MSG_READ);
+        _channel.socket().setReceiveBufferSize(P2pConstant.RECV_BUFFER_SIZE);
+        _channel.socket().setSendBufferSize(P2pConstant.SEND_BUFFER_SIZE);
+    }
+
+    private void ban(int nodeIdHashcode) {
+        nodeMgr.ban(nodeIdHashcode);
+        nodeMgr.dropActive(nodeIdHashcode, "ban");
+    }
+
+    // <------------------------ connection handling below ------------------------->
+
+    /** Accepts the inbound connections on the loop the server socket is registered with. */
+    private final class Acceptor implements Task {
+        @Override
+        public void channelReady(SelectableChannel channel, SelectionKey key) throws Exception {
+            if (key.isAcceptable()) {
+                accept((ServerSocketChannel) channel);
+            }
+        }
+
+        @Override
+        public void channelUnregistered(SelectableChannel channel, Throwable cause) {
+            if (cause != null && start.get()) {
+                p2pLOG.error("tcp-server-unregistered.", cause);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                p2pLOG.debug("tcp-server-close-exception.", e);
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel _channel) throws IOException {
+        if (this.nodeMgr.activeNodesSize() >= this.maxActiveNodes) {
+            return;
+        }
+        SocketChannel channel = _channel.accept();
+        if (channel == null) {
+            return;
+        }
+        configChannel(channel);
+
+        String ip = channel.socket().getInetAddress().getHostAddress();
+
+        if (this.syncSeedsOnly && this.nodeMgr.isSeedIp(ip)) {
+            channel.close();
+            return;
+        }
+
+        int port = channel.socket().getPort();
+        INode node;
+        try {
+            node = this.nodeMgr.allocNode(ip, port);
+        } catch (IllegalArgumentException e) {
+            p2pLOG.error("illegal ip / port : {} {}", ip, port);
+            channel.close();
+            return;
+        }
+
+        if (p2pLOG.isTraceEnabled()) {
+            p2pLOG.trace("new-node : {}", node.toString());
+        }
+
+        node.setChannel(channel);
+        newConnection(channel).register();
+        this.nodeMgr.addInboundNode(node);
+
+        if (p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug("new-connection {}:{}", ip, port);
+        }
+    }
+
+    /** Registers an outbound connection and starts the handshake. */
+    void addOutbound(SocketChannel channel, INode node) {
+        Connection connection = newConnection(channel);
+        connection.setDisplayId(node.getIdShort());
+        connection.setNodeIdHash(node.getIdHash());
+        connection.register();
+
+        node.refreshTimestamp();
+        node.setChannel(channel);
+        this.nodeMgr.addOutboundNode(node);
+
+        if (p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug(
+                    "prepare-request-handshake -> id={} ip={}", node.getIdShort(), node.getIpStr());
+        }
+
+        send(node.getIdHash(), node.getIdShort(), cachedReqHandshake1, Dest.OUTBOUND);
+    }
+
+    private Connection newConnection(SocketChannel channel) {
+        MainIOLoop loop = selectors.loopFor(channel);
+        Connection connection = new Connection(this, loop, channel, p2pLOG);
+        connections.put(channel, connection);
+        return connection;
+    }
+
+    // <------------------------ message handling below ------------------------->
+
+    /**
+     * Handles a message received on the connection.
+     *
+     * @implNote Called by the loop thread of the connection. Kernel messages are dispatched to the
+     *     route workers and only the p2p control messages are handled on the loop thread.
+     */
+    void handleMsg(Connection _conn, Header h, byte[] bodyBytes) {
+        int maxRequestsPerSecond =
+                routeRates.getOrDefault(h.getRoute(), P2pConstant.READ_MAX_RATE_TXBC);
+
+        if (!_conn.shouldRoute(h.getRoute(), maxRequestsPerSecond)) {
+            if (p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "over-called-route={}-{}-{} node={}",
+                        h.getVer(),
+                        h.getCtrl(),
+                        h.getAction(),
+                        _conn.getDisplayId());
+            }
+            return;
+        }
+
+        if (h.getVer() == Ver.V1 && h.getCtrl() == Ctrl.SYNC) {
+            // the fast sync messages are only exchanged between kernels
+            handleSyncMsg(_conn, h, bodyBytes);
+            return;
+        } else if (h.getVer() != Ver.V0) {
+            if (p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "unhandled-ver={} ctrl={} node={}",
+                        h.getVer(),
+                        h.getCtrl(),
+                        _conn.getDisplayId());
+            }
+            return;
+        }
+
+        switch (h.getCtrl()) {
+            case Ctrl.NET:
+                try {
+                    if (h.isCompressed()) {
+                        bodyBytes = MsgCompression.decompress(bodyBytes);
+                    }
+                    handleP2pMsg(_conn, h.getAction(), bodyBytes);
+                } catch (Exception ex) {
+                    if (p2pLOG.isDebugEnabled()) {
+                        p2pLOG.debug("handle-p2p-msg error.", ex);
+                    }
+                }
+                break;
+            case Ctrl.SYNC:
+                handleSyncMsg(_conn, h, bodyBytes);
+                break;
+            default:
+                if (p2pLOG.isDebugEnabled()) {
+                    p2pLOG.debug(
+                            "invalid-route={}-{}-{} node={}",
+                            h.getVer(),
+                            h.getCtrl(),
+                            h.getAction(),
+                            _conn.getDisplayId());
+                }
+                break;
+        }
+    }
+
+    private void handleSyncMsg(Connection _conn, Header h, byte[] bodyBytes) {
+        if (!handlers.containsKey(h.getRoute())) {
+            if (p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "unregistered-route={}-{}-{} node={}",
+                        h.getVer(),
+                        h.getCtrl(),
+                        h.getAction(),
+                        _conn.getDisplayId());
+            }
+            return;
+        }
+        handleKernelMsg(_conn.getNodeIdHash(), h.getRoute(), bodyBytes, h.isCompressed());
+    }
+
+    private void handleP2pMsg(final Connection _conn, byte _act, final byte[] _msgBytes) {
+        switch (_act) {
+            case Act.REQ_HANDSHAKE:
+                if (_msgBytes.length > ReqHandshake.LEN) {
+                    ReqHandshake1 reqHandshake1 = ReqHandshake1.decode(_msgBytes, p2pLOG);
+                    if (reqHandshake1 != null) {
+                        handleReqHandshake(
+                                _conn,
+                                reqHandshake1.getNodeId(),
+                                reqHandshake1.getNetId(),
+                                reqHandshake1.getPort(),
+                                reqHandshake1.getRevision(),
+                                reqHandshake1.getCapabilities());
+                    }
+                }
+                break;
+
+            case Act.RES_HANDSHAKE:
+                if (_conn.getNodeIdHash() != 0 && _msgBytes.length > ResHandshake.LEN) {
+                    ResHandshake1 resHandshake1 = ResHandshake1.decode(_msgBytes, p2pLOG);
+                    if (resHandshake1 != null && resHandshake1.getSuccess()) {
+                        handleResHandshake(
+                                _conn,
+                                resHandshake1.getBinaryVersion(),
+                                resHandshake1.getCapabilities());
+                    }
+                }
+                break;
+
+            case Act.REQ_ACTIVE_NODES:
+                if (_conn.getNodeIdHash() != 0) {
+                    INode node = nodeMgr.getActiveNode(_conn.getNodeIdHash());
+                    if (node != null) {
+                        send(
+                                node.getIdHash(),
+                                node.getIdShort(),
+                                new ResActiveNodes(p2pLOG, nodeMgr.getActiveNodesList()));
+                    }
+                }
+                break;
+
+            case Act.RES_ACTIVE_NODES:
+                if (this.syncSeedsOnly || _conn.getNodeIdHash() == 0) {
+                    break;
+                }
+
+                INode node = nodeMgr.getActiveNode(_conn.getNodeIdHash());
+                if (node != null) {
+                    node.refreshTimestamp();
+                    ResActiveNodes resActiveNodes = ResActiveNodes.decode(_msgBytes, p2pLOG);
+                    if (resActiveNodes != null) {
+                        for (INode incomingNode : resActiveNodes.getNodes()) {
+                            if (nodeMgr.tempNodesSize() >= this.maxTempNodes) {
+                                return;
+                            }
+                            if (validateNode(incomingNode)) {
+                                nodeMgr.addTempNode(incomingNode);
+                            }
+                        }
+                    }
+                }
+                break;
+            default:
+                if (p2pLOG.isDebugEnabled()) {
+                    p2pLOG.debug("unknown-route act={}", _act);
+                }
+                break;
+        }
+    }
+
+    /** Construct node info after handshake request success. */
+    private void handleReqHandshake(
+            final Connection _conn,
+            final byte[] _nodeId,
+            int _netId,
+            int _port,
+            final byte[] _revision,
+            byte _capabilities) {
+        int channelHash = _conn.getChannel().hashCode();
+        INode node = nodeMgr.getInboundNode(channelHash);
+        if (node == null || !node.getPeerMetric().notBan()) {
+            return;
+        }
+        if (p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug(
+                    "netId={}, nodeId={} port={} rev={}",
+                    _netId,
+                    new String(_nodeId),
+                    _port,
+                    _revision);
+        }
+
+        if (isCorrectNetwork(_netId)) {
+            _conn.setNodeIdHash(Arrays.hashCode(_nodeId));
+            _conn.setDisplayId(new String(Arrays.copyOfRange(_nodeId, 0, 6)));
+            node.setId(_nodeId);
+            node.setPort(_port);
+
+            if (_revision != null) {
+                node.setBinaryVersion(new String(_revision, StandardCharsets.UTF_8));
+                _conn.setCompressionEnabled(supportsCompression(_capabilities));
+                nodeMgr.movePeerToActive(channelHash, "inbound");
+                send(node.getIdHash(), node.getIdShort(), cachedResHandshake1);
+            }
+        } else if (p2pLOG.isDebugEnabled()) {
+            p2pLOG.debug("handshake-rule-fail");
+        }
+    }
+
+    private void handleResHandshake(
+            final Connection _conn, String _binaryVersion, byte _capabilities) {
+        INode node = nodeMgr.getOutboundNode(_conn.getNodeIdHash());
+        if (node != null && node.getPeerMetric().notBan()) {
+            node.refreshTimestamp();
+            node.setBinaryVersion(_binaryVersion);
+            _conn.setCompressionEnabled(supportsCompression(_capabilities));
+            nodeMgr.movePeerToActive(node.getIdHash(), "outbound");
+        }
+    }
+
+    /**
+     * Compression is used when both sides advertise it. The capabilities of this node are the ones
+     * sent in its handshake messages.
+     */
+    private boolean supportsCompression(byte _peerCapabilities) {
+        return Capability.supports(selfCapabilities, Capability.COMPRESSION)
+                && Capability.supports(_peerCapabilities, Capability.COMPRESSION);
+    }
+
+    private void handleKernelMsg(
+            int _nodeIdHash, int _route, final byte[] _msgBytes, boolean _compressed) {
+        INode node = nodeMgr.getActiveNode(_nodeIdHash);
+        if (node != null) {
+            node.refreshTimestamp();
+            // never block the selector thread; a saturated route only affects its own messages
+            boolean added =
+                    receiveMsgQue.dispatch(
+                            new MsgIn(
+                                    node.getIdHash(),
+                                    node.getIdShort(),
+                                    _route,
+                                    _msgBytes,
+                                    _compressed));
+            if (!added && p2pLOG.isDebugEnabled()) {
+                p2pLOG.debug(
+                        "Message dropped due to saturated route: route={} from node={}",
+                        _route,
+                        node.getIdShort());
+            }
+        } else {
+            p2pLOG.debug("handleKernelMsg can't find hash{}", _nodeIdHash);
+        }
+    }
+
+    // <------------------------ getter methods below --------------------------->
+
+    @Override
+    public INode getRandom() {
+        return this.nodeMgr.getRandom();
+    }
+
+    @Override
+    public Map<Integer, INode> getActiveNodes() {
+        return this.nodeMgr.getActiveNodesMap();
+    }
+
+    public int getTempNodesCount() {
+        return this.nodeMgr.tempNodesSize();
+    }
+
+    @Override
+    public int getMaxActiveNodes() {
+        return this.maxActiveNodes;
+    }
+
+    @Override
+    public int getMaxTempNodes() {
+        return this.maxTempNodes;
+    }
+
+    @Override
+    public boolean isSyncSeedsOnly() {
+        return this.syncSeedsOnly;
+    }
+
+    @Override
+    public int getAvgLatency() {
+        return this.nodeMgr.getAvgLatency();
+    }
+
+    /** Returns the number of messages waiting to be sent to each peer that has pending messages. */
+    public Map<Integer, Integer> getSendQueueDepths() {
+        return this.sendMsgQue.depths();
+    }
+
+    /** Returns the current load of the receive queue of each registered route. */
+    public Map<Integer, RouteDispatcher.RouteStatus> getReceiveRouteStatus() {
+        return this.receiveMsgQue.status();
+    }
+
+    @Override
+    public boolean isCorrectNetwork(int netId) {
+        return netId == selfChainId;
+    }
+
+    /**
+     * @implNote Compares the port and id to the given node to allow connections to the same id and
+     *     different port. Does not compare IP values since the self IP is often recorded as 0.0.0.0
+     *     in the configuration file and cannot be inferred reliably by the node itself.
+     */
+    @Override
+    public boolean isSelf(INode node) {
+        return selfNodeIdHash == node.getIdHash()
+                && selfPort == node.getPort()
+                && Arrays.equals(selfNodeId, node.getId());
+    }
+
+    @Override
+    public void updateChainInfo(long blockNumber, byte[] blockHash, BigInteger blockTD) {
+        nodeMgr.updateChainInfo(blockNumber, blockHash, blockTD);
+    }
+}
@@ -0,0 +1,116 @@
+package org.aion.p2p.impl2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.INode;
+import org.aion.p2p.INodeMgr;
+import org.slf4j.Logger;
+
+/** Opens the outbound connections to the known temporary nodes while there is room for peers. */
+public class TaskConnectPeers implements Runnable {
+
+    private static final int PERIOD_CONNECT_OUTBOUND = 1000;
+    private static final int TIMEOUT_OUTBOUND_CONNECT = 10000;
+
+    private final Logger p2pLOG;
+    private final INodeMgr nodeMgr;
+    private final int maxActiveNodes;
+    private final P2pMgr mgr;
+    private final AtomicBoolean start;
+
+    TaskConnectPeers(
+            final Logger p2pLOG,
+            final P2pMgr _mgr,
+            final AtomicBoolean _start,
+            final INodeMgr _nodeMgr,
+            final int _maxActiveNodes) {
+        this.p2pLOG = p2pLOG;
+        this.mgr = _mgr;
+        this.start = _start;
+        this.nodeMgr = _nodeMgr;
+        this.maxActiveNodes = _maxActiveNodes;
+    }
+
+    @Override
+    public void run() {
+        while (this.start.get()) {
+            INode node;
+            try {
+                Thread.sleep(PERIOD_CONNECT_OUTBOUND);
+                if (this.nodeMgr.activeNodesSize() >= this.maxActiveNodes) {
+                    p2pLOG.warn("tcp-connect-peer pass max-active-nodes.");
+                    continue;
+                }
+
+                node = this.nodeMgr.tempNodesTake();
+                if (node == null) {
+                    p2pLOG.debug("no temp node can take.");
+                    continue;
+                }
+
+                if (node.getIfFromBootList()) {
+                    this.nodeMgr.addTempNode(node);
+                }
+            } catch (InterruptedException e) {
+                if (start.get()) {
+                    p2pLOG.error("task-connect-peers-interrupted", e);
+                }
+                break;
+            } catch (Exception e) {
+                p2pLOG.debug("tcp-Exception.", e);
+                continue;
+            }
+
+            int nodeIdHash = node.getIdHash();
+            if (this.nodeMgr.notAtOutboundList(nodeIdHash)
+                    && this.nodeMgr.notActiveNode(nodeIdHash)) {
+                SocketChannel channel = null;
+                try {
+                    channel = SocketChannel.open();
+                    channel.socket()
+                            .connect(
+                                    new InetSocketAddress(node.getIpStr(), node.getPort()),
+                                    TIMEOUT_OUTBOUND_CONNECT);
+                    this.mgr.configChannel(channel);
+
+                    if (channel.isConnected()) {
+                        if (p2pLOG.isDebugEnabled()) {
+                            p2pLOG.debug(
+                                    "success-connect node-id={} ip={}",
+                                    node.getIdShort(),
+                                    node.getIpStr());
+                        }
+                        this.mgr.addOutbound(channel, node);
+                    } else {
+                        if (p2pLOG.isDebugEnabled()) {
+                            p2pLOG.debug(
+                                    "fail-connect node-id -> id={} ip={}",
+                                    node.getIdShort(),
+                                    node.getIpStr());
+                        }
+                        channel.close();
+                    }
+                } catch (Exception e) {
+                    if (p2pLOG.isDebugEnabled()) {
+                        p2pLOG.debug(
+                                "connect-outbound exception -> id="
+                                        + node.getIdShort()
+                                        + " ip="
+                                        + node.getIpStr(),
+                                e);
+                    }
+
+                    if (channel != null) {
+                        try {
+                            channel.close();
+                        } catch (IOException e1) {
+                            p2pLOG.debug("TaskConnectPeers close exception.", e1);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,59 +1,108 @@
 package org.aion.p2p.impl2;
 
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
-import java.util.concurrent.ExecutorService;
-import org.aion.p2p.Header;
-import org.aion.p2p.Msg;
-import org.aion.p2p.impl2.selector.MainIOLoop;
-
-/** @author chris */
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.INode;
+import org.aion.p2p.INodeMgr;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.impl1.tasks.EncodedMsg;
+import org.aion.p2p.impl1.tasks.EncodedMsgCache;
+import org.aion.p2p.impl1.tasks.MsgOut;
+import org.aion.p2p.impl1.tasks.SendQueues;
+import org.slf4j.Logger;
+
+/**
+ * Takes the messages from the {@link SendQueues}, encodes them and hands them over to the selector
+ * loop of their destination, so that the encoding and compression work stays off the I/O threads.
+ *
+ * @author chris
+ */
 public class TaskWrite implements Runnable {
 
-    private MainIOLoop ioLoop;
-    private boolean showLog;
-    private String nodeShortId;
-    private SocketChannel sc;
-    private Msg msg;
+    private final Logger p2pLOG;
+    private final P2pMgr mgr;
+    private final AtomicBoolean start;
+    private final SendQueues sendMsgQue;
+    private final INodeMgr nodeMgr;
+
+    // messages are encoded into pooled direct buffers shared by all their destinations
+    private final EncodedMsgCache encodedMsgs;
 
     TaskWrite(
-            final MainIOLoop ioLoop,
-            final ExecutorService worker,
-            boolean _showLog,
-            String _nodeShortId,
-            final SocketChannel _sc,
-            final Msg _msg) {
-        this.ioLoop = ioLoop;
-        this.showLog = _showLog;
-        this.nodeShortId = _nodeShortId;
-        this.sc = _sc;
-        this.msg = _msg;
+            final Logger p2pLOG,
+            final P2pMgr _mgr,
+            final SendQueues _sendMsgQue,
+            final AtomicBoolean _start,
+            final INodeMgr _nodeMgr,
+            final EncodedMsgCache _encodedMsgs) {
+        this.p2pLOG = p2pLOG;
+        this.mgr = _mgr;
+        this.sendMsgQue = _sendMsgQue;
+        this.start = _start;
+        this.nodeMgr = _nodeMgr;
+        this.encodedMsgs = _encodedMsgs;
     }
 
     @Override
     public void run() {
-        /*
-         * @warning header set len (body len) before header encode
-         */
+        while (start.get()) {
+            try {
+                MsgOut mo = sendMsgQue.take();
+                try {
+                    process(mo);
+                } finally {
+                    sendMsgQue.done(mo);
+                }
+            } catch (InterruptedException e) {
+                if (start.get()) {
+                    p2pLOG.error("task-write-interrupted", e);
+                }
+                break;
+            } catch (Exception e) {
+                p2pLOG.debug("TaskWrite exception.", e);
+            }
+        }
+    }
+
+    private void process(MsgOut mo) {
+        // if timeout , throw away this msg.
+        long now = System.currentTimeMillis();
+        if (now - mo.getTimestamp() > P2pConstant.WRITE_MSG_TIMEOUT) {
+            p2pLOG.debug("timeout-msg to-node={} timestamp={}", mo.getDisplayId(), now);
+            return;
+        }
+
+        INode node = null;
+        switch (mo.getDest()) {
+            case ACTIVE:
+                node = nodeMgr.getActiveNode(mo.getNodeId());
+                break;
+            case INBOUND:
+                node = nodeMgr.getInboundNode(mo.getNodeId());
+                break;
+            case OUTBOUND:
+                node = nodeMgr.getOutboundNode(mo.getNodeId());
+                break;
+        }
+
+        if (node == null) {
+            p2pLOG.debug("msg-{} ->{} node-not-exist", mo.getDest().name(), mo.getDisplayId());
+            return;
+        }
+
+        Connection connection = mgr.getConnection(node.getChannel());
+        if (connection == null || connection.isClosed()) {
+            // clear messages if the channel is closed
+            mgr.dropActive(node.getIdHash(), "close-already");
+            return;
+        }
+
+        EncodedMsg encoded;
         try {
-            byte[] bodyBytes = msg.encode();
-            int bodyLen = bodyBytes == null ? 0 : bodyBytes.length;
-            Header h = msg.getHeader();
-            h.setLen(bodyLen);
-            byte[] headerBytes = h.encode();
-
-            // print route
-            // System.out.println("write " + h.getVer() + "-" + h.getCtrl() + "-" +
-            // h.getAction());
-            ByteBuffer buf = ByteBuffer.allocate(headerBytes.length + bodyLen);
-            buf.put(headerBytes);
-            if (bodyBytes != null) buf.put(bodyBytes);
-            buf.flip();
-
-            // send outbound event to ioLoop for I/O
-            this.ioLoop.write(buf, this.sc);
+            encoded = encodedMsgs.acquire(mo.getMsg(), connection.isCompressionEnabled());
         } catch (Exception e) {
-            System.out.println("<p2p-taskWrite-throw>" + e.toString());
+            p2pLOG.error("TaskWrite encode exception.", e);
+            return;
         }
+        connection.write(encoded);
     }
 }
@@ -1,17 +1,19 @@
 package org.aion.p2p.impl2.selector;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/** Tasks submitted to a {@link MainIOLoop} by other threads, run in submission order. */
 public class IOEventBus {
-    private Queue<Runnable> queue;
+    private final Queue<Runnable> queue;
 
-    private static final int MAX_PENDING_TASKS = 16;
+    // bounds the time spent on tasks before the channels are checked again
+    private static final int MAX_PENDING_TASKS = 256;
 
     public IOEventBus() {
-        this.queue = new LinkedBlockingQueue<>();
+        this.queue = new ConcurrentLinkedQueue<>();
     }
 
     public void addEvent(Runnable run) {
@@ -19,11 +21,10 @@ public class IOEventBus {
     }
 
     public List<Runnable> retrieveAllEvents() {
-        List<Runnable> taskList = new LinkedList<>();
-        int i = 0;
-        while (!this.queue.isEmpty() && i < MAX_PENDING_TASKS) {
-            taskList.add(this.queue.poll());
-            i++;
+        List<Runnable> taskList = new ArrayList<>();
+        Runnable task;
+        while (taskList.size() < MAX_PENDING_TASKS && (task = this.queue.poll()) != null) {
+            taskList.add(task);
         }
         return taskList;
     }
@@ -1,322 +1,220 @@
 package org.aion.p2p.impl2.selector;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
-import org.aion.p2p.impl.comm.ChannelBuffer;
-
+import org.slf4j.Logger;
+
+/**
+ * A selector and the thread that services it. Channels are registered with a {@link Task} that is
+ * notified when they are ready, and other threads interact with the channels only by submitting
+ * tasks through {@link #execute(Runnable)}, so the channels and their tasks are used by a single
+ * thread.
+ */
 public class MainIOLoop implements Runnable {
 
-    private Selector currSelector;
+    private static final long SELECT_TIMEOUT_MS = 100;
 
-    private final SelectorProvider selectorProvider;
+    // used when survey logging
+    private static final long MIN_DURATION = 60_000_000_000L; // 60 seconds
+    private long processTime = 0;
 
-    private volatile boolean isRunning = false;
+    private final Logger p2pLOG, surveyLog;
 
-    private volatile Thread eventLoopThread;
+    private final Selector currSelector;
+
+    private final SelectorProvider selectorProvider;
 
     private final IOEventBus eventBus = new IOEventBus();
 
     private final AtomicBoolean wakenUp = new AtomicBoolean();
 
-    private long timeoutMillis = 5000L; // 1s
+    private volatile boolean isRunning = true;
 
-    private volatile boolean needsToSelectAgain = false;
-
-    // private static final Logger log = LoggerFactory.getLogger("NET");
-
-    // event-bus related
+    private volatile Thread eventLoopThread;
 
-    public MainIOLoop(SelectorProvider selectorProvider) {
+    public MainIOLoop(SelectorProvider selectorProvider, Logger p2pLOG, Logger surveyLog)
+            throws IOException {
         this.selectorProvider = selectorProvider;
-
-        try {
-            this.currSelector = selectorProvider.openSelector();
-        } catch (IOException e) {
-            // failed to create a selector, try again before loop
-        }
+        this.p2pLOG = p2pLOG;
+        this.surveyLog = surveyLog;
+        this.currSelector = selectorProvider.openSelector();
     }
 
-    // implements the bare minimum required to achieve a stable
-    // NIO loop
     @Override
     public void run() {
-        registerEventLoopThread(Thread.currentThread());
-        this.isRunning = true;
-        try {
-            this.currSelector = selectorProvider.openSelector();
-        } catch (IOException e) {
-            // failed to create selector
-            return;
-        }
-
-        try {
-            while (!Thread.currentThread().isInterrupted()) {
-                select(this.wakenUp.getAndSet(false));
-
-                // see: <a
-                // href="https://github.com/netty/netty/blob/4.1/transport/src/main/java/io/netty/channel/nio/NioEventLoop.java#L411"></a>
-                if (this.wakenUp.get()) this.currSelector.wakeup();
-
-                try {
-                    long startTime = System.currentTimeMillis();
-                    processSelectedKeys();
-                    long endTime = System.currentTimeMillis();
-                    if ((endTime - startTime) > 1000) {
-                        System.out.println(
-                                "warning, selector thread key proc took: "
-                                        + (endTime - startTime)
-                                        + "ms");
-                    }
-                } finally {
-                    long startTime = System.currentTimeMillis();
-                    runAllTasks();
-                    long endTime = System.currentTimeMillis();
-
-                    if ((endTime - startTime) > 1000) {
-                        System.out.println(
-                                "warning, selector thread task took: "
-                                        + (endTime - startTime)
-                                        + "ms");
-                    }
+        this.eventLoopThread = Thread.currentThread();
+
+        while (isRunning) {
+            try {
+                select();
+
+                long startTime = System.nanoTime();
+                processSelectedKeys();
+                processTime += System.nanoTime() - startTime;
+                if (processTime > MIN_DURATION) { // print and reset total time so far
+                    surveyLog.info(
+                            "{}: process selected keys, duration = {} ns.",
+                            eventLoopThread.getName(),
+                            processTime);
+                    processTime = 0;
                 }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                p2pLOG.debug("io-loop-select-exception.", e);
+            } finally {
+                runAllTasks();
             }
-        } catch (Throwable t) {
-            // loop should not die for now just log out the throw
         }
-    }
 
-    // -------------------------------------------------------------- internal
-
-    private void registerEventLoopThread(Thread t) {
-        this.eventLoopThread = t;
+        closeAll();
+        p2pLOG.info("{} shutdown", eventLoopThread.getName());
     }
 
-    private void select(boolean oldWakenUp) throws IOException {
-        Selector selector = this.currSelector;
-
-        while (true) {
-
-            // from netty docs:
-            // If a task was submitted when wakenUp value was true, the task didn't get a chance to
-            // call
-            // {@link Selector#wakeup}. So we need to check task queue again before executing select
-            // operation.
-            // If we don't, the task might be pended until select operation was timed out.
-            // It might be pended until idle timeout if IdleStateHandler existed in pipeline.
-            // -- end netty notes
-            if (this.eventBus.hasTasks() && wakenUp.compareAndSet(false, true)) {
-                selector.selectNow();
-                break;
-            }
-
-            int selectedKeys = selector.select(timeoutMillis);
-
-            if (selectedKeys != 0 || oldWakenUp || wakenUp.get() || this.eventBus.hasTasks()) {
-                // break when we:
-                // 1) selected something
-                // 2) user submitted a task for us to run
-                // 3) the task queue has an already pending task
-                break;
-            }
+    // -------------------------------------------------------------- internal
 
-            if (Thread.interrupted()) {
-                break;
-            }
+    private void select() throws IOException {
+        // a task submitted after this reset wakes up the selector again
+        wakenUp.set(false);
+        if (eventBus.hasTasks()) {
+            currSelector.selectNow();
+        } else {
+            currSelector.select(SELECT_TIMEOUT_MS);
         }
-
-        // TODO: handle spin lock (epoll error)
-        // see: <a
-        // href="https://github.com/netty/netty/blob/4.1/transport/src/main/java/io/netty/channel/nio/NioEventLoop.java#L738"></a>
     }
 
     private void processSelectedKeys() {
-        Set<SelectionKey> selectedKeys = this.currSelector.selectedKeys();
-        if (selectedKeys.isEmpty()) return;
-
-        Iterator<SelectionKey> it = selectedKeys.iterator();
-        while (true) {
-            final SelectionKey key = it.next();
-            final ChannelBuffer buffer = (ChannelBuffer) key.attachment();
-            processSelectedKey(key, buffer);
-            // remove the current key
-            it.remove();
-
-            if (!it.hasNext()) break;
-
-            if (this.needsToSelectAgain) {
-                selectAgain();
-                Set<SelectionKey> keys = this.currSelector.selectedKeys();
-                if (keys.isEmpty()) break;
-                else it = selectedKeys.iterator();
-            }
-        }
-    }
-
-    private static void processSelectedKey(SelectionKey key, ChannelBuffer buffer) {
-        Task t = buffer.task;
-        int state = 0;
-        try {
-            t.channelReady(key.channel(), key);
-            state = 1;
-        } catch (Throwable th) {
-
-            // if this was an excepted exception
-            if (th instanceof Exception) {
-                // on any exception, drop
-                key.cancel();
-                t.channelUnregistered(key.channel(), th);
-                state = 2;
+        Iterator<SelectionKey> keys = currSelector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            Task task = (Task) key.attachment();
+            if (task == null || !key.isValid()) {
+                continue;
             }
 
-            // otherwise if this was a runtime exception, it could be that
-            // our decoding logic is currently flawed, log out and ignore
-            System.out.println("Selector caught unhandled exception");
-            th.printStackTrace();
-        } finally {
-            // this should not happen, but handle anyways
-            if (state == 0) {
-                key.cancel();
-                t.channelUnregistered(key.channel(), null);
-            } else if (state == 1) {
-                // if the task cancelled the key
-                if (!key.isValid()) t.channelUnregistered(key.channel(), null);
+            try {
+                task.channelReady(key.channel(), key);
+            } catch (Throwable t) {
+                unregister(key, t);
             }
         }
     }
 
-    private boolean runAllTasks() {
-        assert isEventLoopThread();
+    private void runAllTasks() {
         List<Runnable> tasks = this.eventBus.retrieveAllEvents();
-
-        if (tasks.isEmpty()) return false;
-
         for (Runnable task : tasks) {
-            safeExecute(task);
+            try {
+                task.run();
+            } catch (Throwable t) {
+                p2pLOG.error("io-loop-task-exception.", t);
+            }
         }
-        return true;
     }
 
-    private void safeExecute(Runnable task) {
-        try {
-            task.run();
-        } catch (Throwable t) {
-            t.printStackTrace();
+    private void unregister(SelectionKey key, Throwable cause) {
+        key.cancel();
+        Task task = (Task) key.attachment();
+        key.attach(null);
+        if (task != null) {
+            task.channelUnregistered(key.channel(), cause);
         }
     }
 
-    private void selectAgain() {
-        this.needsToSelectAgain = false;
+    private void closeAll() {
+        List<SelectionKey> keys;
+        try {
+            keys = new ArrayList<>(currSelector.keys());
+        } catch (ClosedSelectorException e) {
+            return;
+        }
+        for (SelectionKey key : keys) {
+            unregister(key, null);
+        }
         try {
-            this.currSelector.selectNow();
+            currSelector.close();
         } catch (IOException e) {
-            // TODO: this needs formatting
-            e.printStackTrace();
+            p2pLOG.debug("io-loop-close-exception.", e);
         }
     }
 
-    private void wakeup(boolean inEventLoop) {
-        if (!inEventLoop && this.wakenUp.compareAndSet(false, true)) this.currSelector.wakeup();
-    }
-
     // -------------------------------------------------------------- public
 
     public boolean isEventLoopThread() {
         return Thread.currentThread() == this.eventLoopThread;
     }
 
-    public void cancel(SelectionKey key) {
-        key.cancel();
-        this.needsToSelectAgain = true;
+    /** Runs the given task on the loop thread after the tasks submitted before it. */
+    public void execute(Runnable task) {
+        this.eventBus.addEvent(task);
+        if (!isEventLoopThread() && wakenUp.compareAndSet(false, true)) {
+            currSelector.wakeup();
+        }
     }
 
     /**
-     * Called to attach a new channel to the event loop
+     * Registers the channel with this loop.
      *
-     * @param channel a selectable channel that is active
-     * @param buffer associated buffer attached with channel
+     * @param channel a configured non-blocking channel
+     * @param interestOps the initial operations of interest
+     * @param task notified of the channel events
      */
-    public void attachChannel(
-            SelectableChannel channel, int interestOps, ChannelBuffer buffer, Task task) {
-        if (channel == null) throw new NullPointerException();
-
-        if (interestOps == 0) throw new IllegalArgumentException();
-
-        if ((interestOps & ~channel.validOps()) != 0) {
+    public void attachChannel(SelectableChannel channel, int interestOps, Task task) {
+        if (channel == null || task == null) {
+            throw new NullPointerException();
+        }
+        if (interestOps == 0 || (interestOps & ~channel.validOps()) != 0) {
             throw new IllegalArgumentException();
         }
 
-        if (buffer == null) throw new NullPointerException();
-
-        if (task == null) throw new NullPointerException();
-
-        // just in case the user forgets to set it
-        if (buffer.task == null) buffer.task = task;
-
-        // schedule an event for the channel to be attached
-        this.eventBus.addEvent(
+        execute(
                 () -> {
                     try {
-                        SelectionKey key = channel.register(this.currSelector, interestOps, buffer);
-                        key.attach(buffer);
+                        channel.register(this.currSelector, interestOps, task);
                     } catch (ClosedChannelException e) {
-                        buffer.task.channelUnregistered(channel, e);
+                        task.channelUnregistered(channel, e);
                     }
                 });
-        wakeup(isEventLoopThread());
     }
 
-    /** Submit a new task (this is a write task the base class to serialize messages) */
-    public void write(ByteBuffer buffer, SocketChannel channel) {
-        this.eventBus.addEvent(
-                () -> {
-                    SelectionKey key = channel.keyFor(this.currSelector);
-                    if (key == null) {
-                        try {
-                            channel.close();
-                        } catch (IOException e) {
-                            // do nothing here for now, just exit
-                        }
-                        return;
-                    }
-
-                    ((ChannelBuffer) key.attachment()).task.acceptMessage(channel, key, buffer);
-                });
-        wakeup(isEventLoopThread());
+    /**
+     * Returns the key of the channel for this loop's selector.
+     *
+     * @implNote Must be called from the loop thread.
+     */
+    public SelectionKey keyFor(SelectableChannel channel) {
+        return channel.keyFor(this.currSelector);
     }
 
-    private void resubmitWrite(ByteBuffer buffer, SelectionKey key, SocketChannel channel) {
-        // theres probably better ways to do this but for now the simplest
-        //
+    /**
+     * Removes the channel from the loop, notifying its task.
+     *
+     * @implNote Must be called from the loop thread.
+     */
+    public void cancel(SelectableChannel channel) {
+        SelectionKey key = keyFor(channel);
+        if (key != null) {
+            unregister(key, null);
+        }
     }
 
     public SelectorProvider getSelectorProvider() {
         return this.selectorProvider;
     }
 
-    public void cancelChannel(SocketChannel channel) {
-        this.eventBus.addEvent(
-                () -> {
-                    SelectionKey key = channel.keyFor(this.currSelector);
-                    if (key != null) {
-                        key.cancel();
-                        ((ChannelBuffer) key.attachment()).task.channelUnregistered(channel, null);
-                    } else {
-                        try {
-                            channel.close();
-                        } catch (IOException e) {
-                            // log.error("failed to close channel", e);
-                        }
-                    }
-                });
+    /** Stops the loop, which unregisters all its channels before the thread exits. */
+    public void shutdown() {
+        isRunning = false;
+        currSelector.wakeup();
     }
 }
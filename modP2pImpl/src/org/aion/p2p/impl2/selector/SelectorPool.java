@@ -1,4 +1,76 @@
 package org.aion.p2p.impl2.selector;
 
-/** Implementation to hold */
-public class SelectorPool {}
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+
+/**
+ * A fixed set of {@link MainIOLoop} instances, each with its own thread. Channels are spread over
+ * the loops by their hash so that the I/O of many peers is shared among several cores.
+ */
+public class SelectorPool {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+    private final MainIOLoop[] loops;
+    private final List<Thread> threads = new ArrayList<>();
+    private final Logger p2pLOG;
+
+    /** @param size the number of selector threads */
+    public SelectorPool(int size, Logger p2pLOG, Logger surveyLog) throws IOException {
+        if (size < 1) {
+            throw new IllegalArgumentException("The number of selector threads must be positive.");
+        }
+        this.p2pLOG = p2pLOG;
+        this.loops = new MainIOLoop[size];
+        for (int i = 0; i < size; i++) {
+            loops[i] = new MainIOLoop(SelectorProvider.provider(), p2pLOG, surveyLog);
+        }
+    }
+
+    public int size() {
+        return loops.length;
+    }
+
+    public MainIOLoop get(int index) {
+        return loops[index];
+    }
+
+    /** Returns the loop responsible for the given channel. */
+    public MainIOLoop loopFor(SelectableChannel channel) {
+        return loops[(channel.hashCode() & Integer.MAX_VALUE) % loops.length];
+    }
+
+    /** Starts the threads of all loops. */
+    public synchronized void start() {
+        if (!threads.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < loops.length; i++) {
+            Thread t = new Thread(loops[i], "p2p-io-" + i);
+            t.setPriority(Thread.MAX_PRIORITY);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    /** Stops all loops and waits for their threads to unregister their channels. */
+    public synchronized void shutdown() {
+        for (MainIOLoop loop : loops) {
+            loop.shutdown();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                p2pLOG.warn("Interrupted while stopping " + t.getName());
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        threads.clear();
+    }
+}
@@ -1,6 +1,5 @@
 package org.aion.p2p.impl2.selector;
 
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 
@@ -8,29 +7,31 @@ import java.nio.channels.SelectionKey;
  * Analogous to Netty's NioTask, we will be using this module to execute application specific or
  * arbitrary logic when notified by the EventLoop.
  *
- * <p>Tasks will be executed by the thread running {@link MainIOLoop}
+ * <p>Tasks are attached to the selection key of their channel and are executed by the thread
+ * running the {@link MainIOLoop} the channel was registered with.
  */
 public interface Task {
 
-    public static final Task DO_NOTHING =
+    Task DO_NOTHING =
             new Task() {
                 @Override
                 public void channelReady(SelectableChannel channel, SelectionKey key) {}
 
-                @Override
-                public void acceptMessage(
-                        SelectableChannel channel, SelectionKey key, ByteBuffer buffer) {}
-
                 @Override
                 public void channelUnregistered(SelectableChannel channel, Throwable cause) {}
             };
 
-    void channelReady(SelectableChannel channel, SelectionKey key);
-
-    // sometimes, writes become pending in which case they must be accepted
-    // by the channel, when OP_WRITE gets triggered, the channel is responsible for
-    // writing the message to the buffer
-    void acceptMessage(SelectableChannel channel, SelectionKey key, ByteBuffer buffer);
-
+    /**
+     * Called when the channel is ready for at least one of the operations of interest. Any
+     * exception thrown unregisters the channel.
+     */
+    void channelReady(SelectableChannel channel, SelectionKey key) throws Exception;
+
+    /**
+     * Called once when the channel is removed from the loop, either because it was closed or
+     * because of an error.
+     *
+     * @param cause the error that caused the removal or {@code null}
+     */
     void channelUnregistered(SelectableChannel channel, Throwable cause);
 }
@@ -0,0 +1,71 @@
+package org.aion.p2p.impl.sim;
+
+/**
+ * Characteristics of a simulated link between two nodes, applied independently to each direction.
+ *
+ * <p>Loss is modelled the way TCP experiences it: a lost chunk is not dropped but delivered after
+ * an additional retransmission timeout, holding back the chunks behind it.
+ */
+public final class LinkProfile {
+
+    /** A link without latency, bandwidth limit or loss. */
+    public static final LinkProfile UNLIMITED = new LinkProfile(0, 0, 0d, 0);
+
+    private static final long DEFAULT_RETRANSMIT_MS = 200;
+
+    final long latencyMs;
+    final long bytesPerSecond;
+    final double lossRate;
+    final long retransmitMs;
+
+    private LinkProfile(long latencyMs, long bytesPerSecond, double lossRate, long retransmitMs) {
+        if (latencyMs < 0 || bytesPerSecond < 0 || retransmitMs < 0) {
+            throw new IllegalArgumentException("negative link parameter");
+        }
+        if (lossRate < 0d || lossRate >= 1d) {
+            throw new IllegalArgumentException("loss rate must be in [0, 1)");
+        }
+        this.latencyMs = latencyMs;
+        this.bytesPerSecond = bytesPerSecond;
+        this.lossRate = lossRate;
+        this.retransmitMs = retransmitMs;
+    }
+
+    /** @param latencyMs the one-way delay added to every chunk */
+    public LinkProfile withLatency(long latencyMs) {
+        return new LinkProfile(latencyMs, bytesPerSecond, lossRate, retransmitMs);
+    }
+
+    /** @param bytesPerSecond the bandwidth of each direction, or {@code 0} for no limit */
+    public LinkProfile withBandwidth(long bytesPerSecond) {
+        return new LinkProfile(latencyMs, bytesPerSecond, lossRate, retransmitMs);
+    }
+
+    /** @param lossRate the probability of a chunk being retransmitted */
+    public LinkProfile withLoss(double lossRate) {
+        return new LinkProfile(
+                latencyMs,
+                bytesPerSecond,
+                lossRate,
+                retransmitMs == 0 ? DEFAULT_RETRANSMIT_MS : retransmitMs);
+    }
+
+    /** @param retransmitMs the delay added to chunks considered lost */
+    public LinkProfile withRetransmitTimeout(long retransmitMs) {
+        return new LinkProfile(latencyMs, bytesPerSecond, lossRate, retransmitMs);
+    }
+
+    boolean isUnlimited() {
+        return latencyMs == 0 && bytesPerSecond == 0 && lossRate == 0d;
+    }
+
+    @Override
+    public String toString() {
+        return "latency="
+                + latencyMs
+                + "ms bandwidth="
+                + (bytesPerSecond == 0 ? "unlimited" : bytesPerSecond + "B/s")
+                + " loss="
+                + lossRate;
+    }
+}
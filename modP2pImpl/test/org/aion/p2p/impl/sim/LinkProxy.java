@@ -0,0 +1,230 @@
+package org.aion.p2p.impl.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback TCP proxy forwarding the connections it accepts to a target port while applying a
+ * {@link LinkProfile}.
+ *
+ * <p>Each direction of a connection is read in chunks that are stamped with their delivery time
+ * and written in order once it is reached. The random decisions of a direction only depend on the
+ * seed of the proxy, so a given seed always loses the same chunks of the same stream.
+ */
+public final class LinkProxy implements AutoCloseable {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final class Chunk {
+        private final byte[] data;
+        private final long dueNanos;
+
+        private Chunk(byte[] data, long dueNanos) {
+            this.data = data;
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    // marks the end of a stream
+    private static final Chunk EOF = new Chunk(new byte[0], 0);
+
+    private final String name;
+    private final InetSocketAddress target;
+    private final LinkProfile profile;
+    private final long seed;
+    private final ServerSocket server;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * @param name the name used for the proxy threads
+     * @param targetPort the loopback port the accepted connections are forwarded to
+     * @param profile the characteristics of the link
+     * @param seed the seed of the random loss decisions
+     */
+    public LinkProxy(String name, int targetPort, LinkProfile profile, long seed)
+            throws IOException {
+        this.name = name;
+        this.target = new InetSocketAddress(InetAddress.getLoopbackAddress(), targetPort);
+        this.profile = profile;
+        this.seed = seed;
+        this.server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptor = new Thread(this::accept, name + "-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /** @return the port accepting connections */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /** @return the number of bytes forwarded in both directions */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /** @return the number of chunks forwarded in both directions */
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    /** @return the number of chunks delayed by a simulated retransmission */
+    public long getLost() {
+        return lost.get();
+    }
+
+    private void accept() {
+        int connection = 0;
+        while (!closed) {
+            Socket in = null;
+            try {
+                in = server.accept();
+                Socket out = new Socket();
+                out.connect(target);
+                in.setTcpNoDelay(true);
+                out.setTcpNoDelay(true);
+                sockets.add(in);
+                sockets.add(out);
+
+                long streamSeed = seed * 31 + connection++;
+                pipe(in, out, name + "-up", new Random(streamSeed));
+                pipe(out, in, name + "-down", new Random(~streamSeed));
+            } catch (IOException e) {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    private void pipe(Socket from, Socket to, String threadName, Random random)
+            throws IOException {
+        InputStream is = from.getInputStream();
+        OutputStream os = to.getOutputStream();
+
+        if (profile.isUnlimited()) {
+            start(threadName, () -> copy(is, os, from, to));
+            return;
+        }
+
+        BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+        start(threadName + "-read", () -> read(is, queue, random, from));
+        start(threadName + "-write", () -> write(queue, os, to));
+    }
+
+    private static void start(String threadName, Runnable task) {
+        Thread t = new Thread(task, threadName);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void copy(InputStream is, OutputStream os, Socket from, Socket to) {
+        byte[] buf = new byte[CHUNK_SIZE];
+        try {
+            int n;
+            while ((n = is.read(buf)) >= 0) {
+                os.write(buf, 0, n);
+                bytes.addAndGet(n);
+                chunks.incrementAndGet();
+            }
+        } catch (IOException e) {
+            // the connection was closed on either side
+        } finally {
+            closeQuietly(from);
+            closeQuietly(to);
+        }
+    }
+
+    private void read(InputStream is, BlockingQueue<Chunk> queue, Random random, Socket from) {
+        byte[] buf = new byte[CHUNK_SIZE];
+        // the time the link finishes transmitting the previous chunk
+        long busyUntil = 0;
+        long lastDue = 0;
+        try {
+            int n;
+            while ((n = is.read(buf)) >= 0) {
+                long now = System.nanoTime();
+                long sent = Math.max(now, busyUntil);
+                if (profile.bytesPerSecond > 0) {
+                    sent += n * 1_000_000_000L / profile.bytesPerSecond;
+                }
+                busyUntil = sent;
+
+                long due = sent + profile.latencyMs * 1_000_000L;
+                if (profile.lossRate > 0d && random.nextDouble() < profile.lossRate) {
+                    due += profile.retransmitMs * 1_000_000L;
+                    lost.incrementAndGet();
+                }
+                // streams are delivered in order, so a late chunk holds back the ones behind it
+                lastDue = Math.max(lastDue, due);
+                queue.add(new Chunk(Arrays.copyOf(buf, n), lastDue));
+            }
+        } catch (IOException e) {
+            // the connection was closed on either side
+        } finally {
+            queue.add(EOF);
+            closeQuietly(from);
+        }
+    }
+
+    private void write(BlockingQueue<Chunk> queue, OutputStream os, Socket to) {
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk == EOF) {
+                    break;
+                }
+                long wait = chunk.dueNanos - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+                }
+                os.write(chunk.data);
+                bytes.addAndGet(chunk.data.length);
+                chunks.incrementAndGet();
+            }
+        } catch (IOException | InterruptedException e) {
+            // the connection was closed on either side
+        } finally {
+            closeQuietly(to);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        sockets.clear();
+    }
+}
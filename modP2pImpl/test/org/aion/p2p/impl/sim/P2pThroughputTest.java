@@ -0,0 +1,142 @@
+package org.aion.p2p.impl.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.INode;
+import org.aion.p2p.Msg;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl1.P2pMgr;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of {@link P2pMgr} on a {@link SimNetwork}. The reports are printed so
+ * that regressions can be spotted in the build output.
+ *
+ * <p>Inbound messages are limited to {@link P2pConstant#READ_MAX_RATE_TXBC} per second for each
+ * route and peer, so the messages are spread over several routes and sent in a single burst that
+ * stays within the limit.
+ */
+public class P2pThroughputTest {
+
+    private static final byte FIRST_ACT = 100;
+    private static final int ROUTES = 16;
+    private static final int PER_ROUTE = P2pConstant.READ_MAX_RATE_TXBC;
+    private static final int MAX_IN_FLIGHT = 500;
+
+    private static final class SimMsg extends Msg {
+        private final byte[] body;
+
+        SimMsg(byte act, byte[] body) {
+            super(Ver.V0, Ctrl.SYNC, act);
+            this.body = body;
+        }
+
+        @Override
+        public byte[] encode() {
+            return body;
+        }
+    }
+
+    private SimNetwork network;
+
+    @After
+    public void tearDown() {
+        if (network != null) {
+            network.close();
+        }
+    }
+
+    private AtomicLong[] startNetwork(int size, LinkProfile link) throws Exception {
+        network = new SimNetwork(size, link, 42L, false);
+        AtomicLong[] received = new AtomicLong[size];
+        for (int i = 0; i < size; i++) {
+            AtomicLong counter = received[i] = new AtomicLong();
+            List<Handler> handlers = new ArrayList<>();
+            for (int r = 0; r < ROUTES; r++) {
+                handlers.add(
+                        new Handler(Ver.V0, Ctrl.SYNC, (byte) (FIRST_ACT + r)) {
+                            @Override
+                            public void receive(int _id, String _displayId, byte[] _msg) {
+                                counter.incrementAndGet();
+                            }
+                        });
+            }
+            network.get(i).register(handlers);
+        }
+        network.start();
+        assertTrue(network.awaitConnected(30, TimeUnit.SECONDS));
+        return received;
+    }
+
+    /** Sends a burst of messages from the first node to all the others. */
+    private SimReport broadcast(String name, AtomicLong[] received, int bodySize)
+            throws Exception {
+        P2pMgr sender = network.get(0);
+        Map<Integer, INode> peers = sender.getActiveNodes();
+        byte[] body = new byte[bodySize];
+
+        network.beginMeasurement();
+        for (int i = 0; i < PER_ROUTE; i++) {
+            for (int r = 0; r < ROUTES; r++) {
+                while (network.getSendQueueDepth() > MAX_IN_FLIGHT) {
+                    Thread.sleep(1);
+                }
+                Msg msg = new SimMsg((byte) (FIRST_ACT + r), body);
+                for (INode peer : peers.values()) {
+                    sender.send(peer.getIdHash(), peer.getIdShort(), msg);
+                }
+            }
+        }
+
+        long expected = (long) PER_ROUTE * ROUTES * peers.size();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+        while (total(received) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        SimReport report = network.endMeasurement(name, total(received));
+        System.out.println(report);
+
+        assertEquals(expected, report.messages);
+        assertTrue(report.bytes >= expected * bodySize);
+        return report;
+    }
+
+    private static long total(AtomicLong[] counters) {
+        long total = 0;
+        for (AtomicLong counter : counters) {
+            total += counter.get();
+        }
+        return total;
+    }
+
+    @Test
+    public void testThroughputUnlimited() throws Exception {
+        AtomicLong[] received = startNetwork(4, LinkProfile.UNLIMITED);
+
+        broadcast("unlimited", received, 64 * 1024);
+    }
+
+    @Test
+    public void testThroughputConstrainedLinks() throws Exception {
+        LinkProfile link =
+                LinkProfile.UNLIMITED
+                        .withLatency(20)
+                        .withBandwidth(1024 * 1024)
+                        .withLoss(0.01);
+        AtomicLong[] received = startNetwork(3, link);
+
+        SimReport report = broadcast("constrained", received, 4 * 1024);
+        // each link carries 1.25 MB of bodies at 1 MB/s
+        assertTrue(report.elapsedMs >= 1_000);
+    }
+}
@@ -0,0 +1,226 @@
+package org.aion.p2p.impl.sim;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aion.p2p.impl.TestUtilities;
+import org.aion.p2p.impl1.P2pMgr;
+import org.aion.p2p.impl1.tasks.RouteDispatcher.RouteStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Network of {@link P2pMgr} instances running in the same JVM and connected to each other on
+ * loopback sockets through {@link LinkProxy} instances.
+ *
+ * <p>Node {@code i} lists every node {@code j < i} as a boot node behind the proxy of the link
+ * {@code (i, j)}, which produces a full mesh in which every connection goes through a simulated
+ * link. The maximum number of active nodes is the number of peers, so the nodes found through
+ * discovery are not connected directly.
+ *
+ * <p>Handlers must be registered on the managers returned by {@link #get(int)} before {@link
+ * #start()} is called.
+ */
+public final class SimNetwork implements AutoCloseable {
+
+    public static final String IP = "127.0.0.1";
+
+    private static final int CHAIN_ID = 0;
+    private static final long SAMPLE_PERIOD_MS = 10;
+
+    private final Logger log = LoggerFactory.getLogger("P2P");
+    private final List<P2pMgr> nodes = new ArrayList<>();
+    private final List<LinkProxy> links = new ArrayList<>();
+    private final ScheduledExecutorService sampler =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        Thread t = new Thread(r, "sim-sampler");
+                        t.setDaemon(true);
+                        return t;
+                    });
+
+    private final AtomicInteger maxSendQueueDepth = new AtomicInteger();
+    private final AtomicInteger maxReceiveQueueDepth = new AtomicInteger();
+    private volatile long measureStart;
+    private volatile long measureBytes;
+
+    /**
+     * @param size the number of nodes
+     * @param link the characteristics of every link
+     * @param seed the seed of the link simulation
+     * @param compression whether the nodes offer message compression
+     */
+    public SimNetwork(int size, LinkProfile link, long seed, boolean compression)
+            throws IOException {
+        if (size < 2) {
+            throw new IllegalArgumentException("a network needs at least two nodes");
+        }
+
+        String[] ids = new String[size];
+        int[] ports = new int[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            ports[i] = TestUtilities.getFreePort();
+        }
+
+        for (int i = 0; i < size; i++) {
+            String[] bootNodes = new String[i];
+            for (int j = 0; j < i; j++) {
+                LinkProxy proxy = new LinkProxy("sim-link-" + i + "-" + j, ports[j], link, seed);
+                links.add(proxy);
+                bootNodes[j] = "p2p://" + ids[j] + "@" + IP + ":" + proxy.getPort();
+            }
+            nodes.add(
+                    new P2pMgr(
+                            log,
+                            log,
+                            CHAIN_ID,
+                            "sim",
+                            ids[i],
+                            IP,
+                            ports[i],
+                            bootNodes,
+                            false,
+                            size * 2,
+                            size - 1,
+                            false,
+                            50,
+                            compression));
+            seed = seed * 31 + i;
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public P2pMgr get(int index) {
+        return nodes.get(index);
+    }
+
+    public List<P2pMgr> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    /** Starts every node and the sampling of the queue depths. */
+    public void start() {
+        for (P2pMgr node : nodes) {
+            node.run();
+        }
+        sampler.scheduleAtFixedRate(
+                this::sampleQueues, SAMPLE_PERIOD_MS, SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits until every node is connected to every other node.
+     *
+     * @return {@code false} if the mesh was not complete before the timeout
+     */
+    public boolean awaitConnected(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (System.currentTimeMillis() < deadline) {
+            if (isConnected()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return isConnected();
+    }
+
+    private boolean isConnected() {
+        for (P2pMgr node : nodes) {
+            if (node.getActiveNodes().size() < nodes.size() - 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return the number of bytes that went through the links */
+    public long getBytes() {
+        long bytes = 0;
+        for (LinkProxy link : links) {
+            bytes += link.getBytes();
+        }
+        return bytes;
+    }
+
+    /** @return the number of chunks delayed by a simulated retransmission */
+    public long getLost() {
+        long lost = 0;
+        for (LinkProxy link : links) {
+            lost += link.getLost();
+        }
+        return lost;
+    }
+
+    /** @return the number of messages waiting to be sent by all nodes */
+    public int getSendQueueDepth() {
+        int depth = 0;
+        for (P2pMgr node : nodes) {
+            for (int d : node.getSendQueueDepths().values()) {
+                depth += d;
+            }
+        }
+        return depth;
+    }
+
+    /** @return the number of messages waiting to be handled by all nodes */
+    public int getReceiveQueueDepth() {
+        int depth = 0;
+        for (P2pMgr node : nodes) {
+            for (RouteStatus status : node.getReceiveRouteStatus().values()) {
+                depth += status.queued;
+            }
+        }
+        return depth;
+    }
+
+    private void sampleQueues() {
+        maxSendQueueDepth.accumulateAndGet(getSendQueueDepth(), Math::max);
+        maxReceiveQueueDepth.accumulateAndGet(getReceiveQueueDepth(), Math::max);
+    }
+
+    /** Starts a measurement window, resetting the queue depth maxima. */
+    public void beginMeasurement() {
+        maxSendQueueDepth.set(0);
+        maxReceiveQueueDepth.set(0);
+        measureBytes = getBytes();
+        measureStart = System.nanoTime();
+    }
+
+    /**
+     * Ends the current measurement window.
+     *
+     * @param name the name of the measured scenario
+     * @param messages the number of messages handled during the window
+     */
+    public SimReport endMeasurement(String name, long messages) {
+        long elapsedNanos = System.nanoTime() - measureStart;
+        sampleQueues();
+        return new SimReport(
+                name,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                messages,
+                getBytes() - measureBytes,
+                maxSendQueueDepth.get(),
+                maxReceiveQueueDepth.get());
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        for (P2pMgr node : nodes) {
+            node.shutdown();
+        }
+        for (LinkProxy link : links) {
+            link.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.aion.p2p.impl.sim;
+
+/** Results of a measurement window of a {@link SimNetwork}. */
+public final class SimReport {
+
+    public final String name;
+    public final long elapsedMs;
+    public final long messages;
+    public final long bytes;
+    public final int maxSendQueueDepth;
+    public final int maxReceiveQueueDepth;
+
+    SimReport(
+            String name,
+            long elapsedMs,
+            long messages,
+            long bytes,
+            int maxSendQueueDepth,
+            int maxReceiveQueueDepth) {
+        this.name = name;
+        this.elapsedMs = elapsedMs;
+        this.messages = messages;
+        this.bytes = bytes;
+        this.maxSendQueueDepth = maxSendQueueDepth;
+        this.maxReceiveQueueDepth = maxReceiveQueueDepth;
+    }
+
+    public double messagesPerSecond() {
+        return elapsedMs == 0 ? 0d : messages * 1000d / elapsedMs;
+    }
+
+    public double bytesPerSecond() {
+        return elapsedMs == 0 ? 0d : bytes * 1000d / elapsedMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "<sim %s: time=%dms msgs=%d (%.0f/s) bytes=%d (%.0f/s) max-send-queue=%d"
+                        + " max-recv-queue=%d>",
+                name,
+                elapsedMs,
+                messages,
+                messagesPerSecond(),
+                bytes,
+                bytesPerSecond(),
+                maxSendQueueDepth,
+                maxReceiveQueueDepth);
+    }
+}
@@ -13,6 +13,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Ver;
 import org.aion.p2p.impl.comm.Act;
+import org.aion.p2p.impl.comm.Capability;
 import org.aion.p2p.impl.comm.Node;
 import org.junit.Before;
 import org.junit.Test;
@@ -141,4 +142,48 @@ public class ReqHandshake1Test {
         ReqHandshake rhs1 = ReqHandshake1.decode(msg);
         assertNull(rhs1);
     }
+
+    @Test
+    public void testCapabilities() {
+        ReqHandshake1 req =
+                new ReqHandshake1(
+                        validNodeId,
+                        netId,
+                        Node.ipStrToBytes(randomIp),
+                        port,
+                        randomRevision,
+                        randomVersions,
+                        Capability.COMPRESSION);
+        ReqHandshake1 decoded = ReqHandshake1.decode(req.encode(), p2pLOG);
+        assertNotNull(decoded);
+        assertEquals(Capability.COMPRESSION, decoded.getCapabilities());
+        assertArrayEquals(randomRevision, decoded.getRevision());
+    }
+
+    @Test
+    public void testNoCapabilities() {
+        ReqHandshake1 plain =
+                new ReqHandshake1(
+                        validNodeId,
+                        netId,
+                        Node.ipStrToBytes(randomIp),
+                        port,
+                        randomRevision,
+                        randomVersions);
+        ReqHandshake1 withCapabilities =
+                new ReqHandshake1(
+                        validNodeId,
+                        netId,
+                        Node.ipStrToBytes(randomIp),
+                        port,
+                        randomRevision,
+                        randomVersions,
+                        Capability.COMPRESSION);
+
+        // older peers ignore the trailing capabilities and send none
+        byte[] encoded = plain.encode();
+        assertEquals(encoded.length + 1, withCapabilities.encode().length);
+        assertArrayEquals(encoded, Arrays.copyOf(withCapabilities.encode(), encoded.length));
+        assertEquals(Capability.NONE, ReqHandshake1.decode(encoded, p2pLOG).getCapabilities());
+    }
 }
@@ -11,6 +11,7 @@ import java.util.concurrent.ThreadLocalRandom;
 import org.aion.p2p.Ctrl;
 import org.aion.p2p.Ver;
 import org.aion.p2p.impl.comm.Act;
+import org.aion.p2p.impl.comm.Capability;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -106,4 +107,25 @@ public class ResHandshake1Test {
 
         assertEquals(truncatedBv, rs1.getBinaryVersion());
     }
+
+    @Test
+    public void testCapabilities() {
+        ResHandshake1 rs1 = new ResHandshake1(p2pLOG, true, "1.0", Capability.COMPRESSION);
+        ResHandshake1 rs2 = ResHandshake1.decode(rs1.encode(), p2pLOG);
+        assertNotNull(rs2);
+        assertEquals(Capability.COMPRESSION, rs2.getCapabilities());
+        assertEquals("1.0", rs2.getBinaryVersion());
+    }
+
+    @Test
+    public void testNoCapabilities() {
+        byte[] plain = new ResHandshake1(p2pLOG, true, "1.0").encode();
+        byte[] withCapabilities =
+                new ResHandshake1(p2pLOG, true, "1.0", Capability.COMPRESSION).encode();
+
+        // older peers ignore the trailing capabilities and send none
+        assertArrayEquals(plain, Arrays.copyOf(withCapabilities, plain.length));
+        assertEquals(plain.length + 1, withCapabilities.length);
+        assertEquals(Capability.NONE, ResHandshake1.decode(plain, p2pLOG).getCapabilities());
+    }
 }
@@ -0,0 +1,72 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClass() {
+        assertEquals(0, BufferPool.sizeClass(1));
+        assertEquals(0, BufferPool.sizeClass(1024));
+        assertEquals(1, BufferPool.sizeClass(1025));
+        assertEquals(1, BufferPool.sizeClass(2048));
+        assertEquals(
+                BufferPool.MAX_CLASS_SHIFT - BufferPool.MIN_CLASS_SHIFT,
+                BufferPool.sizeClass(1 << BufferPool.MAX_CLASS_SHIFT));
+        assertEquals(-1, BufferPool.sizeClass((1 << BufferPool.MAX_CLASS_SHIFT) + 1));
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        BufferPool pool = new BufferPool();
+
+        ByteBuffer buffer = pool.acquire(1500);
+        assertTrue(buffer.isDirect());
+        assertEquals(2048, buffer.capacity());
+        assertEquals(1500, buffer.limit());
+        assertEquals(0, pool.idle(1500));
+
+        pool.release(buffer);
+        assertEquals(1, pool.idle(1500));
+
+        ByteBuffer reused = pool.acquire(1800);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1800, reused.limit());
+        assertEquals(0, pool.idle(1800));
+    }
+
+    @Test
+    public void testReleaseLimit() {
+        BufferPool pool = new BufferPool();
+        int size = 1 << BufferPool.MAX_CLASS_SHIFT;
+        int max = Math.max(1, BufferPool.MAX_POOLED_BYTES_PER_CLASS / size);
+
+        ByteBuffer[] buffers = new ByteBuffer[max + 1];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(size);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        assertEquals(max, pool.idle(size));
+    }
+
+    @Test
+    public void testOversizedAndForeignBuffers() {
+        BufferPool pool = new BufferPool();
+        int size = (1 << BufferPool.MAX_CLASS_SHIFT) + 1;
+
+        ByteBuffer buffer = pool.acquire(size);
+        assertEquals(size, buffer.capacity());
+        pool.release(buffer);
+
+        pool.release(ByteBuffer.allocate(1024));
+        assertEquals(0, pool.idle(1024));
+    }
+}
@@ -0,0 +1,95 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl1.P2pMgr.Dest;
+import org.junit.Test;
+
+public class EncodedMsgCacheTest {
+
+    private static class TestMsg extends Msg {
+        private final SendPriority priority;
+
+        TestMsg(SendPriority priority) {
+            super(Ver.V0, Ctrl.SYNC, (byte) 1);
+            this.priority = priority;
+        }
+
+        @Override
+        public SendPriority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public byte[] encode() {
+            return new byte[] {1, 2, 3};
+        }
+    }
+
+    @Test
+    public void testBroadcastEncodedOnce() throws InterruptedException {
+        EncodedMsgCache cache = new EncodedMsgCache();
+        SendQueues queues = new SendQueues(10, cache);
+        Msg msg = new TestMsg(SendPriority.TX);
+        for (int nodeId = 1; nodeId <= 3; nodeId++) {
+            queues.offer(new MsgOut(nodeId, String.valueOf(nodeId), msg, Dest.ACTIVE));
+        }
+        assertEquals(1, cache.size());
+
+        // writers share the encoding until the last destination is handled
+        MsgOut first = queues.take();
+        EncodedMsg encoded = cache.acquire(msg, false);
+        queues.done(first);
+        MsgOut second = queues.take();
+        assertSame(encoded, cache.acquire(msg, false));
+        queues.done(second);
+        MsgOut third = queues.take();
+        assertSame(encoded, cache.acquire(msg, false));
+        // the cache and the three writers hold references
+        assertEquals(4, encoded.refCnt());
+
+        queues.done(third);
+        assertEquals(0, cache.size());
+        assertEquals(3, encoded.refCnt());
+    }
+
+    @Test
+    public void testCompressionEncodedSeparately() {
+        EncodedMsgCache cache = new EncodedMsgCache();
+        SendQueues queues = new SendQueues(10, cache);
+        Msg msg = new TestMsg(SendPriority.TX);
+        queues.offer(new MsgOut(1, "1", msg, Dest.ACTIVE));
+
+        assertNotSame(cache.acquire(msg, false), cache.acquire(msg, true));
+    }
+
+    @Test
+    public void testDroppedDestinationsAreReleased() {
+        EncodedMsgCache cache = new EncodedMsgCache();
+        SendQueues queues = new SendQueues(1, cache);
+        Msg msg = new TestMsg(SendPriority.TX);
+        queues.offer(new MsgOut(1, "1", msg, Dest.ACTIVE));
+        EncodedMsg encoded = cache.acquire(msg, false);
+
+        // a control message evicts the queued one
+        queues.offer(new MsgOut(1, "1", new TestMsg(SendPriority.CONTROL), Dest.ACTIVE));
+        assertEquals(1, encoded.refCnt());
+    }
+
+    @Test
+    public void testUntrackedMessageEncodedForCaller() {
+        EncodedMsgCache cache = new EncodedMsgCache();
+        Msg msg = new TestMsg(SendPriority.TX);
+
+        EncodedMsg encoded = cache.acquire(msg, false);
+        assertNotSame(encoded, cache.acquire(msg, false));
+        assertEquals(1, encoded.refCnt());
+        assertEquals(0, cache.size());
+    }
+}
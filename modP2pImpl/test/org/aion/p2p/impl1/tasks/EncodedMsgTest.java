@@ -0,0 +1,148 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Header;
+import org.aion.p2p.Msg;
+import org.aion.p2p.Ver;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.slf4j.Logger;
+
+public class EncodedMsgTest {
+
+    @Mock private Logger p2pLOG;
+
+    private static class TestMsg extends Msg {
+        private final byte[] body;
+
+        TestMsg(byte[] body) {
+            super(Ver.V0, Ctrl.SYNC, (byte) 1);
+            this.body = body;
+        }
+
+        @Override
+        public byte[] encode() {
+            return body;
+        }
+    }
+
+    private static byte[] read(Pipe.SourceChannel source, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void testEncode() {
+        BufferPool pool = new BufferPool();
+        byte[] body = new byte[] {1, 2, 3, 4, 5};
+        EncodedMsg encoded = EncodedMsg.encode(new TestMsg(body), pool);
+
+        assertEquals(Header.LEN + body.length, encoded.length());
+
+        ByteBuffer[] views = encoded.views();
+        assertEquals(2, views.length);
+        Header header = Header.decode(copy(views[0]));
+        assertEquals(body.length, header.getLen());
+        assertArrayEquals(body, copy(views[1]));
+
+        // views are independent of each other
+        ByteBuffer[] other = encoded.views();
+        assertEquals(Header.LEN, other[0].remaining());
+        assertEquals(body.length, other[1].remaining());
+    }
+
+    @Test
+    public void testEncodeEmptyBody() {
+        EncodedMsg encoded = EncodedMsg.encode(new TestMsg(null), new BufferPool());
+        assertEquals(Header.LEN, encoded.length());
+        assertEquals(1, encoded.views().length);
+    }
+
+    @Test
+    public void testReferenceCount() {
+        BufferPool pool = new BufferPool();
+        EncodedMsg encoded = EncodedMsg.encode(new TestMsg(new byte[100]), pool);
+
+        assertTrue(encoded.retain());
+        assertEquals(2, encoded.refCnt());
+
+        encoded.release();
+        assertEquals(0, pool.idle(100));
+
+        encoded.release();
+        assertEquals(1, pool.idle(100));
+        assertFalse(encoded.retain());
+    }
+
+    @Test
+    public void testPendingWrites() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        BufferPool pool = new BufferPool();
+        byte[] body = new byte[] {1, 2, 3};
+        EncodedMsg encoded = EncodedMsg.encode(new TestMsg(body), pool);
+
+        ChannelBuffer cb = new ChannelBuffer(p2pLOG);
+        Pipe pipe = Pipe.open();
+        try {
+            cb.lock.lock();
+            assertTrue(encoded.retain());
+            assertTrue(cb.addPendingWrite(encoded, encoded.views()));
+            assertTrue(encoded.retain());
+            assertTrue(cb.addPendingWrite(encoded, encoded.views()));
+            assertTrue(cb.hasPendingWrites());
+            assertEquals(2L * encoded.length(), cb.getPendingBytes());
+
+            assertTrue(cb.flushPendingWrites(pipe.sink()));
+            assertFalse(cb.hasPendingWrites());
+            assertEquals(0, cb.getPendingBytes());
+            cb.lock.unlock();
+
+            // only the initial reference is left
+            assertEquals(1, encoded.refCnt());
+
+            for (int i = 0; i < 2; i++) {
+                Header header = Header.decode(read(pipe.source(), Header.LEN));
+                assertEquals(body.length, header.getLen());
+                assertArrayEquals(body, read(pipe.source(), body.length));
+            }
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    @Test
+    public void testPendingWritesReleasedOnClose() {
+        MockitoAnnotations.initMocks(this);
+        EncodedMsg encoded = EncodedMsg.encode(new TestMsg(new byte[10]), new BufferPool());
+
+        ChannelBuffer cb = new ChannelBuffer(p2pLOG);
+        cb.lock.lock();
+        assertTrue(encoded.retain());
+        assertTrue(cb.addPendingWrite(encoded, encoded.views()));
+        cb.lock.unlock();
+
+        cb.setClosed();
+        assertEquals(1, encoded.refCnt());
+    }
+
+    private static byte[] copy(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
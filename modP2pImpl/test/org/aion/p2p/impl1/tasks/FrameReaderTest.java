@@ -0,0 +1,168 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.aion.p2p.Header;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.impl1.P2pException;
+import org.junit.Test;
+
+public class FrameReaderTest {
+
+    /** Returns the given bytes in chunks of at most the given size. */
+    private static class ChunkedChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+        private final int chunk;
+        private int reads = 0;
+
+        ChunkedChannel(byte[] data, int chunk) {
+            this.data = ByteBuffer.wrap(data);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            reads++;
+            int n = Math.min(chunk, Math.min(dst.remaining(), data.remaining()));
+            if (n == 0) {
+                return data.hasRemaining() ? 0 : -1;
+            }
+            ByteBuffer slice = data.slice();
+            slice.limit(n);
+            dst.put(slice);
+            data.position(data.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private final Random r = new Random();
+
+    private static byte[] frame(int route, byte[] body) {
+        return ByteBuffer.allocate(Header.LEN + body.length)
+                .putInt(route)
+                .putInt(body.length)
+                .put(body)
+                .array();
+    }
+
+    private List<byte[]> readAll(
+            FrameReader frames, ReadableByteChannel channel, List<Integer> routes)
+            throws IOException {
+        List<byte[]> bodies = new ArrayList<>();
+        int r;
+        do {
+            r = frames.read(channel);
+            while (frames.next()) {
+                routes.add(frames.getHeader().getRoute());
+                bodies.add(frames.getBody());
+            }
+        } while (r >= 0);
+        return bodies;
+    }
+
+    @Test
+    public void testMessagesAcrossChunks() throws IOException {
+        int[] sizes = {
+            0, 1, 100, FrameReader.BUFFER_SIZE - Header.LEN, FrameReader.BUFFER_SIZE * 3, 7
+        };
+        List<byte[]> expected = new ArrayList<>();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] body = new byte[sizes[i]];
+            r.nextBytes(body);
+            expected.add(body);
+            stream.write(frame(i, body));
+        }
+        byte[] data = stream.toByteArray();
+
+        int[] chunks = {1, 3, Header.LEN, 1000, FrameReader.BUFFER_SIZE, data.length};
+        for (int chunk : chunks) {
+            List<Integer> routes = new ArrayList<>();
+            List<byte[]> bodies =
+                    readAll(new FrameReader(), new ChunkedChannel(data, chunk), routes);
+
+            assertEquals(expected.size(), bodies.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(i, (int) routes.get(i));
+                assertArrayEquals(expected.get(i), bodies.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBodyReadDirectly() throws IOException {
+        byte[] body = new byte[FrameReader.BUFFER_SIZE * 16];
+        r.nextBytes(body);
+        ChunkedChannel channel = new ChunkedChannel(frame(1, body), FrameReader.BUFFER_SIZE * 4);
+        FrameReader frames = new FrameReader();
+
+        List<byte[]> bodies = readAll(frames, channel, new ArrayList<>());
+
+        assertEquals(1, bodies.size());
+        assertArrayEquals(body, bodies.get(0));
+        // one read fills the buffer, four go straight into the body and the last one finds the end
+        assertEquals(6, channel.reads);
+        assertEquals(0, frames.buffered());
+    }
+
+    @Test
+    public void testIncompleteMessage() throws IOException {
+        byte[] data = frame(1, new byte[10]);
+        FrameReader frames = new FrameReader();
+
+        frames.read(new ChunkedChannel(data, data.length - 1));
+        assertFalse(frames.next());
+        assertNull(frames.getHeader());
+        assertNull(frames.getBody());
+    }
+
+    @Test
+    public void testEmptyBodyShared() throws IOException {
+        byte[] data =
+                ByteBuffer.allocate(Header.LEN * 2)
+                        .put(frame(1, new byte[0]))
+                        .put(frame(2, new byte[0]))
+                        .array();
+        FrameReader frames = new FrameReader();
+        frames.read(new ChunkedChannel(data, data.length));
+
+        assertTrue(frames.next());
+        byte[] first = frames.getBody();
+        assertTrue(frames.next());
+        assertSame(first, frames.getBody());
+        assertEquals(0, first.length);
+        assertFalse(frames.next());
+    }
+
+    @Test(expected = P2pException.class)
+    public void testBodyTooLarge() throws IOException {
+        byte[] data =
+                ByteBuffer.allocate(Header.LEN)
+                        .putInt(1)
+                        .putInt(P2pConstant.MAX_BODY_SIZE + 1)
+                        .array();
+        FrameReader frames = new FrameReader();
+        frames.read(new ChunkedChannel(data, data.length));
+        frames.next();
+    }
+}
@@ -0,0 +1,85 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.aion.p2p.P2pConstant;
+import org.aion.p2p.impl1.P2pException;
+import org.junit.Test;
+
+public class MsgCompressionTest {
+
+    private final Random r = new Random();
+
+    /** Returns a body with long repeated runs, similar to encoded blocks. */
+    private byte[] compressible(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i += 64) {
+            Arrays.fill(body, i, Math.min(size, i + 32), (byte) r.nextInt());
+        }
+        return body;
+    }
+
+    @Test
+    public void testRoundTrip() throws P2pException {
+        int[] sizes = {MsgCompression.MIN_SIZE, 10_000, 1_000_000};
+        for (int size : sizes) {
+            byte[] body = compressible(size);
+            byte[] compressed = MsgCompression.compress(body);
+
+            assertNotNull(compressed);
+            assertTrue(compressed.length < body.length - body.length / 8);
+            assertArrayEquals(body, MsgCompression.decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testSmallBody() {
+        assertNull(MsgCompression.compress(null));
+        assertNull(MsgCompression.compress(compressible(MsgCompression.MIN_SIZE - 1)));
+    }
+
+    @Test
+    public void testIncompressibleBody() {
+        byte[] body = new byte[10_000];
+        r.nextBytes(body);
+        assertNull(MsgCompression.compress(body));
+    }
+
+    @Test(expected = P2pException.class)
+    public void testTooShort() throws P2pException {
+        MsgCompression.decompress(new byte[3]);
+    }
+
+    @Test(expected = P2pException.class)
+    public void testDeclaredSizeTooLarge() throws P2pException {
+        byte[] compressed = MsgCompression.compress(compressible(10_000));
+        ByteBuffer.wrap(compressed).putInt(P2pConstant.MAX_BODY_SIZE + 1);
+        MsgCompression.decompress(compressed);
+    }
+
+    @Test(expected = P2pException.class)
+    public void testDeclaredSizeMismatch() throws P2pException {
+        byte[] compressed = MsgCompression.compress(compressible(10_000));
+        ByteBuffer.wrap(compressed).putInt(9_999);
+        MsgCompression.decompress(compressed);
+    }
+
+    @Test(expected = P2pException.class)
+    public void testTruncated() throws P2pException {
+        byte[] compressed = MsgCompression.compress(compressible(10_000));
+        MsgCompression.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+    @Test(expected = P2pException.class)
+    public void testCorrupt() throws P2pException {
+        byte[] compressed = MsgCompression.compress(compressible(10_000));
+        Arrays.fill(compressed, 4, compressed.length, (byte) 0xff);
+        MsgCompression.decompress(compressed);
+    }
+}
@@ -0,0 +1,153 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl1.tasks.RouteDispatcher.RouteStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RouteDispatcherTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger("P2P");
+
+    private static class TestHandler extends Handler {
+        final int concurrency, queueSize;
+        final CountDownLatch received;
+        final CountDownLatch release;
+
+        TestHandler(byte act, int concurrency, int queueSize, int expected, boolean block) {
+            super(Ver.V0, Ctrl.SYNC, act);
+            this.concurrency = concurrency;
+            this.queueSize = queueSize;
+            this.received = new CountDownLatch(expected);
+            this.release = new CountDownLatch(block ? 1 : 0);
+        }
+
+        @Override
+        public void receive(int _id, String _displayId, byte[] _msg) {
+            received.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return queueSize;
+        }
+    }
+
+    private AtomicBoolean start;
+    private Map<Integer, List<Handler>> handlers;
+    private RouteDispatcher dispatcher;
+
+    @Before
+    public void setup() {
+        start = new AtomicBoolean(true);
+        handlers = new ConcurrentHashMap<>();
+        dispatcher = new RouteDispatcher(LOG, LOG, start, handlers);
+    }
+
+    @After
+    public void tearDown() {
+        start.set(false);
+        for (List<Handler> hs : handlers.values()) {
+            for (Handler h : hs) {
+                ((TestHandler) h).release.countDown();
+            }
+        }
+    }
+
+    private int register(TestHandler h) {
+        int route = h.getHeader().getRoute();
+        List<Handler> hs = new ArrayList<>();
+        hs.add(h);
+        handlers.put(route, hs);
+        dispatcher.register(route);
+        return route;
+    }
+
+    @Test
+    public void testUnregisteredRoute() {
+        assertFalse(dispatcher.dispatch(new MsgIn(1, "1", 12345, new byte[0])));
+        assertTrue(dispatcher.status().isEmpty());
+    }
+
+    @Test
+    public void testStatus() {
+        int route = register(new TestHandler((byte) 1, 3, 5, 0, false));
+
+        assertTrue(dispatcher.dispatch(new MsgIn(1, "1", route, new byte[0])));
+
+        RouteStatus status = dispatcher.status().get(route);
+        assertEquals("TestHandler", status.name);
+        assertEquals(1, status.queued);
+        assertEquals(5, status.capacity);
+        assertEquals(3, status.concurrency);
+        assertEquals(0, status.dropped);
+        assertEquals(1, dispatcher.size());
+    }
+
+    @Test
+    public void testSaturatedRouteDropsMessages() {
+        int route = register(new TestHandler((byte) 1, 1, 2, 0, false));
+
+        assertTrue(dispatcher.dispatch(new MsgIn(1, "1", route, new byte[0])));
+        assertTrue(dispatcher.dispatch(new MsgIn(1, "1", route, new byte[0])));
+        assertFalse(dispatcher.dispatch(new MsgIn(1, "1", route, new byte[0])));
+
+        assertEquals(1, dispatcher.status().get(route).dropped);
+        assertEquals(2, dispatcher.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void testBlockedRouteDoesNotDelayOthers() throws InterruptedException {
+        TestHandler slow = new TestHandler((byte) 1, 1, 10, 1, true);
+        TestHandler fast = new TestHandler((byte) 2, 1, 10, 5, false);
+        int slowRoute = register(slow);
+        int fastRoute = register(fast);
+        dispatcher.start();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(dispatcher.dispatch(new MsgIn(1, "1", slowRoute, new byte[0])));
+            assertTrue(dispatcher.dispatch(new MsgIn(1, "1", fastRoute, new byte[0])));
+        }
+
+        assertTrue(fast.received.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.received.await(5, TimeUnit.SECONDS));
+        // the single worker of the slow route is blocked on its first message
+        assertEquals(4, dispatcher.status().get(slowRoute).queued);
+    }
+
+    @Test(timeout = 10_000)
+    public void testRegisterAfterStart() throws InterruptedException {
+        dispatcher.start();
+        TestHandler h = new TestHandler((byte) 1, 1, 10, 1, false);
+        int route = register(h);
+
+        assertTrue(dispatcher.dispatch(new MsgIn(1, "1", route, new byte[0])));
+        assertTrue(h.received.await(5, TimeUnit.SECONDS));
+    }
+}
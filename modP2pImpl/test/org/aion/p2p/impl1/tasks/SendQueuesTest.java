@@ -0,0 +1,147 @@
+package org.aion.p2p.impl1.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Msg;
+import org.aion.p2p.SendPriority;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl1.P2pMgr.Dest;
+import org.junit.Test;
+
+public class SendQueuesTest {
+
+    private static class TestMsg extends Msg {
+        private final SendPriority priority;
+
+        TestMsg(byte ctrl, byte act, SendPriority priority) {
+            super(Ver.V0, ctrl, act);
+            this.priority = priority;
+        }
+
+        @Override
+        public SendPriority getPriority() {
+            return priority == null ? super.getPriority() : priority;
+        }
+
+        @Override
+        public byte[] encode() {
+            return new byte[0];
+        }
+    }
+
+    private static MsgOut msg(int nodeId, byte ctrl, byte act, SendPriority priority) {
+        TestMsg msg = new TestMsg(ctrl, act, priority);
+        return new MsgOut(nodeId, String.valueOf(nodeId), msg, Dest.ACTIVE);
+    }
+
+    private static MsgOut tx(int nodeId) {
+        return msg(nodeId, Ctrl.SYNC, (byte) 6, SendPriority.TX);
+    }
+
+    private static MsgOut block(int nodeId) {
+        return msg(nodeId, Ctrl.SYNC, (byte) 7, SendPriority.BLOCK);
+    }
+
+    private static MsgOut sync(int nodeId) {
+        return msg(nodeId, Ctrl.SYNC, (byte) 5, null);
+    }
+
+    @Test
+    public void testPriorityOf() {
+        // the p2p control messages are prioritized by default
+        assertEquals(SendPriority.CONTROL, SendQueues.priorityOf(msg(1, Ctrl.NET, (byte) 1, null)));
+        assertEquals(SendPriority.BLOCK, SendQueues.priorityOf(block(1)));
+        assertEquals(SendPriority.SYNC, SendQueues.priorityOf(sync(1)));
+        assertEquals(SendPriority.TX, SendQueues.priorityOf(tx(1)));
+    }
+
+    @Test
+    public void testPriorityOrderWithinPeer() throws InterruptedException {
+        SendQueues queues = new SendQueues(10);
+        MsgOut tx = tx(1);
+        MsgOut sync = sync(1);
+        MsgOut block = block(1);
+        assertTrue(queues.offer(tx));
+        assertTrue(queues.offer(sync));
+        assertTrue(queues.offer(block));
+        assertEquals(3, queues.size());
+
+        MsgOut mo = queues.take();
+        assertSame(block, mo);
+        queues.done(mo);
+        mo = queues.take();
+        assertSame(sync, mo);
+        queues.done(mo);
+        mo = queues.take();
+        assertSame(tx, mo);
+        queues.done(mo);
+
+        assertEquals(0, queues.size());
+        assertTrue(queues.depths().isEmpty());
+    }
+
+    @Test
+    public void testRoundRobinAcrossPeers() throws InterruptedException {
+        SendQueues queues = new SendQueues(10);
+        MsgOut a1 = sync(1), a2 = sync(1), b1 = sync(2);
+        queues.offer(a1);
+        queues.offer(a2);
+        queues.offer(b1);
+
+        MsgOut mo = queues.take();
+        assertSame(a1, mo);
+        queues.done(mo);
+        mo = queues.take();
+        assertSame(b1, mo);
+        queues.done(mo);
+        mo = queues.take();
+        assertSame(a2, mo);
+        queues.done(mo);
+    }
+
+    @Test
+    public void testPeerServicedByOneWriter() throws InterruptedException {
+        SendQueues queues = new SendQueues(10);
+        queues.offer(sync(1));
+        queues.offer(sync(1));
+
+        MsgOut first = queues.take();
+        // the second message waits until the first one is done
+        assertNull(queues.poll(10, TimeUnit.MILLISECONDS));
+        queues.done(first);
+        assertTrue(queues.poll(10, TimeUnit.MILLISECONDS) != null);
+    }
+
+    @Test
+    public void testOverflowDropsLowestPriority() throws InterruptedException {
+        SendQueues queues = new SendQueues(2);
+        MsgOut tx = tx(1);
+        MsgOut sync = sync(1);
+        assertTrue(queues.offer(tx));
+        assertTrue(queues.offer(sync));
+
+        // a block replaces the oldest transaction
+        MsgOut block = block(1);
+        assertTrue(queues.offer(block));
+        assertEquals(1, queues.dropped());
+        assertEquals(2, (int) queues.depths().get(1));
+
+        // transactions cannot replace higher priority messages
+        assertFalse(queues.offer(tx(1)));
+        assertEquals(2, queues.dropped());
+
+        MsgOut mo = queues.take();
+        assertSame(block, mo);
+        queues.done(mo);
+        mo = queues.take();
+        assertSame(sync, mo);
+        queues.done(mo);
+        assertEquals(0, queues.size());
+    }
+}
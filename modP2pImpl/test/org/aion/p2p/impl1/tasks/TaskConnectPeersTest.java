@@ -15,7 +15,6 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.Random;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.INode;
 import org.aion.p2p.INodeMgr;
@@ -37,7 +36,7 @@ public class TaskConnectPeersTest {
 
     @Mock private IP2pMgr p2pMgr;
 
-    @Mock private BlockingQueue<MsgOut> sendMsgQue;
+    @Mock private SendQueues sendMsgQue;
 
     @Mock private ReqHandshake1 rhs;
 
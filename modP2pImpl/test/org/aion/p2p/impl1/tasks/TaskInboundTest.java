@@ -20,15 +20,14 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.Handler;
-import org.aion.p2p.Header;
 import org.aion.p2p.INode;
 import org.aion.p2p.INodeMgr;
 import org.aion.p2p.IP2pMgr;
@@ -48,9 +47,9 @@ public class TaskInboundTest {
 
     @Mock private IP2pMgr p2pMgr;
 
-    @Mock private BlockingQueue<MsgOut> msgOutQue;
+    @Mock private SendQueues msgOutQue;
 
-    @Mock private BlockingQueue<MsgIn> msgInQue;
+    @Mock private RouteDispatcher msgInQue;
 
     @Mock private ResHandshake1 rhs1;
 
@@ -58,8 +57,6 @@ public class TaskInboundTest {
 
     @Mock private ChannelBuffer cb;
 
-    @Mock private Header hdr;
-
     @Mock private ServerSocketChannel ssc;
 
     @Mock private SocketChannel sc;
@@ -76,6 +73,8 @@ public class TaskInboundTest {
 
     @Mock private Map<Integer, List<Handler>> hldrMap;
 
+    private Map<Integer, Integer> rateMap = new HashMap<>();
+
     @Mock private MockSelector selector;
 
     private Random r = new Random();
@@ -137,7 +136,7 @@ public class TaskInboundTest {
     public void testRun() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(selector.selectNow()).thenReturn(0);
@@ -156,7 +155,7 @@ public class TaskInboundTest {
     public void testRunException() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         doThrow(ClosedSelectorException.class).when(selector).selectNow();
@@ -176,7 +175,7 @@ public class TaskInboundTest {
     public void testRunClosedSelectorException() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(selector.selectNow()).thenReturn(1);
@@ -196,7 +195,7 @@ public class TaskInboundTest {
     public void testRun2() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(sk.isValid()).thenReturn(false);
@@ -235,7 +234,7 @@ public class TaskInboundTest {
     public void testAccept() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(sk2.isValid()).thenReturn(true);
@@ -269,7 +268,7 @@ public class TaskInboundTest {
     public void testAccept2() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(sk2.isValid()).thenReturn(true);
@@ -303,7 +302,7 @@ public class TaskInboundTest {
     public void testAccept3() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         when(sk.isValid()).thenReturn(true);
@@ -342,12 +341,13 @@ public class TaskInboundTest {
     public void testReadBuffer() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         // settings for readBuffer
         when(sk.channel()).thenReturn(sc);
         when(sc.read(any(ByteBuffer.class))).thenReturn(0);
+        when(cb.getFrameReader()).thenReturn(new FrameReader());
 
         // settings for run
         when(sk.isValid()).thenReturn(true);
@@ -374,15 +374,13 @@ public class TaskInboundTest {
     public void testReadBuffer2() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         // settings for readBuffer
         when(sk.channel()).thenReturn(sc);
         when(sc.read(any(ByteBuffer.class))).thenReturn(1).thenReturn(0);
-
-        // settings for calBuffer
-        // when(cb.buffRemain).thenReturn(1);
+        when(cb.getFrameReader()).thenReturn(new FrameReader());
 
         // settings for run
         when(sk.isValid()).thenReturn(true);
@@ -410,26 +408,14 @@ public class TaskInboundTest {
     public void testReadBuffer3() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
         TaskInbound ti =
-                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, msgOutQue, rhs1, msgInQue);
+                new TaskInbound(p2pLOG, surveyLog, p2pMgr, selector, atb, nodeMgr, hldrMap, rateMap, msgOutQue, rhs1, msgInQue);
         assertNotNull(ti);
 
         // settings for readBuffer
         when(sk.channel()).thenReturn(sc);
         int read = r.nextInt(10000);
-        int remain = r.nextInt(10000);
         when(sc.read(any(ByteBuffer.class))).thenReturn(read).thenReturn(0);
-
-        // settings for calBuffer
-        when(cb.getBuffRemain()).thenReturn(remain);
-        when(cb.getRemainBuffer()).thenReturn(new byte[remain]);
-
-        // settings for readMsg
-        when(cb.isHeaderNotCompleted()).thenReturn(true);
-        when(cb.isBodyNotCompleted()).thenReturn(true);
-
-        // settings for readBody
-        when(cb.getHeader()).thenReturn(hdr);
-        // when(hdr.getLen()).thenReturn(Header.LEN);
+        when(cb.getFrameReader()).thenReturn(new FrameReader());
 
         // settings for run
         when(sk.isValid()).thenReturn(true);
@@ -12,7 +12,6 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Random;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.INode;
 import org.aion.p2p.INodeMgr;
@@ -34,7 +33,9 @@ public class TaskSendTest {
 
     @Mock private IP2pMgr p2pMgr;
 
-    @Mock private BlockingQueue<MsgOut> sendMsgQue;
+    @Mock private SendQueues sendMsgQue;
+
+    private final EncodedMsgCache encodedMsgs = new EncodedMsgCache();
 
     @Mock private INode node;
 
@@ -56,7 +57,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRun() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         Thread t = new Thread(ts);
@@ -72,7 +75,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRunMsgOutTimeout() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(r.nextInt(), "1", msg, Dest.OUTBOUND);
@@ -93,7 +98,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRunLane() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(1, "1", msg, Dest.OUTBOUND);
@@ -114,7 +121,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRun2() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(0, "1", msg, Dest.OUTBOUND);
@@ -146,7 +155,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRun3() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(0, "1", msg, Dest.ACTIVE);
@@ -178,7 +189,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRun4() throws InterruptedException, IOException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(0, "1", msg, Dest.INBOUND);
@@ -210,7 +223,9 @@ public class TaskSendTest {
     @Test(timeout = 10_000)
     public void testRunNullNode() throws InterruptedException {
         AtomicBoolean atb = new AtomicBoolean(true);
-        TaskSend ts = new TaskSend(p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector);
+        TaskSend ts =
+                new TaskSend(
+                        p2pLOG, p2pLOG, p2pMgr, sendMsgQue, atb, nodeMgr, selector, encodedMsgs);
         assertNotNull(ts);
 
         MsgOut mo = new MsgOut(0, "1", msg, Dest.INBOUND);
@@ -9,7 +9,6 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.aion.p2p.INodeMgr;
 import org.junit.Before;
@@ -23,9 +22,9 @@ public class TaskStatusTest {
     @Mock private Logger p2pLOG;
     private Logger surveyLog;
 
-    @Mock private BlockingQueue<MsgOut> msgOutQue;
+    @Mock private SendQueues msgOutQue;
 
-    @Mock private BlockingQueue<MsgIn> msgInQue;
+    @Mock private RouteDispatcher msgInQue;
 
     @Mock private INodeMgr nodeMgr;
 
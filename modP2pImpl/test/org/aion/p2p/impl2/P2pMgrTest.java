@@ -0,0 +1,200 @@
+package org.aion.p2p.impl2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.aion.p2p.Ctrl;
+import org.aion.p2p.Handler;
+import org.aion.p2p.INode;
+import org.aion.p2p.IP2pMgr;
+import org.aion.p2p.Msg;
+import org.aion.p2p.Ver;
+import org.aion.p2p.impl.TestUtilities;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Connects managers on loopback sockets and exchanges kernel messages between them. */
+public class P2pMgrTest {
+
+    private static final String IP = "127.0.0.1";
+    private static final byte ACT = 100;
+
+    private final Logger log = LoggerFactory.getLogger("P2P");
+    private final List<IP2pMgr> managers = new ArrayList<>();
+
+    private static final class TestMsg extends Msg {
+        private final byte[] body;
+
+        TestMsg(byte[] body) {
+            super(Ver.V0, Ctrl.SYNC, ACT);
+            this.body = body;
+        }
+
+        @Override
+        public byte[] encode() {
+            return body;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (IP2pMgr mgr : managers) {
+            mgr.shutdown();
+        }
+    }
+
+    private IP2pMgr impl2(String id, int port, String[] bootNodes, boolean compression) {
+        P2pMgr mgr =
+                new P2pMgr(
+                        log, log, 0, "0.0.0", id, IP, port, bootNodes, false, 128, 128, false, 50,
+                        compression, 2);
+        managers.add(mgr);
+        return mgr;
+    }
+
+    private IP2pMgr impl1(String id, int port, String[] bootNodes) {
+        org.aion.p2p.impl1.P2pMgr mgr =
+                new org.aion.p2p.impl1.P2pMgr(
+                        log, log, 0, "0.0.0", id, IP, port, bootNodes, false, 128, 128, false, 50,
+                        true);
+        managers.add(mgr);
+        return mgr;
+    }
+
+    private static CountDownLatch register(IP2pMgr mgr, int expected, int bodySize) {
+        CountDownLatch latch = new CountDownLatch(expected);
+        mgr.register(
+                Collections.singletonList(
+                        new Handler(Ver.V0, Ctrl.SYNC, ACT) {
+                            @Override
+                            public void receive(int _id, String _displayId, byte[] _msg) {
+                                if (_msg.length == bodySize) {
+                                    latch.countDown();
+                                }
+                            }
+                        }));
+        return latch;
+    }
+
+    private static boolean awaitActive(IP2pMgr mgr, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (mgr.getActiveNodes().isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static void sendToAll(IP2pMgr from, int count, int bodySize) {
+        for (INode peer : from.getActiveNodes().values()) {
+            for (int i = 0; i < count; i++) {
+                from.send(peer.getIdHash(), peer.getIdShort(), new TestMsg(new byte[bodySize]));
+            }
+        }
+    }
+
+    /** Exchanges messages in both directions, including bodies larger than the socket buffers. */
+    private static void exchange(IP2pMgr first, IP2pMgr second) throws Exception {
+        int count = 10;
+        int bodySize = 2 * 1024 * 1024;
+        CountDownLatch firstReceived = register(first, count, bodySize);
+        CountDownLatch secondReceived = register(second, count, bodySize);
+
+        first.run();
+        second.run();
+
+        assertTrue(awaitActive(first, 15_000));
+        assertTrue(awaitActive(second, 15_000));
+        assertEquals(1, first.getActiveNodes().size());
+        assertEquals(1, second.getActiveNodes().size());
+
+        sendToAll(first, count, bodySize);
+        sendToAll(second, count, bodySize);
+
+        assertTrue(secondReceived.await(15, TimeUnit.SECONDS));
+        assertTrue(firstReceived.await(15, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConnectAndExchange() throws Exception {
+        String id0 = UUID.randomUUID().toString();
+        int port0 = TestUtilities.getFreePort();
+        IP2pMgr node0 = impl2(id0, port0, new String[0], false);
+        IP2pMgr node1 =
+                impl2(
+                        UUID.randomUUID().toString(),
+                        TestUtilities.getFreePort(),
+                        new String[] {"p2p://" + id0 + "@" + IP + ":" + port0},
+                        false);
+
+        exchange(node0, node1);
+    }
+
+    @Test
+    public void testExchangeWithCompression() throws Exception {
+        String id0 = UUID.randomUUID().toString();
+        int port0 = TestUtilities.getFreePort();
+        IP2pMgr node0 = impl2(id0, port0, new String[0], true);
+        IP2pMgr node1 =
+                impl2(
+                        UUID.randomUUID().toString(),
+                        TestUtilities.getFreePort(),
+                        new String[] {"p2p://" + id0 + "@" + IP + ":" + port0},
+                        true);
+
+        exchange(node0, node1);
+    }
+
+    @Test
+    public void testInteropWithImpl1() throws Exception {
+        String id0 = UUID.randomUUID().toString();
+        int port0 = TestUtilities.getFreePort();
+        IP2pMgr node0 = impl1(id0, port0, new String[0]);
+        IP2pMgr node1 =
+                impl2(
+                        UUID.randomUUID().toString(),
+                        TestUtilities.getFreePort(),
+                        new String[] {"p2p://" + id0 + "@" + IP + ":" + port0},
+                        true);
+
+        exchange(node0, node1);
+    }
+
+    @Test
+    public void testShutdownClosesConnections() throws Exception {
+        String id0 = UUID.randomUUID().toString();
+        int port0 = TestUtilities.getFreePort();
+        IP2pMgr node0 = impl2(id0, port0, new String[0], false);
+        IP2pMgr node1 =
+                impl2(
+                        UUID.randomUUID().toString(),
+                        TestUtilities.getFreePort(),
+                        new String[] {"p2p://" + id0 + "@" + IP + ":" + port0},
+                        false);
+        register(node0, 0, 0);
+        register(node1, 0, 0);
+        node0.run();
+        node1.run();
+        assertTrue(awaitActive(node0, 15_000));
+
+        node1.shutdown();
+        managers.remove(node1);
+
+        // the remaining node sees the end of stream and drops the peer
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!node0.getActiveNodes().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(node0.getActiveNodes().isEmpty());
+    }
+}
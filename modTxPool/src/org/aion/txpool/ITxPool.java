@@ -43,5 +43,8 @@ public interface ITxPool {
 
     List<AionTransaction> snapshotAll();
 
+    // return all the pool transactions without sorting them or removing the timed out ones.
+    List<AionTransaction> getAll();
+
     PooledTransaction getPoolTx(AionAddress from, BigInteger txNonce);
 }
@@ -464,6 +464,15 @@ public class TxPoolA0 implements ITxPool {
         return rtn;
     }
 
+    @Override
+    public List<AionTransaction> getAll() {
+        List<AionTransaction> rtn = new ArrayList<>(this.getMainMap().size());
+        for (TXState state : this.getMainMap().values()) {
+            rtn.add(state.getTx().tx);
+        }
+        return rtn;
+    }
+
     @Override
     public List<AionTransaction> snapshot() {
 